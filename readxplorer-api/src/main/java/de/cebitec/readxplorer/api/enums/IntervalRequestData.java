@@ -42,6 +42,12 @@ public enum IntervalRequestData {
      */
     ReadStarts( 9, "Read Starts"),
 
+    /**
+     * Value for obtaining the coverage and a pileup of all diffs and gaps
+     * instead of Difference and ReferenceGap objects (10).
+     */
+    Pileup( 10, "Pileup" ),
+
     Track1( 4, "Track 1" ),
 
     Track2( 5, "Track 2" );
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.benchmarks;
+
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the ReadXplorer benchmarks with the GC profiler, which reports the
+ * allocation rate of each benchmark next to its time. All JMH command line
+ * options are supported, e.g.
+ * <code>java -jar readxplorer-benchmarks.jar SamBamFileReader -p depth=50</code>
+ * runs the SamBamFileReader benchmarks for a coverage depth of 50 only.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+
+    /**
+     * @param args JMH command line options
+     * <p>
+     * @throws RunnerException             if a benchmark fails
+     * @throws CommandLineOptionException if the options cannot be parsed
+     */
+    public static void main( String[] args ) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent( new CommandLineOptions( args ) )
+                .addProfiler( GCProfiler.class )
+                .build();
+        new Runner( options ).run();
+    }
+
+
+}
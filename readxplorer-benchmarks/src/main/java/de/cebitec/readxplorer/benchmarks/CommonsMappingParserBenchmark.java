@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.benchmarks;
+
+
+import de.cebitec.readxplorer.parser.mappings.CommonsMappingParser;
+import htsjdk.samtools.SAMRecord;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Benchmarks {@link CommonsMappingParser#createDiffsAndGaps(String, String,
+ * String, boolean, int)}, which computes the differences of each read during
+ * the import. One operation handles all reads of the benchmark region with
+ * the cigar, read and reference strings prepared beforehand, as the import
+ * does.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class CommonsMappingParserBenchmark {
+
+    @Param( { "10", "50", "200" } )
+    private int depth;
+
+    @Param( { "50", "150" } )
+    private int readLength;
+
+    private String[] cigars;
+    private String[] readSeqs;
+    private String[] refSeqs;
+    private boolean[] revStrands;
+    private int[] starts;
+
+
+    @Setup( Level.Trial )
+    public void setUp() throws IOException {
+        try( SyntheticProject project = new SyntheticProject( depth, readLength ) ) {
+            List<SAMRecord> records = project.queryRecords();
+            int nbRecords = records.size();
+            cigars = new String[nbRecords];
+            readSeqs = new String[nbRecords];
+            refSeqs = new String[nbRecords];
+            revStrands = new boolean[nbRecords];
+            starts = new int[nbRecords];
+            for( int i = 0; i < nbRecords; ++i ) {
+                SAMRecord record = records.get( i );
+                cigars[i] = record.getCigarString();
+                readSeqs[i] = record.getReadString();
+                refSeqs[i] = project.getData().getRefSequence( record.getAlignmentStart(), record.getAlignmentEnd() );
+                revStrands[i] = record.getReadNegativeStrandFlag();
+                starts[i] = record.getAlignmentStart();
+            }
+        }
+    }
+
+
+    @Benchmark
+    public void createDiffsAndGaps( Blackhole blackhole ) {
+        for( int i = 0; i < cigars.length; ++i ) {
+            blackhole.consume( CommonsMappingParser.createDiffsAndGaps( cigars[i], readSeqs[i], refSeqs[i], revStrands[i], starts[i] ) );
+        }
+    }
+
+
+}
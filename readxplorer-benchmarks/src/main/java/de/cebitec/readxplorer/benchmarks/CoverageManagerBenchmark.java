@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.benchmarks;
+
+
+import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
+import htsjdk.samtools.SAMRecord;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks {@link CoverageManager#increaseCoverage(int, int, int[])} and the
+ * difference array based {@link CoverageManager#addCoverageRange(int, int, int[])},
+ * which are called for each alignment block of each read when a coverage is
+ * computed. One operation adds all reads of the benchmark region to a new
+ * coverage array.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class CoverageManagerBenchmark {
+
+    @Param( { "10", "50", "200" } )
+    private int depth;
+
+    @Param( { "50", "150" } )
+    private int readLength;
+
+    private int[] starts;
+    private int[] stops;
+
+
+    @Setup( Level.Trial )
+    public void setUp() throws IOException {
+        try( SyntheticProject project = new SyntheticProject( depth, readLength ) ) {
+            List<SAMRecord> records = project.queryRecords();
+            starts = new int[records.size()];
+            stops = new int[records.size()];
+            for( int i = 0; i < records.size(); ++i ) {
+                starts[i] = records.get( i ).getAlignmentStart();
+                stops[i] = records.get( i ).getAlignmentEnd();
+            }
+        }
+    }
+
+
+    @Benchmark
+    public int[] increaseCoverage() {
+        CoverageManager coverage = new CoverageManager( SyntheticProject.REQUEST_FROM, SyntheticProject.REQUEST_TO );
+        int[] coverageArray = new int[SyntheticProject.REQUEST_TO - SyntheticProject.REQUEST_FROM + 1];
+        for( int i = 0; i < starts.length; ++i ) {
+            coverage.increaseCoverage( starts[i], stops[i], coverageArray );
+        }
+        return coverageArray;
+    }
+
+
+    @Benchmark
+    public int[] addCoverageRange() {
+        CoverageManager coverage = new CoverageManager( SyntheticProject.REQUEST_FROM, SyntheticProject.REQUEST_TO );
+        int[] coverageArray = new int[SyntheticProject.REQUEST_TO - SyntheticProject.REQUEST_FROM + 1];
+        int[] diffArray = new int[coverageArray.length + 1];
+        for( int i = 0; i < starts.length; ++i ) {
+            coverage.addCoverageRange( starts[i], stops[i], diffArray );
+        }
+        coverage.addDifferences( diffArray, coverageArray );
+        return coverageArray;
+    }
+
+
+}
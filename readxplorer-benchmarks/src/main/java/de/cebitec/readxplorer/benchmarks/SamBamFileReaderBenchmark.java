@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.benchmarks;
+
+
+import de.cebitec.readxplorer.api.enums.IntervalRequestData;
+import de.cebitec.readxplorer.databackend.IntervalRequest;
+import de.cebitec.readxplorer.databackend.SamBamFileReader;
+import de.cebitec.readxplorer.databackend.dataobjects.CoverageAndDiffResult;
+import de.cebitec.readxplorer.databackend.dataobjects.Mapping;
+import de.cebitec.readxplorer.databackend.dataobjects.ReadPairGroup;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks the requests of the {@link SamBamFileReader}, which serve all
+ * viewers and analyses: The coverage, the mappings including their diffs and
+ * gaps and the read pairs of a 20 kbp region.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class SamBamFileReaderBenchmark {
+
+    @Param( { "10", "50", "200" } )
+    private int depth;
+
+    @Param( { "50", "150" } )
+    private int readLength;
+
+    private SyntheticProject project;
+    private SamBamFileReader reader;
+    private IntervalRequest diffRequest;
+    private IntervalRequest readPairRequest;
+
+
+    @Setup( Level.Trial )
+    public void setUp() throws IOException {
+        project = new SyntheticProject( depth, readLength );
+        reader = new SamBamFileReader( project.getData().getBamFile(), project.getTrack().getId(), project.getReference() );
+        diffRequest = project.createRequest( true, IntervalRequestData.Normal );
+        readPairRequest = project.createRequest( false, IntervalRequestData.Normal );
+    }
+
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws IOException {
+        reader.close();
+        project.close();
+    }
+
+
+    @Benchmark
+    public CoverageAndDiffResult coverage() {
+        return reader.getCoverageFromBam( diffRequest );
+    }
+
+
+    @Benchmark
+    public Collection<Mapping> mappings() {
+        return reader.getMappingsFromBam( diffRequest );
+    }
+
+
+    @Benchmark
+    public Collection<ReadPairGroup> readPairs() {
+        return reader.getReadPairMappingsFromBam( readPairRequest );
+    }
+
+
+}
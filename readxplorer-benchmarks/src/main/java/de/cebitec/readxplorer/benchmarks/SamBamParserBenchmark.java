@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.benchmarks;
+
+
+import de.cebitec.readxplorer.parser.ReferenceJob;
+import de.cebitec.readxplorer.parser.TrackJob;
+import de.cebitec.readxplorer.parser.common.ParsedTrack;
+import de.cebitec.readxplorer.parser.common.ParsingException;
+import de.cebitec.readxplorer.parser.mappings.SamBamParser;
+import de.cebitec.readxplorer.parser.mappings.SamBamStatsParser;
+import de.cebitec.readxplorer.utils.StatsContainer;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks the import of a whole track by
+ * {@link SamBamParser#parseInput(TrackJob, Map)}: Sorting the bam file by read
+ * name, classifying all reads and writing the extended bam file. For
+ * comparison, the fused import of
+ * {@link SamBamParser#parseInputAndCreateStats(TrackJob, Map, SamBamStatsParser)}
+ * additionally creates the bam index and the track statistics in the same
+ * pass. As one import takes seconds, each iteration measures a single import
+ * and the files it created are deleted afterwards.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = "--add-opens=java.base/java.net=ALL-UNNAMED" ) //the preferences of the sorter start the NetBeans repository
+public class SamBamParserBenchmark {
+
+    @Param( { "10", "50", "200" } )
+    private int depth;
+
+    @Param( { "50", "150" } )
+    private int readLength;
+
+    private SyntheticProject project;
+    private ReferenceJob refJob;
+    private Map<String, Integer> chromLengthMap;
+
+
+    @Setup( Level.Trial )
+    public void setUp() throws IOException {
+        project = new SyntheticProject( depth, readLength );
+        Timestamp timestamp = new Timestamp( System.currentTimeMillis() );
+        refJob = new ReferenceJob( project.getReference().getId(), project.getData().getFastaFile(), null,
+                                   "Benchmark reference", "Synthetic reference", timestamp );
+        chromLengthMap = new HashMap<>();
+        chromLengthMap.put( SyntheticData.CHROM_NAME, SyntheticData.CHROM_LENGTH );
+    }
+
+
+    @TearDown( Level.Iteration )
+    public void deleteImportedFiles() {
+        File rawBamFile = project.getData().getRawBamFile();
+        for( File file : rawBamFile.getParentFile().listFiles() ) {
+            if( !file.equals( rawBamFile ) ) {
+                file.delete();
+            }
+        }
+    }
+
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws IOException {
+        project.close();
+    }
+
+
+    @Benchmark
+    public Boolean parseInput() throws ParsingException {
+        SamBamParser parser = new SamBamParser();
+        TrackJob trackJob = new TrackJob( 2, project.getData().getRawBamFile(), "Benchmark import", refJob, parser, false,
+                                          new Timestamp( System.currentTimeMillis() ) );
+        return parser.parseInput( trackJob, chromLengthMap );
+    }
+
+
+    @Benchmark
+    public ParsedTrack parseInputAndCreateStats() throws ParsingException {
+        SamBamParser parser = new SamBamParser();
+        TrackJob trackJob = new TrackJob( 2, project.getData().getRawBamFile(), "Benchmark import", refJob, parser, false,
+                                          new Timestamp( System.currentTimeMillis() ) );
+        SamBamStatsParser statsParser = new SamBamStatsParser();
+        statsParser.setStatsContainer( new StatsContainer() );
+        statsParser.getStatsContainer().prepareForTrack();
+        return parser.parseInputAndCreateStats( trackJob, chromLengthMap, statsParser );
+    }
+
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.benchmarks;
+
+
+import de.cebitec.readxplorer.api.enums.FeatureType;
+import de.cebitec.readxplorer.api.enums.IntervalRequestData;
+import de.cebitec.readxplorer.databackend.IntervalRequest;
+import de.cebitec.readxplorer.databackend.ParametersReadClasses;
+import de.cebitec.readxplorer.databackend.SamBamFileReader;
+import de.cebitec.readxplorer.databackend.dataobjects.CoverageAndDiffResult;
+import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
+import de.cebitec.readxplorer.databackend.dataobjects.Pileup;
+import de.cebitec.readxplorer.databackend.dataobjects.SnpI;
+import de.cebitec.readxplorer.tools.snpdetection.AnalysisSNPs;
+import de.cebitec.readxplorer.tools.snpdetection.ParameterSetSNPs;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks the SNP detection of one tile through
+ * {@link AnalysisSNPs#update(Object)}, which consumes the pileup of a
+ * coverage result. As the analysis recycles the pileup, each operation has to
+ * fill a new one. {@link #fillPileup()} measures this part alone, so the
+ * difference of both benchmarks is the time and allocation of the SNP
+ * detection itself.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class SnpDetectionBenchmark {
+
+    @Param( { "10", "50", "200" } )
+    private int depth;
+
+    @Param( { "50", "150" } )
+    private int readLength;
+
+    private SyntheticProject project;
+    private SamBamFileReader reader;
+    private ParameterSetSNPs analysisParams;
+    private IntervalRequest request;
+
+
+    @Setup( Level.Trial )
+    public void setUp() throws IOException {
+        project = new SyntheticProject( depth, readLength );
+        reader = new SamBamFileReader( project.getData().getBamFile(), project.getTrack().getId(), project.getReference() );
+        analysisParams = new ParameterSetSNPs( 2, 5, true, EnumSet.noneOf( FeatureType.class ), new ParametersReadClasses(),
+                                               (byte) 10, (byte) 20, 20 );
+        request = project.createRequest( true, IntervalRequestData.Pileup );
+        request.setMinBaseQuality( analysisParams.getMinBaseQuality() );
+    }
+
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws IOException {
+        reader.close();
+        project.close();
+    }
+
+
+    @Benchmark
+    public CoverageManager fillPileup() {
+        CoverageAndDiffResult result = loadPileup();
+        result.getPileup().release();
+        return result.getCovManager();
+    }
+
+
+    @Benchmark
+    public List<SnpI> detectSnps() {
+        AnalysisSNPs analysis = new AnalysisSNPs( project.getReference(), project.getTrack().getId(),
+                                                  project.getData().getBamFile(), analysisParams );
+        analysis.update( loadPileup() );
+        return analysis.getResults();
+    }
+
+
+    /**
+     * @return A coverage result with the pileup of the benchmark region, as
+     *         the coverage thread creates it for the SNP detection
+     */
+    private CoverageAndDiffResult loadPileup() {
+        Pileup pileup = Pileup.obtain( request.getTotalFrom(), request.getTotalTo(), request.getMinBaseQuality() );
+        CoverageManager coverage = reader.getCoverageAndPileupFromBam( request, pileup );
+        CoverageAndDiffResult result = new CoverageAndDiffResult( coverage, null, null, request );
+        result.setPileup( pileup );
+        return result;
+    }
+
+
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.benchmarks;
+
+
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.api.enums.ReadPairType;
+import de.cebitec.readxplorer.api.enums.SAMRecordTag;
+import de.cebitec.readxplorer.utils.FastaUtils;
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Synthetic data set for the benchmarks: A fasta file with one random
+ * chromosome and two bam files with simulated read pairs of this chromosome.
+ * The reads contain sequencing errors, small insertions, deletions and soft
+ * clipped bases and carry the alternative base of a heterozygous SNP every
+ * {@link #SNP_DISTANCE} bases.
+ * <p>
+ * The first bam file is sorted by coordinate, indexed and contains the
+ * classification tags written by the ReadXplorer import. The second bam file
+ * lacks these tags and serves as input for the import itself. All data is
+ * generated from a fixed seed, so each fork of a benchmark works on the same
+ * data.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class SyntheticData {
+
+    public static final String CHROM_NAME = "chrom1";
+    public static final int CHROM_LENGTH = 100000;
+    public static final int SNP_DISTANCE = 500;
+
+    private static final int FRAGMENT_LENGTH = 300;
+    private static final int FRAGMENT_DEVIATION = 30;
+    private static final int MAX_DELETION_LENGTH = 3;
+    private static final double ERROR_RATE = 0.01;
+    private static final int LINE_LENGTH = 60;
+    private static final char[] BASES = { 'A', 'C', 'G', 'T' };
+
+    private final int depth;
+    private final int readLength;
+    private final Random random;
+    private final char[] refBases;
+    private final File fastaFile;
+    private final File bamFile;
+    private final File rawBamFile;
+
+
+    /**
+     * Synthetic data set for the benchmarks. All files are written into the
+     * given directory.
+     * <p>
+     * @param dir        directory to store the fasta and bam files in
+     * @param depth      average coverage depth of the simulated reads
+     * @param readLength length of each simulated read
+     * <p>
+     * @throws IOException if the fasta file cannot be written
+     */
+    public SyntheticData( File dir, int depth, int readLength ) throws IOException {
+        this.depth = depth;
+        this.readLength = readLength;
+        this.random = new Random( 42 );
+        this.refBases = new char[CHROM_LENGTH];
+        for( int i = 0; i < CHROM_LENGTH; ++i ) {
+            refBases[i] = BASES[random.nextInt( BASES.length )];
+        }
+        this.fastaFile = new File( dir, "reference.fasta" );
+        this.bamFile = new File( dir, "track.bam" );
+        File rawDir = new File( dir, "raw" );
+        rawDir.mkdirs();
+        this.rawBamFile = new File( rawDir, "track.bam" );
+
+        writeFasta();
+        writeBams();
+    }
+
+
+    /**
+     * Writes the chromosome to the fasta file and indexes it.
+     */
+    private void writeFasta() throws IOException {
+        try( BufferedWriter writer = new BufferedWriter( new FileWriter( fastaFile ) ) ) {
+            writer.write( ">" + CHROM_NAME );
+            writer.newLine();
+            for( int i = 0; i < CHROM_LENGTH; i += LINE_LENGTH ) {
+                writer.write( refBases, i, Math.min( LINE_LENGTH, CHROM_LENGTH - i ) );
+                writer.newLine();
+            }
+        }
+        new FastaUtils().indexFasta( fastaFile, new ArrayList<>() );
+    }
+
+
+    /**
+     * Simulates the read pairs and writes them once with classification tags
+     * to the indexed bam file and once without to the raw bam file.
+     */
+    private void writeBams() {
+        SAMFileHeader header = new SAMFileHeader();
+        header.addSequence( new SAMSequenceRecord( CHROM_NAME, CHROM_LENGTH ) );
+        header.setSortOrder( SAMFileHeader.SortOrder.coordinate );
+
+        List<SAMRecord> records = new ArrayList<>();
+        int nbPairs = (int) ((long) depth * CHROM_LENGTH / (2 * readLength));
+        for( int pairId = 1; pairId <= nbPairs; ++pairId ) {
+            int fragmentLength = Math.max( readLength, FRAGMENT_LENGTH + (int) (random.nextGaussian() * FRAGMENT_DEVIATION) );
+            int start = 1 + random.nextInt( CHROM_LENGTH - fragmentLength - MAX_DELETION_LENGTH );
+            int mateStart = start + fragmentLength - readLength;
+            SAMRecord read1 = simulateRead( header, "read" + pairId, start, false, pairId );
+            SAMRecord read2 = simulateRead( header, "read" + pairId, mateStart, true, pairId );
+            setMateInfo( read1, read2, true );
+            setMateInfo( read2, read1, false );
+            records.add( read1 );
+            records.add( read2 );
+        }
+
+        writeBam( bamFile, header, records, true );
+        for( SAMRecord record : records ) {
+            record.setAttribute( SAMRecordTag.ReadClass.toString(), null );
+            record.setAttribute( SAMRecordTag.MapCount.toString(), null );
+            record.setAttribute( SAMRecordTag.ReadPairId.toString(), null );
+            record.setAttribute( SAMRecordTag.ReadPairType.toString(), null );
+        }
+        writeBam( rawBamFile, header, records, false );
+    }
+
+
+    /**
+     * Simulates a read starting at the given position. Most reads are
+     * aligned without gaps, some contain a deletion, an insertion or soft
+     * clipped bases.
+     * <p>
+     * @return The read with all tags of an imported read
+     */
+    private SAMRecord simulateRead( SAMFileHeader header, String readName, int start, boolean isRevStrand, int pairId ) {
+        int type = random.nextInt( 100 );
+        int half = readLength / 2;
+        String cigar;
+        if( type < 5 ) {
+            cigar = half + "M" + (1 + random.nextInt( MAX_DELETION_LENGTH )) + "D" + (readLength - half) + "M";
+        } else if( type < 10 ) {
+            cigar = half + "M1I" + (readLength - half - 1) + "M";
+        } else if( type < 13 ) {
+            cigar = "5S" + (readLength - 5) + "M";
+        } else {
+            cigar = readLength + "M";
+        }
+
+        SAMRecord record = new SAMRecord( header );
+        record.setReadName( readName );
+        record.setReferenceIndex( 0 );
+        record.setAlignmentStart( start );
+        record.setCigarString( cigar );
+        record.setReadNegativeStrandFlag( isRevStrand );
+        record.setMappingQuality( 60 );
+
+        char[] readBases = new char[readLength];
+        byte[] baseQualities = new byte[readLength];
+        int mismatches = 0;
+        int readPos = 0;
+        int refPos = start;
+        for( CigarElement element : record.getCigar().getCigarElements() ) {
+            for( int i = 0; i < element.getLength(); ++i ) {
+                switch( element.getOperator() ) {
+                    case M:
+                        readBases[readPos] = simulateBase( refPos );
+                        mismatches += readBases[readPos] != refBases[refPos - 1] ? 1 : 0;
+                        ++readPos;
+                        ++refPos;
+                        break;
+                    case I:
+                        readBases[readPos++] = BASES[random.nextInt( BASES.length )];
+                        ++mismatches;
+                        break;
+                    case D:
+                        ++refPos;
+                        ++mismatches;
+                        break;
+                    default: //soft clipped
+                        readBases[readPos++] = BASES[random.nextInt( BASES.length )];
+                }
+            }
+        }
+        for( int i = 0; i < readLength; ++i ) {
+            baseQualities[i] = (byte) (20 + random.nextInt( 21 ));
+        }
+        record.setReadString( new String( readBases ) );
+        record.setBaseQualities( baseQualities );
+
+        MappingClass mappingClass = mismatches == 0 ? MappingClass.SINGLE_PERFECT_MATCH : MappingClass.SINGLE_BEST_MATCH;
+        record.setAttribute( SAMRecordTag.ReadClass.toString(), mappingClass.getType() );
+        record.setAttribute( SAMRecordTag.MapCount.toString(), 1 );
+        record.setAttribute( SAMRecordTag.ReadPairId.toString(), pairId );
+        record.setAttribute( SAMRecordTag.ReadPairType.toString(), ReadPairType.PERFECT_PAIR.getType() );
+        return record;
+    }
+
+
+    /**
+     * @param refPos reference position covered by a read
+     * <p>
+     * @return The read base for the position: The alternative base at SNP
+     *         positions for half of the reads, a random base for sequencing
+     *         errors and the reference base otherwise
+     */
+    private char simulateBase( int refPos ) {
+        char refBase = refBases[refPos - 1];
+        if( refPos % SNP_DISTANCE == 0 && random.nextBoolean() ) {
+            return BASES[(indexOf( refBase ) + 1) % BASES.length];
+        } else if( random.nextDouble() < ERROR_RATE ) {
+            return BASES[random.nextInt( BASES.length )];
+        }
+        return refBase;
+    }
+
+
+    private static int indexOf( char base ) {
+        for( int i = 0; i < BASES.length; ++i ) {
+            if( BASES[i] == base ) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+
+    private static void setMateInfo( SAMRecord record, SAMRecord mate, boolean isFirstOfPair ) {
+        record.setReadPairedFlag( true );
+        record.setProperPairFlag( true );
+        record.setFirstOfPairFlag( isFirstOfPair );
+        record.setSecondOfPairFlag( !isFirstOfPair );
+        record.setMateReferenceIndex( 0 );
+        record.setMateAlignmentStart( mate.getAlignmentStart() );
+        record.setMateNegativeStrandFlag( mate.getReadNegativeStrandFlag() );
+        int insertSize = mate.getAlignmentEnd() - record.getAlignmentStart() + 1;
+        record.setInferredInsertSize( isFirstOfPair ? insertSize : -(record.getAlignmentEnd() - mate.getAlignmentStart() + 1) );
+    }
+
+
+    private static void writeBam( File file, SAMFileHeader header, List<SAMRecord> records, boolean createIndex ) {
+        try( SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex( createIndex ).makeBAMWriter( header, false, file ) ) {
+            for( SAMRecord record : records ) {
+                writer.addAlignment( record );
+            }
+        }
+    }
+
+
+    /**
+     * @return The indexed fasta file containing the reference chromosome
+     */
+    public File getFastaFile() {
+        return fastaFile;
+    }
+
+
+    /**
+     * @return The coordinate sorted and indexed bam file, whose records carry
+     *         the classification tags of an imported track
+     */
+    public File getBamFile() {
+        return bamFile;
+    }
+
+
+    /**
+     * @return The bam file without classification tags, which serves as input
+     *         for the import. It is the only file of its directory.
+     */
+    public File getRawBamFile() {
+        return rawBamFile;
+    }
+
+
+    /**
+     * @param from first position of the sequence
+     * @param to   last position of the sequence
+     * <p>
+     * @return The reference sequence between the given positions
+     */
+    public String getRefSequence( int from, int to ) {
+        return new String( refBases, from - 1, to - from + 1 );
+    }
+
+
+    /**
+     * @return The average coverage depth of the simulated reads
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+
+    /**
+     * @return The length of each simulated read
+     */
+    public int getReadLength() {
+        return readLength;
+    }
+
+
+}
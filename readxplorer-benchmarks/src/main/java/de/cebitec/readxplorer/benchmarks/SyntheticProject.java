@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.benchmarks;
+
+
+import de.cebitec.readxplorer.api.enums.IntervalRequestData;
+import de.cebitec.readxplorer.databackend.IntervalRequest;
+import de.cebitec.readxplorer.databackend.ParametersReadClasses;
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+
+/**
+ * A temporary ReadXplorer project for the benchmarks. It generates the
+ * {@link SyntheticData} in a temporary directory and provides the persistent
+ * reference and track of the data, as the ReadXplorer data backend would. The
+ * reference is created directly, so no project database is needed.
+ * {@link #close()} deletes all files again.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class SyntheticProject implements AutoCloseable {
+
+    /**
+     * Start of the region requested by the benchmarks.
+     */
+    public static final int REQUEST_FROM = 20001;
+    /**
+     * Stop of the region requested by the benchmarks. Together with
+     * {@link #REQUEST_FROM} it spans 20 kbp, a typical viewer or analysis
+     * tile.
+     */
+    public static final int REQUEST_TO = 40000;
+
+    private static final int REF_ID = 1;
+    private static final int CHROM_ID = 1;
+    private static final int TRACK_ID = 1;
+
+    private final File dir;
+    private final SyntheticData data;
+    private final PersistentReference reference;
+    private final PersistentTrack track;
+
+
+    /**
+     * A temporary ReadXplorer project with synthetic data of the given depth
+     * and read length.
+     * <p>
+     * @param depth      average coverage depth of the simulated reads
+     * @param readLength length of each simulated read
+     * <p>
+     * @throws IOException if the data cannot be written
+     */
+    public SyntheticProject( int depth, int readLength ) throws IOException {
+        this.dir = Files.createTempDirectory( "readxplorer-benchmark" ).toFile();
+        this.data = new SyntheticData( dir, depth, readLength );
+
+        Timestamp timestamp = new Timestamp( System.currentTimeMillis() );
+        Map<Integer, PersistentChromosome> chromosomes = new HashMap<>();
+        chromosomes.put( CHROM_ID, new PersistentChromosome( CHROM_ID, 1, REF_ID, SyntheticData.CHROM_NAME, SyntheticData.CHROM_LENGTH ) );
+        this.reference = new PersistentReference( REF_ID, CHROM_ID, "Synthetic reference", "Benchmark reference", timestamp,
+                                                  data.getFastaFile(), chromosomes, true );
+        this.track = new PersistentTrack( TRACK_ID, data.getBamFile().getAbsolutePath(), "Synthetic track", timestamp, REF_ID, 0 );
+    }
+
+
+    /**
+     * @param diffsAndGapsNeeded true, if the diffs and gaps shall be computed
+     * @param desiredData        the data to request
+     * <p>
+     * @return A request for the benchmark region, which includes all read
+     *         classes
+     */
+    public IntervalRequest createRequest( boolean diffsAndGapsNeeded, IntervalRequestData desiredData ) {
+        return new IntervalRequest( REQUEST_FROM, REQUEST_TO, CHROM_ID, null, diffsAndGapsNeeded, desiredData, new ParametersReadClasses() );
+    }
+
+
+    /**
+     * @return All records of the classified bam file overlapping the
+     *         benchmark region
+     * <p>
+     * @throws IOException if the bam file cannot be read
+     */
+    public List<SAMRecord> queryRecords() throws IOException {
+        List<SAMRecord> records = new ArrayList<>();
+        try( SamReader samReader = SamReaderFactory.makeDefault().open( data.getBamFile() );
+             SAMRecordIterator samItor = samReader.query( SyntheticData.CHROM_NAME, REQUEST_FROM, REQUEST_TO, false ) ) {
+            while( samItor.hasNext() ) {
+                records.add( samItor.next() );
+            }
+        }
+        return records;
+    }
+
+
+    /**
+     * @return The synthetic data of this project
+     */
+    public SyntheticData getData() {
+        return data;
+    }
+
+
+    /**
+     * @return The reference of this project
+     */
+    public PersistentReference getReference() {
+        return reference;
+    }
+
+
+    /**
+     * @return The track of this project, which belongs to the classified bam
+     *         file of the synthetic data
+     */
+    public PersistentTrack getTrack() {
+        return track;
+    }
+
+
+    /**
+     * @return The id of the only chromosome of the reference
+     */
+    public int getChromId() {
+        return CHROM_ID;
+    }
+
+
+    /**
+     * Deletes all files of the project.
+     * <p>
+     * @throws IOException if a file cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        try( Stream<Path> paths = Files.walk( dir.toPath() ) ) {
+            for( Path path : (Iterable<Path>) paths.sorted( Comparator.reverseOrder() )::iterator ) {
+                Files.delete( path );
+            }
+        }
+    }
+
+
+}
@@ -39,7 +39,10 @@ import de.cebitec.readxplorer.api.enums.Strand;
 import de.cebitec.readxplorer.databackend.ParametersReadClasses;
 import de.cebitec.readxplorer.databackend.connector.DatabaseException;
 import de.cebitec.readxplorer.databackend.connector.ProjectConnector;
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
+import de.cebitec.readxplorer.exporter.tables.StreamingXlsxExporter;
+import de.cebitec.readxplorer.parser.ImportJobScheduler;
 import de.cebitec.readxplorer.parser.ReadPairJobContainer;
 import de.cebitec.readxplorer.parser.TrackJob;
 import de.cebitec.readxplorer.parser.common.ParsedReference;
@@ -64,22 +67,15 @@ import java.nio.file.Paths;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import jxl.Sheet;
-import jxl.Workbook;
-import jxl.read.biff.BiffException;
-import jxl.write.Blank;
-import jxl.write.Label;
-import jxl.write.WritableCell;
-import jxl.write.WritableSheet;
-import jxl.write.WritableWorkbook;
-import jxl.write.WriteException;
 import org.netbeans.api.sendopts.CommandException;
 import org.netbeans.spi.sendopts.Arg;
 import org.netbeans.spi.sendopts.ArgsProcessor;
@@ -292,7 +288,7 @@ public final class CommandLineProcessor implements ArgsProcessor {
             importPairedEndReads( readFiles, pairedEndReadFiles, referenceResult, es, ps );
         } else {
             // import single reads
-            importReads( readFiles, referenceResult, es, ps );
+            importReads( readFiles, referenceResult, ps );
         }
 
 
@@ -472,6 +468,13 @@ public final class CommandLineProcessor implements ArgsProcessor {
          * Create a thread pool. Number of worker threads are based on the
          * threadAmount argument, default is 1 (no multithreading).
          */
+        return Executors.newFixedThreadPool( getThreadAmount(), new ReadXplorerCliThreadFactory() );
+
+    }
+
+
+    private int getThreadAmount() throws CommandException {
+
         final int noThreads;
         if( threadAmountArg != null ) {
             try {
@@ -486,7 +489,7 @@ public final class CommandLineProcessor implements ArgsProcessor {
             noThreads = 1;
         }
 
-        return Executors.newFixedThreadPool( noThreads, new ReadXplorerCliThreadFactory() );
+        return noThreads;
 
     }
 
@@ -524,16 +527,24 @@ public final class CommandLineProcessor implements ArgsProcessor {
     }
 
 
-    private void importReads( final File[] trackFiles, final ImportReferenceResult referenceResult, final ExecutorService es, final PrintStream ps ) throws CommandException {
+    private void importReads( final File[] trackFiles, final ImportReferenceResult referenceResult, final PrintStream ps ) throws CommandException {
 
         printInfo( ps, null );
         printFine( ps, "submitted jobs to import read files..." );
 
         final ProjectConnector pc = ProjectConnector.getInstance();
         try {
+            // the import threads must not access the db, so the chromosome lengths are read here
+            final Map<String, Integer> chromLengthMap = new HashMap<>();
+            int refId = referenceResult.getParsedReference().getID();
+            for( PersistentChromosome chrom : pc.getRefGenomeConnector( refId ).getChromosomesForGenome().values() ) {
+                chromLengthMap.put( chrom.getName(), chrom.getLength() );
+            }
+
             int latestTrackId = pc.getLatestTrackId();
-            // submit track parse jobs for (concurrent) execution
-            List<Future<ImportTrackResults>> futures = new ArrayList<>( trackFiles.length );
+            // add track parse jobs for concurrent execution
+            final ImportJobScheduler<ImportTrackResults> scheduler = new ImportJobScheduler<>( getThreadAmount() );
+            final Map<TrackJob, Integer> trackNumbers = new HashMap<>( trackFiles.length );
             for( int i = 0; i < trackFiles.length; i++ ) {
 
                 File trackFile = trackFiles[i];
@@ -545,16 +556,16 @@ public final class CommandLineProcessor implements ArgsProcessor {
                                                   new Timestamp( System.currentTimeMillis() ) );
                 latestTrackId++;
 
-                futures.add( es.submit( new ImportTrackCallable( referenceResult, trackJob ) ) );
+                scheduler.addJob( trackJob, new ImportTrackCallable( trackJob, chromLengthMap ) );
+                trackNumbers.put( trackJob, i + 1 );
                 printFine( ps, "\t" + (i + 1) + ": " + trackFile );
 
             }
 
-            // store parsed tracks sequently to db
+            // store parsed tracks sequently to db in the order the imports finish
             printInfo( ps, "imported read files:" );
 
-            for( int i = 0; i < futures.size(); i++ ) {
-                ImportTrackResults result = futures.get( i ).get();
+            scheduler.importTracks( (trackJob, result) -> {
                 ParsedTrack pt = result.getParsedTrack();
 
                 // store track entry in db
@@ -562,19 +573,19 @@ public final class CommandLineProcessor implements ArgsProcessor {
                 pc.storeTrackStatistics( pt.getStatsContainer(), pt.getID() );
 
                 // print result information
+                int trackNumber = trackNumbers.get( trackJob );
                 if( result.isSuccessful() ) {
-                    printInfo( ps, "\t" + (i + 1) + " " + result.getFileName() );
+                    printInfo( ps, "\t" + trackNumber + " " + result.getFileName() );
                     for( String msg : result.getOutput() ) {
                         printFine( ps, "\t\t" + msg );
                     }
                 } else {
-                    printInfo( ps, "\t" + (i + 1) + " " + result.getFileName() + " crashed!" );
+                    printInfo( ps, "\t" + trackNumber + " " + result.getFileName() + " crashed!" );
                     for( String msg : result.getOutput() ) {
                         printInfo( ps, "\t\t" + msg );
                     }
                 }
-
-            }
+            } );
 
         } catch( InterruptedException | ExecutionException | DatabaseException ex ) { // something severe happened, stop everything!
             LOG.error( ex.getMessage(), ex );
@@ -935,30 +946,10 @@ public final class CommandLineProcessor implements ArgsProcessor {
     private static void mergeAnlaysisFiles( final PrintStream ps, final String analysisType, final FileFilter fileFilter ) throws CommandException {
 
         try {
-            LOG.debug( "analysesType={0}, fileFilter={1}", analysisType, fileFilter );
-            File analysesFile = new File( analysisType + "-analyses.xls" );
-            LOG.debug( "analyses file: {}", analysesFile );
-            WritableWorkbook wwb = Workbook.createWorkbook( analysesFile );
-            int idxSheet = 0;
-            for( File analysisFile : (new File( "." )).getCanonicalFile().listFiles( fileFilter ) ) {
-                LOG.debug( "\tanalysis file: {}", analysisFile );
-                Workbook wb = Workbook.getWorkbook( analysisFile );
-                String analysisName = analysisFile.getName().replace( analysisType + "-", "" ).replace( ".xls", "" );
-                if( idxSheet == 0 ) { // copy analysis statistics
-                    copyExcelSheet( wwb, wb.getSheet( 1 ), idxSheet, "statistics" );
-                    idxSheet++;
-                }
-
-                copyExcelSheet( wwb, wb.getSheet( 0 ), idxSheet, analysisName );
-                idxSheet++;
-                wb.close();
-                analysisFile.delete(); // delete unnecessary analysis file
-            }
-            wwb.write();
-            wwb.close();
+            File analysesFile = mergeAnalysisFiles( new File( "." ).getCanonicalFile(), analysisType, fileFilter );
             printInfo( ps, "\t" + analysisType + ": " + analysesFile.getName() );
 
-        } catch( IOException | BiffException | IndexOutOfBoundsException | WriteException ex ) {
+        } catch( IOException | IndexOutOfBoundsException ex ) {
             LOG.error( "ERROR: merge " + analysisType + " analysis files: " + ex.getMessage(), ex );
             CommandException ce = new CommandException( 1, "Merge of " + analysisType + " analysis result files failed!" );
             ce.initCause( ex );
@@ -968,28 +959,48 @@ public final class CommandLineProcessor implements ArgsProcessor {
     }
 
 
-    private static void copyExcelSheet( WritableWorkbook wwb, Sheet sourceSheet, int idxSheet, String sheetName ) throws WriteException {
-
-        final WritableSheet ws = wwb.createSheet( sheetName, idxSheet );
-        final int noRows = sourceSheet.getRows();
-        final int noCols = sourceSheet.getColumns();
-        for( int idxRow = 0; idxRow < noRows; idxRow++ ) {
-            for( int idxCol = 0; idxCol < noCols; idxCol++ ) {
-                WritableCell wc;
-                String cellCntnt = sourceSheet.getCell( idxCol, idxRow ).getContents();
-                if( cellCntnt != null && !cellCntnt.isEmpty() ) {
-                    try {
-                        double val = Double.parseDouble( cellCntnt );
-                        wc = new jxl.write.Number( idxCol, idxRow, val );
-                    } catch( NumberFormatException nfe ) {
-                        wc = new Label( idxCol, idxRow, cellCntnt );
-                    }
-                } else {
-                    wc = new Blank( idxCol, idxRow );
+    /**
+     * Merges all analysis result files of an analysis type in the given
+     * directory into a single workbook and deletes the merged files. The
+     * workbook contains the statistics sheet of the first analysis file and
+     * the result sheets of all analysis files in the order of their names.
+     * <p>
+     * @param directory    the directory containing the analysis files
+     * @param analysisType the analysis type, which is the prefix of the
+     *                     analysis files
+     * @param fileFilter   filter accepting the analysis files
+     * <p>
+     * @return The merged workbook file
+     * <p>
+     * @throws IOException if an analysis file cannot be read or the workbook
+     *                     cannot be written
+     */
+    static File mergeAnalysisFiles( final File directory, final String analysisType, final FileFilter fileFilter ) throws IOException {
+
+        LOG.debug( "analysesType={0}, fileFilter={1}", analysisType, fileFilter );
+        File analysesFile = new File( directory, analysisType + "-analyses." + AnalysisFileFilter.SUFFIX );
+        LOG.debug( "analyses file: {}", analysesFile );
+        File[] analysisFiles = directory.listFiles( fileFilter );
+        Arrays.sort( analysisFiles );
+        StreamingXlsxExporter exporter = new StreamingXlsxExporter( null );
+        exporter.open( analysesFile );
+        try {
+            boolean first = true;
+            for( File analysisFile : analysisFiles ) {
+                LOG.debug( "\tanalysis file: {}", analysisFile );
+                String analysisName = analysisFile.getName().replace( analysisType + "-", "" ).replace( "." + AnalysisFileFilter.SUFFIX, "" );
+                if( first ) { // copy analysis statistics
+                    exporter.copySheet( analysisFile, 1, "statistics" );
+                    first = false;
                 }
-                ws.addCell( wc );
+
+                exporter.copySheet( analysisFile, 0, analysisName );
+                analysisFile.delete(); // delete unnecessary analysis file
             }
+        } finally {
+            exporter.close();
         }
+        return analysesFile;
 
     }
 
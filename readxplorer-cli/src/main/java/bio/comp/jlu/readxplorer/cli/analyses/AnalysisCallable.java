@@ -20,25 +20,13 @@ package bio.comp.jlu.readxplorer.cli.analyses;
 
 import bio.comp.jlu.readxplorer.cli.analyses.AnalysisCallable.AnalysisResult;
 import de.cebitec.readxplorer.databackend.dataobjects.DataVisualisationI;
-import de.cebitec.readxplorer.utils.UrlWithTitle;
+import de.cebitec.readxplorer.exporter.tables.ExportDataI;
+import de.cebitec.readxplorer.exporter.tables.StreamingXlsxExporter;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 import java.util.concurrent.Callable;
-import jxl.Workbook;
-import jxl.WorkbookSettings;
-import jxl.write.Label;
-import jxl.write.NumberFormats;
-import jxl.write.WritableCellFormat;
-import jxl.write.WritableFont;
-import jxl.write.WritableHyperlink;
-import jxl.write.WritableSheet;
-import jxl.write.WritableWorkbook;
-import jxl.write.WriteException;
-import jxl.write.biff.RowsExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,14 +43,6 @@ public abstract class AnalysisCallable implements Callable<AnalysisResult> {
 
     private static final Logger LOG = LoggerFactory.getLogger( AnalysisCallable.class.getName() );
 
-    private static final String TABLE_DOUBLE = "DOUBLE";
-    private static final String TABLE_FLOAT = "FLOAT";
-    private static final String TABLE_INTEGER = "INTEGER";
-    private static final String TABLE_LABEL = "LABEL";
-    private static final String TABLE_URL_W_TITLE = "LINK";
-    private static final String TABLE_STRING = "STRING";
-    private static final String UNKNOWN = "UNKNOWN";
-
     protected final boolean verbosity;
 
     protected final AnalysisResult result;
@@ -156,154 +136,18 @@ public abstract class AnalysisCallable implements Callable<AnalysisResult> {
     }
 
 
-    protected static final void writeFile( File file, List<String> sheetNames, List<List<String>> headers, List<List<List<Object>>> exportData ) throws FileNotFoundException, IOException, WriteException, OutOfMemoryError {
-
-        WorkbookSettings wbSettings = new WorkbookSettings();
-        wbSettings.setLocale( new Locale( "en", "EN" ) );
-
-        WritableWorkbook workbook = Workbook.createWorkbook( file, wbSettings );
-        WritableSheet sheet = null;
-        int totalPage = 0;
-//        LOG.debug( "# headers={}, # data={}", headers.size(), exportData.size() );
-        for( int i = 0; i < exportData.size(); i++ ) {
-            String sheetName = sheetNames.get( i );
-            List<List<Object>> sheetData = exportData.get( i );
-            List<String> headerRow = headers.get( i );
-//            LOG.debug( "\tsheet name={}, # header={}, # data={}", sheetName, headerRow.size(), sheetData.size() );
-            int currentPage = 0;
-            if( sheetData.isEmpty() ) { // prevent Excel export from looping infinitely
-                LOG.warn( "no data to export! Skip sheet data." );
-                sheet = workbook.createSheet( sheetName, totalPage );
-                totalPage++;
-                int col = 0;
-                for( String header : headerRow ) {
-                    addCell( sheet, TABLE_LABEL, header, col, 0 );
-                    col++;
-                }
-                continue;
-            }
-            boolean dataLeft = true;
-            while( dataLeft ) { //only 65536 rows allowed per sheet in xls format
-                if( !sheetData.isEmpty() ) {
-                    if( currentPage > 0 ) {
-                        sheetName += "I";
-                        currentPage++;
-                    }
-                    sheet = workbook.createSheet( sheetName, totalPage );
-                    totalPage++;
-                }
-
-                if( sheet != null ) {
-                    dataLeft = fillSheet( sheet, sheetData, headerRow );
-                }
-//                LOG.debug( "\t\tsheet name={}, # data={}, data-left={}", sheetName, sheetData.size(), dataLeft );
-            }
-        }
-        workbook.write();
-        workbook.close();
-
-    }
-
-
-    private static boolean fillSheet( WritableSheet sheet, List<List<Object>> sheetData, List<String> headerRow ) throws OutOfMemoryError, WriteException {
-
-        boolean dataLeft = false;
-        int row = 0;
-        int col = 0;
-
-        for( String header : headerRow ) {
-            addCell( sheet, TABLE_LABEL, header, col, row );
-            col++;
-        }
-        row++;
-//        LOG.debug( "\t\t\t# sheet-data={}", sheetData.size() );
-        for( List<Object> exportRow : sheetData ) {
-            col = 0;
-            for( Object entry : exportRow ) {
-                String objectType = getObjectType( entry );
-                try {
-                    addCell( sheet, objectType, entry, col, row );
-                    col++;
-                } catch( RowsExceededException e ) {
-                    dataLeft = true;
-                    break;
-                }
-            }
-            if( dataLeft ) {
-                break;
-            }
-            row++;
-        }
-
-        if( dataLeft ) {
-            for( int i = 0; i < row; i++ ) {
-                sheetData.remove( 0 );
-            }
-        }
-
-        return dataLeft;
-
-    }
-
-
-    private static String getObjectType( Object entry ) {
-
-        if( entry instanceof Integer || entry instanceof Byte || entry instanceof Long ) {
-            return TABLE_INTEGER;
-        } else if( entry instanceof String || entry instanceof Character || entry instanceof CharSequence ) {
-            return TABLE_STRING;
-        } else if( entry instanceof Double ) {
-            return TABLE_DOUBLE;
-        } else if( entry instanceof Float ) {
-            return TABLE_FLOAT;
-        } else if( entry instanceof UrlWithTitle ) {
-            return TABLE_URL_W_TITLE;
-        } else {
-            return UNKNOWN;
-        }
-
-    }
-
+    /**
+     * Writes the given analysis result to an xlsx file. The rows are streamed
+     * to the file, so the complete result table is never held in memory.
+     *
+     * @param file       the file in which to write the result
+     * @param exportData the analysis result to export
+     *
+     * @throws IOException
+     */
+    protected static final void writeFile( File file, ExportDataI exportData ) throws IOException {
 
-    private static void addCell( WritableSheet sheet, String celltype, Object cellvalue, int column, int row ) throws WriteException, OutOfMemoryError {
-
-        if( cellvalue == null ) {
-            sheet.addCell( new Label( column, row, "n/a" ) );
-        } else {
-            switch( celltype ) {
-                case TABLE_LABEL:
-                    WritableCellFormat header = new WritableCellFormat( new WritableFont( WritableFont.ARIAL, 10, WritableFont.BOLD ) );
-                    Label label = new Label( column, row, (String) cellvalue, header );
-                    sheet.addCell( label );
-                    break;
-                case TABLE_STRING:
-                    cellvalue = cellvalue instanceof Character ? String.valueOf( cellvalue ) : cellvalue;
-                    cellvalue = cellvalue instanceof CharSequence ? String.valueOf( cellvalue ) : cellvalue;
-                    cellvalue = cellvalue instanceof Double ? cellvalue.toString() : cellvalue;
-                    sheet.addCell( new Label( column, row, (String) cellvalue, new WritableCellFormat( new WritableFont( WritableFont.ARIAL, 10 ) ) ) );
-                    break;
-                case TABLE_INTEGER:
-                    sheet.addCell( new jxl.write.Number( column, row, Integer.parseInt( cellvalue.toString() ), new WritableCellFormat( NumberFormats.INTEGER ) ) );
-                    break;
-                case TABLE_DOUBLE:
-                    sheet.addCell( new jxl.write.Number( column, row, Double.parseDouble( cellvalue.toString() ) ) );
-                    break;
-                case TABLE_FLOAT:
-                    sheet.addCell( new jxl.write.Number( column, row, Float.parseFloat( cellvalue.toString() ), new WritableCellFormat( NumberFormats.FLOAT ) ) );
-                    break;
-                case TABLE_URL_W_TITLE:
-                    UrlWithTitle titleUrl = (UrlWithTitle) cellvalue;
-                    WritableHyperlink link = new WritableHyperlink( column, row, titleUrl.getUrl() );
-                    link.setDescription( titleUrl.getTitle() );
-                    sheet.addHyperlink( link );
-                    break;
-                case UNKNOWN:
-                    sheet.addCell( new Label( column, row, cellvalue.toString(), new WritableCellFormat( new WritableFont( WritableFont.ARIAL, 10 ) ) ) );
-                    break;
-                default:
-                    break;
-            }
-        }
+        new StreamingXlsxExporter( null ).writeFile( file, exportData );
 
     }
 
@@ -19,6 +19,7 @@ package bio.comp.jlu.readxplorer.cli.analyses;
 
 
 import bio.comp.jlu.readxplorer.cli.filefilter.AnalysisFileFilter;
+import de.cebitec.readxplorer.api.enums.IntervalRequestData;
 import de.cebitec.readxplorer.databackend.AnalysesHandler;
 import de.cebitec.readxplorer.databackend.connector.DatabaseException;
 import de.cebitec.readxplorer.databackend.connector.ProjectConnector;
@@ -32,7 +33,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import jxl.write.WriteException;
 import org.netbeans.api.sendopts.CommandException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -98,6 +98,8 @@ public final class SNPAnalysisCallable extends AnalysisCallable {
             analysisHandler.registerObserver( analysisSNPs );
             analysisHandler.setCoverageNeeded( true );
             analysisHandler.setDiffsAndGapsNeeded( true );
+            analysisHandler.setDesiredData( IntervalRequestData.Pileup );
+            analysisHandler.setMinBaseQuality( parameterSet.getMinBaseQuality() );
             analysisHandler.startAnalysis();
 
             threadingHelper.join(); // blocks until analysisHandler finishes its job
@@ -112,11 +114,11 @@ public final class SNPAnalysisCallable extends AnalysisCallable {
             LOG.trace( "store SNP results for " + trackFileName + "..." );
             result.addOutput( "store results..." );
             File resultFile = new File( "snp-" + trackFileName + '.' + AnalysisFileFilter.SUFFIX );
-            writeFile( resultFile, snpDetectionResult.dataSheetNames(), snpDetectionResult.dataColumnDescriptions(), snpDetectionResult.dataToExcelExportList() );
+            writeFile( resultFile, snpDetectionResult );
 
             result.setResultFile( resultFile );
 
-        } catch( IOException | WriteException | InterruptedException | DatabaseException ex ) {
+        } catch( IOException | InterruptedException | DatabaseException ex ) {
             LOG.error( ex.getMessage(), ex );
             result.addOutput( "Error: " + ex.getMessage() );
         } catch( OutOfMemoryError ome ) {
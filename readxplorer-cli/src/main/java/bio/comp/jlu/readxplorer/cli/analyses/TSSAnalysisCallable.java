@@ -35,7 +35,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import jxl.write.WriteException;
 import org.netbeans.api.sendopts.CommandException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -123,10 +122,10 @@ public class TSSAnalysisCallable extends AnalysisCallable {
 
             // prepare/write/set tssResult object
             TssUtils.processResultForExport( tssResult, persistentTrack.getRefGenID() );
-            writeFile( resultFile, tssResult.dataSheetNames(), tssResult.dataColumnDescriptions(), tssResult.dataToExcelExportList() );
+            writeFile( resultFile, tssResult );
             result.setResultFile( resultFile );
 
-        } catch( IOException | WriteException | InterruptedException | DatabaseException ex ) {
+        } catch( IOException | InterruptedException | DatabaseException ex ) {
             LOG.error( ex.getMessage(), ex );
             result.addOutput( "Error: " + ex.getMessage() );
         } catch( OutOfMemoryError ome ) {
@@ -27,7 +27,7 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Analysis File Filter. This <code>FileFilter</code> implementation only
- * accepts excel (.xls) files which names contain a certain analysis type prefix
+ * accepts excel (.xlsx) files which names contain a certain analysis type prefix
  * e.g. "snp".
  *
  * @author Oliver Schwengers <oliver.schwengers@computational.bio.uni-giessen.de
@@ -36,7 +36,7 @@ public class AnalysisFileFilter implements FileFilter {
 
     private static final Logger LOG = LoggerFactory.getLogger( AnalysisFileFilter.class.getName() );
 
-    public static final String SUFFIX = "xls";
+    public static final String SUFFIX = "xlsx";
 
     private static final String DOT_SUFFIX = '.' + SUFFIX;
     private static final String MERGED_RESULTS_FILE = "analyses" + DOT_SUFFIX;
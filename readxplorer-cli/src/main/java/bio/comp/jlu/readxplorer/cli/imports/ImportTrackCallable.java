@@ -18,14 +18,12 @@
 package bio.comp.jlu.readxplorer.cli.imports;
 
 
-import bio.comp.jlu.readxplorer.cli.imports.ImportReferenceCallable.ImportReferenceResult;
 import bio.comp.jlu.readxplorer.cli.imports.ImportTrackCallable.ImportTrackResults;
-import de.cebitec.readxplorer.databackend.connector.ProjectConnector;
-import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
 import de.cebitec.readxplorer.parser.TrackJob;
 import de.cebitec.readxplorer.parser.common.ParsedTrack;
 import de.cebitec.readxplorer.parser.common.ParsingException;
 import de.cebitec.readxplorer.parser.mappings.MappingParserI;
+import de.cebitec.readxplorer.parser.mappings.SamBamParser;
 import de.cebitec.readxplorer.parser.mappings.SamBamStatsParser;
 import de.cebitec.readxplorer.utils.GeneralUtils;
 import de.cebitec.readxplorer.utils.StatsContainer;
@@ -33,7 +31,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -53,20 +50,21 @@ public final class ImportTrackCallable implements Callable<ImportTrackResults> {
 
     private static final Logger LOG = LoggerFactory.getLogger( ImportTrackCallable.class.getName() );
 
-    private final ImportReferenceResult referenceResult;
     private final TrackJob trackJob;
+    private final Map<String, Integer> chromLengthMap;
 
 
     /**
      * Reads CLI Importer
      *
-     * @param referenceResult imported reference genome as mapping target
-     * @param rpjc <code>TrackJob</code> with import information
+     * @param trackJob       <code>TrackJob</code> with import information
+     * @param chromLengthMap chromosome names and lengths of the reference
+     *                       genome, which is the mapping target
      */
-    public ImportTrackCallable( ImportReferenceResult referenceResult, TrackJob trackJob ) {
+    public ImportTrackCallable( TrackJob trackJob, Map<String, Integer> chromLengthMap ) {
 
-        this.referenceResult = referenceResult;
         this.trackJob = trackJob;
+        this.chromLengthMap = chromLengthMap;
 
     }
 
@@ -82,12 +80,6 @@ public final class ImportTrackCallable implements Callable<ImportTrackResults> {
             result.addOutput( "create import objects..." );
             final File trackFile = trackJob.getFile();
             final MappingParserI mappingParser = trackJob.getParser();
-            final Map<String, Integer> chromLengthMap = new HashMap<>();
-            int refId = referenceResult.getParsedReference().getID();
-            Map<Integer, PersistentChromosome> chromIdMap = ProjectConnector.getInstance().getRefGenomeConnector( refId ).getChromosomesForGenome();
-            for( PersistentChromosome chrom : chromIdMap.values() ) {
-                chromLengthMap.put( chrom.getName(), chrom.getLength() );
-            }
             final StatsContainer statsContainer = new StatsContainer();
             statsContainer.prepareForTrack();
 
@@ -104,18 +96,26 @@ public final class ImportTrackCallable implements Callable<ImportTrackResults> {
             LOG.trace( "parse read file: {0}...", trackFile.getName() );
             result.addOutput( "parse..." );
             mappingParser.setStatsContainer( statsContainer );
-            mappingParser.parseInput( trackJob, chromLengthMap );
+            SamBamStatsParser statsParser = new SamBamStatsParser();
+            statsParser.setStatsContainer( statsContainer );
+            ParsedTrack track = null;
+            if( mappingParser instanceof SamBamParser && SamBamParser.isFusedImportEnabled() ) {
+                // classification, extended bam file, index and statistics in a single pass
+                track = ((SamBamParser) mappingParser).parseInputAndCreateStats( trackJob, chromLengthMap, statsParser );
+            } else {
+                mappingParser.parseInput( trackJob, chromLengthMap );
+            }
             if( success ) {
                 GeneralUtils.deleteOldWorkFile( lastWorkFile );
             } // only when we reach this line without exceptions and conversion was successful
             trackFile.setWritable( true );
 
-            // file needs to be sorted by coordinate for efficient calculation
-            LOG.trace( "create classification statistics..." );
-            result.addOutput( "create statistics..." );
-            SamBamStatsParser statsParser = new SamBamStatsParser();
-            statsParser.setStatsContainer( statsContainer );
-            ParsedTrack track = statsParser.createTrackStats( trackJob, chromLengthMap );
+            if( track == null ) {
+                // file needs to be sorted by coordinate for efficient calculation
+                LOG.trace( "create classification statistics..." );
+                result.addOutput( "create statistics..." );
+                track = statsParser.createTrackStats( trackJob, chromLengthMap );
+            }
 
             LOG.trace( "parsed read file: {0}", trackFile.getName() );
             result.addOutput( "parsed read file " + trackFile.getName() );
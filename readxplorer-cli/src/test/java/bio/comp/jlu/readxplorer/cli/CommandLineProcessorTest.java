@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2015 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package bio.comp.jlu.readxplorer.cli;
+
+
+import bio.comp.jlu.readxplorer.cli.analyses.CLIAnalyses;
+import bio.comp.jlu.readxplorer.cli.filefilter.AnalysisFileFilter;
+import de.cebitec.readxplorer.exporter.tables.ExportDataI;
+import de.cebitec.readxplorer.exporter.tables.StreamingXlsxExporter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of merging the analysis result files of the command line interface.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class CommandLineProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    /**
+     * Test of mergeAnalysisFiles method, of class CommandLineProcessor. The
+     * merged workbook contains the statistics sheet of the first analysis file
+     * and the result sheets of all analysis files of the analysis type in the
+     * order of their names. The sheets are copied unchanged, the merged
+     * analysis files are deleted and all other files are kept.
+     */
+    @Test
+    public void testMergeAnalysisFiles() throws IOException {
+        System.out.println( "mergeAnalysisFiles" );
+        File trackB = writeAnalysisFile( "snp-trackB.xlsx", "B" );
+        File trackA = writeAnalysisFile( "snp-trackA.xlsx", "A" );
+        File otherAnalysis = writeAnalysisFile( "tss-trackA.xlsx", "T" );
+        File otherFile = folder.newFile( "snp-notes.txt" );
+        byte[] statisticsA = readEntry( trackA, "xl/worksheets/sheet2.xml" );
+        byte[] resultsA = readEntry( trackA, "xl/worksheets/sheet1.xml" );
+        byte[] resultsB = readEntry( trackB, "xl/worksheets/sheet1.xml" );
+
+        File merged = CommandLineProcessor.mergeAnalysisFiles( folder.getRoot(), "snp", new AnalysisFileFilter( CLIAnalyses.SNP ) );
+
+        assertEquals( new File( folder.getRoot(), "snp-analyses.xlsx" ), merged );
+        assertEquals( "<sheet name=\"statistics\" sheetId=\"1\" r:id=\"rId1\"/>"
+                      + "<sheet name=\"trackA\" sheetId=\"2\" r:id=\"rId2\"/>"
+                      + "<sheet name=\"trackB\" sheetId=\"3\" r:id=\"rId3\"/>",
+                      readSheetElements( merged ) );
+        assertArrayEquals( statisticsA, readEntry( merged, "xl/worksheets/sheet1.xml" ) );
+        assertArrayEquals( resultsA, readEntry( merged, "xl/worksheets/sheet2.xml" ) );
+        assertArrayEquals( resultsB, readEntry( merged, "xl/worksheets/sheet3.xml" ) );
+        assertFalse( trackA.exists() );
+        assertFalse( trackB.exists() );
+        assertTrue( otherAnalysis.exists() );
+        assertTrue( otherFile.exists() );
+    }
+
+
+    /**
+     * Writes an analysis result file with a result and a statistics sheet.
+     * <p>
+     * @param fileName the name of the file
+     * @param track    the track name written into the rows of the file
+     * <p>
+     * @return The written file
+     */
+    private File writeAnalysisFile( String fileName, final String track ) throws IOException {
+        File file = new File( folder.getRoot(), fileName );
+        new StreamingXlsxExporter( null ).writeFile( file, new ExportDataI() {
+
+            @Override
+            public List<String> dataSheetNames() {
+                return Arrays.asList( "SNP Table", "Statistics" );
+            }
+
+
+            @Override
+            public List<List<String>> dataColumnDescriptions() {
+                return Arrays.asList( Arrays.asList( "Position", "Track" ), Collections.singletonList( "Statistics" ) );
+            }
+
+
+            @Override
+            public List<List<List<Object>>> dataToExcelExportList() {
+                List<List<Object>> results = new ArrayList<>();
+                for( int i = 1; i <= 3; ++i ) {
+                    results.add( Arrays.<Object>asList( i * 100, track ) );
+                }
+                List<List<Object>> statistics = Collections.singletonList( Arrays.<Object>asList( "Track " + track, 3 ) );
+                return Arrays.asList( results, statistics );
+            }
+
+
+        } );
+        return file;
+    }
+
+
+    private static String readSheetElements( File workbookFile ) throws IOException {
+        String workbook = new String( readEntry( workbookFile, "xl/workbook.xml" ), StandardCharsets.UTF_8 );
+        return workbook.substring( workbook.indexOf( "<sheets>" ) + 8, workbook.indexOf( "</sheets>" ) );
+    }
+
+
+    private static byte[] readEntry( File workbookFile, String entryName ) throws IOException {
+        try( ZipFile workbook = new ZipFile( workbookFile ) ) {
+            ZipEntry entry = workbook.getEntry( entryName );
+            assertNotNull( entryName, entry );
+            try( InputStream in = workbook.getInputStream( entry ) ) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int length;
+                while( (length = in.read( buffer )) > 0 ) {
+                    out.write( buffer, 0, length );
+                }
+                return out.toByteArray();
+            }
+        }
+    }
+
+
+}
@@ -22,15 +22,19 @@ import de.cebitec.readxplorer.api.enums.IntervalRequestData;
 import de.cebitec.readxplorer.api.objects.JobI;
 import de.cebitec.readxplorer.databackend.connector.TrackConnector;
 import de.cebitec.readxplorer.databackend.dataobjects.DataVisualisationI;
+import de.cebitec.readxplorer.databackend.dataobjects.MappingBatchResult;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
 import de.cebitec.readxplorer.utils.Benchmark;
 import de.cebitec.readxplorer.utils.Observable;
 import de.cebitec.readxplorer.utils.Observer;
 import de.cebitec.readxplorer.utils.Pair;
+import de.cebitec.readxplorer.utils.errorhandling.ErrorHelper;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import org.netbeans.api.progress.ProgressHandle;
+import org.openide.util.NbPreferences;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
@@ -40,6 +44,8 @@ import org.netbeans.api.progress.ProgressHandle;
  */
 public class AnalysesHandler implements ThreadListener, Observable, JobI {
 
+    private static final Logger LOG = LoggerFactory.getLogger( AnalysesHandler.class.getName() );
+
     public static final String DATA_TYPE_COVERAGE = "Coverage";
     public static final String DATA_TYPE_MAPPINGS = "Mappings";
     /**
@@ -50,6 +56,33 @@ public class AnalysesHandler implements ThreadListener, Observable, JobI {
      * Returns 2 and means that all mapping querries are finished.
      */
     public static final byte MAPPING_QUERRIES_FINISHED = 2;
+    /**
+     * Returns 3 and means that a request failed and the analysis was aborted.
+     * No more data is delivered afterwards, but the parent still receives its
+     * final {@link DataVisualisationI#showData(java.lang.Object)} call.
+     */
+    public static final byte ANALYSIS_FAILED = 3;
+    /**
+     * Preference key for the number of threads carrying out the requests of
+     * an analysis. By default, all available processors are used.
+     */
+    public static final String PROP_PARALLELISM = "AnalysesHandler.Parallelism";
+    /**
+     * 200000 = Tile size of coverage requests, if the read density is unknown.
+     */
+    public static final int COVERAGE_TILE_SIZE = 200000;
+    /**
+     * 150000 = Tile size of mapping requests, if the read density is unknown.
+     */
+    public static final int MAPPING_TILE_SIZE = 150000;
+    /**
+     * 1000000 = Desired number of aligned records per coverage request.
+     */
+    private static final long COVERAGE_TILE_RECORDS = 1000000;
+    /**
+     * 250000 = Desired number of aligned records per mapping request.
+     */
+    private static final long MAPPING_TILE_RECORDS = 250000;
     private final ProgressHandle progressHandle;
     private final DataVisualisationI parent;
     private final TrackConnector trackConnector;
@@ -63,8 +96,11 @@ public class AnalysesHandler implements ThreadListener, Observable, JobI {
     private boolean coverageNeeded;
     private boolean mappingsNeeded;
     private IntervalRequestData desiredData = IntervalRequestData.Normal;
+    private int minBaseQuality = -1;
     private final ParametersReadClasses readClassParams;
     private long start;
+    private int parallelism;
+    private volatile boolean failed;
 
 
     /**
@@ -94,6 +130,7 @@ public class AnalysesHandler implements ThreadListener, Observable, JobI {
         this.nbCovRequests = 0;
         this.nbMappingRequests = 0;
         this.readClassParams = readClassParams;
+        this.parallelism = NbPreferences.forModule( Object.class ).getInt( PROP_PARALLELISM, Runtime.getRuntime().availableProcessors() );
     }
 
 
@@ -103,76 +140,119 @@ public class AnalysesHandler implements ThreadListener, Observable, JobI {
      * ThreadListener in order to receive the coverage or mapping data.
      * Afterwards the results are returned to the observers of this analyses
      * handler by the {@link receiveData()} method.
+     * <p>
+     * All requests are planned before the first one is carried out. The tile
+     * size of each chromosome is adapted to its read density according to the
+     * bam index. With a parallelism of 1 the requests are carried out by the
+     * analysis thread of the track connector, otherwise by a
+     * {@link TileScheduler} in the executor shared by all analyses. In both
+     * cases the results are delivered to the observers one after another in
+     * the order of the chromosomes and their positions.
      */
     public void startAnalysis() {
 
         this.queryType = this.coverageNeeded ? DATA_TYPE_COVERAGE : DATA_TYPE_MAPPINGS;
         this.nbRequests = 0;
+        this.failed = false;
         this.progressHandle.start();
         this.start = System.currentTimeMillis();
-        Map<Integer, PersistentChromosome> chroms = trackConnector.getRefGenome().getChromosomes();
 
+        List<IntervalRequest> requests;
+        RequestThread analysisThread;
         if( this.coverageNeeded ) {
+            requests = this.planRequests( COVERAGE_TILE_SIZE, COVERAGE_TILE_RECORDS, diffsAndGapsNeeded );
+            this.nbCovRequests = requests.size();
+            analysisThread = trackConnector.getCoverageThreadAnalyses();
 
-            //decide upon stepSize of a single request and analyse coverage of whole genome
-            final int stepSize = 200000;
-
-            for( PersistentChromosome chrom : chroms.values() ) {
+        } else if( this.mappingsNeeded ) {
+            requests = this.planRequests( MAPPING_TILE_SIZE, MAPPING_TILE_RECORDS, false );
+            this.nbMappingRequests = requests.size();
+            analysisThread = trackConnector.getMappingThreadAnalyses();
 
-                int chromLength = chrom.getLength();
-                int from = 1;
-                int to = this.calcRightBoundary( chromLength, stepSize, COVERAGE_QUERRIES_FINISHED );
+        } else {
+            this.progressHandle.finish();
+            return;
+        }
 
-                while( to < chromLength ) {
-                    trackConnector.addCoverageAnalysisRequest( new IntervalRequest( from, to, chrom.getId(), this, diffsAndGapsNeeded, desiredData, readClassParams ) );
+        this.nbRequests = requests.size();
+        this.progressHandle.switchToDeterminate( this.nbRequests );
+        this.progressHandle.progress( "Request " + (nbCarriedOutRequests + 1) + " of " + nbRequests, nbCarriedOutRequests );
 
-                    from = to + 1;
-                    to += stepSize;
+        if( parallelism > 1 && requests.size() > 1 ) {
+            new TileScheduler( requests.size(), parallelism,
+                               tile -> this.carryOutTile( requests.get( tile ), analysisThread ),
+                               new TileResultReceiver() ).start();
+        } else {
+            for( IntervalRequest request : requests ) {
+                if( failed ) {
+                    break;
                 }
-
-                //calc last interval until genomeSize
-                to = chromLength;
-                trackConnector.addCoverageAnalysisRequest( new IntervalRequest( from, to, chrom.getId(), this, diffsAndGapsNeeded, desiredData, readClassParams ) );
+                analysisThread.addRequest( request );
             }
+        }
+    }
 
 
-        } else if( this.mappingsNeeded ) {
-
-            int stepSize = 150000;
-            for( PersistentChromosome chrom : chroms.values() ) {
-
-                int chromLength = chrom.getLength();
-                int from = 1;
-                int to = this.calcRightBoundary( chromLength, stepSize, MAPPING_QUERRIES_FINISHED );
-                while( to < chromLength ) {
-                    trackConnector.addMappingAnalysisRequest( new IntervalRequest( from, to, chrom.getId(), this, false, desiredData, readClassParams ) );
-                    from = to + 1;
-                    to += stepSize;
-                }
+    /**
+     * Cuts all chromosomes of the reference into tiles and creates a request
+     * for each tile. The tile size of a chromosome is chosen to contain about
+     * the given number of aligned records, but stays between an eighth and
+     * twice the default tile size. If the bam index does not contain the
+     * number of records, the default tile size is used.
+     * <p>
+     * @param defaultTileSize    tile size used for an unknown read density
+     * @param tileRecords        desired number of aligned records per tile
+     * @param diffsAndGapsNeeded true, if the diffs and gaps are needed
+     * <p>
+     * @return The requests of all tiles ordered by chromosome and position
+     */
+    private List<IntervalRequest> planRequests( int defaultTileSize, long tileRecords, boolean diffsAndGapsNeeded ) {
+        List<IntervalRequest> requests = new ArrayList<>();
+        for( PersistentChromosome chrom : trackConnector.getRefGenome().getChromosomes().values() ) {
+
+            int chromLength = chrom.getLength();
+            int tileSize = defaultTileSize;
+            long recordCount = trackConnector.getAlignedRecordCount( chrom.getId() );
+            if( recordCount > 0 ) {
+                long densityTileSize = chromLength * tileRecords / recordCount;
+                tileSize = (int) Math.max( defaultTileSize / 8, Math.min( defaultTileSize * 2L, densityTileSize ) );
+            }
 
-                //calc last interval until genomeSize
-                to = chromLength;
-                trackConnector.addMappingAnalysisRequest( new IntervalRequest( from, to, chrom.getId(), this, false, desiredData, readClassParams ) );
+            for( int from = 1; from <= chromLength; from += tileSize ) {
+                int to = (int) Math.min( chromLength, (long) from + tileSize - 1 );
+                IntervalRequest request = new IntervalRequest( from, to, chrom.getId(), this, diffsAndGapsNeeded, desiredData, readClassParams );
+                request.setMinBaseQuality( minBaseQuality );
+                requests.add( request );
             }
-        } else {
-            this.progressHandle.finish();
         }
+        return requests;
     }
 
 
     /**
      * ThreadListener method for updating information in this analysis handler.
      * Updates of GUI componentes are delegated to the Swing dispatch thread.
+     * Mapping batches are released to their pool after all observers
+     * received them.
      * <p>
      * @param data the data to add to this analysis handler
      */
     @Override
     public void receiveData( Object data ) {
+        if( failed ) { //the analysis was aborted, remaining results are not needed
+            if( data instanceof MappingBatchResult ) {
+                MappingBatchPool.getInstance().release( ((MappingBatchResult) data).getBatch() );
+            }
+            return;
+        }
         long finish = System.currentTimeMillis();
         String benchmark = Benchmark.calculateDuration( start, finish, ". Elapsed time: " );
         this.progressHandle.progress( this.queryType + " request " +
                  (nbCarriedOutRequests + 1) + " of " + nbRequests + benchmark, ++nbCarriedOutRequests );
         this.notifyObservers( data );
+        if( data instanceof MappingBatchResult ) {
+            MappingBatchPool.getInstance().release( ((MappingBatchResult) data).getBatch() );
+        }
 
         //when the last request is finished signalize the parent to collect the data
         if( this.nbCarriedOutRequests >= this.nbRequests ) {
@@ -256,6 +336,44 @@ public class AnalysesHandler implements ThreadListener, Observable, JobI {
     }
 
 
+    /**
+     * Sets the minimum base quality of the bases added to the pileups of this
+     * analysis, if the desired data is IntervalRequestData.Pileup.
+     * <p>
+     * @param minBaseQuality Only bases with a larger or an unknown base
+     *                       quality are added to the pileups, -1 adds all
+     *                       bases
+     */
+    public void setMinBaseQuality( int minBaseQuality ) {
+        this.minBaseQuality = minBaseQuality;
+    }
+
+
+    /**
+     * @return The number of threads carrying out the requests of this
+     *         analysis handler.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+
+    /**
+     * Set before an analysis is started. Sets the number of threads carrying
+     * out the requests of this analysis handler. With a parallelism of 1, all
+     * requests are carried out by the analysis thread of the track connector.
+     * Otherwise, the number of threads is additionally bounded by the size of
+     * the executor shared by all analyses.
+     * By default, the value stored under {@link #PROP_PARALLELISM} or the
+     * number of available processors is used.
+     * <p>
+     * @param parallelism the number of threads, at least 1
+     */
+    public void setParallelism( int parallelism ) {
+        this.parallelism = Math.max( 1, parallelism );
+    }
+
+
     @Override
     public int getNbCarriedOutRequests() {
         return this.nbCarriedOutRequests;
@@ -300,29 +418,97 @@ public class AnalysesHandler implements ThreadListener, Observable, JobI {
 
 
     /**
-     * Calculates the right interval boundary for a request, claculates the
-     * number of needed total requests and updates the progress handle of this
-     * analysis handler.
+     * Aborts the analysis, if one of its requests failed in the analysis
+     * thread of the track connector.
      * <p>
-     * @param chromLength length of the chromosome under investigation
-     * @param stepSize    size of each step
-     * @param neededData  The data type. Determines, which requests are counted.
+     * @param cause the cause of the failure
+     */
+    @Override
+    public void notifyFailed( Throwable cause ) {
+        synchronized( this ) {
+            if( failed ) {
+                return;
+            }
+            failed = true;
+        }
+        requestFailed( nbCarriedOutRequests, cause );
+    }
+
+
+    /**
+     * Carries out the request of a tile in the calling thread.
+     * <p>
+     * @param request        the planned request of the tile
+     * @param analysisThread the analysis thread carrying out the request
+     * <p>
+     * @return The result of the request
+     */
+    private Object carryOutTile( IntervalRequest request, RequestThread analysisThread ) {
+        final Object[] result = new Object[1];
+        ThreadListener tileListener = new ThreadListener() {
+
+            @Override
+            public void receiveData( Object data ) {
+                result[0] = data;
+            }
+
+
+            @Override
+            public void notifySkipped() {
+                //analysis requests are never skipped
+            }
+
+
+        };
+        IntervalRequest tileRequest = new IntervalRequest( request.getFrom(), request.getTo(), request.getChromId(),
+                                                           tileListener, request.isDiffsAndGapsNeeded(),
+                                                           request.getDesiredData(), request.getReadClassParams() );
+        tileRequest.setMinBaseQuality( request.getMinBaseQuality() );
+        analysisThread.processRequest( tileRequest );
+        return result[0];
+    }
+
+
+    /**
+     * Aborts the analysis after a request failed. The error is reported, the
+     * observers receive {@link #ANALYSIS_FAILED} and the parent is signalized
+     * that no more data will arrive.
      * <p>
-     * @return the right interval boundary for a request
+     * @param tile  index of the failed request
+     * @param cause the cause of the failure
      */
-    private int calcRightBoundary( int chromLength, int stepSize, byte neededData ) {
-        int to = chromLength > stepSize ? stepSize : chromLength;
-        int additionalRequest = chromLength % stepSize == 0 ? 0 : 1;
-        if( neededData == COVERAGE_QUERRIES_FINISHED ) {
-            this.nbCovRequests += chromLength / stepSize + additionalRequest;
-            this.nbRequests = this.nbCovRequests;
-        } else if( neededData == MAPPING_QUERRIES_FINISHED ) {
-            this.nbMappingRequests += chromLength / stepSize + additionalRequest;
-            this.nbRequests = this.nbMappingRequests;
+    private void requestFailed( int tile, Throwable cause ) {
+        this.failed = true;
+        String msg = this.queryType + " request " + (tile + 1) + " of " + nbRequests + " of track "
+                     + trackConnector.getAssociatedTrackName() + " failed. The analysis was aborted.";
+        LOG.error( msg, cause );
+        this.progressHandle.finish();
+        for( Observer observer : this.observers ) {
+            observer.update( ANALYSIS_FAILED );
         }
-        this.progressHandle.switchToDeterminate( this.nbRequests );
-        this.progressHandle.progress( "Request " + (nbCarriedOutRequests + 1) + " of " + nbRequests, nbCarriedOutRequests );
-        return to;
+        ErrorHelper.getHandler().handle( cause, msg );
+        this.parent.showData( new Pair<>( trackConnector.getTrackID(), this.queryType ) );
+        this.nbCarriedOutRequests = 0;
+    }
+
+
+    /**
+     * Receives the tile results of a {@link TileScheduler} in their order.
+     */
+    private class TileResultReceiver implements TileScheduler.TileReceiver {
+
+        @Override
+        public void receiveTile( Object result ) {
+            receiveData( result );
+        }
+
+
+        @Override
+        public void tileFailed( int tile, Throwable cause ) {
+            requestFailed( tile, cause );
+        }
+
+
     }
 
 
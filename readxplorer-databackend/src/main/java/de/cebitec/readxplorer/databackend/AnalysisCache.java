@@ -0,0 +1,394 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import de.cebitec.readxplorer.databackend.connector.ProjectConnector;
+import de.cebitec.readxplorer.databackend.connector.TrackConnector;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A persistent cache for the intermediate aggregates an analysis computes from
+ * the mapping file of a single track, e.g. read start histograms or covered
+ * bases per feature. The cache of a track is stored in the cache directory of
+ * the project in a compact, compressed binary format. Each cache file belongs
+ * to one combination of track id, mapping file checksum and read class
+ * parameters. Thus, an analysis with the same read class parameters can reuse
+ * the aggregates of an earlier session instead of scanning the mapping file
+ * again, while a changed mapping file or a different read class selection
+ * leads to an empty cache.
+ * <p>
+ * The aggregates are stored as named <code>int</code> or <code>long</code>
+ * arrays. Analyses should prefix the names with their own name and append all
+ * further parameters the aggregate depends on. Aggregates belonging to a
+ * single chromosome are stored with the chromosome id as part of their name.
+ * The cache is thread safe.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class AnalysisCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger( AnalysisCache.class.getName() );
+
+    /**
+     * Version of the cache format and of the cached aggregates. Has to be
+     * increased, whenever the file format or the semantics of an aggregate
+     * change. Caches of other versions are ignored and overwritten.
+     */
+    public static final int VERSION = 1;
+    public static final String CACHE_DIR_EXTENSION = ".cache";
+    public static final String CACHE_FILE_EXTENSION = ".rxcache";
+
+    private static final int MAGIC = 0x52584143; //"RXAC"
+    private static final int CHECKSUM_BYTES = 1 << 16;
+    private static final byte TYPE_INT = 0;
+    private static final byte TYPE_LONG = 1;
+
+    private final File cacheFile;
+    private final String key;
+    private final long checksum;
+    private final Map<String, Object> entries = new LinkedHashMap<>();
+    private boolean modified;
+
+
+    /**
+     * A persistent cache for the intermediate aggregates of the analyses of a
+     * single track. Loads the content of the cache file, if it exists and
+     * belongs to the given track, mapping file and read class parameters.
+     * <p>
+     * @param cacheDir        directory containing the cache files
+     * @param trackId         id of the track
+     * @param mappingFile     mapping file of the track
+     * @param readClassParams the read class parameters the aggregates depend
+     *                        on
+     * <p>
+     * @throws IOException If the checksum of the mapping file cannot be
+     *                     calculated
+     */
+    AnalysisCache( File cacheDir, int trackId, File mappingFile, ParametersReadClasses readClassParams ) throws IOException {
+        this.key = trackId + "|" + readClassParams.getCacheKey();
+        this.checksum = calcChecksum( mappingFile );
+        this.cacheFile = new File( cacheDir, "track" + trackId + "_" + Integer.toHexString( key.hashCode() ) + CACHE_FILE_EXTENSION );
+        if( cacheFile.exists() ) {
+            try {
+                load();
+            } catch( IOException | RuntimeException ex ) {
+                LOG.warn( "Ignoring unreadable analysis cache {}: {}", cacheFile, ex.getMessage() );
+                entries.clear();
+            }
+        }
+    }
+
+
+    /**
+     * Opens the analysis cache of the track of the given connector for the
+     * given read class parameters. The cache directory is placed next to the
+     * project database. Caching is only supported for connectors of a single
+     * track.
+     * <p>
+     * @param trackConnector  connector of the track
+     * @param readClassParams the read class parameters of the analysis
+     * <p>
+     * @return The analysis cache or <code>null</code>, if the connector
+     *         combines several tracks or the cache cannot be opened
+     */
+    public static AnalysisCache open( TrackConnector trackConnector, ParametersReadClasses readClassParams ) {
+        if( trackConnector.getAssociatedTrackNames().size() != 1 ) {
+            return null;
+        }
+        File mappingFile = trackConnector.getTrackFile();
+        try {
+            return new AnalysisCache( getCacheDir( mappingFile ), trackConnector.getTrackID(), mappingFile, readClassParams );
+        } catch( IOException ex ) {
+            LOG.warn( "Analysis cache for {} cannot be opened: {}", mappingFile, ex.getMessage() );
+            return null;
+        }
+    }
+
+
+    /**
+     * @param mappingFile the mapping file, whose cache directory is needed
+     * <p>
+     * @return The cache directory of the current project or of the given
+     *         mapping file, if no project is opened.
+     */
+    private static File getCacheDir( File mappingFile ) {
+        String dbLocation = ProjectConnector.getInstance().getDbLocation();
+        if( dbLocation != null ) {
+            return new File( dbLocation + CACHE_DIR_EXTENSION );
+        }
+        return new File( mappingFile.getAbsolutePath() + CACHE_DIR_EXTENSION );
+    }
+
+
+    /**
+     * Calculates a checksum identifying the content of a mapping file. It
+     * combines the length and modification date of the file with a CRC32 of
+     * its first bytes, which contain the header of the file.
+     * <p>
+     * @param mappingFile the mapping file
+     * <p>
+     * @return The checksum of the mapping file.
+     * <p>
+     * @throws IOException If the mapping file cannot be read
+     */
+    static long calcChecksum( File mappingFile ) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        try( InputStream in = new FileInputStream( mappingFile ) ) {
+            int remaining = CHECKSUM_BYTES;
+            int read;
+            while( remaining > 0 && (read = in.read( buffer, 0, Math.min( buffer.length, remaining ) )) > 0 ) {
+                crc.update( buffer, 0, read );
+                remaining -= read;
+            }
+        }
+        long checksum = crc.getValue();
+        checksum = 31 * checksum + mappingFile.length();
+        checksum = 31 * checksum + mappingFile.lastModified();
+        return checksum;
+    }
+
+
+    /**
+     * @param name name of the aggregate
+     * <p>
+     * @return A copy of the cached <code>int</code> aggregate with the given
+     *         name or <code>null</code>, if it is not cached.
+     */
+    public synchronized int[] getInts( String name ) {
+        Object values = entries.get( name );
+        return values instanceof int[] ? ((int[]) values).clone() : null;
+    }
+
+
+    /**
+     * @param name    name of the aggregate
+     * @param chromId id of the chromosome the aggregate belongs to
+     * <p>
+     * @return A copy of the cached <code>int</code> aggregate of the
+     *         chromosome or <code>null</code>, if it is not cached.
+     */
+    public int[] getInts( String name, int chromId ) {
+        return getInts( chromName( name, chromId ) );
+    }
+
+
+    /**
+     * @param name name of the aggregate
+     * <p>
+     * @return A copy of the cached <code>long</code> aggregate with the given
+     *         name or <code>null</code>, if it is not cached.
+     */
+    public synchronized long[] getLongs( String name ) {
+        Object values = entries.get( name );
+        return values instanceof long[] ? ((long[]) values).clone() : null;
+    }
+
+
+    /**
+     * @param name    name of the aggregate
+     * @param chromId id of the chromosome the aggregate belongs to
+     * <p>
+     * @return A copy of the cached <code>long</code> aggregate of the
+     *         chromosome or <code>null</code>, if it is not cached.
+     */
+    public long[] getLongs( String name, int chromId ) {
+        return getLongs( chromName( name, chromId ) );
+    }
+
+
+    /**
+     * Caches an <code>int</code> aggregate. It is only persisted by the next
+     * call of {@link #store()}.
+     * <p>
+     * @param name   name of the aggregate
+     * @param values the aggregate, which is copied
+     */
+    public synchronized void putInts( String name, int[] values ) {
+        entries.put( name, values.clone() );
+        modified = true;
+    }
+
+
+    /**
+     * Caches an <code>int</code> aggregate of a chromosome. It is only
+     * persisted by the next call of {@link #store()}.
+     * <p>
+     * @param name    name of the aggregate
+     * @param chromId id of the chromosome the aggregate belongs to
+     * @param values  the aggregate, which is copied
+     */
+    public void putInts( String name, int chromId, int[] values ) {
+        putInts( chromName( name, chromId ), values );
+    }
+
+
+    /**
+     * Caches a <code>long</code> aggregate. It is only persisted by the next
+     * call of {@link #store()}.
+     * <p>
+     * @param name   name of the aggregate
+     * @param values the aggregate, which is copied
+     */
+    public synchronized void putLongs( String name, long[] values ) {
+        entries.put( name, values.clone() );
+        modified = true;
+    }
+
+
+    /**
+     * Caches a <code>long</code> aggregate of a chromosome. It is only
+     * persisted by the next call of {@link #store()}.
+     * <p>
+     * @param name    name of the aggregate
+     * @param chromId id of the chromosome the aggregate belongs to
+     * @param values  the aggregate, which is copied
+     */
+    public void putLongs( String name, int chromId, long[] values ) {
+        putLongs( chromName( name, chromId ), values );
+    }
+
+
+    /**
+     * @param name name of the aggregate
+     * <p>
+     * @return <code>true</code>, if an aggregate with the given name is
+     *         cached, <code>false</code> otherwise
+     */
+    public synchronized boolean contains( String name ) {
+        return entries.containsKey( name );
+    }
+
+
+    /**
+     * Writes all cached aggregates to the cache file, if aggregates were added
+     * since the cache was loaded. The file is replaced atomically, so that a
+     * concurrently running session never reads a partially written cache.
+     * <p>
+     * @throws IOException If the cache file cannot be written
+     */
+    public synchronized void store() throws IOException {
+        if( !modified ) {
+            return;
+        }
+        File cacheDir = cacheFile.getParentFile();
+        if( !cacheDir.isDirectory() && !cacheDir.mkdirs() ) {
+            throw new IOException( "Cache directory " + cacheDir + " cannot be created." );
+        }
+        File tmpFile = File.createTempFile( cacheFile.getName(), ".tmp", cacheDir );
+        try {
+            try( DataOutputStream out = new DataOutputStream( new DeflaterOutputStream(
+                    new BufferedOutputStream( new FileOutputStream( tmpFile ) ) ) ) ) {
+                out.writeInt( MAGIC );
+                out.writeInt( VERSION );
+                out.writeUTF( key );
+                out.writeLong( checksum );
+                out.writeInt( entries.size() );
+                for( Map.Entry<String, Object> entry : entries.entrySet() ) {
+                    out.writeUTF( entry.getKey() );
+                    if( entry.getValue() instanceof int[] ) {
+                        int[] values = (int[]) entry.getValue();
+                        out.writeByte( TYPE_INT );
+                        out.writeInt( values.length );
+                        for( int value : values ) {
+                            out.writeInt( value );
+                        }
+                    } else {
+                        long[] values = (long[]) entry.getValue();
+                        out.writeByte( TYPE_LONG );
+                        out.writeInt( values.length );
+                        for( long value : values ) {
+                            out.writeLong( value );
+                        }
+                    }
+                }
+            }
+            Files.move( tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            modified = false;
+        } finally {
+            tmpFile.delete();
+        }
+    }
+
+
+    /**
+     * Loads all aggregates of the cache file, if the file belongs to the
+     * current key, checksum and version. Otherwise the cache stays empty.
+     * <p>
+     * @throws IOException If the cache file cannot be read
+     */
+    private void load() throws IOException {
+        try( DataInputStream in = new DataInputStream( new InflaterInputStream(
+                new BufferedInputStream( new FileInputStream( cacheFile ) ) ) ) ) {
+            if( in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals( in.readUTF() ) || in.readLong() != checksum ) {
+                LOG.info( "Analysis cache {} is outdated and will be replaced.", cacheFile );
+                return;
+            }
+            int entryCount = in.readInt();
+            for( int i = 0; i < entryCount; ++i ) {
+                String name = in.readUTF();
+                byte type = in.readByte();
+                int length = in.readInt();
+                if( type == TYPE_INT ) {
+                    int[] values = new int[length];
+                    for( int j = 0; j < length; ++j ) {
+                        values[j] = in.readInt();
+                    }
+                    entries.put( name, values );
+                } else if( type == TYPE_LONG ) {
+                    long[] values = new long[length];
+                    for( int j = 0; j < length; ++j ) {
+                        values[j] = in.readLong();
+                    }
+                    entries.put( name, values );
+                } else {
+                    throw new IOException( "Unknown aggregate type " + type + " in analysis cache." );
+                }
+            }
+        } catch( EOFException ex ) {
+            throw new IOException( "Analysis cache is truncated.", ex );
+        }
+    }
+
+
+    private static String chromName( String name, int chromId ) {
+        return name + "@chrom" + chromId;
+    }
+
+
+}
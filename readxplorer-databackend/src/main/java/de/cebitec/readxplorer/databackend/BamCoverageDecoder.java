@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import de.cebitec.readxplorer.api.enums.FeatureType;
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.api.enums.SAMRecordTag;
+import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
+import htsjdk.samtools.BAMFileSpan;
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.Chunk;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/**
+ * Coverage-only decoder for indexed BAM files. Instead of creating a SAMRecord
+ * for each read, it reads the raw records of all BGZF chunks overlapping a
+ * request and only decodes the fields needed for the coverage: flag, position,
+ * CIGAR, mapping quality and ReadXplorer's read class and map count tags.
+ * <p>
+ * The alignment blocks of all included reads are written as differences into
+ * reusable buffers, one per mapping class and strand. A single prefix sum per
+ * buffer then adds the coverage to the coverage manager. A decoder is meant to
+ * be reused for many requests and is not thread safe.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+class BamCoverageDecoder implements Closeable {
+
+    private static final int FLAG_UNMAPPED = 0x4;
+    private static final int FLAG_REVERSE = 0x10;
+
+    private static final int CIGAR_M = 0;
+    private static final int CIGAR_I = 1;
+    private static final int CIGAR_D = 2;
+    private static final int CIGAR_N = 3;
+    private static final int CIGAR_S = 4;
+    private static final int CIGAR_H = 5;
+    private static final int CIGAR_P = 6;
+    private static final int CIGAR_EQ = 7;
+    private static final int CIGAR_X = 8;
+
+    private static final MappingClass[] MAPPING_CLASSES = MappingClass.values();
+
+    private static final short READ_CLASS_TAG = tagCode( SAMRecordTag.ReadClass.toString() );
+    private static final short MAP_COUNT_TAG = tagCode( SAMRecordTag.MapCount.toString() );
+
+    private final File bamFile;
+    private final BAMIndex index;
+    private BlockCompressedInputStream bamStream;
+
+    private byte[] record = new byte[1024];
+    private final CoverageDiffs diffs = new CoverageDiffs();
+    private final boolean[] classAllowed = new boolean[MAPPING_CLASSES.length];
+
+    //values of the currently decoded record
+    private int readClass;
+    private int mapCount;
+    private int[] blocks = new int[16];
+    private int blockCount;
+    private int alignmentEnd;
+
+
+    /**
+     * Coverage-only decoder for indexed BAM files.
+     * <p>
+     * @param bamFile the bam file to decode
+     * @param index   the index of the bam file
+     */
+    BamCoverageDecoder( File bamFile, BAMIndex index ) {
+        this.bamFile = bamFile;
+        this.index = index;
+    }
+
+
+    /**
+     * Adds the coverage and, if desired, the read starts of all reads in the
+     * given interval to the given coverage managers. The coverage managers
+     * must cover the interval and their arrays must already be increased to
+     * the interval size. If <code>false</code> is returned, the content of the
+     * managers is undefined.
+     * <p>
+     * @param refIndex        index of the chromosome in the bam header
+     * @param from            start of the interval, 1-based and inclusive
+     * @param to              stop of the interval, 1-based and inclusive
+     * @param readClassParams parameters determining the included reads
+     * @param coverage        the coverage manager to which the coverage is
+     *                        added
+     * @param readStarts      the coverage manager to which the read starts are
+     *                        added or <code>null</code>, if no read starts are
+     *                        needed
+     * <p>
+     * @return <code>true</code>, if the interval was decoded,
+     *         <code>false</code> if a read without read class tag was found.
+     *         Such files have to be handled by the record based methods of the
+     *         {@link SamBamFileReader}.
+     * <p>
+     * @throws IOException If the bam file cannot be read
+     */
+    boolean decodeCoverage( int refIndex, int from, int to, ParametersReadClasses readClassParams,
+                            CoverageManager coverage, CoverageManager readStarts ) throws IOException {
+
+        diffs.reset( coverage );
+        boolean multipleMappedAllowed = readClassParams.isClassificationAllowed( FeatureType.MULTIPLE_MAPPED_READ );
+        int minMappingQual = readClassParams.getMinMappingQual();
+        for( MappingClass mappingClass : MAPPING_CLASSES ) {
+            classAllowed[mappingClass.ordinal()] = readClassParams.isClassificationAllowed( mappingClass );
+        }
+
+        BAMFileSpan span = index.getSpanOverlapping( refIndex, from, to );
+        if( span == null || span.isEmpty() ) {
+            return true;
+        }
+        BlockCompressedInputStream stream = getStream();
+
+        for( Chunk chunk : span.getChunks() ) {
+            stream.seek( chunk.getChunkStart() );
+            boolean chunkDone = false;
+            while( !chunkDone && stream.getFilePointer() < chunk.getChunkEnd() ) {
+                int recordLength = readRecord( stream );
+                if( recordLength < 0 ) {
+                    break;
+                }
+                int recordRefIndex = readInt( record, 0 );
+                int start = readInt( record, 4 ) + 1;
+                if( recordRefIndex != refIndex || start > to ) {
+                    chunkDone = recordRefIndex < 0 || recordRefIndex > refIndex || start > to;
+                    continue;
+                }
+                int flag = readUnsignedShort( record, 14 );
+                if( (flag & FLAG_UNMAPPED) != 0 ) {
+                    continue;
+                }
+
+                int nameLength = record[8] & 0xff;
+                int mappingQuality = record[9] & 0xff;
+                int cigarLength = readUnsignedShort( record, 12 );
+                int seqLength = readInt( record, 16 );
+                int cigarOffset = 32 + nameLength;
+                decodeBlocks( cigarOffset, cigarLength, start );
+                if( Math.max( alignmentEnd, start ) < from ) {
+                    continue;
+                }
+
+                int tagOffset = cigarOffset + cigarLength * 4 + (seqLength + 1) / 2 + seqLength;
+                if( !decodeTags( tagOffset, recordLength ) ) {
+                    return false;
+                }
+                MappingClass mappingClass = MappingClass.getFeatureType( readClass );
+                boolean isIncluded = (multipleMappedAllowed || mapCount == 1) &&
+                                     (mappingQuality == SamBamFileReader.UNKNOWN_MAP_QUAL || mappingQuality >= minMappingQual) &&
+                                     classAllowed[mappingClass.ordinal()];
+                if( !isIncluded ) {
+                    continue;
+                }
+
+                boolean isFwdStrand = (flag & FLAG_REVERSE) == 0;
+                int[] diff = diffs.getDiff( mappingClass, isFwdStrand );
+                for( int i = 0; i < blockCount; i += 2 ) {
+                    coverage.addCoverageRange( blocks[i], blocks[i + 1], diff );
+                }
+                if( readStarts != null ) {
+                    addReadStart( readStarts, readClassParams, mappingClass, isFwdStrand, start, from, to );
+                }
+            }
+        }
+
+        diffs.applyTo( coverage );
+        return true;
+    }
+
+
+    /**
+     * Adds the read start of the current read to the read start manager. The
+     * strand handling corresponds to
+     * {@link SamBamFileReader#getCoverageAndReadStartsFromBam(IntervalRequest)}.
+     */
+    private void addReadStart( CoverageManager readStarts, ParametersReadClasses readClassParams, MappingClass mappingClass,
+                               boolean isFwdReadStrand, int start, int from, int to ) {
+        boolean isFwdStrand;
+        if( readClassParams.isStrandBothOption() ) {
+            isFwdStrand = readClassParams.isStrandBothFwdOption();
+        } else if( readClassParams.isStrandOppositeOption() ) {
+            isFwdStrand = !isFwdReadStrand;
+        } else {
+            isFwdStrand = isFwdReadStrand;
+        }
+        int startPos = isFwdStrand ? start : alignmentEnd;
+        if( readClassParams.isStrandBothOption() ) {
+            isFwdStrand = readClassParams.isStrandBothFwdOption();
+        } else {
+            isFwdStrand = isFwdReadStrand;
+        }
+        if( startPos >= from && startPos <= to ) {
+            ++readStarts.getCoverage( mappingClass ).getCoverage( isFwdStrand )[startPos - from];
+        }
+    }
+
+
+    /**
+     * Decodes the alignment blocks of the current record in the same way as
+     * {@link de.cebitec.readxplorer.utils.SamUtils#getAlignmentBlocks}.
+     * Additionally, the alignment end is calculated.
+     * <p>
+     * @param cigarOffset offset of the cigar in the record buffer
+     * @param cigarLength number of cigar operations
+     * @param refStartPos start position of the read on the reference
+     */
+    private void decodeBlocks( int cigarOffset, int cigarLength, int refStartPos ) {
+        blockCount = 0;
+        int start = refStartPos;
+        int stop = refStartPos - 1;
+        int refLength = 0;
+        boolean fstElement = true;
+
+        for( int i = 0; i < cigarLength; ++i ) {
+            int cigarOp = readInt( record, cigarOffset + i * 4 );
+            int opLength = cigarOp >>> 4;
+            switch( cigarOp & 0xf ) {
+                case CIGAR_D:
+                    stop += opLength;
+                    refLength += opLength;
+                    break;
+                case CIGAR_N:
+                    if( !fstElement ) {
+                        addBlockBounds( start, stop );
+                    }
+                    stop += opLength;
+                    start = stop + 1;
+                    refLength += opLength;
+                    break;
+                case CIGAR_M: //fallthrough
+                case CIGAR_EQ:
+                case CIGAR_X:
+                    stop += opLength;
+                    refLength += opLength;
+                    fstElement = false;
+                    break;
+                case CIGAR_I: //fallthrough, insertions, clipped and padded bases do not cover the reference
+                case CIGAR_S:
+                case CIGAR_H:
+                case CIGAR_P:
+                default:
+                    break;
+            }
+        }
+        if( start < stop ) {
+            addBlockBounds( start, stop );
+        }
+        alignmentEnd = refStartPos + refLength - 1;
+    }
+
+
+    private void addBlockBounds( int start, int stop ) {
+        if( blockCount + 2 > blocks.length ) {
+            blocks = Arrays.copyOf( blocks, blocks.length * 2 );
+        }
+        blocks[blockCount++] = start;
+        blocks[blockCount++] = stop;
+    }
+
+
+    /**
+     * Scans the optional fields of the current record for the read class and
+     * the map count tags.
+     * <p>
+     * @param offset    offset of the first tag in the record buffer
+     * @param recordEnd length of the record
+     * <p>
+     * @return <code>true</code>, if the read class tag was found,
+     *         <code>false</code> otherwise
+     */
+    private boolean decodeTags( int offset, int recordEnd ) {
+        readClass = -1;
+        mapCount = -1;
+        int pos = offset;
+        while( pos + 3 <= recordEnd ) {
+            short tag = (short) ((record[pos] & 0xff) << 8 | (record[pos + 1] & 0xff));
+            byte type = record[pos + 2];
+            pos += 3;
+            if( tag == READ_CLASS_TAG || tag == MAP_COUNT_TAG ) {
+                int value = readIntegerTag( type, pos );
+                if( tag == READ_CLASS_TAG ) {
+                    readClass = value;
+                } else {
+                    mapCount = value;
+                }
+            }
+            pos = skipTagValue( type, pos );
+        }
+        return readClass >= 0;
+    }
+
+
+    /**
+     * @param type the BAM type of the tag value
+     * @param pos  offset of the tag value in the record buffer
+     * <p>
+     * @return The value of an integer tag or -1, if the tag is no integer tag
+     */
+    private int readIntegerTag( byte type, int pos ) {
+        switch( type ) {
+            case 'c':
+                return record[pos];
+            case 'C':
+                return record[pos] & 0xff;
+            case 's':
+                return (short) readUnsignedShort( record, pos );
+            case 'S':
+                return readUnsignedShort( record, pos );
+            case 'i': //fallthrough
+            case 'I':
+                return readInt( record, pos );
+            case 'A':
+                return Character.digit( record[pos], 10 );
+            default:
+                return -1;
+        }
+    }
+
+
+    /**
+     * @param type the BAM type of the tag value
+     * @param pos  offset of the tag value in the record buffer
+     * <p>
+     * @return The offset of the next tag in the record buffer
+     */
+    private int skipTagValue( byte type, int pos ) {
+        switch( type ) {
+            case 'A': //fallthrough
+            case 'c':
+            case 'C':
+                return pos + 1;
+            case 's': //fallthrough
+            case 'S':
+                return pos + 2;
+            case 'i': //fallthrough
+            case 'I':
+            case 'f':
+                return pos + 4;
+            case 'Z': //fallthrough
+            case 'H':
+                while( record[pos] != 0 ) {
+                    ++pos;
+                }
+                return pos + 1;
+            case 'B':
+                byte subType = record[pos];
+                int count = readInt( record, pos + 1 );
+                return pos + 5 + count * skipTagValue( subType, 0 );
+            default:
+                throw new IllegalStateException( "Unknown tag type in bam file " + bamFile.getName() + ": " + (char) type );
+        }
+    }
+
+
+    /**
+     * Reads the next record into the record buffer.
+     * <p>
+     * @param stream the stream to read from
+     * <p>
+     * @return The length of the record or -1, if the end of the file was
+     *         reached
+     * <p>
+     * @throws IOException
+     */
+    private int readRecord( BlockCompressedInputStream stream ) throws IOException {
+        if( !readFully( stream, record, 0, 4 ) ) {
+            return -1;
+        }
+        int recordLength = readInt( record, 0 );
+        if( recordLength > record.length ) {
+            record = new byte[Math.max( recordLength, record.length * 2 )];
+        }
+        if( !readFully( stream, record, 0, recordLength ) ) {
+            return -1;
+        }
+        return recordLength;
+    }
+
+
+    private static boolean readFully( BlockCompressedInputStream stream, byte[] buffer, int offset, int length ) throws IOException {
+        int read = 0;
+        while( read < length ) {
+            int count = stream.read( buffer, offset + read, length - read );
+            if( count < 0 ) {
+                return false;
+            }
+            read += count;
+        }
+        return true;
+    }
+
+
+    private BlockCompressedInputStream getStream() throws IOException {
+        if( bamStream == null ) {
+            bamStream = new BlockCompressedInputStream( bamFile );
+        }
+        return bamStream;
+    }
+
+
+    private static int readInt( byte[] buffer, int offset ) {
+        return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8 |
+               (buffer[offset + 2] & 0xff) << 16 | (buffer[offset + 3] & 0xff) << 24;
+    }
+
+
+    private static int readUnsignedShort( byte[] buffer, int offset ) {
+        return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8;
+    }
+
+
+    private static short tagCode( String tag ) {
+        return (short) (tag.charAt( 0 ) << 8 | tag.charAt( 1 ));
+    }
+
+
+    /**
+     * Closes the underlying bam file stream.
+     * <p>
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if( bamStream != null ) {
+            bamStream.close();
+            bamStream = null;
+        }
+    }
+
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cebitec.readxplorer.databackend;
+
+
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
+import java.util.Arrays;
+
+
+/**
+ * Reusable difference arrays, one per mapping class and strand, for adding
+ * the alignment blocks of many reads to a coverage manager. Each block only
+ * updates two positions of a difference array, a single prefix sum per array
+ * then adds the coverage to the coverage manager. The arrays are meant to be
+ * reused for many requests and are not thread safe.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+final class CoverageDiffs {
+
+    private static final MappingClass[] MAPPING_CLASSES = MappingClass.values();
+
+    private final int[][] diffs = new int[MAPPING_CLASSES.length * 2][];
+    private final boolean[] usedDiffs = new boolean[MAPPING_CLASSES.length * 2];
+    private int diffLength;
+
+
+    /**
+     * Clears the difference arrays used in the last request and prepares them
+     * for the interval of the given coverage manager. Arrays which are too
+     * short for the new interval are replaced on their next use.
+     * <p>
+     * @param coverage the coverage manager of the next request
+     */
+    void reset( CoverageManager coverage ) {
+        int length = Math.max( 0, coverage.getRightBound() - coverage.getLeftBound() + 1 );
+        for( int channel = 0; channel < diffs.length; ++channel ) {
+            if( usedDiffs[channel] ) {
+                Arrays.fill( diffs[channel], 0, diffLength, 0 );
+                usedDiffs[channel] = false;
+            }
+            if( diffs[channel] != null && diffs[channel].length < length + 1 ) {
+                diffs[channel] = null;
+            }
+        }
+        diffLength = length + 1;
+    }
+
+
+    /**
+     * Adds an alignment block to the difference array of the given mapping
+     * class and strand. The block is clipped to the bounds of the coverage
+     * manager.
+     * <p>
+     * @param coverage     the coverage manager of the current request
+     * @param mappingClass mapping class of the current read
+     * @param isFwdStrand  strand of the current read
+     * @param start        block start, 1-based and inclusive
+     * @param stop         block stop, 1-based and inclusive
+     */
+    void addRange( CoverageManager coverage, MappingClass mappingClass, boolean isFwdStrand, int start, int stop ) {
+        coverage.addCoverageRange( start, stop, getDiff( mappingClass, isFwdStrand ) );
+    }
+
+
+    /**
+     * @param mappingClass mapping class of the current read
+     * @param isFwdStrand  strand of the current read
+     * <p>
+     * @return The difference array of the given mapping class and strand
+     */
+    int[] getDiff( MappingClass mappingClass, boolean isFwdStrand ) {
+        int channel = mappingClass.ordinal() * 2 + (isFwdStrand ? 0 : 1);
+        if( diffs[channel] == null ) {
+            diffs[channel] = new int[diffLength];
+        }
+        usedDiffs[channel] = true;
+        return diffs[channel];
+    }
+
+
+    /**
+     * Calculates the prefix sums of all used difference arrays and adds them
+     * to the corresponding coverage arrays.
+     * <p>
+     * @param coverage the coverage manager to update
+     */
+    void applyTo( CoverageManager coverage ) {
+        for( MappingClass mappingClass : MAPPING_CLASSES ) {
+            for( int strand = 0; strand < 2; ++strand ) {
+                int channel = mappingClass.ordinal() * 2 + strand;
+                if( usedDiffs[channel] ) {
+                    coverage.addDifferences( diffs[channel], coverage.getCoverage( mappingClass ).getCoverage( strand == 0 ) );
+                }
+            }
+        }
+    }
+
+
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import de.cebitec.readxplorer.api.enums.FeatureType;
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
+import de.cebitec.readxplorer.parser.output.CoverageIndexWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static de.cebitec.readxplorer.parser.output.CoverageIndexWriter.BLOCK_ENTRIES;
+import static de.cebitec.readxplorer.parser.output.CoverageIndexWriter.CHANNELS;
+
+
+/**
+ * Reader for the coverage index (".rxcov" file) of a mapping file written by
+ * the {@link CoverageIndexWriter}. The index file is memory mapped and only
+ * the blocks overlapping a request are decompressed. The last decompressed
+ * block of each level is kept for the next request. An index is meant to be
+ * reused for many requests and is not thread safe.
+ * <p>
+ * The index contains the coverage of all mappings, independent of their
+ * number of mapping positions and their mapping quality. Thus, it can only be
+ * used for requests which do not filter by these two criteria.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+class CoverageIndex implements Closeable {
+
+    private static final MappingClass[] MAPPING_CLASSES = MappingClass.values();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int[] binSizes;
+    private final Map<String, ChromEntry> chromEntries;
+
+    private final Inflater inflater = new Inflater();
+    private final byte[] inflateBuffer = new byte[CHANNELS * BLOCK_ENTRIES * 4];
+    private byte[] compressedBuffer = new byte[0];
+    private final int[][] cachedValues;
+    private final long[] cachedOffsets;
+
+
+    /**
+     * Reader for the coverage index of a mapping file.
+     * <p>
+     * @param channel           the channel of the index file
+     * @param mappingFileLength length of the indexed mapping file, which has
+     *                          to match the length stored in the index
+     * <p>
+     * @throws IOException If the index file cannot be read
+     */
+    private CoverageIndex( FileChannel channel, long mappingFileLength ) throws IOException {
+        this.channel = channel;
+        this.buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        ByteBuffer directory = buffer.duplicate();
+        directory.position( (int) buffer.getLong( buffer.capacity() - 8 ) );
+
+        if( directory.getInt() != CoverageIndexWriter.MAGIC || directory.getInt() != CoverageIndexWriter.VERSION ||
+            directory.getInt() != BLOCK_ENTRIES || directory.getLong() != mappingFileLength ) {
+            throw new IOException( "Coverage index is outdated or has an unknown format." );
+        }
+        this.binSizes = new int[directory.getInt()];
+        for( int level = 0; level < binSizes.length; ++level ) {
+            binSizes[level] = directory.getInt();
+        }
+        int chromCount = directory.getInt();
+        this.chromEntries = new HashMap<>( chromCount * 2 );
+        for( int i = 0; i < chromCount; ++i ) {
+            ChromEntry chrom = new ChromEntry( readUTF( directory ), directory.getInt(), binSizes.length );
+            for( int level = 0; level < binSizes.length; ++level ) {
+                int blockCount = directory.getInt();
+                chrom.offsets[level] = new long[blockCount];
+                chrom.sizes[level] = new int[blockCount];
+                for( int block = 0; block < blockCount; ++block ) {
+                    chrom.offsets[level][block] = directory.getLong();
+                    chrom.sizes[level][block] = directory.getInt();
+                }
+            }
+            chromEntries.put( chrom.name, chrom );
+        }
+        this.cachedValues = new int[binSizes.length][];
+        this.cachedOffsets = new long[binSizes.length];
+    }
+
+
+    /**
+     * Opens the coverage index of the given mapping file.
+     * <p>
+     * @param mappingFile the mapping file whose index shall be opened
+     * <p>
+     * @return The coverage index or <code>null</code>, if the mapping file has
+     *         no coverage index
+     * <p>
+     * @throws IOException If the index exists, but cannot be read or belongs
+     *                     to a different version of the mapping file
+     */
+    static CoverageIndex open( File mappingFile ) throws IOException {
+        File indexFile = CoverageIndexWriter.getIndexFile( mappingFile );
+        if( !indexFile.exists() ) {
+            return null;
+        }
+        FileChannel channel = FileChannel.open( indexFile.toPath(), StandardOpenOption.READ );
+        try {
+            if( channel.size() > Integer.MAX_VALUE ) {
+                throw new IOException( "Coverage index " + indexFile.getName() + " is too large to be mapped." );
+            }
+            return new CoverageIndex( channel, mappingFile.length() );
+        } catch( IOException | RuntimeException e ) {
+            channel.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * @param readClassParams parameters determining the included reads
+     * <p>
+     * @return <code>true</code>, if the coverage index can be used for the
+     *         given read class parameters, <code>false</code> otherwise
+     */
+    static boolean supports( ParametersReadClasses readClassParams ) {
+        return readClassParams.isClassificationAllowed( FeatureType.MULTIPLE_MAPPED_READ ) &&
+               readClassParams.getMinMappingQual() <= 0;
+    }
+
+
+    /**
+     * Adds the coverage of the given interval to the given coverage manager.
+     * The coverage manager must cover the interval and its arrays must
+     * already be increased to the interval size. The coverage is taken from
+     * the level with the largest bin size not larger than the given
+     * resolution. For binned levels, each position carries the maximum
+     * coverage of its bin.
+     * <p>
+     * @param chromName       name of the chromosome
+     * @param from            start of the interval, 1-based and inclusive
+     * @param to              stop of the interval, 1-based and inclusive
+     * @param resolution      number of bases the result is viewed with per
+     *                        value. 1 returns the exact coverage.
+     * @param readClassParams parameters determining the included reads, they
+     *                        have to be supported by the index
+     * @param coverage        the coverage manager to which the coverage is
+     *                        added
+     * <p>
+     * @throws IOException If the index cannot be read
+     */
+    void addCoverage( String chromName, int from, int to, int resolution, ParametersReadClasses readClassParams,
+                      CoverageManager coverage ) throws IOException {
+
+        ChromEntry chrom = chromEntries.get( chromName );
+        if( chrom == null ) {
+            return; //no mappings on this chromosome
+        }
+        int level = 0;
+        while( level + 1 < binSizes.length && binSizes[level + 1] <= resolution ) {
+            ++level;
+        }
+        int binSize = binSizes[level];
+        int firstIndex = Math.max( from, 1 ) - 1;
+        int chromBins = (chrom.length + binSize - 1) / binSize;
+        int lastIndex = (int) Math.min( to - 1L, (long) chromBins * binSize - 1 );
+
+        for( int index = firstIndex; index <= lastIndex; ) {
+            int bin = index / binSize;
+            int block = bin / BLOCK_ENTRIES;
+            int blockEnd = Math.min( lastIndex, (block + 1) * BLOCK_ENTRIES * binSize - 1 );
+            int[] values = getBlock( chrom, level, block );
+            if( values != null ) {
+                for( MappingClass mappingClass : MAPPING_CLASSES ) {
+                    if( readClassParams.isClassificationAllowed( mappingClass ) ) {
+                        for( int strand = 0; strand < 2; ++strand ) {
+                            int[] covArray = coverage.getCoverage( mappingClass ).getCoverage( strand == 0 );
+                            int channelStart = (mappingClass.ordinal() * 2 + strand) * BLOCK_ENTRIES - block * BLOCK_ENTRIES;
+                            for( int i = index; i <= blockEnd; ++i ) {
+                                covArray[i + 1 - from] += values[channelStart + i / binSize];
+                            }
+                        }
+                    }
+                }
+            }
+            index = blockEnd + 1;
+        }
+    }
+
+
+    /**
+     * Returns the decompressed values of a block.
+     * <p>
+     * @param chrom the chromosome of the block
+     * @param level the level of the block
+     * @param block the index of the block in its level
+     * <p>
+     * @return the values of all channels of the block or <code>null</code>, if
+     *         the block has no coverage
+     * <p>
+     * @throws IOException If the block cannot be decompressed
+     */
+    private int[] getBlock( ChromEntry chrom, int level, int block ) throws IOException {
+        if( block >= chrom.offsets[level].length || chrom.offsets[level][block] < 0 ) {
+            return null;
+        }
+        long offset = chrom.offsets[level][block];
+        if( cachedValues[level] != null && cachedOffsets[level] == offset ) {
+            return cachedValues[level];
+        }
+
+        int size = chrom.sizes[level][block];
+        if( compressedBuffer.length < size ) {
+            compressedBuffer = new byte[size];
+        }
+        ByteBuffer compressed = buffer.duplicate();
+        compressed.position( (int) offset );
+        compressed.get( compressedBuffer, 0, size );
+        inflater.reset();
+        inflater.setInput( compressedBuffer, 0, size );
+        try {
+            int length = 0;
+            while( length < inflateBuffer.length && !inflater.finished() ) {
+                length += inflater.inflate( inflateBuffer, length, inflateBuffer.length - length );
+                if( inflater.needsInput() && !inflater.finished() ) {
+                    throw new IOException( "Coverage index block is truncated." );
+                }
+            }
+        } catch( DataFormatException e ) {
+            throw new IOException( e );
+        }
+
+        int[] values = cachedValues[level] == null ? new int[CHANNELS * BLOCK_ENTRIES] : cachedValues[level];
+        ByteBuffer.wrap( inflateBuffer ).asIntBuffer().get( values );
+        for( int channel = 0; channel < CHANNELS; ++channel ) {
+            int value = 0;
+            for( int i = channel * BLOCK_ENTRIES; i < (channel + 1) * BLOCK_ENTRIES; ++i ) {
+                value += values[i];
+                values[i] = value;
+            }
+        }
+        cachedValues[level] = values;
+        cachedOffsets[level] = offset;
+        return values;
+    }
+
+
+    /**
+     * Reads a string written by DataOutput.writeUTF. Only ASCII names are
+     * decoded correctly, which covers all valid sequence names of the SAM
+     * format.
+     * <p>
+     * @param directory buffer positioned at the string
+     * <p>
+     * @return the string
+     */
+    private static String readUTF( ByteBuffer directory ) {
+        int length = directory.getShort() & 0xffff;
+        byte[] bytes = new byte[length];
+        directory.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+
+
+    /**
+     * Block directory of a chromosome.
+     */
+    private static class ChromEntry {
+
+        private final String name;
+        private final int length;
+        private final long[][] offsets;
+        private final int[][] sizes;
+
+
+        ChromEntry( String name, int length, int levels ) {
+            this.name = name;
+            this.length = length;
+            this.offsets = new long[levels][];
+            this.sizes = new int[levels][];
+        }
+
+
+    }
+
+
+}
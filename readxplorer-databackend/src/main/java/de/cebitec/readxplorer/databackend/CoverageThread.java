@@ -26,12 +26,11 @@ import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
 import de.cebitec.readxplorer.databackend.dataobjects.Difference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
+import de.cebitec.readxplorer.databackend.dataobjects.Pileup;
 import de.cebitec.readxplorer.databackend.dataobjects.ReferenceGap;
 import de.cebitec.readxplorer.utils.VisualisationUtils;
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,9 +47,9 @@ public class CoverageThread extends RequestThread {
     private long trackID;
     private long trackID2;
     private final List<PersistentTrack> tracks;
-    protected final ConcurrentLinkedQueue<IntervalRequest> requestQueue;
     private CoverageAndDiffResult currentCov;
     private PersistentReference referenceGenome;
+    private final SamBamReaderPool readerPool;
 
 
     /**
@@ -63,12 +62,29 @@ public class CoverageThread extends RequestThread {
      *                        coverage should be combined in the results
      */
     public CoverageThread( List<PersistentTrack> tracks, PersistentReference referenceGenome, boolean combineTracks ) {
-        super();
-        this.requestQueue = new ConcurrentLinkedQueue<>();
+        this( tracks, referenceGenome, combineTracks, true );
+    }
+
+
+    /**
+     * Thread for carrying out the requests for receiving coverage from a bam
+     * file.
+     * <p>
+     * @param tracks          the tracks handled here
+     * @param referenceGenome the reference genome
+     * @param combineTracks   true, if more than one track is added and their
+     *                        coverage should be combined in the results
+     * @param interactive     true, if only the newest request of each sender
+     *                        shall be carried out, false if all requests
+     *                        shall be carried out in FIFO order
+     */
+    protected CoverageThread( List<PersistentTrack> tracks, PersistentReference referenceGenome, boolean combineTracks, boolean interactive ) {
+        super( interactive );
 
         // do id specific stuff
         this.tracks = tracks;
         this.referenceGenome = referenceGenome;
+        this.readerPool = SamBamReaderPool.getInstance();
         if( tracks.size() == 1 ) {
             singleCoverageThread( tracks.get( 0 ).getId() );
         } else if( tracks.size() == 2 && !combineTracks ) {
@@ -102,16 +118,6 @@ public class CoverageThread extends RequestThread {
     }
 
 
-    /**
-     * {@inheritDoc }
-     */
-    @Override
-    public void addRequest( IntervalRequest request ) {
-        setLatestRequest( request );
-        requestQueue.add( request );
-    }
-
-
     /**
      * Fetches the coverage and (if desired) also the diffs and gaps for a given
      * interval.
@@ -122,11 +128,12 @@ public class CoverageThread extends RequestThread {
      * @return the container with the desired data
      */
     CoverageAndDiffResult getCoverageAndDiffsFromFile( IntervalRequest request, PersistentTrack track ) {
-        File file = new File( track.getFilePath() );
-        SamBamFileReader externalDataReader = new SamBamFileReader( file, track.getId(), referenceGenome );
-        CoverageAndDiffResult result = externalDataReader.getCoverageFromBam( request );
-        externalDataReader.close();
-        return result;
+        SamBamFileReader externalDataReader = readerPool.checkout( track, referenceGenome );
+        try {
+            return externalDataReader.getCoverageFromBam( request );
+        } finally {
+            readerPool.release( externalDataReader );
+        }
 
     }
 
@@ -141,11 +148,39 @@ public class CoverageThread extends RequestThread {
      *         coverage and no diffs and gaps
      */
     CoverageAndDiffResult getCoverageAndReadStartsFromFile( IntervalRequest request, PersistentTrack track ) {
-        File file = new File( track.getFilePath() );
+        SamBamFileReader externalDataReader = readerPool.checkout( track, referenceGenome );
+        try {
+            return externalDataReader.getCoverageAndReadStartsFromBam( request );
+        } finally {
+            readerPool.release( externalDataReader );
+        }
+    }
+
 
-        SamBamFileReader externalDataReader = new SamBamFileReader( file, track.getId(), referenceGenome );
-        CoverageAndDiffResult result = externalDataReader.getCoverageAndReadStartsFromBam( request );
-        externalDataReader.close();
+    /**
+     * Fetches the coverage and the pileup of all diffs and gaps for multiple
+     * tracks and combines all the data. The diffs and gaps of all tracks are
+     * added to the same pileup.
+     * <p>
+     * @param request the request for which the pileup is needed
+     * <p>
+     * @return the coverage and diff result containing the coverage and the
+     *         pileup, but no diff and gap objects
+     */
+    CoverageAndDiffResult loadPileupMultiple( IntervalRequest request ) {
+        CoverageManager covManager = null;
+        Pileup pileup = Pileup.obtain( request.getTotalFrom(), request.getTotalTo(), request.getMinBaseQuality() );
+        for( PersistentTrack track : tracks ) {
+            SamBamFileReader externalDataReader = readerPool.checkout( track, referenceGenome );
+            try {
+                CoverageManager trackCov = externalDataReader.getCoverageAndPileupFromBam( request, pileup );
+                covManager = covManager == null ? trackCov : this.mergeMultCoverages( covManager, trackCov );
+            } finally {
+                readerPool.release( externalDataReader );
+            }
+        }
+        CoverageAndDiffResult result = new CoverageAndDiffResult( covManager, null, null, request );
+        result.setPileup( pileup );
         return result;
     }
 
@@ -217,6 +252,7 @@ public class CoverageThread extends RequestThread {
                 IntervalRequestData.Normal,
                 IntervalRequestData.Track2,
                 request.getReadClassParams() );
+        newRequest.setResolution( request.getResolution() );
         CoverageAndDiffResult result = getCoverageAndDiffsFromFile( newRequest, tracks.get( 0 ) );
 
         newRequest = new IntervalRequest(
@@ -230,6 +266,7 @@ public class CoverageThread extends RequestThread {
                 IntervalRequestData.Normal,
                 IntervalRequestData.Track1,
                 request.getReadClassParams() );
+        newRequest.setResolution( request.getResolution() );
         result.addCoverageManager( getCoverageAndDiffsFromFile( newRequest, tracks.get( 1 ) ).getCovManager() );
 
         return result;
@@ -274,43 +311,41 @@ public class CoverageThread extends RequestThread {
     }
 
 
+    /**
+     * {@inheritDoc }
+     * <p>
+     * The coverage is only loaded, if the current coverage does not cover the
+     * request or was loaded with different parameters. Results for requests
+     * which were superseded by a newer request of the same sender are
+     * skipped.
+     */
     @Override
-    public void run() {
-
+    protected void processRequest( IntervalRequest request ) {
         try {
-            while( !interrupted() ) {
-                IntervalRequest request = requestQueue.poll();
-                if( request != null ) {
-
-                    this.makeThreadSleep( 10 ); //ensures that no newer request is already in the list = better performance
-                    IntervalRequest nextRequest = requestQueue.peek();
-                    boolean newRequestArrived = nextRequest != null && currentCov.getRequest() != null && request != nextRequest;
-
-                    if( !newRequestArrived && (!currentCov.getCovManager().coversBounds( request.getFrom(), request.getTo() )
-                                               || (!currentCov.getRequest().isDiffsAndGapsNeeded() && request.isDiffsAndGapsNeeded())
-                                               || !this.readClassParamsFulfilled( request )
-                                               || doesNotMatchLatestRequestBounds( request )) ) {
-                        if( trackID2 != 0 ) {
-                            currentCov = this.loadCoverageDouble( request );
-                        } else if( this.trackID != 0 || this.canQueryCoverage() ) {
-                            currentCov = this.loadCoverageMultiple( request );
-//                        } else {
-//                            skippedCounter++;
-//                            request.getSender().notifySkipped();
-                        }
-                    }
-
-                    if( this.doesNotMatchLatestRequestBounds( request ) ) {
-                        this.setLastRequest( request );
-                        request.getSender().receiveData( currentCov );
-
-                    } else {
-                        request.getSender().notifySkipped();
-                    }
-                } else {
-                    this.makeThreadSleep( 25 );
+            if( isSuperseded( request ) ) {
+                request.getSender().notifySkipped();
+                return;
+            }
+
+            if( currentCov.getRequest() == null || !currentCov.getCovManager().coversBounds( request.getFrom(), request.getTo() )
+                || (!currentCov.getRequest().isDiffsAndGapsNeeded() && request.isDiffsAndGapsNeeded())
+                || currentCov.getRequest().getResolution() > request.getResolution()
+                || !this.readClassParamsFulfilled( request )
+                || doesNotMatchLatestRequestBounds( request ) ) {
+                if( trackID2 != 0 ) {
+                    currentCov = this.loadCoverageDouble( request );
+                } else if( this.trackID != 0 || this.canQueryCoverage() ) {
+                    currentCov = this.loadCoverageMultiple( request );
                 }
             }
+
+            if( this.doesNotMatchLatestRequestBounds( request ) && !isSuperseded( request ) ) {
+                this.setLastRequest( request );
+                request.getSender().receiveData( currentCov );
+
+            } else {
+                request.getSender().notifySkipped();
+            }
         } catch( OutOfMemoryError e ) {
             LOG.error( e.getMessage(), e );
             VisualisationUtils.displayOutOfMemoryError();
@@ -361,13 +396,4 @@ public class CoverageThread extends RequestThread {
     }
 
 
-    private void makeThreadSleep( final int msToSleep ) {
-        try {
-            Thread.sleep( msToSleep );
-        } catch( InterruptedException ex ) {
-            LOG.error( null, ex );
-        }
-    }
-
-
 }
@@ -24,8 +24,6 @@ import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
 import java.util.List;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 
 /**
@@ -37,9 +35,6 @@ import org.slf4j.LoggerFactory;
  */
 public class CoverageThreadAnalyses extends CoverageThread {
 
-    private static final Logger LOG = LoggerFactory.getLogger( CoverageThreadAnalyses.class.getName() );
-
-
     /**
      * Thread for retrieving the coverage for a list of tracks from their
      * mapping files.
@@ -50,37 +45,30 @@ public class CoverageThreadAnalyses extends CoverageThread {
      *                        coverage should be combined in the results
      */
     public CoverageThreadAnalyses( List<PersistentTrack> tracks, PersistentReference referenceGenome, boolean combineTracks ) {
-        super( tracks, referenceGenome, combineTracks );
+        super( tracks, referenceGenome, combineTracks, false );
     }
 
 
+    /**
+     * {@inheritDoc }
+     * <p>
+     * Analysis requests are never skipped.
+     */
     @Override
-    public void run() {
-
-        while( !interrupted() ) {
-
-            IntervalRequest request = requestQueue.poll();
-            CoverageAndDiffResult currentCov = new CoverageAndDiffResult( new CoverageManager( 0, 0 ), null, null, request );
-            if( request != null ) {
-                if( request.getDesiredData() == IntervalRequestData.ReadStarts ) {
-                    currentCov = this.loadReadStartsAndCoverageMultiple( request );
-                } else if( !currentCov.getCovManager().coversBounds( request.getFrom(), request.getTo() ) ) {
-                    if( this.getTrackId2() != 0 ) {
-                        currentCov = this.loadCoverageDouble( request ); //at the moment we only need the complete coverage here
-                    } else if( this.getTrackId() != 0 || this.canQueryCoverage() ) {
-                        currentCov = this.loadCoverageMultiple( request );
-                    }
-                }
-                request.getSender().receiveData( currentCov );
-            } else {
-                try {
-                    Thread.sleep( 10 );
-                } catch( InterruptedException ex ) {
-                    LOG.error( null, ex );
-                }
+    protected void processRequest( IntervalRequest request ) {
+        CoverageAndDiffResult currentCov = new CoverageAndDiffResult( new CoverageManager( 0, 0 ), null, null, request );
+        if( request.getDesiredData() == IntervalRequestData.ReadStarts ) {
+            currentCov = this.loadReadStartsAndCoverageMultiple( request );
+        } else if( request.getDesiredData() == IntervalRequestData.Pileup && this.getTrackId2() == 0 ) {
+            currentCov = this.loadPileupMultiple( request );
+        } else if( !currentCov.getCovManager().coversBounds( request.getFrom(), request.getTo() ) ) {
+            if( this.getTrackId2() != 0 ) {
+                currentCov = this.loadCoverageDouble( request ); //at the moment we only need the complete coverage here
+            } else if( this.getTrackId() != 0 || this.canQueryCoverage() ) {
+                currentCov = this.loadCoverageMultiple( request );
             }
-
         }
+        request.getSender().receiveData( currentCov );
     }
 
 
@@ -41,6 +41,8 @@ public class IntervalRequest {
     private IntervalRequestData desiredData;
     private final ParametersReadClasses readClassParams;
     private boolean diffsAndGapsNeeded;
+    private int resolution = 1;
+    private int minBaseQuality = -1;
 
 
     /**
@@ -369,4 +371,48 @@ public class IntervalRequest {
     }
 
 
+    /**
+     * @return The number of bases which are displayed per value of the
+     *         result. 1 means that the exact data is needed.
+     */
+    public int getResolution() {
+        return resolution;
+    }
+
+
+    /**
+     * Sets the number of bases which are displayed per value of the result.
+     * Coverage requests with a resolution larger than 1 may be answered with
+     * the maximum coverage of bins of up to this size, if a coverage index is
+     * available for the track. Analyses must always use the default value 1.
+     * <p>
+     * @param resolution The number of bases which are displayed per value of
+     *                   the result, at least 1
+     */
+    public void setResolution( int resolution ) {
+        this.resolution = Math.max( 1, resolution );
+    }
+
+
+
+    /**
+     * @return Minimum base quality of the bases added to a pileup, see
+     *         {@link IntervalRequestData#Pileup}. -1, if all bases are added.
+     */
+    public int getMinBaseQuality() {
+        return minBaseQuality;
+    }
+
+
+    /**
+     * Sets the minimum base quality for pileup requests. Only bases with a
+     * larger or an unknown base quality are added to the pileup.
+     * <p>
+     * @param minBaseQuality Minimum base quality of the bases added to a
+     *                       pileup, -1 to add all bases
+     */
+    public void setMinBaseQuality( int minBaseQuality ) {
+        this.minBaseQuality = minBaseQuality;
+    }
+
 }
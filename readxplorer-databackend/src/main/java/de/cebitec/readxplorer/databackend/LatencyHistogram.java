@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A thread safe histogram of durations. The buckets grow exponentially: Bucket
+ * 0 counts durations below 1 ms and bucket i durations from 2^(i-1) to 2^i ms.
+ * The last bucket also counts all longer durations.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class LatencyHistogram {
+
+    private static final int NB_BUCKETS = 18;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray( NB_BUCKETS );
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+
+    /**
+     * A thread safe histogram of durations.
+     * <p>
+     * @param name name of the measured duration used in the summary
+     */
+    public LatencyHistogram( String name ) {
+        this.name = name;
+    }
+
+
+    /**
+     * Adds a duration to the histogram.
+     * <p>
+     * @param nanos the duration in nanoseconds
+     */
+    public void record( long nanos ) {
+        long millis = TimeUnit.NANOSECONDS.toMillis( Math.max( 0, nanos ) );
+        int bucket = millis == 0 ? 0 : Math.min( NB_BUCKETS - 1, 64 - Long.numberOfLeadingZeros( millis ) );
+        buckets.incrementAndGet( bucket );
+        count.incrementAndGet();
+        totalNanos.addAndGet( nanos );
+        maxNanos.accumulateAndGet( nanos, Math::max );
+    }
+
+
+    /**
+     * @return The number of recorded durations
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+
+    /**
+     * @param bucket index of the bucket
+     * <p>
+     * @return The number of durations counted in the given bucket
+     */
+    public long getBucketCount( int bucket ) {
+        return buckets.get( bucket );
+    }
+
+
+    /**
+     * @return The number of buckets of the histogram
+     */
+    public int getNbBuckets() {
+        return NB_BUCKETS;
+    }
+
+
+    /**
+     * @param bucket index of the bucket
+     * <p>
+     * @return The exclusive upper bound of the given bucket in ms
+     */
+    public long getBucketUpperBound( int bucket ) {
+        return bucket == NB_BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+
+    /**
+     * Estimates a percentile of the recorded durations.
+     * <p>
+     * @param percentile the percentile between 0 and 100
+     * <p>
+     * @return The upper bound in ms of the bucket containing the percentile,
+     *         0 if nothing was recorded
+     */
+    public long getPercentile( double percentile ) {
+        long total = count.get();
+        long needed = (long) Math.ceil( total * percentile / 100 );
+        long seen = 0;
+        for( int bucket = 0; bucket < NB_BUCKETS && total > 0; ++bucket ) {
+            seen += buckets.get( bucket );
+            if( seen >= needed ) {
+                return Math.min( getBucketUpperBound( bucket ), TimeUnit.NANOSECONDS.toMillis( maxNanos.get() ) + 1 );
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * Removes all recorded durations.
+     */
+    public void reset() {
+        for( int bucket = 0; bucket < NB_BUCKETS; ++bucket ) {
+            buckets.set( bucket, 0 );
+        }
+        count.set( 0 );
+        totalNanos.set( 0 );
+        maxNanos.set( 0 );
+    }
+
+
+    @Override
+    public String toString() {
+        long total = count.get();
+        long meanMicros = total > 0 ? TimeUnit.NANOSECONDS.toMicros( totalNanos.get() / total ) : 0;
+        return name + ": n=" + total + ", mean=" + meanMicros / 1000.0 + " ms, p50<" + getPercentile( 50 ) +
+               " ms, p90<" + getPercentile( 90 ) + " ms, p99<" + getPercentile( 99 ) +
+               " ms, max=" + TimeUnit.NANOSECONDS.toMillis( maxNanos.get() ) + " ms";
+    }
+
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import de.cebitec.readxplorer.databackend.dataobjects.MappingBatch;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+
+/**
+ * Pool of reusable {@link MappingBatch}es. The mapping threads check out a
+ * batch for each reduced mappings request and the batch is released again
+ * after its result has been delivered. Thus, the columns of a batch are only
+ * allocated once per concurrently processed request instead of once per
+ * request.
+ * <p>
+ * The number of idle batches is bounded and batches which grew beyond the
+ * maximum retained capacity are dropped instead of being kept.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public final class MappingBatchPool {
+
+    /**
+     * 16 = Default maximum number of idle batches kept in the pool.
+     */
+    public static final int DEFAULT_MAX_IDLE = 16;
+    /**
+     * 4194304 = Default maximum capacity of a batch kept in the pool.
+     */
+    public static final int DEFAULT_MAX_CAPACITY = 1 << 22;
+
+    private static final MappingBatchPool INSTANCE = new MappingBatchPool( DEFAULT_MAX_IDLE, DEFAULT_MAX_CAPACITY );
+
+    private final int maxIdle;
+    private final int maxCapacity;
+    private final Deque<MappingBatch> idleBatches;
+
+
+    /**
+     * Pool of reusable {@link MappingBatch}es.
+     * <p>
+     * @param maxIdle     maximum number of idle batches kept in the pool
+     * @param maxCapacity maximum capacity of a batch kept in the pool
+     */
+    MappingBatchPool( int maxIdle, int maxCapacity ) {
+        this.maxIdle = maxIdle;
+        this.maxCapacity = maxCapacity;
+        this.idleBatches = new ArrayDeque<>( maxIdle );
+    }
+
+
+    /**
+     * @return The batch pool shared by all mapping threads.
+     */
+    public static MappingBatchPool getInstance() {
+        return INSTANCE;
+    }
+
+
+    /**
+     * Checks out an empty batch. An idle batch is reused if available,
+     * otherwise a new batch is created.
+     * <p>
+     * @return An empty batch
+     */
+    public MappingBatch checkout() {
+        MappingBatch batch;
+        synchronized( this ) {
+            batch = idleBatches.pollFirst();
+        }
+        return batch != null ? batch : new MappingBatch();
+    }
+
+
+    /**
+     * Hands a batch back to the pool. The batch must not be used by the
+     * caller anymore afterwards. It is only cleared, if it is kept in the
+     * pool.
+     * <p>
+     * @param batch the batch to release
+     * <p>
+     * @throws IllegalStateException If the batch is still idle in the pool,
+     *                               because it was released twice
+     */
+    public void release( MappingBatch batch ) {
+        synchronized( this ) {
+            if( idleBatches.contains( batch ) ) {
+                throw new IllegalStateException( "The mapping batch was released twice." );
+            }
+            if( idleBatches.size() < maxIdle && batch.getCapacity() <= maxCapacity ) {
+                batch.clear();
+                idleBatches.addFirst( batch );
+            }
+        }
+    }
+
+
+    /**
+     * @return The number of idle batches currently kept in the pool.
+     */
+    synchronized int getIdleCount() {
+        return idleBatches.size();
+    }
+
+
+}
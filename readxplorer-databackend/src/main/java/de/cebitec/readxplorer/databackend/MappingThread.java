@@ -20,12 +20,12 @@ package de.cebitec.readxplorer.databackend;
 
 import de.cebitec.readxplorer.api.enums.IntervalRequestData;
 import de.cebitec.readxplorer.databackend.dataobjects.Mapping;
+import de.cebitec.readxplorer.databackend.dataobjects.MappingBatch;
 import de.cebitec.readxplorer.databackend.dataobjects.MappingResult;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
 import de.cebitec.readxplorer.databackend.dataobjects.ReadPairGroup;
 import de.cebitec.readxplorer.databackend.dataobjects.ReadPairResultPersistent;
-import java.io.File;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -33,7 +33,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,7 +52,7 @@ public class MappingThread extends RequestThread {
     private List<Mapping> currentMappings;
     private Collection<ReadPairGroup> currentReadPairs;
     private PersistentReference refGenome;
-    protected ConcurrentLinkedQueue<IntervalRequest> requestQueue;
+    private final SamBamReaderPool readerPool;
 
 
     /**
@@ -64,21 +63,27 @@ public class MappingThread extends RequestThread {
      * @param referenceGenome The reference genome
      */
     public MappingThread( List<PersistentTrack> tracks, PersistentReference referenceGenome ) {
-        super();
-        // do general stuff
-        this.requestQueue = new ConcurrentLinkedQueue<>();
-        this.tracks = tracks;
-        this.refGenome = referenceGenome;
+        this( tracks, referenceGenome, true );
     }
 
 
     /**
-     * {@inheritDoc }
+     * Creates a new mapping thread for carrying out mapping request either to a
+     * database or a file.
+     * <p>
+     * @param tracks          the track for which this mapping thread is
+     *                        created
+     * @param referenceGenome The reference genome
+     * @param interactive     true, if only the newest request of each sender
+     *                        shall be carried out, false if all requests
+     *                        shall be carried out in FIFO order
      */
-    @Override
-    public void addRequest( IntervalRequest request ) {
-        this.setLatestRequest( request );
-        this.requestQueue.add( request );
+    protected MappingThread( List<PersistentTrack> tracks, PersistentReference referenceGenome, boolean interactive ) {
+        super( interactive );
+        // do general stuff
+        this.tracks = tracks;
+        this.refGenome = referenceGenome;
+        this.readerPool = SamBamReaderPool.getInstance();
     }
 
 
@@ -100,10 +105,12 @@ public class MappingThread extends RequestThread {
 
             mappingList.ensureCapacity( tracks.size() );
             for( final PersistentTrack track : tracks ) {
-                SamBamFileReader externalDataReader = new SamBamFileReader( new File( track.getFilePath() ), track.getId(), refGenome );
-                Collection<Mapping> intermedRes = externalDataReader.getMappingsFromBam( request );
-                externalDataReader.close();
-                mappingList.addAll( intermedRes );
+                SamBamFileReader externalDataReader = readerPool.checkout( track, refGenome );
+                try {
+                    mappingList.addAll( externalDataReader.getMappingsFromBam( request ) );
+                } finally {
+                    readerPool.release( externalDataReader );
+                }
             }
             if( tracks.size() > 1 ) {
                 Collections.sort( mappingList );
@@ -133,10 +140,12 @@ public class MappingThread extends RequestThread {
 
         List<Mapping> mappings = new ArrayList<>( tracks.size() );
         for( final PersistentTrack track : tracks ) {
-            SamBamFileReader externalDataReader = new SamBamFileReader( new File( track.getFilePath() ), track.getId(), refGenome );
-            Collection<Mapping> intermedRes = externalDataReader.getReducedMappingsFromBam( request );
-            externalDataReader.close();
-            mappings.addAll( intermedRes );
+            SamBamFileReader externalDataReader = readerPool.checkout( track, refGenome );
+            try {
+                mappings.addAll( externalDataReader.getReducedMappingsFromBam( request ) );
+            } finally {
+                readerPool.release( externalDataReader );
+            }
         }
         if( tracks.size() > 1 ) {
             Collections.sort( mappings );
@@ -149,6 +158,32 @@ public class MappingThread extends RequestThread {
     }
 
 
+    /**
+     * Receives all reduced mappings belonging to the associated tracks as a
+     * columnar batch checked out from the {@link MappingBatchPool}. The batch
+     * has to be released to the pool again, when it is not needed anymore.
+     * <p>
+     * @param request the request to carry out
+     * <p>
+     * @return batch of reduced mappings sorted by start position
+     */
+    MappingBatch loadReducedMappingBatch( final IntervalRequest request ) {
+        MappingBatch batch = MappingBatchPool.getInstance().checkout();
+        for( final PersistentTrack track : tracks ) {
+            SamBamFileReader externalDataReader = readerPool.checkout( track, refGenome );
+            try {
+                externalDataReader.addReducedMappingsFromBam( request, batch );
+            } finally {
+                readerPool.release( externalDataReader );
+            }
+        }
+        if( tracks.size() > 1 ) {
+            batch.sortByStart();
+        }
+        return batch;
+    }
+
+
     /**
      * Fetches all read pair mappings for the given interval and typeFlag.
      * <p>
@@ -165,9 +200,12 @@ public class MappingThread extends RequestThread {
         if( from > 0 && to > 0 && from < to ) {
             readPairs.ensureCapacity( tracks.size() );
             for( PersistentTrack track : tracks ) {
-                SamBamFileReader reader = new SamBamFileReader( new File( track.getFilePath() ), track.getId(), refGenome );
-                Collection<ReadPairGroup> intermedRes = reader.getReadPairMappingsFromBam( request );
-                readPairs.addAll( intermedRes );
+                SamBamFileReader reader = readerPool.checkout( track, refGenome );
+                try {
+                    readPairs.addAll( reader.getReadPairMappingsFromBam( request ) );
+                } finally {
+                    readerPool.release( reader );
+                }
             }
         }
         return readPairs;
@@ -176,38 +214,26 @@ public class MappingThread extends RequestThread {
 
     /**
      * {@inheritDoc }
+     * <p>
+     * Requests which are superseded by a newer request of the same sender are
+     * skipped.
      */
     @Override
-    public void run() {
-
-        while( !interrupted() ) {
-
-            IntervalRequest request = requestQueue.poll();
-            if( request != null ) {
-                if( doesNotMatchLatestRequestBounds( request ) ) {
-                    if( request.getDesiredData() == IntervalRequestData.ReadPairs ) {
-                        this.currentReadPairs = this.getReadPairMappings( request );
-                    } else if( request.getDesiredData() == IntervalRequestData.ReducedMappings ) {
-                        currentMappings = this.loadReducedMappings( request );
-                    } else {
-                        currentMappings = this.loadMappings( request );
-                    }
-                    //switch between ordinary mappings and read pairs
-                    if( request.getDesiredData() != IntervalRequestData.ReadPairs ) {
-                        request.getSender().receiveData( new MappingResult( currentMappings, request ) );
-                    } else {
-                        request.getSender().receiveData( new ReadPairResultPersistent( currentReadPairs, request ) );
-                    }
-                }
-
+    protected void processRequest( IntervalRequest request ) {
+        if( doesNotMatchLatestRequestBounds( request ) && !isSuperseded( request ) ) {
+            if( request.getDesiredData() == IntervalRequestData.ReadPairs ) {
+                this.currentReadPairs = this.getReadPairMappings( request );
+            } else if( request.getDesiredData() == IntervalRequestData.ReducedMappings ) {
+                currentMappings = this.loadReducedMappings( request );
             } else {
-                try {
-                    Thread.sleep( 10 );
-                } catch( InterruptedException ex ) {
-                    LOG.error( null, ex );
-                }
+                currentMappings = this.loadMappings( request );
+            }
+            //switch between ordinary mappings and read pairs
+            if( request.getDesiredData() != IntervalRequestData.ReadPairs ) {
+                request.getSender().receiveData( new MappingResult( currentMappings, request ) );
+            } else {
+                request.getSender().receiveData( new ReadPairResultPersistent( currentReadPairs, request ) );
             }
-
         }
     }
 
@@ -19,13 +19,11 @@ package de.cebitec.readxplorer.databackend;
 
 
 import de.cebitec.readxplorer.api.enums.IntervalRequestData;
-import de.cebitec.readxplorer.databackend.dataobjects.Mapping;
+import de.cebitec.readxplorer.databackend.dataobjects.MappingBatchResult;
 import de.cebitec.readxplorer.databackend.dataobjects.MappingResult;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
 import java.util.List;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 
 /**
@@ -37,9 +35,6 @@ import org.slf4j.LoggerFactory;
  */
 public class MappingThreadAnalyses extends MappingThread {
 
-    private static final Logger LOG = LoggerFactory.getLogger( MappingThreadAnalyses.class.getName() );
-
-
     /**
      * Creates a new mapping thread for carrying out mapping request either to a
      * file.
@@ -49,35 +44,24 @@ public class MappingThreadAnalyses extends MappingThread {
      * @param referenceGenome Tne reference genome
      */
     public MappingThreadAnalyses( List<PersistentTrack> tracks, PersistentReference referenceGenome ) {
-        super( tracks, referenceGenome );
+        super( tracks, referenceGenome, false );
     }
 
 
     /**
      * {@inheritDoc }
+     * <p>
+     * Analysis requests are never skipped. Reduced mappings are delivered as
+     * a {@link MappingBatchResult} without creating an object per mapping.
+     * Its batch is released to the {@link MappingBatchPool} by the
+     * {@link AnalysesHandler} after delivering the result.
      */
     @Override
-    public void run() {
-
-        while( !interrupted() ) {
-
-            IntervalRequest request = requestQueue.poll();
-            List<Mapping> currentMappings;
-            if( request != null ) {
-                if( request.getDesiredData() == IntervalRequestData.ReducedMappings ) {
-                    currentMappings = this.loadReducedMappings( request );
-                } else {
-                    currentMappings = this.loadMappings( request );
-                }
-                request.getSender().receiveData( new MappingResult( currentMappings, request ) );
-
-            } else {
-                try {
-                    Thread.sleep( 10 );
-                } catch( InterruptedException ex ) {
-                    LOG.error( null, ex );
-                }
-            }
+    protected void processRequest( IntervalRequest request ) {
+        if( request.getDesiredData() == IntervalRequestData.ReducedMappings ) {
+            request.getSender().receiveData( new MappingBatchResult( this.loadReducedMappingBatch( request ), request ) );
+        } else {
+            request.getSender().receiveData( new MappingResult( this.loadMappings( request ), request ) );
         }
     }
 
@@ -26,6 +26,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 
 /**
@@ -236,4 +238,21 @@ public class ParametersReadClasses {
     }
 
 
+    /**
+     * Creates a canonical representation of this parameter set, which is
+     * independent of the order of the excluded classifications. Two parameter
+     * sets selecting the same mappings have the same cache key.
+     * <p>
+     * @return The key identifying this parameter set in an
+     *         {@link AnalysisCache}.
+     */
+    public String getCacheKey() {
+        Set<String> classKeys = new TreeSet<>();
+        for( Classification classification : excludedClasses ) {
+            classKeys.add( classification.getClass().getSimpleName() + ":" + classification.getType() );
+        }
+        return "quality=" + minMappingQual + ";strand=" + strandOption + ";excluded=" + String.join( ",", classKeys );
+    }
+
+
 }
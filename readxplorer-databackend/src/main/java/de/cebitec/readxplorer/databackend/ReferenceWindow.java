@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
+
+
+/**
+ * Window of a chromosome sequence held as upper case byte array. The window
+ * covers a request interval plus the span of the reads overlapping its
+ * borders, so the diffs of all reads of a request can be computed with a
+ * single fasta access and without creating a String for each read. If a read
+ * exceeds the window, the window is moved to cover it.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+class ReferenceWindow {
+
+    /**
+     * Number of bases loaded in addition on both sides of the requested
+     * interval. Reads overlapping the interval borders by at most this
+     * number of bases are covered by the first window.
+     */
+    static final int READ_SPAN_MARGIN = 1000;
+
+    private final PersistentReference reference;
+    private final int chromId;
+    private final int chromLength;
+    private byte[] bases;
+    private int start;
+    private int stop;
+
+
+    /**
+     * Window of a chromosome sequence held as upper case byte array.
+     * <p>
+     * @param reference the reference containing the chromosome
+     * @param chromId   id of the chromosome
+     * @param from      start of the interval to cover
+     * @param to        stop of the interval to cover
+     */
+    ReferenceWindow( PersistentReference reference, int chromId, int from, int to ) {
+        this.reference = reference;
+        this.chromId = chromId;
+        this.chromLength = reference.getChromosome( chromId ).getLength();
+        this.load( from, to );
+    }
+
+
+    /**
+     * Makes sure the window covers the given interval. The window is only
+     * reloaded, if the interval exceeds it.
+     * <p>
+     * @param from start of the interval to cover
+     * @param to   stop of the interval to cover
+     */
+    void ensureCovers( int from, int to ) {
+        if( from < start || to > stop ) {
+            this.load( from, to );
+        }
+    }
+
+
+    /**
+     * Loads the interval plus the read span margin on both sides, clipped to
+     * the chromosome.
+     */
+    private void load( int from, int to ) {
+        start = Math.max( 1, from - READ_SPAN_MARGIN );
+        stop = Math.min( chromLength, to + READ_SPAN_MARGIN );
+        bases = start <= stop ? reference.getChromBases( chromId, start, stop ) : new byte[0];
+        for( int i = 0; i < bases.length; ++i ) {
+            if( bases[i] >= 'a' && bases[i] <= 'z' ) {
+                bases[i] -= 'a' - 'A';
+            }
+        }
+    }
+
+
+    /**
+     * @param position reference position within the window
+     * <p>
+     * @return The upper case base at the position
+     */
+    byte getBase( int position ) {
+        return bases[position - start];
+    }
+
+
+    /**
+     * @return The first position of the window
+     */
+    int getStart() {
+        return start;
+    }
+
+
+    /**
+     * @return The last position of the window
+     */
+    int getStop() {
+        return stop;
+    }
+
+
+}
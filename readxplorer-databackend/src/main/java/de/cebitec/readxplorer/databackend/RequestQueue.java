@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.swing.SwingUtilities;
+
+
+/**
+ * Blocking queue of interval requests for a {@link RequestThread}. It works
+ * in one of two modes:
+ * <ul>
+ * <li>Interactive: Only the newest request of each sender is kept. A request
+ * replaces all pending requests of its sender, which are notified as skipped.
+ * A request in progress is superseded as soon as a newer request of its sender
+ * is added.</li>
+ * <li>Analysis: All requests are carried out in FIFO order. When the capacity
+ * is reached, adding a request blocks until the worker took a request. The
+ * worker thread itself and the Swing event dispatch thread are never blocked,
+ * as this could deadlock them.</li>
+ * </ul>
+ * When the worker stops, the queue is closed: Pending requests are handed
+ * back to the worker and adding requests fails from then on, also for
+ * producers already waiting for free capacity.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+class RequestQueue {
+
+    private final boolean newestWins;
+    private final int capacity;
+    private final Deque<QueuedRequest> queue = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final LatencyHistogram queueWaitHistogram;
+    private Thread worker;
+    private IntervalRequest requestInProgress;
+    private boolean inProgressSuperseded;
+    private boolean closed;
+
+
+    /**
+     * Blocking queue of interval requests for a {@link RequestThread}.
+     * <p>
+     * @param newestWins         <code>true</code> for interactive requests,
+     *                           for which only the newest request per sender
+     *                           is carried out, <code>false</code> for
+     *                           analysis requests, which are all carried out
+     *                           in FIFO order
+     * @param capacity           maximum number of pending analysis requests
+     *                           before adding requests blocks
+     * @param queueWaitHistogram histogram recording the time each request
+     *                           waited in the queue
+     */
+    RequestQueue( boolean newestWins, int capacity, LatencyHistogram queueWaitHistogram ) {
+        this.newestWins = newestWins;
+        this.capacity = capacity;
+        this.queueWaitHistogram = queueWaitHistogram;
+    }
+
+
+    /**
+     * Adds a request to the queue. Superseded interactive requests are
+     * removed and their senders are notified.
+     * <p>
+     * @param request the request to add
+     * <p>
+     * @throws InterruptedException  If the thread was interrupted while
+     *                               waiting for free capacity
+     * @throws IllegalStateException If the queue was closed, because its
+     *                               worker stopped
+     */
+    void add( IntervalRequest request ) throws InterruptedException {
+        List<IntervalRequest> skippedRequests = new ArrayList<>( 1 );
+        lock.lock();
+        try {
+            checkNotClosed();
+            if( newestWins ) {
+                for( Iterator<QueuedRequest> it = queue.iterator(); it.hasNext(); ) {
+                    IntervalRequest pending = it.next().request;
+                    if( pending.getSender() == request.getSender() ) {
+                        it.remove();
+                        skippedRequests.add( pending );
+                    }
+                }
+                if( requestInProgress != null && requestInProgress.getSender() == request.getSender() ) {
+                    inProgressSuperseded = true;
+                }
+            } else if( mayBlock() ) {
+                while( queue.size() >= capacity ) {
+                    notFull.await();
+                    checkNotClosed();
+                }
+            }
+            queue.add( new QueuedRequest( request, System.nanoTime() ) );
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        for( IntervalRequest skipped : skippedRequests ) {
+            if( skipped.getSender() != null ) {
+                skipped.getSender().notifySkipped();
+            }
+        }
+    }
+
+
+    /**
+     * Waits for the next request and marks it as the request in progress.
+     * Must only be called by the worker thread of this queue.
+     * <p>
+     * @return the next request
+     * <p>
+     * @throws InterruptedException If the worker was interrupted while waiting
+     */
+    IntervalRequest take() throws InterruptedException {
+        lock.lock();
+        try {
+            worker = Thread.currentThread();
+            requestInProgress = null;
+            while( queue.isEmpty() ) {
+                notEmpty.await();
+            }
+            QueuedRequest next = queue.poll();
+            notFull.signal();
+            requestInProgress = next.request;
+            inProgressSuperseded = false;
+            queueWaitHistogram.record( System.nanoTime() - next.enqueueTime );
+            return next.request;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Closes the queue after its worker stopped. All producers waiting for
+     * free capacity are woken up and fail, as does adding further requests.
+     * <p>
+     * @return The requests which were still pending and will never be
+     *         carried out
+     */
+    List<IntervalRequest> close() {
+        lock.lock();
+        try {
+            closed = true;
+            requestInProgress = null;
+            List<IntervalRequest> pendingRequests = new ArrayList<>( queue.size() );
+            for( QueuedRequest pending : queue ) {
+                pendingRequests.add( pending.request );
+            }
+            queue.clear();
+            notFull.signalAll();
+            return pendingRequests;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * @param request a request taken from this queue
+     * <p>
+     * @return <code>true</code>, if a newer request of the same sender was
+     *         added after the given request was taken, <code>false</code>
+     *         otherwise. Always <code>false</code> for analysis requests.
+     */
+    boolean isSuperseded( IntervalRequest request ) {
+        lock.lock();
+        try {
+            return request == requestInProgress && inProgressSuperseded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * @return The number of pending requests
+     */
+    int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * @throws IllegalStateException If the queue was closed. Must only be
+     *                               called while holding the lock.
+     */
+    private void checkNotClosed() {
+        if( closed ) {
+            throw new IllegalStateException( "The request queue was closed, because its worker stopped." );
+        }
+    }
+
+
+    /**
+     * @return <code>true</code>, if the current thread may wait for free
+     *         capacity, <code>false</code> for the worker thread and the event
+     *         dispatch thread
+     */
+    private boolean mayBlock() {
+        return Thread.currentThread() != worker && !SwingUtilities.isEventDispatchThread();
+    }
+
+
+    /**
+     * A request together with the time it was added to the queue.
+     */
+    private static class QueuedRequest {
+
+        private final IntervalRequest request;
+        private final long enqueueTime;
+
+
+        QueuedRequest( IntervalRequest request, long enqueueTime ) {
+            this.request = request;
+            this.enqueueTime = enqueueTime;
+        }
+
+
+    }
+
+
+}
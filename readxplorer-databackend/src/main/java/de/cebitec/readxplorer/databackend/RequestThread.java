@@ -21,18 +21,59 @@ package de.cebitec.readxplorer.databackend;
 import de.cebitec.readxplorer.api.Classification;
 import java.util.ArrayList;
 import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
  * Abstract class to use in thread context. Provides methods for handling genome
  * requests in connection with a thread.
  * <p>
+ * The thread waits blocking for new requests in a {@link RequestQueue}.
+ * Interactive threads only carry out the newest request of each sender,
+ * analysis threads carry out all requests in FIFO order and slow down
+ * producers when too many requests are pending. If a request fails, its sender
+ * is notified by {@link ThreadListener#notifyFailed(Throwable)} and the thread
+ * continues with the next request. When the thread stops, the senders of all
+ * pending requests are notified the same way and adding further requests
+ * fails immediately. The time each request waited
+ * in the queue and the time needed to carry it out are recorded in two
+ * histograms.
+ * <p>
  * @author -Rolf Hilker-
  */
 public abstract class RequestThread extends Thread {
 
-    private IntervalRequest latestRequest;
+    private static final Logger LOG = LoggerFactory.getLogger( RequestThread.class.getName() );
+
+    /**
+     * Maximum number of pending requests of an analysis thread before adding
+     * further requests blocks.
+     */
+    public static final int ANALYSIS_QUEUE_CAPACITY = 64;
+    private static final int STATISTICS_LOG_INTERVAL = 1000;
+
+    private volatile IntervalRequest latestRequest;
     private IntervalRequest lastRequest = new IntervalRequest( 0, 0, -1, null, false );
+    private final RequestQueue requestQueue;
+    private final LatencyHistogram queueWaitHistogram;
+    private final LatencyHistogram serviceTimeHistogram;
+
+
+    /**
+     * Abstract class to use in thread context. Provides methods for handling
+     * genome requests in connection with a thread.
+     * <p>
+     * @param interactive <code>true</code>, if only the newest request of each
+     *                    sender shall be carried out, <code>false</code> if
+     *                    all requests shall be carried out in FIFO order
+     */
+    protected RequestThread( boolean interactive ) {
+        super();
+        this.queueWaitHistogram = new LatencyHistogram( "queue wait" );
+        this.serviceTimeHistogram = new LatencyHistogram( "service time" );
+        this.requestQueue = new RequestQueue( interactive, ANALYSIS_QUEUE_CAPACITY, queueWaitHistogram );
+    }
 
 
     /**
@@ -71,11 +112,123 @@ public abstract class RequestThread extends Thread {
 
 
     /**
-     * Adds a request to the request queue.
+     * Adds a request to the request queue. For interactive threads, all
+     * pending requests of the same sender are skipped. For analysis threads,
+     * the calling thread waits, if the queue is full. If this thread already
+     * stopped, the sender of the request is notified of the failure.
      * <p>
      * @param request the request to add to the queue.
      */
-    public abstract void addRequest( IntervalRequest request );
+    public void addRequest( IntervalRequest request ) {
+        setLatestRequest( request );
+        try {
+            requestQueue.add( request );
+        } catch( InterruptedException ex ) {
+            LOG.warn( "Interrupted while waiting to add a request to " + getName(), ex );
+            Thread.currentThread().interrupt();
+        } catch( IllegalStateException ex ) {
+            notifyFailed( request, ex );
+        }
+    }
+
+
+    /**
+     * Carries out a single request. Called by the thread for each request
+     * taken from the request queue.
+     * <p>
+     * @param request the request to carry out
+     */
+    protected abstract void processRequest( IntervalRequest request );
+
+
+    /**
+     * Waits for requests and carries them out until the thread is
+     * interrupted. A failed request is reported to its sender. When the thread
+     * stops for any reason, the request queue is closed and the senders of
+     * all pending requests are notified.
+     */
+    @Override
+    public void run() {
+        try {
+            while( !isInterrupted() ) {
+                IntervalRequest request = requestQueue.take();
+                long serviceStart = System.nanoTime();
+                try {
+                    processRequest( request );
+                } catch( RuntimeException | OutOfMemoryError ex ) {
+                    LOG.error( getName() + " failed to carry out the request for " + request.getFrom() + "-" + request.getTo()
+                               + " of chromosome " + request.getChromId(), ex );
+                    notifyFailed( request, ex );
+                }
+                serviceTimeHistogram.record( System.nanoTime() - serviceStart );
+                if( serviceTimeHistogram.getCount() % STATISTICS_LOG_INTERVAL == 0 ) {
+                    logStatistics();
+                }
+            }
+        } catch( InterruptedException ex ) {
+            //the thread was stopped, pending requests are not needed anymore
+        } finally {
+            IllegalStateException stopped = new IllegalStateException( getName() + " stopped before the request was carried out." );
+            for( IntervalRequest pending : requestQueue.close() ) {
+                notifyFailed( pending, stopped );
+            }
+        }
+        logStatistics();
+    }
+
+
+    /**
+     * Notifies the sender of a request, that the request failed.
+     * <p>
+     * @param request the failed request
+     * @param cause   the cause of the failure
+     */
+    private void notifyFailed( IntervalRequest request, Throwable cause ) {
+        if( request.getSender() != null ) {
+            try {
+                request.getSender().notifyFailed( cause );
+            } catch( RuntimeException ex ) {
+                LOG.error( "Could not notify the sender of a failed request of " + getName(), ex );
+            }
+        }
+    }
+
+
+    /**
+     * @param request the request in progress
+     * <p>
+     * @return <code>true</code>, if a newer request of the same sender arrived
+     *         while the given request was in progress. The result of the
+     *         given request is not needed anymore in this case.
+     */
+    protected boolean isSuperseded( IntervalRequest request ) {
+        return requestQueue.isSuperseded( request );
+    }
+
+
+    /**
+     * @return The histogram of the time each request waited in the queue
+     *         before it was carried out
+     */
+    public LatencyHistogram getQueueWaitHistogram() {
+        return queueWaitHistogram;
+    }
+
+
+    /**
+     * @return The histogram of the time needed to carry out each request
+     */
+    public LatencyHistogram getServiceTimeHistogram() {
+        return serviceTimeHistogram;
+    }
+
+
+    /**
+     * Logs the queue wait and service time statistics of this thread.
+     */
+    private void logStatistics() {
+        LOG.debug( getClass().getSimpleName() + " " + getName() + ": " + queueWaitHistogram + "; " + serviceTimeHistogram );
+    }
 
 
     /**
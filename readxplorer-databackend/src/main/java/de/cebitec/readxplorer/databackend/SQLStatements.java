@@ -465,7 +465,8 @@ public final class SQLStatements {
               + FieldNames.FEATURE_TYPE + " = ?";
 
 
-    public static final String FETCH_FEATURES_FOR_CHROM_INTERVAL
+    //All features of a chromosome for the in memory feature index
+    public static final String FETCH_FEATURES_FOR_CHROM
             = "SELECT "
               + FieldNames.FEATURE_ID + ", "
               + FieldNames.FEATURE_PARENT_IDS + ", "
@@ -480,53 +481,8 @@ public final class SQLStatements {
               + " FROM "
               + FieldNames.TABLE_FEATURES
               + " WHERE "
-              + FieldNames.FEATURE_CHROMOSOME_ID + " = ? and "
-              + FieldNames.FEATURE_STOP + " >= ? and "
-              + FieldNames.FEATURE_START + " <= ? "
-              + " ORDER BY " + FieldNames.FEATURE_START;
-
-
-    public static final String FETCH_SPECIFIED_FEATURES_FOR_CHROM_INTERVAL
-            = "SELECT "
-              + FieldNames.FEATURE_ID + ", "
-              + FieldNames.FEATURE_PARENT_IDS + ", "
-              + FieldNames.FEATURE_TYPE + ", "
-              + FieldNames.FEATURE_START + ", "
-              + FieldNames.FEATURE_STOP + ", "
-              + FieldNames.FEATURE_EC_NUM + ", "
-              + FieldNames.FEATURE_LOCUS_TAG + ", "
-              + FieldNames.FEATURE_PRODUCT + ", "
-              + FieldNames.FEATURE_STRAND + ", "
-              + FieldNames.FEATURE_GENE
-              + " FROM "
-              + FieldNames.TABLE_FEATURES
-              + " WHERE "
-              + FieldNames.FEATURE_CHROMOSOME_ID + " = ? and "
-              + FieldNames.FEATURE_STOP + " >= ? and "
-              + FieldNames.FEATURE_START + " <= ? and "
-              + FieldNames.FEATURE_TYPE + " = ? "
-              + " ORDER BY " + FieldNames.FEATURE_START;
-
-
-    public static final String FETCH_FEATURES_FOR_CLOSED_GENOME_INTERVAL
-            = "SELECT "
-              + FieldNames.FEATURE_ID + ", "
-              + FieldNames.FEATURE_PARENT_IDS + ", "
-              + FieldNames.FEATURE_TYPE + ", "
-              + FieldNames.FEATURE_START + ", "
-              + FieldNames.FEATURE_STOP + ", "
-              + FieldNames.FEATURE_EC_NUM + ", "
-              + FieldNames.FEATURE_LOCUS_TAG + ", "
-              + FieldNames.FEATURE_PRODUCT + ", "
-              + FieldNames.FEATURE_STRAND + ", "
-              + FieldNames.FEATURE_GENE
-              + " FROM "
-              + FieldNames.TABLE_FEATURES
-              + " WHERE "
-              + FieldNames.FEATURE_CHROMOSOME_ID + " = ? and "
-              + FieldNames.FEATURE_START + " between ? and ? and "
-              + FieldNames.FEATURE_STOP + " between ? and ? "
-              + " ORDER BY " + FieldNames.FEATURE_START;
+              + FieldNames.FEATURE_CHROMOSOME_ID + " = ? "
+              + " ORDER BY " + FieldNames.FEATURE_START + ", " + FieldNames.FEATURE_ID;
 
 
     public static final String FETCH_TRACKS_FOR_GENOME
@@ -27,7 +27,9 @@ import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
 import de.cebitec.readxplorer.databackend.dataobjects.DiffAndGapResult;
 import de.cebitec.readxplorer.databackend.dataobjects.Difference;
 import de.cebitec.readxplorer.databackend.dataobjects.Mapping;
+import de.cebitec.readxplorer.databackend.dataobjects.MappingBatch;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
+import de.cebitec.readxplorer.databackend.dataobjects.Pileup;
 import de.cebitec.readxplorer.databackend.dataobjects.ReadPairGroup;
 import de.cebitec.readxplorer.databackend.dataobjects.ReferenceGap;
 import de.cebitec.readxplorer.parser.mappings.CommonsMappingParser;
@@ -37,6 +39,7 @@ import de.cebitec.readxplorer.utils.Observer;
 import de.cebitec.readxplorer.utils.SamAlignmentBlock;
 import de.cebitec.readxplorer.utils.SamUtils;
 import de.cebitec.readxplorer.utils.SequenceUtils;
+import htsjdk.samtools.CigarElement;
 import htsjdk.samtools.SAMException;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordIterator;
@@ -91,6 +94,10 @@ public class SamBamFileReader implements Observable, Observer {
     private final PersistentReference reference;
     private final SamUtils samUtils;
     private SamReader samFileReader;
+    private BamCoverageDecoder coverageDecoder;
+    private final CoverageDiffs coverageDiffs = new CoverageDiffs();
+    private CoverageIndex coverageIndex;
+    private boolean coverageIndexChecked;
     private final List<Observer> observers;
 
 
@@ -198,68 +205,64 @@ public class SamBamFileReader implements Observable, Observer {
             checkIndex();
 
             if( checkRefExists( request ) ) {
-                SAMRecordIterator samRecordIterator = samFileReader.query( reference.getChromosome(
-                        request.getChromId() ).getName(), request.getTotalFrom(), request.getTotalTo(), false );
-                String refSubSeq;
-                int id = 0;
+                try( SAMRecordIterator samRecordIterator = samFileReader.query( reference.getChromosome(
+                        request.getChromId() ).getName(), request.getTotalFrom(), request.getTotalTo(), false ) ) {
+                    ReferenceWindow refSeq = request.isDiffsAndGapsNeeded()
+                                             ? new ReferenceWindow( reference, request.getChromId(), request.getTotalFrom(), request.getTotalTo() ) : null;
+                    int id = 0;
 //            int numReplicates = 1;
 
-                while( samRecordIterator.hasNext() ) {
-                    SAMRecord record = samRecordIterator.next();
+                    while( samRecordIterator.hasNext() ) {
+                        SAMRecord record = samRecordIterator.next();
 
-                    if( !record.getReadUnmappedFlag() ) {
-                        int start = record.getAlignmentStart();
-                        int stop = record.getAlignmentEnd();
+                        if( !record.getReadUnmappedFlag() ) {
+                            int start = record.getAlignmentStart();
+                            int stop = record.getAlignmentEnd();
 //            start = start < 0 ? 0 : start;
 //            stop = stop >= refSeq.length() ? refSeq.length() : stop;
-                        boolean isFwdStrand = !record.getReadNegativeStrandFlag();
-                        byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
-                        MappingClass mappingClass = MappingClass.getFeatureType( classification );
-                        Integer numMappingsForRead = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
-                        int mappingQuality = record.getMappingQuality();
-
-                        //only add mappings, which are valid according to the read classification parameters
-                        if( isIncludedMapping( mappingClass, numMappingsForRead, mappingQuality, readClassParams ) ) {
-
-                            Mapping mapping = getMappingForValues( mappingClass, numMappingsForRead, id++,
-                                                                   start, stop, isFwdStrand, mappingQuality, record.getBaseQualities() );
-                            mapping.setAlignmentBlocks( samUtils.getAlignmentBlocks( record.getCigar(), start ) );
-                            // We must alway check for Diffs and Gaps even if "classification != MappingClass.PERFECT_MATCH"
-                            // because there might still be a split read.
-                            if( hasNeededDiffs( request, mappingClass ) ) {
-
-                                //find check alignment via cigar string and add diffs to mapping
-                                String cigar = record.getCigarString();
-                                if( cigar.contains( "M" ) ) { //TODO check if this check is faster or the version in other methods here
-                                    refSubSeq = reference.getChromSequence( request.getChromId(), start, stop );
-                                } else {
-                                    refSubSeq = null;
+                            boolean isFwdStrand = !record.getReadNegativeStrandFlag();
+                            byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
+                            MappingClass mappingClass = MappingClass.getFeatureType( classification );
+                            Integer numMappingsForRead = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
+                            int mappingQuality = record.getMappingQuality();
+
+                            //only add mappings, which are valid according to the read classification parameters
+                            if( isIncludedMapping( mappingClass, numMappingsForRead, mappingQuality, readClassParams ) ) {
+
+                                Mapping mapping = getMappingForValues( mappingClass, numMappingsForRead, id++,
+                                                                       start, stop, isFwdStrand, mappingQuality, record.getBaseQualities() );
+                                mapping.setAlignmentBlocks( samUtils.getAlignmentBlocks( record.getCigar(), start ) );
+                                // We must alway check for Diffs and Gaps even if "classification != MappingClass.PERFECT_MATCH"
+                                // because there might still be a split read.
+                                if( hasNeededDiffs( request, mappingClass ) ) {
+
+                                    //find check alignment via cigar and add diffs to mapping
+                                    refSeq.ensureCovers( start, stop );
+                                    createDiffsAndGaps( record, refSeq, mapping );
                                 }
-                                createDiffsAndGaps( record, refSubSeq, mapping );
-                            }
 
-                            //stuff for trimmed reads
-                            Object originalSequence = record.getAttribute( "os" );
-                            if( (originalSequence != null) && (originalSequence instanceof String) ) {
-                                String ors = (String) originalSequence;
-                                ors = ors.replace( "@", record.getReadString() );
-                                mapping.setOriginalSequence( ors );
-                            }
-                            Object trimmedFromLeft = record.getIntegerAttribute( "tl" );
-                            if( (trimmedFromLeft != null) && (trimmedFromLeft instanceof Integer) ) {
-                                mapping.setTrimmedFromLeft( (Integer) trimmedFromLeft );
-                            }
-                            Object trimmedFromRight = record.getIntegerAttribute( "tr" );
-                            if( (trimmedFromRight != null) && (trimmedFromRight instanceof Integer) ) {
-                                mapping.setTrimmedFromRight( (Integer) trimmedFromRight );
-                            }
+                                //stuff for trimmed reads
+                                Object originalSequence = record.getAttribute( "os" );
+                                if( (originalSequence != null) && (originalSequence instanceof String) ) {
+                                    String ors = (String) originalSequence;
+                                    ors = ors.replace( "@", record.getReadString() );
+                                    mapping.setOriginalSequence( ors );
+                                }
+                                Object trimmedFromLeft = record.getIntegerAttribute( "tl" );
+                                if( (trimmedFromLeft != null) && (trimmedFromLeft instanceof Integer) ) {
+                                    mapping.setTrimmedFromLeft( (Integer) trimmedFromLeft );
+                                }
+                                Object trimmedFromRight = record.getIntegerAttribute( "tr" );
+                                if( (trimmedFromRight != null) && (trimmedFromRight instanceof Integer) ) {
+                                    mapping.setTrimmedFromRight( (Integer) trimmedFromRight );
+                                }
 
-                            mappings.add( mapping );
+                                mappings.add( mapping );
+                            }
                         }
-                    }
 
+                    }
                 }
-                samRecordIterator.close();
             }
 
         } catch( NullPointerException | NumberFormatException | SAMException | ArrayIndexOutOfBoundsException e ) {
@@ -299,35 +302,52 @@ public class SamBamFileReader implements Observable, Observer {
      *         never included.
      */
     public Collection<Mapping> getReducedMappingsFromBam( final IntervalRequest request ) {
+        MappingBatch batch = new MappingBatch();
+        addReducedMappingsFromBam( request, batch );
+        Collection<Mapping> mappings = new ArrayList<>( batch.size() );
+        for( int i = 0; i < batch.size(); ++i ) {
+            mappings.add( new Mapping( batch.getStart( i ), batch.getStop( i ), batch.isFwdStrand( i ) ) );
+        }
+        return mappings;
+    }
+
+
+    /**
+     * Appends the reduced mappings from the given interval from the sam or bam
+     * file set for this data reader to a columnar batch. Only start, stop,
+     * strand, mapping class and number of mappings of the read are stored, no
+     * objects are created per mapping.
+     * <p>
+     * @param request the request to carry out
+     * @param batch   the batch to which the mappings are appended in the
+     *                order of their start positions
+     */
+    public void addReducedMappingsFromBam( final IntervalRequest request, final MappingBatch batch ) {
         int from = request.getTotalFrom();
         int to = request.getTotalTo();
         ParametersReadClasses readClassParams = request.getReadClassParams();
-        Collection<Mapping> mappings = new ArrayList<>();
 
         try {
             checkIndex();
 
             if( checkRefExists( request ) ) {
-                SAMRecordIterator samRecordIterator = samFileReader.query( reference.getChromosome( request.getChromId() ).getName(), from, to, false );
-                while( samRecordIterator.hasNext() ) {
-                    final SAMRecord record = samRecordIterator.next();
-                    if( !record.getReadUnmappedFlag() ) {
-                        Byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
-                        MappingClass mappingClass = MappingClass.getFeatureType( classification );
-                        Integer numMappingsForRead = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
-                        int mappingQuality = record.getMappingQuality();
-
-                        //only add mappings, which are valid according to the read classification paramters
-                        if( isIncludedMapping( mappingClass, numMappingsForRead, mappingQuality, readClassParams ) ) {
-
-                            int start = record.getAlignmentStart();
-                            int stop = record.getAlignmentEnd();
-                            boolean isFwdStrand = !record.getReadNegativeStrandFlag();
-                            mappings.add( new Mapping( start, stop, isFwdStrand ) );
+                try( SAMRecordIterator samRecordIterator = samFileReader.query( reference.getChromosome( request.getChromId() ).getName(), from, to, false ) ) {
+                    while( samRecordIterator.hasNext() ) {
+                        final SAMRecord record = samRecordIterator.next();
+                        if( !record.getReadUnmappedFlag() ) {
+                            Byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
+                            MappingClass mappingClass = MappingClass.getFeatureType( classification );
+                            Integer numMappingsForRead = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
+                            int mappingQuality = record.getMappingQuality();
+
+                            //only add mappings, which are valid according to the read classification paramters
+                            if( isIncludedMapping( mappingClass, numMappingsForRead, mappingQuality, readClassParams ) ) {
+                                batch.add( record.getAlignmentStart(), record.getAlignmentEnd(), !record.getReadNegativeStrandFlag(),
+                                           mappingClass, numMappingsForRead != null ? numMappingsForRead : 0 );
+                            }
                         }
                     }
                 }
-                samRecordIterator.close();
 
             }
         } catch( NullPointerException | IllegalArgumentException | SAMException | ArrayIndexOutOfBoundsException e ) {
@@ -336,8 +356,6 @@ public class SamBamFileReader implements Observable, Observer {
             //do nothing
             LOG.trace( e.getMessage(), e );
         }
-
-        return mappings;
     }
 
 
@@ -362,61 +380,61 @@ public class SamBamFileReader implements Observable, Observer {
             checkIndex();
 
             if( checkRefExists( request ) ) {
-                SAMRecordIterator samRecordIterator = samFileReader.query( reference.getChromosome( request.getChromId() ).getName(), from, to, false );
-                int id = 0;
-                while( samRecordIterator.hasNext() ) {
-                    final SAMRecord record = samRecordIterator.next();
+                try( SAMRecordIterator samRecordIterator = samFileReader.query( reference.getChromosome( request.getChromId() ).getName(), from, to, false ) ) {
+                    ReferenceWindow refSeq = request.isDiffsAndGapsNeeded() ? new ReferenceWindow( reference, request.getChromId(), from, to ) : null;
+                    int id = 0;
+                    while( samRecordIterator.hasNext() ) {
+                        final SAMRecord record = samRecordIterator.next();
 
-                    if( !record.getReadUnmappedFlag() ) {
-                        Byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
-                        MappingClass mappingClass = MappingClass.getFeatureType( classification );
-                        Integer numMappingsForRead = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
-                        int mappingQuality = record.getMappingQuality();
+                        if( !record.getReadUnmappedFlag() ) {
+                            Byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
+                            MappingClass mappingClass = MappingClass.getFeatureType( classification );
+                            Integer numMappingsForRead = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
+                            int mappingQuality = record.getMappingQuality();
 
-                        if( isIncludedMapping( mappingClass, numMappingsForRead, mappingQuality, readClassParams ) ) {
+                            if( isIncludedMapping( mappingClass, numMappingsForRead, mappingQuality, readClassParams ) ) {
 
-                            int startPos = record.getAlignmentStart(); //in the genome, to get the index: -1
-                            int stop = record.getAlignmentEnd();
-                            //            start = start < 0 ? 0 : start;
-                            //            stop = stop >= refSeq.length() ? refSeq.length() : stop;
-                            boolean isFwdStrand = !record.getReadNegativeStrandFlag();
-                            Integer pairId = (Integer) record.getAttribute( SAMRecordTag.ReadPairId.toString() );
-                            Integer pairType = (Integer) record.getAttribute( SAMRecordTag.ReadPairType.toString() );
-                            int mateStart = record.getMateAlignmentStart();
-                            boolean bothVisible = mateStart > from && mateStart < to;
-
-                            Mapping mapping = getMappingForValues( mappingClass, numMappingsForRead, id++,
-                                                                   startPos, stop, isFwdStrand, mappingQuality, record.getBaseQualities() );
-                            mapping.setAlignmentBlocks( samUtils.getAlignmentBlocks( record.getCigar(), startPos ) );
-                            if( pairId != null && pairType != null ) { //since both data fields are always written together
-                                // add new readPair if not exists
-                                long readPairId = pairId;
-                                ReadPairType readPairType = ReadPairType.getReadPairType( pairType );
-                                if( !readPairs.containsKey( readPairId ) ) {
-                                    ReadPairGroup newGroup = new ReadPairGroup();
-                                    newGroup.setReadPairId( pairId );
-                                    readPairs.put( readPairId, newGroup );
-                                } //TODO check where ids are needed
-                                Mapping mate;
-                                try {
-                                    mate = getMappingForValues( MappingClass.COMMON_MATCH, -1, -1, mateStart, -1, !record.getMateNegativeStrandFlag(), Byte.valueOf("0" ), new byte[0] );
-                                } catch( IllegalStateException e ) {
-                                    mate = getMappingForValues( MappingClass.COMMON_MATCH, -1, -1, mateStart, -1, true, Byte.valueOf("0" ), new byte[0] );
-                                } //TODO get mate data from querried records later
-                                readPairs.get( readPairId ).addPersistentDirectAccessMapping( mapping, mate, readPairType, bothVisible );
-                            }
+                                int startPos = record.getAlignmentStart(); //in the genome, to get the index: -1
+                                int stop = record.getAlignmentEnd();
+                                //            start = start < 0 ? 0 : start;
+                                //            stop = stop >= refSeq.length() ? refSeq.length() : stop;
+                                boolean isFwdStrand = !record.getReadNegativeStrandFlag();
+                                Integer pairId = (Integer) record.getAttribute( SAMRecordTag.ReadPairId.toString() );
+                                Integer pairType = (Integer) record.getAttribute( SAMRecordTag.ReadPairType.toString() );
+                                int mateStart = record.getMateAlignmentStart();
+                                boolean bothVisible = mateStart > from && mateStart < to;
+
+                                Mapping mapping = getMappingForValues( mappingClass, numMappingsForRead, id++,
+                                                                       startPos, stop, isFwdStrand, mappingQuality, record.getBaseQualities() );
+                                mapping.setAlignmentBlocks( samUtils.getAlignmentBlocks( record.getCigar(), startPos ) );
+                                if( pairId != null && pairType != null ) { //since both data fields are always written together
+                                    // add new readPair if not exists
+                                    long readPairId = pairId;
+                                    ReadPairType readPairType = ReadPairType.getReadPairType( pairType );
+                                    if( !readPairs.containsKey( readPairId ) ) {
+                                        ReadPairGroup newGroup = new ReadPairGroup();
+                                        newGroup.setReadPairId( pairId );
+                                        readPairs.put( readPairId, newGroup );
+                                    } //TODO check where ids are needed
+                                    Mapping mate;
+                                    try {
+                                        mate = getMappingForValues( MappingClass.COMMON_MATCH, -1, -1, mateStart, -1, !record.getMateNegativeStrandFlag(), Byte.valueOf("0" ), new byte[0] );
+                                    } catch( IllegalStateException e ) {
+                                        mate = getMappingForValues( MappingClass.COMMON_MATCH, -1, -1, mateStart, -1, true, Byte.valueOf("0" ), new byte[0] );
+                                    } //TODO get mate data from querried records later
+                                    readPairs.get( readPairId ).addPersistentDirectAccessMapping( mapping, mate, readPairType, bothVisible );
+                                }
 
-                            if( hasNeededDiffs( request, mappingClass ) ) {
+                                if( hasNeededDiffs( request, mappingClass ) ) {
 
-                                //check alignment via cigar string and add diffs to mapping
-                                String cigar = record.getCigarString();
-                                String refSubSeq = cigar.contains( "M" ) ? reference.getChromSequence( request.getChromId(), startPos, stop ) : null;
-                                createDiffsAndGaps( record, refSubSeq, mapping );
+                                    //check alignment via cigar and add diffs to mapping
+                                    refSeq.ensureCovers( startPos, stop );
+                                    createDiffsAndGaps( record, refSeq, mapping );
+                                }
                             }
                         }
                     }
                 }
-                samRecordIterator.close();
                 readPairGroups = readPairs.values();
 
             }
@@ -477,32 +495,32 @@ public class SamBamFileReader implements Observable, Observer {
         try {
             checkIndex();
             if( checkRefExists( request ) ) {
-                SAMRecordIterator samRecordIterator = samFileReader.query( reference.getChromosome( request.getChromId() ).getName(), from, to, false );
-                while( samRecordIterator.hasNext() ) {
-                    SAMRecord record = samRecordIterator.next();
-
-                    if( !record.getReadUnmappedFlag() ) {
-                        Byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
-                        MappingClass mappingClass = MappingClass.getFeatureType( classification );
-                        Integer numMappingsForRead = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
-                        int mappingQuality = record.getMappingQuality();
-
-                        if( isIncludedMapping( mappingClass, numMappingsForRead, mappingQuality, readClassParams ) ) {
-
-                            boolean isFwdStrand;
-                            if( readClassParams.isStrandBothOption() ) {
-                                isFwdStrand = readClassParams.isStrandBothFwdOption();
-                            } else {
-                                isFwdStrand = !record.getReadNegativeStrandFlag();
-                            }
-                            int startPos = isFwdStrand ? record.getAlignmentStart() : record.getAlignmentEnd(); //in the genome, to get the index: -1
+                try( SAMRecordIterator samRecordIterator = samFileReader.query( reference.getChromosome( request.getChromId() ).getName(), from, to, false ) ) {
+                    while( samRecordIterator.hasNext() ) {
+                        SAMRecord record = samRecordIterator.next();
+
+                        if( !record.getReadUnmappedFlag() ) {
+                            Byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
+                            MappingClass mappingClass = MappingClass.getFeatureType( classification );
+                            Integer numMappingsForRead = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
+                            int mappingQuality = record.getMappingQuality();
+
+                            if( isIncludedMapping( mappingClass, numMappingsForRead, mappingQuality, readClassParams ) ) {
 
-                            increaseCoverage( mappingClass, isFwdStrand,
-                                              startPos, startPos, coverage );
+                                boolean isFwdStrand;
+                                if( readClassParams.isStrandBothOption() ) {
+                                    isFwdStrand = readClassParams.isStrandBothFwdOption();
+                                } else {
+                                    isFwdStrand = !record.getReadNegativeStrandFlag();
+                                }
+                                int startPos = isFwdStrand ? record.getAlignmentStart() : record.getAlignmentEnd(); //in the genome, to get the index: -1
+
+                                increaseCoverage( mappingClass, isFwdStrand,
+                                                  startPos, startPos, coverage );
+                            }
                         }
                     }
                 }
-                samRecordIterator.close();
                 result = new CoverageAndDiffResult( coverage, diffs, gaps, request );
             }
         } catch( NullPointerException | IllegalArgumentException | SAMException | ArrayIndexOutOfBoundsException e ) {
@@ -527,6 +545,13 @@ public class SamBamFileReader implements Observable, Observer {
      */
     public CoverageAndDiffResult getCoverageAndReadStartsFromBam( IntervalRequest request ) {
 
+        if( !request.isDiffsAndGapsNeeded() ) {
+            CoverageAndDiffResult result = decodeCoverageFromBam( request, true );
+            if( result != null ) {
+                return result;
+            }
+        }
+
         int from = request.getTotalFrom();
         int to = request.getTotalTo();
         ParametersReadClasses readClassParams = request.getReadClassParams();
@@ -543,57 +568,61 @@ public class SamBamFileReader implements Observable, Observer {
             checkIndex();
 
             if( checkRefExists( request ) ) {
-                SAMRecordIterator samRecordIterator = samFileReader.query( reference.getChromosome( request.getChromId() ).getName(), from, to, false );
-                while( samRecordIterator.hasNext() ) {
-                    SAMRecord record = samRecordIterator.next();
-
-                    if( !record.getReadUnmappedFlag() ) {
-                        Byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
-                        MappingClass mappingClass = MappingClass.getFeatureType( classification );
-                        Integer numMappingsForRead = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
-                        int mappingQuality = record.getMappingQuality();
-
-                        if( isIncludedMapping( mappingClass, numMappingsForRead, mappingQuality, readClassParams ) ) {
-
-                            boolean isFwdStrand;
-                            if( readClassParams.isStrandBothOption() ) {
-                                isFwdStrand = readClassParams.isStrandBothFwdOption();
-                            } else if( readClassParams.isStrandOppositeOption() ) {
-                                isFwdStrand = record.getReadNegativeStrandFlag();
-                            } else {
-                                isFwdStrand = !record.getReadNegativeStrandFlag();
-                            }
+                coverageDiffs.reset( coverage );
+                try( SAMRecordIterator samRecordIterator = samFileReader.query( reference.getChromosome( request.getChromId() ).getName(), from, to, false ) ) {
+                    ReferenceWindow refSeq = request.isDiffsAndGapsNeeded() ? new ReferenceWindow( reference, request.getChromId(), from, to ) : null;
+                    while( samRecordIterator.hasNext() ) {
+                        SAMRecord record = samRecordIterator.next();
+
+                        if( !record.getReadUnmappedFlag() ) {
+                            Byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
+                            MappingClass mappingClass = MappingClass.getFeatureType( classification );
+                            Integer numMappingsForRead = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
+                            int mappingQuality = record.getMappingQuality();
+
+                            if( isIncludedMapping( mappingClass, numMappingsForRead, mappingQuality, readClassParams ) ) {
+
+                                boolean isFwdStrand;
+                                if( readClassParams.isStrandBothOption() ) {
+                                    isFwdStrand = readClassParams.isStrandBothFwdOption();
+                                } else if( readClassParams.isStrandOppositeOption() ) {
+                                    isFwdStrand = record.getReadNegativeStrandFlag();
+                                } else {
+                                    isFwdStrand = !record.getReadNegativeStrandFlag();
+                                }
 
-                            // add read start
-                            int startPos = isFwdStrand ? record.getAlignmentStart() : record.getAlignmentEnd(); //in the genome, to get the index: -1
-                            if( readClassParams.isStrandBothOption() ) {
-                                isFwdStrand = readClassParams.isStrandBothFwdOption();
-                            } else {
-                                isFwdStrand = !record.getReadNegativeStrandFlag();
-                            }
+                                // add read start
+                                int startPos = isFwdStrand ? record.getAlignmentStart() : record.getAlignmentEnd(); //in the genome, to get the index: -1
+                                if( readClassParams.isStrandBothOption() ) {
+                                    isFwdStrand = readClassParams.isStrandBothFwdOption();
+                                } else {
+                                    isFwdStrand = !record.getReadNegativeStrandFlag();
+                                }
 
-                            increaseCoverage( mappingClass, isFwdStrand, startPos, startPos, readStarts );
+                                increaseCoverage( mappingClass, isFwdStrand, startPos, startPos, readStarts );
 
-                            //This enables us to handle split reads correctly.
-                            startPos = record.getAlignmentStart();
-                            isFwdStrand = !record.getReadNegativeStrandFlag();
-                            List<SamAlignmentBlock> alignmentBlocks = samUtils.getAlignmentBlocks( record.getCigar(), startPos );
-                            for( SamAlignmentBlock block : alignmentBlocks ) {
-                                increaseCoverage( mappingClass, isFwdStrand,
-                                                  block.getRefStart(), block.getRefStop(), coverage );
-                            }
+                                //This enables us to handle split reads correctly.
+                                startPos = record.getAlignmentStart();
+                                isFwdStrand = !record.getReadNegativeStrandFlag();
+                                List<SamAlignmentBlock> alignmentBlocks = samUtils.getAlignmentBlocks( record.getCigar(), startPos );
+                                for( SamAlignmentBlock block : alignmentBlocks ) {
+                                    coverageDiffs.addRange( coverage, mappingClass, isFwdStrand,
+                                                            block.getRefStart(), block.getRefStop() );
+                                }
 
-                            if( hasNeededDiffs( request, mappingClass ) ) {
-                                int stop = record.getAlignmentEnd();
-                                DiffAndGapResult diffsAndGaps = createDiffsAndGaps( record,
-                                                                                    reference.getChromSequence( request.getChromId(), startPos, stop ), null );
-                                diffs.addAll( diffsAndGaps.getDiffs() );
-                                gaps.addAll( diffsAndGaps.getGaps() );
+                                if( hasNeededDiffs( request, mappingClass ) ) {
+                                    int stop = record.getAlignmentEnd();
+                                    refSeq.ensureCovers( startPos, stop );
+                                    DiffAndGapResult diffsAndGaps = createDiffsAndGaps( record, refSeq, null );
+                                    diffs.addAll( diffsAndGaps.getDiffs() );
+                                    gaps.addAll( diffsAndGaps.getGaps() );
+                                }
                             }
                         }
                     }
+                } finally {
+                    coverageDiffs.applyTo( coverage );
                 }
-                samRecordIterator.close();
                 result = new CoverageAndDiffResult( coverage, diffs, gaps, request );
                 result.setReadStarts( readStarts );
 
@@ -620,6 +649,17 @@ public class SamBamFileReader implements Observable, Observer {
      */
     public CoverageAndDiffResult getCoverageFromBam( IntervalRequest request ) {
 //        startTime = System.currentTimeMillis();
+        if( !request.isDiffsAndGapsNeeded() ) {
+            CoverageAndDiffResult result = readCoverageFromIndex( request );
+            if( result != null ) {
+                return result;
+            }
+            result = decodeCoverageFromBam( request, false );
+            if( result != null ) {
+                return result;
+            }
+        }
+
         int from = request.getTotalFrom();
         int to = request.getTotalTo();
         ParametersReadClasses readClassParams = request.getReadClassParams();
@@ -634,37 +674,41 @@ public class SamBamFileReader implements Observable, Observer {
             checkIndex();
             
             if( checkRefExists( request ) ) {
-                SAMRecordIterator samRecordIterator = samFileReader.query( reference.getChromosome( request.getChromId() ).getName(), from, to, false );
-                while( samRecordIterator.hasNext() ) {
-                    SAMRecord record = samRecordIterator.next();
-
-                    if( !record.getReadUnmappedFlag() ) {
-                        Byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
-                        MappingClass mappingClass = MappingClass.getFeatureType( classification );
-                        Integer numMappingsForRead = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
-                        int mappingQuality = record.getMappingQuality();
-
-                        if( isIncludedMapping( mappingClass, numMappingsForRead, mappingQuality, readClassParams ) ) {
-                            boolean isFwdStrand = !record.getReadNegativeStrandFlag();
-                            //This enables us to handle split reads correctly.
-                            int startPos = record.getAlignmentStart(); //in the genome, to get the index: -1
-                            List<SamAlignmentBlock> alignmentBlocks = samUtils.getAlignmentBlocks( record.getCigar(), startPos );
-                            for( SamAlignmentBlock block : alignmentBlocks ) {
-                                increaseCoverage( mappingClass, isFwdStrand,
-                                                  block.getRefStart(), block.getRefStop(), coverage );
-                            }
+                coverageDiffs.reset( coverage );
+                try( SAMRecordIterator samRecordIterator = samFileReader.query( reference.getChromosome( request.getChromId() ).getName(), from, to, false ) ) {
+                    ReferenceWindow refSeq = request.isDiffsAndGapsNeeded() ? new ReferenceWindow( reference, request.getChromId(), from, to ) : null;
+                    while( samRecordIterator.hasNext() ) {
+                        SAMRecord record = samRecordIterator.next();
+
+                        if( !record.getReadUnmappedFlag() ) {
+                            Byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
+                            MappingClass mappingClass = MappingClass.getFeatureType( classification );
+                            Integer numMappingsForRead = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
+                            int mappingQuality = record.getMappingQuality();
+
+                            if( isIncludedMapping( mappingClass, numMappingsForRead, mappingQuality, readClassParams ) ) {
+                                boolean isFwdStrand = !record.getReadNegativeStrandFlag();
+                                //This enables us to handle split reads correctly.
+                                int startPos = record.getAlignmentStart(); //in the genome, to get the index: -1
+                                List<SamAlignmentBlock> alignmentBlocks = samUtils.getAlignmentBlocks( record.getCigar(), startPos );
+                                for( SamAlignmentBlock block : alignmentBlocks ) {
+                                    coverageDiffs.addRange( coverage, mappingClass, isFwdStrand,
+                                                            block.getRefStart(), block.getRefStop() );
+                                }
 
-                            if( hasNeededDiffs( request, mappingClass ) ) {
-                                int stop = record.getAlignmentEnd();
-                                DiffAndGapResult diffsAndGaps = createDiffsAndGaps( record,
-                                                                                    reference.getChromSequence( request.getChromId(), startPos, stop ), null );
-                                diffs.addAll( diffsAndGaps.getDiffs() );
-                                gaps.addAll( diffsAndGaps.getGaps() );
+                                if( hasNeededDiffs( request, mappingClass ) ) {
+                                    int stop = record.getAlignmentEnd();
+                                    refSeq.ensureCovers( startPos, stop );
+                                    DiffAndGapResult diffsAndGaps = createDiffsAndGaps( record, refSeq, null );
+                                    diffs.addAll( diffsAndGaps.getDiffs() );
+                                    gaps.addAll( diffsAndGaps.getGaps() );
+                                }
                             }
                         }
                     }
+                } finally {
+                    coverageDiffs.applyTo( coverage );
                 }
-                samRecordIterator.close();
                 result = new CoverageAndDiffResult( coverage, diffs, gaps, request );
             }
 
@@ -683,6 +727,193 @@ public class SamBamFileReader implements Observable, Observer {
     }
 
 
+    /**
+     * Retrieves the coverage for the given interval from the bam file set for
+     * this data reader and adds all diffs and gaps of the included mappings to
+     * the given pileup. In contrast to {@link #getCoverageFromBam(IntervalRequest)}
+     * no Difference or ReferenceGap objects are created, the cigars are
+     * walked and the bases are added to the pileup directly.
+     * <p>
+     * @param request the request to carry out
+     * @param pileup  the pileup to which the diffs and gaps are added. It
+     *                should cover the total interval of the request.
+     * <p>
+     * @return the coverage for the given interval
+     */
+    public CoverageManager getCoverageAndPileupFromBam( IntervalRequest request, Pileup pileup ) {
+        int from = request.getTotalFrom();
+        int to = request.getTotalTo();
+        ParametersReadClasses readClassParams = request.getReadClassParams();
+
+        CoverageManager coverage = new CoverageManager( from, to );
+        coverage.incArraysToIntervalSize();
+        try {
+            checkIndex();
+
+            if( checkRefExists( request ) ) {
+                ReferenceWindow refSeq = new ReferenceWindow( reference, request.getChromId(), pileup.getFrom(), pileup.getTo() );
+                coverageDiffs.reset( coverage );
+                try( SAMRecordIterator samRecordIterator = samFileReader.query( reference.getChromosome( request.getChromId() ).getName(), from, to, false ) ) {
+                    while( samRecordIterator.hasNext() ) {
+                        SAMRecord record = samRecordIterator.next();
+
+                        if( !record.getReadUnmappedFlag() ) {
+                            Byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
+                            MappingClass mappingClass = MappingClass.getFeatureType( classification );
+                            Integer numMappingsForRead = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
+                            int mappingQuality = record.getMappingQuality();
+
+                            if( isIncludedMapping( mappingClass, numMappingsForRead, mappingQuality, readClassParams ) ) {
+                                boolean isFwdStrand = !record.getReadNegativeStrandFlag();
+                                //This enables us to handle split reads correctly.
+                                List<SamAlignmentBlock> alignmentBlocks = samUtils.getAlignmentBlocks( record.getCigar(), record.getAlignmentStart() );
+                                for( SamAlignmentBlock block : alignmentBlocks ) {
+                                    coverageDiffs.addRange( coverage, mappingClass, isFwdStrand,
+                                                            block.getRefStart(), block.getRefStop() );
+                                }
+
+                                if( hasNeededDiffs( request, mappingClass ) ) {
+                                    addToPileup( record, refSeq, pileup );
+                                }
+                            }
+                        }
+                    }
+                } finally {
+                    coverageDiffs.applyTo( coverage );
+                }
+            }
+
+        } catch( NullPointerException | NumberFormatException | SAMException | ArrayIndexOutOfBoundsException e ) {
+            notifyObservers( e );
+        } catch( BufferUnderflowException e ) {
+            //do nothing
+            LOG.trace( e.getMessage(), e );
+        }
+
+        return coverage;
+    }
+
+
+    /**
+     * Retrieves the coverage and, if desired, the read starts for the given
+     * interval with the coverage-only {@link BamCoverageDecoder}, which does
+     * not create a SAMRecord for each read. Diffs and gaps are never included.
+     * <p>
+     * @param request        the request to carry out
+     * @param withReadStarts <code>true</code>, if the read starts are needed,
+     *                       <code>false</code> otherwise
+     * <p>
+     * @return the coverage for the given interval or <code>null</code>, if the
+     *         decoder cannot be used for the mapping file. In this case, the
+     *         SAMRecord based methods have to be used.
+     */
+    private CoverageAndDiffResult decodeCoverageFromBam( IntervalRequest request, boolean withReadStarts ) {
+        CoverageAndDiffResult result = null;
+        try {
+            checkIndex();
+            BamCoverageDecoder decoder = getCoverageDecoder();
+            if( decoder != null && checkRefExists( request ) ) {
+                int from = request.getTotalFrom();
+                int to = request.getTotalTo();
+                CoverageManager coverage = new CoverageManager( from, to );
+                coverage.incArraysToIntervalSize();
+                CoverageManager readStarts = null;
+                if( withReadStarts ) {
+                    readStarts = new CoverageManager( from, to );
+                    readStarts.incArraysToIntervalSize();
+                }
+
+                int refIndex = samFileReader.getFileHeader().getSequenceIndex( reference.getChromosome( request.getChromId() ).getName() );
+                if( decoder.decodeCoverage( refIndex, from, to, request.getReadClassParams(), coverage, readStarts ) ) {
+                    result = new CoverageAndDiffResult( coverage, new ArrayList<Difference>(), new ArrayList<ReferenceGap>(), request );
+                    result.setReadStarts( readStarts );
+                }
+            }
+        } catch( IOException | RuntimeIOException | IllegalStateException | ArrayIndexOutOfBoundsException e ) {
+            //the SAMRecord based methods handle and report all file errors
+            LOG.warn( "Coverage decoding failed for " + dataFile.getName() + ", falling back to record based decoding.", e );
+        }
+        return result;
+    }
+
+
+    /**
+     * Retrieves the coverage for the given interval from the coverage index of
+     * the mapping file, which was created during the import. The level of the
+     * index is chosen according to the resolution of the request. Diffs and
+     * gaps are never included.
+     * <p>
+     * @param request the request to carry out
+     * <p>
+     * @return the coverage for the given interval or <code>null</code>, if the
+     *         mapping file has no valid coverage index or the index does not
+     *         support the read class parameters of the request.
+     */
+    private CoverageAndDiffResult readCoverageFromIndex( IntervalRequest request ) {
+        CoverageAndDiffResult result = null;
+        CoverageIndex index = getCoverageIndex();
+        if( index != null && CoverageIndex.supports( request.getReadClassParams() ) && reference.getChromosome( request.getChromId() ) != null ) {
+            int from = request.getTotalFrom();
+            int to = request.getTotalTo();
+            CoverageManager coverage = new CoverageManager( from, to );
+            coverage.incArraysToIntervalSize();
+            try {
+                index.addCoverage( reference.getChromosome( request.getChromId() ).getName(), from, to,
+                                   request.getResolution(), request.getReadClassParams(), coverage );
+                result = new CoverageAndDiffResult( coverage, new ArrayList<Difference>(), new ArrayList<ReferenceGap>(), request );
+            } catch( IOException | RuntimeException e ) {
+                LOG.warn( "Coverage index of " + dataFile.getName() + " cannot be read, falling back to the mapping file.", e );
+                closeCoverageIndex();
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The coverage index of the mapping file or <code>null</code>, if
+     *         the mapping file has no valid coverage index.
+     */
+    private CoverageIndex getCoverageIndex() {
+        if( !coverageIndexChecked ) {
+            coverageIndexChecked = true;
+            try {
+                coverageIndex = CoverageIndex.open( dataFile );
+            } catch( IOException | RuntimeException e ) {
+                LOG.info( "Coverage index of " + dataFile.getName() + " is not used: " + e.getMessage() );
+            }
+        }
+        return coverageIndex;
+    }
+
+
+    /**
+     * Closes the coverage index, it is not used by this reader anymore.
+     */
+    private void closeCoverageIndex() {
+        if( coverageIndex != null ) {
+            try {
+                coverageIndex.close();
+            } catch( IOException ex ) {
+                LOG.error( ex.getMessage(), ex );
+            }
+            coverageIndex = null;
+        }
+    }
+
+
+    /**
+     * @return The coverage decoder of this reader or <code>null</code>, if the
+     *         mapping file is no indexed bam file.
+     */
+    private BamCoverageDecoder getCoverageDecoder() {
+        if( coverageDecoder == null && samFileReader.type() == SamReader.Type.BAM_TYPE && samFileReader.hasIndex() ) {
+            coverageDecoder = new BamCoverageDecoder( dataFile, samFileReader.indexing().getIndex() );
+        }
+        return coverageDecoder;
+    }
+
+
     /**
      * Increases the coverage between the given start and stop position in the
      * given coverageManager for the given mapping class and strand.
@@ -704,17 +935,14 @@ public class SamBamFileReader implements Observable, Observer {
 
 
     /**
-     * Counts and returns each difference to the reference sequence for a cigar
-     * string and the belonging read sequence. If the operation "M" is not used
-     * in the cigar, then the reference sequence can be null (it is not used in
-     * this case). If the mapping is also handed over to the method, the diffs
-     * and gaps are stored directly in the mapping.
+     * Counts and returns each difference to the reference sequence for the
+     * cigar and the read bases of a record. The read bases are compared in
+     * place to the reference window, which has to cover the alignment of the
+     * record. If the mapping is also handed over to the method, the diffs and
+     * gaps are stored directly in the mapping.
      * <p>
-     * @param cigar   the cigar string containing the alignment operations
-     * @param start   the start position of the alignment on the chromosome
-     * @param readSeq the read sequence belonging to the cigar and without gaps
-     * @param refSeq  the reference sequence belonging to the cigar and without
-     *                gaps in upper case characters
+     * @param record  the record whose diffs and gaps are needed
+     * @param refSeq  the reference window covering the alignment of the record
      * @param mapping if a mapping is handed over to the method it adds the
      *                diffs and gaps directly to the mapping and updates it's
      *                number of differences to the reference. If null is passed,
@@ -723,33 +951,27 @@ public class SamBamFileReader implements Observable, Observer {
      * <p>
      * @return DiffAndGapResult containing all the diffs and gaps
      */
-    private DiffAndGapResult createDiffsAndGaps( SAMRecord record, String refSeq,
-                                                 Mapping mapping ) throws NumberFormatException {
+    static DiffAndGapResult createDiffsAndGaps( SAMRecord record, ReferenceWindow refSeq, Mapping mapping ) {
 
         final Map<Integer, Integer> gapOrderIndex = new HashMap<>();
         final List<Difference> diffs = new ArrayList<>();
         final List<ReferenceGap> gaps = new ArrayList<>();
         int differences = 0;
-        final String cigar = record.getCigarString();
-        final String readSeq = record.getReadString();
+        final byte[] readBases = record.getReadBases();
         final boolean isFwdStrand = !record.getReadNegativeStrandFlag();
         final int start = record.getAlignmentStart();
         final byte[] baseQualities = record.getBaseQualities();
         final Byte mappingQuality = (byte) (record.getMappingQuality() >= DEFAULT_MAP_QUAL ? UNKNOWN_CALCULATED_MAP_QUAL : record.getMappingQuality());
-        final String[] num = CommonsMappingParser.CIGAR_PATTERN.split( cigar );
-        final String[] charCigar = CommonsMappingParser.DIGIT_PATTERN.split( cigar );
         int refPos = 0;
         int readPos = 0;
-        for( int i = 1; i < charCigar.length; i++ ) {
-            int currentCount = Integer.valueOf( num[i - 1] );
-            switch( charCigar[i] ) {
-                case "M":
+        for( CigarElement element : record.getCigar().getCigarElements() ) {
+            int currentCount = element.getLength();
+            switch( element.getOperator() ) {
+                case M:
                     //check, count and add diffs for deviating Ms
-                    String bases = readSeq.substring( readPos, readPos + currentCount ).toUpperCase(); //bases of the read interval under investigation
-                    String refBases = refSeq.substring( refPos, refPos + currentCount ); //bases of the reference corresponding to the read interval under investigation
-                    for( int j = 0; j < bases.length(); j++ ) {
-                        char base = bases.charAt( j ); //currently visited base
-                        if( base != refBases.charAt( j ) ) {
+                    for( int j = 0; j < currentCount; j++ ) {
+                        char base = Character.toUpperCase( (char) readBases[readPos + j] ); //currently visited base
+                        if( base != refSeq.getBase( refPos + j + start ) ) {
                             differences++;
                             if( !isFwdStrand ) {
                                 base = SequenceUtils.getDnaComplement( base );
@@ -762,16 +984,16 @@ public class SamBamFileReader implements Observable, Observer {
                     refPos += currentCount;
                     readPos += currentCount;
                     break;
-                case "=":
+                case EQ:
                     //only increase position for matches
                     refPos += currentCount;
                     readPos += currentCount;
                     break;
-                case "X":
+                case X:
                     //count and create diffs for mismatches
                     differences += currentCount;
                     for( int j = 0; j < currentCount; j++ ) {
-                        char base = Character.toUpperCase( readSeq.charAt( readPos + j ) );
+                        char base = Character.toUpperCase( (char) readBases[readPos + j] );
                         if( !isFwdStrand ) {
                             base = SequenceUtils.getDnaComplement( base );
                         }
@@ -783,7 +1005,7 @@ public class SamBamFileReader implements Observable, Observer {
                     refPos += currentCount;
                     readPos += currentCount;
                     break;
-                case "D":
+                case D:
                     // count and add diff gaps for deletions in reference
                     differences += currentCount;
                     for( int j = 0; j < currentCount; j++ ) {
@@ -794,11 +1016,11 @@ public class SamBamFileReader implements Observable, Observer {
                     refPos += currentCount;
                     // readPos remains the same
                     break;
-                case "I":
+                case I:
                     // count and add reference gaps for insertions
                     differences += currentCount;
                     for( int j = 0; j < currentCount; j++ ) {
-                        char base = Character.toUpperCase( readSeq.charAt( readPos + j ) );
+                        char base = Character.toUpperCase( (char) readBases[readPos + j] );
                         if( !isFwdStrand ) {
                             base = SequenceUtils.getDnaComplement( base );
                         }
@@ -814,18 +1036,18 @@ public class SamBamFileReader implements Observable, Observer {
                     }   //refPos remains the same
                     readPos += currentCount;
                     break;
-                case "N": //fallthrough, treatment is equal to "P"
-                case "P":
+                case N: //fallthrough, treatment is equal to "P"
+                case P:
                     //increase ref position for padded and skipped reference bases
                     refPos += currentCount;
                     //readPos remains the same
                     break;
-                case "S":
+                case S:
                     //increase read position for soft clipped bases which are present in the read
                     //refPos remains the same
                     readPos += currentCount;
                     break;
-                case "H": //just do nothing since the position is not in the reference and not in the read!
+                case H: //just do nothing since the position is not in the reference and not in the read!
                     break;
                 default:
                     break;
@@ -848,7 +1070,7 @@ public class SamBamFileReader implements Observable, Observer {
      * @param diffs   the diffs list to which the diff shall be added.
      * @param diff    the diff to add
      */
-    private void addDiff( Mapping mapping, List<Difference> diffs, Difference diff ) {
+    private static void addDiff( Mapping mapping, List<Difference> diffs, Difference diff ) {
         if( mapping != null ) {
             mapping.addDiff( diff );
         } else {
@@ -857,11 +1079,152 @@ public class SamBamFileReader implements Observable, Observer {
     }
 
 
+    /**
+     * Walks the cigar of the record and adds each base differing from the
+     * reference sequence, each deletion and each insertion located in the
+     * interval of the pileup to the pileup. The bases and qualities are
+     * evaluated exactly as in
+     * {@link #createDiffsAndGaps(SAMRecord, ReferenceWindow, Mapping)}.
+     * <p>
+     * @param record the record whose diffs and gaps are added
+     * @param refSeq the reference window covering the pileup interval
+     * @param pileup the pileup to which the diffs and gaps are added
+     */
+    private void addToPileup( SAMRecord record, ReferenceWindow refSeq, Pileup pileup ) {
+        final byte[] readBases = record.getReadBases();
+        final byte[] baseQualities = record.getBaseQualities();
+        final byte mappingQuality = (byte) (record.getMappingQuality() >= DEFAULT_MAP_QUAL ? UNKNOWN_CALCULATED_MAP_QUAL : record.getMappingQuality());
+        final int pileupFrom = pileup.getFrom();
+        final int pileupTo = pileup.getTo();
+        int refPos = record.getAlignmentStart();
+        int readPos = 0;
+        int gapOrder = 0;
+        int lastGapPos = -1;
+        for( CigarElement element : record.getCigar().getCigarElements() ) {
+            int length = element.getLength();
+            switch( element.getOperator() ) {
+                case M:
+                    for( int j = Math.max( 0, pileupFrom - refPos ); j < length && refPos + j <= pileupTo; j++ ) {
+                        char base = Character.toUpperCase( (char) readBases[readPos + j] );
+                        if( base != refSeq.getBase( refPos + j ) ) {
+                            pileup.addDiff( refPos + j, base, getBaseQuality( baseQualities, j ), mappingQuality );
+                        }
+                    }
+                    refPos += length;
+                    readPos += length;
+                    break;
+                case EQ:
+                    refPos += length;
+                    readPos += length;
+                    break;
+                case X:
+                    for( int j = 0; j < length; j++ ) {
+                        char base = Character.toUpperCase( (char) readBases[readPos + j] );
+                        pileup.addDiff( refPos + j, base, getBaseQuality( baseQualities, j ), mappingQuality );
+                    }
+                    refPos += length;
+                    readPos += length;
+                    break;
+                case D:
+                    for( int j = 0; j < length; j++ ) {
+                        pileup.addDiff( refPos + j, '-', getBaseQuality( baseQualities, j ), mappingQuality );
+                    }
+                    refPos += length;
+                    break;
+                case I:
+                    if( refPos != lastGapPos ) {
+                        lastGapPos = refPos;
+                        gapOrder = 0;
+                    }
+                    for( int j = 0; j < length; j++ ) {
+                        char base = Character.toUpperCase( (char) readBases[readPos + j] );
+                        pileup.addInsertion( refPos, gapOrder++, base, getBaseQuality( baseQualities, j ), mappingQuality );
+                    }
+                    readPos += length;
+                    break;
+                case N: //fallthrough, treatment is equal to "P"
+                case P:
+                    refPos += length;
+                    break;
+                case S:
+                    readPos += length;
+                    break;
+                default: //H: the position is neither in the reference nor in the read
+                    break;
+            }
+        }
+    }
+
+
+    /**
+     * @return The base quality at the index or -1, if the record has no base
+     *         qualities
+     */
+    private static int getBaseQuality( byte[] baseQualities, int index ) {
+        return baseQualities.length == 0 ? -1 : baseQualities[index];
+    }
+
+
+    /**
+     * Looks up the number of aligned records of a chromosome in the bam index
+     * without reading any mappings.
+     * <p>
+     * @param chromName name of the chromosome
+     * <p>
+     * @return The number of aligned records of the chromosome or -1, if it is
+     *         unknown, because the mapping file has no bam index.
+     */
+    public long getAlignedRecordCount( String chromName ) {
+        int refIndex = samFileReader.getFileHeader().getSequenceIndex( chromName );
+        if( refIndex < 0 ) {
+            return 0;
+        }
+        if( samFileReader.type() != SamReader.Type.BAM_TYPE || !samFileReader.hasIndex() ) {
+            return -1;
+        }
+        try {
+            return samFileReader.indexing().getIndex().getMetaData( refIndex ).getAlignedRecordCount();
+        } catch( SAMException | UnsupportedOperationException e ) {
+            LOG.warn( "Cannot read the index meta data of " + dataFile.getName() + ": " + e.getMessage() );
+            return -1;
+        }
+    }
+
+
+    /**
+     * @return The mapping file read by this reader.
+     */
+    public File getDataFile() {
+        return dataFile;
+    }
+
+
+    /**
+     * @return The track id of the track whose data is stored in the mapping
+     *         file.
+     */
+    public int getTrackId() {
+        return trackId;
+    }
+
+
+    /**
+     * @return The reference genome used in the mapping file.
+     */
+    public PersistentReference getReference() {
+        return reference;
+    }
+
+
     /**
      * Closes this reader.
      */
     public void close() {
+        closeCoverageIndex();
         try {
+            if( coverageDecoder != null ) {
+                coverageDecoder.close();
+            }
             samFileReader.close();
         } catch( IOException ex ) {
             LOG.error( ex.getMessage(), ex );
@@ -0,0 +1,405 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
+import htsjdk.samtools.util.RuntimeIOException;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Pool of long-lived {@link SamBamFileReader}s per track. Opening a reader
+ * parses the BAM header and the bai index, so the data threads check out a
+ * reader for each request and return it afterwards instead of opening a new
+ * one every time.
+ * <p>
+ * A checked out reader is confined to the thread which checked it out until
+ * it is released again. The number of idle readers is bounded per track and
+ * in total, and readers which stayed idle longer than the idle timeout are
+ * closed on the next pool access.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public final class SamBamReaderPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger( SamBamReaderPool.class.getName() );
+
+    /**
+     * 4 = Default maximum number of idle readers kept per track.
+     */
+    public static final int DEFAULT_MAX_IDLE_PER_TRACK = 4;
+    /**
+     * 64 = Default maximum number of idle readers kept over all tracks.
+     */
+    public static final int DEFAULT_MAX_IDLE_TOTAL = 64;
+    /**
+     * 120000 = Default time in milliseconds after which an idle reader is
+     * closed.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 120000;
+
+    private static final SamBamReaderPool INSTANCE = new SamBamReaderPool( DEFAULT_MAX_IDLE_PER_TRACK, DEFAULT_MAX_IDLE_TOTAL, DEFAULT_IDLE_TIMEOUT );
+
+    private final int maxIdlePerTrack;
+    private final int maxIdleTotal;
+    private final long idleTimeout;
+    private final LongSupplier clock;
+
+    private final Map<String, Deque<IdleReader>> idleReaders;
+    private final Map<SamBamFileReader, Thread> checkedOutReaders;
+    private final Set<SamBamFileReader> retiredReaders;
+    private int idleCount;
+
+    private final AtomicLong openCount = new AtomicLong();
+    private final AtomicLong reuseCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+
+    /**
+     * Pool of long-lived {@link SamBamFileReader}s per track.
+     * <p>
+     * @param maxIdlePerTrack maximum number of idle readers kept per track
+     * @param maxIdleTotal    maximum number of idle readers kept over all
+     *                        tracks
+     * @param idleTimeout     time in milliseconds after which an idle reader is
+     *                        closed
+     */
+    SamBamReaderPool( int maxIdlePerTrack, int maxIdleTotal, long idleTimeout ) {
+        this( maxIdlePerTrack, maxIdleTotal, idleTimeout, System::currentTimeMillis );
+    }
+
+
+    /**
+     * Pool of long-lived {@link SamBamFileReader}s per track, which measures
+     * the idle time of its readers with the given clock.
+     * <p>
+     * @param maxIdlePerTrack maximum number of idle readers kept per track
+     * @param maxIdleTotal    maximum number of idle readers kept over all
+     *                        tracks
+     * @param idleTimeout     time in milliseconds after which an idle reader is
+     *                        closed
+     * @param clock           supplies the current time in milliseconds
+     */
+    SamBamReaderPool( int maxIdlePerTrack, int maxIdleTotal, long idleTimeout, LongSupplier clock ) {
+        this.maxIdlePerTrack = maxIdlePerTrack;
+        this.maxIdleTotal = maxIdleTotal;
+        this.idleTimeout = idleTimeout;
+        this.clock = clock;
+        this.idleReaders = new HashMap<>();
+        this.checkedOutReaders = new IdentityHashMap<>();
+        this.retiredReaders = Collections.newSetFromMap( new IdentityHashMap<SamBamFileReader, Boolean>() );
+    }
+
+
+    /**
+     * @return The reader pool shared by all data threads.
+     */
+    public static SamBamReaderPool getInstance() {
+        return INSTANCE;
+    }
+
+
+    /**
+     * Checks out a reader for the given track. An idle reader of the track is
+     * reused if available, otherwise a new reader is opened. The reader
+     * belongs to the calling thread until it is handed back via
+     * {@link #release(SamBamFileReader)}.
+     * <p>
+     * @param track     the track whose mapping file shall be read
+     * @param reference reference genome used in the mapping file
+     * <p>
+     * @return A reader for the mapping file of the track
+     * <p>
+     * @throws RuntimeIOException
+     */
+    public SamBamFileReader checkout( PersistentTrack track, PersistentReference reference ) throws RuntimeIOException {
+        File dataFile = new File( track.getFilePath() );
+        String key = createKey( track.getId(), dataFile );
+        SamBamFileReader reader = null;
+        List<SamBamFileReader> evicted = new ArrayList<>();
+
+        synchronized( this ) {
+            evictExpiredReaders( clock.getAsLong(), evicted );
+            Deque<IdleReader> trackReaders = idleReaders.get( key );
+            if( trackReaders != null ) {
+                Iterator<IdleReader> readerIt = trackReaders.iterator();
+                while( readerIt.hasNext() && reader == null ) {
+                    IdleReader idleReader = readerIt.next();
+                    if( idleReader.reader.getReference() == reference ) {
+                        readerIt.remove();
+                        --idleCount;
+                        reader = idleReader.reader;
+                    }
+                }
+            }
+            if( reader != null ) {
+                reuseCount.incrementAndGet();
+                checkedOutReaders.put( reader, Thread.currentThread() );
+            }
+        }
+        closeReaders( evicted );
+
+        if( reader == null ) {
+            reader = new SamBamFileReader( dataFile, track.getId(), reference );
+            openCount.incrementAndGet();
+            synchronized( this ) {
+                checkedOutReaders.put( reader, Thread.currentThread() );
+            }
+        }
+        return reader;
+    }
+
+
+    /**
+     * Hands a reader back to the pool. Only the thread which checked out the
+     * reader is allowed to release it. If the pool already contains enough
+     * idle readers, the reader is closed.
+     * <p>
+     * @param reader the reader to release
+     * <p>
+     * @throws IllegalStateException    if the reader was checked out by
+     *                                  another thread
+     * @throws IllegalArgumentException if the reader was not checked out from
+     *                                  this pool
+     */
+    public void release( SamBamFileReader reader ) {
+        List<SamBamFileReader> evicted = new ArrayList<>();
+
+        synchronized( this ) {
+            Thread owner = checkedOutReaders.get( reader );
+            if( owner == null ) {
+                throw new IllegalArgumentException( "The reader for " + reader.getDataFile() + " was not checked out from this pool." );
+            } else if( owner != Thread.currentThread() ) {
+                throw new IllegalStateException( "The reader for " + reader.getDataFile() + " is owned by thread " + owner.getName() +
+                                                 " and cannot be released by " + Thread.currentThread().getName() + "." );
+            }
+            checkedOutReaders.remove( reader );
+
+            long now = clock.getAsLong();
+            String key = createKey( reader.getTrackId(), reader.getDataFile() );
+            Deque<IdleReader> trackReaders = idleReaders.get( key );
+            if( trackReaders == null ) {
+                trackReaders = new ArrayDeque<>( maxIdlePerTrack );
+                idleReaders.put( key, trackReaders );
+            }
+            if( retiredReaders.remove( reader ) ) {
+                evicted.add( reader );
+            } else if( trackReaders.size() < maxIdlePerTrack ) {
+                trackReaders.addFirst( new IdleReader( reader, now ) );
+                ++idleCount;
+            } else {
+                evicted.add( reader );
+            }
+            evictExpiredReaders( now, evicted );
+            while( idleCount > maxIdleTotal ) {
+                evicted.add( removeOldestIdleReader() );
+            }
+        }
+        closeReaders( evicted );
+    }
+
+
+    /**
+     * Closes all idle readers of the given track. Readers of the track which
+     * are currently checked out are closed as soon as they are released. Use
+     * this method when a track was deleted or its file moved.
+     * <p>
+     * @param trackId id of the track whose readers shall be closed
+     */
+    public void invalidate( int trackId ) {
+        List<SamBamFileReader> evicted = new ArrayList<>();
+        synchronized( this ) {
+            Iterator<Map.Entry<String, Deque<IdleReader>>> entryIt = idleReaders.entrySet().iterator();
+            while( entryIt.hasNext() ) {
+                Map.Entry<String, Deque<IdleReader>> entry = entryIt.next();
+                if( entry.getKey().startsWith( trackId + ":" ) ) {
+                    for( IdleReader idleReader : entry.getValue() ) {
+                        evicted.add( idleReader.reader );
+                    }
+                    idleCount -= entry.getValue().size();
+                    entryIt.remove();
+                }
+            }
+            for( SamBamFileReader reader : checkedOutReaders.keySet() ) {
+                if( reader.getTrackId() == trackId ) {
+                    retiredReaders.add( reader );
+                }
+            }
+        }
+        closeReaders( evicted );
+    }
+
+
+    /**
+     * Closes all idle readers of all tracks. Readers which are currently
+     * checked out are closed as soon as they are released.
+     */
+    public void clear() {
+        List<SamBamFileReader> evicted = new ArrayList<>();
+        synchronized( this ) {
+            for( Deque<IdleReader> trackReaders : idleReaders.values() ) {
+                for( IdleReader idleReader : trackReaders ) {
+                    evicted.add( idleReader.reader );
+                }
+            }
+            idleReaders.clear();
+            idleCount = 0;
+            retiredReaders.addAll( checkedOutReaders.keySet() );
+        }
+        closeReaders( evicted );
+        LOG.info( "Closed all pooled mapping file readers. Opened: " + getOpenCount() + ", reused: " + getReuseCount() +
+                  ", evicted: " + getEvictionCount() );
+    }
+
+
+    /**
+     * @return The number of readers opened by this pool so far.
+     */
+    public long getOpenCount() {
+        return openCount.get();
+    }
+
+
+    /**
+     * @return The number of checkouts which reused an idle reader.
+     */
+    public long getReuseCount() {
+        return reuseCount.get();
+    }
+
+
+    /**
+     * @return The number of readers closed by this pool, because the pool was
+     *         full, they were idle for too long or their track was
+     *         invalidated.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+
+    /**
+     * @return The number of readers currently waiting in the pool.
+     */
+    public synchronized int getIdleCount() {
+        return idleCount;
+    }
+
+
+    /**
+     * Removes all readers from the pool, which have been idle for longer than
+     * the idle timeout.
+     * <p>
+     * @param now      the current time in milliseconds
+     * @param evicted  list to which the removed readers are added
+     */
+    private void evictExpiredReaders( long now, List<SamBamFileReader> evicted ) {
+        Iterator<Deque<IdleReader>> dequeIt = idleReaders.values().iterator();
+        while( dequeIt.hasNext() ) {
+            Deque<IdleReader> trackReaders = dequeIt.next();
+            //oldest readers are stored at the end of the deque
+            while( !trackReaders.isEmpty() && now - trackReaders.peekLast().idleSince > idleTimeout ) {
+                evicted.add( trackReaders.pollLast().reader );
+                --idleCount;
+            }
+            if( trackReaders.isEmpty() ) {
+                dequeIt.remove();
+            }
+        }
+    }
+
+
+    /**
+     * Removes the reader which has been idle for the longest time over all
+     * tracks from the pool.
+     * <p>
+     * @return The removed reader
+     */
+    private SamBamFileReader removeOldestIdleReader() {
+        Deque<IdleReader> oldestDeque = null;
+        for( Deque<IdleReader> trackReaders : idleReaders.values() ) {
+            if( !trackReaders.isEmpty() && (oldestDeque == null || trackReaders.peekLast().idleSince < oldestDeque.peekLast().idleSince) ) {
+                oldestDeque = trackReaders;
+            }
+        }
+        --idleCount;
+        return oldestDeque.pollLast().reader;
+    }
+
+
+    /**
+     * Closes the given readers. Called without holding the pool lock.
+     * <p>
+     * @param readers the readers to close
+     */
+    private void closeReaders( List<SamBamFileReader> readers ) {
+        for( SamBamFileReader reader : readers ) {
+            evictionCount.incrementAndGet();
+            LOG.debug( "Closing pooled reader for " + reader.getDataFile().getName() );
+            reader.close();
+        }
+    }
+
+
+    /**
+     * @param trackId  id of the track
+     * @param dataFile mapping file of the track
+     * <p>
+     * @return The key of the idle readers of the given track file
+     */
+    private static String createKey( int trackId, File dataFile ) {
+        return trackId + ":" + dataFile.getAbsolutePath();
+    }
+
+
+    /**
+     * A reader waiting in the pool together with the time since when it is
+     * idle.
+     */
+    private static class IdleReader {
+
+        private final SamBamFileReader reader;
+        private final long idleSince;
+
+
+        IdleReader( SamBamFileReader reader, long idleSince ) {
+            this.reader = reader;
+            this.idleSince = idleSince;
+        }
+
+
+    }
+
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Carries out the tiles of an analysis in an executor shared by all analyses
+ * and delivers their results in the order of the tiles. Only one thread
+ * delivers results at a time. At most <code>parallelism</code> tiles of a
+ * scheduler run at the same time and a tile is only started, if it is less
+ * than the window size ahead of the next tile to deliver, which bounds the
+ * number of buffered results.
+ * <p>
+ * If a tile or the delivery of its result fails, no further tiles are started
+ * or delivered and the receiver is informed about the failure once.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+class TileScheduler {
+
+    private static ExecutorService sharedExecutor;
+
+    private final TileTask task;
+    private final TileReceiver receiver;
+    private final Executor executor;
+    private final int parallelism;
+    private final int window;
+    private final Object[] results;
+    private int nextTile;
+    private int nextDelivery;
+    private int running;
+    private boolean delivering;
+    private boolean failed;
+
+
+    /**
+     * Carries out the tiles of an analysis in the executor shared by all
+     * analyses.
+     * <p>
+     * @param nbTiles     the number of tiles
+     * @param parallelism the maximum number of tiles of this scheduler running
+     *                    at the same time
+     * @param task        carries out a single tile
+     * @param receiver    receives the tile results in order and failures
+     */
+    TileScheduler( int nbTiles, int parallelism, TileTask task, TileReceiver receiver ) {
+        this( nbTiles, parallelism, task, receiver, getSharedExecutor() );
+    }
+
+
+    /**
+     * Carries out the tiles of an analysis in the given executor.
+     * <p>
+     * @param nbTiles     the number of tiles
+     * @param parallelism the maximum number of tiles of this scheduler running
+     *                    at the same time
+     * @param task        carries out a single tile
+     * @param receiver    receives the tile results in order and failures
+     * @param executor    the executor running the tiles
+     */
+    TileScheduler( int nbTiles, int parallelism, TileTask task, TileReceiver receiver, Executor executor ) {
+        this.task = task;
+        this.receiver = receiver;
+        this.executor = executor;
+        this.parallelism = Math.max( 1, parallelism );
+        this.window = this.parallelism * 2;
+        this.results = new Object[nbTiles];
+    }
+
+
+    /**
+     * @return The executor shared by all analyses. It uses one daemon thread
+     *         per available processor, which bounds the number of tiles
+     *         running at the same time, independent of the number of running
+     *         analyses.
+     */
+    static synchronized ExecutorService getSharedExecutor() {
+        if( sharedExecutor == null ) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            sharedExecutor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread( runnable, "TileScheduler.Tile-" + threadCount.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            } );
+        }
+        return sharedExecutor;
+    }
+
+
+    /**
+     * Starts the first tiles.
+     */
+    synchronized void start() {
+        this.scheduleTiles();
+    }
+
+
+    /**
+     * Submits all tiles fitting into the window to the executor, as long as
+     * less than <code>parallelism</code> tiles are running.
+     */
+    private synchronized void scheduleTiles() {
+        while( !failed && running < parallelism && nextTile < results.length && nextTile < nextDelivery + window ) {
+            final int tile = nextTile++;
+            ++running;
+            executor.execute( () -> carryOut( tile ) );
+        }
+    }
+
+
+    /**
+     * Carries out a tile in the current executor thread.
+     * <p>
+     * @param tile index of the tile
+     */
+    private void carryOut( int tile ) {
+        synchronized( this ) {
+            if( failed ) {
+                --running;
+                return;
+            }
+        }
+        Object result;
+        try {
+            result = task.carryOut( tile );
+            if( result == null ) {
+                throw new IllegalStateException( "Tile " + (tile + 1) + " did not return a result." );
+            }
+        } catch( RuntimeException | OutOfMemoryError e ) {
+            synchronized( this ) {
+                --running;
+                if( failed ) {
+                    return;
+                }
+                failed = true;
+            }
+            receiver.tileFailed( tile, e );
+            return;
+        }
+        tileFinished( tile, result );
+    }
+
+
+    /**
+     * Stores the result of a tile and delivers all results which are next in
+     * order, unless another thread is already delivering. Afterwards, the
+     * next tiles are scheduled.
+     * <p>
+     * @param tile   index of the tile
+     * @param result the result of the tile
+     */
+    private void tileFinished( int tile, Object result ) {
+        synchronized( this ) {
+            --running;
+            results[tile] = result;
+            if( delivering || failed ) {
+                return;
+            }
+            delivering = true;
+        }
+        while( true ) {
+            Object next;
+            int nextTileDelivered;
+            synchronized( this ) {
+                if( failed || nextDelivery >= results.length || results[nextDelivery] == null ) {
+                    delivering = false;
+                    this.scheduleTiles();
+                    return;
+                }
+                nextTileDelivered = nextDelivery;
+                next = results[nextDelivery];
+                results[nextDelivery++] = null;
+            }
+            try {
+                receiver.receiveTile( next );
+            } catch( RuntimeException | OutOfMemoryError e ) {
+                synchronized( this ) {
+                    delivering = false;
+                    if( failed ) {
+                        return;
+                    }
+                    failed = true;
+                }
+                receiver.tileFailed( nextTileDelivered, e );
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Carries out a single tile.
+     */
+    interface TileTask {
+
+        /**
+         * Carries out a tile in the calling thread.
+         * <p>
+         * @param tile index of the tile
+         * <p>
+         * @return The result of the tile, never <code>null</code>
+         */
+        Object carryOut( int tile );
+
+
+    }
+
+
+    /**
+     * Receives the results of the tiles in their order and a failure of a
+     * tile.
+     */
+    interface TileReceiver {
+
+        /**
+         * Receives the result of the next tile.
+         * <p>
+         * @param result the result of the tile
+         */
+        void receiveTile( Object result );
+
+
+        /**
+         * Called once, if a tile failed. No further tiles are delivered
+         * afterwards.
+         * <p>
+         * @param tile  index of the failed tile
+         * @param cause the cause of the failure
+         */
+        void tileFailed( int tile, Throwable cause );
+
+
+    }
+
+
+}
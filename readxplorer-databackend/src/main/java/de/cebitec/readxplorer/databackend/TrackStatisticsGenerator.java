@@ -23,10 +23,12 @@ import de.cebitec.readxplorer.databackend.connector.DatabaseException;
 import de.cebitec.readxplorer.databackend.connector.ProjectConnector;
 import de.cebitec.readxplorer.databackend.connector.TrackConnector;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
-import de.cebitec.readxplorer.exporter.tables.ExportDataI;
+import de.cebitec.readxplorer.exporter.tables.StreamingExportDataI;
+import de.cebitec.readxplorer.exporter.tables.TableRowCursor;
 import de.cebitec.readxplorer.utils.StatsContainer;
 import de.cebitec.readxplorer.utils.errorhandling.ErrorHelper;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -37,7 +39,7 @@ import java.util.Map;
  *
  * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
  */
-public class TrackStatisticsGenerator implements ExportDataI {
+public class TrackStatisticsGenerator implements StreamingExportDataI {
 
     private final ProjectConnector projectConnector;
     private final List<String> trackStatsIds;
@@ -96,32 +98,58 @@ public class TrackStatisticsGenerator implements ExportDataI {
     public List<List<List<Object>>> dataToExcelExportList() {
         List<List<List<Object>>> allData = new ArrayList<>();
         List<List<Object>> statsData = new ArrayList<>();
-        try {
-            List<PersistentTrack> tracks = projectConnector.getTracks();
-            for( PersistentTrack track : tracks ) {
-                SaveFileFetcherForGUI fileFetcher = new SaveFileFetcherForGUI();
-                try {
-
-                    TrackConnector trackConnector = fileFetcher.getTrackConnector( track );
-                    StatsContainer trackStats = trackConnector.getTrackStats();
-                    statsData.add( statsToList( track, trackStats ) );
-
-                } catch( SaveFileFetcherForGUI.UserCanceledTrackPathUpdateException ex ) {
-                    String msg = "You did not complete the track path selection. The track statistics cannot be stored for this track.";
-                    ErrorHelper.getHandler().handle( new FileException( msg, ex ), "Error resolving path to track" );
-                    //skipping track
-                }
-            }
-        } catch( DatabaseException e ) {
-            ErrorHelper.getHandler().handle( e );
+        for( PersistentTrack track : projectConnector.getTracks() ) {
+            statsData.add( createTrackRow( track ) );
         }
-
         allData.add( statsData );
 
         return allData;
     }
 
 
+    /**
+     * Creates the statistics row of each track right before it is written, so
+     * the statistics of a track are only fetched while it is exported.
+     * <p>
+     * @param sheetIndex index of the sheet whose rows are needed
+     * <p>
+     * @return A cursor over the rows of the track statistics table
+     */
+    @Override
+    public TableRowCursor createRowCursor( int sheetIndex ) {
+        final List<PersistentTrack> tracks = projectConnector.getTracks();
+        return TableRowCursor.of( tracks.size(), i -> createTrackRow( tracks.get( i ) ) );
+    }
+
+
+    /**
+     * Fetches the track statistics of the given track. The statistics include
+     * both, the single end and read pair statistics. If the statistics cannot
+     * be fetched, all values of the track are set to "-1".
+     * <p>
+     * @param track the track whose statistics are needed
+     * <p>
+     * @return The statistics row of the track
+     */
+    private List<Object> createTrackRow( PersistentTrack track ) {
+        Map<String, Integer> statsMap = Collections.emptyMap();
+        Object reference = null;
+        try {
+            SaveFileFetcherForGUI fileFetcher = new SaveFileFetcherForGUI();
+            TrackConnector trackConnector = fileFetcher.getTrackConnector( track );
+            statsMap = trackConnector.getTrackStats().getStatsMap();
+            reference = projectConnector.getRefGenomeConnector( track.getRefGenID() ).getRefGenome();
+
+        } catch( SaveFileFetcherForGUI.UserCanceledTrackPathUpdateException ex ) {
+            String msg = "You did not complete the track path selection. The track statistics cannot be stored for this track.";
+            ErrorHelper.getHandler().handle( new FileException( msg, ex ), "Error resolving path to track" );
+        } catch( DatabaseException e ) {
+            ErrorHelper.getHandler().handle( e );
+        }
+        return statsToList( track, reference, statsMap );
+    }
+
+
     /**
      * Creates a statistics list from the given track and track statistics data.
      * The order of the elements is always the same as declared in the
@@ -129,21 +157,20 @@ public class TrackStatisticsGenerator implements ExportDataI {
      * track statistics are stored. All missing statistics fields are filled
      * with "-1".
      * <p>
-     * @param track      The track for which the data should be processed
-     * @param trackStats The StatsContainer with all track statistics
+     * @param track     The track for which the data should be processed
+     * @param reference The reference of the track or <code>null</code>, if it
+     *                  could not be fetched
+     * @param statsMap  The map of all track statistics
      * <p>
      * @return The ready-to-use statistics list
-     *
-     * @throws DatabaseException An exception during data queries
      */
-    private List<Object> statsToList( PersistentTrack track, StatsContainer trackStats ) throws DatabaseException {
+    private List<Object> statsToList( PersistentTrack track, Object reference, Map<String, Integer> statsMap ) {
 
         List<Object> trackStatsList = new ArrayList<>();
 
         trackStatsList.add( track );
-        trackStatsList.add( projectConnector.getRefGenomeConnector( track.getRefGenID() ).getRefGenome() );
+        trackStatsList.add( reference );
 
-        Map<String, Integer> statsMap = trackStats.getStatsMap();
         for( String trackStatsId : trackStatsIds ) {
             if( statsMap.containsKey( trackStatsId ) ) {
                 trackStatsList.add( statsMap.get( trackStatsId ) );
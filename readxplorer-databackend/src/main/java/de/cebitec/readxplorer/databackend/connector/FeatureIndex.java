@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend.connector;
+
+
+import de.cebitec.readxplorer.api.enums.FeatureType;
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentFeature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * In memory index of all features of a chromosome. The features are kept as
+ * lightweight records sorted by start position, which form an implicit
+ * augmented interval tree: The record in the middle of each subtree is its
+ * root and stores the maximum stop position of the subtree. Overlap queries
+ * thus run in O(log n + k) for k results.
+ * <p>
+ * Since callers link the returned features into parent-child hierarchies, a
+ * new PersistentFeature is created for each result. The index is immutable
+ * and thread safe.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+class FeatureIndex {
+
+    /** Subtrees up to this level are scanned linearly. */
+    private static final int SCAN_LEVEL = 3;
+
+    private final int chromId;
+    private final FeatureRecord[] records;
+    private final int[] starts;
+    private final int[] stops;
+    private final int[] maxStops;
+    private final int maxLevel;
+
+
+    /**
+     * In memory index of all features of a chromosome.
+     * <p>
+     * @param chromId id of the chromosome
+     * @param records the feature records of the chromosome in any order
+     */
+    FeatureIndex( int chromId, List<FeatureRecord> records ) {
+        this.chromId = chromId;
+        this.records = records.toArray( new FeatureRecord[records.size()] );
+        Arrays.sort( this.records, Comparator.comparingInt( (FeatureRecord record) -> record.start ).thenComparingInt( record -> record.id ) );
+
+        int size = this.records.length;
+        this.starts = new int[size];
+        this.stops = new int[size];
+        this.maxStops = new int[size];
+        for( int i = 0; i < size; ++i ) {
+            starts[i] = this.records[i].start;
+            stops[i] = this.records[i].stop;
+        }
+        this.maxLevel = this.indexMaxStops();
+    }
+
+
+    /**
+     * Calculates the maximum stop position of each subtree of the implicit
+     * interval tree. The leaves are at the even indices and a node at level k
+     * has its children at a distance of 2^(k-1).
+     * <p>
+     * @return the level of the root of the tree or -1 for an empty index
+     */
+    private int indexMaxStops() {
+        int size = starts.length;
+        if( size == 0 ) {
+            return -1;
+        }
+        int lastIndex = 0;
+        int lastMax = 0;
+        for( int i = 0; i < size; i += 2 ) {
+            lastIndex = i;
+            maxStops[i] = stops[i];
+            lastMax = stops[i];
+        }
+        int level = 1;
+        for( ; 1L << level <= size; ++level ) {
+            int childDist = 1 << (level - 1);
+            int first = (childDist << 1) - 1;
+            int step = childDist << 2;
+            for( int i = first; i < size; i += step ) {
+                int leftMax = maxStops[i - childDist];
+                int rightMax = i + childDist < size ? maxStops[i + childDist] : lastMax;
+                maxStops[i] = Math.max( stops[i], Math.max( leftMax, rightMax ) );
+            }
+            //move lastIndex to its parent and update the maximum of the incomplete right border
+            lastIndex = ((lastIndex >> level) & 1) != 0 ? lastIndex - childDist : lastIndex + childDist;
+            if( lastIndex < size && maxStops[lastIndex] > lastMax ) {
+                lastMax = maxStops[lastIndex];
+            }
+        }
+        return level - 1;
+    }
+
+
+    /**
+     * @return The number of features in this index
+     */
+    int size() {
+        return records.length;
+    }
+
+
+    /**
+     * Fetches all features which at least partly overlap a given region.
+     * <p>
+     * @param from        start position of the region of interest
+     * @param to          end position of the region of interest
+     * @param featureType type of features to retrieve. Either FeatureType.ANY
+     *                    or a specified type
+     * <p>
+     * @return the list of all features overlapping the region, sorted by start
+     *         position
+     */
+    List<PersistentFeature> getOverlappingFeatures( int from, int to, FeatureType featureType ) {
+        List<PersistentFeature> features = new ArrayList<>();
+        if( maxLevel < 0 || from > to ) {
+            return features;
+        }
+        int size = records.length;
+        //stack of (node index, level, left child visited)
+        int[] nodes = new int[64];
+        int[] levels = new int[64];
+        boolean[] leftVisited = new boolean[64];
+        int top = 0;
+        nodes[top] = (1 << maxLevel) - 1;
+        levels[top] = maxLevel;
+        leftVisited[top++] = false;
+
+        while( top > 0 ) {
+            --top;
+            int node = nodes[top];
+            int level = levels[top];
+            if( level <= SCAN_LEVEL ) {
+                int first = node >> level << level;
+                int last = Math.min( size, first + (1 << (level + 1)) - 1 );
+                for( int i = first; i < last && starts[i] <= to; ++i ) {
+                    if( stops[i] >= from ) {
+                        this.addFeature( features, i, featureType );
+                    }
+                }
+            } else if( !leftVisited[top] ) {
+                int leftChild = node - (1 << (level - 1));
+                leftVisited[top++] = true; //revisit this node after its left child
+                if( leftChild >= size || maxStops[leftChild] >= from ) {
+                    nodes[top] = leftChild;
+                    levels[top] = level - 1;
+                    leftVisited[top++] = false;
+                }
+            } else if( node < size && starts[node] <= to ) {
+                if( stops[node] >= from ) {
+                    this.addFeature( features, node, featureType );
+                }
+                nodes[top] = node + (1 << (level - 1));
+                levels[top] = level - 1;
+                leftVisited[top++] = false;
+            }
+        }
+        return features;
+    }
+
+
+    /**
+     * Fetches all features which are completely located within a given
+     * region.
+     * <p>
+     * @param left  start position of the region of interest
+     * @param right end position of the region of interest
+     * <p>
+     * @return the list of all features within the region, sorted by start
+     *         position
+     */
+    List<PersistentFeature> getContainedFeatures( int left, int right ) {
+        List<PersistentFeature> features = new ArrayList<>();
+        for( int i = lowerBound( starts, starts.length, left ); i < starts.length && starts[i] <= right; ++i ) {
+            if( stops[i] >= left && stops[i] <= right ) {
+                this.addFeature( features, i, FeatureType.ANY );
+            }
+        }
+        return features;
+    }
+
+
+    /**
+     * Adds the feature of the given record to the list, if it has the desired
+     * type.
+     */
+    private void addFeature( List<PersistentFeature> features, int record, FeatureType featureType ) {
+        if( featureType == FeatureType.ANY || records[record].type == featureType ) {
+            features.add( records[record].toFeature( chromId ) );
+        }
+    }
+
+
+    /**
+     * @return The index of the first value &gt;= key in the sorted array or
+     *         length, if all values are smaller
+     */
+    private static int lowerBound( int[] values, int length, int key ) {
+        int low = 0;
+        int high = length;
+        while( low < high ) {
+            int mid = (low + high) >>> 1;
+            if( values[mid] < key ) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Lightweight record of a feature, from which PersistentFeatures are
+     * created on demand.
+     */
+    static class FeatureRecord {
+
+        private final int id;
+        private final String parentIds;
+        private final String ecNumber;
+        private final String locus;
+        private final String product;
+        private final int start;
+        private final int stop;
+        private final boolean isFwdStrand;
+        private final FeatureType type;
+        private final String featureName;
+
+
+        /**
+         * Lightweight record of a feature.
+         * <p>
+         * @param id          id of the feature in db
+         * @param parentIds   the ids of the parents of this feature separated
+         *                    by ";"
+         * @param ecNumber    ec number
+         * @param locus       locus information
+         * @param product     description of the protein product
+         * @param start       start position
+         * @param stop        stop position
+         * @param isFwdStrand true for features on the forward strand
+         * @param type        type of the feature
+         * @param featureName name of the feature, if it exists
+         */
+        FeatureRecord( int id, String parentIds, String ecNumber, String locus, String product,
+                       int start, int stop, boolean isFwdStrand, FeatureType type, String featureName ) {
+            this.id = id;
+            this.parentIds = parentIds;
+            this.ecNumber = ecNumber;
+            this.locus = locus;
+            this.product = product;
+            this.start = start;
+            this.stop = stop;
+            this.isFwdStrand = isFwdStrand;
+            this.type = type;
+            this.featureName = featureName;
+        }
+
+
+        /**
+         * @param chromId id of the chromosome of the feature
+         * <p>
+         * @return A new PersistentFeature for this record
+         */
+        PersistentFeature toFeature( int chromId ) {
+            return new PersistentFeature( id, chromId, parentIds, ecNumber, locus, product, start, stop, isFwdStrand, type, featureName );
+        }
+
+
+    }
+
+
+}
@@ -24,6 +24,7 @@ import de.cebitec.readxplorer.api.enums.MappingClass;
 import de.cebitec.readxplorer.databackend.FieldNames;
 import de.cebitec.readxplorer.databackend.GenericSQLQueries;
 import de.cebitec.readxplorer.databackend.SQLStatements;
+import de.cebitec.readxplorer.databackend.SamBamReaderPool;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
@@ -437,6 +438,7 @@ public final class ProjectConnector implements Observable {
                             updateFeatureTable.setInt( 1, chrom.getId() );
                             updateFeatureTable.setInt( 2, ref.getId() );
                             updateFeatureTable.executeUpdate();
+                            getRefGenomeConnector( ref.getId() ).invalidateFeatureIndex();
                         }
 
                     }
@@ -562,6 +564,7 @@ public final class ProjectConnector implements Observable {
         connectionPool = null;
         trackConnectors.clear();
         refConnectors.clear();
+        SamBamReaderPool.getInstance().clear();
 
         // notify observers about the change of the database
         notifyObservers( "disconnect" );
@@ -1320,6 +1323,7 @@ public final class ProjectConnector implements Observable {
             resetTrackPath.setString( 1, track.getFilePath() );
             resetTrackPath.setLong( 2, track.getId() );
             resetTrackPath.execute();
+            SamBamReaderPool.getInstance().invalidate( track.getId() );
             LOG.info( "Track " + track.getDescription() + " has been updated successfully" );
 
         } catch( SQLException ex ) {
@@ -1360,6 +1364,7 @@ public final class ProjectConnector implements Observable {
                 con.commit();
 
                 trackConnectors.remove( trackId );
+                SamBamReaderPool.getInstance().invalidate( trackId );
                 // notify observers about the change of the database
                 notifyObservers( "deleteTrack" );
                 LOG.info( "Finished deletion of track " + trackId );
@@ -55,6 +55,7 @@ public class ReferenceConnector {
 
     private final int refId;
     private final List<PersistentTrack> associatedTracks;
+    private final Map<Integer, FeatureIndex> featureIndices;
 
 
     /**
@@ -67,6 +68,7 @@ public class ReferenceConnector {
 
         this.refId = refGenID;
         this.associatedTracks = new ArrayList<>();
+        this.featureIndices = new HashMap<>();
 
     }
 
@@ -188,49 +190,7 @@ public class ReferenceConnector {
      */
     public List<PersistentFeature> getFeaturesForRegion( final int from, final int to, final FeatureType featureType, final int chromId ) {
 
-        List<PersistentFeature> features = new ArrayList<>();
-        try( Connection con = ProjectConnector.getInstance().getConnection() ) {
-            final PreparedStatement pStmtFetchFeatures;
-            if( featureType == FeatureType.ANY ) {
-                pStmtFetchFeatures = con.prepareStatement( SQLStatements.FETCH_FEATURES_FOR_CHROM_INTERVAL );
-                pStmtFetchFeatures.setLong( 1, chromId );
-                pStmtFetchFeatures.setInt( 2, from );
-                pStmtFetchFeatures.setInt( 3, to );
-            } else {
-                pStmtFetchFeatures = con.prepareStatement( SQLStatements.FETCH_SPECIFIED_FEATURES_FOR_CHROM_INTERVAL );
-                pStmtFetchFeatures.setLong( 1, chromId );
-                pStmtFetchFeatures.setInt( 2, from );
-                pStmtFetchFeatures.setInt( 3, to );
-                pStmtFetchFeatures.setInt( 4, featureType.getType() );
-            }
-
-            try( final ResultSet rs = pStmtFetchFeatures.executeQuery() ) {
-                while( rs.next() ) {
-                    int id = rs.getInt( FieldNames.FEATURE_ID );
-                    String parentIds = rs.getString( FieldNames.FEATURE_PARENT_IDS );
-                    parentIds = parentIds.equals( "0" ) ? "" : parentIds;
-                    String ecnum = rs.getString( FieldNames.FEATURE_EC_NUM );
-                    String locus = rs.getString( FieldNames.FEATURE_LOCUS_TAG );
-                    String product = rs.getString( FieldNames.FEATURE_PRODUCT );
-                    int start = rs.getInt( FieldNames.FEATURE_START );
-                    int stop = rs.getInt( FieldNames.FEATURE_STOP );
-                    boolean isFwdStrand = rs.getInt( FieldNames.FEATURE_STRAND ) == Strand.Forward.getType();
-                    FeatureType type = FeatureType.getFeatureType( rs.getInt( FieldNames.FEATURE_TYPE ) );
-                    String gene = rs.getString( FieldNames.FEATURE_GENE );
-
-                    features.add( new PersistentFeature( id, chromId, parentIds, ecnum, locus, product, start, stop, isFwdStrand, type, gene ) );
-                }
-            }
-            pStmtFetchFeatures.close();
-
-        } catch( SQLException ex ) {
-            LOG.error( ex.getMessage(), ex );
-            ErrorHelper.getHandler().handle( ex, "Could not fetch features for reagion!" );
-        } catch( DatabaseException ex ) {
-            ErrorHelper.getHandler().handle( ex );
-        }
-
-        return features;
+        return getFeatureIndex( chromId ).getOverlappingFeatures( from, to, featureType );
     }
 
 
@@ -327,20 +287,37 @@ public class ReferenceConnector {
      */
     public List<PersistentFeature> getFeaturesForClosedInterval( final int left, final int right, final int chromId ) {
 
-        List<PersistentFeature> features = new ArrayList<>();
+        return getFeatureIndex( chromId ).getContainedFeatures( left, right );
+    }
+
+
+    /**
+     * Returns the in memory feature index of a chromosome. The index is loaded
+     * from the db on first use and kept until the features of the reference
+     * are changed.
+     * <p>
+     * @param chromId chromosome id of the features of interest
+     * <p>
+     * @return The feature index of the chromosome. If the features cannot be
+     *         loaded, an empty index is returned, which is not kept.
+     */
+    private synchronized FeatureIndex getFeatureIndex( final int chromId ) {
+
+        FeatureIndex featureIndex = featureIndices.get( chromId );
+        if( featureIndex != null ) {
+            return featureIndex;
+        }
+
+        List<FeatureIndex.FeatureRecord> records = new ArrayList<>();
         try( Connection con = ProjectConnector.getInstance().getConnection();
-             PreparedStatement pStmtFetchFeatures = con.prepareStatement( SQLStatements.FETCH_FEATURES_FOR_CLOSED_GENOME_INTERVAL ) ) {
+             PreparedStatement pStmtFetchFeatures = con.prepareStatement( SQLStatements.FETCH_FEATURES_FOR_CHROM ) ) {
 
             pStmtFetchFeatures.setInt( 1, chromId );
-            pStmtFetchFeatures.setInt( 2, left );
-            pStmtFetchFeatures.setInt( 3, right );
-            pStmtFetchFeatures.setInt( 4, left );
-            pStmtFetchFeatures.setInt( 5, right );
-
             try( final ResultSet rs = pStmtFetchFeatures.executeQuery() ) {
                 while( rs.next() ) {
                     int id = rs.getInt( FieldNames.FEATURE_ID );
                     String parentIds = rs.getString( FieldNames.FEATURE_PARENT_IDS );
+                    parentIds = parentIds.equals( "0" ) ? "" : parentIds;
                     String ecnum = rs.getString( FieldNames.FEATURE_EC_NUM );
                     String locus = rs.getString( FieldNames.FEATURE_LOCUS_TAG );
                     String product = rs.getString( FieldNames.FEATURE_PRODUCT );
@@ -349,17 +326,32 @@ public class ReferenceConnector {
                     boolean isFwdStrand = rs.getInt( FieldNames.FEATURE_STRAND ) == Strand.Forward.getType();
                     FeatureType type = FeatureType.getFeatureType( rs.getInt( FieldNames.FEATURE_TYPE ) );
                     String gene = rs.getString( FieldNames.FEATURE_GENE );
-                    features.add( new PersistentFeature( id, chromId, parentIds, ecnum, locus, product, start, stop, isFwdStrand, type, gene ) );
+                    records.add( new FeatureIndex.FeatureRecord( id, parentIds, ecnum, locus, product, start, stop, isFwdStrand, type, gene ) );
                 }
             }
+            featureIndex = new FeatureIndex( chromId, records );
+            featureIndices.put( chromId, featureIndex );
+            LOG.info( "Loaded feature index with " + featureIndex.size() + " features for chromosome with id " + chromId );
+            return featureIndex;
+
         } catch( SQLException ex ) {
             LOG.error( ex.getMessage(), ex );
-            ErrorHelper.getHandler().handle( ex, "Could not fetch features for closed interval!" );
+            ErrorHelper.getHandler().handle( ex, "Could not fetch features for chromosome!" );
         } catch( DatabaseException e ) {
             ErrorHelper.getHandler().handle( e );
         }
 
-        return features;
+        return new FeatureIndex( chromId, records );
+    }
+
+
+    /**
+     * Discards the in memory feature indices of all chromosomes of this
+     * reference. Has to be called whenever the features of the reference are
+     * changed in the db. The indices are reloaded on the next feature query.
+     */
+    public synchronized void invalidateFeatureIndex() {
+        featureIndices.clear();
     }
 
 
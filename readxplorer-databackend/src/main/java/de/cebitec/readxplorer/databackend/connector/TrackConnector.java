@@ -29,6 +29,8 @@ import de.cebitec.readxplorer.databackend.MappingThread;
 import de.cebitec.readxplorer.databackend.MappingThreadAnalyses;
 import de.cebitec.readxplorer.databackend.ParametersReadClasses;
 import de.cebitec.readxplorer.databackend.SQLStatements;
+import de.cebitec.readxplorer.databackend.SamBamFileReader;
+import de.cebitec.readxplorer.databackend.SamBamReaderPool;
 import de.cebitec.readxplorer.databackend.dataobjects.DataVisualisationI;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
@@ -330,6 +332,53 @@ public class TrackConnector {
     }
 
 
+    /**
+     * @return The coverage thread carrying out the analysis requests of this
+     *         track connector.
+     */
+    public CoverageThreadAnalyses getCoverageThreadAnalyses() {
+        return coverageThreadAnalyses;
+    }
+
+
+    /**
+     * @return The mapping thread carrying out the analysis requests of this
+     *         track connector.
+     */
+    public MappingThreadAnalyses getMappingThreadAnalyses() {
+        return mappingThreadAnalyses;
+    }
+
+
+    /**
+     * Looks up the number of aligned records of a chromosome in the bam
+     * indices of all tracks of this connector.
+     * <p>
+     * @param chromId id of the chromosome
+     * <p>
+     * @return The number of aligned records of the chromosome in all tracks
+     *         or -1, if it is unknown for at least one track.
+     */
+    public long getAlignedRecordCount( int chromId ) {
+        String chromName = refGenome.getChromosome( chromId ).getName();
+        SamBamReaderPool readerPool = SamBamReaderPool.getInstance();
+        long recordCount = 0;
+        for( PersistentTrack track : associatedTracks ) {
+            SamBamFileReader reader = readerPool.checkout( track, refGenome );
+            try {
+                long trackCount = reader.getAlignedRecordCount( chromName );
+                if( trackCount < 0 ) {
+                    return -1;
+                }
+                recordCount += trackCount;
+            } finally {
+                readerPool.release( reader );
+            }
+        }
+        return recordCount;
+    }
+
+
     public int getNumOfReadPairsCalculate() {
         return -1; //TODO implement read pair stats calculate
     }
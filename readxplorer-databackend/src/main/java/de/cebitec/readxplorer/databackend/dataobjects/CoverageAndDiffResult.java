@@ -38,6 +38,7 @@ public class CoverageAndDiffResult extends AnalysisResult {
     private CoverageManager readStarts; //TODO do the same for the other data structures as for the coverage
     private List<Difference> diffs;
     private List<ReferenceGap> gaps;
+    private transient Pileup pileup;
 
 
     /**
@@ -166,4 +167,21 @@ public class CoverageAndDiffResult extends AnalysisResult {
     }
 
 
+
+    /**
+     * @return The pileup of all diffs and gaps, if it was requested with
+     *         IntervalRequestData.Pileup, <code>null</code> otherwise.
+     */
+    public Pileup getPileup() {
+        return pileup;
+    }
+
+
+    /**
+     * @param pileup The pileup of all diffs and gaps of the request
+     */
+    public void setPileup( Pileup pileup ) {
+        this.pileup = pileup;
+    }
+
 }
@@ -21,6 +21,7 @@ package de.cebitec.readxplorer.databackend.dataobjects;
 import de.cebitec.readxplorer.api.Classification;
 import de.cebitec.readxplorer.api.enums.FeatureType;
 import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.api.enums.Strand;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -51,6 +52,16 @@ public class CoverageManager implements Serializable {
     private int highestCoverage;
 
     private Coverage totalCoverage;
+    private int totalCoverageMask;
+
+    /**
+     * Lazily created total coverage arrays of the included mapping classes,
+     * keyed by the included class mask and strand.
+     */
+    private transient Map<Integer, int[]> coverageViews;
+
+    /** Lazily created max tables of each classification: fwd, rev, both strands. */
+    private transient Map<Classification, CoverageMaxTable[]> maxTables;
 
 
     /**
@@ -118,6 +129,7 @@ public class CoverageManager implements Serializable {
         for( Map.Entry<Classification, Coverage> entry : coverageMap.entrySet() ) {
             entry.getValue().setLeftBound( leftBound );
         }
+        this.clearCoverageViews();
     }
 
 
@@ -130,6 +142,7 @@ public class CoverageManager implements Serializable {
         for( Map.Entry<Classification, Coverage> entry : coverageMap.entrySet() ) {
             entry.getValue().setRightBound( rightBound );
         }
+        this.clearCoverageViews();
     }
 
 
@@ -151,7 +164,8 @@ public class CoverageManager implements Serializable {
 
     /**
      * Increases the coverage of the respective positions of the given coverage
-     * array by one.
+     * array by one. The interval is clipped to the bounds of this coverage
+     * manager once, positions outside of the bounds are ignored.
      * In these arrays 0 is included.
      * <p>
      * @param refStart      the start pos of the current mapping, inclusive
@@ -160,13 +174,53 @@ public class CoverageManager implements Serializable {
      *                      updated for the given interval
      */
     public void increaseCoverage( int refStart, int refStop, int[] coverageArray ) {
-        int indexStart = getInternalPos( refStart );
-        int indexStop = getInternalPos( refStop );
-        for( int i = indexStart; i <= indexStop; i++ ) {
-            int currentRefPos = refStart + i - indexStart;
-            if( coversBounds( currentRefPos, currentRefPos ) ) {
-                ++coverageArray[i];
-            }
+        if( leftBound == 0 && rightBound == 0 ) {
+            return;
+        }
+        int indexStop = getInternalPos( Math.min( refStop, rightBound ) );
+        for( int i = getInternalPos( Math.max( refStart, leftBound ) ); i <= indexStop; i++ ) {
+            ++coverageArray[i];
+        }
+    }
+
+
+    /**
+     * Adds an interval to the given difference array of this coverage
+     * manager. Instead of increasing each position of the interval, only the
+     * first position is increased and the position after the interval is
+     * decreased. The interval is clipped to the bounds of this coverage
+     * manager. The coverage is obtained by adding the prefix sums of the
+     * difference array to a coverage array with
+     * {@link #addDifferences(int[], int[])}.
+     * <p>
+     * @param refStart  the start pos of the current mapping, inclusive
+     * @param refStop   the stop pos of the current mapping, inclusive
+     * @param diffArray the difference array, which must be one position
+     *                  longer than the interval of this coverage manager
+     */
+    public void addCoverageRange( int refStart, int refStop, int[] diffArray ) {
+        int clippedStart = Math.max( refStart, leftBound );
+        int clippedStop = Math.min( refStop, rightBound );
+        if( clippedStart <= clippedStop ) {
+            ++diffArray[getInternalPos( clippedStart )];
+            --diffArray[getInternalPos( clippedStop ) + 1];
+        }
+    }
+
+
+    /**
+     * Adds the prefix sums of the given difference array, which was filled
+     * with {@link #addCoverageRange(int, int, int[])}, to the given coverage
+     * array.
+     * <p>
+     * @param diffArray     the difference array
+     * @param coverageArray the coverage array to update
+     */
+    public void addDifferences( int[] diffArray, int[] coverageArray ) {
+        int value = 0;
+        for( int i = 0; i < coverageArray.length; ++i ) {
+            value += diffArray[i];
+            coverageArray[i] += value;
         }
     }
 
@@ -281,7 +335,9 @@ public class CoverageManager implements Serializable {
     /**
      * Calculates the total coverage of the WHOLE INTERVAL composed of the
      * different mapping classes and depending on the currently excluded
-     * classes. <br>
+     * classes. The arrays of the returned coverage are the shared views of
+     * {@link #getTotalCoverageView(int, Strand)} and must not be modified.
+     * <br>
      * As long as the data query by which this manager was created
      * contained the excludedClasses list, this method can also be used with an
      * empty list. Passing an empty list when some classifications were excluded
@@ -294,37 +350,213 @@ public class CoverageManager implements Serializable {
      * <p>
      * @return The total coverage of the WHOLE INTERVAL.
      */
-    public Coverage getTotalCoverage( List<Classification> excludedClasses ) {
-        if( totalCoverage == null ) {
+    public synchronized Coverage getTotalCoverage( List<Classification> excludedClasses ) {
+        int includedClassMask = getIncludedClassMask( excludedClasses );
+        if( totalCoverage == null || totalCoverageMask != includedClassMask ) {
             totalCoverage = new Coverage( leftBound, rightBound, FeatureType.ANY );
-            totalCoverage.incArraysToIntervalSize();
+            totalCoverage.setFwdCoverage( getTotalCoverageView( includedClassMask, Strand.Forward ) );
+            totalCoverage.setRevCoverage( getTotalCoverageView( includedClassMask, Strand.Reverse ) );
+            totalCoverageMask = includedClassMask;
+        }
+        return totalCoverage;
+    }
 
-            for( MappingClass mappingClass : MappingClass.values() ) {
-                if( !excludedClasses.contains( mappingClass ) ) {
-                    updateTotalCoverage( mappingClass );
+
+    /**
+     * @param excludedClasses The list of mapping classes currently excluded
+     * <p>
+     * @return The mask of all mapping classes, which are not excluded. The
+     *         bit of a mapping class is determined by its ordinal.
+     */
+    public static int getIncludedClassMask( List<Classification> excludedClasses ) {
+        int includedClassMask = 0;
+        for( MappingClass mappingClass : MappingClass.values() ) {
+            if( !excludedClasses.contains( mappingClass ) ) {
+                includedClassMask |= 1 << mappingClass.ordinal();
+            }
+        }
+        return includedClassMask;
+    }
+
+
+    /**
+     * Returns the total coverage of the WHOLE INTERVAL summed for all mapping
+     * classes, which are not excluded.
+     * <p>
+     * @param excludedClasses The list of mapping classes currently excluded
+     *                        from the calculation
+     * @param strand          {@link Strand#Forward}, {@link Strand#Reverse} or
+     *                        {@link Strand#Both} for the sum of both strands
+     * <p>
+     * @return The total coverage array of the interval. See
+     *         {@link #getTotalCoverageView(int, Strand)}.
+     */
+    public int[] getTotalCoverageView( List<Classification> excludedClasses, Strand strand ) {
+        return getTotalCoverageView( getIncludedClassMask( excludedClasses ), strand );
+    }
+
+
+    /**
+     * Returns the total coverage of the WHOLE INTERVAL summed for all mapping
+     * classes contained in the given mask. Each combination of mask and strand
+     * is only calculated once, the coverage must be complete at that time. If
+     * only one coverage array contributes to the combination, this array
+     * itself is returned. Thus, the returned array is shared and must not be
+     * modified. Index 0 corresponds to the left bound of this manager.
+     * <p>
+     * @param includedClassMask The mask of the included mapping classes, see
+     *                          {@link #getIncludedClassMask(List)}
+     * @param strand            {@link Strand#Forward}, {@link Strand#Reverse}
+     *                          or {@link Strand#Both} for the sum of both
+     *                          strands
+     * <p>
+     * @return The total coverage array of the interval
+     * <p>
+     * @throws IllegalArgumentException If another strand has been passed
+     */
+    public synchronized int[] getTotalCoverageView( int includedClassMask, Strand strand ) {
+        int strandIndex;
+        if( strand == Strand.Forward ) {
+            strandIndex = 0;
+        } else if( strand == Strand.Reverse ) {
+            strandIndex = 1;
+        } else if( strand == Strand.Both ) {
+            strandIndex = 2;
+        } else {
+            throw new IllegalArgumentException( "Coverage views are only available for the fwd, the rev or both strands: " + strand );
+        }
+        if( coverageViews == null ) {
+            coverageViews = new HashMap<>();
+        }
+        int key = includedClassMask * 3 + strandIndex;
+        int[] view = coverageViews.get( key );
+        if( view == null ) {
+            view = createCoverageView( includedClassMask, strandIndex );
+            coverageViews.put( key, view );
+        }
+        return view;
+    }
+
+
+    /**
+     * Sums the coverage arrays of the included mapping classes and strands.
+     * <p>
+     * @param includedClassMask The mask of the included mapping classes
+     * @param strandIndex       0 for the fwd strand, 1 for the rev strand and
+     *                          2 for both strands summed up
+     * <p>
+     * @return The summed coverage array of the interval
+     */
+    private int[] createCoverageView( int includedClassMask, int strandIndex ) {
+        int length = Math.max( 0, rightBound - leftBound + 1 );
+        List<int[]> arrays = new ArrayList<>();
+        for( MappingClass mappingClass : MappingClass.values() ) {
+            if( (includedClassMask & (1 << mappingClass.ordinal())) != 0 ) {
+                Coverage coverage = getCoverage( mappingClass );
+                if( strandIndex != 1 ) {
+                    arrays.add( coverage.getFwdCov() );
+                }
+                if( strandIndex != 0 ) {
+                    arrays.add( coverage.getRevCov() );
                 }
             }
         }
-        return totalCoverage;
+        if( arrays.size() == 1 && arrays.get( 0 ).length == length ) {
+            return arrays.get( 0 );
+        }
+
+        int[] view = new int[length];
+        for( int[] array : arrays ) {
+            int arrayLength = Math.min( length, array.length );
+            for( int i = 0; i < arrayLength; ++i ) {
+                view[i] += array[i];
+            }
+        }
+        return view;
+    }
+
+
+    /**
+     * Removes all coverage views, e.g. after the bounds have changed.
+     */
+    private synchronized void clearCoverageViews() {
+        coverageViews = null;
+        totalCoverage = null;
+    }
+
+
+    /**
+     * Calculates the maximum coverage of a classification in the given
+     * reference interval in constant time. The underlying max table of the
+     * classification and strand is created on the first call, so the coverage
+     * must be complete at that time.
+     * <p>
+     * @param classification The classification whose maximum is needed
+     * @param from           start of the interval in reference coordinates,
+     *                       inclusive
+     * @param to             end of the interval in reference coordinates,
+     *                       inclusive
+     * @param isFwdStrand    <code>true</code>, if the maximum of the fwd
+     *                       strand is needed, <code>false</code> otherwise
+     * <p>
+     * @return The maximum coverage in the interval, 0 for positions not
+     *         covered by this coverage manager.
+     * <p>
+     * @throws IllegalArgumentException If an unknown classification has been
+     *                                  passed
+     */
+    public int getMaxCoverage( Classification classification, int from, int to, boolean isFwdStrand ) {
+        return this.getMaxTable( classification, isFwdStrand ? 0 : 1 ).getMax( getInternalPos( from ), getInternalPos( to ) );
+    }
+
+
+    /**
+     * Calculates the maximum of the coverage of a classification summed for
+     * both strands in the given reference interval in constant time.
+     * <p>
+     * @param classification The classification whose maximum is needed
+     * @param from           start of the interval in reference coordinates,
+     *                       inclusive
+     * @param to             end of the interval in reference coordinates,
+     *                       inclusive
+     * <p>
+     * @return The maximum summed coverage in the interval, 0 for positions
+     *         not covered by this coverage manager.
+     * <p>
+     * @throws IllegalArgumentException If an unknown classification has been
+     *                                  passed
+     */
+    public int getMaxCombinedCoverage( Classification classification, int from, int to ) {
+        return this.getMaxTable( classification, 2 ).getMax( getInternalPos( from ), getInternalPos( to ) );
     }
 
 
     /**
-     * Adds the coverage of each position in the coverage array of the given
-     * mapping class to the totalCoverage object.
+     * @param classification The classification whose max table is needed
+     * @param strand         0 for the fwd strand, 1 for the rev strand and 2
+     *                       for both strands summed up
      * <p>
-     * @param mappingClass The mappings class whose data shall be added
+     * @return The max table of the given classification and strand, which is
+     *         created on demand.
      */
-    private void updateTotalCoverage( MappingClass mappingClass ) {
-        Coverage coverage = getCoverage( mappingClass );
-        int[] fwdCov = coverage.getFwdCov();
-        int[] revCov = coverage.getRevCov();
-        int[] fwdTotal = totalCoverage.getFwdCov();
-        int[] revTotal = totalCoverage.getRevCov();
-        for( int i = 0; i < fwdCov.length; ++i ) {
-            fwdTotal[i] += fwdCov[i];
-            revTotal[i] += revCov[i];
+    private synchronized CoverageMaxTable getMaxTable( Classification classification, int strand ) {
+        if( maxTables == null ) {
+            maxTables = new HashMap<>();
+        }
+        CoverageMaxTable[] tables = maxTables.get( classification );
+        if( tables == null ) {
+            tables = new CoverageMaxTable[3];
+            maxTables.put( classification, tables );
+        }
+        if( tables[strand] == null ) {
+            Coverage coverage = getCoverage( classification );
+            if( strand == 2 ) {
+                tables[strand] = CoverageMaxTable.createSumTable( coverage.getFwdCov(), coverage.getRevCov() );
+            } else {
+                tables[strand] = new CoverageMaxTable( coverage.getCoverage( strand == 0 ) );
+            }
         }
+        return tables[strand];
     }
 
 
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend.dataobjects;
+
+
+/**
+ * Answers maximum queries on a coverage array in constant time. The array is
+ * divided into blocks of 64 positions and a sparse table stores the maximum
+ * of each run of 2^k consecutive blocks. A query combines two overlapping
+ * entries of the sparse table for the complete blocks and scans the at most
+ * 126 positions of the partial blocks at both ends of the queried range.
+ * <p>
+ * The table keeps a reference to the coverage array and needs about a
+ * quarter of its memory for the block maxima. A table for the sum of two
+ * arrays references both and sums them position wise while it is created
+ * and queried, so no summed copy is stored. The table has to be created
+ * after the coverage is complete, later changes of the arrays are not
+ * reflected in the block maxima.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class CoverageMaxTable {
+
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private final int[] coverage;
+    private final int[] coverage2;
+    private final int length;
+    private final int[][] blockMax;
+
+
+    /**
+     * Answers maximum queries on a coverage array in constant time.
+     * <p>
+     * @param coverage the complete coverage array
+     */
+    public CoverageMaxTable( int[] coverage ) {
+        this( coverage, new int[0] );
+    }
+
+
+    /**
+     * Answers maximum queries on the position wise sum of two coverage arrays
+     * in constant time.
+     * <p>
+     * @param coverage  the first coverage array
+     * @param coverage2 the second coverage array, may be shorter than the
+     *                  first one
+     */
+    private CoverageMaxTable( int[] coverage, int[] coverage2 ) {
+        this.coverage = coverage;
+        this.coverage2 = coverage2;
+        this.length = coverage.length;
+
+        int nbBlocks = (length + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        int nbLevels = nbBlocks > 0 ? 32 - Integer.numberOfLeadingZeros( nbBlocks ) : 0;
+        blockMax = new int[nbLevels][];
+        if( nbLevels > 0 ) {
+            int[] blocks = new int[nbBlocks];
+            for( int block = 0; block < nbBlocks; ++block ) {
+                int from = block << BLOCK_SHIFT;
+                blocks[block] = this.scan( from, Math.min( length, from + BLOCK_SIZE ) - 1 );
+            }
+            blockMax[0] = blocks;
+        }
+        for( int level = 1; level < nbLevels; ++level ) {
+            int[] lower = blockMax[level - 1];
+            int halfSpan = 1 << (level - 1);
+            int[] blocks = new int[nbBlocks - (1 << level) + 1];
+            for( int b = 0; b < blocks.length; ++b ) {
+                blocks[b] = Math.max( lower[b], lower[b + halfSpan] );
+            }
+            blockMax[level] = blocks;
+        }
+    }
+
+
+    /**
+     * Creates a table for the position wise sum of two coverage arrays, e.g.
+     * of both strands.
+     * <p>
+     * @param coverage1 the first coverage array
+     * @param coverage2 the second coverage array of the same length
+     * <p>
+     * @return The table for the summed coverage
+     */
+    public static CoverageMaxTable createSumTable( int[] coverage1, int[] coverage2 ) {
+        return coverage1.length >= coverage2.length ? new CoverageMaxTable( coverage1, coverage2 )
+               : new CoverageMaxTable( coverage2, coverage1 );
+    }
+
+
+    /**
+     * @param from first index of the range, inclusive
+     * @param to   last index of the range, inclusive
+     * <p>
+     * @return The maximum coverage of the given range of array indices.
+     *         Indices outside of the array count as coverage 0.
+     */
+    public int getMax( int from, int to ) {
+        from = Math.max( 0, from );
+        to = Math.min( length - 1, to );
+        if( from > to ) {
+            return 0;
+        }
+
+        int fromBlock = from >> BLOCK_SHIFT;
+        int toBlock = to >> BLOCK_SHIFT;
+        if( toBlock - fromBlock <= 1 ) {
+            return this.scan( from, to );
+        }
+
+        int max = Math.max( this.scan( from, ((fromBlock + 1) << BLOCK_SHIFT) - 1 ),
+                            this.scan( toBlock << BLOCK_SHIFT, to ) );
+        int firstBlock = fromBlock + 1;
+        int lastBlock = toBlock - 1;
+        int level = 31 - Integer.numberOfLeadingZeros( lastBlock - firstBlock + 1 );
+        int[] blocks = blockMax[level];
+        max = Math.max( max, blocks[firstBlock] );
+        return Math.max( max, blocks[lastBlock - (1 << level) + 1] );
+    }
+
+
+    /**
+     * @return The length of the underlying coverage array, the length of the
+     *         longer array for a sum table.
+     */
+    public int getLength() {
+        return length;
+    }
+
+
+    private int scan( int from, int to ) {
+        int max = 0;
+        int sumTo = Math.min( to, coverage2.length - 1 );
+        int i = from;
+        for( ; i <= sumTo; ++i ) {
+            int value = coverage[i] + coverage2[i];
+            if( value > max ) {
+                max = value;
+            }
+        }
+        for( ; i <= to; ++i ) {
+            if( coverage[i] > max ) {
+                max = coverage[i];
+            }
+        }
+        return max;
+    }
+
+
+}
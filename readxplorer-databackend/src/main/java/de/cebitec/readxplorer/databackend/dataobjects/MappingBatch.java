@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend.dataobjects;
+
+
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import java.util.Arrays;
+
+
+/**
+ * Columnar batch of reduced mappings. Instead of one {@link Mapping} object
+ * per read, the start, stop, strand, mapping class and number of mappings of
+ * the read are stored in parallel primitive columns. Mapping i of the batch
+ * is described by the i-th entry of each column. Analyses only needing these
+ * properties iterate the batch by index without creating any objects per
+ * read.
+ * <p>
+ * Batches are reusable: {@link #clear()} resets the size, but keeps the
+ * allocated columns for the next request.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class MappingBatch {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] starts;
+    private int[] stops;
+    private byte[] strands;
+    private byte[] mappingClasses;
+    private int[] numMappingsForRead;
+    private int size;
+
+
+    /**
+     * Columnar batch of reduced mappings with a default initial capacity.
+     */
+    public MappingBatch() {
+        this( INITIAL_CAPACITY );
+    }
+
+
+    /**
+     * Columnar batch of reduced mappings.
+     * <p>
+     * @param capacity initial number of mappings fitting into the batch
+     */
+    public MappingBatch( int capacity ) {
+        capacity = Math.max( 1, capacity );
+        starts = new int[capacity];
+        stops = new int[capacity];
+        strands = new byte[capacity];
+        mappingClasses = new byte[capacity];
+        numMappingsForRead = new int[capacity];
+    }
+
+
+    /**
+     * Appends a mapping to the batch.
+     * <p>
+     * @param start              start of the mapping
+     * @param stop               stop of the mapping
+     * @param isFwdStrand        <code>true</code> if the mapping is located on
+     *                           the forward strand
+     * @param mappingClass       mapping class of the mapping
+     * @param numMappingsForRead number of mappings of the read, 0 if unknown
+     */
+    public void add( int start, int stop, boolean isFwdStrand, MappingClass mappingClass, int numMappingsForRead ) {
+        if( size == starts.length ) {
+            grow( size + 1 );
+        }
+        starts[size] = start;
+        stops[size] = stop;
+        strands[size] = (byte) (isFwdStrand ? 1 : 0);
+        mappingClasses[size] = (byte) mappingClass.getType();
+        this.numMappingsForRead[size] = numMappingsForRead;
+        ++size;
+    }
+
+
+    /**
+     * Appends all mappings of another batch to this batch.
+     * <p>
+     * @param batch the batch whose mappings shall be appended
+     */
+    public void addAll( MappingBatch batch ) {
+        int newSize = size + batch.size;
+        if( newSize > starts.length ) {
+            grow( newSize );
+        }
+        System.arraycopy( batch.starts, 0, starts, size, batch.size );
+        System.arraycopy( batch.stops, 0, stops, size, batch.size );
+        System.arraycopy( batch.strands, 0, strands, size, batch.size );
+        System.arraycopy( batch.mappingClasses, 0, mappingClasses, size, batch.size );
+        System.arraycopy( batch.numMappingsForRead, 0, numMappingsForRead, size, batch.size );
+        size = newSize;
+    }
+
+
+    /**
+     * Sorts the mappings of the batch by their start position. Mappings with
+     * equal start keep their order. Batches of a single track are already
+     * sorted and are not touched.
+     */
+    public void sortByStart() {
+        if( isSortedByStart() ) {
+            return;
+        }
+        long[] keys = new long[size];
+        for( int i = 0; i < size; ++i ) {
+            keys[i] = ((long) starts[i] << 32) | i;
+        }
+        Arrays.sort( keys );
+        int[] sortedStarts = new int[starts.length];
+        int[] sortedStops = new int[starts.length];
+        byte[] sortedStrands = new byte[starts.length];
+        byte[] sortedClasses = new byte[starts.length];
+        int[] sortedNumMappings = new int[starts.length];
+        for( int i = 0; i < size; ++i ) {
+            int index = (int) keys[i];
+            sortedStarts[i] = starts[index];
+            sortedStops[i] = stops[index];
+            sortedStrands[i] = strands[index];
+            sortedClasses[i] = mappingClasses[index];
+            sortedNumMappings[i] = numMappingsForRead[index];
+        }
+        starts = sortedStarts;
+        stops = sortedStops;
+        strands = sortedStrands;
+        mappingClasses = sortedClasses;
+        numMappingsForRead = sortedNumMappings;
+    }
+
+
+    /**
+     * @return <code>true</code> if the mappings are sorted by their start
+     *         position, <code>false</code> otherwise
+     */
+    public boolean isSortedByStart() {
+        for( int i = 1; i < size; ++i ) {
+            if( starts[i] < starts[i - 1] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Removes all mappings from the batch. The columns are kept for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+
+    /**
+     * @return The number of mappings in this batch.
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * @return The number of mappings fitting into the currently allocated
+     *         columns.
+     */
+    public int getCapacity() {
+        return starts.length;
+    }
+
+
+    /**
+     * @param index index of a mapping in the batch
+     * <p>
+     * @return The start position of the mapping
+     */
+    public int getStart( int index ) {
+        return starts[index];
+    }
+
+
+    /**
+     * @param index index of a mapping in the batch
+     * <p>
+     * @return The stop position of the mapping
+     */
+    public int getStop( int index ) {
+        return stops[index];
+    }
+
+
+    /**
+     * @param index index of a mapping in the batch
+     * <p>
+     * @return The length of the mapping on the reference
+     */
+    public int getLength( int index ) {
+        return stops[index] - starts[index] + 1;
+    }
+
+
+    /**
+     * @param index index of a mapping in the batch
+     * <p>
+     * @return <code>true</code> if the mapping is located on the forward
+     *         strand, <code>false</code> otherwise
+     */
+    public boolean isFwdStrand( int index ) {
+        return strands[index] != 0;
+    }
+
+
+    /**
+     * @param index index of a mapping in the batch
+     * <p>
+     * @return The mapping class of the mapping
+     */
+    public MappingClass getMappingClass( int index ) {
+        return MappingClass.getFeatureType( mappingClasses[index] );
+    }
+
+
+    /**
+     * @param index index of a mapping in the batch
+     * <p>
+     * @return The number of mappings of the read of the mapping, 0 if unknown
+     */
+    public int getNumMappingsForRead( int index ) {
+        return numMappingsForRead[index];
+    }
+
+
+    /**
+     * Enlarges all columns to hold at least the given number of mappings.
+     * <p>
+     * @param minCapacity number of mappings which have to fit into the batch
+     */
+    private void grow( int minCapacity ) {
+        int capacity = Math.max( minCapacity, starts.length + (starts.length >> 1) );
+        starts = Arrays.copyOf( starts, capacity );
+        stops = Arrays.copyOf( stops, capacity );
+        strands = Arrays.copyOf( strands, capacity );
+        mappingClasses = Arrays.copyOf( mappingClasses, capacity );
+        numMappingsForRead = Arrays.copyOf( numMappingsForRead, capacity );
+    }
+
+
+}
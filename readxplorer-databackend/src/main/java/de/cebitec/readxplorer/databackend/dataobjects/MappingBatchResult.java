@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend.dataobjects;
+
+
+import de.cebitec.readxplorer.databackend.IntervalRequest;
+
+
+/**
+ * Result of a reduced mappings request carrying the mappings as a columnar
+ * {@link MappingBatch}. The batch belongs to a pool and is reused for later
+ * requests, as soon as the result has been delivered to all observers. Thus,
+ * observers must not keep a reference to the batch.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class MappingBatchResult extends AnalysisResult {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient MappingBatch batch;
+
+
+    /**
+     * Result of a reduced mappings request carrying the mappings as a
+     * columnar batch.
+     * <p>
+     * @param batch   the mappings of the request sorted by start position
+     * @param request the request for which the result was generated
+     */
+    public MappingBatchResult( MappingBatch batch, IntervalRequest request ) {
+        super( request );
+        this.batch = batch;
+    }
+
+
+    /**
+     * @return The mappings of the request sorted by start position. Only valid
+     *         during the delivery of this result.
+     */
+    public MappingBatch getBatch() {
+        return batch;
+    }
+
+
+}
@@ -112,11 +112,34 @@ public class PersistentReference implements Observable {
     public PersistentReference( int id, int activeChromId, String name, String description, Timestamp timestamp,
                                 File fastaFile,
                                 boolean checkFile ) {
+        this( id, activeChromId, name, description, timestamp, fastaFile,
+              ProjectConnector.getInstance().getRefGenomeConnector( id ).getChromosomesForGenome(), checkFile );
+    }
+
+
+    /**
+     * Data holder for a reference genome whose chromosomes are already known,
+     * e.g. because it is not stored in the project database.
+     * <p>
+     * @param id            The database id of the reference.
+     * @param activeChromId id of the currently active chromosome (>= 0)
+     * @param name          The name of the reference.
+     * @param description   The additional description of the reference.
+     * @param timestamp     The insertion timestamp of the reference.
+     * @param fastaFile     Fasta file containing the reference sequences
+     * @param chromosomes   The map of chromosome ids to chromosomes of the
+     *                      reference
+     * @param checkFile     true, if the reference file shall be checked for
+     *                      validitiy, false otherwise
+     */
+    public PersistentReference( int id, int activeChromId, String name, String description, Timestamp timestamp,
+                                File fastaFile, Map<Integer, PersistentChromosome> chromosomes,
+                                boolean checkFile ) {
         this.id = id;
         this.name = name;
         this.description = description;
         this.fastaFile = fastaFile;
-        chromosomes = ProjectConnector.getInstance().getRefGenomeConnector( id ).getChromosomesForGenome();
+        this.chromosomes = chromosomes;
         noChromosomes = chromosomes.size();
         this.timestamp = timestamp;
         observers = new ArrayList<>( 10 );
@@ -212,11 +235,28 @@ public class PersistentReference implements Observable {
      *         chromosome id.
      */
     public String getChromSequence( int chromId, int start, int stop ) {
-        String refSubSeq = new String( seqFile.getSubsequenceAt( chromosomes.get( chromId ).getName(), start, stop ).getBases(), Charset.forName( "UTF-8" ) );
+        String refSubSeq = new String( this.getChromBases( chromId, start, stop ), Charset.forName( "UTF-8" ) );
         return refSubSeq.toUpperCase();
     }
 
 
+    /**
+     * Fetches a part of the chromosome sequence without creating a String.
+     * The fasta file is shared by all threads querying this reference, so the
+     * access is synchronized.
+     * <p>
+     * @param chromId the chromosome id of interest
+     * @param start   Start position of the desired sequence
+     * @param stop    Stop position of the desired sequence
+     * <p>
+     * @return The wanted part of the chromosome sequence for the given
+     *         chromosome id as it is stored in the fasta file.
+     */
+    public synchronized byte[] getChromBases( int chromId, int start, int stop ) {
+        return seqFile.getSubsequenceAt( chromosomes.get( chromId ).getName(), start, stop ).getBases();
+    }
+
+
     /**
      * @param start Start position of the desired sequence
      * @param stop  Stop position of the desired sequence
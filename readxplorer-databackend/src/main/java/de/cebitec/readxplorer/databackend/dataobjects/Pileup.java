@@ -0,0 +1,441 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend.dataobjects;
+
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+
+/**
+ * Columnar pileup of all diffs and insertions of an interval. Instead of a
+ * Difference or ReferenceGap object for each deviating base, the count, the
+ * base quality sum and the mapping quality sum of each base are stored in flat
+ * int planes indexed by <code>(position - from) * NO_BASES + base</code>.
+ * Insertions are stored in the same way for each pair of position and gap
+ * order.
+ * <p>
+ * Only bases with a base quality larger than the minimum base quality or an
+ * unknown base quality (-1) are added to the pileup. All bases are counted in
+ * the orientation of the reference.
+ * <p>
+ * Pileups are recycled: Obtain a pileup with {@link #obtain(int, int, int)}
+ * and hand it back with {@link #release()} as soon as it is not needed
+ * anymore. A pileup is not thread safe.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class Pileup {
+
+    public static final int BASE_A = 0;
+    public static final int BASE_C = 1;
+    public static final int BASE_G = 2;
+    public static final int BASE_T = 3;
+    public static final int BASE_N = 4;
+    public static final int BASE_GAP = 5;
+    /**
+     * 6 = Number of supported bases: A,C,G,T,N,_.
+     */
+    public static final int NO_BASES = 6;
+
+    private static final int MAX_POOLED_PILEUPS = 16;
+    private static final BlockingQueue<Pileup> POOL = new ArrayBlockingQueue<>( MAX_POOLED_PILEUPS );
+
+    private int from;
+    private int to;
+    private int minBaseQuality;
+    private boolean hasBaseQualities;
+    private boolean hasMappingQualities;
+
+    private int[] counts = new int[0];
+    private int[] baseQualSums = new int[0];
+    private int[] mapQualSums = new int[0];
+
+    private int nbInsertions;
+    private int[] insPositions = new int[16];
+    private int[] insOrders = new int[16];
+    private int[] insCounts = new int[16 * NO_BASES];
+    private int[] insBaseQualSums = new int[16 * NO_BASES];
+    private int[] insMapQualSums = new int[16 * NO_BASES];
+    /** Open addressing hash table from position and gap order to insertion
+     * index + 1. 0 marks an empty slot. */
+    private int[] insTable = new int[32];
+
+
+    private Pileup() {
+    }
+
+
+    /**
+     * Obtains an empty pileup for the given interval. A recycled pileup is
+     * used, if available.
+     * <p>
+     * @param from           first position of the pileup
+     * @param to             last position of the pileup
+     * @param minBaseQuality bases with a base quality &lt;= this value are
+     *                       not added to the pileup, unless their base quality
+     *                       is unknown (-1)
+     * <p>
+     * @return An empty pileup for the interval
+     */
+    public static Pileup obtain( int from, int to, int minBaseQuality ) {
+        Pileup pileup = POOL.poll();
+        if( pileup == null ) {
+            pileup = new Pileup();
+        }
+        pileup.reset( from, to, minBaseQuality );
+        return pileup;
+    }
+
+
+    /**
+     * Hands this pileup back for recycling. It must not be used afterwards.
+     */
+    public void release() {
+        POOL.offer( this );
+    }
+
+
+    /**
+     * Clears the pileup and adapts it to the given interval. The planes are
+     * only reallocated, if they are too small.
+     */
+    private void reset( int from, int to, int minBaseQuality ) {
+        this.from = from;
+        this.to = to;
+        this.minBaseQuality = minBaseQuality;
+        this.hasBaseQualities = true;
+        this.hasMappingQualities = true;
+
+        int size = Math.max( 0, to - from + 1 ) * NO_BASES;
+        if( counts.length < size ) {
+            counts = new int[size];
+            baseQualSums = new int[size];
+            mapQualSums = new int[size];
+        } else {
+            Arrays.fill( counts, 0, size, 0 );
+            Arrays.fill( baseQualSums, 0, size, 0 );
+            Arrays.fill( mapQualSums, 0, size, 0 );
+        }
+        Arrays.fill( insCounts, 0, nbInsertions * NO_BASES, 0 );
+        Arrays.fill( insBaseQualSums, 0, nbInsertions * NO_BASES, 0 );
+        Arrays.fill( insMapQualSums, 0, nbInsertions * NO_BASES, 0 );
+        Arrays.fill( insTable, 0 );
+        nbInsertions = 0;
+    }
+
+
+    /**
+     * Adds a base of a read deviating from the reference or a deletion in the
+     * read to the pileup. Bases outside of the pileup interval or with a too
+     * low base quality are ignored.
+     * <p>
+     * @param position       reference position of the base
+     * @param base           the base in reference orientation or '-' for a
+     *                       deletion
+     * @param baseQuality    the base quality or -1, if it is unknown
+     * @param mappingQuality the mapping quality of the read
+     */
+    public void addDiff( int position, char base, int baseQuality, int mappingQuality ) {
+        if( position >= from && position <= to && isIncludedQuality( baseQuality ) ) {
+            int idx = (position - from) * NO_BASES + getBaseIndex( base );
+            ++counts[idx];
+            if( baseQuality > -1 ) {
+                baseQualSums[idx] += baseQuality;
+            } else {
+                hasBaseQualities = false;
+            }
+            mapQualSums[idx] += mappingQuality;
+        }
+    }
+
+
+    /**
+     * Adds a base inserted into the read to the pileup. Bases outside of the
+     * pileup interval or with a too low base quality are ignored.
+     * <p>
+     * @param position       reference position after which the base is
+     *                       inserted
+     * @param order          gap order of the base, 0 for the first base
+     *                       inserted at the position, 1 for the second...
+     * @param base           the base in reference orientation
+     * @param baseQuality    the base quality or -1, if it is unknown
+     * @param mappingQuality the mapping quality of the read or -1, if it is
+     *                       unknown
+     */
+    public void addInsertion( int position, int order, char base, int baseQuality, int mappingQuality ) {
+        if( position >= from && position <= to && isIncludedQuality( baseQuality ) ) {
+            int idx = this.getInsertionIndex( position, order ) * NO_BASES + getBaseIndex( base );
+            ++insCounts[idx];
+            if( baseQuality > -1 ) {
+                insBaseQualSums[idx] += baseQuality;
+            } else {
+                hasBaseQualities = false;
+            }
+            if( mappingQuality != -1 ) {
+                insMapQualSums[idx] += mappingQuality;
+            }
+            if( mappingQuality == -1 || mappingQuality == 0 ) {
+                hasMappingQualities = false;
+            }
+        }
+    }
+
+
+    private boolean isIncludedQuality( int baseQuality ) {
+        return baseQuality > minBaseQuality || baseQuality == -1;
+    }
+
+
+    /**
+     * @return The index of the insertion at the given position and gap order.
+     *         It is created, if it does not exist yet.
+     */
+    private int getInsertionIndex( int position, int order ) {
+        int mask = insTable.length - 1;
+        int slot = (position * 31 + order) * 0x9E3779B9 >>> 7 & mask;
+        while( insTable[slot] != 0 ) {
+            int ins = insTable[slot] - 1;
+            if( insPositions[ins] == position && insOrders[ins] == order ) {
+                return ins;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if( nbInsertions == insPositions.length ) {
+            int capacity = nbInsertions * 2;
+            insPositions = Arrays.copyOf( insPositions, capacity );
+            insOrders = Arrays.copyOf( insOrders, capacity );
+            insCounts = Arrays.copyOf( insCounts, capacity * NO_BASES );
+            insBaseQualSums = Arrays.copyOf( insBaseQualSums, capacity * NO_BASES );
+            insMapQualSums = Arrays.copyOf( insMapQualSums, capacity * NO_BASES );
+        }
+        int ins = nbInsertions++;
+        insPositions[ins] = position;
+        insOrders[ins] = order;
+        insTable[slot] = ins + 1;
+        if( nbInsertions * 2 > insTable.length ) {
+            this.rehashInsertions();
+        }
+        return ins;
+    }
+
+
+    /**
+     * Doubles the size of the insertion hash table.
+     */
+    private void rehashInsertions() {
+        insTable = new int[insTable.length * 2];
+        int mask = insTable.length - 1;
+        for( int ins = 0; ins < nbInsertions; ++ins ) {
+            int slot = (insPositions[ins] * 31 + insOrders[ins]) * 0x9E3779B9 >>> 7 & mask;
+            while( insTable[slot] != 0 ) {
+                slot = (slot + 1) & mask;
+            }
+            insTable[slot] = ins + 1;
+        }
+    }
+
+
+    /**
+     * @return The first position of the pileup
+     */
+    public int getFrom() {
+        return from;
+    }
+
+
+    /**
+     * @return The last position of the pileup
+     */
+    public int getTo() {
+        return to;
+    }
+
+
+    /**
+     * @return <code>true</code> if all added bases have base qualities,
+     *         <code>false</code> if at least one base does not have a base
+     *         quality
+     */
+    public boolean hasBaseQualities() {
+        return hasBaseQualities;
+    }
+
+
+    /**
+     * @return <code>true</code> if all added insertions have mapping
+     *         qualities, <code>false</code> otherwise
+     */
+    public boolean hasMappingQualities() {
+        return hasMappingQualities;
+    }
+
+
+    /**
+     * @param position reference position
+     * @param base     base index, e.g. {@link #BASE_A}
+     * <p>
+     * @return The number of diffs of the given base at the position
+     */
+    public int getCount( int position, int base ) {
+        return counts[(position - from) * NO_BASES + base];
+    }
+
+
+    /**
+     * @param position reference position
+     * @param base     base index, e.g. {@link #BASE_A}
+     * <p>
+     * @return The sum of the base qualities of the diffs of the given base at
+     *         the position
+     */
+    public int getBaseQualSum( int position, int base ) {
+        return baseQualSums[(position - from) * NO_BASES + base];
+    }
+
+
+    /**
+     * @param position reference position
+     * @param base     base index, e.g. {@link #BASE_A}
+     * <p>
+     * @return The sum of the mapping qualities of the diffs of the given base
+     *         at the position
+     */
+    public int getMapQualSum( int position, int base ) {
+        return mapQualSums[(position - from) * NO_BASES + base];
+    }
+
+
+    /**
+     * @return The number of different pairs of position and gap order with
+     *         insertions
+     */
+    public int getNbInsertions() {
+        return nbInsertions;
+    }
+
+
+    /**
+     * @return The indices of all insertions sorted by position and gap order
+     */
+    public int[] getSortedInsertions() {
+        Integer[] insertions = new Integer[nbInsertions];
+        for( int ins = 0; ins < nbInsertions; ++ins ) {
+            insertions[ins] = ins;
+        }
+        Arrays.sort( insertions, Comparator.comparingInt( (Integer ins) -> insPositions[ins] ).thenComparingInt( ins -> insOrders[ins] ) );
+        int[] sortedInsertions = new int[nbInsertions];
+        for( int i = 0; i < nbInsertions; ++i ) {
+            sortedInsertions[i] = insertions[i];
+        }
+        return sortedInsertions;
+    }
+
+
+    /**
+     * @param insertion index of an insertion
+     * <p>
+     * @return The reference position of the insertion
+     */
+    public int getInsertionPosition( int insertion ) {
+        return insPositions[insertion];
+    }
+
+
+    /**
+     * @param insertion index of an insertion
+     * <p>
+     * @return The gap order of the insertion
+     */
+    public int getInsertionOrder( int insertion ) {
+        return insOrders[insertion];
+    }
+
+
+    /**
+     * @param insertion index of an insertion
+     * @param base      base index, e.g. {@link #BASE_A}
+     * <p>
+     * @return The number of inserted bases of the given type
+     */
+    public int getInsertionCount( int insertion, int base ) {
+        return insCounts[insertion * NO_BASES + base];
+    }
+
+
+    /**
+     * @param insertion index of an insertion
+     * @param base      base index, e.g. {@link #BASE_A}
+     * <p>
+     * @return The sum of the base qualities of the inserted bases of the
+     *         given type
+     */
+    public int getInsertionBaseQualSum( int insertion, int base ) {
+        return insBaseQualSums[insertion * NO_BASES + base];
+    }
+
+
+    /**
+     * @param insertion index of an insertion
+     * @param base      base index, e.g. {@link #BASE_A}
+     * <p>
+     * @return The sum of the mapping qualities of the inserted bases of the
+     *         given type
+     */
+    public int getInsertionMapQualSum( int insertion, int base ) {
+        return insMapQualSums[insertion * NO_BASES + base];
+    }
+
+
+    /**
+     * @param base the base whose index is needed
+     * <p>
+     * @return The base index of the given base, unknown characters are
+     *         counted as A
+     */
+    public static int getBaseIndex( char base ) {
+
+        int baseIdx;
+        switch( base ) {
+            case 'C':
+                baseIdx = BASE_C;
+                break;
+            case 'G':
+                baseIdx = BASE_G;
+                break;
+            case 'T':
+                baseIdx = BASE_T;
+                break;
+            case 'N':
+                baseIdx = BASE_N;
+                break;
+            case '-':
+                baseIdx = BASE_GAP;
+                break;
+            default:
+                baseIdx = BASE_A;
+        }
+
+        return baseIdx;
+    }
+
+
+}
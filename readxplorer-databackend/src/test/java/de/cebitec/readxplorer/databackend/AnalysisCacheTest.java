@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import de.cebitec.readxplorer.api.Classification;
+import de.cebitec.readxplorer.api.enums.FeatureType;
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.api.enums.Strand;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the {@link AnalysisCache}.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class AnalysisCacheTest {
+
+    private File cacheDir;
+    private File mappingFile;
+
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = Files.createTempDirectory( "analysisCacheTest" ).toFile();
+        mappingFile = new File( cacheDir, "track.bam" );
+        writeMappingFile( "mapping file content" );
+    }
+
+
+    @After
+    public void tearDown() {
+        for( File file : cacheDir.listFiles() ) {
+            file.delete();
+        }
+        cacheDir.delete();
+    }
+
+
+    /**
+     * Test of store method, of class AnalysisCache. Stored aggregates are
+     * loaded for the same track and read class parameters.
+     */
+    @Test
+    public void testStore() throws IOException {
+        System.out.println( "store" );
+        List<Classification> excluded = Arrays.asList( MappingClass.COMMON_MATCH, FeatureType.MULTIPLE_MAPPED_READ );
+        AnalysisCache cache = new AnalysisCache( cacheDir, 1, mappingFile, new ParametersReadClasses( excluded, (byte) 10 ) );
+        assertNull( cache.getInts( "starts" ) );
+        cache.putInts( "starts", new int[]{ 1, 2, 3 } );
+        cache.putInts( "starts", 2, new int[]{ 4, 5 } );
+        cache.putLongs( "bases", new long[]{ Long.MAX_VALUE, 0 } );
+        cache.store();
+
+        List<Classification> reordered = Arrays.asList( FeatureType.MULTIPLE_MAPPED_READ, MappingClass.COMMON_MATCH );
+        AnalysisCache loaded = new AnalysisCache( cacheDir, 1, mappingFile, new ParametersReadClasses( reordered, (byte) 10 ) );
+        assertArrayEquals( new int[]{ 1, 2, 3 }, loaded.getInts( "starts" ) );
+        assertArrayEquals( new int[]{ 4, 5 }, loaded.getInts( "starts", 2 ) );
+        assertArrayEquals( new long[]{ Long.MAX_VALUE, 0 }, loaded.getLongs( "bases" ) );
+        assertNull( loaded.getInts( "starts", 1 ) );
+        assertNull( loaded.getInts( "bases" ) );
+    }
+
+
+    /**
+     * Test of the cache key, of class AnalysisCache. Other read class
+     * parameters, another track or a changed mapping file lead to an empty
+     * cache.
+     */
+    @Test
+    public void testKey() throws IOException {
+        System.out.println( "key" );
+        ParametersReadClasses readClassParams = new ParametersReadClasses();
+        AnalysisCache cache = new AnalysisCache( cacheDir, 1, mappingFile, readClassParams );
+        cache.putInts( "starts", new int[]{ 1 } );
+        cache.store();
+
+        assertTrue( new AnalysisCache( cacheDir, 1, mappingFile, readClassParams ).contains( "starts" ) );
+        assertFalse( new AnalysisCache( cacheDir, 2, mappingFile, readClassParams ).contains( "starts" ) );
+        ParametersReadClasses otherStrand = new ParametersReadClasses( readClassParams.getExcludedClasses(), (byte) 0, Strand.Opposite );
+        assertFalse( new AnalysisCache( cacheDir, 1, mappingFile, otherStrand ).contains( "starts" ) );
+
+        writeMappingFile( "changed mapping file content" );
+        assertFalse( new AnalysisCache( cacheDir, 1, mappingFile, readClassParams ).contains( "starts" ) );
+    }
+
+
+    /**
+     * Test of loading a corrupt cache file, of class AnalysisCache.
+     */
+    @Test
+    public void testCorruptCache() throws IOException {
+        System.out.println( "corruptCache" );
+        AnalysisCache cache = new AnalysisCache( cacheDir, 1, mappingFile, new ParametersReadClasses() );
+        cache.putInts( "starts", new int[]{ 1 } );
+        cache.store();
+        for( File file : cacheDir.listFiles() ) {
+            if( file.getName().endsWith( AnalysisCache.CACHE_FILE_EXTENSION ) ) {
+                Files.write( file.toPath(), new byte[]{ 1, 2, 3 } );
+            }
+        }
+        AnalysisCache loaded = new AnalysisCache( cacheDir, 1, mappingFile, new ParametersReadClasses() );
+        assertFalse( loaded.contains( "starts" ) );
+        assertEquals( 2, cacheDir.listFiles().length );
+    }
+
+
+    private void writeMappingFile( String content ) throws IOException {
+        try( FileWriter writer = new FileWriter( mappingFile ) ) {
+            writer.write( content );
+        }
+    }
+
+
+}
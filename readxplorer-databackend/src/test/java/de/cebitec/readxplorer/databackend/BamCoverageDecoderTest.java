@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import de.cebitec.readxplorer.api.Classification;
+import de.cebitec.readxplorer.api.enums.FeatureType;
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.api.enums.SAMRecordTag;
+import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
+import de.cebitec.readxplorer.utils.SamAlignmentBlock;
+import de.cebitec.readxplorer.utils.SamUtils;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the {@link BamCoverageDecoder}. The coverage of a generated bam file
+ * is compared to the coverage calculated from the SAMRecords of the file.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class BamCoverageDecoderTest {
+
+    private static final int CHROM_LENGTH = 20000;
+    private static final String[] CIGARS = { "50M", "20M5D30M", "10S40M", "20M100N30M", "15M3I32M", "5H45M", "12=1X37=", "30M2N20M" };
+
+    private static File bamFile;
+    private static List<SAMRecord> records;
+
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        bamFile = File.createTempFile( "coverageDecoderTest", ".bam" );
+        SAMFileHeader header = new SAMFileHeader();
+        header.addSequence( new SAMSequenceRecord( "chrom1", CHROM_LENGTH ) );
+        header.addSequence( new SAMSequenceRecord( "chrom2", CHROM_LENGTH ) );
+        header.setSortOrder( SAMFileHeader.SortOrder.coordinate );
+
+        Random random = new Random( 42 );
+        records = new ArrayList<>();
+        for( int refIndex = 0; refIndex < 2; ++refIndex ) {
+            for( int i = 0; i < 5000; ++i ) {
+                SAMRecord record = new SAMRecord( header );
+                record.setReadName( "read" + refIndex + "_" + i );
+                record.setReferenceIndex( refIndex );
+                record.setAlignmentStart( 1 + random.nextInt( CHROM_LENGTH - 300 ) );
+                record.setCigarString( CIGARS[random.nextInt( CIGARS.length )] );
+                int readLength = record.getCigar().getReadLength();
+                char[] bases = new char[readLength];
+                Arrays.fill( bases, 'A' );
+                record.setReadString( new String( bases ) );
+                record.setBaseQualities( new byte[readLength] );
+                record.setReadNegativeStrandFlag( random.nextBoolean() );
+                record.setReadUnmappedFlag( random.nextInt( 50 ) == 0 );
+                record.setMappingQuality( random.nextInt( 10 ) == 0 ? 255 : random.nextInt( 60 ) );
+                record.setAttribute( SAMRecordTag.ReadClass.toString(), 1 + random.nextInt( 5 ) );
+                record.setAttribute( SAMRecordTag.MapCount.toString(), random.nextInt( 3 ) == 0 ? 300 : 1 );
+                record.setAttribute( "XZ", "some text tag" );
+                records.add( record );
+            }
+        }
+
+        SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex( true ).makeBAMWriter( header, false, bamFile );
+        for( SAMRecord record : records ) {
+            writer.addAlignment( record );
+        }
+        writer.close();
+    }
+
+
+    @AfterClass
+    public static void tearDownClass() {
+        bamFile.delete();
+        new File( bamFile.getAbsolutePath().replace( ".bam", ".bai" ) ).delete();
+    }
+
+
+    /**
+     * Test of decodeCoverage method, of class BamCoverageDecoder.
+     */
+    @Test
+    public void testDecodeCoverage() throws IOException {
+        System.out.println( "decodeCoverage" );
+        List<Classification> excludedClasses = new ArrayList<>();
+        excludedClasses.add( MappingClass.COMMON_MATCH );
+        excludedClasses.add( FeatureType.MULTIPLE_MAPPED_READ );
+        ParametersReadClasses readClassParams = new ParametersReadClasses( excludedClasses, (byte) 10 );
+
+        try( SamReader reader = SamReaderFactory.makeDefault().open( bamFile );
+             BamCoverageDecoder decoder = new BamCoverageDecoder( bamFile, reader.indexing().getIndex() ) ) {
+            //the same decoder is reused for several requests
+            checkInterval( decoder, 1, 1000, 5000, readClassParams );
+            checkInterval( decoder, 1, 1, 200, new ParametersReadClasses() );
+            checkInterval( decoder, 0, 12000, 19999, readClassParams );
+            checkInterval( decoder, 0, 4000, 4100, new ParametersReadClasses() );
+        }
+    }
+
+
+    private void checkInterval( BamCoverageDecoder decoder, int refIndex, int from, int to, ParametersReadClasses readClassParams ) throws IOException {
+        CoverageManager coverage = new CoverageManager( from, to );
+        CoverageManager readStarts = new CoverageManager( from, to );
+        coverage.incArraysToIntervalSize();
+        readStarts.incArraysToIntervalSize();
+        assertTrue( decoder.decodeCoverage( refIndex, from, to, readClassParams, coverage, readStarts ) );
+
+        CoverageManager expCoverage = new CoverageManager( from, to );
+        CoverageManager expReadStarts = new CoverageManager( from, to );
+        expCoverage.incArraysToIntervalSize();
+        expReadStarts.incArraysToIntervalSize();
+        SamUtils samUtils = new SamUtils();
+        for( SAMRecord record : records ) {
+            if( record.getReferenceIndex() != refIndex || record.getReadUnmappedFlag() ||
+                record.getAlignmentStart() > to || record.getAlignmentEnd() < from ) {
+                continue;
+            }
+            MappingClass mappingClass = MappingClass.getFeatureType( (Integer) record.getAttribute( SAMRecordTag.ReadClass.toString() ) );
+            int mapCount = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
+            int mapQual = record.getMappingQuality();
+            if( (readClassParams.isClassificationAllowed( FeatureType.MULTIPLE_MAPPED_READ ) || mapCount == 1) &&
+                (mapQual == 0 || mapQual >= readClassParams.getMinMappingQual()) &&
+                readClassParams.isClassificationAllowed( mappingClass ) ) {
+
+                boolean isFwdStrand = !record.getReadNegativeStrandFlag();
+                for( SamAlignmentBlock block : samUtils.getAlignmentBlocks( record.getCigar(), record.getAlignmentStart() ) ) {
+                    expCoverage.increaseCoverage( block.getRefStart(), block.getRefStop(), expCoverage.getCoverage( mappingClass ).getCoverage( isFwdStrand ) );
+                }
+                int startPos = isFwdStrand ? record.getAlignmentStart() : record.getAlignmentEnd();
+                expReadStarts.increaseCoverage( startPos, startPos, expReadStarts.getCoverage( mappingClass ).getCoverage( isFwdStrand ) );
+            }
+        }
+
+        for( MappingClass mappingClass : MappingClass.values() ) {
+            assertArrayEquals( expCoverage.getCoverage( mappingClass ).getFwdCov(), coverage.getCoverage( mappingClass ).getFwdCov() );
+            assertArrayEquals( expCoverage.getCoverage( mappingClass ).getRevCov(), coverage.getCoverage( mappingClass ).getRevCov() );
+            assertArrayEquals( expReadStarts.getCoverage( mappingClass ).getFwdCov(), readStarts.getCoverage( mappingClass ).getFwdCov() );
+            assertArrayEquals( expReadStarts.getCoverage( mappingClass ).getRevCov(), readStarts.getCoverage( mappingClass ).getRevCov() );
+        }
+    }
+
+
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
+import de.cebitec.readxplorer.parser.ReferenceJob;
+import de.cebitec.readxplorer.parser.TrackJob;
+import de.cebitec.readxplorer.parser.mappings.SamBamParser;
+import de.cebitec.readxplorer.parser.mappings.SamBamStatsParser;
+import de.cebitec.readxplorer.parser.output.CoverageIndexWriter;
+import de.cebitec.readxplorer.utils.SamAlignmentBlock;
+import de.cebitec.readxplorer.utils.SamUtils;
+import de.cebitec.readxplorer.utils.StatsContainer;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.TextCigarCodec;
+import htsjdk.samtools.reference.FastaSequenceIndexCreator;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+
+/**
+ * Test of the {@link CoverageIndex} and the {@link CoverageIndexWriter}. The
+ * coverage read from a written index is compared to the coverage calculated
+ * directly from the mappings.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class CoverageIndexTest {
+
+    private static final int CHROM_LENGTH = 100000;
+    private static final String[] CIGARS = { "50M", "20M5D30M", "10S40M", "20M100N30M", "15M3I32M", "30M40000N20M" };
+
+    private static File mappingFile;
+    private static CoverageManager expCoverage;
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        mappingFile = File.createTempFile( "coverageIndexTest", ".bam" );
+        expCoverage = new CoverageManager( 1, CHROM_LENGTH );
+        expCoverage.incArraysToIntervalSize();
+
+        Random random = new Random( 42 );
+        SamUtils samUtils = new SamUtils();
+        List<Integer> starts = new ArrayList<>();
+        for( int i = 0; i < 20000; ++i ) {
+            starts.add( 1 + random.nextInt( CHROM_LENGTH - 50000 ) );
+        }
+        starts.sort( null );
+
+        try( CoverageIndexWriter writer = new CoverageIndexWriter( mappingFile ) ) {
+            for( int start : starts ) {
+                MappingClass mappingClass = MappingClass.values()[random.nextInt( MappingClass.values().length )];
+                boolean isFwdStrand = random.nextBoolean();
+                List<SamAlignmentBlock> blocks = samUtils.getAlignmentBlocks(
+                        TextCigarCodec.decode( CIGARS[random.nextInt( CIGARS.length )] ), start );
+                writer.addMapping( "chrom1", mappingClass, isFwdStrand, blocks );
+                for( SamAlignmentBlock block : blocks ) {
+                    expCoverage.increaseCoverage( block.getRefStart(), block.getRefStop(),
+                                                  expCoverage.getCoverage( mappingClass ).getCoverage( isFwdStrand ) );
+                }
+            }
+        }
+    }
+
+
+    @AfterClass
+    public static void tearDownClass() {
+        mappingFile.delete();
+        CoverageIndexWriter.getIndexFile( mappingFile ).delete();
+    }
+
+
+    /**
+     * Test of addCoverage method at base resolution, of class CoverageIndex.
+     */
+    @Test
+    public void testAddCoverage() throws IOException {
+        System.out.println( "addCoverage" );
+        try( CoverageIndex index = CoverageIndex.open( mappingFile ) ) {
+            checkInterval( index, 1, CHROM_LENGTH );
+            checkInterval( index, 16000, 17000 );
+            checkInterval( index, -200, 40000 );
+            checkInterval( index, 90000, 100050 );
+        }
+    }
+
+
+    /**
+     * Test of addCoverage method at lower resolutions, of class
+     * CoverageIndex.
+     */
+    @Test
+    public void testAddBinnedCoverage() throws IOException {
+        System.out.println( "addBinnedCoverage" );
+        try( CoverageIndex index = CoverageIndex.open( mappingFile ) ) {
+            for( int binSize : new int[]{ 64, 1024, 16384 } ) {
+                CoverageManager coverage = new CoverageManager( 1, CHROM_LENGTH );
+                coverage.incArraysToIntervalSize();
+                index.addCoverage( "chrom1", 1, CHROM_LENGTH, binSize + 1, new ParametersReadClasses(), coverage );
+                for( MappingClass mappingClass : MappingClass.values() ) {
+                    int[] expected = expCoverage.getCoverage( mappingClass ).getFwdCov();
+                    int[] binned = coverage.getCoverage( mappingClass ).getFwdCov();
+                    for( int i = 0; i < expected.length; ++i ) {
+                        int max = 0;
+                        int binStart = i / binSize * binSize;
+                        for( int j = binStart; j < Math.min( expected.length, binStart + binSize ); ++j ) {
+                            max = Math.max( max, expected[j] );
+                        }
+                        assertEquals( max, binned[i] );
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Test of open method with an outdated index, of class CoverageIndex.
+     */
+    @Test( expected = IOException.class )
+    public void testOpenOutdated() throws IOException {
+        System.out.println( "openOutdated" );
+        File otherFile = File.createTempFile( "coverageIndexTest", ".bam" );
+        try {
+            assertNull( CoverageIndex.open( otherFile ) );
+            new CoverageIndexWriter( otherFile ).close();
+            try( FileWriter writer = new FileWriter( otherFile ) ) {
+                writer.write( "changed mapping file" );
+            }
+            CoverageIndex.open( otherFile );
+        } finally {
+            CoverageIndexWriter.getIndexFile( otherFile ).delete();
+            otherFile.delete();
+        }
+    }
+
+
+    /**
+     * Test of open method with the index written by the fused import of
+     * {@link SamBamParser}, which creates the index while the extended bam
+     * file is written. The index has to match the finished bam file and
+     * contain the coverage of all imported reads.
+     */
+    @Test
+    public void testOpenAfterFusedImport() throws Exception {
+        System.out.println( "openAfterFusedImport" );
+        int chromLength = 5000;
+        int readLength = 50;
+        Random random = new Random( 3 );
+        StringBuilder refSeq = new StringBuilder( chromLength );
+        for( int i = 0; i < chromLength; ++i ) {
+            refSeq.append( "ACGT".charAt( random.nextInt( 4 ) ) );
+        }
+        File fastaFile = tmpFolder.newFile( "reference.fasta" );
+        Files.write( fastaFile.toPath(), (">chrom1\n" + refSeq + "\n").getBytes( StandardCharsets.US_ASCII ) );
+        FastaSequenceIndexCreator.create( fastaFile.toPath(), true );
+
+        SAMFileHeader header = new SAMFileHeader();
+        header.addSequence( new SAMSequenceRecord( "chrom1", chromLength ) );
+        header.setSortOrder( SAMFileHeader.SortOrder.unsorted );
+        int[][] expected = new int[2][chromLength];
+        File inputFile = tmpFolder.newFile( "input.bam" );
+        try( SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter( header, true, inputFile ) ) {
+            for( int i = 0; i < 2000; ++i ) {
+                int start = 1 + random.nextInt( chromLength - readLength );
+                boolean isFwdStrand = random.nextBoolean();
+                SAMRecord record = new SAMRecord( header );
+                record.setReadName( "read" + i );
+                record.setReferenceName( "chrom1" );
+                record.setAlignmentStart( start );
+                record.setReadNegativeStrandFlag( !isFwdStrand );
+                record.setCigarString( readLength + "M" );
+                record.setMappingQuality( 60 );
+                record.setReadString( refSeq.substring( start - 1, start - 1 + readLength ) );
+                record.setBaseQualityString( SAMRecord.NULL_QUALS_STRING );
+                writer.addAlignment( record );
+                for( int pos = start; pos < start + readLength; ++pos ) {
+                    ++expected[isFwdStrand ? 0 : 1][pos - 1];
+                }
+            }
+        }
+
+        ReferenceJob refJob = new ReferenceJob( 1, fastaFile, null, "", "reference", new Timestamp( 0 ) );
+        SamBamParser parser = new SamBamParser();
+        TrackJob trackJob = new TrackJob( 1, inputFile, "track", refJob, parser, false, new Timestamp( 0 ) );
+        StatsContainer statsContainer = new StatsContainer();
+        statsContainer.prepareForTrack();
+        parser.setStatsContainer( statsContainer );
+        SamBamStatsParser statsParser = new SamBamStatsParser();
+        statsParser.setStatsContainer( statsContainer );
+        parser.parseInputAndCreateStats( trackJob, Collections.singletonMap( "chrom1", chromLength ), statsParser );
+
+        try( CoverageIndex index = CoverageIndex.open( trackJob.getFile() ) ) {
+            assertNotNull( index );
+            CoverageManager coverage = new CoverageManager( 1, chromLength );
+            coverage.incArraysToIntervalSize();
+            index.addCoverage( "chrom1", 1, chromLength, 1, new ParametersReadClasses(), coverage );
+            int[][] result = new int[2][chromLength];
+            for( MappingClass mappingClass : MappingClass.values() ) {
+                for( int strand = 0; strand < 2; ++strand ) {
+                    int[] classCoverage = coverage.getCoverage( mappingClass ).getCoverage( strand == 0 );
+                    for( int i = 0; i < chromLength; ++i ) {
+                        result[strand][i] += classCoverage[i];
+                    }
+                }
+            }
+            assertArrayEquals( expected[0], result[0] );
+            assertArrayEquals( expected[1], result[1] );
+        }
+    }
+
+
+    private void checkInterval( CoverageIndex index, int from, int to ) throws IOException {
+        CoverageManager coverage = new CoverageManager( from, to );
+        coverage.incArraysToIntervalSize();
+        index.addCoverage( "chrom1", from, to, 1, new ParametersReadClasses(), coverage );
+        for( MappingClass mappingClass : MappingClass.values() ) {
+            for( boolean isFwdStrand : new boolean[]{ true, false } ) {
+                int[] expected = new int[to - from + 1];
+                int[] fullCoverage = expCoverage.getCoverage( mappingClass ).getCoverage( isFwdStrand );
+                for( int pos = Math.max( from, 1 ); pos <= Math.min( to, CHROM_LENGTH ); ++pos ) {
+                    expected[pos - from] = fullCoverage[pos - 1];
+                }
+                assertArrayEquals( expected, coverage.getCoverage( mappingClass ).getCoverage( isFwdStrand ) );
+            }
+        }
+    }
+
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cebitec.readxplorer.databackend;
+
+
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.databackend.dataobjects.MappingBatch;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+
+/**
+ * Test of the {@link MappingBatchPool}.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class MappingBatchPoolTest {
+
+    /**
+     * Test of checkout and release methods, of class MappingBatchPool. A
+     * released batch is cleared and reused, batches exceeding the limits of
+     * the pool are dropped untouched.
+     */
+    @Test
+    public void testCheckoutRelease() {
+        System.out.println( "checkoutRelease" );
+        MappingBatchPool pool = new MappingBatchPool( 1, 2048 );
+        MappingBatch batch = pool.checkout();
+        batch.add( 1, 10, true, MappingClass.PERFECT_MATCH, 1 );
+        pool.release( batch );
+        assertEquals( 1, pool.getIdleCount() );
+        assertSame( batch, pool.checkout() );
+        assertEquals( 0, batch.size() );
+
+        MappingBatch other = pool.checkout();
+        assertNotSame( batch, other );
+        other.add( 1, 10, true, MappingClass.PERFECT_MATCH, 1 );
+        pool.release( batch );
+        pool.release( other ); //pool is full
+        assertEquals( 1, other.size() );
+
+        MappingBatch large = new MappingBatch( 4096 );
+        large.add( 1, 10, true, MappingClass.PERFECT_MATCH, 1 );
+        pool.checkout();
+        pool.release( large ); //capacity exceeds the limit
+        assertEquals( 0, pool.getIdleCount() );
+        assertEquals( 1, large.size() );
+    }
+
+
+    /**
+     * Test of release method with a batch released twice, of class
+     * MappingBatchPool.
+     */
+    @Test( expected = IllegalStateException.class )
+    public void testReleaseTwice() {
+        System.out.println( "releaseTwice" );
+        MappingBatchPool pool = new MappingBatchPool( 4, 2048 );
+        MappingBatch batch = pool.checkout();
+        pool.release( batch );
+        pool.release( batch );
+    }
+
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the {@link RequestQueue}.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class RequestQueueTest {
+
+    /**
+     * Test of the newest wins behaviour for interactive requests, of class
+     * RequestQueue.
+     */
+    @Test
+    public void testNewestWins() throws InterruptedException {
+        System.out.println( "newestWins" );
+        RequestQueue queue = new RequestQueue( true, 2, new LatencyHistogram( "wait" ) );
+        CountingListener viewer1 = new CountingListener();
+        CountingListener viewer2 = new CountingListener();
+        IntervalRequest request1 = new IntervalRequest( 1, 100, 1, viewer1, false );
+        IntervalRequest request2 = new IntervalRequest( 1, 100, 1, viewer2, false );
+        IntervalRequest request3 = new IntervalRequest( 50, 150, 1, viewer1, false );
+        IntervalRequest request4 = new IntervalRequest( 100, 200, 1, viewer1, false );
+
+        queue.add( request1 );
+        queue.add( request2 );
+        queue.add( request3 );
+        assertEquals( 1, viewer1.skipped.get() );
+        assertEquals( 2, queue.size() );
+        assertSame( request2, queue.take() );
+
+        IntervalRequest inProgress = queue.take();
+        assertSame( request3, inProgress );
+        assertFalse( queue.isSuperseded( inProgress ) );
+        queue.add( request4 );
+        assertTrue( queue.isSuperseded( inProgress ) );
+        assertEquals( 0, viewer2.skipped.get() );
+    }
+
+
+    /**
+     * Test of the FIFO order and back-pressure for analysis requests, of
+     * class RequestQueue.
+     */
+    @Test
+    public void testFifoBackPressure() throws InterruptedException {
+        System.out.println( "fifoBackPressure" );
+        final RequestQueue queue = new RequestQueue( false, 2, new LatencyHistogram( "wait" ) );
+        final CountingListener handler = new CountingListener();
+        final IntervalRequest[] requests = new IntervalRequest[3];
+        for( int i = 0; i < requests.length; ++i ) {
+            requests[i] = new IntervalRequest( i * 100 + 1, i * 100 + 100, 1, handler, false );
+        }
+        queue.add( requests[0] );
+        queue.add( requests[1] );
+
+        Thread producer = new Thread( () -> {
+            try {
+                queue.add( requests[2] );
+            } catch( InterruptedException ex ) {
+                Thread.currentThread().interrupt();
+            }
+        } );
+        producer.start();
+        producer.join( 200 );
+        assertTrue( producer.isAlive() ); //queue is full
+
+        for( IntervalRequest request : requests ) {
+            assertSame( request, queue.take() );
+            assertFalse( queue.isSuperseded( request ) );
+        }
+        producer.join();
+        assertEquals( 0, handler.skipped.get() );
+    }
+
+
+    /**
+     * Test of close method, of class RequestQueue. Producers waiting for
+     * free capacity fail as soon as the queue is closed, as does adding
+     * further requests, and the pending requests are returned.
+     */
+    @Test
+    public void testClose() throws InterruptedException {
+        System.out.println( "close" );
+        final RequestQueue queue = new RequestQueue( false, 1, new LatencyHistogram( "wait" ) );
+        final CountingListener handler = new CountingListener();
+        IntervalRequest pending = new IntervalRequest( 1, 100, 1, handler, false );
+        queue.add( pending );
+
+        final AtomicReference<Exception> producerFailure = new AtomicReference<>();
+        Thread producer = new Thread( () -> {
+            try {
+                queue.add( new IntervalRequest( 101, 200, 1, handler, false ) );
+            } catch( InterruptedException | IllegalStateException ex ) {
+                producerFailure.set( ex );
+            }
+        } );
+        producer.start();
+        producer.join( 200 );
+        assertTrue( producer.isAlive() ); //queue is full
+
+        List<IntervalRequest> pendingRequests = queue.close();
+        producer.join( 5000 );
+        assertFalse( producer.isAlive() );
+        assertTrue( producerFailure.get() instanceof IllegalStateException );
+        assertEquals( 1, pendingRequests.size() );
+        assertSame( pending, pendingRequests.get( 0 ) );
+        assertEquals( 0, queue.size() );
+        try {
+            queue.add( new IntervalRequest( 201, 300, 1, handler, false ) );
+            producerFailure.set( null );
+        } catch( IllegalStateException ex ) {
+            producerFailure.set( ex );
+        }
+        assertNotNull( producerFailure.get() );
+    }
+
+
+    /**
+     * Test of the handling of failed requests, of class RequestThread. A
+     * failing request is reported to its sender and the thread continues.
+     * When the thread stopped, further requests fail immediately.
+     */
+    @Test
+    public void testRequestThreadFailure() throws InterruptedException {
+        System.out.println( "requestThreadFailure" );
+        RequestThread thread = new RequestThread( false ) {
+
+            @Override
+            protected void processRequest( IntervalRequest request ) {
+                if( request.getFrom() == 1 ) {
+                    throw new IllegalArgumentException( "failing request" );
+                }
+                request.getSender().receiveData( request );
+            }
+
+
+        };
+        thread.start();
+        CountingListener handler = new CountingListener();
+        thread.addRequest( new IntervalRequest( 1, 100, 1, handler, false ) );
+        thread.addRequest( new IntervalRequest( 101, 200, 1, handler, false ) );
+        handler.awaitNotifications( 2 );
+        assertEquals( 1, handler.failed.get() );
+        assertEquals( 1, handler.received.get() );
+        assertTrue( thread.isAlive() );
+
+        thread.interrupt();
+        thread.join( 5000 );
+        assertFalse( thread.isAlive() );
+        thread.addRequest( new IntervalRequest( 201, 300, 1, handler, false ) );
+        assertEquals( 2, handler.failed.get() );
+        assertEquals( 0, handler.skipped.get() );
+    }
+
+
+    private static class CountingListener implements ThreadListener {
+
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger received = new AtomicInteger();
+
+
+        @Override
+        public void receiveData( Object data ) {
+            received.incrementAndGet();
+            notifyNotification();
+        }
+
+
+        @Override
+        public void notifyFailed( Throwable cause ) {
+            failed.incrementAndGet();
+            notifyNotification();
+        }
+
+
+        private synchronized void notifyNotification() {
+            notifyAll();
+        }
+
+
+        synchronized void awaitNotifications( int count ) throws InterruptedException {
+            long end = System.currentTimeMillis() + 5000;
+            while( received.get() + failed.get() < count && System.currentTimeMillis() < end ) {
+                wait( 100 );
+            }
+        }
+
+
+        @Override
+        public void notifySkipped() {
+            skipped.incrementAndGet();
+        }
+
+
+    }
+
+
+}
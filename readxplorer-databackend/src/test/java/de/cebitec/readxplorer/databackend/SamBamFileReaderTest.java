@@ -0,0 +1,488 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import de.cebitec.readxplorer.databackend.dataobjects.DiffAndGapResult;
+import de.cebitec.readxplorer.databackend.dataobjects.Difference;
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
+import de.cebitec.readxplorer.databackend.dataobjects.ReferenceGap;
+import de.cebitec.readxplorer.parser.mappings.CommonsMappingParser;
+import de.cebitec.readxplorer.utils.SequenceUtils;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+import static de.cebitec.readxplorer.databackend.SamBamFileReader.DEFAULT_MAP_QUAL;
+import static de.cebitec.readxplorer.databackend.SamBamFileReader.UNKNOWN_CALCULATED_MAP_QUAL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the diff and gap calculation of the {@link SamBamFileReader}. The
+ * diffs and gaps calculated from the cigar elements and a
+ * {@link ReferenceWindow} are compared to those of the former implementation,
+ * which parsed the cigar string and compared the read to a reference String
+ * fetched for each read.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class SamBamFileReaderTest {
+
+    private static final int CHROM_ID = 1;
+    private static final int CHROM_LENGTH = 20000;
+    private static final int REQUEST_FROM = 9000;
+    private static final int REQUEST_TO = 10000;
+    private static final String[] CIGARS = {
+        "50M", "20M5D30M", "10S40M", "40M10S", "3H10S30M", "30M5S2H", "20M100N30M", "15M3I32M", "30M40000N20M",
+        "10=1X10=2X5=", "5M1I1D5X3=2N4M", "2H3S10M2I5M3D10M4S1H", "1X", "1I10M" };
+
+    private final Random random = new Random( 7 );
+
+
+    /**
+     * Test of createDiffsAndGaps method, of class SamBamFileReader. For reads
+     * with all cigar operations on both strands, with and without base
+     * qualities, the diffs, gaps and the number of differences equal the ones
+     * of the former implementation. The reference contains lower case bases
+     * and the reads are spread over the whole chromosome, so most of them
+     * exceed the read span margin of the window of the request interval and
+     * the window has to be moved.
+     */
+    @Test
+    public void testCreateDiffsAndGaps() {
+        System.out.println( "createDiffsAndGaps" );
+        TestReference reference = new TestReference( randomSequence( CHROM_LENGTH ) );
+        ReferenceWindow window = new ReferenceWindow( reference, CHROM_ID, REQUEST_FROM, REQUEST_TO );
+        SAMFileHeader header = new SAMFileHeader();
+        header.addSequence( new SAMSequenceRecord( "chrom1", CHROM_LENGTH ) );
+
+        Set<SAMRecordOperator> operators = EnumSet.noneOf( SAMRecordOperator.class );
+        int outsideMargin = 0;
+        int diffCount = 0;
+        int gapCount = 0;
+        for( int i = 0; i < 20000; ++i ) {
+            String cigar = i < CIGARS.length * 4 ? CIGARS[i % CIGARS.length] : randomCigar();
+            SAMRecord record = createRecord( header, cigar, i, reference );
+            if( record == null ) {
+                continue;
+            }
+            for( char operator : cigar.replaceAll( "\\d", "" ).toCharArray() ) {
+                operators.add( SAMRecordOperator.valueOf( operator ) );
+            }
+            int start = record.getAlignmentStart();
+            int stop = record.getAlignmentEnd();
+            if( start < REQUEST_FROM - ReferenceWindow.READ_SPAN_MARGIN || stop > REQUEST_TO + ReferenceWindow.READ_SPAN_MARGIN ) {
+                ++outsideMargin;
+            }
+
+            //both implementations take the base quality of deletions from the index within the operation
+            String message = record.getSAMString();
+            DiffAndGapResult expected;
+            try {
+                expected = createDiffsAndGapsFromCigarString( record, reference.getChromSequence( CHROM_ID, start, stop ) );
+            } catch( ArrayIndexOutOfBoundsException e ) {
+                expected = null;
+            }
+            window.ensureCovers( start, stop );
+            DiffAndGapResult result;
+            try {
+                result = SamBamFileReader.createDiffsAndGaps( record, window, null );
+            } catch( ArrayIndexOutOfBoundsException e ) {
+                result = null;
+            }
+            assertEquals( message, expected == null, result == null );
+            if( expected == null ) {
+                continue;
+            }
+            assertEquals( message, expected.getErrors(), result.getErrors() );
+            assertDiffsEqual( message, expected.getDiffs(), result.getDiffs() );
+            assertGapsEqual( message, expected.getGaps(), result.getGaps() );
+            assertEquals( message, expected.getGapOrderIndex(), result.getGapOrderIndex() );
+            diffCount += expected.getDiffs().size();
+            gapCount += expected.getGaps().size();
+        }
+        assertEquals( EnumSet.allOf( SAMRecordOperator.class ), operators );
+        assertTrue( outsideMargin > 1000 );
+        assertTrue( diffCount > 1000 );
+        assertTrue( gapCount > 1000 );
+    }
+
+
+    /**
+     * Test of createDiffsAndGaps method, of class SamBamFileReader. A lower
+     * case reference base equal to the read base is no difference and a lower
+     * case read base differing from the reference is reported in upper case.
+     */
+    @Test
+    public void testLowerCaseBases() {
+        System.out.println( "lowerCaseBases" );
+        TestReference reference = new TestReference( "acgtACGTacgt" );
+        SAMFileHeader header = new SAMFileHeader();
+        header.addSequence( new SAMSequenceRecord( "chrom1", 12 ) );
+        SAMRecord record = new SAMRecord( header );
+        record.setReadName( "read" );
+        record.setReferenceName( "chrom1" );
+        record.setAlignmentStart( 3 );
+        record.setCigarString( "8M" );
+        record.setReadString( "GTACgAaa" );
+        record.setBaseQualityString( "ABCDEFGH" );
+
+        ReferenceWindow window = new ReferenceWindow( reference, CHROM_ID, 1, 12 );
+        DiffAndGapResult result = SamBamFileReader.createDiffsAndGaps( record, window, null );
+        assertEquals( 2, result.getErrors() );
+        assertEquals( 8, result.getDiffs().get( 0 ).getPosition() );
+        assertEquals( 'A', result.getDiffs().get( 0 ).getBase() );
+        assertEquals( 10, result.getDiffs().get( 1 ).getPosition() );
+        assertEquals( 'A', result.getDiffs().get( 1 ).getBase() );
+        assertDiffsEqual( "", createDiffsAndGapsFromCigarString( record, reference.getChromSequence( CHROM_ID, 3, 10 ) ).getDiffs(), result.getDiffs() );
+    }
+
+
+    private static void assertDiffsEqual( String message, List<Difference> expected, List<Difference> result ) {
+        assertEquals( message, expected.size(), result.size() );
+        for( int i = 0; i < expected.size(); ++i ) {
+            assertEquals( message, toString( expected.get( i ) ), toString( result.get( i ) ) );
+        }
+    }
+
+
+    private static void assertGapsEqual( String message, List<ReferenceGap> expected, List<ReferenceGap> result ) {
+        assertEquals( message, expected.size(), result.size() );
+        for( int i = 0; i < expected.size(); ++i ) {
+            ReferenceGap expGap = expected.get( i );
+            ReferenceGap gap = result.get( i );
+            assertEquals( message, toString( expGap.getPosition(), expGap.getBase(), expGap.isForwardStrand(), expGap.getCount(), expGap.getBaseQuality(), expGap.getMappingQuality() ) + " " + expGap.getOrder(),
+                          toString( gap.getPosition(), gap.getBase(), gap.isForwardStrand(), gap.getCount(), gap.getBaseQuality(), gap.getMappingQuality() ) + " " + gap.getOrder() );
+        }
+    }
+
+
+    private static String toString( Difference diff ) {
+        return toString( diff.getPosition(), diff.getBase(), diff.isForwardStrand(), diff.getCount(), diff.getBaseQuality(), diff.getMappingQuality() );
+    }
+
+
+    private static String toString( int position, char base, boolean isFwdStrand, int count, byte baseQuality, Byte mappingQuality ) {
+        return position + " " + base + " " + isFwdStrand + " " + count + " " + baseQuality + " " + mappingQuality;
+    }
+
+
+    /**
+     * @return A random cigar with optional clipping on both ends and all
+     *         other operations in between, starting and ending with an
+     *         aligned base.
+     */
+    private String randomCigar() {
+        StringBuilder cigar = new StringBuilder();
+        if( random.nextInt( 4 ) == 0 ) {
+            cigar.append( 1 + random.nextInt( 5 ) ).append( 'H' );
+        }
+        if( random.nextInt( 3 ) == 0 ) {
+            cigar.append( 1 + random.nextInt( 10 ) ).append( 'S' );
+        }
+        String aligned = "MX=";
+        String inner = "MX=IDN";
+        char last = aligned.charAt( random.nextInt( aligned.length() ) );
+        cigar.append( randomLength( last ) ).append( last );
+        int nbInner = random.nextInt( 6 );
+        for( int i = 0; i < nbInner; ++i ) {
+            char operator;
+            do {
+                operator = inner.charAt( random.nextInt( inner.length() ) );
+            } while( operator == last );
+            cigar.append( randomLength( operator ) ).append( operator );
+            last = operator;
+        }
+        if( aligned.indexOf( last ) < 0 ) {
+            cigar.append( randomLength( 'M' ) ).append( 'M' );
+        }
+        if( random.nextInt( 3 ) == 0 ) {
+            cigar.append( 1 + random.nextInt( 10 ) ).append( 'S' );
+        }
+        if( random.nextInt( 4 ) == 0 ) {
+            cigar.append( 1 + random.nextInt( 5 ) ).append( 'H' );
+        }
+        return cigar.toString();
+    }
+
+
+    private int randomLength( char operator ) {
+        switch( operator ) {
+            case 'M':
+                return 1 + random.nextInt( 60 );
+            case '=':
+                return 1 + random.nextInt( 30 );
+            case 'N':
+                return 50 + random.nextInt( 3000 );
+            default:
+                return 1 + random.nextInt( 4 );
+        }
+    }
+
+
+    /**
+     * Creates a record with the given cigar at a random position of the
+     * chromosome. The bases of aligned operations mostly match the reference,
+     * the other bases are random and may be lower case.
+     * <p>
+     * @return The record or <code>null</code>, if the cigar does not fit into
+     *         the chromosome
+     */
+    private SAMRecord createRecord( SAMFileHeader header, String cigar, int number, TestReference reference ) {
+        SAMRecord record = new SAMRecord( header );
+        record.setReadName( "read" + number );
+        record.setReferenceName( "chrom1" );
+        record.setCigarString( cigar );
+        int refLength = record.getCigar().getReferenceLength();
+        if( refLength >= CHROM_LENGTH ) {
+            return null;
+        }
+        int start = number % 50 == 0 ? CHROM_LENGTH - refLength + 1 : 1 + random.nextInt( CHROM_LENGTH - refLength + 1 );
+        record.setAlignmentStart( start );
+        record.setReadNegativeStrandFlag( random.nextBoolean() );
+        record.setMappingQuality( random.nextInt( 10 ) == 0 ? DEFAULT_MAP_QUAL : random.nextInt( DEFAULT_MAP_QUAL ) );
+
+        StringBuilder readBases = new StringBuilder();
+        String[] lengths = CommonsMappingParser.CIGAR_PATTERN.split( cigar );
+        String[] operators = CommonsMappingParser.DIGIT_PATTERN.split( cigar );
+        int refPos = start;
+        for( int i = 1; i < operators.length; ++i ) {
+            int length = Integer.parseInt( lengths[i - 1] );
+            char operator = operators[i].charAt( 0 );
+            for( int j = 0; j < length; ++j ) {
+                if( operator == 'M' || operator == '=' ) {
+                    char refBase = reference.getSequence().charAt( refPos + j - 1 );
+                    readBases.append( random.nextInt( 10 ) == 0 ? randomBase() : refBase );
+                } else if( operator == 'X' || operator == 'I' || operator == 'S' ) {
+                    readBases.append( randomBase() );
+                }
+            }
+            if( "M=XDN".indexOf( operator ) >= 0 ) {
+                refPos += length;
+            }
+        }
+        record.setReadString( readBases.toString() );
+        if( random.nextInt( 5 ) == 0 ) {
+            record.setBaseQualityString( SAMRecord.NULL_QUALS_STRING );
+        } else {
+            byte[] qualities = new byte[readBases.length()];
+            for( int i = 0; i < qualities.length; ++i ) {
+                qualities[i] = (byte) random.nextInt( 42 );
+            }
+            record.setBaseQualities( qualities );
+        }
+        return record;
+    }
+
+
+    private String randomSequence( int length ) {
+        StringBuilder sequence = new StringBuilder( length );
+        boolean lowerCase = false;
+        for( int i = 0; i < length; ++i ) {
+            if( random.nextInt( 200 ) == 0 ) {
+                lowerCase = !lowerCase;
+            }
+            char base = "ACGTN".charAt( random.nextInt( 5 ) );
+            sequence.append( lowerCase ? Character.toLowerCase( base ) : base );
+        }
+        return sequence.toString();
+    }
+
+
+    private char randomBase() {
+        return "ACGTNacgtn".charAt( random.nextInt( 10 ) );
+    }
+
+
+    /**
+     * Former implementation of {@link SamBamFileReader#createDiffsAndGaps(
+     * SAMRecord, ReferenceWindow, de.cebitec.readxplorer.databackend.dataobjects.Mapping)},
+     * which parses the cigar string and compares the read to a reference
+     * String fetched for the alignment of each read.
+     * <p>
+     * @param record the record whose diffs and gaps are needed
+     * @param refSeq the upper case reference sequence from the alignment start
+     *               to the alignment end of the record
+     * <p>
+     * @return DiffAndGapResult containing all the diffs and gaps
+     */
+    private static DiffAndGapResult createDiffsAndGapsFromCigarString( SAMRecord record, String refSeq ) {
+
+        final Map<Integer, Integer> gapOrderIndex = new HashMap<>();
+        final List<Difference> diffs = new ArrayList<>();
+        final List<ReferenceGap> gaps = new ArrayList<>();
+        int differences = 0;
+        final String cigar = record.getCigarString();
+        final String readSeq = record.getReadString();
+        final boolean isFwdStrand = !record.getReadNegativeStrandFlag();
+        final int start = record.getAlignmentStart();
+        final byte[] baseQualities = record.getBaseQualities();
+        final Byte mappingQuality = (byte) (record.getMappingQuality() >= DEFAULT_MAP_QUAL ? UNKNOWN_CALCULATED_MAP_QUAL : record.getMappingQuality());
+        final String[] num = CommonsMappingParser.CIGAR_PATTERN.split( cigar );
+        final String[] charCigar = CommonsMappingParser.DIGIT_PATTERN.split( cigar );
+        int refPos = 0;
+        int readPos = 0;
+        for( int i = 1; i < charCigar.length; i++ ) {
+            int currentCount = Integer.valueOf( num[i - 1] );
+            switch( charCigar[i] ) {
+                case "M":
+                    //check, count and add diffs for deviating Ms
+                    String bases = readSeq.substring( readPos, readPos + currentCount ).toUpperCase(); //bases of the read interval under investigation
+                    String refBases = refSeq.substring( refPos, refPos + currentCount ); //bases of the reference corresponding to the read interval under investigation
+                    for( int j = 0; j < bases.length(); j++ ) {
+                        char base = bases.charAt( j ); //currently visited base
+                        if( base != refBases.charAt( j ) ) {
+                            differences++;
+                            if( !isFwdStrand ) {
+                                base = SequenceUtils.getDnaComplement( base );
+                            }
+                            byte baseQuality = baseQualities.length == 0 ? -1 : baseQualities[j];
+                            diffs.add( new Difference( refPos + j + start, base, isFwdStrand, 1, baseQuality, mappingQuality ) );
+                        }
+                    }
+                    refPos += currentCount;
+                    readPos += currentCount;
+                    break;
+                case "=":
+                    //only increase position for matches
+                    refPos += currentCount;
+                    readPos += currentCount;
+                    break;
+                case "X":
+                    //count and create diffs for mismatches
+                    differences += currentCount;
+                    for( int j = 0; j < currentCount; j++ ) {
+                        char base = Character.toUpperCase( readSeq.charAt( readPos + j ) );
+                        if( !isFwdStrand ) {
+                            base = SequenceUtils.getDnaComplement( base );
+                        }
+                        byte baseQuality = baseQualities.length == 0 ? -1 : baseQualities[j];
+                        diffs.add( new Difference( refPos + j + start, base, isFwdStrand, 1, baseQuality, mappingQuality ) );
+                    }
+                    refPos += currentCount;
+                    readPos += currentCount;
+                    break;
+                case "D":
+                    // count and add diff gaps for deletions in reference
+                    differences += currentCount;
+                    for( int j = 0; j < currentCount; j++ ) {
+                        byte baseQuality = baseQualities.length == 0 ? -1 : baseQualities[j];
+                        diffs.add( new Difference( refPos + j + start, '-', isFwdStrand, 1, baseQuality, mappingQuality ) );
+                    }
+                    refPos += currentCount;
+                    // readPos remains the same
+                    break;
+                case "I":
+                    // count and add reference gaps for insertions
+                    differences += currentCount;
+                    for( int j = 0; j < currentCount; j++ ) {
+                        char base = Character.toUpperCase( readSeq.charAt( readPos + j ) );
+                        if( !isFwdStrand ) {
+                            base = SequenceUtils.getDnaComplement( base );
+                        }
+                        byte baseQuality = baseQualities.length == 0 ? -1 : baseQualities[j];
+                        gaps.add( new ReferenceGap( refPos + start, base,
+                                                    CommonsMappingParser.getOrderForGap( refPos + start, gapOrderIndex ),
+                                                    isFwdStrand, 1, baseQuality, mappingQuality ) );
+                    }   //refPos remains the same
+                    readPos += currentCount;
+                    break;
+                case "N": //fallthrough, treatment is equal to "P"
+                case "P":
+                    //increase ref position for padded and skipped reference bases
+                    refPos += currentCount;
+                    //readPos remains the same
+                    break;
+                case "S":
+                    //increase read position for soft clipped bases which are present in the read
+                    //refPos remains the same
+                    readPos += currentCount;
+                    break;
+                case "H": //just do nothing since the position is not in the reference and not in the read!
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return new DiffAndGapResult( diffs, gaps, gapOrderIndex, differences );
+    }
+
+
+    /**
+     * Cigar operations covered by the comparison.
+     */
+    private enum SAMRecordOperator {
+
+        M, X, EQ, I, D, N, S, H;
+
+
+        static SAMRecordOperator valueOf( char operator ) {
+            return operator == '=' ? EQ : valueOf( String.valueOf( operator ) );
+        }
+
+
+    }
+
+
+    /**
+     * Reference with a single chromosome, whose sequence is held in memory
+     * instead of an indexed fasta file.
+     */
+    private static class TestReference extends PersistentReference {
+
+        private final String sequence;
+
+
+        TestReference( String sequence ) {
+            super( 1, CHROM_ID, "reference", "", new Timestamp( 0 ), new File( "reference.fasta" ),
+                   Collections.singletonMap( CHROM_ID, new PersistentChromosome( CHROM_ID, 1, 1, "chrom1", sequence.length() ) ), false );
+            this.sequence = sequence;
+        }
+
+
+        String getSequence() {
+            return sequence;
+        }
+
+
+        @Override
+        public synchronized byte[] getChromBases( int chromId, int start, int stop ) {
+            return sequence.substring( start - 1, stop ).getBytes( StandardCharsets.US_ASCII );
+        }
+
+
+    }
+
+
+}
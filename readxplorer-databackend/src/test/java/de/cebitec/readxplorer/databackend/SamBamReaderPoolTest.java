@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Test of the {@link SamBamReaderPool}. The readers are opened on small
+ * indexed bam files and the pool time is controlled by the test, so the
+ * idle limits and the idle timeout can be checked deterministically.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class SamBamReaderPoolTest {
+
+    private static final long IDLE_TIMEOUT = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong time = new AtomicLong();
+    private PersistentReference reference;
+    private PersistentTrack track1;
+    private PersistentTrack track2;
+
+
+    @Before
+    public void setUp() throws IOException {
+        reference = new PersistentReference( 1, -1, "reference", "", new Timestamp( 0 ), new File( "reference.fasta" ),
+                                             Collections.<Integer, PersistentChromosome>emptyMap(), false );
+        track1 = new PersistentTrack( 1, writeBamFile( "track1.bam" ).getPath(), "track1", new Timestamp( 0 ), 1, 0 );
+        track2 = new PersistentTrack( 2, writeBamFile( "track2.bam" ).getPath(), "track2", new Timestamp( 0 ), 1, 0 );
+    }
+
+
+    /**
+     * Test of checkout and release methods, of class SamBamReaderPool. A
+     * released reader is handed out again on the next checkout of its track.
+     */
+    @Test
+    public void testReuse() {
+        System.out.println( "reuse" );
+        SamBamReaderPool pool = createPool( 2, 10 );
+        SamBamFileReader reader = pool.checkout( track1, reference );
+        pool.release( reader );
+        assertSame( reader, pool.checkout( track1, reference ) );
+        SamBamFileReader otherTrackReader = pool.checkout( track2, reference );
+        assertNotSame( reader, otherTrackReader );
+        assertEquals( 2, pool.getOpenCount() );
+        assertEquals( 1, pool.getReuseCount() );
+        assertEquals( 0, pool.getIdleCount() );
+        pool.release( reader );
+        pool.release( otherTrackReader );
+        pool.clear();
+    }
+
+
+    /**
+     * Test of release method, of class SamBamReaderPool. Only the maximum
+     * number of idle readers per track is kept, further released readers of
+     * the track are closed. Other tracks are not affected.
+     */
+    @Test
+    public void testMaxIdlePerTrack() {
+        System.out.println( "maxIdlePerTrack" );
+        SamBamReaderPool pool = createPool( 2, 10 );
+        SamBamFileReader reader1 = pool.checkout( track1, reference );
+        SamBamFileReader reader2 = pool.checkout( track1, reference );
+        SamBamFileReader reader3 = pool.checkout( track1, reference );
+        SamBamFileReader otherTrackReader = pool.checkout( track2, reference );
+        pool.release( reader1 );
+        pool.release( reader2 );
+        assertEquals( 0, pool.getEvictionCount() );
+        pool.release( reader3 );
+        assertEquals( 1, pool.getEvictionCount() );
+        pool.release( otherTrackReader );
+        assertEquals( 3, pool.getIdleCount() );
+        assertEquals( 1, pool.getEvictionCount() );
+
+        //the most recently released reader is reused first
+        assertSame( reader2, pool.checkout( track1, reference ) );
+        assertSame( reader1, pool.checkout( track1, reference ) );
+        assertNotSame( reader3, pool.checkout( track1, reference ) );
+        assertEquals( 5, pool.getOpenCount() );
+        pool.clear();
+    }
+
+
+    /**
+     * Test of release method, of class SamBamReaderPool. If more readers are
+     * idle than allowed in total, the reader idle for the longest time is
+     * closed, regardless of its track.
+     */
+    @Test
+    public void testMaxIdleTotal() {
+        System.out.println( "maxIdleTotal" );
+        SamBamReaderPool pool = createPool( 2, 3 );
+        SamBamFileReader reader1 = pool.checkout( track1, reference );
+        SamBamFileReader reader2 = pool.checkout( track1, reference );
+        SamBamFileReader reader3 = pool.checkout( track2, reference );
+        SamBamFileReader reader4 = pool.checkout( track2, reference );
+        pool.release( reader1 );
+        time.incrementAndGet();
+        pool.release( reader3 );
+        time.incrementAndGet();
+        pool.release( reader2 );
+        time.incrementAndGet();
+        assertEquals( 3, pool.getIdleCount() );
+        assertEquals( 0, pool.getEvictionCount() );
+
+        pool.release( reader4 );
+        assertEquals( 3, pool.getIdleCount() );
+        assertEquals( 1, pool.getEvictionCount() );
+        assertSame( reader2, pool.checkout( track1, reference ) );
+        assertNotSame( reader1, pool.checkout( track1, reference ) );
+        assertSame( reader4, pool.checkout( track2, reference ) );
+        assertSame( reader3, pool.checkout( track2, reference ) );
+        pool.clear();
+    }
+
+
+    /**
+     * Test of checkout method, of class SamBamReaderPool. Readers idle for
+     * longer than the idle timeout are closed on the next pool access and a
+     * new reader is opened instead.
+     */
+    @Test
+    public void testIdleTimeout() {
+        System.out.println( "idleTimeout" );
+        SamBamReaderPool pool = createPool( 2, 10 );
+        SamBamFileReader reader = pool.checkout( track1, reference );
+        SamBamFileReader otherTrackReader = pool.checkout( track2, reference );
+        pool.release( reader );
+        time.addAndGet( IDLE_TIMEOUT / 2 );
+        pool.release( otherTrackReader );
+
+        time.addAndGet( IDLE_TIMEOUT / 2 );
+        assertSame( reader, pool.checkout( track1, reference ) );
+        pool.release( reader );
+
+        time.addAndGet( IDLE_TIMEOUT + 1 );
+        SamBamFileReader newReader = pool.checkout( track1, reference );
+        assertNotSame( reader, newReader );
+        assertEquals( 2, pool.getEvictionCount() );
+        assertEquals( 0, pool.getIdleCount() );
+        assertEquals( 3, pool.getOpenCount() );
+        pool.release( newReader );
+        pool.clear();
+    }
+
+
+    /**
+     * Test of release method, of class SamBamReaderPool. A reader can only be
+     * released by the thread which checked it out and only once.
+     */
+    @Test
+    public void testReleaseOwnership() throws InterruptedException {
+        System.out.println( "releaseOwnership" );
+        final SamBamReaderPool pool = createPool( 2, 10 );
+        final SamBamFileReader reader = pool.checkout( track1, reference );
+        final AtomicReference<RuntimeException> otherThreadException = new AtomicReference<>();
+        Thread otherThread = new Thread( new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    pool.release( reader );
+                } catch( RuntimeException e ) {
+                    otherThreadException.set( e );
+                }
+            }
+
+
+        } );
+        otherThread.start();
+        otherThread.join();
+        assertTrue( otherThreadException.get() instanceof IllegalStateException );
+
+        pool.release( reader );
+        try {
+            pool.release( reader );
+            fail( "Releasing a reader twice has to fail" );
+        } catch( IllegalArgumentException e ) {
+            //expected
+        }
+        pool.clear();
+    }
+
+
+    private SamBamReaderPool createPool( int maxIdlePerTrack, int maxIdleTotal ) {
+        return new SamBamReaderPool( maxIdlePerTrack, maxIdleTotal, IDLE_TIMEOUT, time::get );
+    }
+
+
+    /**
+     * Writes a coordinate sorted bam file with a single mapping and its bai
+     * index.
+     * <p>
+     * @param fileName the name of the bam file
+     * <p>
+     * @return The bam file
+     */
+    private File writeBamFile( String fileName ) {
+        File bamFile = new File( folder.getRoot(), fileName );
+        SAMFileHeader header = new SAMFileHeader();
+        header.setSortOrder( SAMFileHeader.SortOrder.coordinate );
+        header.addSequence( new SAMSequenceRecord( "chrom1", 1000 ) );
+        SAMRecord record = new SAMRecord( header );
+        record.setReadName( "read1" );
+        record.setReferenceName( "chrom1" );
+        record.setAlignmentStart( 100 );
+        record.setCigarString( "10M" );
+        record.setReadString( "ACGTACGTAC" );
+        record.setBaseQualityString( "IIIIIIIIII" );
+        try( SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex( true ).makeBAMWriter( header, true, bamFile ) ) {
+            writer.addAlignment( record );
+        }
+        return bamFile;
+    }
+
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the {@link TileScheduler}.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class TileSchedulerTest {
+
+    private ExecutorService executor;
+
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool( 4 );
+    }
+
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+
+    /**
+     * Test of the delivery order and the window, of class TileScheduler.
+     * Tiles finish in random order, but are delivered in tile order. No tile
+     * starts more than the window ahead of the delivered tiles and not more
+     * than <code>parallelism</code> tiles run at the same time.
+     */
+    @Test
+    public void testOrderAndWindow() throws InterruptedException {
+        System.out.println( "orderAndWindow" );
+        final int nbTiles = 60;
+        final int parallelism = 3;
+        final Receiver receiver = new Receiver( nbTiles );
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger windowViolations = new AtomicInteger();
+        TileScheduler scheduler = new TileScheduler( nbTiles, parallelism, tile -> {
+            maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+            if( tile >= receiver.delivered.size() + parallelism * 2 ) {
+                windowViolations.incrementAndGet();
+            }
+            sleep( (tile * 7) % 3 );
+            running.decrementAndGet();
+            return tile;
+        }, receiver, executor );
+        scheduler.start();
+
+        assertTrue( receiver.done.await( 10, TimeUnit.SECONDS ) );
+        assertEquals( range( nbTiles ), receiver.delivered );
+        assertEquals( 0, windowViolations.get() );
+        assertTrue( maxRunning.get() <= parallelism );
+        assertEquals( 0, receiver.failures.get() );
+    }
+
+
+    /**
+     * Test of a failing tile, of class TileScheduler. The receiver is informed
+     * once, only tiles before the failed tile are delivered and no further
+     * tiles are started.
+     */
+    @Test
+    public void testTileFailure() throws InterruptedException {
+        System.out.println( "tileFailure" );
+        final int nbTiles = 40;
+        final int failingTile = 5;
+        final Receiver receiver = new Receiver( nbTiles );
+        final List<Integer> started = Collections.synchronizedList( new ArrayList<>() );
+        TileScheduler scheduler = new TileScheduler( nbTiles, 2, tile -> {
+            started.add( tile );
+            if( tile == failingTile ) {
+                throw new IllegalStateException( "tile failed" );
+            }
+            return tile;
+        }, receiver, executor );
+        scheduler.start();
+
+        assertTrue( receiver.done.await( 10, TimeUnit.SECONDS ) );
+        executor.shutdown();
+        assertTrue( executor.awaitTermination( 10, TimeUnit.SECONDS ) );
+        assertEquals( 1, receiver.failures.get() );
+        assertEquals( failingTile, receiver.failedTile );
+        assertEquals( "tile failed", receiver.cause.getMessage() );
+        assertFalse( receiver.delivered.contains( failingTile ) );
+        assertEquals( range( receiver.delivered.size() ), receiver.delivered );
+        for( int tile : started ) {
+            assertTrue( tile < failingTile + 2 * 2 );
+        }
+    }
+
+
+    /**
+     * Test of a receiver failing while a result is delivered, of class
+     * TileScheduler.
+     */
+    @Test
+    public void testDeliveryFailure() throws InterruptedException {
+        System.out.println( "deliveryFailure" );
+        final Receiver receiver = new Receiver( 10 ) {
+
+            @Override
+            public void receiveTile( Object result ) {
+                if( (int) result == 2 ) {
+                    throw new IllegalArgumentException( "observer failed" );
+                }
+                super.receiveTile( result );
+            }
+
+
+        };
+        new TileScheduler( 10, 2, tile -> tile, receiver, executor ).start();
+
+        assertTrue( receiver.done.await( 10, TimeUnit.SECONDS ) );
+        assertEquals( 1, receiver.failures.get() );
+        assertEquals( 2, receiver.failedTile );
+        assertEquals( range( 2 ), receiver.delivered );
+    }
+
+
+    /**
+     * Test of several schedulers sharing a smaller executor, of class
+     * TileScheduler. All of them deliver all of their tiles in order.
+     */
+    @Test
+    public void testSharedExecutor() throws InterruptedException {
+        System.out.println( "sharedExecutor" );
+        ExecutorService sharedExecutor = Executors.newFixedThreadPool( 2 );
+        try {
+            List<Receiver> receivers = new ArrayList<>();
+            for( int i = 0; i < 6; ++i ) {
+                Receiver receiver = new Receiver( 25 );
+                receivers.add( receiver );
+                new TileScheduler( 25, 4, tile -> {
+                    sleep( tile % 2 );
+                    return tile;
+                }, receiver, sharedExecutor ).start();
+            }
+            for( Receiver receiver : receivers ) {
+                assertTrue( receiver.done.await( 10, TimeUnit.SECONDS ) );
+                assertEquals( range( 25 ), receiver.delivered );
+            }
+        } finally {
+            sharedExecutor.shutdownNow();
+        }
+    }
+
+
+    private static List<Integer> range( int length ) {
+        List<Integer> values = new ArrayList<>();
+        for( int i = 0; i < length; ++i ) {
+            values.add( i );
+        }
+        return values;
+    }
+
+
+    private static void sleep( long millis ) {
+        try {
+            Thread.sleep( millis );
+        } catch( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Collects the delivered tiles and counts down, when all tiles were
+     * delivered or a tile failed.
+     */
+    private static class Receiver implements TileScheduler.TileReceiver {
+
+        private final List<Integer> delivered = Collections.synchronizedList( new ArrayList<>() );
+        private final AtomicInteger failures = new AtomicInteger();
+        private final CountDownLatch done = new CountDownLatch( 1 );
+        private final int nbTiles;
+        private volatile int failedTile = -1;
+        private volatile Throwable cause;
+
+
+        Receiver( int nbTiles ) {
+            this.nbTiles = nbTiles;
+        }
+
+
+        @Override
+        public void receiveTile( Object result ) {
+            delivered.add( (Integer) result );
+            if( delivered.size() == nbTiles ) {
+                done.countDown();
+            }
+        }
+
+
+        @Override
+        public void tileFailed( int tile, Throwable cause ) {
+            this.failedTile = tile;
+            this.cause = cause;
+            failures.incrementAndGet();
+            done.countDown();
+        }
+
+
+    }
+
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend.connector;
+
+
+import de.cebitec.readxplorer.api.enums.FeatureType;
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentFeature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Test of the {@link FeatureIndex}. All queries are compared to a linear scan
+ * over random features.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class FeatureIndexTest {
+
+    private static final int CHROM_LENGTH = 50000;
+
+    private static List<FeatureIndex.FeatureRecord> records;
+    private static List<PersistentFeature> expFeatures;
+    private static FeatureIndex index;
+
+
+    @BeforeClass
+    public static void setUpClass() {
+        Random random = new Random( 42 );
+        records = new ArrayList<>();
+        expFeatures = new ArrayList<>();
+        FeatureType[] types = { FeatureType.GENE, FeatureType.CDS, FeatureType.RRNA };
+        for( int id = 1; id <= 3001; ++id ) {
+            int start = 1 + random.nextInt( CHROM_LENGTH );
+            int length = random.nextInt( 10 ) == 0 ? random.nextInt( 20000 ) : random.nextInt( 2000 );
+            FeatureIndex.FeatureRecord record = new FeatureIndex.FeatureRecord( id, "", "", "locus" + id, "", start, start + length,
+                                                                                random.nextBoolean(), types[random.nextInt( types.length )], "" );
+            records.add( record );
+            expFeatures.add( record.toFeature( 1 ) );
+        }
+        expFeatures.sort( ( feat1, feat2 ) -> feat1.getStart() != feat2.getStart()
+                                              ? Integer.compare( feat1.getStart(), feat2.getStart() )
+                                              : Integer.compare( feat1.getId(), feat2.getId() ) );
+        index = new FeatureIndex( 1, records );
+    }
+
+
+    /**
+     * Test of getOverlappingFeatures method, of class FeatureIndex.
+     */
+    @Test
+    public void testGetOverlappingFeatures() {
+        System.out.println( "getOverlappingFeatures" );
+        Random random = new Random( 7 );
+        for( int i = 0; i < 500; ++i ) {
+            int from = random.nextInt( CHROM_LENGTH + 10000 ) - 5000;
+            int to = from + random.nextInt( 5000 );
+            FeatureType type = i % 2 == 0 ? FeatureType.ANY : FeatureType.CDS;
+            List<Integer> expIds = new ArrayList<>();
+            for( PersistentFeature feature : expFeatures ) {
+                if( feature.getStart() <= to && feature.getStop() >= from && (type == FeatureType.ANY || feature.getType() == type) ) {
+                    expIds.add( feature.getId() );
+                }
+            }
+            assertEquals( expIds, getIds( index.getOverlappingFeatures( from, to, type ) ) );
+        }
+        assertEquals( expFeatures.size(), index.getOverlappingFeatures( 0, Integer.MAX_VALUE, FeatureType.ANY ).size() );
+        assertEquals( 0, new FeatureIndex( 1, new ArrayList<>() ).getOverlappingFeatures( 0, CHROM_LENGTH, FeatureType.ANY ).size() );
+    }
+
+
+    /**
+     * Test of getContainedFeatures method, of class FeatureIndex.
+     */
+    @Test
+    public void testGetContainedFeatures() {
+        System.out.println( "getContainedFeatures" );
+        Random random = new Random( 11 );
+        for( int i = 0; i < 200; ++i ) {
+            int left = random.nextInt( CHROM_LENGTH );
+            int right = left + random.nextInt( 10000 );
+            List<Integer> expIds = new ArrayList<>();
+            for( PersistentFeature feature : expFeatures ) {
+                if( feature.getStart() >= left && feature.getStart() <= right && feature.getStop() >= left && feature.getStop() <= right ) {
+                    expIds.add( feature.getId() );
+                }
+            }
+            assertEquals( expIds, getIds( index.getContainedFeatures( left, right ) ) );
+        }
+    }
+
+
+    private static List<Integer> getIds( List<PersistentFeature> features ) {
+        List<Integer> ids = new ArrayList<>( features.size() );
+        for( PersistentFeature feature : features ) {
+            ids.add( feature.getId() );
+        }
+        return ids;
+    }
+
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cebitec.readxplorer.databackend.dataobjects;
+
+
+import de.cebitec.readxplorer.api.Classification;
+import de.cebitec.readxplorer.api.enums.FeatureType;
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.api.enums.Strand;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+
+/**
+ * Test of the {@link CoverageManager}.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class CoverageManagerTest {
+
+    /**
+     * Test of addCoverageRange and increaseCoverage methods, of class
+     * CoverageManager. Both have to clip the intervals to the bounds of the
+     * manager and result in the same coverage.
+     */
+    @Test
+    public void testAddCoverageRange() {
+        System.out.println( "addCoverageRange" );
+        CoverageManager covManager = new CoverageManager( 11, 20 );
+        int[][] ranges = { { 5, 12 }, { 11, 20 }, { 14, 14 }, { 18, 30 }, { 1, 10 }, { 21, 25 } };
+        int[] diffArray = new int[11];
+        int[] rangeCoverage = new int[10];
+        int[] increasedCoverage = new int[10];
+        for( int[] range : ranges ) {
+            covManager.addCoverageRange( range[0], range[1], diffArray );
+            covManager.increaseCoverage( range[0], range[1], increasedCoverage );
+        }
+        covManager.addDifferences( diffArray, rangeCoverage );
+        assertArrayEquals( new int[]{ 2, 2, 1, 2, 1, 1, 1, 2, 2, 2 }, rangeCoverage );
+        assertArrayEquals( rangeCoverage, increasedCoverage );
+    }
+
+
+    /**
+     * Test of getTotalCoverageView method, of class CoverageManager. The views
+     * only sum the included classes, are calculated once and a single
+     * included array is returned without copying it.
+     */
+    @Test
+    public void testGetTotalCoverageView() {
+        System.out.println( "getTotalCoverageView" );
+        CoverageManager covManager = new CoverageManager( 101, 104 );
+        covManager.incArraysToIntervalSize();
+        Coverage perfect = covManager.getCoverage( MappingClass.PERFECT_MATCH );
+        Coverage common = covManager.getCoverage( MappingClass.COMMON_MATCH );
+        perfect.setFwdCoverage( new int[]{ 1, 2, 3, 4 } );
+        perfect.setRevCoverage( new int[]{ 0, 1, 0, 1 } );
+        common.setFwdCoverage( new int[]{ 5, 0, 0, 5 } );
+        common.setRevCoverage( new int[]{ 2, 2, 2, 2 } );
+
+        List<Classification> noExclusions = Collections.emptyList();
+        assertArrayEquals( new int[]{ 6, 2, 3, 9 }, covManager.getTotalCoverageView( noExclusions, Strand.Forward ) );
+        assertArrayEquals( new int[]{ 2, 3, 2, 3 }, covManager.getTotalCoverageView( noExclusions, Strand.Reverse ) );
+        assertArrayEquals( new int[]{ 8, 5, 5, 12 }, covManager.getTotalCoverageView( noExclusions, Strand.Both ) );
+        assertSame( covManager.getTotalCoverageView( noExclusions, Strand.Both ), covManager.getTotalCoverageView( noExclusions, Strand.Both ) );
+
+        List<Classification> excluded = Arrays.asList( MappingClass.SINGLE_PERFECT_MATCH, MappingClass.SINGLE_BEST_MATCH, MappingClass.BEST_MATCH,
+                                                       MappingClass.COMMON_MATCH, FeatureType.MULTIPLE_MAPPED_READ );
+        assertSame( perfect.getFwdCov(), covManager.getTotalCoverageView( excluded, Strand.Forward ) );
+        assertArrayEquals( new int[]{ 1, 3, 3, 5 }, covManager.getTotalCoverageView( excluded, Strand.Both ) );
+
+        Coverage totalCoverage = covManager.getTotalCoverage( excluded );
+        assertEquals( 4, totalCoverage.getFwdCov( 104 ) );
+        assertEquals( 1, totalCoverage.getRevCov( 104 ) );
+        assertEquals( 9, covManager.getTotalCoverage( noExclusions ).getFwdCov( 104 ) );
+    }
+
+
+}
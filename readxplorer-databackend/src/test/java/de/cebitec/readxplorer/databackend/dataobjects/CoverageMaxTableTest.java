@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend.dataobjects;
+
+
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Test of the {@link CoverageMaxTable}.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class CoverageMaxTableTest {
+
+    /**
+     * Test of getMax method, of class CoverageMaxTable. All ranges have to
+     * return the same maximum as a scan of the array.
+     */
+    @Test
+    public void testGetMax() {
+        System.out.println( "getMax" );
+        Random random = new Random( 42 );
+        for( int length : new int[]{ 0, 1, 63, 64, 65, 1000, 20000 } ) {
+            int[] coverage = new int[length];
+            for( int i = 0; i < length; ++i ) {
+                coverage[i] = random.nextInt( 1000 );
+            }
+            CoverageMaxTable table = new CoverageMaxTable( coverage );
+            for( int i = 0; i < 2000; ++i ) {
+                int from = random.nextInt( length + 20 ) - 10;
+                int to = from + random.nextInt( length + 10 );
+                assertEquals( this.scanMax( coverage, from, to ), table.getMax( from, to ) );
+            }
+        }
+    }
+
+
+    /**
+     * Test of createSumTable method, of class CoverageMaxTable. All ranges
+     * have to return the same maximum as a scan of the summed arrays, also if
+     * the arrays differ in length.
+     */
+    @Test
+    public void testCreateSumTable() {
+        System.out.println( "createSumTable" );
+        Random random = new Random( 42 );
+        for( int[] lengths : new int[][]{ { 0, 0 }, { 65, 65 }, { 1000, 1000 }, { 1000, 130 }, { 70, 2000 } } ) {
+            int[] coverage1 = new int[lengths[0]];
+            int[] coverage2 = new int[lengths[1]];
+            int[] sum = new int[Math.max( lengths[0], lengths[1] )];
+            for( int i = 0; i < sum.length; ++i ) {
+                if( i < coverage1.length ) {
+                    coverage1[i] = random.nextInt( 1000 );
+                    sum[i] += coverage1[i];
+                }
+                if( i < coverage2.length ) {
+                    coverage2[i] = random.nextInt( 1000 );
+                    sum[i] += coverage2[i];
+                }
+            }
+            CoverageMaxTable table = CoverageMaxTable.createSumTable( coverage1, coverage2 );
+            assertEquals( sum.length, table.getLength() );
+            for( int i = 0; i < 2000; ++i ) {
+                int from = random.nextInt( sum.length + 20 ) - 10;
+                int to = from + random.nextInt( sum.length + 10 );
+                assertEquals( this.scanMax( sum, from, to ), table.getMax( from, to ) );
+            }
+        }
+    }
+
+
+    /**
+     * Test of getMaxCoverage and getMaxCombinedCoverage methods, of class
+     * CoverageManager.
+     */
+    @Test
+    public void testGetMaxCoverage() {
+        System.out.println( "getMaxCoverage" );
+        CoverageManager covManager = new CoverageManager( 1001, 1300 );
+        covManager.incArraysToIntervalSize();
+        Coverage coverage = covManager.getCoverage( MappingClass.PERFECT_MATCH );
+        coverage.setFwdCoverage( 1100, 7 );
+        coverage.setRevCoverage( 1101, 5 );
+        coverage.setFwdCoverage( 1250, 3 );
+        coverage.setRevCoverage( 1250, 4 );
+        assertEquals( 7, covManager.getMaxCoverage( MappingClass.PERFECT_MATCH, 900, 1200, true ) );
+        assertEquals( 5, covManager.getMaxCoverage( MappingClass.PERFECT_MATCH, 900, 1200, false ) );
+        assertEquals( 3, covManager.getMaxCoverage( MappingClass.PERFECT_MATCH, 1101, 2000, true ) );
+        assertEquals( 7, covManager.getMaxCombinedCoverage( MappingClass.PERFECT_MATCH, 1001, 1300 ) );
+        assertEquals( 7, covManager.getMaxCombinedCoverage( MappingClass.PERFECT_MATCH, 1200, 1300 ) );
+        assertEquals( 0, covManager.getMaxCoverage( MappingClass.BEST_MATCH, 1001, 1300, true ) );
+    }
+
+
+    private int scanMax( int[] coverage, int from, int to ) {
+        int max = 0;
+        for( int i = Math.max( 0, from ); i <= Math.min( coverage.length - 1, to ); ++i ) {
+            max = Math.max( max, coverage[i] );
+        }
+        return max;
+    }
+
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend.dataobjects;
+
+
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the {@link MappingBatch}.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class MappingBatchTest {
+
+
+    /**
+     * Test of sortByStart method, of class MappingBatch. The columns of two
+     * appended batches are sorted together and mappings with equal start keep
+     * their order.
+     */
+    @Test
+    public void testSortByStart() {
+        System.out.println( "sortByStart" );
+        MappingBatch batch = new MappingBatch( 1 );
+        batch.add( 10, 50, true, MappingClass.PERFECT_MATCH, 1 );
+        batch.add( 30, 40, false, MappingClass.BEST_MATCH, 2 );
+        MappingBatch otherBatch = new MappingBatch();
+        otherBatch.add( 5, 20, false, MappingClass.COMMON_MATCH, 3 );
+        otherBatch.add( 30, 35, true, MappingClass.SINGLE_PERFECT_MATCH, 0 );
+        batch.addAll( otherBatch );
+        assertEquals( 4, batch.size() );
+        assertFalse( batch.isSortedByStart() );
+
+        batch.sortByStart();
+        assertTrue( batch.isSortedByStart() );
+        int[] expStarts = { 5, 10, 30, 30 };
+        int[] expStops = { 20, 50, 40, 35 };
+        boolean[] expStrands = { false, true, false, true };
+        MappingClass[] expClasses = { MappingClass.COMMON_MATCH, MappingClass.PERFECT_MATCH, MappingClass.BEST_MATCH, MappingClass.SINGLE_PERFECT_MATCH };
+        int[] expNumMappings = { 3, 1, 2, 0 };
+        for( int i = 0; i < batch.size(); ++i ) {
+            assertEquals( expStarts[i], batch.getStart( i ) );
+            assertEquals( expStops[i], batch.getStop( i ) );
+            assertEquals( expStops[i] - expStarts[i] + 1, batch.getLength( i ) );
+            assertEquals( expStrands[i], batch.isFwdStrand( i ) );
+            assertEquals( expClasses[i], batch.getMappingClass( i ) );
+            assertEquals( expNumMappings[i], batch.getNumMappingsForRead( i ) );
+        }
+
+        int capacity = batch.getCapacity();
+        batch.clear();
+        assertEquals( 0, batch.size() );
+        assertEquals( capacity, batch.getCapacity() );
+    }
+
+
+}
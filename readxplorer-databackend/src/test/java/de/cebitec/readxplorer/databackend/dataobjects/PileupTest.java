@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.databackend.dataobjects;
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the {@link Pileup}.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class PileupTest {
+
+    /**
+     * Test of addDiff method, of class Pileup.
+     */
+    @Test
+    public void testAddDiff() {
+        System.out.println( "addDiff" );
+        Pileup pileup = Pileup.obtain( 100, 199, 20 );
+        pileup.addDiff( 100, 'C', 30, 40 );
+        pileup.addDiff( 100, 'C', 25, 50 );
+        pileup.addDiff( 100, 'C', 20, 60 ); //base quality too low
+        pileup.addDiff( 199, '-', 35, 10 );
+        pileup.addDiff( 200, 'A', 35, 10 ); //outside
+        pileup.addDiff( 99, 'A', 35, 10 ); //outside
+        assertEquals( 2, pileup.getCount( 100, Pileup.BASE_C ) );
+        assertEquals( 55, pileup.getBaseQualSum( 100, Pileup.BASE_C ) );
+        assertEquals( 90, pileup.getMapQualSum( 100, Pileup.BASE_C ) );
+        assertEquals( 1, pileup.getCount( 199, Pileup.BASE_GAP ) );
+        assertEquals( 0, pileup.getCount( 199, Pileup.BASE_A ) );
+        assertTrue( pileup.hasBaseQualities() );
+
+        pileup.addDiff( 150, 'T', -1, 10 );
+        assertEquals( 1, pileup.getCount( 150, Pileup.BASE_T ) );
+        assertEquals( 0, pileup.getBaseQualSum( 150, Pileup.BASE_T ) );
+        assertFalse( pileup.hasBaseQualities() );
+        pileup.release();
+
+        //a recycled pileup is empty
+        Pileup recycled = Pileup.obtain( 150, 160, -1 );
+        assertEquals( 0, recycled.getCount( 150, Pileup.BASE_T ) );
+        assertEquals( 0, recycled.getNbInsertions() );
+        assertTrue( recycled.hasBaseQualities() );
+        recycled.release();
+    }
+
+
+    /**
+     * Test of addInsertion method, of class Pileup.
+     */
+    @Test
+    public void testAddInsertion() {
+        System.out.println( "addInsertion" );
+        Pileup pileup = Pileup.obtain( 1, 5000, -1 );
+        for( int pos = 5000; pos >= 1; pos -= 7 ) {
+            pileup.addInsertion( pos, 1, 'G', 30, 20 );
+            pileup.addInsertion( pos, 0, 'A', 30, 20 );
+            pileup.addInsertion( pos, 0, 'A', 10, -1 );
+        }
+        assertFalse( pileup.hasMappingQualities() );
+
+        int[] insertions = pileup.getSortedInsertions();
+        assertEquals( 2 * ((5000 - 1) / 7 + 1), insertions.length );
+        int lastPos = 0;
+        for( int i = 0; i < insertions.length; i += 2 ) {
+            int ins0 = insertions[i];
+            int ins1 = insertions[i + 1];
+            int pos = pileup.getInsertionPosition( ins0 );
+            assertTrue( pos > lastPos );
+            lastPos = pos;
+            assertArrayEquals( new int[]{ pos, 0 }, new int[]{ pileup.getInsertionPosition( ins0 ), pileup.getInsertionOrder( ins0 ) } );
+            assertArrayEquals( new int[]{ pos, 1 }, new int[]{ pileup.getInsertionPosition( ins1 ), pileup.getInsertionOrder( ins1 ) } );
+            assertEquals( 2, pileup.getInsertionCount( ins0, Pileup.BASE_A ) );
+            assertEquals( 40, pileup.getInsertionBaseQualSum( ins0, Pileup.BASE_A ) );
+            assertEquals( 20, pileup.getInsertionMapQualSum( ins0, Pileup.BASE_A ) );
+            assertEquals( 1, pileup.getInsertionCount( ins1, Pileup.BASE_G ) );
+            assertEquals( 0, pileup.getInsertionCount( ins1, Pileup.BASE_A ) );
+        }
+        pileup.release();
+    }
+
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.exporter.tables;
+
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.IntFunction;
+
+
+/**
+ * Row cursor over rows created on demand by a row factory.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+class RowFactoryCursor implements TableRowCursor {
+
+    private final int rowCount;
+    private final IntFunction<List<Object>> rowFactory;
+    private int nextRow;
+
+
+    /**
+     * Row cursor over rows created on demand by a row factory.
+     * <p>
+     * @param rowCount   the number of rows of the sheet
+     * @param rowFactory creates the row with the given index
+     */
+    RowFactoryCursor( int rowCount, IntFunction<List<Object>> rowFactory ) {
+        this.rowCount = rowCount;
+        this.rowFactory = rowFactory;
+    }
+
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+
+    @Override
+    public boolean hasNext() {
+        return nextRow < rowCount;
+    }
+
+
+    @Override
+    public void writeNextRow( TableCellWriter writer ) throws IOException {
+        for( Object value : rowFactory.apply( nextRow++ ) ) {
+            writer.writeValue( value );
+        }
+    }
+
+
+}
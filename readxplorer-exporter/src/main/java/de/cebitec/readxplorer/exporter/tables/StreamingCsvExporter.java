@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.exporter.tables;
+
+
+import de.cebitec.readxplorer.utils.UrlWithTitle;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.netbeans.api.progress.ProgressHandle;
+
+
+/**
+ * Streaming exporter for delimiter separated text files like csv and tsv.
+ * Each row is written to the file right away. Since these formats do not
+ * support multiple sheets, each sheet after the first one is written to an
+ * own file appended with a file number and the sheet name. Files ending with
+ * ".gz" are gzip compressed.
+ * <p>
+ * Cells containing the delimiter, quotes or line breaks are quoted and
+ * contained quotes are doubled.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class StreamingCsvExporter extends StreamingTableExporter {
+
+    /**
+     * ',' = Delimiter of csv files.
+     */
+    public static final char CSV_DELIMITER = ',';
+    /**
+     * '\t' = Delimiter of tsv files.
+     */
+    public static final char TSV_DELIMITER = '\t';
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private final char delimiter;
+    private File file;
+    private Writer writer;
+    private int sheetCount;
+    private boolean firstCell;
+
+
+    /**
+     * Streaming exporter for delimiter separated text files.
+     * <p>
+     * @param progressHandle the progress handle which should display the
+     *                       progress of the exporter, may be
+     *                       <code>null</code>
+     * @param delimiter      the delimiter between two cells, e.g.
+     *                       {@link #CSV_DELIMITER} or {@link #TSV_DELIMITER}
+     */
+    public StreamingCsvExporter( ProgressHandle progressHandle, char delimiter ) {
+        super( progressHandle );
+        this.delimiter = delimiter;
+    }
+
+
+    @Override
+    protected void open( File file ) throws IOException {
+        this.file = file;
+        this.sheetCount = 0;
+    }
+
+
+    @Override
+    protected void startSheet( String sheetName, List<String> header ) throws IOException {
+        File sheetFile = this.createOutputFile( file, sheetName, sheetCount++ );
+        OutputStream out = new FileOutputStream( sheetFile );
+        try {
+            if( sheetFile.getName().endsWith( GZIP_SUFFIX ) ) {
+                out = new GZIPOutputStream( out, 1 << 16 );
+            }
+        } catch( IOException e ) {
+            out.close();
+            throw e;
+        }
+        writer = new BufferedWriter( new OutputStreamWriter( out, StandardCharsets.UTF_8 ), 1 << 16 );
+        this.startRow();
+        for( String column : header ) {
+            this.writeText( column );
+        }
+        this.endRow();
+    }
+
+
+    @Override
+    protected void startRow() {
+        firstCell = true;
+    }
+
+
+    @Override
+    protected void endRow() throws IOException {
+        writer.write( '\n' );
+    }
+
+
+    @Override
+    protected void endSheet() throws IOException {
+        writer.close();
+        writer = null;
+    }
+
+
+    @Override
+    protected void close() throws IOException {
+        if( writer != null ) { //only open after a failed sheet
+            writer.close();
+            writer = null;
+        }
+    }
+
+
+    @Override
+    public void writeText( String text ) throws IOException {
+        this.startCell();
+        if( needsQuotes( text ) ) {
+            writer.write( '"' );
+            for( int i = 0; i < text.length(); ++i ) {
+                char c = text.charAt( i );
+                if( c == '"' ) {
+                    writer.write( '"' );
+                }
+                writer.write( c );
+            }
+            writer.write( '"' );
+        } else {
+            writer.write( text );
+        }
+    }
+
+
+    @Override
+    public void writeInteger( long value ) throws IOException {
+        this.startCell();
+        writer.write( Long.toString( value ) );
+    }
+
+
+    @Override
+    public void writeDecimal( double value ) throws IOException {
+        this.startCell();
+        writer.write( Double.toString( value ) );
+    }
+
+
+    @Override
+    public void writeLink( UrlWithTitle link ) throws IOException {
+        this.writeText( link.getTitle() );
+    }
+
+
+    @Override
+    public void writeEmpty() throws IOException {
+        this.startCell();
+    }
+
+
+    /**
+     * Writes the delimiter in front of all but the first cell of a row.
+     * <p>
+     * @throws IOException
+     */
+    private void startCell() throws IOException {
+        if( firstCell ) {
+            firstCell = false;
+        } else {
+            writer.write( delimiter );
+        }
+    }
+
+
+    /**
+     * @param text the text of a cell
+     * <p>
+     * @return <code>true</code> if the text has to be quoted,
+     *         <code>false</code> otherwise
+     */
+    private boolean needsQuotes( String text ) {
+        for( int i = 0; i < text.length(); ++i ) {
+            char c = text.charAt( i );
+            if( c == delimiter || c == '"' || c == '\n' || c == '\r' ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * For all sheets after the first one, this method appends
+     * "_sheetNumber_sheetName" to the file name in front of its extension.
+     * <p>
+     * @param file       the original file to store
+     * @param sheetName  the name of the sheet, will also be added to the file
+     *                   name
+     * @param sheetIndex the index of the sheet
+     * <p>
+     * @return The file for the sheet
+     */
+    private File createOutputFile( File file, String sheetName, int sheetIndex ) {
+        if( sheetIndex == 0 ) {
+            return file;
+        }
+        String name = file.getName();
+        String gzipSuffix = name.endsWith( GZIP_SUFFIX ) ? GZIP_SUFFIX : "";
+        name = name.substring( 0, name.length() - gzipSuffix.length() );
+        int extensionStart = name.lastIndexOf( '.' );
+        String extension = extensionStart > 0 ? name.substring( extensionStart ) : "";
+        String baseName = name.substring( 0, name.length() - extension.length() );
+        String sheetFileName = baseName + "_" + (sheetIndex + 1) + "_" + sheetName.replaceAll( "[\\\\/:*?\"<>|]", "_" ) + extension + gzipSuffix;
+        return new File( file.getParentFile(), sheetFileName );
+    }
+
+
+}
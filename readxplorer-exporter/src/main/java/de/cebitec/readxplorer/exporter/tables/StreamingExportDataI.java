@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.exporter.tables;
+
+
+/**
+ * By implementing this interface, a data structure is able to provide the
+ * rows of its sheets one after another to a {@link StreamingTableExporter}
+ * without creating the whole table in memory first.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public interface StreamingExportDataI extends ExportDataI {
+
+    /**
+     * @param sheetIndex index of the sheet in the list of
+     *                   {@link #dataSheetNames()}
+     * <p>
+     * @return A new cursor over the rows of the sheet.
+     */
+    public TableRowCursor createRowCursor( int sheetIndex );
+
+
+}
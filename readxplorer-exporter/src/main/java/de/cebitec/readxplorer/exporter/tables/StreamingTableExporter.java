@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.exporter.tables;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.netbeans.api.progress.ProgressHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Base class of table exporters writing each row directly to the output file.
+ * The rows of each sheet are taken from a {@link TableRowCursor}, so in
+ * contrast to the {@link TableExporterI}s the table never has to be held in
+ * memory completely, if the data implements {@link StreamingExportDataI}.
+ * Other {@link ExportDataI} are exported from their row lists.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public abstract class StreamingTableExporter implements TableCellWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger( StreamingTableExporter.class.getName() );
+
+    private final ProgressHandle progressHandle;
+    private int rowNumberGlobal;
+
+
+    /**
+     * Base class of table exporters writing each row directly to the output
+     * file.
+     * <p>
+     * @param progressHandle the progress handle which should display the
+     *                       progress of the exporter, may be
+     *                       <code>null</code>
+     */
+    protected StreamingTableExporter( ProgressHandle progressHandle ) {
+        this.progressHandle = progressHandle;
+    }
+
+
+    /**
+     * Carries out the whole export process of the given data to a table file.
+     * <p>
+     * @param file       the file in which to write the data
+     * @param exportData the data to export
+     * <p>
+     * @return the file in which the data was written
+     * <p>
+     * @throws IOException
+     */
+    public File writeFile( File file, ExportDataI exportData ) throws IOException {
+        LOG.info( "Starting to write table file...{}", file.getAbsolutePath() );
+
+        List<String> sheetNames = exportData.dataSheetNames();
+        List<List<String>> headers = exportData.dataColumnDescriptions();
+        List<List<List<Object>>> tableData = exportData instanceof StreamingExportDataI ? null : exportData.dataToExcelExportList();
+        rowNumberGlobal = 0;
+
+        this.open( file );
+        try {
+            for( int i = 0; i < sheetNames.size(); ++i ) {
+                TableRowCursor cursor = tableData == null ? ((StreamingExportDataI) exportData).createRowCursor( i ) : TableRowCursor.of( tableData.get( i ) );
+                this.startSheet( sheetNames.get( i ), headers.get( i ) );
+                this.updateProgress();
+                while( cursor.hasNext() ) {
+                    this.startRow();
+                    cursor.writeNextRow( this );
+                    this.endRow();
+                    this.updateProgress();
+                }
+                this.endSheet();
+            }
+        } finally {
+            this.close();
+        }
+
+        LOG.info( "Finished writing table file!" );
+        return file;
+    }
+
+
+    /**
+     * @param exportData the data to export
+     * <p>
+     * @return The number of rows which will be written for the data
+     *         including the header rows or -1, if it is unknown.
+     */
+    public static int countRows( ExportDataI exportData ) {
+        int nbSheets = exportData.dataSheetNames().size();
+        int nbRows = nbSheets;
+        if( exportData instanceof StreamingExportDataI ) {
+            for( int i = 0; i < nbSheets; ++i ) {
+                int sheetRows = ((StreamingExportDataI) exportData).createRowCursor( i ).getRowCount();
+                if( sheetRows < 0 ) {
+                    return -1;
+                }
+                nbRows += sheetRows;
+            }
+        } else {
+            for( List<List<Object>> sheetData : exportData.dataToExcelExportList() ) {
+                nbRows += sheetData.size();
+            }
+        }
+        return nbRows;
+    }
+
+
+    /**
+     * Opens the output file.
+     * <p>
+     * @param file the file in which to write the data
+     * <p>
+     * @throws IOException
+     */
+    protected abstract void open( File file ) throws IOException;
+
+
+    /**
+     * Starts a new sheet and writes its header row.
+     * <p>
+     * @param sheetName name of the sheet
+     * @param header    the column descriptions of the sheet
+     * <p>
+     * @throws IOException
+     */
+    protected abstract void startSheet( String sheetName, List<String> header ) throws IOException;
+
+
+    /**
+     * Starts a new row of the current sheet.
+     * <p>
+     * @throws IOException
+     */
+    protected abstract void startRow() throws IOException;
+
+
+    /**
+     * Finishes the current row.
+     * <p>
+     * @throws IOException
+     */
+    protected abstract void endRow() throws IOException;
+
+
+    /**
+     * Finishes the current sheet.
+     * <p>
+     * @throws IOException
+     */
+    protected abstract void endSheet() throws IOException;
+
+
+    /**
+     * Finishes and closes the output file.
+     * <p>
+     * @throws IOException
+     */
+    protected abstract void close() throws IOException;
+
+
+    private void updateProgress() {
+        if( progressHandle != null && rowNumberGlobal++ % 100 == 0 ) {
+            progressHandle.progress( "Storing line", rowNumberGlobal );
+        }
+    }
+
+
+}
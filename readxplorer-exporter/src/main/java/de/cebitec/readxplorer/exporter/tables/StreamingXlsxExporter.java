@@ -0,0 +1,476 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.exporter.tables;
+
+
+import de.cebitec.readxplorer.utils.UrlWithTitle;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.netbeans.api.progress.ProgressHandle;
+
+
+/**
+ * Streaming exporter for Office Open XML workbooks (xlsx). The rows of each
+ * sheet are written directly into the zipped sheet XML using inline strings,
+ * so neither the table nor a shared string table is held in memory. The
+ * workbook parts referencing the sheets are written when the file is closed.
+ * <p>
+ * Sheets exceeding the maximum number of rows of a worksheet are continued in
+ * a new sheet with the same header.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class StreamingXlsxExporter extends StreamingTableExporter {
+
+    /**
+     * 1048576 = Maximum number of rows of an xlsx worksheet.
+     */
+    public static final int MAX_ROWS = 1 << 20;
+
+    private static final int MAX_SHEET_NAME_LENGTH = 31;
+    private static final int MAX_FORMULA_STRING_LENGTH = 255;
+    private static final String SHEET_PATH = "xl/worksheets/sheet";
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String REL_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private final int maxRows;
+    private ZipOutputStream zipOut;
+    private Writer writer;
+    private final List<String> sheetNames = new ArrayList<>();
+    private final Set<String> usedSheetNames = new HashSet<>();
+    private String currentSheetName;
+    private List<String> currentHeader;
+    private int continuationCount;
+    private int rowIndex;
+    private int columnIndex;
+    private int cellStyle;
+
+
+    /**
+     * Streaming exporter for Office Open XML workbooks (xlsx).
+     * <p>
+     * @param progressHandle the progress handle which should display the
+     *                       progress of the exporter, may be
+     *                       <code>null</code>
+     */
+    public StreamingXlsxExporter( ProgressHandle progressHandle ) {
+        this( progressHandle, MAX_ROWS );
+    }
+
+
+    /**
+     * Streaming exporter for Office Open XML workbooks (xlsx) with a custom
+     * maximum number of rows per sheet, which allows to test the continuation
+     * sheets with small tables.
+     * <p>
+     * @param progressHandle the progress handle which should display the
+     *                       progress of the exporter, may be
+     *                       <code>null</code>
+     * @param maxRows        maximum number of rows per sheet including the
+     *                       header row
+     */
+    StreamingXlsxExporter( ProgressHandle progressHandle, int maxRows ) {
+        super( progressHandle );
+        this.maxRows = maxRows;
+    }
+
+
+    /**
+     * Opens the workbook file. Besides the sheets written by
+     * {@link #writeFile(File, ExportDataI)}, sheets of other workbooks can be
+     * added to an opened file via
+     * {@link #copySheet(File, int, String)}.
+     * <p>
+     * @param file the file in which to write the workbook
+     * <p>
+     * @throws IOException
+     */
+    @Override
+    public void open( File file ) throws IOException {
+        zipOut = new ZipOutputStream( new FileOutputStream( file ) );
+        writer = new BufferedWriter( new OutputStreamWriter( zipOut, StandardCharsets.UTF_8 ), 1 << 16 );
+        sheetNames.clear();
+        usedSheetNames.clear();
+    }
+
+
+    /**
+     * Copies a sheet of a workbook written by this exporter into the currently
+     * opened workbook.
+     * <p>
+     * @param workbookFile the workbook containing the sheet
+     * @param sheetIndex   the index of the sheet to copy in the workbook
+     * @param sheetName    the name of the sheet in the new workbook
+     * <p>
+     * @throws IOException if the sheet does not exist or cannot be read
+     */
+    public void copySheet( File workbookFile, int sheetIndex, String sheetName ) throws IOException {
+        try( ZipFile workbook = new ZipFile( workbookFile ) ) {
+            ZipEntry sheetEntry = workbook.getEntry( SHEET_PATH + (sheetIndex + 1) + ".xml" );
+            if( sheetEntry == null ) {
+                throw new IOException( "Sheet " + sheetIndex + " does not exist in " + workbookFile.getName() );
+            }
+            this.putSheetEntry( sheetName );
+            writer.flush();
+            try( InputStream in = workbook.getInputStream( sheetEntry ) ) {
+                byte[] buffer = new byte[1 << 16];
+                int length;
+                while( (length = in.read( buffer )) > 0 ) {
+                    zipOut.write( buffer, 0, length );
+                }
+            }
+            zipOut.closeEntry();
+        }
+    }
+
+
+    @Override
+    protected void startSheet( String sheetName, List<String> header ) throws IOException {
+        currentSheetName = sheetName;
+        currentHeader = header;
+        continuationCount = 0;
+        this.startWorksheet( sheetName );
+    }
+
+
+    @Override
+    protected void startRow() throws IOException {
+        if( rowIndex == maxRows ) {
+            this.endSheet();
+            this.startWorksheet( currentSheetName + "I" + (++continuationCount > 1 ? continuationCount : "") );
+        }
+        ++rowIndex;
+        columnIndex = 0;
+        writer.write( "<row r=\"" );
+        writer.write( Integer.toString( rowIndex ) );
+        writer.write( "\">" );
+    }
+
+
+    @Override
+    protected void endRow() throws IOException {
+        writer.write( "</row>" );
+    }
+
+
+    @Override
+    protected void endSheet() throws IOException {
+        writer.write( "</sheetData></worksheet>" );
+        writer.flush();
+        zipOut.closeEntry();
+    }
+
+
+    /**
+     * Writes the workbook parts referencing all sheets and closes the file.
+     * <p>
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if( zipOut == null ) {
+            return;
+        }
+        try {
+            this.writeContentTypes();
+            this.writeEntry( "_rels/.rels", "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                                            + "<Relationship Id=\"rId1\" Type=\"" + REL_NS + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                                            + "</Relationships>" );
+            this.writeWorkbook();
+            this.writeWorkbookRelations();
+            this.writeEntry( "xl/styles.xml", "<styleSheet xmlns=\"" + MAIN_NS + "\">"
+                                              + "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+                                              + "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>"
+                                              + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+                                              + "<fill><patternFill patternType=\"gray125\"/></fill></fills>"
+                                              + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+                                              + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+                                              + "<cellXfs count=\"2\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+                                              + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/></cellXfs>"
+                                              + "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>"
+                                              + "</styleSheet>" );
+            writer.close();
+        } finally {
+            zipOut.close();
+            zipOut = null;
+            writer = null;
+        }
+    }
+
+
+    @Override
+    public void writeText( String text ) throws IOException {
+        this.startCell( "inlineStr" );
+        writer.write( "<is><t xml:space=\"preserve\">" );
+        this.writeEscaped( text );
+        writer.write( "</t></is></c>" );
+    }
+
+
+    @Override
+    public void writeInteger( long value ) throws IOException {
+        this.startCell( null );
+        writer.write( "<v>" );
+        writer.write( Long.toString( value ) );
+        writer.write( "</v></c>" );
+    }
+
+
+    @Override
+    public void writeDecimal( double value ) throws IOException {
+        if( Double.isNaN( value ) || Double.isInfinite( value ) ) {
+            this.writeText( Double.toString( value ) );
+        } else {
+            this.startCell( null );
+            writer.write( "<v>" );
+            writer.write( Double.toString( value ) );
+            writer.write( "</v></c>" );
+        }
+    }
+
+
+    @Override
+    public void writeLink( UrlWithTitle link ) throws IOException {
+        String url = link.getUrl().toString();
+        String title = link.getTitle();
+        if( url.length() > MAX_FORMULA_STRING_LENGTH || title.length() > MAX_FORMULA_STRING_LENGTH ) {
+            this.writeText( title );
+        } else {
+            this.startCell( "str" );
+            writer.write( "<f>" );
+            this.writeEscaped( "HYPERLINK(\"" + url.replace( "\"", "\"\"" ) + "\",\"" + title.replace( "\"", "\"\"" ) + "\")" );
+            writer.write( "</f><v>" );
+            this.writeEscaped( title );
+            writer.write( "</v></c>" );
+        }
+    }
+
+
+    @Override
+    public void writeEmpty() throws IOException {
+        ++columnIndex;
+    }
+
+
+    /**
+     * Starts a new worksheet entry in the zip file and writes the header row
+     * in bold.
+     * <p>
+     * @param sheetName the name of the sheet
+     * <p>
+     * @throws IOException
+     */
+    private void startWorksheet( String sheetName ) throws IOException {
+        this.putSheetEntry( sheetName );
+        writer.write( XML_DECLARATION );
+        writer.write( "<worksheet xmlns=\"" + MAIN_NS + "\" xmlns:r=\"" + REL_NS + "\"><sheetData>" );
+        rowIndex = 0;
+        this.startRow();
+        cellStyle = 1;
+        for( String column : currentHeader ) {
+            this.writeText( column );
+        }
+        cellStyle = 0;
+        this.endRow();
+    }
+
+
+    /**
+     * Registers a new sheet and starts its entry in the zip file.
+     * <p>
+     * @param sheetName the name of the sheet
+     * <p>
+     * @throws IOException
+     */
+    private void putSheetEntry( String sheetName ) throws IOException {
+        sheetNames.add( this.createSheetName( sheetName ) );
+        writer.flush();
+        zipOut.putNextEntry( new ZipEntry( SHEET_PATH + sheetNames.size() + ".xml" ) );
+    }
+
+
+    /**
+     * Writes the start tag of the next cell of the current row.
+     * <p>
+     * @param type the cell type or <code>null</code> for numbers
+     * <p>
+     * @throws IOException
+     */
+    private void startCell( String type ) throws IOException {
+        writer.write( "<c r=\"" );
+        writer.write( columnName( columnIndex++ ) );
+        writer.write( Integer.toString( rowIndex ) );
+        if( cellStyle != 0 ) {
+            writer.write( "\" s=\"" );
+            writer.write( Integer.toString( cellStyle ) );
+        }
+        if( type != null ) {
+            writer.write( "\" t=\"" );
+            writer.write( type );
+        }
+        writer.write( "\">" );
+    }
+
+
+    /**
+     * Writes the given text with escaped XML markup. Control characters,
+     * which are not allowed in XML, are skipped.
+     * <p>
+     * @param text the text to write
+     * <p>
+     * @throws IOException
+     */
+    private void writeEscaped( String text ) throws IOException {
+        for( int i = 0; i < text.length(); ++i ) {
+            char c = text.charAt( i );
+            switch( c ) {
+                case '<':
+                    writer.write( "&lt;" );
+                    break;
+                case '>':
+                    writer.write( "&gt;" );
+                    break;
+                case '&':
+                    writer.write( "&amp;" );
+                    break;
+                case '"':
+                    writer.write( "&quot;" );
+                    break;
+                case '\r': //a literal carriage return would be read as line feed
+                    writer.write( "&#13;" );
+                    break;
+                default:
+                    if( c >= 0x20 || c == '\t' || c == '\n' ) {
+                        writer.write( c );
+                    }
+            }
+        }
+    }
+
+
+    /**
+     * @param sheetName the desired sheet name
+     * <p>
+     * @return A unique sheet name, which is not longer than 31 characters and
+     *         does not contain any characters forbidden in sheet names.
+     */
+    private String createSheetName( String sheetName ) {
+        String name = sheetName.replaceAll( "[\\[\\]:*?/\\\\]", "_" ).trim();
+        if( name.isEmpty() ) {
+            name = "Sheet";
+        }
+        if( name.length() > MAX_SHEET_NAME_LENGTH ) {
+            name = name.substring( 0, MAX_SHEET_NAME_LENGTH );
+        }
+        String uniqueName = name;
+        for( int i = 2; !usedSheetNames.add( uniqueName.toLowerCase( Locale.ROOT ) ); ++i ) {
+            String suffix = "_" + i;
+            uniqueName = name.substring( 0, Math.min( name.length(), MAX_SHEET_NAME_LENGTH - suffix.length() ) ) + suffix;
+        }
+        return uniqueName;
+    }
+
+
+    /**
+     * @param columnIndex zero based index of a column
+     * <p>
+     * @return The letters of the column in the A1 reference style.
+     */
+    private static String columnName( int columnIndex ) {
+        StringBuilder name = new StringBuilder( 3 );
+        for( int index = columnIndex + 1; index > 0; index = (index - 1) / 26 ) {
+            name.insert( 0, (char) ('A' + (index - 1) % 26) );
+        }
+        return name.toString();
+    }
+
+
+    private void writeContentTypes() throws IOException {
+        StringBuilder contentTypes = new StringBuilder( 1024 );
+        contentTypes.append( "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">" )
+                .append( "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>" )
+                .append( "<Default Extension=\"xml\" ContentType=\"application/xml\"/>" )
+                .append( "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>" )
+                .append( "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>" );
+        for( int i = 1; i <= sheetNames.size(); ++i ) {
+            contentTypes.append( "<Override PartName=\"/" ).append( SHEET_PATH ).append( i )
+                    .append( ".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>" );
+        }
+        contentTypes.append( "</Types>" );
+        this.writeEntry( "[Content_Types].xml", contentTypes.toString() );
+    }
+
+
+    private void writeWorkbook() throws IOException {
+        StringBuilder workbook = new StringBuilder( 512 );
+        workbook.append( "<workbook xmlns=\"" ).append( MAIN_NS ).append( "\" xmlns:r=\"" ).append( REL_NS ).append( "\"><sheets>" );
+        for( int i = 1; i <= sheetNames.size(); ++i ) {
+            workbook.append( "<sheet name=\"" );
+            this.appendEscaped( workbook, sheetNames.get( i - 1 ) );
+            workbook.append( "\" sheetId=\"" ).append( i ).append( "\" r:id=\"rId" ).append( i ).append( "\"/>" );
+        }
+        workbook.append( "</sheets></workbook>" );
+        this.writeEntry( "xl/workbook.xml", workbook.toString() );
+    }
+
+
+    private void writeWorkbookRelations() throws IOException {
+        StringBuilder relations = new StringBuilder( 512 );
+        relations.append( "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" );
+        for( int i = 1; i <= sheetNames.size(); ++i ) {
+            relations.append( "<Relationship Id=\"rId" ).append( i ).append( "\" Type=\"" ).append( REL_NS )
+                    .append( "/worksheet\" Target=\"worksheets/sheet" ).append( i ).append( ".xml\"/>" );
+        }
+        int stylesId = sheetNames.size() + 1;
+        relations.append( "<Relationship Id=\"rId" ).append( stylesId ).append( "\" Type=\"" ).append( REL_NS )
+                .append( "/styles\" Target=\"styles.xml\"/>" ).append( "</Relationships>" );
+        this.writeEntry( "xl/_rels/workbook.xml.rels", relations.toString() );
+    }
+
+
+    private void appendEscaped( StringBuilder builder, String text ) {
+        builder.append( text.replace( "&", "&amp;" ).replace( "<", "&lt;" ).replace( ">", "&gt;" ).replace( "\"", "&quot;" ) );
+    }
+
+
+    private void writeEntry( String name, String content ) throws IOException {
+        writer.flush();
+        zipOut.putNextEntry( new ZipEntry( name ) );
+        writer.write( XML_DECLARATION );
+        writer.write( content );
+        writer.flush();
+        zipOut.closeEntry();
+    }
+
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.exporter.tables;
+
+
+import de.cebitec.readxplorer.utils.UrlWithTitle;
+import java.io.IOException;
+
+
+/**
+ * Writes the cells of the current row of a streamed table. Each method writes
+ * the next cell of the row, so the cells have to be written in column order.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public interface TableCellWriter {
+
+    /**
+     * Writes a text cell.
+     * <p>
+     * @param text the text of the cell
+     * <p>
+     * @throws IOException
+     */
+    public void writeText( String text ) throws IOException;
+
+
+    /**
+     * Writes an integer cell.
+     * <p>
+     * @param value the value of the cell
+     * <p>
+     * @throws IOException
+     */
+    public void writeInteger( long value ) throws IOException;
+
+
+    /**
+     * Writes a decimal cell.
+     * <p>
+     * @param value the value of the cell
+     * <p>
+     * @throws IOException
+     */
+    public void writeDecimal( double value ) throws IOException;
+
+
+    /**
+     * Writes a hyperlink cell.
+     * <p>
+     * @param link the link and its title
+     * <p>
+     * @throws IOException
+     */
+    public void writeLink( UrlWithTitle link ) throws IOException;
+
+
+    /**
+     * Writes an empty cell.
+     * <p>
+     * @throws IOException
+     */
+    public void writeEmpty() throws IOException;
+
+
+    /**
+     * Writes a cell with the typed writer method matching the class of the
+     * given value. Integral numbers are written as integers, floating point
+     * numbers as decimals, {@link UrlWithTitle}s as links, <code>null</code>
+     * as empty cell and all other values as text.
+     * <p>
+     * @param value the value of the cell, may be <code>null</code>
+     * <p>
+     * @throws IOException
+     */
+    public default void writeValue( Object value ) throws IOException {
+        if( value == null ) {
+            writeEmpty();
+        } else if( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ) {
+            writeInteger( ((Number) value).longValue() );
+        } else if( value instanceof Double || value instanceof Float ) {
+            writeDecimal( ((Number) value).doubleValue() );
+        } else if( value instanceof UrlWithTitle ) {
+            writeLink( (UrlWithTitle) value );
+        } else {
+            writeText( value.toString() );
+        }
+    }
+
+
+}
@@ -22,11 +22,13 @@ import de.cebitec.readxplorer.utils.filechooser.ReadXplorerFileChooser;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.List;
+import java.util.Locale;
+import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import jxl.write.WriteException;
 import org.netbeans.api.progress.ProgressHandle;
+import org.openide.awt.NotificationDisplayer;
 import org.openide.util.NbBundle;
 
 
@@ -85,7 +87,10 @@ public class TableExportFileChooser extends ReadXplorerFileChooser {
         "FailHeader=Failure",
         "ProgressName=Table export progress",
         "FailMsg=A write error occurred during saving progress!",
-        "OomMsg=Out of Memory: Data too large for table export." } )
+        "OomMsg=Out of Memory: Data too large for table export.",
+        "TableExportSuccessHeader=Success",
+        "# {0} - file name",
+        "TableExportSuccessMsg=Table exporter stored data successfully: {0}" } )
     public void save( final String fileLocation ) {
 
         final String msg = Bundle.IoExceptionMsg();
@@ -94,45 +99,41 @@ public class TableExportFileChooser extends ReadXplorerFileChooser {
         if( this.data instanceof ExportDataI ) {
 
             final ExportDataI exportData = (ExportDataI) this.data;
-            final List<List<List<Object>>> tableData = exportData.dataToExcelExportList();
-            int size = 0;
-            for( List<List<Object>> dataList : tableData ) {
-                size += dataList.size();
-            }
+            final File file = new File( fileLocation );
+            final boolean legacyExcel = hasExtension( file, XLS_DESCRIPTION );
             this.progressHandle = ProgressHandle.createHandle( Bundle.ProgressName() );
-            this.progressHandle.start( size + 1 );
+            int size = StreamingTableExporter.countRows( exportData );
+            if( size < 0 ) {
+                this.progressHandle.start();
+            } else {
+                this.progressHandle.start( size + 1 );
+            }
 
             Thread exportThread = new Thread( new Runnable() {
 
                 @Override
                 public void run() {
-                    TableExporterI exporter;
-                    if( getFileFilter().getDescription().contains( "xls" ) ) {
-                        exporter = new ExcelExporter( progressHandle );
-                    } else { //file filter contains csv
-                        exporter = new CsvExporter( progressHandle );
-                    }
-                    exporter.setHeaders( exportData.dataColumnDescriptions() );
-                    exporter.setExportData( tableData );
-                    exporter.setSheetNames( exportData.dataSheetNames() );
-                    if( exporter.readyToExport() ) {
-                        try {
-
-                            exporter.writeFile( new File( fileLocation ) );
-
-                        } catch( FileNotFoundException ex ) {
-                            JOptionPane.showMessageDialog( JOptionPane.getRootFrame(), msg, header, JOptionPane.ERROR_MESSAGE );
-                        } catch( IOException ex ) {
-                            JOptionPane.showMessageDialog( JOptionPane.getRootFrame(), msg, header, JOptionPane.ERROR_MESSAGE );
-                        } catch( WriteException ex ) {
-                            JOptionPane.showMessageDialog( JOptionPane.getRootFrame(), Bundle.FailMsg(),
-                                                           Bundle.FailHeader(), JOptionPane.ERROR_MESSAGE );
-                        } catch( OutOfMemoryError e ) {
-                            JOptionPane.showMessageDialog( JOptionPane.getRootFrame(), Bundle.OomMsg(),
-                                                           Bundle.FailHeader(), JOptionPane.INFORMATION_MESSAGE );
+                    try {
+                        if( legacyExcel ) {
+                            writeExcelFile( file, exportData );
+                        } else {
+                            createStreamingExporter( file, progressHandle ).writeFile( file, exportData );
+                            NotificationDisplayer.getDefault().notify( Bundle.TableExportSuccessHeader(), new ImageIcon(),
+                                                                       Bundle.TableExportSuccessMsg( file.getName() ), null );
                         }
-                        progressHandle.finish();
+
+                    } catch( FileNotFoundException ex ) {
+                        JOptionPane.showMessageDialog( JOptionPane.getRootFrame(), msg, header, JOptionPane.ERROR_MESSAGE );
+                    } catch( IOException ex ) {
+                        JOptionPane.showMessageDialog( JOptionPane.getRootFrame(), msg, header, JOptionPane.ERROR_MESSAGE );
+                    } catch( WriteException ex ) {
+                        JOptionPane.showMessageDialog( JOptionPane.getRootFrame(), Bundle.FailMsg(),
+                                                       Bundle.FailHeader(), JOptionPane.ERROR_MESSAGE );
+                    } catch( OutOfMemoryError e ) {
+                        JOptionPane.showMessageDialog( JOptionPane.getRootFrame(), Bundle.OomMsg(),
+                                                       Bundle.FailHeader(), JOptionPane.INFORMATION_MESSAGE );
                     }
+                    progressHandle.finish();
                 }
 
 
@@ -142,6 +143,53 @@ public class TableExportFileChooser extends ReadXplorerFileChooser {
     }
 
 
+    /**
+     * Writes the data with the legacy {@link ExcelExporter}, which needs the
+     * complete table in memory.
+     * <p>
+     * @param file       the file in which to write the data
+     * @param exportData the data to export
+     * <p>
+     * @throws IOException
+     * @throws WriteException
+     */
+    private void writeExcelFile( File file, ExportDataI exportData ) throws IOException, WriteException {
+        TableExporterI exporter = new ExcelExporter( progressHandle );
+        exporter.setHeaders( exportData.dataColumnDescriptions() );
+        exporter.setExportData( exportData.dataToExcelExportList() );
+        exporter.setSheetNames( exportData.dataSheetNames() );
+        if( exporter.readyToExport() ) {
+            exporter.writeFile( file );
+        }
+    }
+
+
+    /**
+     * @param file           the file in which to write the data
+     * @param progressHandle the progress handle of the export, may be
+     *                       <code>null</code>
+     * <p>
+     * @return The streaming exporter for the table format of the given file:
+     *         xlsx files are written as workbook, tsv files tab separated and
+     *         all other files comma separated. Text files ending with ".gz"
+     *         are gzip compressed.
+     */
+    static StreamingTableExporter createStreamingExporter( File file, ProgressHandle progressHandle ) {
+        if( hasExtension( file, XLSX_DESCRIPTION ) ) {
+            return new StreamingXlsxExporter( progressHandle );
+        } else if( hasExtension( file, TSV_DESCRIPTION ) || hasExtension( file, TSV_GZ_DESCRIPTION ) ) {
+            return new StreamingCsvExporter( progressHandle, StreamingCsvExporter.TSV_DELIMITER );
+        } else {
+            return new StreamingCsvExporter( progressHandle, StreamingCsvExporter.CSV_DELIMITER );
+        }
+    }
+
+
+    private static boolean hasExtension( File file, String extension ) {
+        return file.getName().toLowerCase( Locale.ENGLISH ).endsWith( '.' + extension );
+    }
+
+
     @Override
     public void open( String fileLocation ) {
         throw new UnsupportedOperationException( "Open dialog not supported!" );
@@ -151,20 +199,44 @@ public class TableExportFileChooser extends ReadXplorerFileChooser {
 
 
     public static final String[] CSV_EXTENSIONS = new String[]{ "csv", "CSV", "Csv" };
+    public static final String[] CSV_GZ_EXTENSIONS = new String[]{ "csv.gz", "CSV.GZ", "Csv.gz" };
+    public static final String[] TSV_EXTENSIONS = new String[]{ "tsv", "TSV", "Tsv" };
+    public static final String[] TSV_GZ_EXTENSIONS = new String[]{ "tsv.gz", "TSV.GZ", "Tsv.gz" };
     public static final String[] XLS_EXTENSIONS = new String[]{ "xls", "XLS", "Xls" };
+    public static final String[] XLSX_EXTENSIONS = new String[]{ "xlsx", "XLSX", "Xlsx" };
     public static final String CSV_DESCRIPTION = "csv";
+    public static final String CSV_GZ_DESCRIPTION = "csv.gz";
+    public static final String TSV_DESCRIPTION = "tsv";
+    public static final String TSV_GZ_DESCRIPTION = "tsv.gz";
     public static final String XLS_DESCRIPTION = "xls";
+    public static final String XLSX_DESCRIPTION = "xlsx";
 
 
     /**
+     * Former versions wrote tab separated files with the csv filter. These
+     * files are now written by the tsv filter, while csv files are really
+     * comma separated. The filter descriptions state the delimiter to make
+     * this visible in the file chooser.
+     * <p>
      * @return All available table file extensions filters and their
      *         corresponding descriptions. The first element of the pair are the filters
      *         and the second element are the respective descriptions.
      */
+    @NbBundle.Messages( {
+        "CsvFilterDescription=csv (comma separated)",
+        "CsvGzFilterDescription=csv.gz (comma separated, gzip compressed)",
+        "TsvFilterDescription=tsv (tab separated, format of the former csv export)",
+        "TsvGzFilterDescription=tsv.gz (tab separated, gzip compressed)",
+        "XlsFilterDescription=xls (Excel 97-2003, max. 65,536 rows per sheet)",
+        "XlsxFilterDescription=xlsx (Excel 2007 and later)" } )
     public static FileNameExtensionFilter[] getTableFileExtensions() {
         FileNameExtensionFilter[] filters = new FileNameExtensionFilter[]{
-            new FileNameExtensionFilter( CSV_DESCRIPTION, CSV_EXTENSIONS ),
-            new FileNameExtensionFilter( XLS_DESCRIPTION, XLS_EXTENSIONS ) };
+            new FileNameExtensionFilter( Bundle.CsvFilterDescription(), CSV_EXTENSIONS ),
+            new FileNameExtensionFilter( Bundle.CsvGzFilterDescription(), CSV_GZ_EXTENSIONS ),
+            new FileNameExtensionFilter( Bundle.TsvFilterDescription(), TSV_EXTENSIONS ),
+            new FileNameExtensionFilter( Bundle.TsvGzFilterDescription(), TSV_GZ_EXTENSIONS ),
+            new FileNameExtensionFilter( Bundle.XlsFilterDescription(), XLS_EXTENSIONS ),
+            new FileNameExtensionFilter( Bundle.XlsxFilterDescription(), XLSX_EXTENSIONS ) };
         return filters;
     }
 
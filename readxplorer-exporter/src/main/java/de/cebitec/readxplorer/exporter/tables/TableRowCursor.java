@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.exporter.tables;
+
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.IntFunction;
+
+
+/**
+ * Cursor over the rows of a single sheet of a streamed table. Each row is
+ * handed to a {@link TableCellWriter} and does not have to be kept after it
+ * was written, so the memory needed for an export does not grow with the
+ * number of rows.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public interface TableRowCursor {
+
+    /**
+     * @return The number of rows of the sheet or -1, if it is unknown.
+     */
+    public int getRowCount();
+
+
+    /**
+     * @return <code>true</code> if the sheet contains another row,
+     *         <code>false</code> otherwise
+     */
+    public boolean hasNext();
+
+
+    /**
+     * Writes all cells of the next row to the given writer.
+     * <p>
+     * @param writer the writer receiving the cells of the row
+     * <p>
+     * @throws IOException
+     */
+    public void writeNextRow( TableCellWriter writer ) throws IOException;
+
+
+    /**
+     * @param rows the rows of the sheet
+     * <p>
+     * @return A cursor over already existing rows.
+     */
+    public static TableRowCursor of( List<List<Object>> rows ) {
+        return new RowFactoryCursor( rows.size(), rows::get );
+    }
+
+
+    /**
+     * @param rowCount   the number of rows of the sheet
+     * @param rowFactory creates the row with the given index only when it is
+     *                   written
+     * <p>
+     * @return A cursor creating each row right before it is written.
+     */
+    public static TableRowCursor of( int rowCount, IntFunction<List<Object>> rowFactory ) {
+        return new RowFactoryCursor( rowCount, rowFactory );
+    }
+
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.exporter.tables;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Export data with given sheets for the exporter tests. The rows of each sheet
+ * are only handed out through row cursors.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+class ListExportData implements StreamingExportDataI {
+
+    private final List<String> sheetNames = new ArrayList<>();
+    private final List<List<String>> headers = new ArrayList<>();
+    private final List<List<List<Object>>> sheets = new ArrayList<>();
+
+
+    /**
+     * Adds a sheet to the export data.
+     * <p>
+     * @param sheetName the name of the sheet
+     * @param header    the column descriptions of the sheet
+     * @param rows      the rows of the sheet
+     * <p>
+     * @return This export data
+     */
+    ListExportData addSheet( String sheetName, List<String> header, List<List<Object>> rows ) {
+        sheetNames.add( sheetName );
+        headers.add( header );
+        sheets.add( rows );
+        return this;
+    }
+
+
+    @Override
+    public List<String> dataSheetNames() {
+        return sheetNames;
+    }
+
+
+    @Override
+    public List<List<String>> dataColumnDescriptions() {
+        return headers;
+    }
+
+
+    @Override
+    public List<List<List<Object>>> dataToExcelExportList() {
+        throw new UnsupportedOperationException( "The rows are only available through row cursors." );
+    }
+
+
+    @Override
+    public TableRowCursor createRowCursor( int sheetIndex ) {
+        return TableRowCursor.of( sheets.get( sheetIndex ) );
+    }
+
+
+}
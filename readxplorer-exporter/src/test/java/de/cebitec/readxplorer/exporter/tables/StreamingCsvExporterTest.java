@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.exporter.tables;
+
+
+import de.cebitec.readxplorer.utils.UrlWithTitle;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the {@link StreamingCsvExporter}. The written files are compared
+ * with the expected text, including quoting, compression and the files of
+ * additional sheets.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class StreamingCsvExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    /**
+     * Test of writeFile method, of class StreamingCsvExporter, with the comma
+     * delimiter. Cells containing commas, quotes or line breaks are quoted and
+     * their quotes doubled, all other cells are written unchanged.
+     */
+    @Test
+    public void testCsvQuoting() throws IOException {
+        System.out.println( "csvQuoting" );
+        File file = folder.newFile( "table.csv" );
+        new StreamingCsvExporter( null, StreamingCsvExporter.CSV_DELIMITER ).writeFile( file, createData() );
+
+        String expected = "Name,Count,Value,Link\n"
+                          + "plain,1,0.5,Gene\n"
+                          + "\"a,b\",-2,,\"x,y\"\n"
+                          + "\"say \"\"hi\"\"\",3,1.0E10,\n"
+                          + "\"two\nlines\",4,NaN,\n"
+                          + "\"carriage\rreturn\",5,2.5,\n"
+                          + "tab\tcell,6,-0.25,\n"
+                          + "\u00e4\u00f6\u00fc,7,3.0,\n";
+        assertEquals( expected, readText( file ) );
+    }
+
+
+    /**
+     * Test of writeFile method, of class StreamingCsvExporter, with the tab
+     * delimiter. Only cells containing tabs, quotes or line breaks are quoted,
+     * so tsv files look like the csv files of former versions.
+     */
+    @Test
+    public void testTsvQuoting() throws IOException {
+        System.out.println( "tsvQuoting" );
+        File file = folder.newFile( "table.tsv" );
+        new StreamingCsvExporter( null, StreamingCsvExporter.TSV_DELIMITER ).writeFile( file, createData() );
+
+        String expected = "Name\tCount\tValue\tLink\n"
+                          + "plain\t1\t0.5\tGene\n"
+                          + "a,b\t-2\t\tx,y\n"
+                          + "\"say \"\"hi\"\"\"\t3\t1.0E10\t\n"
+                          + "\"two\nlines\"\t4\tNaN\t\n"
+                          + "\"carriage\rreturn\"\t5\t2.5\t\n"
+                          + "\"tab\tcell\"\t6\t-0.25\t\n"
+                          + "\u00e4\u00f6\u00fc\t7\t3.0\t\n";
+        assertEquals( expected, readText( file ) );
+    }
+
+
+    /**
+     * Test of writeFile method, of class StreamingCsvExporter. All sheets after
+     * the first one are written to own files named after the sheet. Characters
+     * not allowed in file names are replaced.
+     */
+    @Test
+    public void testSheetFiles() throws IOException {
+        System.out.println( "sheetFiles" );
+        File file = new File( folder.getRoot(), "result.csv" );
+        ListExportData data = createData();
+        data.addSheet( "Stats: a/b", Arrays.asList( "Key", "Value" ), rows( row( "total", 12 ) ) );
+        new StreamingCsvExporter( null, StreamingCsvExporter.CSV_DELIMITER ).writeFile( file, data );
+
+        assertTrue( readText( file ).startsWith( "Name,Count,Value,Link\n" ) );
+        File sheetFile = new File( folder.getRoot(), "result_2_Stats_ a_b.csv" );
+        assertEquals( "Key,Value\ntotal,12\n", readText( sheetFile ) );
+        assertEquals( 2, folder.getRoot().list().length );
+    }
+
+
+    /**
+     * Test of writeFile method, of class StreamingCsvExporter. Files ending
+     * with ".gz" are gzip compressed, the sheet files keep the ".gz" suffix
+     * and the uncompressed content equals the one of uncompressed files.
+     */
+    @Test
+    public void testGzip() throws IOException {
+        System.out.println( "gzip" );
+        ListExportData data = createData();
+        data.addSheet( "Statistics", Arrays.asList( "Key", "Value" ), rows( row( "total", 12 ) ) );
+        File plainFile = new File( folder.getRoot(), "plain.tsv" );
+        File gzipFile = new File( folder.getRoot(), "packed.tsv.gz" );
+        new StreamingCsvExporter( null, StreamingCsvExporter.TSV_DELIMITER ).writeFile( plainFile, data );
+        new StreamingCsvExporter( null, StreamingCsvExporter.TSV_DELIMITER ).writeFile( gzipFile, data );
+
+        assertEquals( readText( plainFile ), readGzipText( gzipFile ) );
+        assertEquals( readText( new File( folder.getRoot(), "plain_2_Statistics.tsv" ) ),
+                      readGzipText( new File( folder.getRoot(), "packed_2_Statistics.tsv.gz" ) ) );
+    }
+
+
+    /**
+     * @return Export data with a single sheet containing all special cases of
+     *         the quoting tests
+     */
+    static ListExportData createData() throws IOException {
+        List<List<Object>> rows = rows(
+                row( "plain", 1, 0.5, new UrlWithTitle( "Gene", new URL( "http://www.example.org/gene?id=1" ) ) ),
+                row( "a,b", -2L, null, "x,y" ),
+                row( "say \"hi\"", 3, 1e10, null ),
+                row( "two\nlines", 4, Double.NaN, null ),
+                row( "carriage\rreturn", 5, 2.5f, null ),
+                row( "tab\tcell", 6, -0.25, null ),
+                row( "\u00e4\u00f6\u00fc", 7, 3.0, null ) );
+        return new ListExportData().addSheet( "Results", Arrays.asList( "Name", "Count", "Value", "Link" ), rows );
+    }
+
+
+    @SafeVarargs
+    static List<List<Object>> rows( List<Object>... rows ) {
+        return new ArrayList<>( Arrays.asList( rows ) );
+    }
+
+
+    static List<Object> row( Object... values ) {
+        return new ArrayList<>( Arrays.asList( values ) );
+    }
+
+
+    private static String readText( File file ) throws IOException {
+        return new String( Files.readAllBytes( file.toPath() ), StandardCharsets.UTF_8 );
+    }
+
+
+    private static String readGzipText( File file ) throws IOException {
+        try( InputStream in = new GZIPInputStream( new FileInputStream( file ) ) ) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int length;
+            while( (length = in.read( buffer )) > 0 ) {
+                out.write( buffer, 0, length );
+            }
+            return new String( out.toByteArray(), StandardCharsets.UTF_8 );
+        }
+    }
+
+
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.exporter.tables;
+
+
+import de.cebitec.readxplorer.utils.UrlWithTitle;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import static de.cebitec.readxplorer.exporter.tables.StreamingCsvExporterTest.row;
+import static de.cebitec.readxplorer.exporter.tables.StreamingCsvExporterTest.rows;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Test of the {@link StreamingXlsxExporter}. The written workbooks are parsed
+ * with an XML parser and their sheets are compared with the exported data.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class StreamingXlsxExporterTest {
+
+    private static final List<String> HEADER = Arrays.asList( "Position", "Name" );
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    /**
+     * Test of writeFile method, of class StreamingXlsxExporter. With four rows
+     * per sheet including the header, eight rows are split into three sheets,
+     * each starting with the bold header. The following sheet is not affected
+     * by the split.
+     */
+    @Test
+    public void testSplitSheets() throws Exception {
+        System.out.println( "splitSheets" );
+        List<List<Object>> rows = new ArrayList<>();
+        for( int i = 1; i <= 8; ++i ) {
+            rows.add( row( i, "row" + i ) );
+        }
+        ListExportData data = new ListExportData()
+                .addSheet( "Results", HEADER, rows )
+                .addSheet( "Statistics", Collections.singletonList( "Statistics Table" ), rows( row( "total", 8 ) ) );
+        File file = folder.newFile( "split.xlsx" );
+        new StreamingXlsxExporter( null, 4 ).writeFile( file, data );
+
+        try( ZipFile workbook = new ZipFile( file ) ) {
+            assertEquals( Arrays.asList( "Results", "ResultsI", "ResultsI2", "Statistics" ), readSheetNames( workbook ) );
+            int row = 0;
+            for( int sheet = 0; sheet < 3; ++sheet ) {
+                Element sheetData = readSheetData( workbook, sheet );
+                NodeList rowNodes = sheetData.getElementsByTagName( "row" );
+                assertEquals( sheet < 2 ? 4 : 3, rowNodes.getLength() );
+                assertEquals( HEADER, readRow( (Element) rowNodes.item( 0 ) ) );
+                assertBold( (Element) rowNodes.item( 0 ) );
+                for( int i = 1; i < rowNodes.getLength(); ++i ) {
+                    Element rowNode = (Element) rowNodes.item( i );
+                    assertEquals( Integer.toString( i + 1 ), rowNode.getAttribute( "r" ) );
+                    ++row;
+                    assertEquals( Arrays.asList( Integer.toString( row ), "row" + row ), readRow( rowNode ) );
+                }
+            }
+            assertEquals( 8, row );
+            NodeList statsRows = readSheetData( workbook, 3 ).getElementsByTagName( "row" );
+            assertEquals( 2, statsRows.getLength() );
+            assertEquals( Arrays.asList( "total", "8" ), readRow( (Element) statsRows.item( 1 ) ) );
+        }
+    }
+
+
+    /**
+     * Test of writeFile method, of class StreamingXlsxExporter. A sheet
+     * filling the maximum number of rows exactly is not continued in another
+     * sheet.
+     */
+    @Test
+    public void testFullSheet() throws Exception {
+        System.out.println( "fullSheet" );
+        ListExportData data = new ListExportData()
+                .addSheet( "Results", HEADER, rows( row( 1, "a" ), row( 2, "b" ), row( 3, "c" ) ) );
+        File file = folder.newFile( "full.xlsx" );
+        new StreamingXlsxExporter( null, 4 ).writeFile( file, data );
+
+        try( ZipFile workbook = new ZipFile( file ) ) {
+            assertEquals( Collections.singletonList( "Results" ), readSheetNames( workbook ) );
+            assertEquals( 4, readSheetData( workbook, 0 ).getElementsByTagName( "row" ).getLength() );
+        }
+    }
+
+
+    /**
+     * Test of writeFile method, of class StreamingXlsxExporter. XML markup in
+     * texts is escaped and control characters, which are not allowed in XML,
+     * are removed, so the sheet stays parseable. Tabs and line breaks are kept,
+     * carriage returns are written as character reference to survive the line
+     * break normalization of XML parsers.
+     */
+    @Test
+    public void testEscaping() throws Exception {
+        System.out.println( "escaping" );
+        String text = "<a href=\"x\">&amp;</a>\u0000\u0001bell\u0007\u000b\u001f\ttab\nline\rreturn";
+        ListExportData data = new ListExportData()
+                .addSheet( "Results", HEADER, rows( row( 1, text ) ) );
+        File file = folder.newFile( "escaping.xlsx" );
+        new StreamingXlsxExporter( null ).writeFile( file, data );
+
+        try( ZipFile workbook = new ZipFile( file ) ) {
+            Element rowNode = (Element) readSheetData( workbook, 0 ).getElementsByTagName( "row" ).item( 1 );
+            assertEquals( Arrays.asList( "1", "<a href=\"x\">&amp;</a>bell\ttab\nline\rreturn" ), readRow( rowNode ) );
+        }
+    }
+
+
+    /**
+     * Test of writeFile method, of class StreamingXlsxExporter. Numbers are
+     * written as numeric cells, empty cells are skipped, NaN is written as text
+     * and links are written as HYPERLINK formula showing their title.
+     */
+    @Test
+    public void testCellTypes() throws Exception {
+        System.out.println( "cellTypes" );
+        UrlWithTitle link = new UrlWithTitle( "EC 1.1.1.1", new URL( "http://www.example.org/ec?id=\"1\"" ) );
+        ListExportData data = new ListExportData()
+                .addSheet( "Results", Arrays.asList( "A", "B", "C", "D", "E" ), rows( row( 42L, 0.5, null, Double.NaN, link ) ) );
+        File file = folder.newFile( "types.xlsx" );
+        new StreamingXlsxExporter( null ).writeFile( file, data );
+
+        try( ZipFile workbook = new ZipFile( file ) ) {
+            NodeList cells = ((Element) readSheetData( workbook, 0 ).getElementsByTagName( "row" ).item( 1 )).getElementsByTagName( "c" );
+            assertEquals( 4, cells.getLength() );
+            assertEquals( "", ((Element) cells.item( 0 )).getAttribute( "t" ) );
+            assertEquals( "B2", ((Element) cells.item( 1 )).getAttribute( "r" ) );
+            assertEquals( "D2", ((Element) cells.item( 2 )).getAttribute( "r" ) );
+            assertEquals( "inlineStr", ((Element) cells.item( 2 )).getAttribute( "t" ) );
+            Element linkCell = (Element) cells.item( 3 );
+            assertEquals( "str", linkCell.getAttribute( "t" ) );
+            assertEquals( "HYPERLINK(\"http://www.example.org/ec?id=\"\"1\"\"\",\"EC 1.1.1.1\")",
+                          linkCell.getElementsByTagName( "f" ).item( 0 ).getTextContent() );
+            assertEquals( Arrays.asList( "42", "0.5", "", "NaN", "EC 1.1.1.1" ),
+                          readRow( (Element) readSheetData( workbook, 0 ).getElementsByTagName( "row" ).item( 1 ) ) );
+        }
+    }
+
+
+    /**
+     * Test of writeFile method, of class StreamingXlsxExporter. Characters not
+     * allowed in sheet names are replaced, long names are shortened to 31
+     * characters and duplicate names get a number.
+     */
+    @Test
+    public void testSheetNames() throws Exception {
+        System.out.println( "sheetNames" );
+        String longName = "A very long sheet name exceeding the limit";
+        ListExportData data = new ListExportData()
+                .addSheet( "a/b:c", HEADER, rows() )
+                .addSheet( longName, HEADER, rows() )
+                .addSheet( longName, HEADER, rows() );
+        File file = folder.newFile( "names.xlsx" );
+        new StreamingXlsxExporter( null ).writeFile( file, data );
+
+        try( ZipFile workbook = new ZipFile( file ) ) {
+            assertEquals( Arrays.asList( "a_b_c", longName.substring( 0, 31 ), longName.substring( 0, 29 ) + "_2" ),
+                          readSheetNames( workbook ) );
+        }
+    }
+
+
+    /**
+     * Test of copySheet method, of class StreamingXlsxExporter. Sheets of two
+     * workbooks are copied unchanged into a new workbook under new names.
+     * Copying a missing sheet fails.
+     */
+    @Test
+    public void testCopySheet() throws Exception {
+        System.out.println( "copySheet" );
+        File first = folder.newFile( "first.xlsx" );
+        File second = folder.newFile( "second.xlsx" );
+        new StreamingXlsxExporter( null ).writeFile( first, new ListExportData()
+                .addSheet( "Results", HEADER, rows( row( 1, "first" ) ) )
+                .addSheet( "Statistics", HEADER, rows( row( 2, "stats" ) ) ) );
+        new StreamingXlsxExporter( null ).writeFile( second, new ListExportData()
+                .addSheet( "Results", HEADER, rows( row( 3, "second" ) ) ) );
+
+        File merged = folder.newFile( "merged.xlsx" );
+        StreamingXlsxExporter exporter = new StreamingXlsxExporter( null );
+        exporter.open( merged );
+        try {
+            exporter.copySheet( first, 1, "statistics" );
+            exporter.copySheet( first, 0, "first" );
+            exporter.copySheet( second, 0, "second" );
+            try {
+                exporter.copySheet( second, 1, "missing" );
+                fail( "Copying a missing sheet has to fail" );
+            } catch( IOException e ) {
+                //expected
+            }
+        } finally {
+            exporter.close();
+        }
+
+        try( ZipFile workbook = new ZipFile( merged ) ) {
+            assertEquals( Arrays.asList( "statistics", "first", "second" ), readSheetNames( workbook ) );
+            assertEquals( Arrays.asList( "2", "stats" ), readRow( (Element) readSheetData( workbook, 0 ).getElementsByTagName( "row" ).item( 1 ) ) );
+            assertEquals( Arrays.asList( "1", "first" ), readRow( (Element) readSheetData( workbook, 1 ).getElementsByTagName( "row" ).item( 1 ) ) );
+            assertEquals( Arrays.asList( "3", "second" ), readRow( (Element) readSheetData( workbook, 2 ).getElementsByTagName( "row" ).item( 1 ) ) );
+        }
+    }
+
+
+    private static List<String> readSheetNames( ZipFile workbook ) throws IOException, ParserConfigurationException, SAXException {
+        NodeList sheets = parse( workbook, "xl/workbook.xml" ).getElementsByTagName( "sheet" );
+        List<String> names = new ArrayList<>();
+        for( int i = 0; i < sheets.getLength(); ++i ) {
+            names.add( ((Element) sheets.item( i )).getAttribute( "name" ) );
+        }
+        return names;
+    }
+
+
+    private static Element readSheetData( ZipFile workbook, int sheetIndex ) throws IOException, ParserConfigurationException, SAXException {
+        Document sheet = parse( workbook, "xl/worksheets/sheet" + (sheetIndex + 1) + ".xml" );
+        return (Element) sheet.getElementsByTagName( "sheetData" ).item( 0 );
+    }
+
+
+    private static Document parse( ZipFile workbook, String entryName ) throws IOException, ParserConfigurationException, SAXException {
+        ZipEntry entry = workbook.getEntry( entryName );
+        assertNotNull( entryName, entry );
+        try( InputStream in = workbook.getInputStream( entry ) ) {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse( in );
+        }
+    }
+
+
+    /**
+     * @param rowNode a row element of a sheet
+     * <p>
+     * @return The texts of all cells of the row, skipped cells are returned as
+     *         empty text
+     */
+    private static List<String> readRow( Element rowNode ) {
+        List<String> values = new ArrayList<>();
+        NodeList cells = rowNode.getElementsByTagName( "c" );
+        for( int i = 0; i < cells.getLength(); ++i ) {
+            Element cell = (Element) cells.item( i );
+            int column = cell.getAttribute( "r" ).charAt( 0 ) - 'A';
+            while( values.size() < column ) {
+                values.add( "" );
+            }
+            assertTrue( cell.getAttribute( "r" ).endsWith( rowNode.getAttribute( "r" ) ) );
+            String tag = "inlineStr".equals( cell.getAttribute( "t" ) ) ? "t" : "v";
+            values.add( cell.getElementsByTagName( tag ).item( 0 ).getTextContent() );
+        }
+        return values;
+    }
+
+
+    private static void assertBold( Element rowNode ) {
+        NodeList cells = rowNode.getElementsByTagName( "c" );
+        for( int i = 0; i < cells.getLength(); ++i ) {
+            assertEquals( "1", ((Element) cells.item( i )).getAttribute( "s" ) );
+        }
+    }
+
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.exporter.tables;
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static de.cebitec.readxplorer.exporter.tables.StreamingCsvExporterTest.row;
+import static de.cebitec.readxplorer.exporter.tables.StreamingCsvExporterTest.rows;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the selection of the table format by the
+ * {@link TableExportFileChooser}.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class TableExportFileChooserTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    /**
+     * Test of createStreamingExporter method, of class TableExportFileChooser.
+     * The format is chosen by the file extension regardless of its case: tsv
+     * files are tab separated like the csv files of former versions, csv
+     * files are comma separated and ".gz" files are compressed.
+     */
+    @Test
+    public void testCreateStreamingExporter() throws IOException {
+        System.out.println( "createStreamingExporter" );
+        assertEquals( "a\tb\n1\t2\n", export( "table.tsv", false ) );
+        assertEquals( "a\tb\n1\t2\n", export( "table.TSV", false ) );
+        assertEquals( "a\tb\n1\t2\n", export( "table.tsv.gz", true ) );
+        assertEquals( "a,b\n1,2\n", export( "table.csv", false ) );
+        assertEquals( "a,b\n1,2\n", export( "table.Csv.gz", true ) );
+        assertEquals( "a,b\n1,2\n", export( "table.txt", false ) );
+        assertTrue( TableExportFileChooser.createStreamingExporter( new File( "table.XLSX" ), null ) instanceof StreamingXlsxExporter );
+    }
+
+
+    /**
+     * Test of getTableFileExtensions method, of class TableExportFileChooser.
+     * The descriptions of the text formats name their delimiter, because the
+     * tab separated format moved from the csv to the tsv filter.
+     */
+    @Test
+    public void testGetTableFileExtensions() {
+        System.out.println( "getTableFileExtensions" );
+        FileNameExtensionFilter[] filters = TableExportFileChooser.getTableFileExtensions();
+        assertEquals( 6, filters.length );
+        assertEquals( Arrays.asList( TableExportFileChooser.CSV_EXTENSIONS ), Arrays.asList( filters[0].getExtensions() ) );
+        assertTrue( filters[0].getDescription().contains( "comma" ) );
+        assertEquals( Arrays.asList( TableExportFileChooser.TSV_EXTENSIONS ), Arrays.asList( filters[2].getExtensions() ) );
+        assertTrue( filters[2].getDescription().contains( "tab" ) );
+        assertTrue( filters[2].getDescription().contains( "former csv" ) );
+    }
+
+
+    private String export( String fileName, boolean gzip ) throws IOException {
+        File file = new File( folder.getRoot(), fileName );
+        ListExportData data = new ListExportData().addSheet( "Results", Arrays.asList( "a", "b" ), rows( row( 1, 2 ) ) );
+        TableExportFileChooser.createStreamingExporter( file, null ).writeFile( file, data );
+        if( !gzip ) {
+            return new String( Files.readAllBytes( file.toPath() ), StandardCharsets.UTF_8 );
+        }
+        try( InputStream in = new GZIPInputStream( new FileInputStream( file ) ) ) {
+            byte[] buffer = new byte[1024];
+            int length = in.read( buffer );
+            return new String( buffer, 0, length, StandardCharsets.UTF_8 );
+        }
+    }
+
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.parser;
+
+
+import de.cebitec.readxplorer.utils.SamUtils;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.openide.util.NbPreferences;
+
+
+/**
+ * Schedules the import of several independent track jobs. The jobs are
+ * imported concurrently by a pool of import threads, while their results are
+ * stored one after another in the thread calling
+ * {@link #importTracks(ResultWriter)}. Thus, the database is only written by a
+ * single thread and the transactions of different tracks never interleave.
+ * <p>
+ * Each running import gets its share of the records
+ * {@link SamUtils#determineMaxRecordsInRam(File)} allows to keep in memory and
+ * a directory for its temporary files, which has enough usable space left
+ * after subtracting the space reserved by the other running imports.
+ * <p>
+ * @param <T> type of the result of a single import
+ * <p>
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class ImportJobScheduler<T> {
+
+    /**
+     * Preference key for the number of track jobs imported concurrently.
+     */
+    public static final String PROP_IMPORT_THREADS = "ImportJobScheduler.Threads";
+
+    /**
+     * Temporary files of an import need at most the space of the name sorted
+     * and the coordinate sorted copy of the input file.
+     */
+    private static final int TMP_SPACE_FACTOR = 2;
+
+    private final int nbThreads;
+    private final List<TrackJob> trackJobs;
+    private final List<Callable<T>> importTasks;
+    private final Map<File, Long> reservedSpace;
+
+
+    /**
+     * Schedules the import of several independent track jobs.
+     * <p>
+     * @param nbThreads maximum number of track jobs imported concurrently
+     */
+    public ImportJobScheduler( int nbThreads ) {
+        this.nbThreads = Math.max( 1, nbThreads );
+        this.trackJobs = new ArrayList<>();
+        this.importTasks = new ArrayList<>();
+        this.reservedSpace = new HashMap<>();
+    }
+
+
+    /**
+     * @return The number of track jobs imported concurrently stored in the
+     *         preferences. By default, half of the available processors are
+     *         used, because each import runs its own reading and
+     *         classification threads.
+     */
+    public static int getDefaultThreadCount() {
+        int defaultThreads = Math.max( 1, Runtime.getRuntime().availableProcessors() / 2 );
+        return NbPreferences.forModule( Object.class ).getInt( PROP_IMPORT_THREADS, defaultThreads );
+    }
+
+
+    /**
+     * Adds a track job to import. The import task must not access the
+     * database, because the database is only written by the result writer.
+     * <p>
+     * @param trackJob   the track job to import
+     * @param importTask task importing the track job
+     */
+    public void addJob( TrackJob trackJob, Callable<T> importTask ) {
+        trackJobs.add( trackJob );
+        importTasks.add( importTask );
+    }
+
+
+    /**
+     * Imports all added track jobs and hands their results to the writer in
+     * the order in which the imports finish. The writer runs in the calling
+     * thread. If an import task or the writer fails, the remaining imports are
+     * cancelled.
+     * <p>
+     * @param writer writer storing the result of a single import
+     * <p>
+     * @throws InterruptedException if the calling thread was interrupted while
+     *                              waiting for the imports
+     * @throws ExecutionException   if an import task or the writer failed
+     */
+    public void importTracks( ResultWriter<T> writer ) throws InterruptedException, ExecutionException {
+        if( trackJobs.isEmpty() ) {
+            return;
+        }
+
+        final int parallelImports = Math.min( nbThreads, trackJobs.size() );
+        ExecutorService executor = Executors.newFixedThreadPool( parallelImports, runnable -> {
+            Thread thread = new Thread( runnable, "ImportJobScheduler.Import" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        try {
+            CompletionService<T> completionService = new ExecutorCompletionService<>( executor );
+            Map<Future<T>, TrackJob> runningJobs = new HashMap<>();
+            for( int i = 0; i < trackJobs.size(); ++i ) {
+                final TrackJob trackJob = trackJobs.get( i );
+                final Callable<T> importTask = importTasks.get( i );
+                runningJobs.put( completionService.submit( () -> this.runImport( trackJob, importTask, parallelImports ) ), trackJob );
+            }
+
+            while( !runningJobs.isEmpty() ) {
+                Future<T> finishedJob = completionService.take();
+                T result = finishedJob.get();
+                try {
+                    writer.write( runningJobs.remove( finishedJob ), result );
+                } catch( Exception e ) {
+                    throw new ExecutionException( e );
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Runs a single import task with its share of the memory and a temporary
+     * directory with enough space.
+     * <p>
+     * @param trackJob        the track job to import
+     * @param importTask      task importing the track job
+     * @param parallelImports number of imports running at the same time
+     * <p>
+     * @return The result of the import task
+     * <p>
+     * @throws Exception any exception of the import task
+     */
+    private T runImport( TrackJob trackJob, Callable<T> importTask, int parallelImports ) throws Exception {
+        File inputFile = trackJob.getFile();
+        long requiredSpace = inputFile.length() * TMP_SPACE_FACTOR;
+        File tmpDir = this.reserveTempDirectory( inputFile, requiredSpace );
+        SamUtils.setImportBudget( parallelImports, tmpDir );
+        try {
+            return importTask.call();
+        } finally {
+            SamUtils.clearImportBudget();
+            this.releaseTempDirectory( tmpDir, requiredSpace );
+        }
+    }
+
+
+    /**
+     * Selects the first candidate directory for temporary files, which has
+     * enough usable space after subtracting the space reserved by other
+     * imports. If no candidate is large enough, the one with the most space
+     * left is selected.
+     * <p>
+     * @param inputFile     file to import
+     * @param requiredSpace space needed by the temporary files in bytes
+     * <p>
+     * @return The reserved directory or <code>null</code>, if no candidate
+     *         directory exists. Then the configured directory is used.
+     */
+    private synchronized File reserveTempDirectory( File inputFile, long requiredSpace ) {
+        File selectedDir = null;
+        long maxSpace = Long.MIN_VALUE;
+        for( File dir : SamUtils.getTempImportDirectoryCandidates( inputFile ) ) {
+            long usableSpace = dir.getUsableSpace() - reservedSpace.getOrDefault( dir, 0L );
+            if( usableSpace >= requiredSpace ) {
+                selectedDir = dir;
+                break;
+            }
+            if( usableSpace > maxSpace ) {
+                maxSpace = usableSpace;
+                selectedDir = dir;
+            }
+        }
+        if( selectedDir != null ) {
+            reservedSpace.merge( selectedDir, requiredSpace, Long::sum );
+        }
+        return selectedDir;
+    }
+
+
+    /**
+     * Releases the space reserved in a temporary directory.
+     * <p>
+     * @param tmpDir        the reserved directory, may be <code>null</code>
+     * @param requiredSpace the reserved space in bytes
+     */
+    private synchronized void releaseTempDirectory( File tmpDir, long requiredSpace ) {
+        if( tmpDir != null ) {
+            reservedSpace.merge( tmpDir, -requiredSpace, Long::sum );
+        }
+    }
+
+
+    /**
+     * Stores the result of a single import, e.g. in the database.
+     * <p>
+     * @param <T> type of the result of a single import
+     */
+    @FunctionalInterface
+    public interface ResultWriter<T> {
+
+        /**
+         * Stores the result of a single import. Only called by the thread
+         * running {@link ImportJobScheduler#importTracks(ResultWriter)}.
+         * <p>
+         * @param trackJob the imported track job
+         * @param result   the result of its import task
+         * <p>
+         * @throws Exception if storing the result failed
+         */
+        void write( TrackJob trackJob, T result ) throws Exception;
+
+
+    }
+
+
+}
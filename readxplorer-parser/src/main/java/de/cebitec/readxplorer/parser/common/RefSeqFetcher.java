@@ -23,6 +23,7 @@ import de.cebitec.readxplorer.utils.Observer;
 import htsjdk.samtools.reference.IndexedFastaSequenceFile;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
@@ -99,6 +100,20 @@ public class RefSeqFetcher implements Observable {
     }
 
 
+    /**
+     * Closes the reference file. Afterwards, no more sequences can be fetched.
+     */
+    public void close() {
+        if( refFile != null ) {
+            try {
+                refFile.close();
+            } catch( IOException e ) {
+                LOG.error( e.getMessage(), e );
+            }
+        }
+    }
+
+
     @Override
     public void registerObserver( Observer observer ) {
         this.observers.add( observer );
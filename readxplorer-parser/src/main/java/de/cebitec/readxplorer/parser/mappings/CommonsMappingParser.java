@@ -37,6 +37,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import org.openide.util.NbBundle;
 import org.slf4j.Logger;
@@ -876,11 +877,29 @@ public final class CommonsMappingParser {
      */
     public static void writeSamRecord( final Map<SAMRecord, Integer> diffMap, ParsedClassification classificationData,
                                        final SAMFileWriter samBamWriter ) {
+        CommonsMappingParser.writeSamRecord( diffMap, classificationData, samBamWriter::addAlignment );
+    }
+
+
+    /**
+     * Adds the classificationData (type and number of mapped positions) to the
+     * SAM records in the diffMap. After extending the SAM records, they are
+     * handed to the given record consumer, e.g. a sorter. The diffMap is
+     * cleared afterwards.
+     * <p>
+     * @param diffMap            map of sam records to the number of differences
+     *                           to the reference
+     * @param classificationData parsed classification data to add to the
+     *                           records
+     * @param recordConsumer     consumer of the extended SAM records
+     */
+    public static void writeSamRecord( final Map<SAMRecord, Integer> diffMap, ParsedClassification classificationData,
+                                       final Consumer<SAMRecord> recordConsumer ) {
 
         //store data and clear data structure, if new read name is reached - file needs to be sorted by read name
         CommonsMappingParser.addClassificationData( diffMap, classificationData );
         for( SAMRecord rec : diffMap.keySet() ) {
-            samBamWriter.addAlignment( rec );
+            recordConsumer.accept( rec );
         }
 
         //reset data structures for next read name
@@ -936,22 +955,45 @@ public final class CommonsMappingParser {
 //            H not needed, because these bases are not present in the read
 //            sequence!
 
-            //count differences to reference
-            final int start = record.getAlignmentStart();
-            final int stop = record.getAlignmentEnd();
-            String refSeq = refSeqFetcher.getSubSequence( record.getReferenceName(), start, stop );
-            boolean isRevStrand = record.getReadNegativeStrandFlag();
-            final String cigar = record.getCigarString();
-            DiffAndGapResult diffGapResult = CommonsMappingParser.createDiffsAndGaps( cigar, readSeq, refSeq, isRevStrand, start );
-            int mismatches = diffGapResult.getDifferences();
-            diffMap.put( record, mismatches );
-            classificationData.addReadStart( start );
-            classificationData.updateMinMismatches( mismatches );
-            classificationData.updateMismatchCountMap( mismatches );
+            CommonsMappingParser.addMismatches( record, readSeq, refSeqFetcher, diffMap, classificationData );
         }
         return isConsistent;
     }
 
+
+    /**
+     * Counts the differences of a consistent mapping to the reference and
+     * stores them in the given diffMap and classificationData. This is the
+     * expensive part of {@link #classifyRead(SAMRecord, MessageSenderI, Map,
+     * String, int, RefSeqFetcher, Map, ParsedClassification)}, which can be
+     * carried out separately from checking the mapping.
+     * <p>
+     * @param record             record to classify
+     * @param readSeq            read sequence of the record
+     * @param refSeqFetcher      a fetcher for the reference sequence
+     * @param diffMap            map of sam records to the number of differences
+     *                           to the reference, is updated by this method
+     * @param classificationData object in which the classification data is
+     *                           stored by this method
+     */
+    public static void addMismatches( final SAMRecord record, final String readSeq,
+                                      final RefSeqFetcher refSeqFetcher,
+                                      final Map<SAMRecord, Integer> diffMap,
+                                      final ParsedClassification classificationData ) {
+        //count differences to reference
+        final int start = record.getAlignmentStart();
+        final int stop = record.getAlignmentEnd();
+        String refSeq = refSeqFetcher.getSubSequence( record.getReferenceName(), start, stop );
+        boolean isRevStrand = record.getReadNegativeStrandFlag();
+        final String cigar = record.getCigarString();
+        DiffAndGapResult diffGapResult = CommonsMappingParser.createDiffsAndGaps( cigar, readSeq, refSeq, isRevStrand, start );
+        int mismatches = diffGapResult.getDifferences();
+        diffMap.put( record, mismatches );
+        classificationData.addReadStart( start );
+        classificationData.updateMinMismatches( mismatches );
+        classificationData.updateMismatchCountMap( mismatches );
+    }
+
 //    /**
 //     * converts the the decimal number into binary code and checks if 16 is 1 or 0
 //     * @param flag contains information wheater the read is mapped on the rev or fw strand
@@ -190,4 +190,10 @@ public class JokToBamDirectParser implements MappingParserI, Observer {
     }
 
 
+    @Override
+    public MappingParserI newInstance() {
+        return new JokToBamDirectParser();
+    }
+
+
 }
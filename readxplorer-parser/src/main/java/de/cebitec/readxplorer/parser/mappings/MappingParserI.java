@@ -71,4 +71,14 @@ public interface MappingParserI extends ParserI, Observable, PreprocessorI {
     void setStatsContainer( StatsContainer statsContainer );
 
 
+    /**
+     * Creates a new parser of the same type, which does not share any state
+     * with this parser. Each track job imported concurrently needs its own
+     * parser.
+     * <p>
+     * @return A new parser of the same type with the same configuration
+     */
+    MappingParserI newInstance();
+
+
 }
@@ -0,0 +1,457 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.parser.mappings;
+
+
+import de.cebitec.readxplorer.parser.common.ParsedClassification;
+import de.cebitec.readxplorer.parser.common.RefSeqFetcher;
+import de.cebitec.readxplorer.utils.Observer;
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openide.util.NbPreferences;
+
+
+/**
+ * Pipeline for the read classification of an import. The reading thread
+ * groups the records by read name and hands the groups over to this pipeline.
+ * Worker threads count the differences of all records of a group to the
+ * reference, which is the expensive part of the classification. Afterwards, a
+ * single writer thread hands the classified groups to the
+ * {@link GroupHandler} in the order in which they were added. Thus, the
+ * output is identical to classifying all groups one after another in the
+ * reading thread, which is done for a thread count of 0.
+ * <p>
+ * The groups travel in batches through a bounded ring buffer, so the reading
+ * thread is blocked, if the workers or the writer cannot keep up with it.
+ * <p>
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class ReadClassificationPipeline implements AutoCloseable {
+
+    /**
+     * Preference key for the number of worker threads classifying reads
+     * during an import. 0 classifies all reads in the reading thread.
+     */
+    public static final String PROP_CLASSIFICATION_THREADS = "ReadClassificationPipeline.Threads";
+
+    private static final int BATCH_SIZE = 512;
+    private static final int BATCHES_PER_THREAD = 4;
+    private static final Future<List<ReadGroup>> END_OF_INPUT = CompletableFuture.completedFuture( Collections.<ReadGroup>emptyList() );
+
+    private final File fastaFile;
+    private final Observer observer;
+    private final SAMFileHeader.SortOrder sortOrder;
+    private final int nbThreads;
+    private final GroupHandler groupHandler;
+    private final List<RefSeqFetcher> refSeqFetchers;
+    private final ThreadLocal<RefSeqFetcher> threadRefSeqFetcher;
+    private final ThreadLocal<Map<SAMRecord, Integer>> threadDiffMap;
+
+    private final ExecutorService workers;
+    private final BlockingQueue<Future<List<ReadGroup>>> ringBuffer;
+    private final Thread writerThread;
+    private volatile Throwable pipelineError;
+
+    private List<ReadGroup> batch;
+    private ReadGroup currentGroup;
+    private int groupId;
+
+
+    /**
+     * Pipeline for the read classification of an import.
+     * <p>
+     * @param fastaFile    indexed fasta file of the reference, each worker
+     *                     thread opens its own reader for it
+     * @param observer     observer for error messages of the reference
+     *                     readers
+     * @param sortOrder    sort order of the classified records
+     * @param nbThreads    number of worker threads. With 0 threads, the
+     *                     groups are classified and written directly in the
+     *                     thread adding the records.
+     * @param groupHandler handler receiving the classified groups
+     */
+    public ReadClassificationPipeline( File fastaFile, Observer observer, SAMFileHeader.SortOrder sortOrder, int nbThreads,
+                                       GroupHandler groupHandler ) {
+        this.fastaFile = fastaFile;
+        this.observer = observer;
+        this.sortOrder = sortOrder;
+        this.nbThreads = Math.max( 0, nbThreads );
+        this.groupHandler = groupHandler;
+        this.refSeqFetchers = Collections.synchronizedList( new ArrayList<>() );
+        this.threadRefSeqFetcher = ThreadLocal.withInitial( this::createRefSeqFetcher );
+        this.threadDiffMap = ThreadLocal.withInitial( () -> new HashMap<>( 1024 ) );
+        this.batch = new ArrayList<>( BATCH_SIZE );
+        this.groupId = 1;
+        this.currentGroup = new ReadGroup( groupId, sortOrder );
+
+        if( this.nbThreads > 0 ) {
+            this.workers = Executors.newFixedThreadPool( this.nbThreads, runnable -> {
+                Thread thread = new Thread( runnable, "ReadClassificationPipeline.Worker" );
+                thread.setDaemon( true );
+                return thread;
+            } );
+            this.ringBuffer = new ArrayBlockingQueue<>( this.nbThreads * BATCHES_PER_THREAD );
+            this.writerThread = new Thread( this::writeGroups, "ReadClassificationPipeline.Writer" );
+            this.writerThread.setDaemon( true );
+            this.writerThread.start();
+        } else {
+            this.workers = null;
+            this.ringBuffer = null;
+            this.writerThread = null;
+        }
+    }
+
+
+    /**
+     * @return The number of worker threads for classifying reads stored in
+     *         the preferences. By default, all but one of the available
+     *         processors are used, as the reading thread needs one.
+     */
+    public static int getDefaultThreadCount() {
+        int defaultThreads = Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 );
+        return NbPreferences.forModule( Object.class ).getInt( PROP_CLASSIFICATION_THREADS, defaultThreads );
+    }
+
+
+    /**
+     * Adds a consistent record to the current read name group.
+     * <p>
+     * @param record     the record to classify
+     * @param secondRead <code>true</code>, if the record belongs to the second
+     *                   read of a pair, which is classified separately
+     */
+    public void addRecord( SAMRecord record, boolean secondRead ) {
+        if( secondRead ) {
+            currentGroup.records2.add( record );
+        } else {
+            currentGroup.records1.add( record );
+        }
+    }
+
+
+    /**
+     * Finishes the current read name group and hands it over for
+     * classification. The next added records belong to a new group, whose
+     * group id is increased by one.
+     * <p>
+     * @throws SAMException if the classification in another thread failed
+     */
+    public void finishGroup() {
+        if( nbThreads == 0 ) {
+            this.classify( currentGroup );
+            groupHandler.write( currentGroup );
+        } else {
+            batch.add( currentGroup );
+            if( batch.size() == BATCH_SIZE ) {
+                this.submitBatch();
+            }
+        }
+        currentGroup = new ReadGroup( ++groupId, sortOrder );
+    }
+
+
+    /**
+     * @return <code>true</code>, if no record was added to the current group
+     *         yet, <code>false</code> otherwise
+     */
+    public boolean isGroupEmpty() {
+        return currentGroup.records1.isEmpty() && currentGroup.records2.isEmpty();
+    }
+
+
+    /**
+     * Hands all remaining groups over for classification and waits until all
+     * groups are written. Records of a group, which was not finished, are
+     * discarded.
+     * <p>
+     * @throws SAMException if the classification in another thread failed
+     */
+    public void finish() {
+        if( nbThreads > 0 ) {
+            if( !batch.isEmpty() ) {
+                this.submitBatch();
+            }
+            this.putInRingBuffer( END_OF_INPUT );
+            try {
+                writerThread.join();
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new SAMException( "Read classification was interrupted", e );
+            }
+            this.checkPipelineError();
+        }
+    }
+
+
+    /**
+     * Stops all threads of the pipeline and closes the reference readers.
+     */
+    @Override
+    public void close() {
+        if( nbThreads > 0 ) {
+            workers.shutdownNow();
+            writerThread.interrupt();
+        }
+        synchronized( refSeqFetchers ) {
+            for( RefSeqFetcher refSeqFetcher : refSeqFetchers ) {
+                refSeqFetcher.close();
+            }
+        }
+    }
+
+
+    /**
+     * Submits the current batch of groups to the worker threads and puts the
+     * pending result into the ring buffer.
+     */
+    private void submitBatch() {
+        final List<ReadGroup> groups = batch;
+        batch = new ArrayList<>( BATCH_SIZE );
+        this.putInRingBuffer( workers.submit( () -> {
+            for( ReadGroup group : groups ) {
+                this.classify( group );
+            }
+            return groups;
+        } ) );
+    }
+
+
+    /**
+     * Puts a pending batch into the ring buffer. Waits while the ring buffer
+     * is full.
+     * <p>
+     * @param pendingBatch the pending batch
+     */
+    private void putInRingBuffer( Future<List<ReadGroup>> pendingBatch ) {
+        try {
+            while( !ringBuffer.offer( pendingBatch, 100, TimeUnit.MILLISECONDS ) ) {
+                this.checkPipelineError();
+            }
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new SAMException( "Read classification was interrupted", e );
+        }
+        this.checkPipelineError();
+    }
+
+
+    /**
+     * Rethrows an error of the worker or writer threads in the reading
+     * thread.
+     */
+    private void checkPipelineError() {
+        if( pipelineError instanceof RuntimeException ) {
+            throw (RuntimeException) pipelineError;
+        } else if( pipelineError instanceof Error ) {
+            throw (Error) pipelineError;
+        } else if( pipelineError != null ) {
+            throw new SAMException( "Read classification failed: " + pipelineError.getMessage(), pipelineError );
+        }
+    }
+
+
+    /**
+     * Run by the writer thread: Hands the classified groups to the group
+     * handler in the order of the ring buffer until the end of the input is
+     * reached.
+     */
+    private void writeGroups() {
+        try {
+            Future<List<ReadGroup>> pendingBatch = ringBuffer.take();
+            while( pendingBatch != END_OF_INPUT ) {
+                for( ReadGroup group : pendingBatch.get() ) {
+                    groupHandler.write( group );
+                }
+                pendingBatch = ringBuffer.take();
+            }
+        } catch( ExecutionException e ) {
+            pipelineError = e.getCause();
+            ringBuffer.clear();
+        } catch( Throwable t ) { //errors of the group handler have to be reported to the reading thread
+            pipelineError = t;
+            ringBuffer.clear();
+        }
+    }
+
+
+    /**
+     * Counts the differences of all records of the group to the reference.
+     * <p>
+     * @param group the group to classify
+     */
+    private void classify( ReadGroup group ) {
+        this.classify( group.records1, group.diffMap1, group.class1 );
+        this.classify( group.records2, group.diffMap2, group.class2 );
+        groupHandler.classified( group );
+    }
+
+
+    /**
+     * Counts the differences of the given records to the reference. The
+     * records are first collected in a reused map of this thread and then
+     * copied to the diff map of the group. Thereby, the diff map is iterated
+     * in the same order as the single reused map of the former sequential
+     * classification, on which the read pair classification depends.
+     * <p>
+     * @param records        records to classify
+     * @param diffMap        diff map of the group to fill
+     * @param classification classification of the group to fill
+     */
+    private void classify( List<SAMRecord> records, Map<SAMRecord, Integer> diffMap, ParsedClassification classification ) {
+        if( !records.isEmpty() ) {
+            RefSeqFetcher refSeqFetcher = threadRefSeqFetcher.get();
+            Map<SAMRecord, Integer> reusedDiffMap = threadDiffMap.get();
+            for( SAMRecord record : records ) {
+                CommonsMappingParser.addMismatches( record, record.getReadString(), refSeqFetcher, reusedDiffMap, classification );
+            }
+            diffMap.putAll( reusedDiffMap );
+            reusedDiffMap.clear();
+        }
+    }
+
+
+    /**
+     * @return A new reference reader for the calling thread
+     */
+    private RefSeqFetcher createRefSeqFetcher() {
+        RefSeqFetcher refSeqFetcher = new RefSeqFetcher( fastaFile, observer );
+        refSeqFetchers.add( refSeqFetcher );
+        return refSeqFetcher;
+    }
+
+
+    /**
+     * Handler for the classified read name groups of a
+     * {@link ReadClassificationPipeline}.
+     */
+    public interface GroupHandler {
+
+        /**
+         * Called by the worker thread, which classified the group, directly
+         * after counting the differences of all records. Work, which does not
+         * depend on other groups, like adding the classification tags to the
+         * records, can be done here in parallel. By default, nothing is done.
+         * <p>
+         * @param group the classified group
+         */
+        default void classified( ReadGroup group ) {
+        }
+
+
+        /**
+         * Called for each classified group in the order in which the groups
+         * were added to the pipeline. All calls are made by the same thread.
+         * <p>
+         * @param group the classified group
+         */
+        void write( ReadGroup group );
+
+
+    }
+
+
+    /**
+     * All records with the same read name, separated into the records of the
+     * first and the second read of a pair. After the classification, the
+     * difference maps and classifications contain the data of the records.
+     */
+    public static class ReadGroup {
+
+        private final int groupId;
+        private final List<SAMRecord> records1;
+        private final List<SAMRecord> records2;
+        private final Map<SAMRecord, Integer> diffMap1;
+        private final Map<SAMRecord, Integer> diffMap2;
+        private final ParsedClassification class1;
+        private final ParsedClassification class2;
+
+
+        ReadGroup( int groupId, SAMFileHeader.SortOrder sortOrder ) {
+            this.groupId = groupId;
+            this.records1 = new ArrayList<>( 2 );
+            this.records2 = new ArrayList<>( 2 );
+            this.diffMap1 = new LinkedHashMap<>( 4 );
+            this.diffMap2 = new LinkedHashMap<>( 4 );
+            this.class1 = new ParsedClassification( sortOrder );
+            this.class2 = new ParsedClassification( sortOrder );
+        }
+
+
+        /**
+         * @return Id of the group, the groups are numbered consecutively
+         *         starting with 1
+         */
+        public int getGroupId() {
+            return groupId;
+        }
+
+
+        /**
+         * @return Map of the records of the first read to their number of
+         *         differences to the reference
+         */
+        public Map<SAMRecord, Integer> getDiffMap1() {
+            return diffMap1;
+        }
+
+
+        /**
+         * @return Map of the records of the second read to their number of
+         *         differences to the reference
+         */
+        public Map<SAMRecord, Integer> getDiffMap2() {
+            return diffMap2;
+        }
+
+
+        /**
+         * @return Classification data of the first read
+         */
+        public ParsedClassification getClass1() {
+            return class1;
+        }
+
+
+        /**
+         * @return Classification data of the second read
+         */
+        public ParsedClassification getClass2() {
+            return class2;
+        }
+
+
+    }
+
+
+}
@@ -19,10 +19,11 @@ package de.cebitec.readxplorer.parser.mappings;
 
 
 import de.cebitec.readxplorer.parser.TrackJob;
-import de.cebitec.readxplorer.parser.common.ParsedClassification;
+import de.cebitec.readxplorer.parser.common.ParsedTrack;
 import de.cebitec.readxplorer.parser.common.ParsingException;
-import de.cebitec.readxplorer.parser.common.RefSeqFetcher;
 import de.cebitec.readxplorer.parser.output.SamBamSorter;
+import de.cebitec.readxplorer.parser.output.SamRecordSorter;
+import de.cebitec.readxplorer.parser.output.OffHeapSamSorter;
 import de.cebitec.readxplorer.utils.Benchmark;
 import de.cebitec.readxplorer.utils.ErrorLimit;
 import de.cebitec.readxplorer.utils.GeneralUtils;
@@ -39,15 +40,18 @@ import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordIterator;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.RuntimeEOFException;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import org.openide.util.Exceptions;
 import org.openide.util.NbBundle;
+import org.openide.util.NbPreferences;
 
 import static htsjdk.samtools.ValidationStringency.LENIENT;
 
@@ -62,6 +66,13 @@ import static htsjdk.samtools.ValidationStringency.LENIENT;
  */
 public class SamBamParser implements MappingParserI, Observer, MessageSenderI {
 
+    /**
+     * Preference key for enabling the fused single pass import of
+     * {@link #parseInputAndCreateStats(TrackJob, Map, SamBamStatsParser)}.
+     * It is enabled by default.
+     */
+    public static final String PROP_FUSED_IMPORT = "SamBamParser.FusedImport";
+
     private static final String NAME = "SAM/BAM Parser";
     private static final String[] FILE_EXTENSIONS = new String[]{ "sam", "SAM", "Sam", "bam", "BAM", "Bam" };
     private static final String FILE_DESCRIPTION = "SAM/BAM Read Mappings";
@@ -69,8 +80,10 @@ public class SamBamParser implements MappingParserI, Observer, MessageSenderI {
     private final List<Observer> observers;
     private StatsContainer statsContainer;
     private final ErrorLimit errorLimit;
-    private RefSeqFetcher refSeqFetcher;
+    private int classificationThreads;
     private boolean deleteSortedFile;
+    private int noReads;
+    private int noSkippedReads;
 
 
     /**
@@ -84,6 +97,7 @@ public class SamBamParser implements MappingParserI, Observer, MessageSenderI {
         this.statsContainer = new StatsContainer();
         this.statsContainer.prepareForTrack();
         this.errorLimit = new ErrorLimit( 100 );
+        this.classificationThreads = -1;
     }
 
 
@@ -191,7 +205,6 @@ public class SamBamParser implements MappingParserI, Observer, MessageSenderI {
         // classificationMap); 
         // 5. clear data structures and continue with next read NAME... 
 
-        this.refSeqFetcher = new RefSeqFetcher( trackJob.getRefGen().getFile(), this );
         Boolean success = this.preprocessData( trackJob );
         if( !success ) {
             throw new ParsingException( "Sorting of the input file by read name was not successful. Please either switch your RX temp directory " +
@@ -203,39 +216,290 @@ public class SamBamParser implements MappingParserI, Observer, MessageSenderI {
 
         final File fileSortedByReadName = trackJob.getFile(); //sorted by read NAME bam file
         final long startTime = System.currentTimeMillis();
-        long lastTime = startTime;
         this.notifyObservers( Bundle.Parser_Parsing_Start( fileSortedByReadName.getName() ) );
 
-
-        int noReads = 0;
-        int noSkippedReads = 0;
+        noReads = 0;
+        noSkippedReads = 0;
         SamReaderFactory.setDefaultValidationStringency( LENIENT );
         SamReaderFactory samReaderFactory = SamReaderFactory.make();
         try( final SamReader samReader = samReaderFactory.open( fileSortedByReadName ); ) {
 
             SAMFileHeader.SortOrder sortOrder = samReader.getFileHeader().getSortOrder();
-            SAMFileHeader header = samReader.getFileHeader();
-            header.setSortOrder( SAMFileHeader.SortOrder.coordinate );
-            RefDictionary refDictionary = trackJob.getSequenceDictionary();
-            if( refDictionary != null && refDictionary instanceof SamSeqDictionary ) {
-                header.setSequenceDictionary( ((SamSeqDictionary) refDictionary).getSamDictionary() );
-            }
-            Pair<SAMFileWriter, File> writerAndFile = SamUtils.createSamBamWriter(
-                    fileSortedByReadName, header, false, SamUtils.EXTENDED_STRING );
+            SAMFileHeader header = this.createOutputHeader( samReader, trackJob );
+            Pair<SAMFileWriter, File> writerAndFile = OffHeapSamSorter.createSortingSamBamWriter(
+                    fileSortedByReadName, header, SamUtils.EXTENDED_STRING, this );
             SAMFileWriter bamWriter = writerAndFile.getFirst();
             final File outputFile = writerAndFile.getSecond();
             trackJob.setFile( outputFile );
 
-            //record and read NAME specific variables
-            String lastReadName = "";
-            Map<SAMRecord, Integer> diffMap1 = new HashMap<>( 1024 ); //mapping of record to number of differences
-            Map<SAMRecord, Integer> diffMap2 = new HashMap<>( 1024 ); //mapping of record to number of differences
-            ParsedClassification class1 = new ParsedClassification( sortOrder ); //classification data for all reads with same read NAME
-            ParsedClassification class2 = new ParsedClassification( sortOrder );
-
-            int lineno = 0;
-            
             SAMRecordIterator samItor = samReader.iterator();
+            this.classifyReads( samItor, fileSortedByReadName.getName(), sortOrder, chromLengthMap, trackJob.getRefGen().getFile(),
+                               startTime, bamWriter::addAlignment );
+
+            if( errorLimit.getSkippedCount() > 0 ) {
+                this.notifyObservers( "... " + errorLimit.getSkippedCount() + " more errors occurred" );
+            }
+
+            this.notifyObservers( "Writing extended bam file..." );
+            samItor.close();
+            bamWriter.close();
+
+            success = SamUtils.createBamIndex( outputFile, this );
+
+        } catch( RuntimeEOFException e ) {
+            this.notifyObservers( "Last read in the file is incomplete, ignoring it." );
+        } catch( Exception e ) {
+            this.notifyObservers( e.getMessage() != null ? e.getMessage() : e );
+            Exceptions.printStackTrace( e );
+        }
+
+        //delete the sorted/preprocessed file
+        if( deleteSortedFile ) {
+            try {
+                GeneralUtils.deleteOldWorkFile( fileSortedByReadName );
+            } catch( IOException e ) {
+                this.notifyObservers( e.getMessage() != null ? e.getMessage() : e );
+                Exceptions.printStackTrace( e );
+            }
+        }
+
+        this.notifyObservers( "Reads skipped during parsing due to inconsistent data: " + noSkippedReads );
+        long finish = System.currentTimeMillis();
+        String msg = Bundle.Parser_Parsing_Successfully( fileSortedByReadName.getName() );
+        this.notifyObservers( Benchmark.calculateDuration( startTime, finish, msg ) );
+        statsContainer.increaseValue( StatsContainer.NO_READS, noReads );
+
+        return success;
+    }
+
+
+    /**
+     * Fused import of a sam/bam track: Carries out the same classification as
+     * {@link #parseInput(TrackJob, Map)}, but needs only a single pass over
+     * the stored data. Instead of writing a copy of the input sorted by read
+     * name, the records are sorted by read name in memory and temporary spill
+     * files and classified read name by read name as they leave the sorter.
+     * The classified records are directly handed to a second sorter for the
+     * coordinate order, which runs in parallel to the classification. While
+     * the extended bam file is written from the coordinate sorter, its bam
+     * index and the track statistics of the given statistics parser are
+     * created from the same records. Thus, neither
+     * {@link SamUtils#createBamIndex(File, Observer)} nor
+     * {@link SamBamStatsParser#createTrackStats(TrackJob, Map)} have to read
+     * the extended bam file again.
+     * <p>
+     * @param trackJob       the track job to parse
+     * @param chromLengthMap the map of chromosome names to chromosome length
+     * @param statsParser    the statistics parser creating the track
+     *                       statistics
+     * <p>
+     * @return The parsed track containing the track statistics
+     * <p>
+     * @throws ParsingException if the track could not be imported
+     * @throws OutOfMemoryError
+     */
+    @NbBundle.Messages( { "Parser.Fused.Sorting=Start sorting mappings by read name...",
+                          "Parser.Fused.Writing=Writing extended bam file...",
+                          "# {0} - error message",
+                          "Parser.Fused.Failed=The import of the track failed: {0}" } )
+    public ParsedTrack parseInputAndCreateStats( final TrackJob trackJob, final Map<String, Integer> chromLengthMap,
+                                                 final SamBamStatsParser statsParser ) throws ParsingException, OutOfMemoryError {
+
+        final File inputFile = trackJob.getFile();
+        final long startTime = System.currentTimeMillis();
+        this.notifyObservers( Bundle.Parser_Parsing_Start( inputFile.getName() ) );
+
+        noReads = 0;
+        noSkippedReads = 0;
+        boolean statsStarted = false;
+        File tmpDir = SamUtils.getTempImportDirectory();
+        SamReaderFactory.setDefaultValidationStringency( LENIENT );
+        SamReaderFactory samReaderFactory = SamReaderFactory.make();
+        try( final SamReader samReader = samReaderFactory.open( inputFile );
+             SAMRecordIterator samItor = samReader.iterator();
+             SamRecordSorter nameSorter = SamRecordSorter.create( samReader.getFileHeader().clone(), SAMFileHeader.SortOrder.queryname,
+                                                                  inputFile, 2, tmpDir, this ) ) { //both sorters may hold records at the same time
+
+            final SAMFileHeader.SortOrder sortOrder = samReader.getFileHeader().getSortOrder();
+            final SAMFileHeader header = this.createOutputHeader( samReader, trackJob );
+
+            //1. pass: sort by read name, unless the input already is
+            Iterator<SAMRecord> nameSortedItor = samItor;
+            if( sortOrder != SAMFileHeader.SortOrder.queryname ) {
+                this.notifyObservers( Bundle.Parser_Fused_Sorting() );
+                this.fillSorter( samItor, nameSorter, startTime );
+                nameSortedItor = nameSorter.doneAdding();
+            }
+
+            //classify each read name as it leaves the sorter and sort the result by coordinate in parallel
+            Pair<SAMFileWriter, File> writerAndFile = SamUtils.createIndexingBamWriter( inputFile, header, SamUtils.EXTENDED_STRING );
+            final File outputFile = writerAndFile.getSecond();
+            try( SAMFileWriter bamWriter = writerAndFile.getFirst();
+                 SamRecordSorter coordinateSorter = SamRecordSorter.create( header, SAMFileHeader.SortOrder.coordinate,
+                                                                            inputFile, 2, tmpDir, this ) ) {
+
+                this.classifyReads( nameSortedItor, inputFile.getName(), SAMFileHeader.SortOrder.queryname, chromLengthMap,
+                                    trackJob.getRefGen().getFile(), startTime,
+                                    record -> {
+                                        record.setHeaderStrict( header );
+                                        coordinateSorter.add( record );
+                                    } );
+                nameSorter.close(); //deletes the spill files by read name before the coordinate sorted ones are read
+
+                if( errorLimit.getSkippedCount() > 0 ) {
+                    this.notifyObservers( "... " + errorLimit.getSkippedCount() + " more errors occurred" );
+                }
+
+                //2. pass: write the extended bam file, its index and the track statistics at once
+                this.notifyObservers( Bundle.Parser_Fused_Writing() );
+                trackJob.setFile( outputFile );
+                statsParser.startTrackStats( trackJob, chromLengthMap );
+                statsStarted = true;
+                try( CloseableIterator<SAMRecord> coordinateItor = coordinateSorter.doneAdding() ) {
+                    while( coordinateItor.hasNext() ) {
+                        SAMRecord record = coordinateItor.next();
+                        bamWriter.addAlignment( record );
+                        statsParser.addRecord( record );
+                    }
+                }
+            }
+
+            if( !SamUtils.moveWrittenBamIndex( outputFile, this ) ) {
+                throw new ParsingException( Bundle.Parser_Fused_Failed( "The bam index could not be written." ) );
+            }
+
+        } catch( ParsingException e ) {
+            if( statsStarted ) {
+                statsParser.finishTrackStats( trackJob, false );
+            }
+            throw e;
+        } catch( Exception e ) {
+            this.notifyObservers( e.getMessage() != null ? e.getMessage() : e );
+            Exceptions.printStackTrace( e );
+            if( statsStarted ) {
+                statsParser.finishTrackStats( trackJob, false );
+            }
+            throw new ParsingException( Bundle.Parser_Fused_Failed( e.getMessage() ) );
+        }
+
+        this.notifyObservers( "Reads skipped during parsing due to inconsistent data: " + noSkippedReads );
+        long finish = System.currentTimeMillis();
+        String msg = Bundle.Parser_Parsing_Successfully( inputFile.getName() );
+        this.notifyObservers( Benchmark.calculateDuration( startTime, finish, msg ) );
+        statsContainer.increaseValue( StatsContainer.NO_READS, noReads );
+
+        return statsParser.finishTrackStats( trackJob, true );
+    }
+
+
+    /**
+     * @return <code>true</code>, if tracks shall be imported with the fused
+     *         single pass import of
+     *         {@link #parseInputAndCreateStats(TrackJob, Map, SamBamStatsParser)},
+     *         <code>false</code> if the separate passes of sorting, parsing,
+     *         indexing and creating the statistics shall be used
+     */
+    public static boolean isFusedImportEnabled() {
+        return NbPreferences.forModule( Object.class ).getBoolean( PROP_FUSED_IMPORT, true );
+    }
+
+
+    /**
+     * Creates the header of the extended bam file from the header of the
+     * input file. The extended file is sorted by coordinate and uses the
+     * sequence dictionary of the reference, if available.
+     * <p>
+     * @param samReader reader of the input file
+     * @param trackJob  the track job to parse
+     * <p>
+     * @return The header of the extended bam file
+     */
+    private SAMFileHeader createOutputHeader( SamReader samReader, TrackJob trackJob ) {
+        SAMFileHeader header = samReader.getFileHeader();
+        header.setSortOrder( SAMFileHeader.SortOrder.coordinate );
+        RefDictionary refDictionary = trackJob.getSequenceDictionary();
+        if( refDictionary != null && refDictionary instanceof SamSeqDictionary ) {
+            header.setSequenceDictionary( ((SamSeqDictionary) refDictionary).getSamDictionary() );
+        }
+        return header;
+    }
+
+
+    /**
+     * Adds all records of the input to the given sorter. Only the last record
+     * of a file may be incomplete, it is ignored.
+     * <p>
+     * @param samItor   iterator over the input records
+     * @param sorter    the sorter to fill
+     * @param startTime start time of the import for progress messages
+     */
+    private void fillSorter( Iterator<SAMRecord> samItor, SamRecordSorter sorter, long startTime ) {
+        int lineNo = 0;
+        try {
+            while( samItor.hasNext() ) {
+                try {
+                    sorter.add( samItor.next() );
+                    if( ++lineNo % 500000 == 0 ) {
+                        long finish = System.currentTimeMillis();
+                        this.notifyObservers( Benchmark.calculateDuration( startTime, finish, lineNo + " mappings sorted in " ) );
+                    }
+                } catch( SAMFormatException e ) {
+                    if( !e.getMessage().contains( "MAPQ should be 0" ) ) {
+                        this.sendMsgIfAllowed( e.getMessage() );
+                    } //all reads with the "MAPQ should be 0" error are just ordinary unmapped reads and thus ignored
+                }
+            }
+        } catch( RuntimeEOFException e ) {
+            this.notifyObservers( "Last read in the file is incomplete, ignoring it." );
+        }
+    }
+
+
+    /**
+     * Classifies all reads of the given record iterator, which needs to be
+     * sorted by read name. After all records of a read name are classified,
+     * they are extended by the classification data and handed to the record
+     * consumer. The records are checked and grouped by read name in the
+     * calling thread, while the differences to the reference are counted by
+     * the worker threads of a {@link ReadClassificationPipeline}. The records
+     * are handed to the consumer in the same order as without worker threads.
+     * <p>
+     * @param samItor        iterator over the records sorted by read name
+     * @param fileName       name of the file, from which the records originate
+     * @param sortOrder      sort order of the records
+     * @param chromLengthMap the map of chromosome names to chromosome length
+     * @param fastaFile      indexed fasta file of the reference
+     * @param startTime      start time of the import for progress messages
+     * @param recordConsumer consumer of the classified records, only called
+     *                       by one thread at a time
+     */
+    void classifyReads( Iterator<SAMRecord> samItor, String fileName, SAMFileHeader.SortOrder sortOrder,
+                        Map<String, Integer> chromLengthMap, File fastaFile, long startTime, Consumer<SAMRecord> recordConsumer ) {
+
+        long lastTime = startTime;
+
+        //record and read NAME specific variables
+        String lastReadName = "";
+        int nbThreads = classificationThreads >= 0 ? classificationThreads : ReadClassificationPipeline.getDefaultThreadCount();
+        ReadClassificationPipeline.GroupHandler groupHandler = new ReadClassificationPipeline.GroupHandler() {
+
+            @Override
+            public void classified( ReadClassificationPipeline.ReadGroup group ) {
+                CommonsMappingParser.addClassificationData( group.getDiffMap1(), group.getClass1() );
+                CommonsMappingParser.addClassificationData( group.getDiffMap2(), group.getClass2() );
+            }
+
+
+            @Override
+            public void write( ReadClassificationPipeline.ReadGroup group ) {
+                group.getDiffMap1().keySet().forEach( recordConsumer );
+                group.getDiffMap2().keySet().forEach( recordConsumer );
+            }
+
+        };
+
+        int lineno = 0;
+        try( ReadClassificationPipeline pipeline = new ReadClassificationPipeline( fastaFile, this, sortOrder, nbThreads, groupHandler ) ) {
             while( samItor.hasNext() ) {
                 try {
                     ++lineno;
@@ -244,28 +508,17 @@ public class SamBamParser implements MappingParserI, Observer, MessageSenderI {
                     if( !record.getReadUnmappedFlag() && chromLengthMap.containsKey( record.getReferenceName() ) ) {
 
                         String readName = record.getReadName();
-                        //store data and clear data structure, if new read NAME is reached - file needs to be sorted by read NAME
+                        //hand over data of the last read NAME, if new read NAME is reached - file needs to be sorted by read NAME
                         if( !lastReadName.equals( readName ) ) {
-                            CommonsMappingParser.writeSamRecord( diffMap1, class1, bamWriter );
-                            CommonsMappingParser.writeSamRecord( diffMap2, class2, bamWriter );
-                            class1 = new ParsedClassification( sortOrder );
-                            class2 = new ParsedClassification( sortOrder );
+                            pipeline.finishGroup();
                             ++noReads;
                         }
 
-                        boolean classified;
-                        if( record.getReadPairedFlag() && record.getSecondOfPairFlag() ) {
-                            classified = CommonsMappingParser.classifyRead( record, this, chromLengthMap, fileSortedByReadName.getName(),
-                                                                            lineno, refSeqFetcher, diffMap2, class2 );
-                        } else {
-                            classified = CommonsMappingParser.classifyRead( record, this, chromLengthMap, fileSortedByReadName.getName(),
-                                                                            lineno, refSeqFetcher, diffMap1, class1 );
-                        }
-
-                        if( !classified ) {
+                        if( !CommonsMappingParser.checkReadSam( this, record.getReadString(), fileName, lineno ) ) {
                             ++noSkippedReads;
                             continue; //continue, and ignore read, if it contains inconsistent information
                         }
+                        pipeline.addRecord( record, record.getReadPairedFlag() && record.getSecondOfPairFlag() );
                         lastReadName = readName;
 
 
@@ -293,44 +546,23 @@ public class SamBamParser implements MappingParserI, Observer, MessageSenderI {
                 System.err.flush();
             }
 
-            CommonsMappingParser.writeSamRecord( diffMap1, class1, bamWriter );
-            CommonsMappingParser.writeSamRecord( diffMap2, class2, bamWriter );
+            pipeline.finishGroup();
             ++noReads;
-
-            if( errorLimit.getSkippedCount() > 0 ) {
-                this.notifyObservers( "... " + errorLimit.getSkippedCount() + " more errors occurred" );
-            }
-
-            this.notifyObservers( "Writing extended bam file..." );
-            samItor.close();
-            bamWriter.close();
-
-            success = SamUtils.createBamIndex( outputFile, this );
-
-        } catch( RuntimeEOFException e ) {
-            this.notifyObservers( "Last read in the file is incomplete, ignoring it." );
-        } catch( Exception e ) {
-            this.notifyObservers( e.getMessage() != null ? e.getMessage() : e );
-            Exceptions.printStackTrace( e );
-        }
-
-        //delete the sorted/preprocessed file
-        if( deleteSortedFile ) {
-            try {
-                GeneralUtils.deleteOldWorkFile( fileSortedByReadName );
-            } catch( IOException e ) {
-                this.notifyObservers( e.getMessage() != null ? e.getMessage() : e );
-                Exceptions.printStackTrace( e );
-            }
+            pipeline.finish();
         }
+    }
 
-        this.notifyObservers( "Reads skipped during parsing due to inconsistent data: " + noSkippedReads );
-        long finish = System.currentTimeMillis();
-        String msg = Bundle.Parser_Parsing_Successfully( fileSortedByReadName.getName() );
-        this.notifyObservers( Benchmark.calculateDuration( startTime, finish, msg ) );
-        statsContainer.increaseValue( StatsContainer.NO_READS, noReads );
 
-        return success;
+    /**
+     * Sets the number of worker threads for the read classification. By
+     * default, {@link ReadClassificationPipeline#getDefaultThreadCount()} is
+     * used.
+     * <p>
+     * @param classificationThreads number of worker threads, 0 classifies all
+     *                              reads in the reading thread
+     */
+    public void setClassificationThreads( int classificationThreads ) {
+        this.classificationThreads = classificationThreads;
     }
 
 
@@ -367,7 +599,7 @@ public class SamBamParser implements MappingParserI, Observer, MessageSenderI {
      * @param msg The message to send
      */
     @Override
-    public void sendMsgIfAllowed( final String msg ) {
+    public synchronized void sendMsgIfAllowed( final String msg ) {
         if( this.errorLimit.allowOutput() ) {
             this.notifyObservers( msg );
         }
@@ -386,4 +618,12 @@ public class SamBamParser implements MappingParserI, Observer, MessageSenderI {
     }
 
 
+    @Override
+    public MappingParserI newInstance() {
+        SamBamParser parser = new SamBamParser();
+        parser.setClassificationThreads( classificationThreads );
+        return parser;
+    }
+
+
 }
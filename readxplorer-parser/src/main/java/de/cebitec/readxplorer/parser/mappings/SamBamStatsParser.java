@@ -25,6 +25,7 @@ import de.cebitec.readxplorer.api.enums.SAMRecordTag;
 import de.cebitec.readxplorer.api.enums.TotalCoverage;
 import de.cebitec.readxplorer.parser.TrackJob;
 import de.cebitec.readxplorer.parser.common.ParsedTrack;
+import de.cebitec.readxplorer.parser.output.CoverageIndexWriter;
 import de.cebitec.readxplorer.utils.Benchmark;
 import de.cebitec.readxplorer.utils.DiscreteCountingDistribution;
 import de.cebitec.readxplorer.utils.ErrorLimit;
@@ -33,12 +34,14 @@ import de.cebitec.readxplorer.utils.Observable;
 import de.cebitec.readxplorer.utils.Observer;
 import de.cebitec.readxplorer.utils.Pair;
 import de.cebitec.readxplorer.utils.PositionUtils;
+import de.cebitec.readxplorer.utils.SamUtils;
 import de.cebitec.readxplorer.utils.StatsContainer;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordIterator;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.util.RuntimeEOFException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -52,7 +55,8 @@ import static htsjdk.samtools.ValidationStringency.LENIENT;
 /**
  * Creates and stores the statistics for a track, which needs to be sorted by
  * position. The data to store is directly forwarded to the observer, which
- * should then further process it (store it in the db).
+ * should then further process it (store it in the db). In the same pass, the
+ * coverage index of the track is written (see {@link CoverageIndexWriter}).
  * <p>
  * @author -Rolf Hilker-
  */
@@ -62,6 +66,18 @@ public class SamBamStatsParser implements Observable, MessageSenderI {
     private StatsContainer statsContainer;
     private final DiscreteCountingDistribution readLengthDistribution;
     private final ErrorLimit errorLimit;
+    private final SamUtils samUtils;
+    private CoverageIndexWriter indexWriter;
+
+    //state of the statistics creation for the current track
+    private long startTime;
+    private String fileName;
+    private Map<String, Integer> chromLengthMap;
+    private int lineNo;
+    private String lastReadSeq;
+    private List<Integer> readsDifferentPos;
+    private int seqCount;
+    private Map<String, Map<Classification, List<Pair<Integer, Integer>>>> classToCoveredIntervalsMap;
 
 
     /**
@@ -73,6 +89,7 @@ public class SamBamStatsParser implements Observable, MessageSenderI {
         this.observers = new ArrayList<>();
         this.errorLimit = new ErrorLimit( 100 );
         this.readLengthDistribution = new DiscreteCountingDistribution( 400 );
+        this.samUtils = new SamUtils();
         readLengthDistribution.setType( Distribution.ReadLength );
     }
 
@@ -87,25 +104,57 @@ public class SamBamStatsParser implements Observable, MessageSenderI {
      * <p>
      * @return
      */
-    @SuppressWarnings( "fallthrough" )
+    public ParsedTrack createTrackStats( final TrackJob trackJob, final Map<String, Integer> chromLengthMap ) {
+
+        this.startTrackStats( trackJob, chromLengthMap );
+        boolean success = false;
+        SamReaderFactory.setDefaultValidationStringency( LENIENT );
+        SamReaderFactory samReaderFactory = SamReaderFactory.make();
+        try( final SamReader samBamReader = samReaderFactory.open( trackJob.getFile() );
+             SAMRecordIterator samItor = samBamReader.iterator(); ) {
+            
+            while( samItor.hasNext() ) {
+                this.addRecord( samItor.next() );
+            }
+            success = true;
+        } catch( RuntimeEOFException e ) {
+            this.notifyObservers( "Last read in file is incomplete, ignoring it!" );
+        } catch( Exception e ) {
+            this.notifyObservers( e.getMessage() );
+            Exceptions.printStackTrace( e ); //TODO correct error handling or remove
+        }
+
+        return this.finishTrackStats( trackJob, success );
+    }
+
+
+    /**
+     * Prepares the creation of the global track statistics for the given
+     * track job. Afterwards, all records of the track have to be added sorted
+     * by position via {@link #addRecord(SAMRecord)} and the statistics are
+     * completed by {@link #finishTrackStats(TrackJob, boolean)}. This allows
+     * to create the statistics while the sorted track is written, without
+     * reading it again.
+     * <p>
+     * @param trackJob       track job whose statistics shall be created
+     * @param chromLengthMap mapping of chromosome name to chromosome length
+     */
     @NbBundle.Messages( {
-        "# {0} - track file path",
-        "StatsParser.Finished=Finished creating track statistics for {0}. ",
         "# {0} - track file path",
         "StatsParser.Start=Start creating track statistics for {0}" } )
-    public ParsedTrack createTrackStats( final TrackJob trackJob, final Map<String, Integer> chromLengthMap ) {
+    public void startTrackStats( final TrackJob trackJob, final Map<String, Integer> chromLengthMap ) {
 
-        final long startTime = System.currentTimeMillis();
-        final String fileName = trackJob.getFile().getName();
+        this.startTime = System.currentTimeMillis();
+        this.fileName = trackJob.getFile().getName();
+        this.chromLengthMap = chromLengthMap;
         this.notifyObservers( Bundle.StatsParser_Start( fileName ) );
-//        int noMappings = 0;
-//        long starti = System.currentTimeMillis();
 
-        String lastReadSeq = "";
-        List<Integer> readsDifferentPos = new ArrayList<>();
-        int seqCount = 0;
+        lineNo = 0;
+        lastReadSeq = "";
+        readsDifferentPos = new ArrayList<>();
+        seqCount = 0;
         //Map with one covered interval list for each mapping class
-        Map<String, Map<Classification, List<Pair<Integer, Integer>>>> classToCoveredIntervalsMap = new HashMap<>();
+        classToCoveredIntervalsMap = new HashMap<>();
         for( String chromName : chromLengthMap.keySet() ) {
             Map<Classification, List<Pair<Integer, Integer>>> mapClassMap = new HashMap<>();
             for( MappingClass mapClass : MappingClass.values() ) {
@@ -117,95 +166,104 @@ public class SamBamStatsParser implements Observable, MessageSenderI {
             classToCoveredIntervalsMap.put( chromName, mapClassMap );
         }
 
-        SamReaderFactory.setDefaultValidationStringency( LENIENT );
-        SamReaderFactory samReaderFactory = SamReaderFactory.make();
-        try( final SamReader samBamReader = samReaderFactory.open( trackJob.getFile() );
-             SAMRecordIterator samItor = samBamReader.iterator(); ) {
-            
-            int lineNo = 0;
-            while( samItor.hasNext() ) {
-                try {
-                    ++lineNo;
+        this.createCoverageIndex( trackJob );
+    }
 
-                    final SAMRecord record = samItor.next();
-                    final String refName = record.getReferenceName();
-                    if( !record.getReadUnmappedFlag() && chromLengthMap.containsKey( refName ) ) {
 
-                        String readSeq = record.getReadString();
-                        if( !CommonsMappingParser.checkReadSam( this, readSeq, fileName, lineNo ) ) {
-                            continue; //continue, and ignore read, if it contains inconsistent information
-                        }
+    /**
+     * Adds the next record of the track to the statistics. The records have
+     * to be added sorted by position.
+     * <p>
+     * @param record the next record of the track
+     */
+    public void addRecord( final SAMRecord record ) {
+        try {
+            ++lineNo;
 
-                        //statistics calculations: count no mappings in classifications and distinct sequences ////////////
+            final String refName = record.getReferenceName();
+            if( !record.getReadUnmappedFlag() && chromLengthMap.containsKey( refName ) ) {
 
-                        Integer mappingCount = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
-                        int mapCount = mappingCount != null ? mappingCount : 0;
-                        if( mapCount == 1 ) {
-                            statsContainer.increaseValue( StatsContainer.NO_UNIQ_MAPPINGS, mapCount );
-                        }
-                        statsContainer.increaseValue( StatsContainer.NO_MAPPINGS, 1 );
-
-                        Byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
-                        MappingClass mappingClass = classification != null ? MappingClass.getFeatureType( classification ) : MappingClass.COMMON_MATCH;
-                        readLengthDistribution.increaseDistribution( readSeq.length() );
-
-                        if( !lastReadSeq.equals( readSeq ) ) { //same seq counted multiple times when multiple reads with same sequence
-                            if( readsDifferentPos.size() == 1 ) { //1 means all reads since last clean started at same pos
-                                if( seqCount == 1 ) { // only one sequence found at same position
-                                    statsContainer.increaseValue( StatsContainer.NO_UNIQUE_SEQS, seqCount );
-                                } else {
-                                    statsContainer.increaseValue( StatsContainer.NO_REPEATED_SEQ, 1 );
-                                    //counting the repeated seq and not in how many reads they are contained
-                                }
-                            }
-                            readsDifferentPos.clear();
-                        }
+                Byte classification = Byte.valueOf( record.getAttribute( SAMRecordTag.ReadClass.toString() ).toString() );
+                MappingClass mappingClass = classification != null ? MappingClass.getFeatureType( classification ) : MappingClass.COMMON_MATCH;
+                //the coverage of the bam file also contains reads failing the read check
+                this.addToCoverageIndex( record, mappingClass );
+
+                String readSeq = record.getReadString();
+                if( !CommonsMappingParser.checkReadSam( this, readSeq, fileName, lineNo ) ) {
+                    return; //ignore read, if it contains inconsistent information
+                }
+
+                //statistics calculations: count no mappings in classifications and distinct sequences ////////////
+
+                Integer mappingCount = (Integer) record.getAttribute( SAMRecordTag.MapCount.toString() );
+                int mapCount = mappingCount != null ? mappingCount : 0;
+                if( mapCount == 1 ) {
+                    statsContainer.increaseValue( StatsContainer.NO_UNIQ_MAPPINGS, mapCount );
+                }
+                statsContainer.increaseValue( StatsContainer.NO_MAPPINGS, 1 );
+
+                readLengthDistribution.increaseDistribution( readSeq.length() );
 
-                        int start = record.getAlignmentStart();
-                        int stop = record.getAlignmentEnd();
-                        if( !readsDifferentPos.contains( start ) ) {
-                            readsDifferentPos.add( start );
-                            seqCount = 0;
+                if( !lastReadSeq.equals( readSeq ) ) { //same seq counted multiple times when multiple reads with same sequence
+                    if( readsDifferentPos.size() == 1 ) { //1 means all reads since last clean started at same pos
+                        if( seqCount == 1 ) { // only one sequence found at same position
+                            statsContainer.increaseValue( StatsContainer.NO_UNIQUE_SEQS, seqCount );
+                        } else {
+                            statsContainer.increaseValue( StatsContainer.NO_REPEATED_SEQ, 1 );
+                            //counting the repeated seq and not in how many reads they are contained
                         }
-                        ++seqCount;
-                        lastReadSeq = readSeq;
-
-                        statsContainer.increaseValue( mappingClass.toString(), 1 );
-                        PositionUtils.updateIntervals( classToCoveredIntervalsMap.get( refName ).get( mappingClass ), start, stop );
-                        PositionUtils.updateIntervals( classToCoveredIntervalsMap.get( refName ).get( TotalCoverage.TOTAL_COVERAGE ), start, stop );
-                        //saruman starts genome at 0 other algorithms like bwa start genome at 1
-
-//                        //can be used for debugging performance
-//                        if (++noMappings % 10000 == 0) {
-//                            long finish = System.currentTimeMillis();
-//                            this.notifyObservers(Benchmark.calculateDuration(starti, finish, noMappings + " mappings processed. "));
-//                            starti = System.currentTimeMillis();
-//                        }
-                    }
-                } catch( NumberFormatException nfe ) {
-                    //skip error messages, if too many occur to prevent bug in the output panel
-                    if( nfe.getMessage() == null || !nfe.getMessage().contains( "MAPQ should be 0" ) ) {
-                        //all reads with the "MAPQ should be 0" error are just ordinary unmapped reads and thus ignored
-                        this.sendMsgIfAllowed( NbBundle.getMessage( SamBamStatsParser.class,
-                                                                    "Parser.Parsing.CorruptData", lineNo, nfe.toString() ) );
-                        Exceptions.printStackTrace( nfe );
                     }
+                    readsDifferentPos.clear();
                 }
-                if( (lineNo % 500000) == 0 ) {//output process info only on every XX line
-                    long finish = System.currentTimeMillis();
-                    this.notifyObservers( Benchmark.calculateDuration( startTime, finish, lineNo + " mappings processed in " ) );
+
+                int start = record.getAlignmentStart();
+                int stop = record.getAlignmentEnd();
+                if( !readsDifferentPos.contains( start ) ) {
+                    readsDifferentPos.add( start );
+                    seqCount = 0;
                 }
-                System.err.flush();
+                ++seqCount;
+                lastReadSeq = readSeq;
+
+                statsContainer.increaseValue( mappingClass.toString(), 1 );
+                PositionUtils.updateIntervals( classToCoveredIntervalsMap.get( refName ).get( mappingClass ), start, stop );
+                PositionUtils.updateIntervals( classToCoveredIntervalsMap.get( refName ).get( TotalCoverage.TOTAL_COVERAGE ), start, stop );
+                //saruman starts genome at 0 other algorithms like bwa start genome at 1
             }
-            if( errorLimit.getSkippedCount() > 0 ) {
-                this.notifyObservers( "... " + (errorLimit.getSkippedCount()) + " more errors occurred" );
+        } catch( NumberFormatException nfe ) {
+            //skip error messages, if too many occur to prevent bug in the output panel
+            if( nfe.getMessage() == null || !nfe.getMessage().contains( "MAPQ should be 0" ) ) {
+                //all reads with the "MAPQ should be 0" error are just ordinary unmapped reads and thus ignored
+                this.sendMsgIfAllowed( NbBundle.getMessage( SamBamStatsParser.class,
+                                                            "Parser.Parsing.CorruptData", lineNo, nfe.toString() ) );
+                Exceptions.printStackTrace( nfe );
             }
-        } catch( RuntimeEOFException e ) {
-            this.notifyObservers( "Last read in file is incomplete, ignoring it!" );
-        } catch( Exception e ) {
-            this.notifyObservers( e.getMessage() );
-            Exceptions.printStackTrace( e ); //TODO correct error handling or remove
         }
+        if( (lineNo % 500000) == 0 ) {//output process info only on every XX line
+            long finish = System.currentTimeMillis();
+            this.notifyObservers( Benchmark.calculateDuration( startTime, finish, lineNo + " mappings processed in " ) );
+        }
+    }
+
+
+    /**
+     * Completes the global track statistics after all records of the track
+     * were added.
+     * <p>
+     * @param trackJob track job whose statistics were created
+     * @param success  <code>true</code>, if all records of the track were
+     *                 added, <code>false</code> if an error occurred
+     * <p>
+     * @return The parsed track containing the statistics
+     */
+    @NbBundle.Messages( {
+        "# {0} - track file path",
+        "StatsParser.Finished=Finished creating track statistics for {0}. " } )
+    public ParsedTrack finishTrackStats( final TrackJob trackJob, final boolean success ) {
+        if( errorLimit.getSkippedCount() > 0 ) {
+            this.notifyObservers( "... " + (errorLimit.getSkippedCount()) + " more errors occurred" );
+        }
+        this.finishCoverageIndex( success );
 
         //finish statistics and return the track with the statistics data in the end
         //TODO claculate separately for all chromosomes for extended stats panel
@@ -223,6 +281,66 @@ public class SamBamStatsParser implements Observable, MessageSenderI {
     }
 
 
+    /**
+     * Creates the writer for the coverage index of the given track. If the
+     * index cannot be created, the track is imported without it.
+     * <p>
+     * @param trackJob track job whose coverage index shall be created
+     */
+    @NbBundle.Messages( { "# {0} - error message",
+                          "StatsParser.IndexFailed=The coverage index could not be created, coverage will be calculated from the mapping file: {0}" } )
+    private void createCoverageIndex( TrackJob trackJob ) {
+        try {
+            indexWriter = new CoverageIndexWriter( trackJob.getFile() );
+        } catch( IOException e ) {
+            indexWriter = null;
+            this.notifyObservers( Bundle.StatsParser_IndexFailed( e.getMessage() ) );
+        }
+    }
+
+
+    /**
+     * Adds the coverage of the given record to the coverage index.
+     * <p>
+     * @param record       the mapped record to add
+     * @param mappingClass mapping class of the record
+     */
+    private void addToCoverageIndex( SAMRecord record, MappingClass mappingClass ) {
+        if( indexWriter != null ) {
+            try {
+                indexWriter.addMapping( record.getReferenceName(), mappingClass, !record.getReadNegativeStrandFlag(),
+                                        samUtils.getAlignmentBlocks( record.getCigar(), record.getAlignmentStart() ) );
+            } catch( IOException e ) {
+                indexWriter.discard();
+                this.finishCoverageIndex( false );
+                this.notifyObservers( Bundle.StatsParser_IndexFailed( e.getMessage() ) );
+            }
+        }
+    }
+
+
+    /**
+     * Closes the coverage index. It is only kept, if all mappings of the
+     * track were added successfully.
+     * <p>
+     * @param success <code>true</code>, if all mappings of the track were
+     *                added to the index, <code>false</code> otherwise
+     */
+    private void finishCoverageIndex( boolean success ) {
+        if( indexWriter != null ) {
+            if( !success ) {
+                indexWriter.discard();
+            }
+            try {
+                indexWriter.close();
+            } catch( IOException e ) {
+                this.notifyObservers( Bundle.StatsParser_IndexFailed( e.getMessage() ) );
+            }
+            indexWriter = null;
+        }
+    }
+
+
     @Override
     public void registerObserver( Observer observer ) {
         this.observers.add( observer );
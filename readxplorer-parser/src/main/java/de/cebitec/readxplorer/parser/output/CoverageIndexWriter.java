@@ -0,0 +1,422 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.parser.output;
+
+
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.utils.SamAlignmentBlock;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+
+/**
+ * Writes the coverage index (".rxcov" file) of a mapping file. The index
+ * contains a coverage pyramid for each chromosome: The coverage at base
+ * resolution and the maximum coverage of bins of 64, 1024 and 16384 bases.
+ * Each level stores one channel per mapping class and strand.
+ * <p>
+ * The mappings have to be added sorted by chromosome and start position. All
+ * levels are cut into blocks of {@link #BLOCK_ENTRIES} values per channel,
+ * which are delta encoded and deflated. Blocks without coverage are not
+ * written at all. The directory of all blocks is written at the end of the
+ * file, followed by its offset:
+ * <pre>
+ * blocks*
+ * directory: magic, version, block entries, mapping file length, level count,
+ *            bin size*, chromosome count,
+ *            (chromosome name, length, (block count, (offset, size)*)*)*
+ * directory offset (long)
+ * </pre>
+ * The length of the mapping file is determined when closing the writer, so
+ * the mapping file has to be written completely before.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class CoverageIndexWriter implements Closeable {
+
+    /** File ending of coverage index files. */
+    public static final String FILE_ENDING = ".rxcov";
+    /** Magic number at the start of the directory ("RXCV"). */
+    public static final int MAGIC = 0x52584356;
+    /** Version of the coverage index format. */
+    public static final int VERSION = 1;
+    /** Number of values per channel stored in one block. */
+    public static final int BLOCK_ENTRIES = 16384;
+    /** Bin sizes of all levels, the first level is the base resolution. */
+    public static final int[] BIN_SIZES = { 1, 64, 1024, 16384 };
+    /** Number of channels: one per mapping class and strand. */
+    public static final int CHANNELS = MappingClass.values().length * 2;
+
+    private final File indexFile;
+    private final File mappingFile;
+    private final DataOutputStream out;
+    private long offset;
+    private boolean isValid = true;
+
+    private final Deflater deflater = new Deflater();
+    private final ByteBuffer byteBuffer = ByteBuffer.allocate( CHANNELS * BLOCK_ENTRIES * 4 );
+    private final IntBuffer intBuffer = byteBuffer.asIntBuffer();
+    private final byte[] compressBuffer = new byte[8192];
+    private final int[] deltas = new int[CHANNELS * BLOCK_ENTRIES];
+
+    private final List<ChromEntry> chromEntries = new ArrayList<>();
+    private final Set<String> finishedChroms = new HashSet<>();
+    private ChromEntry currentChrom;
+
+    //state of the current chromosome
+    private final List<int[]> pendingDiffs = new ArrayList<>();
+    private final Deque<int[]> freeDiffs = new ArrayDeque<>();
+    private int firstPendingBlock;
+    private final int[] carry = new int[CHANNELS];
+    private final int[] values = new int[CHANNELS * BLOCK_ENTRIES];
+    private final int[][] levelBins = new int[BIN_SIZES.length][CHANNELS * BLOCK_ENTRIES];
+    private final int[] levelFill = new int[BIN_SIZES.length];
+    private final boolean[] levelHasValues = new boolean[BIN_SIZES.length];
+
+
+    /**
+     * Writes the coverage index of a mapping file.
+     * <p>
+     * @param mappingFile the mapping file to index. The index file is created
+     *                    next to it. The mapping file may still be written
+     *                    until the index writer is closed.
+     * <p>
+     * @throws IOException If the index file cannot be created
+     */
+    public CoverageIndexWriter( File mappingFile ) throws IOException {
+        this.indexFile = getIndexFile( mappingFile );
+        this.mappingFile = mappingFile;
+        this.out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( indexFile ), 1 << 16 ) );
+    }
+
+
+    /**
+     * @param mappingFile a mapping file
+     * <p>
+     * @return The coverage index file belonging to the given mapping file
+     */
+    public static File getIndexFile( File mappingFile ) {
+        return new File( mappingFile.getPath() + FILE_ENDING );
+    }
+
+
+    /**
+     * Adds the coverage of a mapping to the index. Mappings have to be added
+     * sorted by chromosome and start position, otherwise the index is
+     * discarded when closing the writer.
+     * <p>
+     * @param chromName    name of the chromosome of the mapping
+     * @param mappingClass mapping class of the mapping
+     * @param isFwdStrand  <code>true</code>, if the mapping is on the fwd
+     *                     strand, <code>false</code> otherwise
+     * @param blocks       the alignment blocks of the mapping
+     * <p>
+     * @throws IOException If the index file cannot be written
+     */
+    public void addMapping( String chromName, MappingClass mappingClass, boolean isFwdStrand, List<SamAlignmentBlock> blocks ) throws IOException {
+        if( !isValid || blocks.isEmpty() ) {
+            return;
+        }
+        if( currentChrom == null || !currentChrom.name.equals( chromName ) ) {
+            finishChrom();
+            if( !finishedChroms.add( chromName ) ) {
+                isValid = false; //file is not sorted by chromosome
+                return;
+            }
+            currentChrom = new ChromEntry( chromName );
+        }
+
+        int startBlock = (blocks.get( 0 ).getRefStart() - 1) / BLOCK_ENTRIES;
+        if( startBlock < firstPendingBlock || blocks.get( 0 ).getRefStart() < 1 ) {
+            isValid = false; //file is not sorted by position
+            return;
+        }
+        while( firstPendingBlock < startBlock ) {
+            flushBlock();
+        }
+
+        int channel = mappingClass.ordinal() * 2 + (isFwdStrand ? 0 : 1);
+        for( SamAlignmentBlock block : blocks ) {
+            addDiff( channel, block.getRefStart() - 1, 1 );
+            addDiff( channel, block.getRefStop(), -1 );
+        }
+    }
+
+
+    /**
+     * Adds a coverage change to the pending difference arrays.
+     * <p>
+     * @param channel channel of the change
+     * @param index   0-based position of the change
+     * @param value   value of the change
+     */
+    private void addDiff( int channel, int index, int value ) {
+        int block = index / BLOCK_ENTRIES - firstPendingBlock;
+        while( pendingDiffs.size() <= block ) {
+            pendingDiffs.add( null );
+        }
+        int[] diffs = pendingDiffs.get( block );
+        if( diffs == null ) {
+            diffs = freeDiffs.isEmpty() ? new int[CHANNELS * BLOCK_ENTRIES] : freeDiffs.pop();
+            pendingDiffs.set( block, diffs );
+        }
+        diffs[channel * BLOCK_ENTRIES + index % BLOCK_ENTRIES] += value;
+        currentChrom.length = Math.max( currentChrom.length, index );
+    }
+
+
+    /**
+     * Calculates the final coverage of the first pending block, writes it and
+     * adds its maxima to the binned levels.
+     * <p>
+     * @throws IOException If the index file cannot be written
+     */
+    private void flushBlock() throws IOException {
+        int[] diffs = pendingDiffs.isEmpty() ? null : pendingDiffs.remove( 0 );
+        boolean hasValues = false;
+        for( int channel = 0; channel < CHANNELS; ++channel ) {
+            int value = carry[channel];
+            int channelStart = channel * BLOCK_ENTRIES;
+            if( diffs == null ) {
+                Arrays.fill( values, channelStart, channelStart + BLOCK_ENTRIES, value );
+            } else {
+                for( int i = channelStart; i < channelStart + BLOCK_ENTRIES; ++i ) {
+                    value += diffs[i];
+                    values[i] = value;
+                }
+            }
+            carry[channel] = value;
+            hasValues |= value != 0 || diffs != null;
+        }
+        if( diffs != null ) {
+            Arrays.fill( diffs, 0 );
+            freeDiffs.push( diffs );
+        }
+
+        currentChrom.levels.get( 0 ).add( hasValues ? writeBlock( values ) : null );
+        for( int level = 1; level < BIN_SIZES.length; ++level ) {
+            addToLevel( level, hasValues );
+        }
+        ++firstPendingBlock;
+    }
+
+
+    /**
+     * Adds the maxima of the bins of the current base block to a binned
+     * level and writes the level block, if it is full.
+     * <p>
+     * @param level     the level to update
+     * @param hasValues <code>false</code>, if the current base block has no
+     *                  coverage
+     * <p>
+     * @throws IOException If the index file cannot be written
+     */
+    private void addToLevel( int level, boolean hasValues ) throws IOException {
+        int binSize = BIN_SIZES[level];
+        int binsPerBlock = BLOCK_ENTRIES / binSize;
+        int[] bins = levelBins[level];
+        if( hasValues ) {
+            for( int channel = 0; channel < CHANNELS; ++channel ) {
+                int channelStart = channel * BLOCK_ENTRIES;
+                for( int bin = 0; bin < binsPerBlock; ++bin ) {
+                    int max = 0;
+                    int binStart = channelStart + bin * binSize;
+                    for( int i = binStart; i < binStart + binSize; ++i ) {
+                        max = Math.max( max, values[i] );
+                    }
+                    bins[channelStart + levelFill[level] + bin] = max;
+                }
+            }
+            levelHasValues[level] = true;
+        }
+        levelFill[level] += binsPerBlock;
+        if( levelFill[level] == BLOCK_ENTRIES ) {
+            flushLevel( level );
+        }
+    }
+
+
+    /**
+     * Writes the current block of a binned level and resets it.
+     * <p>
+     * @param level the level to write
+     * <p>
+     * @throws IOException If the index file cannot be written
+     */
+    private void flushLevel( int level ) throws IOException {
+        if( levelFill[level] > 0 ) {
+            currentChrom.levels.get( level ).add( levelHasValues[level] ? writeBlock( levelBins[level] ) : null );
+            Arrays.fill( levelBins[level], 0 );
+            levelFill[level] = 0;
+            levelHasValues[level] = false;
+        }
+    }
+
+
+    /**
+     * Writes a delta encoded and compressed block.
+     * <p>
+     * @param blockValues the values of all channels of the block
+     * <p>
+     * @return the offset and size of the written block
+     * <p>
+     * @throws IOException If the index file cannot be written
+     */
+    private long[] writeBlock( int[] blockValues ) throws IOException {
+        for( int channel = 0; channel < CHANNELS; ++channel ) {
+            int last = 0;
+            for( int i = channel * BLOCK_ENTRIES; i < (channel + 1) * BLOCK_ENTRIES; ++i ) {
+                deltas[i] = blockValues[i] - last;
+                last = blockValues[i];
+            }
+        }
+        intBuffer.clear();
+        intBuffer.put( deltas );
+
+        long blockOffset = offset;
+        deflater.reset();
+        deflater.setInput( byteBuffer.array() );
+        deflater.finish();
+        while( !deflater.finished() ) {
+            int length = deflater.deflate( compressBuffer );
+            out.write( compressBuffer, 0, length );
+            offset += length;
+        }
+        return new long[]{ blockOffset, offset - blockOffset };
+    }
+
+
+    /**
+     * Writes all remaining blocks of the current chromosome.
+     * <p>
+     * @throws IOException If the index file cannot be written
+     */
+    private void finishChrom() throws IOException {
+        if( currentChrom != null ) {
+            while( !pendingDiffs.isEmpty() ) {
+                flushBlock();
+            }
+            for( int level = 1; level < BIN_SIZES.length; ++level ) {
+                flushLevel( level );
+            }
+            chromEntries.add( currentChrom );
+            currentChrom = null;
+            firstPendingBlock = 0;
+            Arrays.fill( carry, 0 );
+        }
+    }
+
+
+    /**
+     * Writes the directory of the index including the current length of the
+     * mapping file and closes the index file. If the mappings were not
+     * sorted, the index file is deleted.
+     * <p>
+     * @throws IOException If the index file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if( isValid ) {
+                finishChrom();
+                long directoryOffset = offset;
+                out.writeInt( MAGIC );
+                out.writeInt( VERSION );
+                out.writeInt( BLOCK_ENTRIES );
+                out.writeLong( mappingFile.length() );
+                out.writeInt( BIN_SIZES.length );
+                for( int binSize : BIN_SIZES ) {
+                    out.writeInt( binSize );
+                }
+                out.writeInt( chromEntries.size() );
+                for( ChromEntry chrom : chromEntries ) {
+                    out.writeUTF( chrom.name );
+                    out.writeInt( chrom.length );
+                    for( List<long[]> levelBlocks : chrom.levels ) {
+                        out.writeInt( levelBlocks.size() );
+                        for( long[] block : levelBlocks ) {
+                            out.writeLong( block == null ? -1 : block[0] );
+                            out.writeInt( block == null ? 0 : (int) block[1] );
+                        }
+                    }
+                }
+                out.writeLong( directoryOffset );
+            }
+        } finally {
+            out.close();
+            deflater.end();
+            if( !isValid ) {
+                indexFile.delete();
+            }
+        }
+    }
+
+
+    /**
+     * Marks the index as incomplete. It is deleted when closing the writer.
+     */
+    public void discard() {
+        isValid = false;
+    }
+
+
+    /**
+     * @return <code>true</code>, if all mappings were added in sorted order
+     *         and the index is written, <code>false</code> otherwise
+     */
+    public boolean isValid() {
+        return isValid;
+    }
+
+
+    /**
+     * Block directory of a chromosome.
+     */
+    private static class ChromEntry {
+
+        private final String name;
+        private int length;
+        private final List<List<long[]>> levels = new ArrayList<>();
+
+
+        ChromEntry( String name ) {
+            this.name = name;
+            for( int level = 0; level < BIN_SIZES.length; ++level ) {
+                levels.add( new ArrayList<>() );
+            }
+        }
+
+
+    }
+
+
+}
@@ -145,7 +145,7 @@ public class JokToBamConverter implements ConverterI, Observable, Observer,
                 fileHeader.setSequenceDictionary( new SAMSequenceDictionary( samRecords ) );
 
                 try( BufferedReader br = new BufferedReader( new FileReader( currentFile ) );
-                     SAMFileWriter bamFileWriter = SamUtils.createBamWriter( outputFile, fileHeader, false ); ) {
+                     SAMFileWriter bamFileWriter = OffHeapSamSorter.createSortingBamWriter( outputFile, fileHeader, this ); ) {
 
                     int lineNo = 0;
 //                    int counter = 0;
@@ -0,0 +1,1172 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.parser.output;
+
+
+import de.cebitec.readxplorer.utils.GeneralUtils;
+import de.cebitec.readxplorer.utils.Observer;
+import de.cebitec.readxplorer.utils.Pair;
+import de.cebitec.readxplorer.utils.SamUtils;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.ProgressLoggerInterface;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openide.util.NbBundle;
+import org.openide.util.NbPreferences;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * External merge sorter for sam records by read name or by coordinate, which
+ * keeps the records outside of the Java heap. Each record is packed as a
+ * compact binary sort key and its raw bam bytes into direct byte buffers:
+ * <ul>
+ * <li>By coordinate, the key is a single long of reference index, start
+ * position and strand.</li>
+ * <li>By read name, the key is the read name followed by a rank derived from
+ * the pair and alignment flags. Its first eight bytes are kept as long
+ * prefix, so most comparisons never touch the buffers.</li>
+ * </ul>
+ * A full buffer is handed to a pool of worker threads, which sort it by its
+ * keys and write it as a sorted run to a temporary file, while the calling
+ * thread fills the next buffer. Finally, all runs are merged with a bounded
+ * number of open files. If all records fit into a single buffer, nothing is
+ * written to disk. The records of equal keys keep their input order.
+ * <p>
+ * Progress and throughput are reported to the given observer.
+ * <p>
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class OffHeapSamSorter implements SamRecordSorter {
+
+    private static final Logger LOG = LoggerFactory.getLogger( OffHeapSamSorter.class.getName() );
+
+    /**
+     * Preference key for enabling the off-heap sorter for imports. It is
+     * enabled by default, otherwise htsjdk's sorting is used.
+     */
+    public static final String PROP_OFF_HEAP_SORT = "OffHeapSamSorter.Enabled";
+    /**
+     * Preference key for the off-heap memory in MB available to the sorters of
+     * an import.
+     */
+    public static final String PROP_BUFFER_SIZE = "OffHeapSamSorter.BufferSizeMB";
+
+    private static final long MB = 1024L * 1024L;
+    private static final long MAX_DEFAULT_BUFFER_MB = 1024;
+    private static final int MIN_RUN_BUFFER_SIZE = (int) MB;
+    private static final int MAX_RUN_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+    private static final int DEFAULT_MAX_OPEN_FILES = 64;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    private static final int PREFIX_BYTES = 8;
+    private static final int ENTRY_HEADER_BYTES = 8; //length of key and length of bam bytes
+
+    private final SAMFileHeader header;
+    private final boolean byReadName;
+    private final File tmpDir;
+    private final Observer observer;
+    private final int maxOpenFiles;
+    private final int nbBuffers;
+    private final int runBufferSize;
+
+    private final BAMRecordCodec encoder;
+    private final ExposedByteArrayOutputStream encodedRecord;
+    private byte[] key;
+
+    private final ExecutorService spillWorkers;
+    private final BlockingQueue<RunBuffer> freeBuffers;
+    private final List<Future<File>> spilledRuns;
+    private final List<File> tmpFiles;
+    private final AtomicLong spilledBytes;
+    private int allocatedBuffers;
+    private RunBuffer currentBuffer;
+    private CloseableIterator<SAMRecord> sortedItor;
+
+    private final long startTime;
+    private long noRecords;
+
+
+    /**
+     * External merge sorter for sam records, which keeps the records outside
+     * of the Java heap.
+     * <p>
+     * @param header     header of the records to sort, needed for encoding
+     *                   and decoding them
+     * @param sortOrder  queryname or coordinate
+     * @param bufferSize off-heap memory for the records in bytes, which is
+     *                   shared by the buffer being filled and the buffers being
+     *                   sorted
+     * @param nbThreads  number of worker threads sorting and writing runs
+     * @param tmpDir     directory for the sorted runs
+     * @param observer   observer receiving progress messages, may be
+     *                   <code>null</code>
+     */
+    public OffHeapSamSorter( SAMFileHeader header, SAMFileHeader.SortOrder sortOrder, long bufferSize, int nbThreads, File tmpDir,
+                             Observer observer ) {
+        this( header, sortOrder, bufferSize, nbThreads, tmpDir, observer, DEFAULT_MAX_OPEN_FILES );
+    }
+
+
+    /**
+     * External merge sorter for sam records, which keeps the records outside
+     * of the Java heap.
+     * <p>
+     * @param header       header of the records to sort, needed for encoding
+     *                     and decoding them
+     * @param sortOrder    queryname or coordinate
+     * @param bufferSize   off-heap memory for the records in bytes, which is
+     *                     shared by the buffer being filled and the buffers
+     *                     being sorted
+     * @param nbThreads    number of worker threads sorting and writing runs
+     * @param tmpDir       directory for the sorted runs
+     * @param observer     observer receiving progress messages, may be
+     *                     <code>null</code>
+     * @param maxOpenFiles maximum number of runs merged at once
+     */
+    public OffHeapSamSorter( SAMFileHeader header, SAMFileHeader.SortOrder sortOrder, long bufferSize, int nbThreads, File tmpDir,
+                             Observer observer, int maxOpenFiles ) {
+        if( sortOrder != SAMFileHeader.SortOrder.queryname && sortOrder != SAMFileHeader.SortOrder.coordinate ) {
+            throw new IllegalArgumentException( "Records can only be sorted by queryname or coordinate, not by " + sortOrder );
+        }
+        this.header = header;
+        this.byReadName = sortOrder == SAMFileHeader.SortOrder.queryname;
+        this.tmpDir = tmpDir;
+        this.observer = observer;
+        this.maxOpenFiles = Math.max( 2, maxOpenFiles );
+        int nbWorkers = Math.max( 1, nbThreads );
+        this.nbBuffers = nbWorkers + 1;
+        this.runBufferSize = (int) Math.max( MIN_RUN_BUFFER_SIZE, Math.min( MAX_RUN_BUFFER_SIZE, bufferSize / nbBuffers ) );
+
+        this.encodedRecord = new ExposedByteArrayOutputStream();
+        this.encoder = new BAMRecordCodec( header );
+        this.encoder.setOutputStream( encodedRecord );
+        this.key = new byte[256];
+
+        this.spillWorkers = Executors.newFixedThreadPool( nbWorkers, runnable -> {
+            Thread thread = new Thread( runnable, "OffHeapSamSorter.Spill" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        this.freeBuffers = new ArrayBlockingQueue<>( nbBuffers );
+        this.spilledRuns = new ArrayList<>();
+        this.tmpFiles = Collections.synchronizedList( new ArrayList<>() );
+        this.spilledBytes = new AtomicLong();
+        this.allocatedBuffers = 1;
+        this.currentBuffer = new RunBuffer( runBufferSize );
+        this.startTime = System.currentTimeMillis();
+    }
+
+
+    /**
+     * @return <code>true</code>, if imports shall sort with the off-heap
+     *         sorter, <code>false</code> if htsjdk's sorting shall be used
+     */
+    public static boolean isEnabled() {
+        return NbPreferences.forModule( Object.class ).getBoolean( PROP_OFF_HEAP_SORT, true );
+    }
+
+
+    /**
+     * @return The off-heap memory in bytes available to the sorters of an
+     *         import. It is stored in the preferences and defaults to a quarter
+     *         of the maximum heap size, but at most 1 GB. If several imports
+     *         run concurrently, each gets its share according to the import
+     *         budget of {@link SamUtils}.
+     */
+    public static long getDefaultBufferSize() {
+        long defaultMB = Math.max( 1, Math.min( MAX_DEFAULT_BUFFER_MB, Runtime.getRuntime().maxMemory() / 4 / MB ) );
+        long bufferMB = Math.max( 1, NbPreferences.forModule( Object.class ).getLong( PROP_BUFFER_SIZE, defaultMB ) );
+        return bufferMB * MB / SamUtils.getParallelImports();
+    }
+
+
+    /**
+     * @return The number of worker threads sorting and writing runs: All but
+     *         one of the available processors, as the thread adding the
+     *         records needs one.
+     */
+    public static int getDefaultThreadCount() {
+        return Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 );
+    }
+
+
+    /**
+     * Creates a writer for the file sorted by the sort order of the given
+     * header, which is presorted by this sorter. If the sorter is disabled or
+     * the sort order is neither queryname nor coordinate, htsjdk's sorting
+     * writer of {@link SamUtils#createSamBamWriter(File, SAMFileHeader, boolean, String)}
+     * is returned. The records are written, when the writer is closed.
+     * <p>
+     * @param oldFile   the old file
+     * @param header    the header of the new file
+     * @param newEnding the ending is added to the end of the file name of the
+     *                  old file (this is not the file extension)
+     * @param observer  observer receiving progress messages, may be
+     *                  <code>null</code>
+     * <p>
+     * @return a pair consisting of: the sorting sam/bam file writer ready for
+     *         writing as the first element and the new file as the second
+     *         element
+     */
+    public static Pair<SAMFileWriter, File> createSortingSamBamWriter( File oldFile, SAMFileHeader header, String newEnding,
+                                                                       Observer observer ) {
+        SAMFileHeader.SortOrder sortOrder = header.getSortOrder();
+        if( !isEnabled() || sortOrder != SAMFileHeader.SortOrder.queryname && sortOrder != SAMFileHeader.SortOrder.coordinate ) {
+            return SamUtils.createSamBamWriter( oldFile, header, false, newEnding );
+        }
+        Pair<SAMFileWriter, File> writerAndFile = SamUtils.createSamBamWriter( oldFile, header, true, newEnding );
+        OffHeapSamSorter sorter = new OffHeapSamSorter( header, sortOrder, getDefaultBufferSize(), getDefaultThreadCount(),
+                                                        SamUtils.getTempImportDirectory(), observer );
+        return new Pair<>( new SortingWriter( writerAndFile.getFirst(), sorter ), writerAndFile.getSecond() );
+    }
+
+
+    /**
+     * Creates a bam writer for the given file, which is presorted by this
+     * sorter like {@link #createSortingSamBamWriter(File, SAMFileHeader, String, Observer)}.
+     * <p>
+     * @param file     the bam file to write
+     * @param header   the header of the new file
+     * @param observer observer receiving progress messages, may be
+     *                 <code>null</code>
+     * <p>
+     * @return The sorting bam file writer ready for writing
+     */
+    public static SAMFileWriter createSortingBamWriter( File file, SAMFileHeader header, Observer observer ) {
+        SAMFileHeader.SortOrder sortOrder = header.getSortOrder();
+        if( !isEnabled() || sortOrder != SAMFileHeader.SortOrder.queryname && sortOrder != SAMFileHeader.SortOrder.coordinate ) {
+            return SamUtils.createBamWriter( file, header, false );
+        }
+        OffHeapSamSorter sorter = new OffHeapSamSorter( header, sortOrder, getDefaultBufferSize(), getDefaultThreadCount(),
+                                                        SamUtils.getTempImportDirectory(), observer );
+        return new SortingWriter( SamUtils.createBamWriter( file, header, true ), sorter );
+    }
+
+
+    /**
+     * Adds a record to sort. It is copied into the off-heap buffer, so it may
+     * be changed afterwards.
+     * <p>
+     * @param record the record to add
+     * <p>
+     * @throws SAMException if sorting or writing the runs failed or the
+     *                      record is larger than a buffer
+     */
+    @Override
+    @NbBundle.Messages( { "# {0} - read name",
+                          "OffHeapSamSorter.RecordTooLarge=The mapping of read {0} is too large for the sort buffer." } )
+    public void add( SAMRecord record ) {
+        encodedRecord.reset();
+        encoder.encode( record );
+        long prefix;
+        int keyLength;
+        if( byReadName ) {
+            keyLength = this.createReadNameKey( record );
+            prefix = readPrefix( key, keyLength );
+        } else {
+            keyLength = 0;
+            prefix = createCoordinateKey( record );
+        }
+
+        if( !currentBuffer.add( prefix, key, keyLength, encodedRecord.getBuffer(), encodedRecord.size() ) ) {
+            if( currentBuffer.size() > 0 ) {
+                this.spill( currentBuffer );
+                currentBuffer = this.acquireBuffer();
+            }
+            if( !currentBuffer.add( prefix, key, keyLength, encodedRecord.getBuffer(), encodedRecord.size() ) ) {
+                throw new SAMException( Bundle.OffHeapSamSorter_RecordTooLarge( record.getReadName() ) );
+            }
+        }
+        ++noRecords;
+    }
+
+
+    /**
+     * Finishes adding records, waits until all runs are written and merges
+     * them down to the maximum number of open files.
+     * <p>
+     * @return An iterator over all added records in sorted order. It can only
+     *         be used once.
+     * <p>
+     * @throws SAMException if sorting, writing or merging the runs failed
+     */
+    @Override
+    @NbBundle.Messages( { "# {0} - number of mappings",
+                          "# {1} - number of runs",
+                          "OffHeapSamSorter.Merge=Merging {0} sorted mappings from {1} runs...",
+                          "# {0} - number of mappings",
+                          "# {1} - duration in ms",
+                          "# {2} - mappings per second",
+                          "# {3} - spilled MB",
+                          "OffHeapSamSorter.Finished=Sorted {0} mappings in {1} ms ({2} mappings/s, {3} MB written to temporary files)" } )
+    public CloseableIterator<SAMRecord> doneAdding() {
+        if( spilledRuns.isEmpty() ) {
+            currentBuffer.sort( byReadName );
+            sortedItor = new BufferIterator( currentBuffer );
+
+        } else {
+            if( currentBuffer.size() > 0 ) {
+                this.spill( currentBuffer );
+            }
+            currentBuffer = null;
+            List<File> runs = new ArrayList<>( spilledRuns.size() );
+            for( Future<File> spilledRun : spilledRuns ) {
+                runs.add( this.getRun( spilledRun ) );
+            }
+            freeBuffers.clear(); //the off-heap memory is not needed anymore
+            this.notifyObserver( Bundle.OffHeapSamSorter_Merge( GeneralUtils.formatNumber( noRecords ), runs.size() ) );
+            try {
+                while( runs.size() > maxOpenFiles ) {
+                    runs = this.mergeRuns( runs );
+                }
+                sortedItor = new MergingIterator( this.openRuns( runs ) );
+            } catch( IOException e ) {
+                throw new SAMException( "Merging the sorted runs failed: " + e.getMessage(), e );
+            }
+        }
+        spillWorkers.shutdown();
+
+        long duration = Math.max( 1, System.currentTimeMillis() - startTime );
+        this.notifyObserver( Bundle.OffHeapSamSorter_Finished( GeneralUtils.formatNumber( noRecords ), GeneralUtils.formatNumber( duration ),
+                                                               GeneralUtils.formatNumber( noRecords * 1000 / duration ),
+                                                               GeneralUtils.formatNumber( spilledBytes.get() / MB ) ) );
+        return sortedItor;
+    }
+
+
+    /**
+     * Stops sorting, if it is not finished yet, and deletes all temporary
+     * files.
+     */
+    @Override
+    public void close() {
+        spillWorkers.shutdownNow();
+        try {
+            spillWorkers.awaitTermination( 1, TimeUnit.MINUTES );
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        if( sortedItor != null ) {
+            sortedItor.close();
+        }
+        currentBuffer = null;
+        freeBuffers.clear();
+        synchronized( tmpFiles ) {
+            for( File tmpFile : tmpFiles ) {
+                if( tmpFile.exists() && !tmpFile.delete() ) {
+                    LOG.warn( "Temporary sort file {} could not be deleted", tmpFile );
+                }
+            }
+            tmpFiles.clear();
+        }
+    }
+
+
+    /**
+     * Creates the read name key of a record: The read name, a terminating 0
+     * and a rank byte ordering the records of a read name like
+     * htsjdk.samtools.SAMRecordQueryNameComparator: paired reads before
+     * single reads, first before second mates, forward before reverse
+     * strand, primary before secondary and supplementary alignments.
+     * <p>
+     * @param record the record whose key is needed
+     * <p>
+     * @return The length of the key written to the key array
+     */
+    private int createReadNameKey( SAMRecord record ) {
+        String readName = record.getReadName();
+        int keyLength = readName.length() + 2;
+        if( key.length < keyLength ) {
+            key = new byte[keyLength * 2];
+        }
+        for( int i = 0; i < readName.length(); ++i ) {
+            key[i] = (byte) readName.charAt( i ); //read names only consist of printable ASCII characters
+        }
+        int rank = (record.getReadPairedFlag() ? 0 : 16) |
+                   (record.getReadPairedFlag() && record.getSecondOfPairFlag() ? 8 : 0) |
+                   (record.getReadNegativeStrandFlag() ? 4 : 0) |
+                   (record.isSecondaryAlignment() ? 2 : 0) |
+                   (record.getSupplementaryAlignmentFlag() ? 1 : 0);
+        key[readName.length()] = 0;
+        key[readName.length() + 1] = (byte) rank;
+        return keyLength;
+    }
+
+
+    /**
+     * Creates the coordinate key of a record, which is compared unsigned:
+     * The reference index in the upper 32 bits, with unmapped records without
+     * reference at the end, followed by the start position and the strand.
+     * <p>
+     * @param record the record whose key is needed
+     * <p>
+     * @return The coordinate key of the record
+     */
+    private static long createCoordinateKey( SAMRecord record ) {
+        long refIndex = record.getReferenceIndex() & 0xFFFFFFFFL;
+        long start = Math.max( 0, record.getAlignmentStart() );
+        return refIndex << 32 | start << 1 | (record.getReadNegativeStrandFlag() ? 1 : 0);
+    }
+
+
+    /**
+     * @param key       the key
+     * @param keyLength length of the key
+     * <p>
+     * @return The first eight bytes of the key as long in big endian order,
+     *         padded with 0
+     */
+    private static long readPrefix( byte[] key, int keyLength ) {
+        long prefix = 0;
+        for( int i = 0; i < PREFIX_BYTES; ++i ) {
+            prefix = prefix << 8 | (i < keyLength ? key[i] & 0xFF : 0);
+        }
+        return prefix;
+    }
+
+
+    /**
+     * Hands a full buffer over to the worker threads, which sort it and write
+     * it as run to a temporary file.
+     * <p>
+     * @param buffer the buffer to sort and write
+     */
+    @NbBundle.Messages( { "# {0} - number of mappings",
+                          "# {1} - number of runs",
+                          "# {2} - mappings per second",
+                          "OffHeapSamSorter.Progress={0} mappings processed for sorting in {1} runs ({2} mappings/s)" } )
+    private void spill( final RunBuffer buffer ) {
+        final int runNumber = spilledRuns.size() + 1;
+        spilledRuns.add( spillWorkers.submit( () -> {
+            try {
+                return this.writeRun( buffer, runNumber );
+            } finally {
+                buffer.clear();
+                freeBuffers.add( buffer );
+            }
+        } ) );
+        long duration = Math.max( 1, System.currentTimeMillis() - startTime );
+        this.notifyObserver( Bundle.OffHeapSamSorter_Progress( GeneralUtils.formatNumber( noRecords ), runNumber,
+                                                               GeneralUtils.formatNumber( noRecords * 1000 / duration ) ) );
+    }
+
+
+    /**
+     * @return An empty buffer: A new one, as long as the off-heap memory
+     *         allows it, otherwise the next buffer released by the workers.
+     * <p>
+     * @throws SAMException if a worker failed
+     */
+    private RunBuffer acquireBuffer() {
+        RunBuffer buffer = freeBuffers.poll();
+        if( buffer == null && allocatedBuffers < nbBuffers ) {
+            ++allocatedBuffers;
+            buffer = new RunBuffer( runBufferSize );
+        }
+        try {
+            while( buffer == null ) {
+                this.checkSpillErrors();
+                buffer = freeBuffers.poll( 100, TimeUnit.MILLISECONDS );
+            }
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new SAMException( "Sorting was interrupted", e );
+        }
+        return buffer;
+    }
+
+
+    /**
+     * Rethrows the error of a failed worker in the calling thread.
+     */
+    private void checkSpillErrors() {
+        for( Future<File> spilledRun : spilledRuns ) {
+            if( spilledRun.isDone() ) {
+                this.getRun( spilledRun );
+            }
+        }
+    }
+
+
+    /**
+     * @param spilledRun the future of a run
+     * <p>
+     * @return The file of the run, after it was written
+     * <p>
+     * @throws SAMException if writing the run failed
+     */
+    private File getRun( Future<File> spilledRun ) {
+        try {
+            return spilledRun.get();
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new SAMException( "Sorting was interrupted", e );
+        } catch( ExecutionException e ) {
+            throw new SAMException( "Sorting failed: " + e.getCause().getMessage(), e.getCause() );
+        }
+    }
+
+
+    /**
+     * Run by the worker threads: Sorts the buffer and writes it to a new
+     * temporary file.
+     * <p>
+     * @param buffer    the buffer to sort and write
+     * @param runNumber number of the run for log messages
+     * <p>
+     * @return The file containing the sorted run
+     * <p>
+     * @throws IOException if the run could not be written
+     */
+    private File writeRun( RunBuffer buffer, int runNumber ) throws IOException {
+        long start = System.currentTimeMillis();
+        buffer.sort( byReadName );
+        File runFile = this.createTempFile();
+        try( DataOutputStream out = createOutputStream( runFile ) ) {
+            buffer.writeSorted( out );
+        }
+        spilledBytes.addAndGet( runFile.length() );
+        LOG.debug( "Sorted and wrote run {} with {} mappings in {} ms", runNumber, buffer.size(), System.currentTimeMillis() - start );
+        return runFile;
+    }
+
+
+    /**
+     * Merges groups of consecutive runs into new runs, which reduces the
+     * number of runs by the factor of the maximum number of open files.
+     * Merging consecutive runs keeps the input order of equal keys.
+     * <p>
+     * @param runs the runs to merge, which are deleted afterwards
+     * <p>
+     * @return The merged runs
+     * <p>
+     * @throws IOException if reading or writing a run failed
+     */
+    private List<File> mergeRuns( List<File> runs ) throws IOException {
+        List<File> mergedRuns = new ArrayList<>();
+        for( int from = 0; from < runs.size(); from += maxOpenFiles ) {
+            List<File> group = runs.subList( from, Math.min( runs.size(), from + maxOpenFiles ) );
+            File mergedRun = this.createTempFile();
+            PriorityQueue<RunReader> queue = this.openRuns( group );
+            try( DataOutputStream out = createOutputStream( mergedRun ) ) {
+                while( !queue.isEmpty() ) {
+                    RunReader reader = queue.poll();
+                    reader.writeEntry( out );
+                    if( reader.next() ) {
+                        queue.add( reader );
+                    } else {
+                        reader.close();
+                    }
+                }
+            } finally {
+                for( RunReader reader : queue ) {
+                    reader.close();
+                }
+            }
+            spilledBytes.addAndGet( mergedRun.length() );
+            for( File run : group ) {
+                run.delete();
+            }
+            mergedRuns.add( mergedRun );
+        }
+        return mergedRuns;
+    }
+
+
+    /**
+     * Opens a reader for each of the given runs.
+     * <p>
+     * @param runs the runs to open
+     * <p>
+     * @return A queue of the readers of all non-empty runs, ordered by their
+     *         current entry and their run index
+     * <p>
+     * @throws IOException if a run could not be read
+     */
+    private PriorityQueue<RunReader> openRuns( List<File> runs ) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>( Math.max( 1, runs.size() ), RunReader.COMPARATOR );
+        try {
+            for( int i = 0; i < runs.size(); ++i ) {
+                RunReader reader = new RunReader( runs.get( i ), i );
+                if( reader.next() ) {
+                    queue.add( reader );
+                } else {
+                    reader.close();
+                }
+            }
+        } catch( IOException e ) {
+            for( RunReader reader : queue ) {
+                reader.close();
+            }
+            throw e;
+        }
+        return queue;
+    }
+
+
+    /**
+     * @return A new temporary file for a run, which is deleted on close
+     * <p>
+     * @throws IOException if the file could not be created
+     */
+    private File createTempFile() throws IOException {
+        File tmpFile = File.createTempFile( "readxplorer_sort", ".run", tmpDir );
+        tmpFiles.add( tmpFile );
+        return tmpFile;
+    }
+
+
+    /**
+     * @param file the file to write
+     * <p>
+     * @return A buffered output stream for the file
+     * <p>
+     * @throws IOException if the file could not be opened
+     */
+    private static DataOutputStream createOutputStream( File file ) throws IOException {
+        return new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ), IO_BUFFER_SIZE ) );
+    }
+
+
+    /**
+     * @param data the data to send to the observer, if it is set
+     */
+    private void notifyObserver( Object data ) {
+        if( observer != null ) {
+            observer.update( data );
+        }
+    }
+
+
+    /**
+     * Compares two keys, which are known to have the same prefix,
+     * lexicographically by their unsigned bytes.
+     * <p>
+     * @param key1    array of the first key
+     * @param offset1 offset of the first key
+     * @param length1 length of the first key
+     * @param key2    array of the second key
+     * @param offset2 offset of the second key
+     * @param length2 length of the second key
+     * <p>
+     * @return A negative integer, zero, or a positive integer as the first
+     *         key is less than, equal to, or greater than the second one
+     */
+    private static int compareKeys( byte[] key1, int offset1, int length1, byte[] key2, int offset2, int length2 ) {
+        int length = Math.min( length1, length2 );
+        for( int i = PREFIX_BYTES; i < length; ++i ) {
+            int cmp = (key1[offset1 + i] & 0xFF) - (key2[offset2 + i] & 0xFF);
+            if( cmp != 0 ) {
+                return cmp;
+            }
+        }
+        return Integer.compare( length1, length2 );
+    }
+
+
+    /**
+     * A direct byte buffer holding entries of a key length, the key, a bam
+     * length and the bam bytes of a record. The long prefixes of the keys and
+     * the entry offsets are kept in arrays on the heap. Sorting only permutes
+     * an index array.
+     */
+    private static final class RunBuffer {
+
+        private final ByteBuffer data;
+        private long[] prefixes;
+        private int[] offsets;
+        private int[] order;
+        private int[] mergeBuffer;
+        private int size;
+        private boolean compareKeys;
+
+
+        RunBuffer( int capacity ) {
+            this.data = ByteBuffer.allocateDirect( capacity );
+            this.prefixes = new long[4096];
+            this.offsets = new int[4096];
+        }
+
+
+        int size() {
+            return size;
+        }
+
+
+        boolean add( long prefix, byte[] key, int keyLength, byte[] bam, int bamLength ) {
+            if( data.remaining() < ENTRY_HEADER_BYTES + keyLength + bamLength ) {
+                return false;
+            }
+            if( size == prefixes.length ) {
+                prefixes = Arrays.copyOf( prefixes, size * 2 );
+                offsets = Arrays.copyOf( offsets, size * 2 );
+            }
+            prefixes[size] = prefix;
+            offsets[size] = data.position();
+            ++size;
+            data.putInt( keyLength );
+            data.put( key, 0, keyLength );
+            data.putInt( bamLength );
+            data.put( bam, 0, bamLength );
+            return true;
+        }
+
+
+        void clear() {
+            data.clear();
+            size = 0;
+        }
+
+
+        /**
+         * Sorts the entries stably by their prefixes and, if necessary, by
+         * their keys.
+         */
+        void sort( boolean compareKeys ) {
+            this.compareKeys = compareKeys;
+            if( order == null || order.length < size ) {
+                order = new int[prefixes.length];
+                mergeBuffer = new int[prefixes.length];
+            }
+            for( int i = 0; i < size; ++i ) {
+                order[i] = i;
+            }
+            this.mergeSort( 0, size );
+        }
+
+
+        private void mergeSort( int from, int to ) {
+            if( to - from <= 16 ) {
+                for( int i = from + 1; i < to; ++i ) {
+                    int entry = order[i];
+                    int j = i - 1;
+                    while( j >= from && this.compare( order[j], entry ) > 0 ) {
+                        order[j + 1] = order[j];
+                        --j;
+                    }
+                    order[j + 1] = entry;
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            this.mergeSort( from, mid );
+            this.mergeSort( mid, to );
+            if( this.compare( order[mid - 1], order[mid] ) <= 0 ) {
+                return;
+            }
+            System.arraycopy( order, from, mergeBuffer, from, to - from );
+            int i = from;
+            int j = mid;
+            int k = from;
+            while( i < mid && j < to ) {
+                order[k++] = this.compare( mergeBuffer[j], mergeBuffer[i] ) < 0 ? mergeBuffer[j++] : mergeBuffer[i++];
+            }
+            while( i < mid ) {
+                order[k++] = mergeBuffer[i++];
+            }
+            while( j < to ) {
+                order[k++] = mergeBuffer[j++];
+            }
+        }
+
+
+        private int compare( int entry1, int entry2 ) {
+            int cmp = Long.compareUnsigned( prefixes[entry1], prefixes[entry2] );
+            if( cmp == 0 && compareKeys ) {
+                int keyOffset1 = offsets[entry1] + 4;
+                int keyOffset2 = offsets[entry2] + 4;
+                int length1 = data.getInt( offsets[entry1] );
+                int length2 = data.getInt( offsets[entry2] );
+                int length = Math.min( length1, length2 );
+                for( int i = PREFIX_BYTES; i < length && cmp == 0; ++i ) {
+                    cmp = (data.get( keyOffset1 + i ) & 0xFF) - (data.get( keyOffset2 + i ) & 0xFF);
+                }
+                if( cmp == 0 ) {
+                    cmp = Integer.compare( length1, length2 );
+                }
+            }
+            return cmp;
+        }
+
+
+        /**
+         * @param index index in the sorted order
+         * <p>
+         * @return The offset of the entry at the given index of the sorted
+         *         order
+         */
+        int getSortedOffset( int index ) {
+            return offsets[order[index]];
+        }
+
+
+        /**
+         * Writes all entries in sorted order, each preceded by its prefix.
+         */
+        void writeSorted( DataOutputStream out ) throws IOException {
+            ByteBuffer view = data.duplicate();
+            byte[] entryBytes = new byte[4096];
+            for( int i = 0; i < size; ++i ) {
+                int entry = order[i];
+                int offset = offsets[entry];
+                int keyLength = data.getInt( offset );
+                int entryLength = ENTRY_HEADER_BYTES + keyLength + data.getInt( offset + 4 + keyLength );
+                if( entryBytes.length < entryLength ) {
+                    entryBytes = new byte[entryLength * 2];
+                }
+                view.position( offset );
+                view.get( entryBytes, 0, entryLength );
+                out.writeLong( prefixes[entry] );
+                out.write( entryBytes, 0, entryLength );
+            }
+        }
+
+
+    }
+
+
+    /**
+     * Reader for the entries of a sorted run.
+     */
+    private static final class RunReader implements Closeable {
+
+        static final Comparator<RunReader> COMPARATOR = ( reader1, reader2 ) -> {
+            int cmp = Long.compareUnsigned( reader1.prefix, reader2.prefix );
+            if( cmp == 0 ) {
+                cmp = compareKeys( reader1.key, 0, reader1.keyLength, reader2.key, 0, reader2.keyLength );
+            }
+            return cmp != 0 ? cmp : Integer.compare( reader1.runIndex, reader2.runIndex );
+        };
+
+        private final DataInputStream in;
+        private final int runIndex;
+        private long prefix;
+        private byte[] key;
+        private int keyLength;
+        private byte[] bam;
+        private int bamLength;
+
+
+        RunReader( File run, int runIndex ) throws IOException {
+            this.in = new DataInputStream( new BufferedInputStream( new FileInputStream( run ), IO_BUFFER_SIZE ) );
+            this.runIndex = runIndex;
+            this.key = new byte[256];
+            this.bam = new byte[1024];
+        }
+
+
+        /**
+         * Reads the next entry.
+         * <p>
+         * @return <code>true</code>, if an entry was read,
+         *         <code>false</code> at the end of the run
+         */
+        boolean next() throws IOException {
+            try {
+                prefix = in.readLong();
+            } catch( EOFException e ) {
+                return false;
+            }
+            keyLength = in.readInt();
+            if( key.length < keyLength ) {
+                key = new byte[keyLength * 2];
+            }
+            in.readFully( key, 0, keyLength );
+            bamLength = in.readInt();
+            if( bam.length < bamLength ) {
+                bam = new byte[bamLength * 2];
+            }
+            in.readFully( bam, 0, bamLength );
+            return true;
+        }
+
+
+        void writeEntry( DataOutputStream out ) throws IOException {
+            out.writeLong( prefix );
+            out.writeInt( keyLength );
+            out.write( key, 0, keyLength );
+            out.writeInt( bamLength );
+            out.write( bam, 0, bamLength );
+        }
+
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch( IOException e ) {
+                LOG.warn( e.getMessage(), e );
+            }
+        }
+
+
+    }
+
+
+    /**
+     * Base class of the sorted iterators, which decodes the bam bytes of the
+     * entries.
+     */
+    private abstract class DecodingIterator implements CloseableIterator<SAMRecord> {
+
+        private final BAMRecordCodec decoder;
+        private final ReusableByteArrayInputStream bamStream;
+
+
+        DecodingIterator() {
+            this.decoder = new BAMRecordCodec( header );
+            this.bamStream = new ReusableByteArrayInputStream();
+            this.decoder.setInputStream( bamStream );
+        }
+
+
+        SAMRecord decode( byte[] bam, int bamLength ) {
+            bamStream.reset( bam, bamLength );
+            return decoder.decode();
+        }
+
+
+    }
+
+
+    /**
+     * Iterator over the sorted entries of a single buffer, when no run was
+     * written to disk.
+     */
+    private final class BufferIterator extends DecodingIterator {
+
+        private final RunBuffer buffer;
+        private final ByteBuffer view;
+        private byte[] bam;
+        private int index;
+
+
+        BufferIterator( RunBuffer buffer ) {
+            this.buffer = buffer;
+            this.view = buffer.data.duplicate();
+            this.bam = new byte[1024];
+        }
+
+
+        @Override
+        public boolean hasNext() {
+            return index < buffer.size();
+        }
+
+
+        @Override
+        public SAMRecord next() {
+            if( !this.hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            int offset = buffer.getSortedOffset( index++ );
+            int keyLength = view.getInt( offset );
+            int bamLength = view.getInt( offset + 4 + keyLength );
+            if( bam.length < bamLength ) {
+                bam = new byte[bamLength * 2];
+            }
+            view.position( offset + ENTRY_HEADER_BYTES + keyLength );
+            view.get( bam, 0, bamLength );
+            return this.decode( bam, bamLength );
+        }
+
+
+        @Override
+        public void close() {
+            index = buffer.size();
+        }
+
+
+    }
+
+
+    /**
+     * Iterator merging the sorted runs.
+     */
+    private final class MergingIterator extends DecodingIterator {
+
+        private final PriorityQueue<RunReader> queue;
+
+
+        MergingIterator( PriorityQueue<RunReader> queue ) {
+            this.queue = queue;
+        }
+
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+
+        @Override
+        public SAMRecord next() {
+            if( !this.hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            RunReader reader = queue.poll();
+            SAMRecord record = this.decode( reader.bam, reader.bamLength );
+            try {
+                if( reader.next() ) {
+                    queue.add( reader );
+                } else {
+                    reader.close();
+                }
+            } catch( IOException e ) {
+                reader.close();
+                throw new SAMException( "Reading a sorted run failed: " + e.getMessage(), e );
+            }
+            return record;
+        }
+
+
+        @Override
+        public void close() {
+            for( RunReader reader : queue ) {
+                reader.close();
+            }
+            queue.clear();
+        }
+
+
+    }
+
+
+    /**
+     * Byte array output stream, whose buffer can be accessed without copying.
+     */
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+        ExposedByteArrayOutputStream() {
+            super( 1024 );
+        }
+
+
+        byte[] getBuffer() {
+            return buf;
+        }
+
+
+    }
+
+
+    /**
+     * Byte array input stream, which can be reset to a new array.
+     */
+    private static final class ReusableByteArrayInputStream extends ByteArrayInputStream {
+
+        ReusableByteArrayInputStream() {
+            super( new byte[0] );
+        }
+
+
+        void reset( byte[] bytes, int length ) {
+            buf = bytes;
+            pos = 0;
+            count = length;
+            mark = 0;
+        }
+
+
+    }
+
+
+    /**
+     * Sam file writer, which sorts all records with an off-heap sorter and
+     * writes them presorted to the wrapped writer, when it is closed.
+     */
+    private static final class SortingWriter implements SAMFileWriter {
+
+        private final SAMFileWriter writer;
+        private final OffHeapSamSorter sorter;
+
+
+        SortingWriter( SAMFileWriter writer, OffHeapSamSorter sorter ) {
+            this.writer = writer;
+            this.sorter = sorter;
+        }
+
+
+        @Override
+        public void addAlignment( SAMRecord alignment ) {
+            alignment.setHeaderStrict( writer.getFileHeader() );
+            sorter.add( alignment );
+        }
+
+
+        @Override
+        public SAMFileHeader getFileHeader() {
+            return writer.getFileHeader();
+        }
+
+
+        @Override
+        public void setProgressLogger( ProgressLoggerInterface progress ) {
+            writer.setProgressLogger( progress );
+        }
+
+
+        @Override
+        public void close() {
+            try( OffHeapSamSorter sortedRecords = sorter;
+                 CloseableIterator<SAMRecord> sortedItor = sortedRecords.doneAdding() ) {
+                while( sortedItor.hasNext() ) {
+                    writer.addAlignment( sortedItor.next() );
+                }
+            } finally {
+                writer.close();
+            }
+        }
+
+
+    }
+
+
+}
@@ -119,8 +119,9 @@ public class SamBamCombiner implements CombinerI {
                 }
 
                 //determine writer type (sam or bam):
-                Pair<SAMFileWriter, File> writerAndFilePair = SamUtils.createSamBamWriter(
-                        fileToExtend, header, !sortCoordinate, SamUtils.COMBINED_STRING );
+                Pair<SAMFileWriter, File> writerAndFilePair = sortCoordinate
+                        ? OffHeapSamSorter.createSortingSamBamWriter( fileToExtend, header, SamUtils.COMBINED_STRING, this )
+                        : SamUtils.createSamBamWriter( fileToExtend, header, true, SamUtils.COMBINED_STRING );
 
                 try( SAMFileWriter samBamFileWriter = writerAndFilePair.getFirst() ) {
                     File outputFile = writerAndFilePair.getSecond();
@@ -23,7 +23,6 @@ import de.cebitec.readxplorer.utils.Benchmark;
 import de.cebitec.readxplorer.utils.Observable;
 import de.cebitec.readxplorer.utils.Observer;
 import de.cebitec.readxplorer.utils.Pair;
-import de.cebitec.readxplorer.utils.SamUtils;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileWriter;
 import htsjdk.samtools.SAMFormatException;
@@ -40,7 +39,8 @@ import static htsjdk.samtools.ValidationStringency.LENIENT;
 
 /**
  * Sorts a sam or bam file according to the specified SamFileHeader.SortOrder
- * and sets the new sorted file as the file in the given TrackJob.
+ * and sets the new sorted file as the file in the given TrackJob. Sorting by
+ * read name or coordinate uses the {@link OffHeapSamSorter}, if it is enabled.
  * <p>
  * @author Rolf Hilker <rhilker at cebitec.uni-bielefeld.de>
  */
@@ -93,9 +93,9 @@ public class SamBamSorter implements Observable {
              SAMRecordIterator samItor = samBamReader.iterator(); ) {
             
             SAMFileHeader header = samBamReader.getFileHeader();
-            if( header.getSortOrder() != SAMFileHeader.SortOrder.queryname ) {
+            if( header.getSortOrder() != sortOrder ) {
                 header.setSortOrder( sortOrder );
-                writerAndFile = SamUtils.createSamBamWriter( trackJob.getFile(), header, false, sortOrderMsg );
+                writerAndFile = OffHeapSamSorter.createSortingSamBamWriter( trackJob.getFile(), header, sortOrderMsg, this::notifyObservers );
                 SAMFileWriter writer = writerAndFile.getFirst();
                 while( samItor.hasNext() ) {
                     try {
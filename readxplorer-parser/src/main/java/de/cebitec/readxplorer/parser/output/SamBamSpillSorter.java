@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.parser.output;
+
+
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordComparator;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.SortingCollection;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Sorts sam records externally without writing a sorted bam file. The records
+ * are handed over in batches to a background thread, which sorts them and
+ * spills them to temporary files, while the calling thread continues to
+ * produce records. After {@link #doneAdding()} the records can be iterated
+ * once in sorted order, e.g. to classify them by read name or to write them
+ * sorted by coordinate.
+ * <p>
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class SamBamSpillSorter implements SamRecordSorter {
+
+    private static final int BATCH_SIZE = 10000;
+    private static final int MAX_QUEUED_BATCHES = 4;
+    private static final List<SAMRecord> END_OF_INPUT = new ArrayList<>( 0 );
+
+    private final SortingCollection<SAMRecord> sortingCollection;
+    private final BlockingQueue<List<SAMRecord>> batchQueue;
+    private final Thread spillThread;
+    private volatile Throwable spillError;
+    private List<SAMRecord> batch;
+
+
+    /**
+     * Sorts sam records externally without writing a sorted bam file. The
+     * records are sorted and spilled to temporary files in a background
+     * thread.
+     * <p>
+     * @param header          header of the records to sort, needed for
+     *                        encoding them in the temporary files
+     * @param comparator      comparator defining the sort order
+     * @param maxRecordsInRam number of records kept in memory before they are
+     *                        spilled to a temporary file
+     * @param tmpDir          directory for the temporary files
+     */
+    public SamBamSpillSorter( SAMFileHeader header, SAMRecordComparator comparator, int maxRecordsInRam, File tmpDir ) {
+        this.sortingCollection = SortingCollection.newInstance( SAMRecord.class, new BAMRecordCodec( header ), comparator,
+                                                                maxRecordsInRam, tmpDir.toPath() );
+        this.batchQueue = new ArrayBlockingQueue<>( MAX_QUEUED_BATCHES );
+        this.batch = new ArrayList<>( BATCH_SIZE );
+        this.spillThread = new Thread( this::sortBatches, "SamBamSpillSorter" );
+        this.spillThread.setDaemon( true );
+        this.spillThread.start();
+    }
+
+
+    /**
+     * Adds a record to sort. The record must not be changed afterwards.
+     * <p>
+     * @param record the record to add
+     * <p>
+     * @throws SAMException if sorting or spilling the records failed
+     */
+    @Override
+    public void add( SAMRecord record ) {
+        batch.add( record );
+        if( batch.size() == BATCH_SIZE ) {
+            this.handOver( batch );
+            batch = new ArrayList<>( BATCH_SIZE );
+        }
+    }
+
+
+    /**
+     * Finishes adding records and waits until all of them are sorted.
+     * <p>
+     * @return An iterator over all added records in sorted order. It can only
+     *         be used once.
+     * <p>
+     * @throws SAMException if sorting or spilling the records failed
+     */
+    @Override
+    public CloseableIterator<SAMRecord> doneAdding() {
+        this.handOver( batch );
+        this.handOver( END_OF_INPUT );
+        batch = new ArrayList<>( 0 );
+        try {
+            spillThread.join();
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new SAMException( "Sorting was interrupted", e );
+        }
+        this.checkSpillError();
+        sortingCollection.doneAdding();
+        return sortingCollection.iterator();
+    }
+
+
+    /**
+     * Stops sorting, if it is not finished yet, and deletes all temporary
+     * files.
+     */
+    @Override
+    public void close() {
+        spillThread.interrupt();
+        try {
+            spillThread.join();
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        sortingCollection.cleanup();
+    }
+
+
+    /**
+     * Hands a batch of records over to the spill thread. Waits while the
+     * spill thread is busy with previous batches.
+     * <p>
+     * @param recordBatch the batch to hand over
+     */
+    private void handOver( List<SAMRecord> recordBatch ) {
+        try {
+            while( !batchQueue.offer( recordBatch, 100, TimeUnit.MILLISECONDS ) ) {
+                this.checkSpillError();
+            }
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new SAMException( "Sorting was interrupted", e );
+        }
+        this.checkSpillError();
+    }
+
+
+    /**
+     * Rethrows an error of the spill thread in the calling thread.
+     */
+    private void checkSpillError() {
+        if( spillError != null ) {
+            throw new SAMException( "Sorting failed: " + spillError.getMessage(), spillError );
+        }
+    }
+
+
+    /**
+     * Run by the spill thread: Adds all handed over batches to the sorting
+     * collection, which sorts them and spills them to disk, until the end of
+     * the input is reached.
+     */
+    private void sortBatches() {
+        try {
+            List<SAMRecord> recordBatch = batchQueue.take();
+            while( recordBatch != END_OF_INPUT ) {
+                for( SAMRecord record : recordBatch ) {
+                    sortingCollection.add( record );
+                }
+                recordBatch = batchQueue.take();
+            }
+        } catch( InterruptedException e ) {
+            spillError = e;
+        } catch( Throwable t ) { //errors like a full disk or missing memory have to be reported to the producer
+            spillError = t;
+            batchQueue.clear();
+        }
+    }
+
+
+}
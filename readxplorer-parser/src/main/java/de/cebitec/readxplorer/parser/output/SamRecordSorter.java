@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.parser.output;
+
+
+import de.cebitec.readxplorer.utils.Observer;
+import de.cebitec.readxplorer.utils.SamUtils;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordQueryNameComparator;
+import htsjdk.samtools.util.CloseableIterator;
+import java.io.File;
+
+
+/**
+ * Interface for external sorters of sam records, which hand out the sorted
+ * records once without writing a sorted bam file.
+ * <p>
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public interface SamRecordSorter extends AutoCloseable {
+
+    /**
+     * Adds a record to sort. The record must not be changed afterwards.
+     * <p>
+     * @param record the record to add
+     * <p>
+     * @throws htsjdk.samtools.SAMException if sorting the records failed
+     */
+    void add( SAMRecord record );
+
+
+    /**
+     * Finishes adding records and waits until all of them are sorted.
+     * <p>
+     * @return An iterator over all added records in sorted order. It can only
+     *         be used once.
+     * <p>
+     * @throws htsjdk.samtools.SAMException if sorting the records failed
+     */
+    CloseableIterator<SAMRecord> doneAdding();
+
+
+    /**
+     * Stops sorting, if it is not finished yet, and deletes all temporary
+     * files.
+     */
+    @Override
+    void close();
+
+
+    /**
+     * Creates the sorter configured in the preferences: The
+     * {@link OffHeapSamSorter}, if it is enabled, or the
+     * {@link SamBamSpillSorter} otherwise.
+     * <p>
+     * @param header    header of the records to sort
+     * @param sortOrder queryname or coordinate
+     * @param inputFile file containing the records, used to estimate their
+     *                  size
+     * @param nbSorters number of sorters holding records at the same time,
+     *                  which share the memory
+     * @param tmpDir    directory for the temporary files
+     * @param observer  observer receiving progress messages
+     * <p>
+     * @return A new sorter
+     */
+    static SamRecordSorter create( SAMFileHeader header, SAMFileHeader.SortOrder sortOrder, File inputFile, int nbSorters,
+                                   File tmpDir, Observer observer ) {
+        if( OffHeapSamSorter.isEnabled() ) {
+            return new OffHeapSamSorter( header, sortOrder, OffHeapSamSorter.getDefaultBufferSize() / nbSorters,
+                                         OffHeapSamSorter.getDefaultThreadCount(), tmpDir, observer );
+        } else {
+            return new SamBamSpillSorter( header, sortOrder == SAMFileHeader.SortOrder.queryname
+                                                  ? new SAMRecordQueryNameComparator() : new SAMRecordCoordinateComparator(),
+                                          SamUtils.determineMaxRecordsInRam( inputFile ) / nbSorters, tmpDir );
+        }
+    }
+
+
+}
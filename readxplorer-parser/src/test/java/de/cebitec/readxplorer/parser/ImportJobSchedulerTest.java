@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.parser;
+
+import de.cebitec.readxplorer.utils.SamUtils;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class ImportJobSchedulerTest {
+
+    private static final int NO_JOBS = 6;
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+
+    public ImportJobSchedulerTest() {
+    }
+
+
+    /**
+     * Test of importTracks: All jobs have to run concurrently with their own
+     * temporary directory, while all results are written by the calling
+     * thread.
+     */
+    @Test
+    public void testImportTracks() throws IOException, InterruptedException, ExecutionException {
+        System.out.println( "importTracks" );
+        ImportJobScheduler<String> scheduler = new ImportJobScheduler<>( NO_JOBS );
+        CountDownLatch allRunning = new CountDownLatch( NO_JOBS );
+        for( int i = 0; i < NO_JOBS; ++i ) {
+            File trackFile = tmpFolder.newFile( "track" + i + ".bam" );
+            TrackJob trackJob = new TrackJob( i, trackFile, trackFile.getName(), null, null, false, new Timestamp( System.currentTimeMillis() ) );
+            scheduler.addJob( trackJob, () -> {
+                allRunning.countDown();
+                assertTrue( allRunning.await( 10, TimeUnit.SECONDS ) ); //fails, if the jobs do not run concurrently
+                assertNotNull( SamUtils.getTempImportDirectory() );
+                return trackJob.getName();
+            } );
+        }
+
+        Thread callingThread = Thread.currentThread();
+        Set<String> writtenTracks = new HashSet<>();
+        scheduler.importTracks( (trackJob, result) -> {
+            assertSame( callingThread, Thread.currentThread() );
+            assertEquals( trackJob.getName(), result );
+            writtenTracks.add( result );
+        } );
+        assertEquals( NO_JOBS, writtenTracks.size() );
+    }
+
+
+    /**
+     * Test of importTracks with a failing import: The failure has to reach the
+     * calling thread.
+     */
+    @Test( expected = ExecutionException.class )
+    public void testImportTracksFailure() throws IOException, InterruptedException, ExecutionException {
+        System.out.println( "importTracksFailure" );
+        ImportJobScheduler<String> scheduler = new ImportJobScheduler<>( 2 );
+        File trackFile = tmpFolder.newFile( "track.bam" );
+        TrackJob trackJob = new TrackJob( 1, trackFile, trackFile.getName(), null, null, false, new Timestamp( System.currentTimeMillis() ) );
+        scheduler.addJob( trackJob, () -> {
+            throw new IOException( "Disk full" );
+        } );
+        scheduler.importTracks( (job, result) -> {
+        } );
+    }
+
+
+}
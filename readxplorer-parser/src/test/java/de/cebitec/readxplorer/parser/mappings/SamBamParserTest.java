@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.parser.mappings;
+
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.api.enums.SAMRecordTag;
+import de.cebitec.readxplorer.parser.common.ParsedClassification;
+import de.cebitec.readxplorer.parser.common.RefSeqFetcher;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.FastaSequenceIndexCreator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the read classification of the {@link SamBamParser}. The records
+ * classified by the pipeline with and without worker threads are compared to
+ * each other, to the records classified by the former sequential loop over
+ * the records and to the expected classes of a small set of reads.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class SamBamParserTest {
+
+    private static final String CHROM_NAME = "chrom1";
+    private static final int CHROM_LENGTH = 20000;
+    private static final int READ_LENGTH = 50;
+    private static final char[] BASES = { 'A', 'C', 'G', 'T' };
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private File fastaFile;
+    private String refSeq;
+    private SAMFileHeader header;
+    private Map<String, Integer> chromLengthMap;
+
+
+    public SamBamParserTest() {
+    }
+
+
+    @Before
+    public void setUp() throws IOException {
+        Random random = new Random( 42 );
+        StringBuilder refBuilder = new StringBuilder( CHROM_LENGTH );
+        for( int i = 0; i < CHROM_LENGTH; ++i ) {
+            refBuilder.append( BASES[random.nextInt( BASES.length )] );
+        }
+        refSeq = refBuilder.toString();
+        fastaFile = tmpFolder.newFile( "reference.fasta" );
+        Files.write( fastaFile.toPath(), (">" + CHROM_NAME + "\n" + refSeq + "\n").getBytes( StandardCharsets.US_ASCII ) );
+        FastaSequenceIndexCreator.create( fastaFile.toPath(), true );
+
+        header = new SAMFileHeader();
+        header.addSequence( new SAMSequenceRecord( CHROM_NAME, CHROM_LENGTH ) );
+        header.setSortOrder( SAMFileHeader.SortOrder.queryname );
+        chromLengthMap = new HashMap<>();
+        chromLengthMap.put( CHROM_NAME, CHROM_LENGTH );
+    }
+
+
+    /**
+     * Test of the read classification with worker threads. It has to produce
+     * exactly the same records in the same order as the sequential
+     * classification.
+     */
+    @Test
+    public void testClassifyReadsParallel() throws IOException {
+        System.out.println( "classifyReadsParallel" );
+        byte[] sequentialBam = this.classify( 0 );
+        byte[] parallelBam = this.classify( 4 );
+        assertTrue( sequentialBam.length > 0 );
+        assertArrayEquals( sequentialBam, parallelBam );
+        assertArrayEquals( sequentialBam, this.classify( 1 ) );
+    }
+
+
+    /**
+     * Test of the read classification compared to the former sequential
+     * classification, which classified each read directly with
+     * {@link CommonsMappingParser#classifyRead(SAMRecord,
+     * de.cebitec.readxplorer.utils.MessageSenderI, Map, String, int,
+     * RefSeqFetcher, Map, ParsedClassification)}. Both have to produce the
+     * same records with the same classification data.
+     */
+    @Test
+    public void testClassifyReadsLikeFormerParser() {
+        System.out.println( "classifyReadsLikeFormerParser" );
+        List<String> expected = toSortedSamStrings( this.classifyFormer( this.createRecords().iterator() ) );
+        for( int nbThreads : new int[]{ 0, 4 } ) {
+            List<SAMRecord> classified = new ArrayList<>();
+            SamBamParser parser = new SamBamParser();
+            parser.setClassificationThreads( nbThreads );
+            parser.classifyReads( this.createRecords().iterator(), "test.bam", SAMFileHeader.SortOrder.queryname, chromLengthMap,
+                                  fastaFile, System.currentTimeMillis(), classified::add );
+            assertEquals( expected, toSortedSamStrings( classified ) );
+        }
+    }
+
+
+    /**
+     * Test of the read classification with a small set of reads, whose
+     * mapping classes and mapping counts are known. Unmapped reads are not
+     * written and both mates of a pair are classified separately.
+     */
+    @Test
+    public void testClassifyReadsFixture() {
+        System.out.println( "classifyReadsFixture" );
+        List<SAMRecord> records = new ArrayList<>();
+        records.add( this.createMapping( "read1", 0, 100, 0 ) );
+        records.add( this.createMapping( "read2", 0, 200, 0 ) );
+        records.add( this.createMapping( "read2", 0, 300, 0 ) );
+        records.add( this.createMapping( "read3", 0, 400, 0 ) );
+        records.add( this.createMapping( "read3", 0, 500, 2 ) );
+        records.add( this.createMapping( "read4", 0, 600, 1 ) );
+        records.add( this.createMapping( "read5", 0, 700, 1 ) );
+        records.add( this.createMapping( "read5", 0, 800, 1 ) );
+        records.add( this.createMapping( "read5", 0, 900, 3 ) );
+        SAMRecord unmapped = new SAMRecord( header );
+        unmapped.setReadName( "read6" );
+        unmapped.setReadUnmappedFlag( true );
+        unmapped.setReadString( refSeq.substring( 0, READ_LENGTH ) );
+        records.add( unmapped );
+        records.add( this.createMapping( "read7", 1, 1000, 0 ) );
+        records.add( this.createMapping( "read7", 2, 1100, 1 ) );
+
+        Map<Integer, String> expected = new TreeMap<>();
+        expected.put( 100, MappingClass.SINGLE_PERFECT_MATCH + " 1" );
+        expected.put( 200, MappingClass.PERFECT_MATCH + " 2" );
+        expected.put( 300, MappingClass.PERFECT_MATCH + " 2" );
+        expected.put( 400, MappingClass.SINGLE_PERFECT_MATCH + " 2" );
+        expected.put( 500, MappingClass.COMMON_MATCH + " 2" );
+        expected.put( 600, MappingClass.SINGLE_BEST_MATCH + " 1" );
+        expected.put( 700, MappingClass.BEST_MATCH + " 3" );
+        expected.put( 800, MappingClass.BEST_MATCH + " 3" );
+        expected.put( 900, MappingClass.COMMON_MATCH + " 3" );
+        expected.put( 1000, MappingClass.SINGLE_PERFECT_MATCH + " 1" );
+        expected.put( 1100, MappingClass.SINGLE_BEST_MATCH + " 1" );
+
+        for( int nbThreads : new int[]{ 0, 4 } ) {
+            List<SAMRecord> classified = new ArrayList<>();
+            SamBamParser parser = new SamBamParser();
+            parser.setClassificationThreads( nbThreads );
+            List<SAMRecord> input = new ArrayList<>();
+            for( SAMRecord record : records ) {
+                input.add( record.deepCopy() );
+            }
+            parser.classifyReads( input.iterator(), "test.bam", SAMFileHeader.SortOrder.queryname, chromLengthMap,
+                                  fastaFile, System.currentTimeMillis(), classified::add );
+
+            Map<Integer, String> result = new TreeMap<>();
+            for( SAMRecord record : classified ) {
+                int type = ((Number) record.getAttribute( SAMRecordTag.ReadClass.toString() )).intValue();
+                result.put( record.getAlignmentStart(), MappingClass.getFeatureType( type ) + " " +
+                                                        record.getAttribute( SAMRecordTag.MapCount.toString() ) );
+            }
+            assertEquals( expected, result );
+        }
+    }
+
+
+    /**
+     * Classifies the reads like the former sequential parser, which
+     * classified each read in the loop over the records.
+     * <p>
+     * @param samItor iterator over the records sorted by read name
+     * <p>
+     * @return The classified records in the order in which they were written
+     */
+    private List<SAMRecord> classifyFormer( Iterator<SAMRecord> samItor ) {
+        SamBamParser parser = new SamBamParser();
+        RefSeqFetcher refSeqFetcher = new RefSeqFetcher( fastaFile, parser );
+        SAMFileHeader.SortOrder sortOrder = SAMFileHeader.SortOrder.queryname;
+        List<SAMRecord> classified = new ArrayList<>();
+
+        String lastReadName = "";
+        Map<SAMRecord, Integer> diffMap1 = new HashMap<>( 1024 );
+        Map<SAMRecord, Integer> diffMap2 = new HashMap<>( 1024 );
+        ParsedClassification class1 = new ParsedClassification( sortOrder );
+        ParsedClassification class2 = new ParsedClassification( sortOrder );
+        int lineno = 0;
+        while( samItor.hasNext() ) {
+            ++lineno;
+            final SAMRecord record = samItor.next();
+            if( !record.getReadUnmappedFlag() && chromLengthMap.containsKey( record.getReferenceName() ) ) {
+                String readName = record.getReadName();
+                if( !lastReadName.equals( readName ) ) {
+                    CommonsMappingParser.writeSamRecord( diffMap1, class1, classified::add );
+                    CommonsMappingParser.writeSamRecord( diffMap2, class2, classified::add );
+                    class1 = new ParsedClassification( sortOrder );
+                    class2 = new ParsedClassification( sortOrder );
+                }
+
+                boolean classifiedRead;
+                if( record.getReadPairedFlag() && record.getSecondOfPairFlag() ) {
+                    classifiedRead = CommonsMappingParser.classifyRead( record, parser, chromLengthMap, "test.bam",
+                                                                        lineno, refSeqFetcher, diffMap2, class2 );
+                } else {
+                    classifiedRead = CommonsMappingParser.classifyRead( record, parser, chromLengthMap, "test.bam",
+                                                                        lineno, refSeqFetcher, diffMap1, class1 );
+                }
+                if( classifiedRead ) {
+                    lastReadName = readName;
+                }
+            }
+        }
+        CommonsMappingParser.writeSamRecord( diffMap1, class1, classified::add );
+        CommonsMappingParser.writeSamRecord( diffMap2, class2, classified::add );
+        return classified;
+    }
+
+
+    /**
+     * @param records records to convert
+     * <p>
+     * @return The sorted sam strings of the records. The records of a read
+     *         name may be written in any order.
+     */
+    private static List<String> toSortedSamStrings( List<SAMRecord> records ) {
+        List<String> samStrings = new ArrayList<>( records.size() );
+        for( SAMRecord record : records ) {
+            samStrings.add( record.getSAMString() );
+        }
+        Collections.sort( samStrings );
+        return samStrings;
+    }
+
+
+    /**
+     * Classifies the reads with the given number of worker threads and writes
+     * them in the order of classification.
+     * <p>
+     * @param nbThreads number of worker threads
+     * <p>
+     * @return The content of the written bam file
+     */
+    private byte[] classify( int nbThreads ) throws IOException {
+        File bamFile = tmpFolder.newFile( "classified" + nbThreads + ".bam" );
+        SAMFileHeader outHeader = header.clone();
+        outHeader.setSortOrder( SAMFileHeader.SortOrder.unsorted );
+        SamBamParser parser = new SamBamParser();
+        parser.setClassificationThreads( nbThreads );
+        try( SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter( outHeader, true, bamFile ) ) {
+            parser.classifyReads( this.createRecords().iterator(), "test.bam", SAMFileHeader.SortOrder.queryname, chromLengthMap,
+                                  fastaFile, System.currentTimeMillis(), writer::addAlignment );
+        }
+        return Files.readAllBytes( bamFile.toPath() );
+    }
+
+
+    /**
+     * @return Paired records sorted by read name. Some reads map to multiple
+     *         positions, some contain mismatches or gaps and some are
+     *         unmapped.
+     */
+    private List<SAMRecord> createRecords() {
+        Random random = new Random( 7 );
+        List<SAMRecord> records = new ArrayList<>();
+        for( int readNo = 0; readNo < 3000; ++readNo ) {
+            String readName = String.format( "read%05d", readNo );
+            int nbMappings = random.nextInt( 10 ) == 0 ? 2 + random.nextInt( 3 ) : 1;
+            for( int mate = 1; mate <= 2; ++mate ) {
+                for( int mapping = 0; mapping < nbMappings; ++mapping ) {
+                    records.add( this.createRecord( readName, mate, random ) );
+                }
+            }
+        }
+        return records;
+    }
+
+
+    /**
+     * Creates a mapping of the given read at the given position with the given
+     * number of mismatches to the reference.
+     * <p>
+     * @param readName   name of the read
+     * @param mate       0 for single reads, 1 or 2 for the mates of a pair
+     * @param start      start position of the mapping
+     * @param mismatches number of mismatches of the mapping
+     * <p>
+     * @return The new mapping
+     */
+    private SAMRecord createMapping( String readName, int mate, int start, int mismatches ) {
+        char[] readSeq = refSeq.substring( start - 1, start - 1 + READ_LENGTH ).toCharArray();
+        for( int i = 0; i < mismatches; ++i ) {
+            int pos = 10 + i * 10;
+            readSeq[pos] = BASES[(Arrays.binarySearch( BASES, readSeq[pos] ) + 1) % BASES.length];
+        }
+        SAMRecord record = new SAMRecord( header );
+        record.setReadName( readName );
+        if( mate > 0 ) {
+            record.setReadPairedFlag( true );
+            record.setFirstOfPairFlag( mate == 1 );
+            record.setSecondOfPairFlag( mate == 2 );
+        }
+        record.setReferenceName( CHROM_NAME );
+        record.setAlignmentStart( start );
+        record.setCigarString( READ_LENGTH + "M" );
+        record.setMappingQuality( 60 );
+        record.setReadString( new String( readSeq ) );
+        record.setBaseQualityString( SAMRecord.NULL_QUALS_STRING );
+        return record;
+    }
+
+
+    private SAMRecord createRecord( String readName, int mate, Random random ) {
+        SAMRecord record = new SAMRecord( header );
+        record.setReadName( readName );
+        record.setReadPairedFlag( true );
+        record.setFirstOfPairFlag( mate == 1 );
+        record.setSecondOfPairFlag( mate == 2 );
+        if( random.nextInt( 50 ) == 0 ) {
+            record.setReadUnmappedFlag( true );
+            record.setReadString( refSeq.substring( 0, READ_LENGTH ) );
+            return record;
+        }
+
+        int start = 1 + random.nextInt( CHROM_LENGTH - 2 * READ_LENGTH );
+        char[] readSeq;
+        String cigar;
+        if( random.nextInt( 10 ) == 0 ) { //deletion of two bases
+            readSeq = (refSeq.substring( start - 1, start + 19 ) + refSeq.substring( start + 21, start + READ_LENGTH + 1 )).toCharArray();
+            cigar = "20M2D30M";
+        } else {
+            readSeq = refSeq.substring( start - 1, start - 1 + READ_LENGTH ).toCharArray();
+            cigar = READ_LENGTH + "M";
+        }
+        for( int i = random.nextInt( 4 ); i > 0; --i ) {
+            readSeq[random.nextInt( readSeq.length )] = BASES[random.nextInt( BASES.length )];
+        }
+        record.setReferenceName( CHROM_NAME );
+        record.setAlignmentStart( start );
+        record.setReadNegativeStrandFlag( random.nextBoolean() );
+        record.setCigarString( cigar );
+        record.setMappingQuality( 60 );
+        record.setReadString( new String( readSeq ) );
+        byte[] qualities = new byte[readSeq.length];
+        Arrays.fill( qualities, (byte) 30 );
+        record.setBaseQualities( qualities );
+        return record;
+    }
+
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.parser.output;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordQueryNameComparator;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.CloseableIterator;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class OffHeapSamSorterTest {
+
+    private static final int NO_RECORDS = 60000;
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private SAMFileHeader header;
+
+
+    public OffHeapSamSorterTest() {
+    }
+
+
+    @Before
+    public void setUp() {
+        header = new SAMFileHeader();
+        header.addSequence( new SAMSequenceRecord( "chrom1", 100000 ) );
+        header.addSequence( new SAMSequenceRecord( "chrom2", 100000 ) );
+    }
+
+
+    /**
+     * Test of sorting by coordinate with many runs, which have to be merged
+     * in several passes. Unmapped reads have to be at the end and reads with
+     * equal positions have to keep their input order.
+     */
+    @Test
+    public void testSortByCoordinate() {
+        System.out.println( "sortByCoordinate" );
+        File tmpDir = tmpFolder.getRoot();
+        SAMRecordCoordinateComparator comparator = new SAMRecordCoordinateComparator();
+        try( OffHeapSamSorter sorter = new OffHeapSamSorter( header, SAMFileHeader.SortOrder.coordinate, 1, 2, tmpDir, null, 2 ) ) {
+            Random random = new Random( 42 );
+            for( int i = 0; i < NO_RECORDS; ++i ) {
+                sorter.add( this.createRecord( String.format( "read%06d", i ), random.nextInt( 2 ), 1 + random.nextInt( 100 ), random.nextInt( 50 ) == 0 ) );
+            }
+
+            int count = 0;
+            SAMRecord lastRecord = null;
+            try( CloseableIterator<SAMRecord> itor = sorter.doneAdding() ) {
+                while( itor.hasNext() ) {
+                    SAMRecord record = itor.next();
+                    if( lastRecord != null ) {
+                        assertTrue( comparator.fileOrderCompare( lastRecord, record ) <= 0 );
+                        if( comparator.compare( lastRecord, record ) == 0 ) {
+                            assertTrue( lastRecord.getReadName().compareTo( record.getReadName() ) < 0 );
+                        }
+                    }
+                    lastRecord = record;
+                    ++count;
+                }
+            }
+            assertEquals( NO_RECORDS, count );
+            assertTrue( lastRecord.getReadUnmappedFlag() );
+        }
+        assertEquals( 0, tmpDir.list().length );
+    }
+
+
+    /**
+     * Test of sorting by read name in memory and with runs on disk. Both
+     * have to produce the order of htsjdk's query name comparator.
+     */
+    @Test
+    public void testSortByReadName() {
+        System.out.println( "sortByReadName" );
+        Random random = new Random( 7 );
+        List<SAMRecord> records = new ArrayList<>();
+        for( int i = 0; i < NO_RECORDS; ++i ) {
+            SAMRecord record = this.createRecord( "r" + random.nextInt( NO_RECORDS / 3 ), 0, 1 + random.nextInt( 1000 ), false );
+            record.setReadPairedFlag( true );
+            record.setFirstOfPairFlag( random.nextBoolean() );
+            record.setSecondOfPairFlag( !record.getFirstOfPairFlag() );
+            records.add( record );
+        }
+
+        SAMRecordQueryNameComparator comparator = new SAMRecordQueryNameComparator();
+        for( long bufferSize : new long[]{ 1, 256L * 1024L * 1024L } ) {
+            try( OffHeapSamSorter sorter = new OffHeapSamSorter( header, SAMFileHeader.SortOrder.queryname, bufferSize, 1,
+                                                                 tmpFolder.getRoot(), null ) ) {
+                for( SAMRecord record : records ) {
+                    sorter.add( record );
+                }
+
+                int count = 0;
+                SAMRecord lastRecord = null;
+                try( CloseableIterator<SAMRecord> itor = sorter.doneAdding() ) {
+                    while( itor.hasNext() ) {
+                        SAMRecord record = itor.next();
+                        if( lastRecord != null ) {
+                            assertTrue( comparator.compare( lastRecord, record ) <= 0 );
+                        }
+                        lastRecord = record;
+                        ++count;
+                    }
+                }
+                assertEquals( NO_RECORDS, count );
+            }
+        }
+    }
+
+
+    private SAMRecord createRecord( String readName, int refIndex, int start, boolean unmapped ) {
+        SAMRecord record = new SAMRecord( header );
+        record.setReadName( readName );
+        if( unmapped ) {
+            record.setReadUnmappedFlag( true );
+        } else {
+            record.setReferenceIndex( refIndex );
+            record.setAlignmentStart( start );
+            record.setCigarString( "10M" );
+        }
+        record.setReadString( "ACGTACGTAC" );
+        record.setBaseQualityString( "IIIIIIIIII" );
+        return record;
+    }
+
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.parser.output;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordQueryNameComparator;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.CloseableIterator;
+import java.io.File;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class SamBamSpillSorterTest {
+
+    private static final int NO_RECORDS = 25000;
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private SAMFileHeader header;
+
+
+    public SamBamSpillSorterTest() {
+    }
+
+
+    @Before
+    public void setUp() {
+        header = new SAMFileHeader();
+        header.addSequence( new SAMSequenceRecord( "chrom1", 100000 ) );
+    }
+
+
+    /**
+     * Test of sorting by coordinate with records spilled to disk.
+     */
+    @Test
+    public void testSortByCoordinate() throws Exception {
+        System.out.println( "sortByCoordinate" );
+        File tmpDir = tmpFolder.newFolder();
+        SAMRecordCoordinateComparator comparator = new SAMRecordCoordinateComparator();
+        try( SamBamSpillSorter sorter = new SamBamSpillSorter( header, comparator, 1000, tmpDir ) ) {
+            Random random = new Random( 42 );
+            for( int i = 0; i < NO_RECORDS; ++i ) {
+                sorter.add( this.createRecord( "read" + i, 1 + random.nextInt( 99000 ) ) );
+            }
+
+            int count = 0;
+            SAMRecord lastRecord = null;
+            try( CloseableIterator<SAMRecord> itor = sorter.doneAdding() ) {
+                while( itor.hasNext() ) {
+                    SAMRecord record = itor.next();
+                    if( lastRecord != null ) {
+                        assertTrue( comparator.compare( lastRecord, record ) <= 0 );
+                    }
+                    lastRecord = record;
+                    ++count;
+                }
+            }
+            assertEquals( NO_RECORDS, count );
+        }
+        assertFalse( tmpDir.list().length > 0 );
+    }
+
+
+    /**
+     * Test of sorting by read name, which keeps the records of a read name
+     * together.
+     */
+    @Test
+    public void testSortByReadName() {
+        System.out.println( "sortByReadName" );
+        try( SamBamSpillSorter sorter = new SamBamSpillSorter( header, new SAMRecordQueryNameComparator(), 100, tmpFolder.getRoot() ) ) {
+            for( int i = 0; i < 500; ++i ) {
+                sorter.add( this.createRecord( "read" + (i % 250), 1000 - i ) );
+            }
+
+            int count = 0;
+            try( CloseableIterator<SAMRecord> itor = sorter.doneAdding() ) {
+                while( itor.hasNext() ) {
+                    SAMRecord first = itor.next();
+                    SAMRecord second = itor.next();
+                    assertEquals( first.getReadName(), second.getReadName() );
+                    count += 2;
+                }
+            }
+            assertEquals( 500, count );
+        }
+    }
+
+
+    private SAMRecord createRecord( String readName, int start ) {
+        SAMRecord record = new SAMRecord( header );
+        record.setReadName( readName );
+        record.setReferenceName( "chrom1" );
+        record.setAlignmentStart( start );
+        record.setCigarString( "10M" );
+        record.setReadString( "ACGTACGTAC" );
+        record.setBaseQualityString( "IIIIIIIIII" );
+        return record;
+    }
+
+
+}
@@ -45,6 +45,7 @@ public class CorrelatedInterval extends TrackChromResultEntry {
      * <p>
      * @param strand
      * @param track1Id
+     * @param track2Id
      * @param chromId
      * @param from
      * @param to
@@ -55,6 +56,7 @@ public class CorrelatedInterval extends TrackChromResultEntry {
                                int track1Id, int track2Id, int chromId, int from, int to, double correlation, double minPeakCoverage ) {
         super( track1Id, chromId );
         this.strand = strand;
+        this.track2Id = track2Id;
         this.from = from;
         this.to = to;
         this.correlation = correlation;
@@ -90,7 +90,7 @@ public final class CorrelationAnalysisAction implements ActionListener {
         List<WizardDescriptor.Panel<WizardDescriptor>> panels = new ArrayList<>( 5 );
         TrackListPanel trackPanel = new TrackListPanel( this.context.getReference().getId() );
         this.readClassWizPanel = new SelectReadClassWizardPanel( PROP_WIZARD_NAME, false );
-        trackPanel.getComponent().setSelectAmount( 2 );
+        trackPanel.getComponent().setMinSelectAmount( 2 );
         panels.add( trackPanel );
         panels.add( new ParameterSelectionPanel() );
         panels.add( this.readClassWizPanel );
@@ -18,83 +18,81 @@
 package de.cebitec.readxplorer.rnatrimming.correlationanalysis;
 
 
+import de.cebitec.readxplorer.api.enums.IntervalRequestData;
 import de.cebitec.readxplorer.api.enums.Strand;
+import de.cebitec.readxplorer.databackend.AnalysesHandler;
 import de.cebitec.readxplorer.databackend.IntervalRequest;
+import de.cebitec.readxplorer.databackend.ParametersReadClasses;
 import de.cebitec.readxplorer.databackend.SaveFileFetcherForGUI;
 import de.cebitec.readxplorer.databackend.SaveFileFetcherForGUI.UserCanceledTrackPathUpdateException;
 import de.cebitec.readxplorer.databackend.ThreadListener;
 import de.cebitec.readxplorer.databackend.connector.DatabaseException;
 import de.cebitec.readxplorer.databackend.connector.TrackConnector;
-import de.cebitec.readxplorer.databackend.dataobjects.Coverage;
 import de.cebitec.readxplorer.databackend.dataobjects.CoverageAndDiffResult;
+import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
-import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
-import de.cebitec.readxplorer.rnatrimming.correlationanalysis.CorrelationAnalysisAction.CorrelationCoefficient;
 import de.cebitec.readxplorer.ui.datavisualisation.referenceviewer.ReferenceViewer;
 import de.cebitec.readxplorer.utils.errorhandling.ErrorHelper;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
-import org.apache.commons.math3.stat.correlation.SpearmansCorrelation;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
 import org.netbeans.api.progress.ProgressHandle;
 import org.openide.util.Cancellable;
-import org.openide.util.Exceptions;
 import org.openide.util.NbBundle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
- * CorrelationAnalysisProcessor is a process of analysing correlation of two
- * tracks.
+ * CorrelationAnalysisProcessor is a process of analysing the correlation of
+ * all pairs of the selected tracks. The chromosomes are processed in chunks.
+ * The coverage of a chunk is requested for all tracks at the same time from
+ * the analysis threads of their track connectors. While the correlations of a
+ * chunk are computed by the {@link CorrelationEngine}, the coverage of the
+ * next chunk is already read. Only the end of a chunk, which is still needed
+ * by a window continuing in the next chunk, is kept. Thus, the coverage held
+ * in memory is bounded by a small multiple of the chunk length per track,
+ * independent of the chromosome lengths.
  * <p>
  * @author Evgeny Anisiforov
  */
-public class CorrelationAnalysisProcessor implements ThreadListener {
+public class CorrelationAnalysisProcessor {
 
     private static final Logger LOG = LoggerFactory.getLogger( CorrelationAnalysisProcessor.class.getName() );
-    private static final int MINIMUMINTERVALLENGTH = 90000;
 
-    private final Integer rightBound;
-    private Strand strand;
-    private boolean canceled = false;
+    private volatile boolean canceled = false;
     private final CorrelationResult analysisResult;
-    private final ArrayList<CorrelatedInterval> correlationsList;
-
-    private int steps;
-    private int currentStep = 0;
-    private int currentPosition = 1;
-    private int currentTotalPos = 0;
+    private final List<CorrelatedInterval> correlationsList;
     private final CorrelationResultPanel resultView;
+    private final CorrelationEngine engine;
 
-    private List<CoverageAndDiffResult> resultList;
-    private List<TrackConnector> trackConnectors;
-//    private boolean ready = false;
+    private final List<TrackConnector> trackConnectors;
     private final Map<Integer, PersistentChromosome> chromMap;
-    private int lastChromId = 0;
-    private final ParameterSetCorrelationAnalysis analysisParams;
+    private final ParametersReadClasses readClassParams;
+    private final int includedClassMask;
+    private final int chunkLength;
+    private ProgressHandle ph;
 
 
     /**
      * Creates a new CorrelationAnalysisProcessor and starts computing the
      * correlation analysis.
      * <p>
-     * @param cc
-     * @param referenceViewer
-     * @param tracks
-     * @param intervalLength
-     * @param minCorrelation
-     * @param minPeakCoverage
+     * @param referenceViewer the reference viewer for which the analysis is
+     *                        carried out
+     * @param analysisParams  the parameters of the correlation analysis
      */
     public CorrelationAnalysisProcessor( ReferenceViewer referenceViewer, ParameterSetCorrelationAnalysis analysisParams ) {
 
-        this.analysisParams = analysisParams;
-//        this.ready = false;
-        this.currentPosition = 1;
-        this.strand = Strand.Forward;
+        this.readClassParams = analysisParams.getReadClassParams();
+        this.includedClassMask = CoverageManager.getIncludedClassMask( readClassParams.getExcludedClasses() );
+        this.chunkLength = Math.max( AnalysesHandler.COVERAGE_TILE_SIZE, analysisParams.getIntervalLength() );
         this.correlationsList = new ArrayList<>();
 
         this.trackConnectors = new ArrayList<>();
@@ -102,7 +100,7 @@ public class CorrelationAnalysisProcessor implements ThreadListener {
         SaveFileFetcherForGUI fetcher = new SaveFileFetcherForGUI();
         for( PersistentTrack track : analysisParams.getSelectedTracks() ) {
             try {
-                trackConnectors.add( fetcher.getMultiTrackConnector( track ) );
+                trackConnectors.add( fetcher.getTrackConnector( track ) );
             } catch( UserCanceledTrackPathUpdateException ex ) {
                 SaveFileFetcherForGUI.showPathSelectionErrorMsg();
                 continue;
@@ -112,30 +110,43 @@ public class CorrelationAnalysisProcessor implements ThreadListener {
             }
             trackMap.put( track.getId(), track );
         }
+        int[] trackIds = new int[trackConnectors.size()];
+        for( int i = 0; i < trackIds.length; ++i ) {
+            trackIds[i] = trackConnectors.get( i ).getTrackID();
+        }
+        this.engine = new CorrelationEngine( analysisParams, trackIds );
 
         this.analysisResult = new CorrelationResult( this.correlationsList, trackMap,
                                                      referenceViewer.getReference(), false, -1, -1 );
         Map<String, Object> params = new HashMap<>();
-        params.put( "CorrelationCoefficient", this.analysisParams.getCorrelationCoefficient() );
-        params.put( "intervalLength", this.analysisParams.getIntervalLength() );
-        params.put( "minCorrelation", this.analysisParams.getMinCorrelation() );
-        params.put( "minPeakCoverage", this.analysisParams.getMinPeakCoverage() );
+        params.put( "CorrelationCoefficient", analysisParams.getCorrelationCoefficient() );
+        params.put( "intervalLength", analysisParams.getIntervalLength() );
+        params.put( "minCorrelation", analysisParams.getMinCorrelation() );
+        params.put( "minPeakCoverage", analysisParams.getMinPeakCoverage() );
         this.analysisResult.setAnalysisParameters( params );
 
         this.chromMap = referenceViewer.getReference().getChromosomes();
-        this.rightBound = PersistentReference.calcWholeGenomeLength( chromMap );
-        this.createProcessHandle( NbBundle.getMessage( CorrelationAnalysisAction.class, "CTL_CorrelationAnalysisProcess.name", "FWD" ) );
+        List<Chunk> chunks = this.planChunks();
+        this.createProcessHandle( NbBundle.getMessage( CorrelationAnalysisAction.class, "CTL_CorrelationAnalysisProcess.tracks", trackIds.length ),
+                                  chunks.size() );
 
         CorrelationResultTopComponent tc = CorrelationResultTopComponent.findInstance();
         tc.open();
         tc.requestActive();
         resultView = CorrelationResultTopComponent.findInstance().openResultTab( referenceViewer );
         resultView.addResult( analysisResult );
-        requestNextStep();
+
+        if( trackConnectors.size() < 2 || chunks.isEmpty() ) {
+            this.finish();
+            return;
+        }
+        Thread computation = new Thread( () -> this.computeCorrelations( chunks ), "CorrelationAnalysisProcessor.Computation" );
+        computation.setDaemon( true );
+        computation.start();
     }
 
 
-    private void createProcessHandle( String title ) {
+    private void createProcessHandle( String title, int nbChunks ) {
         this.ph = ProgressHandle.createHandle( title, new Cancellable() {
 
                                                   @Override
@@ -146,171 +157,139 @@ public class CorrelationAnalysisProcessor implements ThreadListener {
 
                                               } );
         ph.start();
-        ph.switchToDeterminate( this.rightBound );
+        ph.switchToDeterminate( Math.max( 1, nbChunks ) );
     }
 
 
     /**
-     * If any message should be printed to the console, this method is used. If
-     * an error occurred during the run of the parser, which does not interrupt
-     * the parsing process, this method prints the error to the program console.
-     * <p>
-     * @param msg the msg to print
+     * @return The chunks of all chromosomes ordered by chromosome and
+     *         position.
      */
-    private void showMsg( String msg ) {
-
-        //this.io.getOut().println(msg);
-    }
-
-
-    private int getCoverageAt( CoverageAndDiffResult coverageResult, int position, Strand strand ) {
-        Coverage coverage = coverageResult.getCovManager().getTotalCoverage( analysisParams.getReadClassParams().getExcludedClasses() );
-        return coverage.getCoverage( position, strand == Strand.Forward );
+    private List<Chunk> planChunks() {
+        List<Chunk> chunks = new ArrayList<>();
+        for( PersistentChromosome chrom : chromMap.values() ) {
+            for( int from = 1; from <= chrom.getLength(); from += chunkLength ) {
+                int to = (int) Math.min( chrom.getLength(), (long) from + chunkLength - 1 );
+                chunks.add( new Chunk( chrom.getId(), from, to ) );
+            }
+        }
+        return chunks;
     }
 
 
     /**
-     * Checks if all coverage results in the currently loaded result list
-     * contain zero coverage at the current position
+     * Computes the correlations of all chunks one after another. The
+     * coverage of the next chunk is requested before the correlations of the
+     * current chunk are computed.
+     * <p>
+     * @param chunks the chunks of all chromosomes in order
      */
-    private boolean allCoverageEqualZero( Strand strand, int position ) {
-        for( CoverageAndDiffResult result : this.resultList ) {
-            if( getCoverageAt( result, position, strand ) != 0 ) {
-                return false;
+    private void computeCorrelations( List<Chunk> chunks ) {
+        try {
+            int[][] carriedFwd = null;
+            int[][] carriedRev = null;
+            int carriedOffset = 0;
+            this.requestCoverage( chunks.get( 0 ) );
+            for( int i = 0; i < chunks.size() && !canceled; ++i ) {
+                Chunk chunk = chunks.get( i );
+                if( i + 1 < chunks.size() ) {
+                    this.requestCoverage( chunks.get( i + 1 ) );
+                }
+                if( !chunk.awaitCoverage() ) {
+                    break;
+                }
+
+                if( chunk.from == 1 ) {
+                    engine.startChromosome( chunk.chromId );
+                    carriedFwd = null;
+                    carriedRev = null;
+                    carriedOffset = 0;
+                }
+                int[][] fwdCoverages = append( carriedFwd, chunk.fwdCoverages );
+                int[][] revCoverages = append( carriedRev, chunk.revCoverages );
+                int offset = carriedFwd == null ? chunk.from - 1 : carriedOffset;
+                this.publish( engine.correlateChunk( offset, fwdCoverages, revCoverages ) );
+
+                carriedOffset = Math.min( engine.getFirstPendingIndex(), chunk.to );
+                carriedFwd = cut( fwdCoverages, carriedOffset - offset );
+                carriedRev = cut( revCoverages, carriedOffset - offset );
+                chunks.set( i, null );
+                ph.progress( i + 1 );
             }
+        } catch( RuntimeException | OutOfMemoryError ex ) {
+            LOG.error( ex.getMessage(), ex );
+            ErrorHelper.getHandler().handle( ex, "The correlation analysis failed." );
+        } finally {
+            this.finish();
         }
-        return true;
     }
 
 
     /**
-     * computes the maximum peak covage from the currently loaded result list
+     * Requests the coverage of a chunk from the analysis threads of all
+     * tracks.
+     * <p>
+     * @param chunk the chunk whose coverage is needed
      */
-    private int getPeakCoverage( Strand strand, int position ) {
-        int peakCoverage = 0;
-        for( CoverageAndDiffResult result : this.resultList ) {
-            peakCoverage = Math.max( peakCoverage, getCoverageAt( result, position, strand ) );
+    private void requestCoverage( Chunk chunk ) {
+        for( int i = 0; i < trackConnectors.size(); ++i ) {
+            trackConnectors.get( i ).addCoverageAnalysisRequest( new IntervalRequest( chunk.from, chunk.to, chunk.chromId, chunk.new TrackListener( i ),
+                                                                                      false, IntervalRequestData.Normal, readClassParams ) );
         }
-        return peakCoverage;
     }
 
 
     /**
-     * computes the maximum peak covage from the currently loaded result list
+     * Adds the correlated intervals of a chunk to the result.
+     * <p>
+     * @param correlations the correlated intervals of a chunk
      */
-    private double getPeakCoverageFromArray( double[] data ) {
-        double peakCoverage = 0;
-        for( double d : data ) {
-            peakCoverage = Math.max( peakCoverage, d );
+    private void publish( final List<CorrelatedInterval> correlations ) {
+        if( correlations.isEmpty() ) {
+            return;
         }
-        return peakCoverage;
+        correlationsList.addAll( correlations );
+        SwingUtilities.invokeLater( () -> {
+            for( CorrelatedInterval correlation : correlations ) {
+                resultView.addData( correlation );
+            }
+        } );
     }
 
 
     /**
-     * copy coverage from the coverageResult to a double-Array to be passed to
-     * the statistics package
+     * @param carried  the carried end of the previous chunk for each track or
+     *                 <code>null</code>
+     * @param coverage the coverage of the current chunk for each track
      * <p>
-     * @param coverageResult
-     * @param strand
-     * @param from
-     * @param to             <p>
-     * @return
+     * @return The carried coverage followed by the coverage of the chunk for
+     *         each track.
      */
-    private double[] copyCoverage( CoverageAndDiffResult coverageResult, Strand strand, int from, int to ) {
-        if( to < from ) {
-            throw new IllegalArgumentException( "from value must be less than the to value" );
+    private static int[][] append( int[][] carried, int[][] coverage ) {
+        if( carried == null || carried[0].length == 0 ) {
+            return coverage;
         }
-        double[] result = new double[to - from];
-        int writeIndex = 0;
-        for( int i = from; i < to; i++ ) {
-            result[writeIndex] = getCoverageAt( coverageResult, i, strand );
-            writeIndex++;
+        int[][] result = new int[coverage.length][];
+        for( int i = 0; i < coverage.length; ++i ) {
+            result[i] = Arrays.copyOf( carried[i], carried[i].length + coverage[i].length );
+            System.arraycopy( coverage[i], 0, result[i], carried[i].length, coverage[i].length );
         }
         return result;
     }
 
 
     /**
-     * computeStep is called, after the data of all tracks for the current step
-     * has been received.
+     * @param coverage the coverage of each track
+     * @param from     first index to keep
      * <p>
-     * @param strand
+     * @return The coverage of each track from the given index on.
      */
-    private void computeStep( Strand strand ) {
-        int maximumCoveredPosition = this.resultList.get( 0 ).getCovManager().getRightBound();
-        int chromId = this.resultList.get( 0 ).getRequest().getChromId();
-        int track1Id = this.trackConnectors.get( 0 ).getTrackID();
-        int track2Id = this.trackConnectors.get( 1 ).getTrackID();
-
-        if( lastChromId != chromId ) { //reset for new chromosome
-            currentPosition = 0;
-        }
-
-        while( this.currentPosition < maximumCoveredPosition - analysisParams.getIntervalLength() ) {
-            //ignore areas containing zeros
-            while( (this.currentPosition < maximumCoveredPosition - analysisParams.getIntervalLength()) &&
-                   allCoverageEqualZero( strand, this.currentPosition ) ) {
-                ++this.currentPosition;
-                ++this.currentTotalPos;
-            }
-
-            //compute correlation
-            //TODO: multiple tracks, not only two
-            if( this.currentPosition < maximumCoveredPosition - analysisParams.getIntervalLength() ) {
-                int to = currentPosition + analysisParams.getIntervalLength();
-                double[] x = copyCoverage( this.resultList.get( 0 ), strand, currentPosition, to );
-                double[] y = copyCoverage( this.resultList.get( 1 ), strand, currentPosition, to );
-                double peakCov1 = this.getPeakCoverageFromArray( x );
-                double peakCov2 = this.getPeakCoverageFromArray( y );
-
-                if( (peakCov1 >= analysisParams.getMinPeakCoverage()) && (peakCov2 >= analysisParams.getMinPeakCoverage()) ) {
-
-                    double correlation = 0;
-                    if( analysisParams.getCorrelationCoefficient().equals( CorrelationCoefficient.PEARSON ) ) {
-                        correlation = new PearsonsCorrelation().correlation( x, y );
-                    } else if( analysisParams.getCorrelationCoefficient().equals( CorrelationCoefficient.SPEARMAN ) ) {
-                        correlation = new SpearmansCorrelation().correlation( x, y );
-                    }
-                    double minCorr = analysisParams.getMinCorrelation() / 100.0;
-
-                    if( (correlation > minCorr) || (correlation < (minCorr * (-1))) ) {
-                        this.showMsg( "correlation of interval [" + this.currentPosition + "-" + to + "] is " + correlation + " on " + strand );
-                        CorrelatedInterval resultLine = new CorrelatedInterval( strand, track1Id, track2Id, chromId, this.currentPosition, to, correlation,
-                                                                                Math.min( peakCov1, peakCov2 ) );
-                        this.correlationsList.add( resultLine );
-                        this.resultView.addData( resultLine );
-                    }
-
-                } else {
-                    this.showMsg( "ignore correlation of interval [" + this.currentPosition + "-" + to +
-                                  "] is because min coverage is " + peakCov1 + " and " + peakCov2 );
-                }
-                this.currentPosition = to + 1;
-                this.currentTotalPos = currentTotalPos + analysisParams.getIntervalLength() + 1;
-            }
-            this.lastChromId = chromId;
-        }
-
-
-        if( this.currentTotalPos < this.rightBound - analysisParams.getIntervalLength() ) {
-            ph.progress( this.currentTotalPos );
-            if( canceled ) {
-                this.finish();
-            } else {
-                requestNextStep();
-            }
-        } else if( strand == Strand.Forward ) {
-            ph.finish();
-            this.strand = Strand.Reverse;
-            this.createProcessHandle( NbBundle.getMessage( CorrelationAnalysisAction.class, "CTL_CorrelationAnalysisProcess.name", "REV" ) );
-
-            //compute again from the beginning with the other strand strand
-            this.currentPosition = 1;
-            requestNextStep();
-        } else {
-            this.finish();
+    private static int[][] cut( int[][] coverage, int from ) {
+        int[][] result = new int[coverage.length][];
+        for( int i = 0; i < coverage.length; ++i ) {
+            result[i] = Arrays.copyOfRange( coverage[i], Math.min( from, coverage[i].length ), coverage[i].length );
         }
+        return result;
     }
 
 
@@ -321,35 +300,7 @@ public class CorrelationAnalysisProcessor implements ThreadListener {
      */
     private void finish() {
         ph.finish();
-//        ready = true;
-        this.resultView.ready( this.analysisResult );
-    }
-
-
-    private ProgressHandle ph;
-
-
-    /**
-     * this method is called to request the coverage for the next step
-     */
-    private void requestNextStep() {
-        this.resultList = new ArrayList<>();
-        int t = currentStep;
-        if( currentStep % 2 == 0 ) {
-            t = steps - currentStep;
-        }
-
-        this.showMsg( "Requesting position=" + currentPosition );
-
-        try {
-            Thread.sleep( 50 );
-        } catch( InterruptedException ex ) {
-            Exceptions.printStackTrace( ex );
-        }
-
-        for( TrackConnector tc : this.trackConnectors ) {
-            tc.addCoverageRequest( new IntervalRequest( currentPosition, currentPosition + MINIMUMINTERVALLENGTH, tc.getRefGenome().getActiveChromId(), this, true ) );
-        }
+        SwingUtilities.invokeLater( () -> resultView.ready( analysisResult ) );
     }
 
 
@@ -360,30 +311,128 @@ public class CorrelationAnalysisProcessor implements ThreadListener {
      * @return
      */
     private boolean handleCancel() {
-        this.showMsg( "handleCancel" );
         this.canceled = true;
         return true;
     }
 
 
     /**
-     * Receive data from CoverageThread and save it. Wait until the data for all
-     * tracks has arrived
+     * A chunk of a chromosome and the coverage of all tracks within it.
      */
-    @Override
-    public synchronized void receiveData( Object data ) {
-        if( data instanceof CoverageAndDiffResult ) {
-            //TODO: possible problem when results from the same track are quicker returned than from the other track. Separate resultlist
-            this.resultList.add( (CoverageAndDiffResult) data );
-            if( this.resultList.size() == this.trackConnectors.size() ) {
-                this.computeStep( this.strand );
+    private final class Chunk {
+
+        private final int chromId;
+        private final int from;
+        private final int to;
+        private final int[][] fwdCoverages;
+        private final int[][] revCoverages;
+        private final CountDownLatch pendingTracks;
+        private volatile Throwable failure;
+
+
+        /**
+         * A chunk of a chromosome.
+         * <p>
+         * @param chromId id of the chromosome
+         * @param from    first position of the chunk
+         * @param to      last position of the chunk
+         */
+        Chunk( int chromId, int from, int to ) {
+            this.chromId = chromId;
+            this.from = from;
+            this.to = to;
+            this.fwdCoverages = new int[trackConnectors.size()][];
+            this.revCoverages = new int[trackConnectors.size()][];
+            this.pendingTracks = new CountDownLatch( trackConnectors.size() );
+        }
+
+
+        /**
+         * Waits until the coverage of all tracks arrived.
+         * <p>
+         * @return <code>true</code>, if the coverage is complete,
+         *         <code>false</code>, if the analysis was canceled or
+         *         interrupted
+         * <p>
+         * @throws IllegalStateException If the coverage request of a track
+         *                               failed
+         */
+        boolean awaitCoverage() {
+            try {
+                while( !pendingTracks.await( 1, TimeUnit.SECONDS ) ) {
+                    if( canceled ) {
+                        return false;
+                    }
+                }
+                if( failure != null ) {
+                    throw new IllegalStateException( "The coverage of chromosome " + chromId + " from " + from + " to " + to
+                                                     + " could not be loaded.", failure );
+                }
+                return !canceled;
+            } catch( InterruptedException ex ) {
+                Thread.currentThread().interrupt();
+                return false;
             }
         }
-    }
 
 
-    @Override
-    public void notifySkipped() {
+        /**
+         * @return The total coverage of the chunk on the given strand.
+         */
+        private int[] copyCoverage( CoverageManager covManager, Strand strand ) {
+            int[] chunkCoverage = new int[to - from + 1];
+            int[] coverage = covManager.getTotalCoverageView( includedClassMask, strand );
+            int copyFrom = Math.max( from, covManager.getLeftBound() );
+            int copyTo = Math.min( to, covManager.getLeftBound() + coverage.length - 1 );
+            if( copyTo >= copyFrom ) {
+                System.arraycopy( coverage, covManager.getInternalPos( copyFrom ), chunkCoverage, copyFrom - from, copyTo - copyFrom + 1 );
+            }
+            return chunkCoverage;
+        }
+
+
+        /**
+         * Receives the coverage of the chunk for one track.
+         */
+        private final class TrackListener implements ThreadListener {
+
+            private final int trackIndex;
+
+
+            TrackListener( int trackIndex ) {
+                this.trackIndex = trackIndex;
+            }
+
+
+            @Override
+            public void receiveData( Object data ) {
+                if( data instanceof CoverageAndDiffResult ) {
+                    CoverageManager covManager = ((CoverageAndDiffResult) data).getCovManager();
+                    fwdCoverages[trackIndex] = copyCoverage( covManager, Strand.Forward );
+                    revCoverages[trackIndex] = copyCoverage( covManager, Strand.Reverse );
+                } else {
+                    fwdCoverages[trackIndex] = new int[to - from + 1];
+                    revCoverages[trackIndex] = new int[to - from + 1];
+                }
+                pendingTracks.countDown();
+            }
+
+
+            @Override
+            public void notifySkipped() {
+                //analysis requests are never skipped
+            }
+
+
+            @Override
+            public void notifyFailed( Throwable cause ) {
+                failure = cause;
+                pendingTracks.countDown();
+            }
+
+
+        }
+
 
     }
 
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.rnatrimming.correlationanalysis;
+
+
+import de.cebitec.readxplorer.api.enums.Strand;
+import de.cebitec.readxplorer.rnatrimming.correlationanalysis.CorrelationAnalysisAction.CorrelationCoefficient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+
+/**
+ * Computes the correlated intervals of all pairs of a set of tracks. The
+ * coverage of a chromosome is handed over in consecutive chunks. Each pair of
+ * tracks and each strand is scanned with windows of the interval length,
+ * which are placed one after another without overlap. Positions without
+ * coverage in both tracks of a pair are skipped before a window is placed.
+ * The scans of all pairs and strands of a chunk run in parallel. Each scan
+ * remembers where its next window starts, so windows may span chunk borders
+ * and the result does not depend on the chunk size.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+final class CorrelationEngine {
+
+    private final int[] trackIds;
+    private final int intervalLength;
+    private final int minPeakCoverage;
+    private final double minCorrelation;
+    private final List<PairScan> scans;
+    private int chromId;
+
+
+    /**
+     * Computes the correlated intervals of all pairs of a set of tracks.
+     * <p>
+     * @param analysisParams the parameters of the correlation analysis
+     * @param trackIds       ids of the tracks
+     */
+    CorrelationEngine( ParameterSetCorrelationAnalysis analysisParams, int[] trackIds ) {
+        this( analysisParams.getCorrelationCoefficient() == CorrelationCoefficient.SPEARMAN, analysisParams.getIntervalLength(),
+              analysisParams.getMinPeakCoverage(), analysisParams.getMinCorrelation(), trackIds );
+    }
+
+
+    /**
+     * Computes the correlated intervals of all pairs of a set of tracks.
+     * <p>
+     * @param useRanks        <code>true</code> to compute Spearman's rank
+     *                        correlation, <code>false</code> to compute
+     *                        Pearson's correlation
+     * @param intervalLength  length of the correlated intervals
+     * @param minPeakCoverage minimum peak coverage of both tracks in an
+     *                        interval
+     * @param minCorrelation  minimum absolute correlation in percent
+     * @param trackIds        ids of the tracks
+     */
+    CorrelationEngine( boolean useRanks, int intervalLength, int minPeakCoverage, int minCorrelation, int[] trackIds ) {
+        this.trackIds = trackIds;
+        this.intervalLength = intervalLength;
+        this.minPeakCoverage = minPeakCoverage;
+        this.minCorrelation = minCorrelation / 100.0;
+        this.scans = new ArrayList<>();
+        for( int i = 0; i < trackIds.length; ++i ) {
+            for( int j = i + 1; j < trackIds.length; ++j ) {
+                scans.add( new PairScan( i, j, Strand.Forward, useRanks ) );
+                scans.add( new PairScan( i, j, Strand.Reverse, useRanks ) );
+            }
+        }
+    }
+
+
+    /**
+     * Starts the scans of a new chromosome at its first position.
+     * <p>
+     * @param chromId id of the chromosome
+     */
+    void startChromosome( int chromId ) {
+        this.chromId = chromId;
+        for( PairScan scan : scans ) {
+            scan.start = 0;
+        }
+    }
+
+
+    /**
+     * Computes the correlated intervals of all pairs of tracks on both strands
+     * within the given chunk of the current chromosome. Only windows lying
+     * completely within the chunk are placed. A chunk has to start at or
+     * before {@link #getFirstPendingIndex()}.
+     * <p>
+     * @param offset       index of the first chunk entry in the chromosome,
+     *                     index 0 belongs to position 1
+     * @param fwdCoverages the forward strand coverage of the chunk for each
+     *                     track
+     * @param revCoverages the reverse strand coverage of the chunk for each
+     *                     track
+     * <p>
+     * @return The correlated intervals ordered by track pair, strand and
+     *         position
+     */
+    List<CorrelatedInterval> correlateChunk( int offset, int[][] fwdCoverages, int[][] revCoverages ) {
+        List<CompletableFuture<List<CorrelatedInterval>>> scanResults = new ArrayList<>( scans.size() );
+        for( PairScan scan : scans ) {
+            int[][] coverages = scan.strand == Strand.Forward ? fwdCoverages : revCoverages;
+            scanResults.add( CompletableFuture.supplyAsync( () -> scan.scan( offset, coverages[scan.track1], coverages[scan.track2] ) ) );
+        }
+
+        List<CorrelatedInterval> correlations = new ArrayList<>();
+        for( CompletableFuture<List<CorrelatedInterval>> scanResult : scanResults ) {
+            try {
+                correlations.addAll( scanResult.join() );
+            } catch( CompletionException ex ) {
+                if( ex.getCause() instanceof RuntimeException ) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw ex;
+            }
+        }
+        return correlations;
+    }
+
+
+    /**
+     * @return The smallest chromosome index at which a scan of the current
+     *         chromosome continues. The coverage before this index is not
+     *         needed anymore.
+     */
+    int getFirstPendingIndex() {
+        int firstPending = Integer.MAX_VALUE;
+        for( PairScan scan : scans ) {
+            firstPending = Math.min( firstPending, scan.start );
+        }
+        return firstPending;
+    }
+
+
+    /**
+     * Scan of the coverage of two tracks on one strand.
+     */
+    private final class PairScan {
+
+        private final int track1;
+        private final int track2;
+        private final Strand strand;
+        private final WindowCorrelation window;
+        /** Chromosome index at which the next window may start. */
+        private int start;
+
+
+        PairScan( int track1, int track2, Strand strand, boolean useRanks ) {
+            this.track1 = track1;
+            this.track2 = track2;
+            this.strand = strand;
+            this.window = new WindowCorrelation( intervalLength, useRanks );
+        }
+
+
+        /**
+         * Places all windows fitting into the chunk.
+         * <p>
+         * @param offset    index of the first chunk entry in the chromosome
+         * @param coverage1 coverage of the first track within the chunk
+         * @param coverage2 coverage of the second track within the chunk
+         * <p>
+         * @return The correlated intervals ordered by position
+         */
+        List<CorrelatedInterval> scan( int offset, int[] coverage1, int[] coverage2 ) {
+            List<CorrelatedInterval> correlations = new ArrayList<>();
+            int end = offset + Math.min( coverage1.length, coverage2.length );
+            while( start + intervalLength <= end ) {
+                int index = start - offset;
+                //ignore areas containing zeros
+                if( coverage1[index] == 0 && coverage2[index] == 0 ) {
+                    ++start;
+                    continue;
+                }
+
+                int peakCov1 = window.getPeak( coverage1, index );
+                int peakCov2 = window.getPeak( coverage2, index );
+                if( peakCov1 >= minPeakCoverage && peakCov2 >= minPeakCoverage ) {
+                    double correlation = window.getCorrelation( coverage1, coverage2, index );
+                    if( correlation > minCorrelation || correlation < -minCorrelation ) {
+                        correlations.add( new CorrelatedInterval( strand, trackIds[track1], trackIds[track2], chromId, start + 1,
+                                                                  start + intervalLength, correlation, Math.min( peakCov1, peakCov2 ) ) );
+                    }
+                }
+                start += intervalLength;
+            }
+            return correlations;
+        }
+
+
+    }
+
+
+}
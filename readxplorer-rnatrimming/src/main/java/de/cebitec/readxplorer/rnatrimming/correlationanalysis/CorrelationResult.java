@@ -21,6 +21,8 @@ package de.cebitec.readxplorer.rnatrimming.correlationanalysis;
 import de.cebitec.readxplorer.databackend.ResultTrackAnalysis;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
+import de.cebitec.readxplorer.exporter.tables.StreamingExportDataI;
+import de.cebitec.readxplorer.exporter.tables.TableRowCursor;
 import de.cebitec.readxplorer.utils.GeneralUtils;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -37,7 +39,7 @@ import java.util.Map.Entry;
  * <p>
  * @author Evgeny Anisiforov <evgeny at cebitec.uni-bielefeld.de>
  */
-public class CorrelationResult extends ResultTrackAnalysis<CorrelationResult> {
+public class CorrelationResult extends ResultTrackAnalysis<CorrelationResult> implements StreamingExportDataI {
 
     private final List<CorrelatedInterval> correlationsList;
     private Map<String, Object> params = new HashMap<>();
@@ -79,24 +81,59 @@ public class CorrelationResult extends ResultTrackAnalysis<CorrelationResult> {
 
         List<List<List<Object>>> allData = new ArrayList<>( 2 );
         List<List<Object>> exportData = new ArrayList<>( correlationsList.size() );
+        for( int i = 0; i < correlationsList.size(); ++i ) {
+            exportData.add( createCorrelationRow( i ) );
+        }
+        allData.add( exportData );
+        allData.add( createStatisticsRows() );
 
-        for( CorrelatedInterval correlation : this.correlationsList ) {
-
-            List<Object> exportLine = new ArrayList<>( 6 );
-            exportLine.add( getChromosomeMap().get( correlation.getChromId() ) );
-            exportLine.add( correlation.getDirection() );
-            exportLine.add( correlation.getFrom() );
-            exportLine.add( correlation.getTo() );
-            exportLine.add( correlation.getCorrelation() );
-            exportLine.add( correlation.getMinPeakCoverage() );
+        return allData;
+    }
 
-            exportData.add( exportLine );
 
+    /**
+     * Creates the rows of the correlation table on demand, so the table is
+     * never held in memory completely during the export.
+     * <p>
+     * @param sheetIndex index of the sheet whose rows are needed
+     * <p>
+     * @return A cursor over the rows of the sheet
+     */
+    @Override
+    public TableRowCursor createRowCursor( int sheetIndex ) {
+        if( sheetIndex == 0 ) {
+            return TableRowCursor.of( correlationsList.size(), this::createCorrelationRow );
         }
+        return TableRowCursor.of( createStatisticsRows() );
+    }
+
+
+    /**
+     * @param i index of the correlated interval in the result list
+     * <p>
+     * @return The row of the correlation table for the correlated interval at
+     *         the given index
+     */
+    private List<Object> createCorrelationRow( int i ) {
+        CorrelatedInterval correlation = correlationsList.get( i );
+        List<Object> exportLine = new ArrayList<>( 8 );
+        exportLine.add( getChromosomeMap().get( correlation.getChromId() ) );
+        exportLine.add( correlation.getDirection() );
+        exportLine.add( correlation.getFrom() );
+        exportLine.add( correlation.getTo() );
+        exportLine.add( correlation.getCorrelation() );
+        exportLine.add( correlation.getMinPeakCoverage() );
+        exportLine.add( getTrackEntry( correlation.getTrackId(), true ) );
+        exportLine.add( getTrackEntry( correlation.getTrack2Id(), true ) );
+
+        return exportLine;
+    }
 
-        allData.add( exportData );
 
-        //create statistics sheet
+    /**
+     * @return The rows of the parameter and statistics sheet
+     */
+    private List<List<Object>> createStatisticsRows() {
         List<List<Object>> statisticsExportData = new ArrayList<>();
 
         statisticsExportData.add( ResultTrackAnalysis.createTableRow( "Correlation analysis for tracks:",
@@ -109,9 +146,8 @@ public class CorrelationResult extends ResultTrackAnalysis<CorrelationResult> {
         for( Entry<String, Object> entry : this.params.entrySet() ) {
             statisticsExportData.add( ResultTrackAnalysis.createTableRow( entry.getKey() + ":", entry.getValue() ) );
         }
-        allData.add( statisticsExportData );
 
-        return allData;
+        return statisticsExportData;
     }
 
 
@@ -124,14 +160,15 @@ public class CorrelationResult extends ResultTrackAnalysis<CorrelationResult> {
 
         List<List<String>> dataColumnDescriptionsList = new ArrayList<>( 2 );
 
-        List<String> dataColumnDescriptions = new ArrayList<>( 6 );
-//        dataColumnDescriptions.add("Track");
+        List<String> dataColumnDescriptions = new ArrayList<>( 8 );
         dataColumnDescriptions.add( "Chromosome" );
         dataColumnDescriptions.add( "Strand Direction" );
         dataColumnDescriptions.add( "Pos From" );
         dataColumnDescriptions.add( "Pos To" );
         dataColumnDescriptions.add( "Correlation" );
         dataColumnDescriptions.add( "Minimum Peak Coverage" );
+        dataColumnDescriptions.add( "Track 1" );
+        dataColumnDescriptions.add( "Track 2" );
 
         dataColumnDescriptionsList.add( dataColumnDescriptions );
 
@@ -32,8 +32,8 @@ import javax.swing.table.TableRowSorter;
 
 
 /**
- * The Panel that shows results for a correlation analysis of two tracks in a
- * table
+ * The Panel that shows results for a correlation analysis of track pairs in
+ * a table
  * <p>
  * @author Evgeny Anisiforov, rhilker
  */
@@ -54,7 +54,7 @@ public class CorrelationResultPanel extends ResultTablePanel {
         setBoundsInfoManager( bim );
         initComponents();
         final int posColumn = 2;
-        final int trackColumn = 2;
+        final int trackColumn = 6;
         final int chromColumn = 3;
         tableFilter = new TableRightClickFilter<>( UneditableTableModel.class, posColumn, trackColumn );
         this.correlationTable.getTableHeader().addMouseListener( tableFilter );
@@ -87,14 +87,14 @@ public class CorrelationResultPanel extends ResultTablePanel {
 
             },
             new String [] {
-                "Chromosome", "Direction", "From", "To", "Correlation", "MinPeakCoverage"
+                "Chromosome", "Direction", "From", "To", "Correlation", "MinPeakCoverage", "Track 1", "Track 2"
             }
         ) {
             Class[] types = new Class [] {
-                java.lang.Object.class, java.lang.String.class, java.lang.Integer.class, java.lang.Integer.class, java.lang.Double.class, java.lang.Double.class
+                java.lang.Object.class, java.lang.String.class, java.lang.Integer.class, java.lang.Integer.class, java.lang.Double.class, java.lang.Double.class, java.lang.Object.class, java.lang.Object.class
             };
             boolean[] canEdit = new boolean [] {
-                false, false, false, false, false, false
+                false, false, false, false, false, false, false, false
             };
 
             public Class getColumnClass(int columnIndex) {
@@ -113,6 +113,8 @@ public class CorrelationResultPanel extends ResultTablePanel {
             correlationTable.getColumnModel().getColumn(3).setHeaderValue(org.openide.util.NbBundle.getMessage(CorrelationResultPanel.class, "CorrelationResultPanel.correlationTable.columnModel.title2")); // NOI18N
             correlationTable.getColumnModel().getColumn(4).setHeaderValue(org.openide.util.NbBundle.getMessage(CorrelationResultPanel.class, "CorrelationResultPanel.correlationTable.columnModel.title3")); // NOI18N
             correlationTable.getColumnModel().getColumn(5).setHeaderValue(org.openide.util.NbBundle.getMessage(CorrelationResultPanel.class, "CorrelationResultPanel.correlationTable.columnModel.title4")); // NOI18N
+            correlationTable.getColumnModel().getColumn(6).setHeaderValue(org.openide.util.NbBundle.getMessage(CorrelationResultPanel.class, "CorrelationResultPanel.correlationTable.columnModel.title6")); // NOI18N
+            correlationTable.getColumnModel().getColumn(7).setHeaderValue(org.openide.util.NbBundle.getMessage(CorrelationResultPanel.class, "CorrelationResultPanel.correlationTable.columnModel.title7")); // NOI18N
         }
 
         org.openide.awt.Mnemonics.setLocalizedText(jLabel1, org.openide.util.NbBundle.getMessage(CorrelationResultPanel.class, "CorrelationResultPanel.jLabel1.text")); // NOI18N
@@ -201,7 +203,8 @@ public class CorrelationResultPanel extends ResultTablePanel {
         DefaultTableModel model = (DefaultTableModel) this.correlationTable.getModel();
         //TODO: get chromosome map and set chromosome correctly
         String strandString = data.getDirection() == Strand.Forward ? Strand.Forward.toString() : Strand.Reverse.toString();
-        model.addRow( new Object[]{ data.getChromId(), strandString, data.getFrom(), data.getTo(), data.getCorrelation(), data.getMinPeakCoverage() } );
+        model.addRow( new Object[]{ data.getChromId(), strandString, data.getFrom(), data.getTo(), data.getCorrelation(), data.getMinPeakCoverage(),
+                                    analysisResult.getTrackEntry( data.getTrackId(), false ), analysisResult.getTrackEntry( data.getTrack2Id(), false ) } );
     }
 
 
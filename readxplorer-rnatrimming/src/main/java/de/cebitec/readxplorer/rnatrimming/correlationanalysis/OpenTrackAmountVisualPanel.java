@@ -23,8 +23,8 @@ import de.cebitec.readxplorer.ui.dialogmenus.OpenTracksVisualPanel;
 
 
 /**
- * A track selection panel requiring the selection of a certain amount of tracks
- * to proceed.
+ * A track selection panel requiring the selection of a certain amount or a
+ * minimum amount of tracks to proceed.
  *
  * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
  */
@@ -33,6 +33,7 @@ public class OpenTrackAmountVisualPanel extends OpenTracksVisualPanel {
     private static final long serialVersionUID = 1L;
 
     private Integer selectedAmount;
+    private boolean isMinimumAmount;
     private final TrackListPanel parent;
 
 
@@ -52,10 +53,13 @@ public class OpenTrackAmountVisualPanel extends OpenTracksVisualPanel {
 
     @Override
     public boolean isRequiredInfoSet() {
+        int nbSelectedTracks = this.getSelectedTracks().size();
         boolean isRequiredInfoSet = super.isRequiredInfoSet() && this.getSelectAmount() > -1
-                                    && this.getSelectAmount() == this.getSelectedTracks().size();
+                                    && (this.getSelectAmount() == nbSelectedTracks
+                                        || isMinimumAmount && this.getSelectAmount() < nbSelectedTracks);
         if( !isRequiredInfoSet ) {
-            this.parent.setErrorMsg( "Please select " + this.getSelectAmount() + " tracks! (You selected "
+            String amount = isMinimumAmount ? "at least " + this.getSelectAmount() : String.valueOf( this.getSelectAmount() );
+            this.parent.setErrorMsg( "Please select " + amount + " tracks! (You selected "
                                      + this.getAllMarkedNodes().size() + ")" );
         }
         firePropertyChange( ChangeListeningWizardPanel.PROP_VALIDATE, null, isRequiredInfoSet );
@@ -76,6 +80,19 @@ public class OpenTrackAmountVisualPanel extends OpenTracksVisualPanel {
      */
     public void setSelectAmount( Integer maximumAmount ) {
         this.selectedAmount = maximumAmount;
+        this.isMinimumAmount = false;
+    }
+
+
+    /**
+     * Requires the selection of at least the given amount of tracks instead of
+     * an exact amount.
+     * <p>
+     * @param minimumAmount the minimum amount of tracks to select
+     */
+    public void setMinSelectAmount( int minimumAmount ) {
+        this.selectedAmount = minimumAmount;
+        this.isMinimumAmount = true;
     }
 
 
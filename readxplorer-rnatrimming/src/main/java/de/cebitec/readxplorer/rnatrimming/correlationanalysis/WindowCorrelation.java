@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.rnatrimming.correlationanalysis;
+
+
+import java.util.Arrays;
+
+
+/**
+ * Correlation and peak coverage of two coverage arrays within a window of a
+ * fixed length. Pearson's correlation is computed from exact integer sums of
+ * the values, their squares and their products. Spearman's correlation is
+ * Pearson's correlation of the average ranks of the values, which are
+ * obtained by binary searches in a sorted copy of the window. Equal values
+ * share their average rank like in the <code>NaturalRanking</code> of
+ * commons-math.
+ * <p>
+ * The windows of a scan do not overlap, so every window is computed from its
+ * values alone. The scratch arrays are reused for all windows, thus an
+ * instance must only be used by one thread.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+final class WindowCorrelation {
+
+    private final int windowLength;
+    private final int[] sortedX;
+    private final int[] sortedY;
+
+
+    /**
+     * Correlation and peak coverage of two coverage arrays within a window of
+     * a fixed length.
+     * <p>
+     * @param windowLength length of the windows
+     * @param useRanks     <code>true</code> to compute Spearman's rank
+     *                     correlation, <code>false</code> to compute
+     *                     Pearson's correlation
+     */
+    WindowCorrelation( int windowLength, boolean useRanks ) {
+        this.windowLength = windowLength;
+        this.sortedX = useRanks ? new int[windowLength] : null;
+        this.sortedY = useRanks ? new int[windowLength] : null;
+    }
+
+
+    /**
+     * @param values the coverage array
+     * @param start  first index of the window
+     * <p>
+     * @return The maximum value of the array within the window.
+     */
+    int getPeak( int[] values, int start ) {
+        int peak = 0;
+        for( int i = start; i < start + windowLength; ++i ) {
+            peak = Math.max( peak, values[i] );
+        }
+        return peak;
+    }
+
+
+    /**
+     * @param x     the first coverage array
+     * @param y     the second coverage array
+     * @param start first index of the window in both arrays
+     * <p>
+     * @return The correlation of both arrays within the window or NaN, if one
+     *         of them is constant within the window.
+     */
+    double getCorrelation( int[] x, int[] y, int start ) {
+        long sumX = 0;
+        long sumY = 0;
+        long sumXX = 0;
+        long sumYY = 0;
+        long sumXY = 0;
+        if( sortedX == null ) {
+            for( int i = start; i < start + windowLength; ++i ) {
+                long valueX = x[i];
+                long valueY = y[i];
+                sumX += valueX;
+                sumY += valueY;
+                sumXX += valueX * valueX;
+                sumYY += valueY * valueY;
+                sumXY += valueX * valueY;
+            }
+        } else {
+            System.arraycopy( x, start, sortedX, 0, windowLength );
+            System.arraycopy( y, start, sortedY, 0, windowLength );
+            Arrays.sort( sortedX );
+            Arrays.sort( sortedY );
+            for( int i = start; i < start + windowLength; ++i ) {
+                long rankX = getDoubledRank( sortedX, x[i] );
+                long rankY = getDoubledRank( sortedY, y[i] );
+                sumX += rankX;
+                sumY += rankY;
+                sumXX += rankX * rankX;
+                sumYY += rankY * rankY;
+                sumXY += rankX * rankY;
+            }
+        }
+        return correlation( windowLength, sumX, sumY, sumXX, sumYY, sumXY );
+    }
+
+
+    /**
+     * @param sorted the sorted values of the window
+     * @param value  a value contained in the window
+     * <p>
+     * @return Twice the average rank of the value within the window, which
+     *         keeps the average rank of ties integral.
+     */
+    private static long getDoubledRank( int[] sorted, int value ) {
+        int smaller = countValues( sorted, value, false );
+        int equal = countValues( sorted, value, true ) - smaller;
+        return 2L * smaller + equal + 1;
+    }
+
+
+    /**
+     * @param sorted         the sorted values of the window
+     * @param value          the value to compare with
+     * @param includingEqual <code>true</code> to count the values smaller or
+     *                       equal to the given value, <code>false</code> to
+     *                       count only smaller values
+     * <p>
+     * @return The number of values in the sorted array, which are smaller
+     *         (or equal) to the given value.
+     */
+    private static int countValues( int[] sorted, int value, boolean includingEqual ) {
+        int low = 0;
+        int high = sorted.length;
+        while( low < high ) {
+            int mid = (low + high) >>> 1;
+            if( sorted[mid] < value || includingEqual && sorted[mid] == value ) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Pearson's correlation from the sums of the values, their squares and
+     * their products.
+     */
+    private static double correlation( int n, long sumX, long sumY, long sumXX, long sumYY, long sumXY ) {
+        double covariance = (double) n * sumXY - (double) sumX * sumY;
+        double varianceX = (double) n * sumXX - (double) sumX * sumX;
+        double varianceY = (double) n * sumYY - (double) sumY * sumY;
+        if( varianceX <= 0 || varianceY <= 0 ) {
+            return Double.NaN;
+        }
+        return Math.max( -1, Math.min( 1, covariance / Math.sqrt( varianceX * varianceY ) ) );
+    }
+
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.rnatrimming.correlationanalysis;
+
+
+import de.cebitec.readxplorer.api.enums.Strand;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Test of the {@link CorrelationEngine}.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class CorrelationEngineTest {
+
+    /**
+     * Test of the placement of the windows, of class CorrelationEngine.
+     * Windows are placed one after another, start after positions without
+     * coverage in both tracks and report their first and last position.
+     */
+    @Test
+    public void testWindowPlacement() {
+        System.out.println( "windowPlacement" );
+        int[] cov1 = { 0, 0, 1, 2, 3, 4, 0, 2, 4, 6, 8, 0, 0, 0 };
+        int[] cov2 = { 0, 0, 2, 4, 6, 8, 0, 1, 2, 3, 4, 0, 0, 0 };
+        CorrelationEngine engine = new CorrelationEngine( false, 4, 1, 90, new int[]{ 7, 9 } );
+        engine.startChromosome( 3 );
+        List<CorrelatedInterval> correlations = engine.correlateChunk( 0, new int[][]{ cov1, cov2 }, new int[][]{ new int[14], new int[14] } );
+
+        assertEquals( 2, correlations.size() );
+        CorrelatedInterval interval = correlations.get( 0 );
+        assertEquals( Strand.Forward, interval.getDirection() );
+        assertEquals( 7, interval.getTrackId() );
+        assertEquals( 9, interval.getTrack2Id() );
+        assertEquals( 3, interval.getChromId() );
+        assertEquals( 3, interval.getFrom() );
+        assertEquals( 6, interval.getTo() );
+        assertEquals( 1.0, interval.getCorrelation(), 1e-9 );
+        assertEquals( 4, interval.getMinPeakCoverage(), 0 );
+        assertEquals( 8, correlations.get( 1 ).getFrom() );
+        assertEquals( 11, correlations.get( 1 ).getTo() );
+        assertEquals( 11, engine.getFirstPendingIndex() );
+    }
+
+
+    /**
+     * Test of correlateChunk method, of class CorrelationEngine. Processing a
+     * chromosome in chunks, which keep the coverage from the first pending
+     * index on, results in the same intervals as processing it at once.
+     */
+    @Test
+    public void testCorrelateChunks() {
+        System.out.println( "correlateChunks" );
+        Random random = new Random( 7 );
+        int[][] fwdCoverages = new int[3][];
+        int[][] revCoverages = new int[3][];
+        for( int track = 0; track < 3; ++track ) {
+            fwdCoverages[track] = randomCoverage( random, 5000 );
+            revCoverages[track] = randomCoverage( random, 5000 );
+        }
+        for( boolean useRanks : new boolean[]{ false, true } ) {
+            CorrelationEngine engine = new CorrelationEngine( useRanks, 37, 3, 20, new int[]{ 1, 2, 3 } );
+            engine.startChromosome( 1 );
+            List<String> expected = toStrings( engine.correlateChunk( 0, fwdCoverages, revCoverages ) );
+
+            for( int chunkLength : new int[]{ 37, 100, 999 } ) {
+                engine.startChromosome( 1 );
+                List<String> chunked = new ArrayList<>();
+                int offset = 0;
+                for( int end = chunkLength; offset < 5000; end = Math.min( 5000, end + chunkLength ) ) {
+                    chunked.addAll( toStrings( engine.correlateChunk( offset, range( fwdCoverages, offset, end ), range( revCoverages, offset, end ) ) ) );
+                    offset = Math.min( engine.getFirstPendingIndex(), end );
+                    if( end == 5000 ) {
+                        break;
+                    }
+                }
+                chunked.sort( null );
+                List<String> sortedExpected = new ArrayList<>( expected );
+                sortedExpected.sort( null );
+                assertEquals( "chunk length " + chunkLength, sortedExpected, chunked );
+            }
+        }
+    }
+
+
+    private static int[] randomCoverage( Random random, int length ) {
+        int[] coverage = new int[length];
+        for( int i = 0; i < length; ++i ) {
+            coverage[i] = (i / 300) % 3 == 0 ? 0 : random.nextInt( 12 );
+        }
+        return coverage;
+    }
+
+
+    private static int[][] range( int[][] coverages, int from, int to ) {
+        int[][] result = new int[coverages.length][];
+        for( int i = 0; i < coverages.length; ++i ) {
+            result[i] = Arrays.copyOfRange( coverages[i], from, to );
+        }
+        return result;
+    }
+
+
+    private static List<String> toStrings( List<CorrelatedInterval> correlations ) {
+        List<String> result = new ArrayList<>();
+        for( CorrelatedInterval interval : correlations ) {
+            result.add( interval.getTrackId() + "-" + interval.getTrack2Id() + " " + interval.getDirection() + " " + interval.getFrom()
+                        + "-" + interval.getTo() + " " + interval.getCorrelation() + " " + interval.getMinPeakCoverage() );
+        }
+        return result;
+    }
+
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.rnatrimming.correlationanalysis;
+
+
+import java.util.Arrays;
+import java.util.Random;
+import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
+import org.apache.commons.math3.stat.correlation.SpearmansCorrelation;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the {@link WindowCorrelation} against the correlations of
+ * commons-math.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class WindowCorrelationTest {
+
+    private static final double DELTA = 1e-9;
+
+
+    /**
+     * Test of getCorrelation method for Pearson's correlation, of class
+     * WindowCorrelation. Random coverage with many ties is compared window by
+     * window.
+     */
+    @Test
+    public void testPearson() {
+        System.out.println( "pearson" );
+        compareRandomWindows( false, 20 );
+        compareRandomWindows( false, 5000 );
+    }
+
+
+    /**
+     * Test of getCorrelation method for Spearman's correlation, of class
+     * WindowCorrelation. Random coverage with many ties is compared window by
+     * window.
+     */
+    @Test
+    public void testSpearman() {
+        System.out.println( "spearman" );
+        compareRandomWindows( true, 4 );
+        compareRandomWindows( true, 5000 );
+    }
+
+
+    /**
+     * Test of getCorrelation method with ties and constant windows, of class
+     * WindowCorrelation.
+     */
+    @Test
+    public void testTiesAndConstantWindows() {
+        System.out.println( "tiesAndConstantWindows" );
+        int[] x = { 3, 3, 3, 3, 1, 1, 2, 2, 5, 5, 5, 0 };
+        int[] y = { 7, 7, 7, 7, 7, 2, 2, 9, 9, 9, 1, 1 };
+        for( boolean useRanks : new boolean[]{ false, true } ) {
+            WindowCorrelation window = new WindowCorrelation( 4, useRanks );
+            for( int start = 0; start + 4 <= x.length; ++start ) {
+                assertCorrelation( useRanks, window, x, y, start, 4 );
+            }
+            //both constant and one constant window
+            assertTrue( Double.isNaN( window.getCorrelation( x, y, 0 ) ) );
+            assertTrue( Double.isNaN( window.getCorrelation( x, new int[]{ 4, 5, 6, 7 }, 0 ) ) );
+            assertTrue( Double.isNaN( window.getCorrelation( new int[]{ 4, 5, 6, 7 }, y, 0 ) ) );
+        }
+    }
+
+
+    /**
+     * Test of getPeak method, of class WindowCorrelation.
+     */
+    @Test
+    public void testGetPeak() {
+        System.out.println( "getPeak" );
+        int[] values = { 0, 4, 2, 9, 1, 1, 0 };
+        WindowCorrelation window = new WindowCorrelation( 3, false );
+        assertEquals( 4, window.getPeak( values, 0 ) );
+        assertEquals( 9, window.getPeak( values, 1 ) );
+        assertEquals( 1, window.getPeak( values, 4 ) );
+    }
+
+
+    private static void compareRandomWindows( boolean useRanks, int maxValue ) {
+        Random random = new Random( 42 );
+        int windowLength = 50;
+        int[] x = new int[2000];
+        int[] y = new int[x.length];
+        for( int i = 0; i < x.length; ++i ) {
+            x[i] = random.nextInt( maxValue );
+            y[i] = random.nextBoolean() ? x[i] + random.nextInt( maxValue ) : random.nextInt( maxValue );
+        }
+        WindowCorrelation window = new WindowCorrelation( windowLength, useRanks );
+        for( int start = 0; start + windowLength <= x.length; start += 7 ) {
+            assertCorrelation( useRanks, window, x, y, start, windowLength );
+        }
+    }
+
+
+    private static void assertCorrelation( boolean useRanks, WindowCorrelation window, int[] x, int[] y, int start, int windowLength ) {
+        double[] valuesX = toDoubles( x, start, windowLength );
+        double[] valuesY = toDoubles( y, start, windowLength );
+        double expected = useRanks ? new SpearmansCorrelation().correlation( valuesX, valuesY )
+                          : new PearsonsCorrelation().correlation( valuesX, valuesY );
+        double correlation = window.getCorrelation( x, y, start );
+        if( Double.isNaN( expected ) ) {
+            assertTrue( "window " + start, Double.isNaN( correlation ) );
+        } else {
+            assertEquals( "window " + start, expected, correlation, DELTA );
+        }
+    }
+
+
+    private static double[] toDoubles( int[] values, int start, int length ) {
+        return Arrays.stream( values, start, start + length ).asDoubleStream().toArray();
+    }
+
+
+}
@@ -107,11 +107,12 @@ public class AnalysisCoverage implements Observer,
         }
 
         CoverageManager coverage = coverageResult.getCovManager();
-        coverageArraySumOrFwd = coverage.getTotalCoverage( parameters.getReadClassParams().getExcludedClasses() ).getFwdCov();
-        coverageArrayRev = coverage.getTotalCoverage( parameters.getReadClassParams().getExcludedClasses() ).getRevCov();
-
+        int includedClassMask = CoverageManager.getIncludedClassMask( parameters.getReadClassParams().getExcludedClasses() );
         if( this.parameters.isSumCoverageOfBothStrands() ) {
-            coverageArraySumOrFwd = this.sumValues( coverageArraySumOrFwd, coverageArrayRev );
+            coverageArraySumOrFwd = coverage.getTotalCoverageView( includedClassMask, Strand.Both );
+        } else {
+            coverageArraySumOrFwd = coverage.getTotalCoverageView( includedClassMask, Strand.Forward );
+            coverageArrayRev = coverage.getTotalCoverageView( includedClassMask, Strand.Reverse );
         }
 
         /* check temp intervals at first, which might be elongated by the new
@@ -241,24 +242,6 @@ public class AnalysisCoverage implements Observer,
     }
 
 
-    /**
-     * Sums the values of both given arrays for the same index.
-     * <p>
-     * @param intArray1 array one
-     * @param intArray2 array two
-     * <p>
-     * @return new array containing at each index i the sum of the values from
-     *         intArray1 and intArray2
-     */
-    private int[] sumValues( int[] intArray1, int[] intArray2 ) {
-        int[] sumArray = new int[intArray1.length];
-        for( int i = 0; i < intArray1.length; i++ ) {
-            sumArray[i] = intArray1[i] + intArray2[i];
-        }
-        return sumArray;
-    }
-
-
     /**
      * Method for updating the currentInterval and adding it to the given
      * interval list.
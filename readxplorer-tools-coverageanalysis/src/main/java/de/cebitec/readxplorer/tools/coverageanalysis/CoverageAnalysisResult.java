@@ -21,7 +21,8 @@ package de.cebitec.readxplorer.tools.coverageanalysis;
 import de.cebitec.readxplorer.databackend.ResultTrackAnalysis;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
-import de.cebitec.readxplorer.exporter.tables.ExportDataI;
+import de.cebitec.readxplorer.exporter.tables.StreamingExportDataI;
+import de.cebitec.readxplorer.exporter.tables.TableRowCursor;
 import de.cebitec.readxplorer.utils.GeneralUtils;
 import java.util.ArrayList;
 import java.util.List;
@@ -37,7 +38,7 @@ import java.util.Map;
  * <rolf.hilker at mikrobio.med.uni-giessen.de>
  */
 public class CoverageAnalysisResult extends ResultTrackAnalysis<ParameterSetCoverageAnalysis>
-        implements ExportDataI {
+        implements StreamingExportDataI {
 
     private final CoverageIntervalContainer results;
 
@@ -99,15 +100,39 @@ public class CoverageAnalysisResult extends ResultTrackAnalysis<ParameterSetCove
 
     @Override
     public List<List<List<Object>>> dataToExcelExportList() {
-        List<List<List<Object>>> coveredIntervalsExport = new ArrayList<>( 1 );
-        List<List<Object>> coveredIntervalsResultList = new ArrayList<>( 2 );
+        List<List<List<Object>>> coveredIntervalsExport = new ArrayList<>( 2 );
+        List<List<Object>> coveredIntervalsResultList = new ArrayList<>( getIntervalCount() );
+        for( int i = 0; i < getIntervalCount(); ++i ) {
+            coveredIntervalsResultList.add( createIntervalRow( i ) );
+        }
+        coveredIntervalsExport.add( coveredIntervalsResultList );
+        coveredIntervalsExport.add( createStatisticsRows() );
 
-        fillTableRow( this.results.getCoverageIntervals(), coveredIntervalsResultList );
-        fillTableRow( this.results.getCoverageIntervalsRev(), coveredIntervalsResultList );
+        return coveredIntervalsExport;
+    }
 
-        coveredIntervalsExport.add( coveredIntervalsResultList );
 
-        //create statistics sheet
+    /**
+     * Creates the rows of the coverage interval table on demand, so the table is
+     * never held in memory completely during the export.
+     * <p>
+     * @param sheetIndex index of the sheet whose rows are needed
+     * <p>
+     * @return A cursor over the rows of the sheet
+     */
+    @Override
+    public TableRowCursor createRowCursor( int sheetIndex ) {
+        if( sheetIndex == 0 ) {
+            return TableRowCursor.of( getIntervalCount(), this::createIntervalRow );
+        }
+        return TableRowCursor.of( createStatisticsRows() );
+    }
+
+
+    /**
+     * @return The rows of the parameter and statistics sheet
+     */
+    private List<List<Object>> createStatisticsRows() {
         ParameterSetCoverageAnalysis parameters = (ParameterSetCoverageAnalysis) this.getParameters();
         String coveredString = parameters.isDetectCoveredIntervals() ? "Covered" : "Uncovered";
 
@@ -135,11 +160,7 @@ public class CoverageAnalysisResult extends ResultTrackAnalysis<ParameterSetCove
         statisticsExportData.add( ResultTrackAnalysis.createTableRow(
                 ResultPanelCoverageAnalysis.MEAN_INTERVAL_COVERAGE, getStatsMap().get( ResultPanelCoverageAnalysis.MEAN_INTERVAL_COVERAGE ) ) );
 
-
-        coveredIntervalsExport.add( statisticsExportData );
-
-
-        return coveredIntervalsExport;
+        return statisticsExportData;
     }
 
 
@@ -148,19 +169,36 @@ public class CoverageAnalysisResult extends ResultTrackAnalysis<ParameterSetCove
     }
 
 
-    private void fillTableRow( List<CoverageInterval> coverageList, List<List<Object>> coveredFeaturesResultList ) {
-        for( CoverageInterval interval : coverageList ) {
-            List<Object> coveredIntervalRow = new ArrayList<>( 10 );
-            coveredIntervalRow.add( interval.isFwdStrand() ? interval.getStart() : interval.getStop() );
-            coveredIntervalRow.add( interval.isFwdStrand() ? interval.getStop() : interval.getStart() );
-            coveredIntervalRow.add( this.getTrackEntry( interval.getTrackId(), true ) );
-            coveredIntervalRow.add( this.getChromosomeMap().get( interval.getChromId() ) );
-            coveredIntervalRow.add( interval.getStrandString() );
-            coveredIntervalRow.add( interval.getLength() );
-            coveredIntervalRow.add( interval.getMeanCoverage() );
+    /**
+     * @return The number of intervals on both strands
+     */
+    private int getIntervalCount() {
+        return results.getCoverageIntervals().size() + results.getCoverageIntervalsRev().size();
+    }
+
 
-            coveredFeaturesResultList.add( coveredIntervalRow );
-        }
+    /**
+     * @param i index of the interval, the intervals of the reverse strand
+     *          follow those of the forward strand
+     * <p>
+     * @return The row of the interval table for the interval at the given
+     *         index
+     */
+    private List<Object> createIntervalRow( int i ) {
+        List<CoverageInterval> fwdIntervals = results.getCoverageIntervals();
+        CoverageInterval interval = i < fwdIntervals.size()
+                                    ? fwdIntervals.get( i )
+                                    : results.getCoverageIntervalsRev().get( i - fwdIntervals.size() );
+        List<Object> coveredIntervalRow = new ArrayList<>( 10 );
+        coveredIntervalRow.add( interval.isFwdStrand() ? interval.getStart() : interval.getStop() );
+        coveredIntervalRow.add( interval.isFwdStrand() ? interval.getStop() : interval.getStart() );
+        coveredIntervalRow.add( this.getTrackEntry( interval.getTrackId(), true ) );
+        coveredIntervalRow.add( this.getChromosomeMap().get( interval.getChromId() ) );
+        coveredIntervalRow.add( interval.getStrandString() );
+        coveredIntervalRow.add( interval.getLength() );
+        coveredIntervalRow.add( interval.getMeanCoverage() );
+
+        return coveredIntervalRow;
     }
 
 
@@ -18,9 +18,11 @@
 package de.cebitec.readxplorer.tools.coverageanalysis.featurecoverageanalysis;
 
 
-import de.cebitec.readxplorer.api.Classification;
+import de.cebitec.readxplorer.api.enums.FeatureType;
+import de.cebitec.readxplorer.api.enums.Strand;
 import de.cebitec.readxplorer.api.objects.AnalysisI;
 import de.cebitec.readxplorer.databackend.AnalysesHandler;
+import de.cebitec.readxplorer.databackend.AnalysisCache;
 import de.cebitec.readxplorer.databackend.connector.ProjectConnector;
 import de.cebitec.readxplorer.databackend.connector.ReferenceConnector;
 import de.cebitec.readxplorer.databackend.connector.TrackConnector;
@@ -29,10 +31,15 @@ import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentFeature;
 import de.cebitec.readxplorer.utils.Observer;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
@@ -42,12 +49,18 @@ import java.util.List;
  */
 public class AnalysisCoveredFeatures implements Observer, AnalysisI<List<CoveredFeature>> {
 
+    private static final Logger LOG = LoggerFactory.getLogger( AnalysisCoveredFeatures.class.getName() );
+
+    private static final String CACHE_PREFIX = "coveredFeatures.";
+
     private final TrackConnector trackConnector;
     private final ParameterSetCoveredFeatures analysisParams;
     private final List<PersistentFeature> genomeFeatures;
     private final HashMap<Integer, CoveredFeature> coveredFeatureCount; //feature id to count of covered positions for feature
     private final List<CoveredFeature> detectedFeatures;
     private int summedCov = 0;
+    private final AnalysisCache analysisCache;
+    private boolean loadedFromCache;
 
     private final int lastFeatureIdx;
 
@@ -67,6 +80,7 @@ public class AnalysisCoveredFeatures implements Observer, AnalysisI<List<Covered
         this.coveredFeatureCount = new HashMap<>();
         this.genomeFeatures = new ArrayList<>();
         this.lastFeatureIdx = 0;
+        this.analysisCache = AnalysisCache.open( trackConnector, featureCoverageParameters.getReadClassParams() );
 
         this.initDatastructures();
     }
@@ -106,6 +120,9 @@ public class AnalysisCoveredFeatures implements Observer, AnalysisI<List<Covered
             coverageAndDiffResult = (CoverageAndDiffResult) data;
             this.updateCoverageCountForFeatures( coverageAndDiffResult );
         } else if( data instanceof Byte && ((byte) data) == AnalysesHandler.COVERAGE_QUERRIES_FINISHED ) { //1 means coverage analysis is finished
+            if( !loadedFromCache ) {
+                this.storeCachedCoverage();
+            }
             this.findCoveredFeatures();
         }
     }
@@ -122,6 +139,7 @@ public class AnalysisCoveredFeatures implements Observer, AnalysisI<List<Covered
         int rightBound = covManager.getRightBound();
         boolean isStrandBothOption = analysisParams.getReadClassParams().isStrandBothOption();
         boolean isFeatureStrand = analysisParams.getReadClassParams().isStrandFeatureOption();
+        int includedClassMask = CoverageManager.getIncludedClassMask( analysisParams.getReadClassParams().getExcludedClasses() );
 
         //coverage identified within an feature
         for( int i = 0; i < this.genomeFeatures.size(); ++i ) {
@@ -138,18 +156,16 @@ public class AnalysisCoveredFeatures implements Observer, AnalysisI<List<Covered
 //                    }
 
                     int featureStop = feature.getStop();
+                    int[] coverage;
                     if( isStrandBothOption ) {
-                        for( int j = featureStart; j <= featureStop; ++j ) {
-                            if( this.checkCanIncreaseAndSumBothStrands( covManager, j ) ) {
-                                ++noCoveredBases;
-                            }
-                        }
+                        coverage = covManager.getTotalCoverageView( includedClassMask, Strand.Both );
                     } else {
                         boolean analysisStrand = isFeatureStrand ? feature.isFwdStrand() : !feature.isFwdStrand();
-                        for( int j = featureStart; j <= featureStop; ++j ) {
-                            if( this.checkCanIncreaseAndSumOneStrand( covManager, j, analysisStrand ) ) {
-                                ++noCoveredBases;
-                            }
+                        coverage = covManager.getTotalCoverageView( includedClassMask, analysisStrand ? Strand.Forward : Strand.Reverse );
+                    }
+                    for( int j = featureStart; j <= featureStop; ++j ) {
+                        if( this.checkCanIncreaseAndSum( coverage, covManager.getInternalPos( j ) ) ) {
+                            ++noCoveredBases;
                         }
                     }
 
@@ -172,6 +188,86 @@ public class AnalysisCoveredFeatures implements Observer, AnalysisI<List<Covered
     }
 
 
+    /**
+     * Restores the number of covered bases and the mean coverage of all
+     * features from the analysis cache of the track. They are only available,
+     * if an earlier analysis of the same mapping file used the same read
+     * classes, feature types and minimum coverage. In this case the coverage of
+     * the track does not need to be scanned again and the analysis can be
+     * finished directly by {@link #update(java.lang.Object)} with
+     * {@link AnalysesHandler#COVERAGE_QUERRIES_FINISHED}.
+     * <p>
+     * @return <code>true</code>, if the counts of all features were restored,
+     *         <code>false</code> otherwise
+     */
+    public boolean loadCachedCoverage() {
+        if( analysisCache == null ) {
+            return false;
+        }
+        String cacheName = getCacheName();
+        int[] featureIds = analysisCache.getInts( cacheName + ".ids" );
+        int[] coveredBases = analysisCache.getInts( cacheName + ".coveredBases" );
+        int[] meanCoverages = analysisCache.getInts( cacheName + ".meanCoverage" );
+        if( featureIds == null || coveredBases == null || meanCoverages == null || featureIds.length != genomeFeatures.size() ) {
+            return false;
+        }
+        for( int i = 0; i < featureIds.length; ++i ) {
+            if( featureIds[i] != genomeFeatures.get( i ).getId() ) {
+                return false; //the annotations of the reference have changed
+            }
+        }
+        for( int i = 0; i < featureIds.length; ++i ) {
+            CoveredFeature coveredFeature = coveredFeatureCount.get( featureIds[i] );
+            coveredFeature.setNoCoveredBases( coveredBases[i] );
+            coveredFeature.setMeanCoverage( meanCoverages[i] );
+        }
+        loadedFromCache = true;
+        return true;
+    }
+
+
+    /**
+     * Stores the number of covered bases and the mean coverage of all features
+     * in the analysis cache of the track.
+     */
+    private void storeCachedCoverage() {
+        if( analysisCache == null ) {
+            return;
+        }
+        int[] featureIds = new int[genomeFeatures.size()];
+        int[] coveredBases = new int[featureIds.length];
+        int[] meanCoverages = new int[featureIds.length];
+        for( int i = 0; i < featureIds.length; ++i ) {
+            CoveredFeature coveredFeature = coveredFeatureCount.get( genomeFeatures.get( i ).getId() );
+            featureIds[i] = genomeFeatures.get( i ).getId();
+            coveredBases[i] = coveredFeature.getNoCoveredBases();
+            meanCoverages[i] = coveredFeature.getMeanCoverage();
+        }
+        String cacheName = getCacheName();
+        analysisCache.putInts( cacheName + ".ids", featureIds );
+        analysisCache.putInts( cacheName + ".coveredBases", coveredBases );
+        analysisCache.putInts( cacheName + ".meanCoverage", meanCoverages );
+        try {
+            analysisCache.store();
+        } catch( IOException ex ) {
+            LOG.warn( "Could not store the feature coverage in the analysis cache: {}", ex.getMessage() );
+        }
+    }
+
+
+    /**
+     * @return The name of the cached feature coverage for the feature types and
+     *         minimum coverage of this analysis.
+     */
+    private String getCacheName() {
+        Set<Integer> featureTypes = new TreeSet<>();
+        for( FeatureType type : analysisParams.getSelFeatureTypes() ) {
+            featureTypes.add( type.getType() );
+        }
+        return CACHE_PREFIX + "minCoverage=" + analysisParams.getMinCoverageCount() + ";types=" + featureTypes;
+    }
+
+
     /**
      * Detects all features, which satisfy the given minimum coverage value at
      * at least the given minimum percentage of bases of the feature.
@@ -212,33 +308,19 @@ public class AnalysisCoveredFeatures implements Observer, AnalysisI<List<Covered
     /**
      * Checks if the coverage can be increased for the given position.
      * <p>
-     * @param coverage The coverage, whose position shall be increased, if valid
-     * @param j        the position to check
+     * @param coverage The total coverage array, whose position shall be
+     *                 increased, if valid
+     * @param pos      the internal position to check, positions outside of
+     *                 the array have a coverage of 0
      * <p>
      * @return true, if the position can be increased, false otherwise
      */
-    private boolean checkCanIncreaseAndSumBothStrands( CoverageManager coverage, int j ) {
-        List<Classification> excludedClasses = analysisParams.getReadClassParams().getExcludedClasses();
-        int cov = coverage.getTotalCoverage( excludedClasses, j, true ) +
-                  coverage.getTotalCoverage( excludedClasses, j, false );
+    private boolean checkCanIncreaseAndSum( int[] coverage, int pos ) {
+        int cov = pos >= 0 && pos < coverage.length ? coverage[pos] : 0;
         return this.increaseSumIfCanIncrease( cov );
     }
 
 
-    /**
-     * Checks if the coverage can be increased for the given position.
-     * <p>
-     * @param coverage The coverage, whose position shall be increased, if valid
-     * @param j        the position to check
-     * <p>
-     * @return true, if the position can be increased, false otherwise
-     */
-    private boolean checkCanIncreaseAndSumOneStrand( CoverageManager coverage, int j, boolean isFwdStrand ) {
-        List<Classification> excludedClasses = analysisParams.getReadClassParams().getExcludedClasses();
-        return this.increaseSumIfCanIncrease( coverage.getTotalCoverage( excludedClasses, j, isFwdStrand ) );
-    }
-
-
     /**
      * Checks if the coverage can be increased for the given position and if so,
      * increases the summed coverage for the current feature.
@@ -22,7 +22,8 @@ import de.cebitec.readxplorer.databackend.ResultTrackAnalysis;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentFeature;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
-import de.cebitec.readxplorer.exporter.tables.ExportDataI;
+import de.cebitec.readxplorer.exporter.tables.StreamingExportDataI;
+import de.cebitec.readxplorer.exporter.tables.TableRowCursor;
 import de.cebitec.readxplorer.utils.GeneralUtils;
 import de.cebitec.readxplorer.utils.UrlWithTitle;
 import java.util.ArrayList;
@@ -39,7 +40,7 @@ import java.util.Map;
  * @author Rolf Hilker <rhilker at cebitec.uni-bielefeld.de>
  */
 public class CoveredFeatureResult extends ResultTrackAnalysis<ParameterSetCoveredFeatures>
-        implements ExportDataI {
+        implements StreamingExportDataI {
 
     private final List<CoveredFeature> results;
 
@@ -121,34 +122,66 @@ public class CoveredFeatureResult extends ResultTrackAnalysis<ParameterSetCovere
     public List<List<List<Object>>> dataToExcelExportList() {
         List<List<List<Object>>> coveredFeaturesExport = new ArrayList<>();
         List<List<Object>> coveredFeaturesResultList = new ArrayList<>();
+        for( int i = 0; i < results.size(); ++i ) {
+            coveredFeaturesResultList.add( createCoveredFeatureRow( i ) );
+        }
+        coveredFeaturesExport.add( coveredFeaturesResultList );
+        coveredFeaturesExport.add( createStatisticsRows() );
+
+        return coveredFeaturesExport;
+    }
+
 
-        PersistentFeature feature;
-        for( CoveredFeature coveredFeature : this.results ) {
-            List<Object> coveredFeatureRow = new ArrayList<>();
-            feature = coveredFeature.getCoveredFeature();
-            coveredFeatureRow.add( feature.toString() );
-            coveredFeatureRow.add( this.getTrackEntry( coveredFeature.getTrackId(), true ) );
-            coveredFeatureRow.add( this.getChromosomeMap().get( feature.getChromId() ) );
-            coveredFeatureRow.add( feature.getStrandString() );
-            coveredFeatureRow.add( feature.getStartOnStrand() );
-            coveredFeatureRow.add( feature.getStopOnStrand() );
-            coveredFeatureRow.add( feature.getLength() );
-            coveredFeatureRow.add( coveredFeature.getMeanCoverage() );
-            coveredFeatureRow.add( coveredFeature.getPercentCovered() );
-            coveredFeatureRow.add( coveredFeature.getNoCoveredBases() );
-            coveredFeatureRow.add( feature.getLocus() );
-            UrlWithTitle url = GeneralUtils.createEcUrl( feature.getEcNumber() );
-            coveredFeatureRow.add( url != null ? url : "" );
-            coveredFeatureRow.add( feature.getProduct() );
-
-            coveredFeaturesResultList.add( coveredFeatureRow );
+    /**
+     * Creates the rows of the covered feature table on demand, so the table is
+     * never held in memory completely during the export.
+     * <p>
+     * @param sheetIndex index of the sheet whose rows are needed
+     * <p>
+     * @return A cursor over the rows of the sheet
+     */
+    @Override
+    public TableRowCursor createRowCursor( int sheetIndex ) {
+        if( sheetIndex == 0 ) {
+            return TableRowCursor.of( results.size(), this::createCoveredFeatureRow );
         }
+        return TableRowCursor.of( createStatisticsRows() );
+    }
 
-        coveredFeaturesExport.add( coveredFeaturesResultList );
 
+    /**
+     * @param i index of the covered feature in the result list
+     * <p>
+     * @return The row of the covered feature table for the covered feature at
+     *         the given index
+     */
+    private List<Object> createCoveredFeatureRow( int i ) {
+        CoveredFeature coveredFeature = results.get( i );
+        PersistentFeature feature = coveredFeature.getCoveredFeature();
+        List<Object> coveredFeatureRow = new ArrayList<>();
+        coveredFeatureRow.add( feature.toString() );
+        coveredFeatureRow.add( this.getTrackEntry( coveredFeature.getTrackId(), true ) );
+        coveredFeatureRow.add( this.getChromosomeMap().get( feature.getChromId() ) );
+        coveredFeatureRow.add( feature.getStrandString() );
+        coveredFeatureRow.add( feature.getStartOnStrand() );
+        coveredFeatureRow.add( feature.getStopOnStrand() );
+        coveredFeatureRow.add( feature.getLength() );
+        coveredFeatureRow.add( coveredFeature.getMeanCoverage() );
+        coveredFeatureRow.add( coveredFeature.getPercentCovered() );
+        coveredFeatureRow.add( coveredFeature.getNoCoveredBases() );
+        coveredFeatureRow.add( feature.getLocus() );
+        UrlWithTitle url = GeneralUtils.createEcUrl( feature.getEcNumber() );
+        coveredFeatureRow.add( url != null ? url : "" );
+        coveredFeatureRow.add( feature.getProduct() );
+
+        return coveredFeatureRow;
+    }
 
 
-        //create statistics sheet
+    /**
+     * @return The rows of the parameter and statistics sheet
+     */
+    private List<List<Object>> createStatisticsRows() {
         ParameterSetCoveredFeatures parameters = (ParameterSetCoveredFeatures) this.getParameters();
         String coveredString = parameters.isGetCoveredFeatures() ? "Covered" : "Uncovered";
 
@@ -169,13 +202,11 @@ public class CoveredFeatureResult extends ResultTrackAnalysis<ParameterSetCovere
         statisticsExportData.add( ResultTrackAnalysis.createTableRow( "" ) ); //placeholder between parameters and statistics
 
         statisticsExportData.add( ResultTrackAnalysis.createTableRow( coveredString + " feature statistics:" ) );
-        statisticsExportData.add( ResultTrackAnalysis.createTableRow( ResultPanelCoveredFeatures.FEATURES_COVERED, coveredFeaturesResultList.size() ) );
+        statisticsExportData.add( ResultTrackAnalysis.createTableRow( ResultPanelCoveredFeatures.FEATURES_COVERED, results.size() ) );
         statisticsExportData.add( ResultTrackAnalysis.createTableRow(
                 ResultPanelCoveredFeatures.FEATURES_TOTAL, this.getStatsMap().get( ResultPanelCoveredFeatures.FEATURES_TOTAL ) ) );
 
-        coveredFeaturesExport.add( statisticsExportData );
-
-        return coveredFeaturesExport;
+        return statisticsExportData;
     }
 
 
@@ -223,14 +223,20 @@ public final class OpenCoveredFeaturesAction implements ActionListener,
     @Messages( "MSG_AnalysesWorker.progress.name=Running Feature Coverage Analysis..." )
     private void createAnalysis( TrackConnector connector, ParametersReadClasses readClassesParams ) {
 
+        AnalysisCoveredFeatures analysisCoveredFeatures = new AnalysisCoveredFeatures( connector, parameters );
+        trackToAnalysisMap.put( connector.getTrackID(), analysisCoveredFeatures );
+
+        if( analysisCoveredFeatures.loadCachedCoverage() ) { //no need to scan the coverage again
+            analysisCoveredFeatures.update( AnalysesHandler.COVERAGE_QUERRIES_FINISHED );
+            this.showData( new Pair<>( connector.getTrackID(), AnalysesHandler.DATA_TYPE_COVERAGE ) );
+            return;
+        }
+
         AnalysesHandler covAnalysisHandler = connector.createAnalysisHandler( this, //every track has its own analysis handlers
                                                                               MSG_AnalysesWorker_progress_name(),
                                                                               readClassesParams );
-        AnalysisCoveredFeatures analysisCoveredFeatures = new AnalysisCoveredFeatures( connector, parameters );
         covAnalysisHandler.registerObserver( analysisCoveredFeatures );
         covAnalysisHandler.setCoverageNeeded( true );
-
-        trackToAnalysisMap.put( connector.getTrackID(), analysisCoveredFeatures );
         covAnalysisHandler.startAnalysis();
     }
 
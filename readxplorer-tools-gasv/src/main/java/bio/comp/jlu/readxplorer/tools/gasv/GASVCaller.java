@@ -25,6 +25,7 @@ import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.utils.errorhandling.ErrorHelper;
 import gasv.bamtogasv.BAMToGASV;
+import gasv.common.BinaryESP;
 import gasv.main.GASVMain;
 import java.awt.HeadlessException;
 import java.io.BufferedWriter;
@@ -62,6 +63,12 @@ public class GASVCaller implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger( GASVCaller.class.getName() );
     public static final InputOutput IO = IOProvider.getDefault().getIO( Bundle.GASV_output_name(), false );
 
+    /**
+     * The discordant read pairs of a bam file are handed to GASVMain in memory,
+     * if the bam file is smaller than this fraction of the maximum heap.
+     */
+    private static final double IN_MEMORY_HEAP_FRACTION = 0.25;
+
     private final PersistentReference reference;
     private final TrackConnector trackConnector;
     private final ParametersBamToGASV bamToGASVParams;
@@ -123,8 +130,12 @@ public class GASVCaller implements Runnable {
         //check if a paired file has been passed:
         if( trackConnector.isReadPairTrack() ) {
             createChromosomeNamingFile( reference );
-            runBamToGASV( trackConnector.getTrackFile() );
-            runGASVMain( trackConnector.getTrackFile().getAbsolutePath() + ".gasv.in" );
+            try {
+                runBamToGASV( trackConnector.getTrackFile() );
+                runGASVMain( trackConnector.getTrackFile().getAbsolutePath() + ".gasv.in" );
+            } finally {
+                BinaryESP.release( trackConnector.getTrackFile().getAbsolutePath() );
+            }
         } else {
             LOG.warn( ErrorPairedTrack( trackConnector.getTrackFile().getName() ) );
             IO.getOut().println( ErrorPairedTrack( trackConnector.getTrackFile().getName() ) );
@@ -223,11 +234,25 @@ public class GASVCaller implements Runnable {
                               "-WRITE_LOWQ",
                               bamToGASVParams.isWriteLowQualityPairs() ? "true" : "false",
                               "-VALIDATION_STRINGENCY",
-                              bamToGASVParams.getSamValidationStringency() };
+                              bamToGASVParams.getSamValidationStringency(),
+                              "-OUTPUT_FORMAT",
+                              fitsIntoMemory( bamFile ) ? BAMToGASV.FORMAT_MEMORY : BAMToGASV.FORMAT_BINARY };
         BAMToGASV.main( gasvArgs );
     }
 
 
+    /**
+     * @param bamFile The bam file to analyze
+     * <p>
+     * @return <code>true</code>, if the discordant read pairs of the bam file
+     *         can be kept in memory between BamToGASV and GASVMain,
+     *         <code>false</code> if they have to be written to binary files.
+     */
+    private static boolean fitsIntoMemory( File bamFile ) {
+        return bamFile.length() < Runtime.getRuntime().maxMemory() * IN_MEMORY_HEAP_FRACTION;
+    }
+
+
     /**
      * Constructs the correctly formatted input string for the fragment bounds
      * method parameter of GASV.
@@ -23,6 +23,8 @@ package gasv.bamtogasv;
  */
 import bio.comp.jlu.readxplorer.tools.gasv.GASVCaller;
 import bio.comp.jlu.readxplorer.tools.gasv.GASVUtils;
+import gasv.common.BinaryESP;
+import gasv.common.ESPRecords;
 import htsjdk.samtools.FileTruncatedException;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFormatException;
@@ -91,6 +93,12 @@ public class BAMToGASV {
     public boolean GASVPRO_OUTPUT = false; // GASVPro
     public boolean BATCH = false;
     public boolean NOSORT = false;
+    public String OUTPUT_FORMAT = FORMAT_TEXT;
+
+    /* Formats of the discordant ESP files */
+    public static final String FORMAT_TEXT = "text";
+    public static final String FORMAT_BINARY = "binary";
+    public static final String FORMAT_MEMORY = "memory";
 
     /* Additional Variables */
     public boolean someLibPassed = false; // true if at least one library is paired, false otherwise.
@@ -119,8 +127,8 @@ public class BAMToGASV {
      * file.
      */
 
- /* Sorters for ESPs and for Concordants */
-    public ExternalSort discordantSorter, concordantSorter;
+ /* Sorter for Concordants, discordant ESPs are sorted in columnar buffers */
+    public ExternalSort concordantSorter;
 
     /* Static Variables */
     public static Map<String, Boolean> NON_DEFAULT_REFS; // <refname,true>
@@ -215,7 +223,6 @@ public class BAMToGASV {
 
         // Try opening sorters and catch errors.
         try {
-            discordantSorter = new ExternalSort( "ESP" );
             int[] concordantSortOrder = { 1, 2, 3 };
             concordantSorter = new ExternalSort( concordantSortOrder );
         } catch( Exception e ) {
@@ -367,6 +374,14 @@ public class BAMToGASV {
                     IO.getOut().println( "Error! Option " + args[i] + " does not exist." );
                     return false;
                 }
+            } else if( args[i].equalsIgnoreCase( "-OUTPUT_FORMAT" ) ) {
+                if( args[i + 1].equalsIgnoreCase( FORMAT_TEXT ) || args[i + 1].equalsIgnoreCase( FORMAT_BINARY ) ||
+                    args[i + 1].equalsIgnoreCase( FORMAT_MEMORY ) ) {
+                    OUTPUT_FORMAT = args[i + 1].toLowerCase();
+                } else {
+                    IO.getOut().println( "Error! OUTPUT_FORMAT option can only be 'text', 'binary' or 'memory'." );
+                    return false;
+                }
             } else {
                 IO.getOut().println( "Error! Option " + args[i] + " does not exist." );
                 return false;
@@ -430,6 +445,10 @@ public class BAMToGASV {
                              "\tTrue\tGenerate GASVPro parameters file and concordant file. Warning - this will be large!\n" +
                              "-NOSORT [Boolean] (Default: False)\n" +
                              "\tTrue\tDo not sort the concordant file. Improves running time.\n" +
+                             "-OUTPUT_FORMAT [String] (Default: text)\n" +
+                             "\ttext\tWrite the discordant ESP files as text.\n" +
+                             "\tbinary\tWrite the discordant ESP files in the compact binary ESP format (.bin), which GASV reads through memory mappings.\n" +
+                             "\tmemory\tKeep the discordant ESPs in memory for a subsequent GASV run in the same JVM. Falls back to binary for large libraries.\n" +
                              "Refer to the Manual for more details." );
     }
 
@@ -458,6 +477,7 @@ public class BAMToGASV {
             IO.getOut().println( "true" );
         }
         IO.getOut().println( "  Validation Stringency: " + STRINGENCY );
+        IO.getOut().println( "  ESP Output Format: " + OUTPUT_FORMAT );
         IO.getOut().print( "  Prepare GASVPro Output? " );
         if( GASVPRO_OUTPUT ) {
             IO.getOut().println( "true" );
@@ -953,8 +973,8 @@ public class BAMToGASV {
 
                         String tmp = "";
                         for( int v = 0; v < VARIANTS.length; v++ ) {
-                            numinmem += LIBRARY_INFO.get( LIBRARY_NAMES.get( i ) ).rowsForVariant.get( VARIANTS[v] ).size();
-                            tmp += VARIANTS[v] + ":" + LIBRARY_INFO.get( LIBRARY_NAMES.get( i ) ).rowsForVariant.get( VARIANTS[v] ).size() + " ";
+                            numinmem += LIBRARY_INFO.get( LIBRARY_NAMES.get( i ) ).getBufferSize( VARIANTS[v] );
+                            tmp += VARIANTS[v] + ":" + LIBRARY_INFO.get( LIBRARY_NAMES.get( i ) ).getBufferSize( VARIANTS[v] ) + " ";
                         }
 
                         if( LIBRARY_INFO.get( LIBRARY_NAMES.get( i ) ).firstNreads != null ) {
@@ -1091,13 +1111,20 @@ public class BAMToGASV {
                     continue;
                 }
 
+                // Discordant ESPs are merged from the binary temporary files and the
+                // last buffer, which is sorted in memory instead of being written first.
+                if( type != VariantType.CONC ) {
+                    writeESPFile( lib, type );
+                    continue;
+                }
+
                 // (2) Write last temporary files for variants
-                if( lib.rowsForVariant.get( type ).size() > 0 ) {
+                if( lib.getBufferSize( type ) > 0 ) {
                     sortAndWriteTempFile( lib, type );
                 }
 
                 // If it's concordant and we aren't sorting, then no need to merge.
-                if( type == VariantType.CONC && NOSORT ) {
+                if( NOSORT ) {
                     continue;
                 }
 
@@ -1113,13 +1140,8 @@ public class BAMToGASV {
                 IO.getOut().println( "  Library \"" + libname + "\" type " + type + ": merging " +
                                      tmpFilenames.size() + " temporary files" );
 
-                // Now, merge files. Concordants are written differently than all
-                // other ESP files.
-                if( type == VariantType.CONC ) {
-                    concordantSorter.merge( tmpFilenames, getFinalFileName( libname, type ) );
-                } else {
-                    discordantSorter.merge( tmpFilenames, getFinalFileName( libname, type ) );
-                }
+                // Now, merge files.
+                concordantSorter.merge( tmpFilenames, getFinalFileName( libname, type ) );
             } // END for each variant
 
         } // END for each library
@@ -1207,12 +1229,16 @@ public class BAMToGASV {
             }
         }
 
-        // Add line to variant list for this library.
-        lib.addLine( type, pobj.createOutput( type ) );
+        // Add line to variant list for this library. Discordant ESPs are buffered in columns.
+        if( type == VariantType.CONC ) {
+            lib.addLine( type, pobj.createOutput( type ) );
+        } else {
+            lib.addESP( type, pobj );
+        }
 
         // Check to see if we should sort and write tmp file here.
         // Now, sort and write ALL tmp files (all libraries, all types)
-        if( lib.rowsForVariant.get( type ).size() >= NUM_LINES_FOR_EXTERNAL_SORT ) {
+        if( lib.getBufferSize( type ) >= NUM_LINES_FOR_EXTERNAL_SORT ) {
             for( String libname : LIBRARY_NAMES ) {
                 lib = LIBRARY_INFO.get( libname );
                 for( VariantType variant : VARIANTS ) {
@@ -1220,7 +1246,7 @@ public class BAMToGASV {
                         continue;
                     }
                     // if there are fewer than 1/10th of the number of reads, don't do this yet.
-                    if( lib.rowsForVariant.get( variant ).size() < USE_NUMBER_READS / 10 ) {
+                    if( lib.getBufferSize( variant ) < USE_NUMBER_READS / 10 ) {
                         continue;
                     }
                     sortAndWriteTempFile( lib, variant );
@@ -1428,7 +1454,7 @@ public class BAMToGASV {
      */
     public void sortAndWriteTempFile( Library lib, VariantType type ) {
 
-        IO.getOut().println( "  Library \"" + lib.name + "\" type " + type + ": writing " + lib.rowsForVariant.get( type ).size() + " lines in temp file" );
+        IO.getOut().println( "  Library \"" + lib.name + "\" type " + type + ": writing " + lib.getBufferSize( type ) + " lines in temp file" );
 
         // Increment temporary file number.
         int curnum = lib.numTmpFilesForVariant.get( type );
@@ -1463,9 +1489,10 @@ public class BAMToGASV {
             }
         } else { // Handle Discordants
             try {
-                discordantSorter.sort(
-                        lib.rowsForVariant.get( type ),
-                        getTmpFileName( lib.name, type, curnum ) );
+                ESPRecords esps = lib.espsForVariant.get( type );
+                esps.sort();
+                esps.setLibraryStats( lib.Lmin, lib.Lmax, lib.mean, lib.std );
+                BinaryESP.Writer.write( new File( getTmpFileName( lib.name, type, curnum ) ), esps );
             } catch( IOException e ) {
                 IO.getOut().println( "ERROR WHILE WRITING DISCORDANT TMP FILE " + getTmpFileName( lib.name, type, curnum ) + ". Most likely, the tmp file cannot be created - check the output directory location." );
                 System.exit( -1 );
@@ -1478,6 +1505,89 @@ public class BAMToGASV {
     }
 
 
+    /**
+     * Writes the final ESP file of a library/variant pair in the OUTPUT_FORMAT.
+     * The binary temporary files written so far and the remaining buffered
+     * ESPs, which are sorted in memory, are merged into the final file. In
+     * memory mode, the ESPs are registered in memory instead, as long as no
+     * temporary file had to be written.
+     * <p>
+     * @param lib  - library
+     * @param type - discordant variant type to write
+     */
+    public void writeESPFile( Library lib, VariantType type ) {
+        ESPRecords esps = lib.espsForVariant.get( type );
+        esps.sort();
+        esps.setLibraryStats( lib.Lmin, lib.Lmax, lib.mean, lib.std );
+        lib.clearVariantBuffer( type );
+
+        int numTmpFiles = lib.numTmpFilesForVariant.get( type );
+        String filename = getESPFileName( lib.name, type );
+        if( OUTPUT_FORMAT.equals( FORMAT_MEMORY ) ) {
+            if( numTmpFiles == 0 ) {
+                BinaryESP.register( filename, esps );
+                return;
+            }
+            IO.getOut().println( "  Library \"" + lib.name + "\" type " + type + " does not fit into memory, writing binary file " + filename );
+        }
+
+        IO.getOut().println( "  Library \"" + lib.name + "\" type " + type + ": merging " +
+                             numTmpFiles + " temporary files" );
+        List<File> tmpFiles = new ArrayList<>();
+        List<BinaryESP.Reader> sources = new ArrayList<>();
+        try {
+            long numESPs = esps.size();
+            for( int k = 1; k <= numTmpFiles; k++ ) {
+                File tmpFile = new File( getTmpFileName( lib.name, type, k ) );
+                tmpFiles.add( tmpFile );
+                BinaryESP.Reader tmpReader = BinaryESP.open( tmpFile.getPath() );
+                sources.add( tmpReader );
+                numESPs += tmpReader.getRecordCount();
+            }
+            sources.add( esps.reader() );
+
+            try( BinaryESP.RecordSink sink = OUTPUT_FORMAT.equals( FORMAT_TEXT )
+                                              ? new BinaryESP.TextWriter( new File( filename ) )
+                                              : new BinaryESP.Writer( new File( filename ), numESPs, lib.Lmin, lib.Lmax, lib.mean, lib.std ) ) {
+                BinaryESP.merge( sources, sink );
+            }
+        } catch( IOException e ) {
+            for( BinaryESP.Reader source : sources ) {
+                try {
+                    source.close();
+                } catch( IOException ex ) {
+                    //already failed, the error is reported below
+                }
+            }
+            IO.getOut().println( "ERROR WHILE WRITING DISCORDANT FILE " + filename + ": " + e.getMessage() );
+            System.exit( -1 );
+        }
+
+        // delete all temporary files, mapped files might still be locked on some platforms
+        for( File tmpFile : tmpFiles ) {
+            if( !tmpFile.delete() ) {
+                tmpFile.deleteOnExit();
+            }
+        }
+    }
+
+
+    /**
+     * Gets the name of the final discordant ESP file in the OUTPUT_FORMAT.
+     * <p>
+     * @param lib  - library
+     * @param type - discordant variant type
+     * <p>
+     * @return String of the file name.
+     */
+    public String getESPFileName( String lib, VariantType type ) {
+        if( OUTPUT_FORMAT.equals( FORMAT_TEXT ) ) {
+            return getFinalFileName( lib, type );
+        }
+        return getFinalFileName( lib, type ) + BinaryESP.EXTENSION;
+    }
+
+
     /**
      * Gets the temporary file name.
      * <p>
@@ -1611,7 +1721,8 @@ public class BAMToGASV {
                         continue;
                     }
 
-                    writer.write( getFinalFileName( libname, type ) + "\tPR\t" +
+                    String fileType = OUTPUT_FORMAT.equals( FORMAT_TEXT ) ? "PR" : BinaryESP.BATCH_TYPE;
+                    writer.write( getESPFileName( libname, type ) + "\t" + fileType + "\t" +
                                   lib.Lmin + "\t" + lib.Lmax + "\n" );
                 }
             }
@@ -1712,7 +1823,13 @@ public class BAMToGASV {
                 if( variant == VariantType.CONC && GASVPRO_OUTPUT ) {
                     continue;
                 }
-                IO.getOut().println( "  " + getFinalFileName( libName, variant ) );
+                if( variant == VariantType.CONC ) {
+                    IO.getOut().println( "  " + getFinalFileName( libName, variant ) );
+                } else if( OUTPUT_FORMAT.equals( FORMAT_MEMORY ) && !new File( getESPFileName( libName, variant ) ).exists() ) {
+                    IO.getOut().println( "  " + getESPFileName( libName, variant ) + " (in memory)" );
+                } else {
+                    IO.getOut().println( "  " + getESPFileName( libName, variant ) );
+                }
             }
         }
     }
@@ -21,6 +21,7 @@ package gasv.bamtogasv;
  * gasv. If not, see <http://www.gnu.org/licenses/>.
  * <p>
  */
+import gasv.common.ESPRecords;
 import htsjdk.samtools.SAMFormatException;
 import htsjdk.samtools.SAMRecord;
 
@@ -173,6 +174,14 @@ public class GASVPair {
         }
     }
 
+    // adds the pair to a columnar ESP buffer, same fields as the text output of createOutput().
+
+    public void addTo( ESPRecords records ) {
+        records.add( readname, first_chrom, first_start, first_end, first_ori,
+                     second_chrom, second_start, second_end, second_ori );
+    }
+
+
 	// output need to transfer 'X' and 'Y' into 23 and 24, respectively.
     // adds '_counter_0_0' to read name.
 
@@ -22,6 +22,7 @@ package gasv.bamtogasv;
  * <p>
  *
  */
+import gasv.common.ESPRecords;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -41,6 +42,7 @@ public class Library {
     public Map<Integer, Integer> lengthHist; /// TreeMap is sorted
     public Map<VariantType, Integer> numTmpFilesForVariant; // <variant_type, # of tmp files written>
     public Map<VariantType, List<String>> rowsForVariant; // <variant_type,lines to sort>
+    public Map<VariantType, ESPRecords> espsForVariant; // <variant_type,discordant ESPs to sort>
 
 
     public Library( String n ) {
@@ -60,6 +62,7 @@ public class Library {
         computedStats = false;
 
         rowsForVariant = new HashMap<>();
+        espsForVariant = new HashMap<>();
         numTmpFilesForVariant = new HashMap<>();
         VariantType[] varList = VariantType.values();
         for( VariantType varType : varList ) {
@@ -73,6 +76,7 @@ public class Library {
 
     public void clearVariantBuffer( VariantType t ) {
         rowsForVariant.put( t, new ArrayList<>() );
+        espsForVariant.put( t, new ESPRecords() );
     }
 
 
@@ -82,6 +86,20 @@ public class Library {
     }
 
 
+    // adds a discordant ESP to the columnar buffer of the variant type.
+
+    public void addESP( VariantType t, GASVPair pair ) {
+        pair.addTo( espsForVariant.get( t ) );
+    }
+
+
+    // number of lines and ESPs buffered for the variant type.
+
+    public int getBufferSize( VariantType t ) {
+        return rowsForVariant.get( t ).size() + espsForVariant.get( t ).size();
+    }
+
+
     public void isRecordPaired( SAMRecord s ) {
         if( s.getReadPairedFlag() &&
                  !s.getReadUnmappedFlag() &&
@@ -0,0 +1,690 @@
+/**
+ * Copyright 2010 Benjamin Raphael, Suzanne Sindi, Hsin-Ta Wu, Anna Ritz, Luke
+ * Peng
+ * <p>
+ * This file is part of gasv.
+ * <p>
+ * gasv is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * <p>
+ * gasv is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * gasv. If not, see <http://www.gnu.org/licenses/>.
+ * <p>
+ */
+package gasv.common;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * The binary ESP format written by BAMToGASV and read by GASV. A file starts
+ * with a fixed header:
+ * <pre>
+ * magic "GASVESP\0", int version, int lmin, int lmax, int mean, int std,
+ * long number of records
+ * </pre>
+ * followed by one fixed-width record per ESP:
+ * <pre>
+ * int chr1, int start1, int end1, int chr2, int start2, int end2,
+ * byte orientation flags (bit 0: first read on minus strand, bit 1: second
+ * read on minus strand)
+ * </pre>
+ * and finally the read names in record order, each stored as an unsigned
+ * short length followed by the UTF-8 bytes of the name. All numbers are big
+ * endian. Since the positions of the records are fixed, files are read
+ * through memory mappings instead of parsing text lines.
+ * <p>
+ * ESP buffers can also be registered in memory under a file name, so that
+ * small data sets are handed from BAMToGASV to GASV without writing any ESP
+ * file.
+ */
+public final class BinaryESP {
+
+    /**
+     * Type of binary ESP files in a GASV batch file.
+     */
+    public static final String BATCH_TYPE = "BPR";
+
+    /**
+     * Extension appended to the name of binary ESP files.
+     */
+    public static final String EXTENSION = ".bin";
+
+    static final byte MINUS_1 = 1;
+    static final byte MINUS_2 = 2;
+
+    private static final byte[] MAGIC = { 'G', 'A', 'S', 'V', 'E', 'S', 'P', 0 };
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 5 * Integer.BYTES + Long.BYTES;
+    private static final int RECORD_SIZE = 6 * Integer.BYTES + 1;
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    private static final long MAX_MAPPING_SIZE = 1L << 28;
+
+    private static final Map<String, ESPRecords> IN_MEMORY = new ConcurrentHashMap<>();
+
+
+    private BinaryESP() {
+    }
+
+
+    /**
+     * Registers ESPs in memory under a file name. Opening the name afterwards
+     * returns the registered ESPs without touching the file system.
+     * <p>
+     * @param name    name under which the ESPs are listed in the batch file
+     * @param records sorted ESPs
+     */
+    public static void register( String name, ESPRecords records ) {
+        IN_MEMORY.put( name, records );
+    }
+
+
+    /**
+     * Releases all in memory ESPs registered under a name starting with the
+     * given prefix.
+     * <p>
+     * @param prefix prefix of the names to release
+     */
+    public static void release( String prefix ) {
+        IN_MEMORY.keySet().removeIf( name -> name.startsWith( prefix ) );
+    }
+
+
+    /**
+     * @param name a registered name or a file name
+     * <p>
+     * @return true, if the name is registered in memory or is a file in the
+     *         binary ESP format.
+     */
+    public static boolean isBinary( String name ) {
+        if( IN_MEMORY.containsKey( name ) ) {
+            return true;
+        }
+        File file = new File( name );
+        if( !file.isFile() || file.length() < HEADER_SIZE ) {
+            return false;
+        }
+        byte[] magic = new byte[MAGIC.length];
+        try( InputStream in = new FileInputStream( file ) ) {
+            int read = 0;
+            while( read < magic.length ) {
+                int count = in.read( magic, read, magic.length - read );
+                if( count < 0 ) {
+                    return false;
+                }
+                read += count;
+            }
+        } catch( IOException e ) {
+            return false;
+        }
+        return Arrays.equals( magic, MAGIC );
+    }
+
+
+    /**
+     * Opens the ESPs registered in memory under the given name or, if none are
+     * registered, memory maps the binary ESP file with this name.
+     * <p>
+     * @param name a registered name or a file name
+     * <p>
+     * @return A reader positioned before the first ESP
+     * <p>
+     * @throws IOException if the file cannot be read or is no binary ESP file
+     */
+    public static Reader open( String name ) throws IOException {
+        ESPRecords records = IN_MEMORY.get( name );
+        if( records != null ) {
+            return records.reader();
+        }
+        return new MappedReader( new File( name ) );
+    }
+
+
+    /**
+     * Merges sorted ESP sources into one sorted sink. ESPs with equal sort keys
+     * are written in the order of their sources. The sources are closed, the
+     * sink is left open.
+     * <p>
+     * @param sources sorted ESP sources
+     * @param sink    the sink receiving all ESPs
+     * <p>
+     * @throws IOException if reading or writing fails
+     */
+    public static void merge( List<Reader> sources, RecordSink sink ) throws IOException {
+        List<Reader> active = new ArrayList<>( sources.size() );
+        try {
+            for( Reader source : sources ) {
+                if( source.next() ) {
+                    active.add( source );
+                } else {
+                    source.close();
+                }
+            }
+            while( !active.isEmpty() ) {
+                int minIndex = 0;
+                for( int i = 1; i < active.size(); ++i ) {
+                    if( active.get( i ).compareTo( active.get( minIndex ) ) < 0 ) {
+                        minIndex = i;
+                    }
+                }
+                Reader min = active.get( minIndex );
+                sink.write( min );
+                if( !min.next() ) {
+                    min.close();
+                    active.remove( minIndex );
+                }
+            }
+        } finally {
+            for( Iterator<Reader> it = active.iterator(); it.hasNext(); ) {
+                it.next().close();
+            }
+        }
+    }
+
+
+    /**
+     * Iterates ESPs. After a successful call of next() the getters return the
+     * fields of the current ESP.
+     */
+    public abstract static class Reader implements Closeable {
+
+        private String name;
+        private int chr1;
+        private int start1;
+        private int end1;
+        private int chr2;
+        private int start2;
+        private int end2;
+        private byte orientations;
+
+
+        /**
+         * Advances to the next ESP.
+         * <p>
+         * @return true, if there is a next ESP, false if all ESPs have been
+         *         read
+         * <p>
+         * @throws IOException if reading fails
+         */
+        public abstract boolean next() throws IOException;
+
+
+        /**
+         * @return The number of ESPs of this reader.
+         */
+        public abstract long getRecordCount();
+
+
+        public abstract int getLmin();
+
+
+        public abstract int getLmax();
+
+
+        public abstract int getMean();
+
+
+        public abstract int getStd();
+
+
+        protected void set( String name, int chr1, int start1, int end1,
+                            int chr2, int start2, int end2, byte orientations ) {
+            this.name = name;
+            this.chr1 = chr1;
+            this.start1 = start1;
+            this.end1 = end1;
+            this.chr2 = chr2;
+            this.start2 = start2;
+            this.end2 = end2;
+            this.orientations = orientations;
+        }
+
+
+        public String getName() {
+            return name;
+        }
+
+
+        public int getChr1() {
+            return chr1;
+        }
+
+
+        public int getStart1() {
+            return start1;
+        }
+
+
+        public int getEnd1() {
+            return end1;
+        }
+
+
+        public char getOrientation1() {
+            return (orientations & MINUS_1) != 0 ? '-' : '+';
+        }
+
+
+        public int getChr2() {
+            return chr2;
+        }
+
+
+        public int getStart2() {
+            return start2;
+        }
+
+
+        public int getEnd2() {
+            return end2;
+        }
+
+
+        public char getOrientation2() {
+            return (orientations & MINUS_2) != 0 ? '-' : '+';
+        }
+
+
+        /**
+         * Compares the current ESPs of this and another reader in the GASV
+         * sort order.
+         */
+        int compareTo( Reader other ) {
+            return ESPRecords.compare( chr1, chr2, sortPos1(), sortPos2(),
+                                       other.chr1, other.chr2, other.sortPos1(), other.sortPos2() );
+        }
+
+
+        /**
+         * @return The current ESP in the GASV text format.
+         */
+        @Override
+        public String toString() {
+            return name + "\t" + chr1 + "\t" + start1 + "\t" + end1 + "\t" + getOrientation1() + "\t" +
+                   chr2 + "\t" + start2 + "\t" + end2 + "\t" + getOrientation2();
+        }
+
+
+        private int sortPos1() {
+            return (orientations & MINUS_1) != 0 ? end1 : start1;
+        }
+
+
+        private int sortPos2() {
+            return (orientations & MINUS_2) != 0 ? end2 : start2;
+        }
+
+
+        private byte getOrientations() {
+            return orientations;
+        }
+
+
+    }
+
+
+    /**
+     * Receives ESPs.
+     */
+    public interface RecordSink extends Closeable {
+
+        /**
+         * Writes the current ESP of the reader.
+         * <p>
+         * @param record reader positioned on the ESP to write
+         * <p>
+         * @throws IOException if writing fails
+         */
+        void write( Reader record ) throws IOException;
+
+
+    }
+
+
+    /**
+     * Writes a binary ESP file. The number of ESPs has to be known in advance,
+     * because the read names are stored behind the fixed-width records.
+     */
+    public static class Writer implements RecordSink {
+
+        private final FileChannel channel;
+        private final RandomAccessFile file;
+        private final long recordCount;
+        private final ByteBuffer header;
+        private final ByteBuffer records = ByteBuffer.allocate( WRITE_BUFFER_SIZE );
+        private final ByteBuffer names = ByteBuffer.allocate( WRITE_BUFFER_SIZE );
+        private long recordPos = HEADER_SIZE;
+        private long namePos;
+        private long written;
+
+
+        /**
+         * Writes a binary ESP file.
+         * <p>
+         * @param file        the file to write, an existing file is replaced
+         * @param recordCount number of ESPs which will be written
+         * @param lmin        minimum fragment length of the library
+         * @param lmax        maximum fragment length of the library
+         * @param mean        mean fragment length of the library
+         * @param std         standard deviation of the fragment length
+         * <p>
+         * @throws IOException if the file cannot be created
+         */
+        public Writer( File file, long recordCount, int lmin, int lmax, int mean, int std ) throws IOException {
+            this.file = new RandomAccessFile( file, "rw" );
+            this.file.setLength( 0 );
+            this.channel = this.file.getChannel();
+            this.recordCount = recordCount;
+            this.namePos = HEADER_SIZE + recordCount * RECORD_SIZE;
+            header = ByteBuffer.allocate( HEADER_SIZE );
+            header.put( MAGIC ).putInt( VERSION ).putInt( lmin ).putInt( lmax ).putInt( mean ).putInt( std ).putLong( recordCount );
+            header.flip();
+        }
+
+
+        /**
+         * Writes all ESPs of a buffer to a binary ESP file.
+         * <p>
+         * @param file    the file to write, an existing file is replaced
+         * @param records the ESPs to write
+         * <p>
+         * @throws IOException if writing fails
+         */
+        public static void write( File file, ESPRecords records ) throws IOException {
+            try( Writer writer = new Writer( file, records.size(), records.getLmin(), records.getLmax(),
+                                             records.getMean(), records.getStd() );
+                 Reader reader = records.reader() ) {
+                while( reader.next() ) {
+                    writer.write( reader );
+                }
+            }
+        }
+
+
+        @Override
+        public void write( Reader record ) throws IOException {
+            if( written >= recordCount ) {
+                throw new IOException( "More ESPs than the announced " + recordCount + " written." );
+            }
+            byte[] name = record.getName().getBytes( StandardCharsets.UTF_8 );
+            if( name.length > MAX_NAME_LENGTH ) {
+                throw new IOException( "Read name " + record.getName() + " is too long." );
+            }
+            if( records.remaining() < RECORD_SIZE ) {
+                recordPos = flush( records, recordPos );
+            }
+            records.putInt( record.getChr1() ).putInt( record.getStart1() ).putInt( record.getEnd1() )
+                    .putInt( record.getChr2() ).putInt( record.getStart2() ).putInt( record.getEnd2() )
+                    .put( record.getOrientations() );
+
+            if( names.remaining() < Short.BYTES + name.length ) {
+                namePos = flush( names, namePos );
+            }
+            names.putShort( (short) name.length ).put( name );
+            ++written;
+        }
+
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush( records, recordPos );
+                flush( names, namePos );
+                while( header.hasRemaining() ) {
+                    channel.write( header, header.position() );
+                }
+                if( written != recordCount ) {
+                    throw new IOException( "Only " + written + " of the announced " + recordCount + " ESPs written." );
+                }
+            } finally {
+                file.close();
+            }
+        }
+
+
+        private long flush( ByteBuffer buffer, long pos ) throws IOException {
+            buffer.flip();
+            while( buffer.hasRemaining() ) {
+                pos += channel.write( buffer, pos );
+            }
+            buffer.clear();
+            return pos;
+        }
+
+
+    }
+
+
+    /**
+     * Writes ESPs in the GASV text format.
+     */
+    public static class TextWriter implements RecordSink {
+
+        private final BufferedWriter writer;
+
+
+        /**
+         * Writes ESPs in the GASV text format.
+         * <p>
+         * @param file the file to write, an existing file is replaced
+         * <p>
+         * @throws IOException if the file cannot be created
+         */
+        public TextWriter( File file ) throws IOException {
+            writer = new BufferedWriter( new FileWriter( file ) );
+        }
+
+
+        @Override
+        public void write( Reader record ) throws IOException {
+            writer.write( record.toString() );
+            writer.write( '\n' );
+        }
+
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+
+
+    }
+
+
+    /**
+     * Reads a binary ESP file through memory mappings. Records and read names
+     * are mapped in separate windows of at most MAX_MAPPING_SIZE bytes, so
+     * files larger than 2 GB can be read as well.
+     */
+    private static class MappedReader extends Reader {
+
+        private final RandomAccessFile file;
+        private final MappedWindow recordWindow;
+        private final MappedWindow nameWindow;
+        private final int lmin;
+        private final int lmax;
+        private final int mean;
+        private final int std;
+        private final long recordCount;
+        private long recordPos = HEADER_SIZE;
+        private long namePos;
+        private long index;
+        private byte[] nameBytes = new byte[64];
+
+
+        MappedReader( File file ) throws IOException {
+            this.file = new RandomAccessFile( file, "r" );
+            try {
+                FileChannel channel = this.file.getChannel();
+                ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+                while( header.hasRemaining() ) {
+                    if( channel.read( header, header.position() ) < 0 ) {
+                        throw new IOException( file + " is no binary ESP file." );
+                    }
+                }
+                header.flip();
+                byte[] magic = new byte[MAGIC.length];
+                header.get( magic );
+                if( !Arrays.equals( magic, MAGIC ) ) {
+                    throw new IOException( file + " is no binary ESP file." );
+                }
+                int version = header.getInt();
+                if( version != VERSION ) {
+                    throw new IOException( file + " has the unsupported binary ESP version " + version + "." );
+                }
+                lmin = header.getInt();
+                lmax = header.getInt();
+                mean = header.getInt();
+                std = header.getInt();
+                recordCount = header.getLong();
+                namePos = HEADER_SIZE + recordCount * RECORD_SIZE;
+                recordWindow = new MappedWindow( channel, namePos );
+                nameWindow = new MappedWindow( channel, channel.size() );
+            } catch( IOException | RuntimeException e ) {
+                this.file.close();
+                throw e;
+            }
+        }
+
+
+        @Override
+        public boolean next() throws IOException {
+            if( index >= recordCount ) {
+                return false;
+            }
+            ByteBuffer records = recordWindow.at( recordPos, RECORD_SIZE );
+            int chr1 = records.getInt();
+            int start1 = records.getInt();
+            int end1 = records.getInt();
+            int chr2 = records.getInt();
+            int start2 = records.getInt();
+            int end2 = records.getInt();
+            byte orientations = records.get();
+            recordPos += RECORD_SIZE;
+
+            int nameLength = nameWindow.at( namePos, Short.BYTES ).getShort() & MAX_NAME_LENGTH;
+            if( nameLength > nameBytes.length ) {
+                nameBytes = new byte[nameLength];
+            }
+            nameWindow.at( namePos + Short.BYTES, nameLength ).get( nameBytes, 0, nameLength );
+            namePos += Short.BYTES + nameLength;
+
+            set( new String( nameBytes, 0, nameLength, StandardCharsets.UTF_8 ),
+                 chr1, start1, end1, chr2, start2, end2, orientations );
+            ++index;
+            return true;
+        }
+
+
+        @Override
+        public long getRecordCount() {
+            return recordCount;
+        }
+
+
+        @Override
+        public int getLmin() {
+            return lmin;
+        }
+
+
+        @Override
+        public int getLmax() {
+            return lmax;
+        }
+
+
+        @Override
+        public int getMean() {
+            return mean;
+        }
+
+
+        @Override
+        public int getStd() {
+            return std;
+        }
+
+
+        @Override
+        public void close() throws IOException {
+            index = recordCount;
+            recordWindow.release();
+            nameWindow.release();
+            file.close();
+        }
+
+
+    }
+
+
+    /**
+     * A read only memory mapping of a part of a file, which is moved along
+     * the file on demand.
+     */
+    private static class MappedWindow {
+
+        private final FileChannel channel;
+        private final long end;
+        private MappedByteBuffer buffer;
+        private long start;
+
+
+        MappedWindow( FileChannel channel, long end ) {
+            this.channel = channel;
+            this.end = end;
+        }
+
+
+        /**
+         * @return The mapped buffer positioned at the given file position with
+         *         at least length remaining bytes.
+         */
+        ByteBuffer at( long pos, int length ) throws IOException {
+            if( buffer == null || pos < start || pos + length > start + buffer.capacity() ) {
+                long size = Math.min( MAX_MAPPING_SIZE, end - pos );
+                if( size < length ) {
+                    throw new EOFException( "Binary ESP file is truncated." );
+                }
+                buffer = channel.map( FileChannel.MapMode.READ_ONLY, pos, size );
+                start = pos;
+            }
+            buffer.position( (int) (pos - start) );
+            return buffer;
+        }
+
+
+        void release() {
+            buffer = null;
+        }
+
+
+    }
+
+
+}
@@ -0,0 +1,374 @@
+/**
+ * Copyright 2010 Benjamin Raphael, Suzanne Sindi, Hsin-Ta Wu, Anna Ritz, Luke
+ * Peng
+ * <p>
+ * This file is part of gasv.
+ * <p>
+ * gasv is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * <p>
+ * gasv is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * gasv. If not, see <http://www.gnu.org/licenses/>.
+ * <p>
+ */
+package gasv.common;
+
+import java.util.Arrays;
+
+
+/**
+ * A growable, columnar buffer of ESPs (paired reads). Each field of an ESP is
+ * stored in its own primitive array, so that buffering and sorting millions of
+ * ESPs neither creates a String per line nor parses numbers for every
+ * comparison. The buffer also carries the statistics of the library the ESPs
+ * belong to.
+ */
+public class ESPRecords {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private int size;
+    private String[] names;
+    private int[] chr1;
+    private int[] start1;
+    private int[] end1;
+    private int[] chr2;
+    private int[] start2;
+    private int[] end2;
+    private byte[] orientations;
+
+    private int lmin;
+    private int lmax;
+    private int mean;
+    private int std;
+
+
+    /**
+     * A growable, columnar buffer of ESPs.
+     */
+    public ESPRecords() {
+        this( INITIAL_CAPACITY );
+    }
+
+
+    /**
+     * A growable, columnar buffer of ESPs.
+     * <p>
+     * @param capacity the initial number of ESPs the buffer can hold
+     */
+    public ESPRecords( int capacity ) {
+        capacity = Math.max( capacity, 1 );
+        names = new String[capacity];
+        chr1 = new int[capacity];
+        start1 = new int[capacity];
+        end1 = new int[capacity];
+        chr2 = new int[capacity];
+        start2 = new int[capacity];
+        end2 = new int[capacity];
+        orientations = new byte[capacity];
+    }
+
+
+    /**
+     * Appends an ESP to the buffer.
+     * <p>
+     * @param name   name of the read pair
+     * @param chr1   chromosome of the first read
+     * @param start1 start of the first read
+     * @param end1   end of the first read
+     * @param ori1   orientation of the first read, '+' or '-'
+     * @param chr2   chromosome of the second read
+     * @param start2 start of the second read
+     * @param end2   end of the second read
+     * @param ori2   orientation of the second read, '+' or '-'
+     */
+    public void add( String name, int chr1, int start1, int end1, char ori1,
+                     int chr2, int start2, int end2, char ori2 ) {
+        add( name, chr1, start1, end1, chr2, start2, end2, toFlags( ori1, ori2 ) );
+    }
+
+
+    void add( String name, int chr1, int start1, int end1, int chr2, int start2, int end2, byte orientation ) {
+        if( size == names.length ) {
+            grow();
+        }
+        this.names[size] = name;
+        this.chr1[size] = chr1;
+        this.start1[size] = start1;
+        this.end1[size] = end1;
+        this.chr2[size] = chr2;
+        this.start2[size] = start2;
+        this.end2[size] = end2;
+        this.orientations[size] = orientation;
+        ++size;
+    }
+
+
+    /**
+     * @return The number of ESPs in the buffer.
+     */
+    public int size() {
+        return size;
+    }
+
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+
+    /**
+     * Sets the statistics of the library the ESPs belong to.
+     * <p>
+     * @param lmin minimum fragment length of the library
+     * @param lmax maximum fragment length of the library
+     * @param mean mean fragment length of the library
+     * @param std  standard deviation of the fragment length of the library
+     */
+    public void setLibraryStats( int lmin, int lmax, int mean, int std ) {
+        this.lmin = lmin;
+        this.lmax = lmax;
+        this.mean = mean;
+        this.std = std;
+    }
+
+
+    public int getLmin() {
+        return lmin;
+    }
+
+
+    public int getLmax() {
+        return lmax;
+    }
+
+
+    public int getMean() {
+        return mean;
+    }
+
+
+    public int getStd() {
+        return std;
+    }
+
+
+    /**
+     * Sorts the ESPs in the GASV order: by the chromosome of the first read,
+     * the chromosome of the second read, the leftmost position of the first
+     * read and the leftmost position of the second read. A read on the minus
+     * strand starts with its end coordinate. The sort is stable, ESPs with equal
+     * keys keep their insertion order.
+     */
+    public void sort() {
+        int[] order = new int[size];
+        for( int i = 0; i < size; ++i ) {
+            order[i] = i;
+        }
+        mergeSort( order, new int[size], 0, size );
+
+        String[] sortedNames = new String[names.length];
+        int[] sortedChr1 = new int[names.length];
+        int[] sortedStart1 = new int[names.length];
+        int[] sortedEnd1 = new int[names.length];
+        int[] sortedChr2 = new int[names.length];
+        int[] sortedStart2 = new int[names.length];
+        int[] sortedEnd2 = new int[names.length];
+        byte[] sortedOrientations = new byte[names.length];
+        for( int i = 0; i < size; ++i ) {
+            int index = order[i];
+            sortedNames[i] = names[index];
+            sortedChr1[i] = chr1[index];
+            sortedStart1[i] = start1[index];
+            sortedEnd1[i] = end1[index];
+            sortedChr2[i] = chr2[index];
+            sortedStart2[i] = start2[index];
+            sortedEnd2[i] = end2[index];
+            sortedOrientations[i] = orientations[index];
+        }
+        names = sortedNames;
+        chr1 = sortedChr1;
+        start1 = sortedStart1;
+        end1 = sortedEnd1;
+        chr2 = sortedChr2;
+        start2 = sortedStart2;
+        end2 = sortedEnd2;
+        orientations = sortedOrientations;
+    }
+
+
+    /**
+     * @return A reader iterating the ESPs of this buffer in their current
+     *         order.
+     */
+    public BinaryESP.Reader reader() {
+        return new RecordsReader();
+    }
+
+
+    /**
+     * Compares the sort keys of two ESPs in the GASV order.
+     * <p>
+     * @return A negative value, if ESP a has to be sorted before ESP b, a
+     *         positive value, if it has to be sorted after ESP b and 0
+     *         otherwise.
+     */
+    static int compare( int chr1A, int chr2A, int pos1A, int pos2A, int chr1B, int chr2B, int pos1B, int pos2B ) {
+        int cmp = Integer.compare( chr1A, chr1B );
+        if( cmp == 0 ) {
+            cmp = Integer.compare( chr2A, chr2B );
+        }
+        if( cmp == 0 ) {
+            cmp = Integer.compare( pos1A, pos1B );
+        }
+        if( cmp == 0 ) {
+            cmp = Integer.compare( pos2A, pos2B );
+        }
+        return cmp;
+    }
+
+
+    static byte toFlags( char ori1, char ori2 ) {
+        byte flags = 0;
+        if( ori1 == '-' ) {
+            flags |= BinaryESP.MINUS_1;
+        }
+        if( ori2 == '-' ) {
+            flags |= BinaryESP.MINUS_2;
+        }
+        return flags;
+    }
+
+
+    private int compare( int a, int b ) {
+        return compare( chr1[a], chr2[a], sortPos1( a ), sortPos2( a ),
+                        chr1[b], chr2[b], sortPos1( b ), sortPos2( b ) );
+    }
+
+
+    private int sortPos1( int index ) {
+        return (orientations[index] & BinaryESP.MINUS_1) != 0 ? end1[index] : start1[index];
+    }
+
+
+    private int sortPos2( int index ) {
+        return (orientations[index] & BinaryESP.MINUS_2) != 0 ? end2[index] : start2[index];
+    }
+
+
+    /**
+     * Stable merge sort of the index range [from, to) of the given order.
+     */
+    private void mergeSort( int[] order, int[] tmp, int from, int to ) {
+        if( to - from <= INSERTION_SORT_THRESHOLD ) {
+            for( int i = from + 1; i < to; ++i ) {
+                int index = order[i];
+                int j = i - 1;
+                while( j >= from && compare( order[j], index ) > 0 ) {
+                    order[j + 1] = order[j];
+                    --j;
+                }
+                order[j + 1] = index;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort( order, tmp, from, middle );
+        mergeSort( order, tmp, middle, to );
+        if( compare( order[middle - 1], order[middle] ) <= 0 ) {
+            return; //already in order
+        }
+        System.arraycopy( order, from, tmp, from, to - from );
+        int left = from;
+        int right = middle;
+        for( int i = from; i < to; ++i ) {
+            if( right >= to || (left < middle && compare( tmp[left], tmp[right] ) <= 0) ) {
+                order[i] = tmp[left++];
+            } else {
+                order[i] = tmp[right++];
+            }
+        }
+    }
+
+
+    private void grow() {
+        int capacity = names.length + (names.length >> 1) + 1;
+        names = Arrays.copyOf( names, capacity );
+        chr1 = Arrays.copyOf( chr1, capacity );
+        start1 = Arrays.copyOf( start1, capacity );
+        end1 = Arrays.copyOf( end1, capacity );
+        chr2 = Arrays.copyOf( chr2, capacity );
+        start2 = Arrays.copyOf( start2, capacity );
+        end2 = Arrays.copyOf( end2, capacity );
+        orientations = Arrays.copyOf( orientations, capacity );
+    }
+
+
+    /**
+     * Iterates the ESPs of the buffer.
+     */
+    private class RecordsReader extends BinaryESP.Reader {
+
+        private int index = -1;
+
+
+        @Override
+        public boolean next() {
+            if( index + 1 >= size ) {
+                index = size;
+                return false;
+            }
+            ++index;
+            set( names[index], chr1[index], start1[index], end1[index],
+                 chr2[index], start2[index], end2[index], orientations[index] );
+            return true;
+        }
+
+
+        @Override
+        public long getRecordCount() {
+            return size;
+        }
+
+
+        @Override
+        public int getLmin() {
+            return lmin;
+        }
+
+
+        @Override
+        public int getLmax() {
+            return lmax;
+        }
+
+
+        @Override
+        public int getMean() {
+            return mean;
+        }
+
+
+        @Override
+        public int getStd() {
+            return std;
+        }
+
+
+        @Override
+        public void close() {
+            index = size;
+        }
+
+
+    }
+
+
+}
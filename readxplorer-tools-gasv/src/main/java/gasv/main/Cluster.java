@@ -44,9 +44,10 @@ public class Cluster {
     private double leftMostX_ = Double.MAX_VALUE;
     private double topMostY_ = -1;
     private double bottomMostY_ = Double.MAX_VALUE;
+    private final GASVOptions options;
 
 
-    public Cluster( int chrx, int chry ) {
+    public Cluster( int chrx, int chry, GASVOptions options ) {
         clones_ = new ArrayList<>();
         //intersect = inter;
         intersect_ = null;
@@ -54,6 +55,7 @@ public class Cluster {
         isClique_ = false;
         chrx_ = chrx;
         chry_ = chry;
+        this.options = options;
     }
 
 
@@ -174,9 +176,9 @@ public class Cluster {
         String toReturn = "";
         int size = clones_.size();
         //if more than MAX_CLIQUE_SIZE
-        if( size > GASVMain.MAX_CLIQUE_SIZE ) {
+        if( size > options.maxCliqueSize ) {
             Out.print2( "clonesToString(): only returning MAX_CLIQUE_SIZE clones in string." );
-            size = GASVMain.MAX_CLIQUE_SIZE;
+            size = options.maxCliqueSize;
         }
         for( int i = 0; i < size; ++i ) {
             toReturn += clones_.get( i ).getName();
@@ -192,9 +194,9 @@ public class Cluster {
         String toReturn = "";
         int size = clones_.size();
         //if more than MAX_CLIQUE_SIZE
-        if( size > GASVMain.MAX_CLIQUE_SIZE ) {
+        if( size > options.maxCliqueSize ) {
             Out.print2( "clonesToString(): only returning MAX_CLIQUE_SIZE clones in string." );
-            size = GASVMain.MAX_CLIQUE_SIZE;
+            size = options.maxCliqueSize;
         }
         for( int i = 0; i < size; ++i ) {
             toReturn += clones_.get( i ).getName();
@@ -277,8 +279,8 @@ public class Cluster {
             double cloneY = curClone.getY();
 			//int xLen = curClone.getXLen();
             //int yLen = curClone.getYLen();
-            int xLen = GASVMain.READ_LENGTH;
-            int yLen = GASVMain.READ_LENGTH;
+            int xLen = options.readLength;
+            int yLen = options.readLength;
             double xStart, yStart, xEnd, yEnd;
             if( cloneX < 0 ) {
                 xEnd = Math.abs( cloneX );
@@ -328,9 +330,9 @@ public class Cluster {
 
     public void findMaximalClusters( List<Cluster> maximalList ) {
 
-        if( clones_.size() > GASVMain.MAX_CLIQUE_SIZE ) {
+        if( clones_.size() > options.maxCliqueSize ) {
             Out.print2( "Cluster of size " + clones_.size() + " exceeds --maxCliqueSize " +
-                     GASVMain.MAX_CLIQUE_SIZE + " so skip finding maximal clusters in it" );
+                     options.maxCliqueSize + " so skip finding maximal clusters in it" );
             return;
 
         }
@@ -566,25 +568,25 @@ public class Cluster {
             Clone curClone = clones.get( i );
             if( cloneIsInRect( curClone, upperLeftRect ) ) {
                 if( upperLeft == null ) {
-                    upperLeft = new Cluster( chrx, chry );
+                    upperLeft = new Cluster( chrx, chry, node.cluster.options );
                 }
                 upperLeft.addClone( curClone );
             }
             if( cloneIsInRect( curClone, upperRightRect ) ) {
                 if( upperRight == null ) {
-                    upperRight = new Cluster( chrx, chry );
+                    upperRight = new Cluster( chrx, chry, node.cluster.options );
                 }
                 upperRight.addClone( curClone );
             }
             if( cloneIsInRect( curClone, lowerLeftRect ) ) {
                 if( lowerLeft == null ) {
-                    lowerLeft = new Cluster( chrx, chry );
+                    lowerLeft = new Cluster( chrx, chry, node.cluster.options );
                 }
                 lowerLeft.addClone( curClone );
             }
             if( cloneIsInRect( curClone, lowerRightRect ) ) {
                 if( lowerRight == null ) {
-                    lowerRight = new Cluster( chrx, chry );
+                    lowerRight = new Cluster( chrx, chry, node.cluster.options );
                 }
                 lowerRight.addClone( curClone );
             }
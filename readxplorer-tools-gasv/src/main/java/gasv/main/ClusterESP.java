@@ -1,4 +1,3 @@
-
 /**
  * Copyright 2010 Benjamin Raphael, Suzanne Sindi, Hsin-Ta Wu, Anna Ritz, Luke
  * Peng
@@ -28,23 +27,40 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.text.DecimalFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
 
 
 /**
  * Class: ClusterESP
  * <p>
+ * Clusters the ESPs of all chromosome pairs. The ESPs of each chromosome pair
+ * and orientation form an independent {@link ClusterESPPartition}, so the
+ * partitions are clustered in parallel on a fork-join pool, while the input
+ * is still read sequentially. The clusters are written in the order of the
+ * input, so the output does not depend on the number of threads. An instance
+ * holds the state of a single run, so several runs can use separate
+ * instances.
  */
 public class ClusterESP {
 
@@ -52,23 +68,10 @@ public class ClusterESP {
     private static final String ESP_HEAD_STD = "#Cluster_ID:\tLeftChr:\tLeftBreakPoint:\tRightChr:\tRightBreakPoint:\tNum PRS:\tLocalization:\tType:";
     private static final String ESP_HEAD_READS = "#Cluster_ID:\tLeftChr:\tLeftBreakPoint:\tRightChr:\tRightBreakPoint:\tNum PRS:\tLocalization:\tType:\tList of PRS:";
     private static final String ESP_HEAD_REGIONS = "#Cluster_ID:\tNum PRS:\tLocalization:\tType:\tList of PRS:\t LeftChr:\tRightChr:\tBoundary Points:";
-    private static RandomAccessFile tmpFile = null;
-    private static List<BreakRegion> cLocal = new ArrayList<>();
-
-    //Printing at most one decimal point.
-    private static DecimalFormat df_ = new DecimalFormat( "#.#" );
-
-    private static List<Clone> cloneList_ = new ArrayList<>();
-    private static int CLUSTER_NUMBER = 1;
-    private static int CGH_NUMBER = 1;
-    private static BufferedWriter clusterWriter_ = null;
-    private static double sameRightMostTrapEnd_ = 0;
-    private static double samePrevRightMostTrapEnd_ = 0;
-    private static double diffRightMostTrapEnd_ = 0;
-    private static double diffPrevRightMostTrapEnd_ = 0;
-    private static int LABEL = -1;
-    private static int chrx = -1;
-    private static int chry = -1;
+
+    //Printing at most one decimal point. DecimalFormat is not thread safe.
+    private static final ThreadLocal<DecimalFormat> df_ = ThreadLocal.withInitial( () -> new DecimalFormat( "#.#" ) );
+
     private static final String cghHeaderLine = "#CGH_ID:\t            Chr1: \tChr2:\t " +
              "Num Clusters:\t Cluster List (ClusterID" +
              Constants.SEP + "NumPES" + Constants.SEP + "Localization" + Constants.SEP +
@@ -76,13 +79,40 @@ public class ClusterESP {
              Constants.SEP + "Boundary Points)\n";
     private static final String SAME = "same";
     private static final String DIFFERENT = "different";
-    private static final String TMPFILENAME = Constants.GASV_TMP_NAME + "." + System.currentTimeMillis() +
-             java.lang.management.ManagementFactory.getRuntimeMXBean().getName();
-    private static final CloneComparator COMPARATOR = new CloneComparator();
 
-    // values used for saving previous window state
-    private static List<Cluster> sameClusterList = null;
-    private static List<Cluster> diffClusterList = null;
+    /** Number of windows per thread, which may be clustered at the same time. */
+    private static final int WINDOWS_PER_THREAD = 4;
+
+    private final GASVOptions options;
+    private final ForkJoinPool pool;
+    private final Semaphore windowPermits;
+    private BufferedWriter clusterWriter_ = null;
+    private int clusterNumber = 1;
+    private int cghNumber = 1;
+
+
+    /**
+     * Clusters the ESPs of all chromosome pairs on the common fork-join pool.
+     * <p>
+     * @param options options of this GASV run
+     */
+    public ClusterESP( GASVOptions options ) {
+        this( options, ForkJoinPool.commonPool() );
+    }
+
+
+    /**
+     * Clusters the ESPs of all chromosome pairs on the given fork-join pool.
+     * <p>
+     * @param options options of this GASV run
+     * @param pool    pool on which the chromosome pairs and orientations are
+     *                clustered
+     */
+    public ClusterESP( GASVOptions options, ForkJoinPool pool ) {
+        this.options = options;
+        this.pool = pool;
+        this.windowPermits = new Semaphore( WINDOWS_PER_THREAD * pool.getParallelism() );
+    }
 
 
     public static LinkedList<int[]> polyToList( Poly p ) {
@@ -336,7 +366,7 @@ public class ClusterESP {
     }
 
 
-    public static boolean clique( Cluster cluster ) {
+    public static boolean clique( Cluster cluster, boolean noReciprocalMode ) {
 
         List<Clone> clusterClones = cluster.getClones();
         int size = clusterClones.size();
@@ -351,7 +381,7 @@ public class ClusterESP {
             overlaps[i]++;
             for( int j = i + 1; j < size; ++j ) {
                 Clone clone2 = clusterClones.get( j );
-                if( GASVMain.overlap( clone, clone2 ) > 0 ) {
+                if( GASVMain.overlap( clone, clone2, noReciprocalMode ) > 0 ) {
 					//clone.setNumOverlaps(clone.getNumOverlaps() +1);
                     //clone2.setNumOverlaps(clone2.getNumOverlaps() +1);
                     overlaps[i]++;
@@ -375,7 +405,7 @@ public class ClusterESP {
     }
 
 
-    public static void clusterESP( String fileName ) throws IOException, CloneNotSupportedException, NullPointerException {
+    public void clusterESP( String fileName ) throws IOException {
 
         String fileNameMinusPath = fileName;
         int idxOfSlash = fileName.lastIndexOf( '/' );
@@ -383,7 +413,50 @@ public class ClusterESP {
             fileNameMinusPath = fileName.substring( idxOfSlash + 1 );
         }
 
-        String cluster = GASVMain.OUTPUT_DIR + fileNameMinusPath + ".clusters";
+        String cluster = options.outputDir + fileNameMinusPath + ".clusters";
+
+        File clusterFile = new File( cluster );
+        if( clusterFile.exists() ) {
+            clusterFile.delete();
+        }
+        clusterWriter_ = new BufferedWriter( new FileWriter( clusterFile ) );
+
+        try {
+            if( options.useHeader ) {
+                String headerLine = ESP_HEAD_STD;
+                if( options.outMode == GASVMain.GASV_OUTPUT_MODE.STANDARD ) {
+                    headerLine = ESP_HEAD_STD;
+                } else if( options.outMode == GASVMain.GASV_OUTPUT_MODE.READS ) {
+                    headerLine = ESP_HEAD_READS;
+                } else if( options.outMode == GASVMain.GASV_OUTPUT_MODE.REGIONS ) {
+                    headerLine = ESP_HEAD_REGIONS;
+                }
+                headerLine += "\n";
+                clusterWriter_.write( headerLine );
+            }
+
+            // pass false to indicate we're not finding split reads
+            clusterAndWrite( fileName, false );
+        } finally {
+            clusterWriter_.close();
+        }
+    }
+
+
+    /**
+     * Find all clusters as usual. Then for each cluster, output any candidate
+     * split reads (i.e. those reads of the cluster that contain the entire max
+     * intersection region
+     */
+    public void clusterESPAndFindSplitReads( String espFilename )
+            throws IOException {
+        String fileNameMinusPath = espFilename;
+        int idxOfSlash = espFilename.lastIndexOf( "/" );
+        if( idxOfSlash != -1 ) {
+            fileNameMinusPath = espFilename.substring( idxOfSlash + 1 );
+        }
+
+        String cluster = options.outputDir + fileNameMinusPath + ".clusters";
 
         File clusterFile = new File( cluster );
         if( clusterFile.exists() ) {
@@ -391,34 +464,59 @@ public class ClusterESP {
         }
         clusterWriter_ = new BufferedWriter( new FileWriter( clusterFile ) );
 
-        if( GASVMain.USE_HEADER ) {
-            String headerLine = ESP_HEAD_STD;
-            if( GASVMain.OUT_MODE == GASVMain.GASV_OUTPUT_MODE.STANDARD ) {
-                headerLine = ESP_HEAD_STD;
-            } else if( GASVMain.OUT_MODE == GASVMain.GASV_OUTPUT_MODE.READS ) {
-                headerLine = ESP_HEAD_READS;
-            } else if( GASVMain.OUT_MODE == GASVMain.GASV_OUTPUT_MODE.REGIONS ) {
-                headerLine = ESP_HEAD_REGIONS;
+        try {
+            if( options.useHeader ) {
+                String headerLine = ESP_HEAD_STD + "\tCandidate Split Reads:";
+                if( options.outMode == GASVMain.GASV_OUTPUT_MODE.STANDARD ) {
+                    headerLine = ESP_HEAD_STD + "\tCandidate Split Reads:";
+                } else if( options.outMode == GASVMain.GASV_OUTPUT_MODE.READS ) {
+                    headerLine = ESP_HEAD_READS + "\tCandidate Split Reads:";
+                } else if( options.outMode == GASVMain.GASV_OUTPUT_MODE.REGIONS ) {
+                    headerLine = ESP_HEAD_REGIONS + "\tCandidate Split Reads:";
+                }
+                headerLine += "\n";
+                clusterWriter_.write( headerLine );
             }
-            headerLine += "\n";
-            clusterWriter_.write( headerLine );
+
+            // pass true to indicate that we are also computing candidate split reads
+            clusterAndWrite( espFilename, true );
+        } finally {
+            clusterWriter_.close();
         }
+    }
+
 
-        boolean useFast = GASVMain.USE_FAST;
-        boolean useBatch = GASVMain.USE_BATCH;
+    /**
+     * Reads the ESPs of all chromosome pairs window by window and clusters
+     * each window on the pool. Each chromosome pair and orientation is a
+     * separate partition, whose windows are clustered in the order they are
+     * read. The clusters are written to the cluster writer in the same order
+     * as by a sequential run: For each window first the clusters of the same
+     * orientation, then the ones of different orientation.
+     * <p>
+     * @param espFilename    the ESP file or batch file to read
+     * @param findSplitReads <code>true</code>, if the candidate split reads of
+     *                       each cluster shall be written
+     * <p>
+     * @throws IOException
+     */
+    private void clusterAndWrite( String espFilename, boolean findSplitReads ) throws IOException {
 
-        ReadInput readInput = new ReadInput( fileName );
+        boolean useFast = options.useFast;
+        boolean useBatch = options.useBatch;
 
-        ArrayList<BreakRegion>[][] breakRegions = null;
-        int lmin = GASVMain.LMIN;
-        int lmax = GASVMain.LMAX;
+        ReadInput readInput = new ReadInput( espFilename, options );
 
-        boolean saveMemory = GASVMain.SAVE_MEMORY;
+        List<BreakRegion>[][] breakRegions = null;
+        int lmin = options.lmin;
+        int lmax = options.lmax;
+
+        boolean saveMemory = options.saveMemory;
         boolean fileDone = false;
 
         //in fast mode, read PES from all chromosomes into memory at once
         if( useFast ) {
-            breakRegions = new ArrayList[GASVMain.NUM_CHROM][GASVMain.NUM_CHROM];
+            breakRegions = new List[options.numChrom][options.numChrom];
             if( useBatch ) {
                 readInput.readFiles( breakRegions );
             } else {
@@ -427,17 +525,19 @@ public class ClusterESP {
             fileDone = true;
         }
 
+        // chromosome pairs, whose clusters are not completely written yet, in input order
+        Deque<PairClustering> pendingPairs = new ArrayDeque<>();
 
-        for( int i = 0; i < GASVMain.NUM_CHROM; i++ ) {
-            for( int j = i; j < GASVMain.NUM_CHROM; j++ ) {
-                chrx = i + 1;
-                chry = j + 1;
+        pairLoop:
+        for( int i = 0; i < options.numChrom; i++ ) {
+            for( int j = i; j < options.numChrom; j++ ) {
+                int chrx = i + 1;
+                int chry = j + 1;
+                PairClustering pair = new PairClustering( chrx, chry, findSplitReads );
+                pendingPairs.add( pair );
 
                 List<BreakRegion> c = null;
                 Out.print1( "ClusterESP: processing chr " + chrx + ", chr" + chry );
-				//if (fileDone) {
-                //	Out.print1("ClusterESP: fileDone, shouldn't keep going...");
-                //}
                 do {
                     if( useFast ) {
                         c = breakRegions[i][j];
@@ -464,31 +564,16 @@ public class ClusterESP {
                         }
                     }
 
-					//check each cluster in (i) to see if it is within Lmax of
-                    //the right-most cluster in i-1.  If so, check for actual overlap
-                    //with clusters in (i-1) and remove any (i-1) clusters that overlap it.
-                    //At the end of iteration i, output any remaining clusters from (i-1).
-
-                    if( c != null ) {
-                        if( !c.isEmpty() ) {
-                            Out.print2( "ClusterESP: Loaded " + c.size() +
-                                     " Break Regions for chr" +
-                                     chrx + ", chr" + chry );
-                        }
-
-						//first go in forward direction
-                        // pass false to indicate we're not finding split reads
-                        clusterHelper( c, SAME, false );
-
-                        //NOW GOING THROUGH THE REVERSE DIRECTION!
-                        clusterHelper( c, DIFFERENT, false );
+                    if( c != null && !c.isEmpty() ) {
+                        Out.print2( "ClusterESP: Loaded " + c.size() +
+                                 " Break Regions for chr" +
+                                 chrx + ", chr" + chry );
+                    }
 
-                        c.clear();
-                    }//End c!= Null
-                    samePrevRightMostTrapEnd_ = sameRightMostTrapEnd_;
-                    diffPrevRightMostTrapEnd_ = diffRightMostTrapEnd_;
-                    sameRightMostTrapEnd_ = 0;
-                    diffRightMostTrapEnd_ = 0;
+                    //bound the number of windows in memory, while the pool is busy
+                    acquireWindowPermit();
+                    pair.submitWindow( c );
+                    writeFinishedClusters( pendingPairs, false );
                 } while( saveMemory && !fileDone &&
                          !readInput.getDiffChrPairReached() );
 
@@ -498,350 +583,347 @@ public class ClusterESP {
                 // ensure that no duplicates are found
                 // In the --fast case, only one giant window, so this final
                 // write will actually do all the work of writing everying.
-                writeClusters( SAME );
-                writeClusters( DIFFERENT );
-                if( fileDone ) {
-                    clusterWriter_.flush();
-                    clusterWriter_.close();
-                    return;
-                }
-
-                //reset prev window variables to initial values
-                sameClusterList = null;
-                diffClusterList = null;
+                pair.finish();
 
+                // if no more ESP's, stop looking. In --fast mode all pairs are in memory already.
+                if( fileDone && !useFast ) {
+                    break pairLoop;
+                }
             }//End j;
         }//End i;
+
+        writeFinishedClusters( pendingPairs, true );
+        clusterWriter_.flush();
+
         if( !fileDone ) {
             Out.print( "Warning: Finished looping through all possible Chr combinations, but did not finish the file." +
                      " It's likely input files were not sorted correctly." );
         }
-        clusterWriter_.flush();
-        clusterWriter_.close();
+    }
+
 
+    /**
+     * Blocks until less than the maximum number of windows are clustered at
+     * the same time.
+     * <p>
+     * @throws InterruptedIOException if the thread was interrupted while
+     *                                waiting
+     */
+    private void acquireWindowPermit() throws InterruptedIOException {
+        try {
+            windowPermits.acquire();
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "GASV clustering was interrupted." );
+        }
     }
 
 
     /**
-     * This is the version of clusterHelper to use if just want to do clustering
-     * of ESP's (no CGH data) This version will write out the clusters to file
+     * Writes the clusters of the pending chromosome pairs in input order and
+     * removes all completely written pairs.
+     * <p>
+     * @param pendingPairs chromosome pairs whose clusters are not completely
+     *                     written yet, in input order
+     * @param waitForAll   <code>true</code> to wait until all clusters are
+     *                     written, <code>false</code> to write only those
+     *                     clusters which are ready and don't have to wait for
+     *                     clusters before them
+     * <p>
+     * @throws IOException
      */
-    private static void clusterHelper( List<BreakRegion> c, String directionString, boolean findSplitReads )
-            throws IOException {
-        clusterHelper( c, directionString, null, null, null, findSplitReads );
+    private void writeFinishedClusters( Deque<PairClustering> pendingPairs, boolean waitForAll ) throws IOException {
+        while( !pendingPairs.isEmpty() ) {
+            PairClustering pair = pendingPairs.peekFirst();
+            Deque<CompletableFuture<List<ClusterGroup>>> outputs = pair.getOutputs();
+            while( !outputs.isEmpty() && (waitForAll || outputs.peekFirst().isDone()) ) {
+                for( ClusterGroup group : joinOutput( outputs.pollFirst() ) ) {
+                    writeClusterGroup( group );
+                }
+            }
+            if( !pair.isFinished() || !outputs.isEmpty() ) {
+                return;
+            }
+            pendingPairs.pollFirst();
+        }
     }
 
 
     /**
-     * This is the version of clusterHelper to use if just want to do clustering
-     * of ESP's along with CGH data. This version won't write anything to file,
-     * just store the cgh and cluster overlaps in the appropriate HashMap's.
+     * Waits for the clusters of a window.
+     * <p>
+     * @param output clusters of a window, rendered on the pool
+     * <p>
+     * @return The rendered clusters of the window
+     * <p>
+     * @throws IOException if the clustering failed
      */
-    private static void clusterHelper( List<BreakRegion> c, String directionString,
-                                       Map<BreakRegion, List<Cluster>> cghxMap,
-                                       Map<BreakRegion, List<Cluster>> cghyMap,
-                                       Map<BreakRegion, List<Cluster>> cghPairMap,
-                                       boolean findSplitReads )
-            throws IOException {
+    private static List<ClusterGroup> joinOutput( CompletableFuture<List<ClusterGroup>> output ) throws IOException {
+        try {
+            return output.join();
+        } catch( CompletionException e ) {
+            Throwable cause = e.getCause();
+            if( cause instanceof UncheckedIOException ) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            } else if( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new IOException( cause );
+        }
+    }
 
-        /* if (c.size() > 1000) { Out.print2("clusterHelper() benchmarking for "
-         * + c.size() + " clones in direction " + directionString + ": at start
-         * of clusterHelper, time: " + System.currentTimeMillis());
-		} */
-        int numClones = 0;
-        cloneList_.clear();
-
-		//if any of the current Clones in c overlap with previous clusters, remove those previous
-        //clusters (before they get written out), and add the associated clones instead to the
-        //current list, c.
-        checkForOverlapsWithPrevClusters( c, directionString );
-
-        /* if (c.size() > 1000) { Out.print2("clusterHelper() benchmarking for "
-         * + c.size() + " clones in direction " + directionString + ": after
-         * checking for overlaps with prev, time: " +
-         * System.currentTimeMillis()); }
-         */
 
-		//will be removing items from c within this loop, so c.size() will decrease, but we're adjusting
-        // the counter variable 'k' within the loop to account for this
-        for( int k = 0; k < c.size(); k++ ) {
-            Clone c1 = (Clone) c.get( k );
-            if( c1.getType().equals( directionString ) ) {
-				//Will process it and forget it, so to save some memroy,
-                // remove from c and decrement the counter
-                c.remove( k );
-                k--;
-
-				//keep track of the right most trapezoid boundary for this window
-                // If read start was negative (leftward oriented), then just change to positive
-                // But if read was positive the end of its trap would actually be the value + LMAX
-                // In case there are multiple lmax values specified for different files,
-                //	use the max lmax to be safe
-                double rightMostX = c1.getX();
-                if( rightMostX < 0 ) {
-                    rightMostX = -rightMostX;
-                } else {
-                    rightMostX += GASVMain.MAX_LMAX;
-                }
-                if( directionString.equals( SAME ) &&
-                         (rightMostX > sameRightMostTrapEnd_) ) {
-                    sameRightMostTrapEnd_ = rightMostX;
-                } else if( directionString.equals( DIFFERENT ) &&
-                         (rightMostX > diffRightMostTrapEnd_) ) {
-                    diffRightMostTrapEnd_ = rightMostX;
-                }
+    /**
+     * Writes a top-level cluster and its maximal subclusters. The clusters are
+     * numbered here to keep the numbering of a sequential run.
+     * <p>
+     * @param group a rendered top-level cluster
+     * <p>
+     * @throws IOException
+     */
+    private void writeClusterGroup( ClusterGroup group ) throws IOException {
+        //Write out the cluster number and increment:
+        if( group.getMainCluster() != null ) {
+            clusterWriter_.write( "c" + clusterNumber + "\t" + group.getMainCluster() );
+        }
+        List<String> subClusters = group.getSubClusters();
+        for( int subClusterNum = 0; subClusterNum < subClusters.size(); ++subClusterNum ) {
+            clusterWriter_.write( "c" + clusterNumber + "." + subClusterNum + "\t" + subClusters.get( subClusterNum ) );
+        }
+        clusterNumber++;
+    }
 
-				//need to make sure that any old clustering information (if carried over from a previous window)
-                // is cleared!!!
-                c1.setClusterID( -1 );
 
+    /**
+     * Renders the finished clusters of a window. The cluster names are added
+     * when writing them.
+     * <p>
+     * @param curClusterList finished clusters of a window, may be
+     *                       <code>null</code> and contain <code>null</code>
+     * @param findSplitReads <code>true</code>, if the candidate split reads of
+     *                       each cluster shall be rendered
+     * <p>
+     * @return One group per top-level cluster
+     */
+    private List<ClusterGroup> renderClusters( List<Cluster> curClusterList, boolean findSplitReads ) {
+        List<ClusterGroup> groups = new ArrayList<>();
+        if( curClusterList == null ) {
+            return groups;
+        }
 
-                //cloneList_.add(numClones,c1);
-                cloneList_.add( c1 );
+        //OUTPUT THE DIFFERENT CLUSTERS
+        for( int i = 0; i < curClusterList.size(); ++i ) {
+            Cluster myCluster = curClusterList.get( i );
+            if( myCluster == null ) {
+                continue;
+            }
+            List<Cluster> clustersToWrite = new ArrayList<>();
+            clustersToWrite.add( myCluster );
+            if( (options.useMaximal || options.useAll) && (!myCluster.isClique() || !(myCluster.getPoly().getArea() > 0)) ) {
+                Out.print2( "ClusterESP: before findMaximalClusters() call, " +
+                         "myCluster size is " + myCluster.getSize() +
+                         " and myCluster poly is " + myCluster.getPoly() );
+                myCluster.findMaximalClusters( clustersToWrite );
+                Out.print2( "ClusterESP: after findMaximalClusters() call, " +
+                         "myCluster size is " + myCluster.getSize() +
+                         " and myCluster poly is " + myCluster.getPoly() +
+                         " with clustersToWrite size " + clustersToWrite.size() );
+            }
 
+            ClusterGroup group = new ClusterGroup();
+            for( int j = 0; j < clustersToWrite.size(); ++j ) {
+                Cluster curCluster = clustersToWrite.get( j );
+                //skip any clusters that don't have the min number of clones
+                if( curCluster.getSize() < options.minClusterSize ) {
+                    continue;
+                }
+                StringWriter clusterText = new StringWriter();
+                try {
+                    writeClusterBody( curCluster, findSplitReads, options.outMode, clusterText );
+                } catch( IOException e ) {
+                    throw new UncheckedIOException( e );
+                }
+                if( j == 0 ) {
+                    group.setMainCluster( clusterText.toString() );
+                } else {
+                    group.addSubCluster( clusterText.toString() );
+                }
             }
+            groups.add( group );
         }
-        numClones = cloneList_.size();
+        return groups;
+    }
 
-        /* if (c.size() > 1000) { Out.print2("clusterHelper() benchmarking for "
-         * + numClones + " clones in direction " + directionString + ": after
-         * pruning " + (c.size() - numClones) + "clones that didn't match
-         * direction, time: " + System.currentTimeMillis()); }
-         */
 
+    /**
+     * Clusters the windows of the same and the different orientation of one
+     * chromosome pair on the pool. The windows of one orientation are chained,
+     * so they are clustered one after another, while both orientations and all
+     * chromosome pairs run in parallel.
+     */
+    private final class PairClustering {
+
+        private final ClusterESPPartition samePartition;
+        private final ClusterESPPartition diffPartition;
+        private final boolean findSplitReads;
+        private final Deque<CompletableFuture<List<ClusterGroup>>> outputs;
+        private CompletableFuture<List<Cluster>> sameChain;
+        private CompletableFuture<List<Cluster>> diffChain;
+        private boolean finished;
+
+
+        PairClustering( int chrx, int chry, boolean findSplitReads ) {
+            this.samePartition = new ClusterESPPartition( chrx, chry, SAME, options );
+            this.diffPartition = new ClusterESPPartition( chrx, chry, DIFFERENT, options );
+            this.findSplitReads = findSplitReads;
+            this.outputs = new ArrayDeque<>();
+            this.sameChain = CompletableFuture.completedFuture( null );
+            this.diffChain = CompletableFuture.completedFuture( null );
+            this.finished = false;
+        }
+
+
+        /**
+         * Clusters the next window of this chromosome pair. A window permit
+         * has to be acquired before, it is released when the window is done.
+         * <p>
+         * @param c the ESPs of the window, may be <code>null</code>. The list
+         *          is cleared.
+         */
+        void submitWindow( List<BreakRegion> c ) {
+            List<BreakRegion> sameClones = new ArrayList<>();
+            List<BreakRegion> diffClones = new ArrayList<>();
+            if( c != null ) {
+                for( BreakRegion breakRegion : c ) {
+                    String type = ((Clone) breakRegion).getType();
+                    if( type.equals( SAME ) ) {
+                        sameClones.add( breakRegion );
+                    } else if( type.equals( DIFFERENT ) ) {
+                        diffClones.add( breakRegion );
+                    }
+                }
+                c.clear();
+            }
 
-		//this will be the list of clones completely unlabeled
-        //this will first be large, then shrink in size as more clones labeled
-        List<Clone> unlabeledClones = new ArrayList<>( cloneList_ );
+            sameChain = sameChain.thenApplyAsync( prev -> samePartition.clusterWindow( sameClones ), pool );
+            diffChain = diffChain.thenApplyAsync( prev -> diffPartition.clusterWindow( diffClones ), pool );
+            CompletableFuture<List<ClusterGroup>> sameOutput = render( sameChain );
+            CompletableFuture<List<ClusterGroup>> diffOutput = render( diffChain );
+            CompletableFuture.allOf( sameOutput, diffOutput ).whenComplete( (result, error) -> windowPermits.release() );
+        }
 
-        //sort cloneList_ by bmin
 
-        Collections.sort( unlabeledClones, COMPARATOR );
-        /* Out.print2("clusterHelper() benchmarking for " + numClones + " clones
-         * in direction " + directionString + ": after sorting unlabeledClones,
-         * time: " + System.currentTimeMillis());
+        /**
+         * Finishes this chromosome pair after its last window.
          */
-        //Explore Clusters;
-        List<Cluster> curClusterList = new ArrayList<>();
-        LABEL = -1;
-        while( unlabeledClones.size() > 0 ) {
-            Clone cloneN = unlabeledClones.remove( 0 );
-
-			// Each clusterLabel_ entry corresponds to a Clone and value is the LABEL pointer to the
-            // cluster to which it belongs in clusters
-            // Each entry in clusters is a PriorityQueue identifying clones in the cluster
-            // If initializing a clone's cluster label, set up clusters structure and add the
-            // pointer to the clone as the first member of the cluster.
-            LABEL++;
-            cloneN.setClusterID( LABEL );
-            Cluster tmpCluster = new Cluster( chrx, chry );
-            tmpCluster.addClone( cloneN );
-            curClusterList.add( tmpCluster );
-
-
-
-			//for every Clone, if it belongs to the current LABEL cluster (at first, cluster
-            // will contain only the initial Clone) and it hasn't yet been visited...
-            List<Clone> tmpClusterClones = tmpCluster.getClones();
-            for( int m = 0; m < tmpClusterClones.size(); m++ ) {
-                Clone cloneM = tmpClusterClones.get( m );
-				//count up the number of overlapping clones
-                //by convention, consider each clone to be overlapping with itself
-                // so start off at 1
-                //move numOverlaps functionality into clique() calculation instead
-                //this saves time for huge clusters (with --maxClusterSize mode)
-                //at the expense of some redundant overlap computations for smaller clusters
-                //int numOverlaps = 1;
-
-				//THIS IS THE "MEAT" OF THE CODE, WHERE THE GRAPH OF OVERLAPS IS COMPUTED
-                // ...then add all of its overlapping Clones to the current LABEL
-                // cluster and mark it (but not the overlapping clones) as visited
-                // ...eventually those overlapping Clones will also be visited by
-                // this loop and the Overlaps of those Overlaps will also be added
-                // to the same cluster, if they are not already in it
-                for( int b = 0; b < unlabeledClones.size(); b++ ) {
-                    Clone cloneB = unlabeledClones.get( b );
-					//if already in the cluster, don't need to compute overlap again!
-                    //unless we're counting numOverlaps (only necessary if not a huge cluster)
-                    if( GASVMain.overlap( cloneM, cloneB ) > 0 ) {
-                        cloneB.setClusterID( LABEL );
-                        // no need to add to huge clusters that will be ignored
-                        if( tmpCluster.getSize() <= GASVMain.MAX_CLUSTER_SIZE ) {
-                            tmpCluster.addClone( cloneB );
-                        }
-                        //has been labeled, so remove from unlabeled
-                        unlabeledClones.remove( b );
-                        //need to decrement to look at same index next iteration
-                        --b;
-                    } else if( cloneB.getBmin() > cloneM.getBmax() ) {
-						//since unlabeledClones sorted by bmin, if current cloneB has
-                        //bmin beyond the bounds of cloneM, then none of the subsequent
-                        //cloneB's will be near cloneM either. Can stop looking for this
-                        //cloneM.
-                        // QUESTION: should this be >= ?? From suzanne's overlap() method,
-                        // looks like colinear sides ARE considered same cluster!
-                        if( GASVMain.NORECIPROCAL_MODE ) {
-							//if non-reciprocal mode, can only take this shortcut
-                            // if they are the exact same orientations
-                            if( GASVMain.orientationsMatch( cloneB, cloneM ) ) {
-                                break;
-                            }
-
-                        } else {
-                            break;
-                        }
-                    }
-                }
-            }//End For
+        void finish() {
+            sameChain = sameChain.thenApplyAsync( prev -> samePartition.finish(), pool );
+            diffChain = diffChain.thenApplyAsync( prev -> diffPartition.finish(), pool );
+            render( sameChain );
+            render( diffChain );
+            finished = true;
+        }
 
-        }//End Went through all clones;
 
-        if( cghxMap == null && cghyMap == null && cghPairMap == null ) {
-			//for non-CGH (regular ESP clustering),
-            //write the clusters out from the previous window in the same direction
-            if( findSplitReads ) {
-                writeClustersAndSplitReads( directionString );
-            } else {
-                writeClusters( directionString );
-            }
-        } else {
-			// For clustering w/CGH, first find overlaps between CGH regions and ESP clusters
-            // and then write them to file
-            findCGHAndESPOverlaps( directionString, cghxMap, cghyMap, cghPairMap );
-            if( cghPairMap != null ) {
-                printCGHClusterEntries( cghPairMap );
-                clearCGHClusterMap( cghPairMap );
-            } else {
-                printCGHClusterEntries( cghxMap );
-                clearCGHClusterMap( cghxMap );
-                if( cghyMap != null ) {
-                    printCGHClusterEntries( cghyMap );
-                    clearCGHClusterMap( cghyMap );
-                }
-            }
+        private CompletableFuture<List<ClusterGroup>> render( CompletableFuture<List<Cluster>> finishedClusters ) {
+            CompletableFuture<List<ClusterGroup>> output = finishedClusters.thenApplyAsync(
+                    clusters -> renderClusters( clusters, findSplitReads ), pool );
+            outputs.addLast( output );
+            return output;
         }
 
-        // Go through clusters and determine whether each is a clique
-        for( int b = 0; b <= LABEL; b++ ) {
-            Cluster curCluster = curClusterList.get( b );
-            //can ignore clusters larger than max cluster size
-            if( curCluster.getSize() <= GASVMain.MAX_CLUSTER_SIZE ) {
-                if( curCluster.getSize() <= GASVMain.MAX_CLIQUE_SIZE ) {
-                    boolean isClique = clique( curCluster );
-					//this sets the boolean member variable and also initializes the cluster's
-                    //intersection polygon if it's a clique
-                    curCluster.setIsCliqueAndMakePoly( isClique );
-                } else {
-                    Out.print1( "Huge cluster of size " + curCluster.getSize() + " encountered, automatically assuming that it's NOT a clique!!" );
-                    curCluster.setIsCliqueAndMakePoly( false );
-                }
-            } else {
-                Out.print1( "Ignoring cluster exceeding max cluster size of " + GASVMain.MAX_CLUSTER_SIZE + " containing read: " + curCluster.getClones().get( 0 ) );
-                //delete clusters larger than the max cluster size
-                curClusterList.set( b, null );
-            }
+
+        /**
+         * @return The rendered clusters of all windows in output order, which
+         *         are not written yet
+         */
+        Deque<CompletableFuture<List<ClusterGroup>>> getOutputs() {
+            return outputs;
         }
 
-        // save the current clusters so that we can write them out after next window
-        if( directionString.equals( SAME ) ) {
-            sameClusterList = curClusterList;
-        } else if( directionString.equals( DIFFERENT ) ) {
-            diffClusterList = curClusterList;
+
+        /**
+         * @return <code>true</code>, if the last window of this chromosome
+         *         pair was submitted
+         */
+        boolean isFinished() {
+            return finished;
         }
+
+
     }
 
-	//if any of the current Clones in c overlap with previous clusters, remove those previous
-    //clusters (before they get written out), and add the associated clones instead to the current list, c.
 
-    private static void checkForOverlapsWithPrevClusters( List<BreakRegion> c, String direction ) {
+    /**
+     * A rendered top-level cluster and its maximal subclusters, without the
+     * cluster names.
+     */
+    private static final class ClusterGroup {
 
-        List<Cluster> oldClusterList = null;
-        double bound = -1;
-        if( direction.equals( SAME ) ) {
-			//if the prev structures are null, we must've started a new chromosome pair, so no need to
-            //check for overlaps
-            if( sameClusterList == null ) {
-                return;
-            }
-            bound = samePrevRightMostTrapEnd_;
-            oldClusterList = sameClusterList;
-        } else if( direction.equals( DIFFERENT ) ) {
-			//if the prev structures are null, we must've started a new chromosome pair, so no need to
-            //check for overlaps
-            if( diffClusterList == null ) {
-                return;
-            }
-            bound = diffPrevRightMostTrapEnd_;
-            oldClusterList = diffClusterList;
-        } else {
-            Out.print( "ClusterESP.checkForOverlapsWithPrevClusters: Should never happen!!!!" );
+        private String mainCluster;
+        private final List<String> subClusters = new ArrayList<>();
+
+
+        String getMainCluster() {
+            return mainCluster;
         }
 
-        //use c_size rather than calling c.size() since will be adding to c within the loop
-        int c_size = c.size();
-        for( int k = 0; k < c_size; k++ ) {
-            Clone c1 = (Clone) c.get( k );
-            if( c1.getType().equals( direction ) ) {
 
-                //find the leftmost coordinate of current clone
-                double c1LeftMostX = c1.getX();
-                if( c1LeftMostX < 0 ) {
-                    c1LeftMostX = Math.abs( c1LeftMostX ) - GASVMain.MAX_LMAX;
-                }
+        void setMainCluster( String mainCluster ) {
+            this.mainCluster = mainCluster;
+        }
 
-                // only check those Clones where overlap is even possible
-                if( c1LeftMostX <= bound ) {
-					//for any overlap, remove the associated cluster from the
-                    //old data structure and add the cluster's Clones onto the end of c
-                    //Note that the Clones added to c won't be processed in this loop
-                    //since they'll be beyond c_size
-                    for( int i = 0; i < oldClusterList.size(); ++i ) {
-                        Cluster curCluster = oldClusterList.get( i );
-
-                        // only consider those clusters within overlap distance of c1
-                        if( curCluster != null &&
-                                 curCluster.getRightMostX() >= c1LeftMostX ) {
-                            List<Clone> curClones = curCluster.getClones();
-                            for( int j = 0; j < curClones.size(); ++j ) {
-                                Clone oldClone = curClones.get( j );
-                                if( oldClone != null && GASVMain.overlap( c1, oldClone ) > 0 ) {
-                                    c.addAll( curClones );
-
-									//can't just remove otherwise indexes get
-                                    //screwed up, so delete by setting to null
-                                    oldClusterList.set( i, null );
-                                    //break out of this inner for loop
-                                    j = curClones.size();
-                                }
-                            }
-                        }
-                    }
-                }
-            }
+
+        List<String> getSubClusters() {
+            return subClusters;
         }
-        if( c.size() - c_size > 100 ) {
-            Out.print2( "ClusterESP.checkForOverlapsWithPrevClusters() Added " + (c.size() - c_size) +
-                     " Break Regions from the previous window into the current window" );
+
+
+        void addSubCluster( String subCluster ) {
+            subClusters.add( subCluster );
         }
 
+
     }
 
 
-    //Find overlaps between CGH and ESP data, and fill out the appropriate (non-null) HashMap(s)
+    /**
+     * Clusters the ESPs of the next window and records the overlaps of the
+     * finished clusters of the previous window with the CGH data.
+     */
+    private void clusterWindowWithCGH( ClusterESPPartition partition, List<BreakRegion> c,
+                                       Map<BreakRegion, List<Cluster>> cghxMap,
+                                       Map<BreakRegion, List<Cluster>> cghyMap,
+                                       Map<BreakRegion, List<Cluster>> cghPairMap )
+            throws IOException {
+
+        List<Cluster> finishedClusters = partition.clusterWindow( c );
+
+		// For clustering w/CGH, first find overlaps between CGH regions and ESP clusters
+        // and then write them to file
+        findCGHAndESPOverlaps( finishedClusters, cghxMap, cghyMap, cghPairMap );
+        if( cghPairMap != null ) {
+            printCGHClusterEntries( cghPairMap );
+            clearCGHClusterMap( cghPairMap );
+        } else {
+            printCGHClusterEntries( cghxMap );
+            clearCGHClusterMap( cghxMap );
+            if( cghyMap != null ) {
+                printCGHClusterEntries( cghyMap );
+                clearCGHClusterMap( cghyMap );
+            }
+        }
+    }
 
-    private static void findCGHAndESPOverlaps( String direction,
+
+    //Find overlaps between CGH and ESP data, and fill out the appropriate (non-null) HashMap(s)
+    private void findCGHAndESPOverlaps( List<Cluster> curClusterList,
                                                Map<BreakRegion, List<Cluster>> cghxMap,
                                                Map<BreakRegion, List<Cluster>> cghyMap,
                                                Map<BreakRegion, List<Cluster>> cghPairMap ) throws IOException {
 
-        List<Cluster> curClusterList = null;
-        if( direction.equals( SAME ) ) {
-            curClusterList = sameClusterList;
-        } else if( direction.equals( DIFFERENT ) ) {
-            curClusterList = diffClusterList;
-        } else {
-            Out.print( "ClusterESP.findCGHAndESPOverlaps(): Should never happen!!!!" );
-        }
         if( curClusterList == null ) {
             return;
         }
@@ -878,7 +960,7 @@ public class ClusterESP {
                 continue;
             }
             //skip any clusters that don't have the min number of clones
-            if( curCluster.getSize() < GASVMain.MIN_CLUSTER_SIZE ) {
+            if( curCluster.getSize() < options.minClusterSize ) {
                 continue;
             }
             if( cghPairMap != null ) {
@@ -934,7 +1016,7 @@ public class ClusterESP {
     }
 
 
-    private static void printCGHClusterEntries(
+    private void printCGHClusterEntries(
             Map<BreakRegion, List<Cluster>> map )
             throws IOException {
 		//for (int k=0; k<maps.length;++k) {
@@ -976,8 +1058,8 @@ public class ClusterESP {
 
 				//"#Cluster_ID:\tNum PES:\tLocalization:\tList of PES:\t ChrM:\tChrN:\tBoundary Points:\n";
                 //Write out the cluster number and increment:
-                clusterWriter_.write( "c" + CLUSTER_NUMBER + Constants.SEP );
-                CLUSTER_NUMBER++;
+                clusterWriter_.write( "c" + clusterNumber + Constants.SEP );
+                clusterNumber++;
 
                 //write num PES
                 clusterWriter_.write( curCluster.getSize() + Constants.SEP );
@@ -989,7 +1071,7 @@ public class ClusterESP {
 
                 //write localization
                 if( isCliqueWithNonZeroArea ) {
-                    clusterWriter_.write( df_.format( Math.sqrt( curCluster.getPoly().getArea() ) ) + Constants.SEP );
+                    clusterWriter_.write( df_.get().format( Math.sqrt( curCluster.getPoly().getArea() ) ) + Constants.SEP );
                 } else {
                     clusterWriter_.write( "-1" + Constants.SEP );
                 }
@@ -1094,144 +1176,18 @@ public class ClusterESP {
         return theyIntersect;
     }
 
-	// save state of these parameters
-    // LABEL, chrx, chry
-    // clusters, cloneOverlaps_, cloneList_
-    //private static void writeClusters(int LABEL, int chrx, int chry, String direction) throws IOException {
-
-    private static void writeClusters( String direction ) //, ArrayList<Cluster> curClusterList)
-            throws IOException {
-        //OUTPUT THE DIFFERENT CLUSTERS
-        List<Cluster> curClusterList = null;
-        if( direction.equals( SAME ) ) {
-            curClusterList = sameClusterList;
-        } else if( direction.equals( DIFFERENT ) ) {
-            curClusterList = diffClusterList;
-        } else {
-            Out.print( "ClusterESP.writeClusters(): Should never happen!!!!" );
-        }
-        if( curClusterList == null ) {
-            return;
-        }
-
-        //OUTPUT THE DIFFERENT CLUSTERS
-        for( int i = 0; i < curClusterList.size(); ++i ) {
-            Cluster myCluster = curClusterList.get( i );
-            if( myCluster == null ) {
-                continue;
-            }
-            List<Cluster> clustersToWrite = new ArrayList<>();
-            //if (myCluster.isClique() && myCluster.getPoly().getArea() > 0) {
-            clustersToWrite.add( myCluster );
-            //else if
-            if( (GASVMain.USE_MAXIMAL || GASVMain.USE_ALL) && (!myCluster.isClique() || !(myCluster.getPoly().getArea() > 0)) ) {
-                Out.print2( "ClusterESP: c" + CLUSTER_NUMBER + " before findMaximalClusters() call, " +
-                         "myCluster size is " + myCluster.getSize() +
-                         " and myCluster poly is " + myCluster.getPoly() );
-                myCluster.findMaximalClusters( clustersToWrite );
-                Out.print2( "ClusterESP: after findMaximalClusters() call, " +
-                         "myCluster size is " + myCluster.getSize() +
-                         " and myCluster poly is " + myCluster.getPoly() +
-                         " with clustersToWrite size " + clustersToWrite.size() );
-            }
-
-            int subClusterNum = 0;
-            for( int j = 0; j < clustersToWrite.size(); ++j ) {
-                Cluster curCluster = clustersToWrite.get( j );
-                if( curCluster.getSize() > 1000 ) {
-                    Out.print2( "writeClusters() benchmarking for cluster of size " +
-                             curCluster.getSize() +
-                             ": about to start writing, time: " + System.currentTimeMillis() );
-                }
-                //skip any clusters that don't have the min number of clones
-                if( curCluster.getSize() < GASVMain.MIN_CLUSTER_SIZE ) {
-                    continue;
-                }
-
-                //Write out the cluster number and increment:
-                String clusterName = null;
-                if( j == 0 ) {
-                    //clusterWriter_.write("c" + CLUSTER_NUMBER + "\t");
-                    clusterName = "c" + CLUSTER_NUMBER;
-                } else {
-					//clusterWriter_.write("c" + CLUSTER_NUMBER
-                    //		+ "." + subClusterNum + "\t");
-                    clusterName = "c" + CLUSTER_NUMBER + "." + subClusterNum;
-                    subClusterNum++;
-                }
-                writeSingleCluster( clusterName, curCluster, false, clusterWriter_ );
-
-            }
-            CLUSTER_NUMBER++;
-        }
-    }
-
-
-    private static void writeClustersAndSplitReads( String direction )
-            throws IOException {
-
-        List<Cluster> curClusterList = null;
-        if( direction.equals( SAME ) ) {
-            curClusterList = sameClusterList;
-        } else if( direction.equals( DIFFERENT ) ) {
-            curClusterList = diffClusterList;
-        } else {
-            Out.print( "ClusterESP.writeClustersAndSplitReads(): Should never happen!!!!" );
-        }
-        if( curClusterList == null ) {
-            return;
-        }
-
-        //OUTPUT THE DIFFERENT CLUSTERS along with associated split reads
-        for( int i = 0; i < curClusterList.size(); ++i ) {
-            Cluster myCluster = curClusterList.get( i );
-            if( myCluster == null ) {
-                continue;
-            }
-            List<Cluster> clustersToWrite = new ArrayList<>();
-            clustersToWrite.add( myCluster );
-
-            if( (GASVMain.USE_MAXIMAL || GASVMain.USE_ALL) && (!myCluster.isClique() || !(myCluster.getPoly().getArea() > 0)) ) {
-                myCluster.findMaximalClusters( clustersToWrite );
-            }
-
-            int subClusterNum = 0;
-            for( int j = 0; j < clustersToWrite.size(); ++j ) {
-                Cluster curCluster = clustersToWrite.get( j );
-
-                //skip any clusters that don't have the min number of clones
-                if( curCluster.getSize() < GASVMain.MIN_CLUSTER_SIZE ) {
-                    continue;
-                }
-                //Write out the cluster number and increment:
-                String clusterName = null;
-                if( j == 0 ) {
-                    //clusterWriter_.write("c" + CLUSTER_NUMBER + "\t");
-                    clusterName = "c" + CLUSTER_NUMBER;
-                } else {
-					//clusterWriter_.write("c" + CLUSTER_NUMBER
-                    //		+ "." + subClusterNum + "\t");
-                    clusterName = "c" + CLUSTER_NUMBER + "." + subClusterNum;
-                    subClusterNum++;
-                }
-                //CLUSTER_NUMBER++;
-                writeSingleCluster( clusterName, curCluster, true, clusterWriter_ );
-            }
-            CLUSTER_NUMBER++;
-        }
-    }
 
 	//creates PairedCGH objects for all possible pairings of the two lists of CGH data and inserts them
     // as keys to the map
 
-    private static void genPairsAndPutInMap( List<BreakRegion> list1, List<BreakRegion> list2,
-                                             Map<BreakRegion, List<Cluster>> map ) {
+    private void genPairsAndPutInMap( List<BreakRegion> list1, List<BreakRegion> list2,
+                                      Map<BreakRegion, List<Cluster>> map ) {
         for( int i = 0; i < list1.size(); ++i ) {
             for( int j = 0; j < list2.size(); ++j ) {
                 CGH cghi = (CGH) list1.get( i );
                 CGH cghj = (CGH) list2.get( j );
-                PairedCGH cghPair = new PairedCGH( CGH_NUMBER, cghi, cghj );
-                CGH_NUMBER++;
+                PairedCGH cghPair = new PairedCGH( cghNumber, cghi, cghj );
+                cghNumber++;
                 map.put( cghPair, new ArrayList<>() );
             }
         }
@@ -1246,8 +1202,12 @@ public class ClusterESP {
         }
     }
 
-
-    public static void clusterESPAndCGH( String espFilename, String cghFilename )
+    /**
+     * Clusters the ESPs and writes the overlaps of the clusters with the CGH
+     * data. Since the CGH data is written per chromosome pair and aggregated
+     * afterwards, this mode clusters the chromosome pairs sequentially.
+     */
+    public void clusterESPAndCGH( String espFilename, String cghFilename )
             throws IOException {
         String fileNameMinusPath = cghFilename;
         int idxOfSlash = cghFilename.lastIndexOf( '/' );
@@ -1255,257 +1215,214 @@ public class ClusterESP {
             fileNameMinusPath = cghFilename.substring( idxOfSlash + 1 );
         }
 
-        boolean usePairedCGH = GASVMain.USE_PAIRED_CGH;
+        boolean usePairedCGH = options.usePairedCGH;
 		//will need to write CGH and clusters to a temp file, sort the
         //temp file and then finally write the sorted contents out to the final file
-        String finalFileName = GASVMain.OUTPUT_DIR + fileNameMinusPath + ".cgh";
+        String finalFileName = options.outputDir + fileNameMinusPath + ".cgh";
         File finalFile = new File( finalFileName );
         if( finalFile.exists() ) {
             finalFile.delete();
         }
-        BufferedWriter finalWriter = new BufferedWriter( new FileWriter( finalFile ) );
-
-        String cluster = TMPFILENAME;
 
-        File clusterFile = new File( cluster );
-        if( clusterFile.exists() ) {
-            clusterFile.delete();
-        }
+        //a unique temp file per run, so that several runs don't interfere
+        File clusterFile = File.createTempFile( Constants.GASV_TMP_NAME, null );
         clusterWriter_ = new BufferedWriter( new FileWriter( clusterFile ) );
 
+        boolean useFast = options.useFast;
+        boolean useBatch = options.useBatch;
 
-		//if using paired, don't need to sort a temp file, so clusterWriter_ will do the actual final
-        // writing so give it a header if necessary
-        //if (GASVMain.USE_HEADER && usePairedCGH) {
-        //clusterWriter_.write(cghHeaderLine);
-        //}
-
-
-        boolean useFast = GASVMain.USE_FAST;
-        boolean useBatch = GASVMain.USE_BATCH;
-
-        ReadInput readInput = new ReadInput( espFilename );
-        ReadInput cghReadInput = new ReadInput( cghFilename );
+        ReadInput readInput = new ReadInput( espFilename, options );
+        ReadInput cghReadInput = new ReadInput( cghFilename, options );
 
         List<BreakRegion>[][] breakRegions = null;
-        int lmin = GASVMain.LMIN;
-        int lmax = GASVMain.LMAX;
+        int lmin = options.lmin;
+        int lmax = options.lmax;
 
-        boolean saveMemory = GASVMain.SAVE_MEMORY;
+        boolean saveMemory = options.saveMemory;
         boolean fileDone = false;
 
-        //in fast mode, read PES from all chromosomes into memory at once
-        if( useFast ) {
-            breakRegions = new List[GASVMain.NUM_CHROM][GASVMain.NUM_CHROM];
-            if( useBatch ) {
-                readInput.readFiles( breakRegions );
-            } else {
-                readInput.readSingleFile( lmin, lmax, breakRegions );
+        try {
+            //in fast mode, read PES from all chromosomes into memory at once
+            if( useFast ) {
+                breakRegions = new List[options.numChrom][options.numChrom];
+                if( useBatch ) {
+                    readInput.readFiles( breakRegions );
+                } else {
+                    readInput.readSingleFile( lmin, lmax, breakRegions );
+                }
+                fileDone = true;
             }
-            fileDone = true;
-        }
-
-		//trading off memory for performance here.
-        //keep all CGH data in memory for every chromosome rather than having to re-read data for a particular
-        //chromosome whenever we encounter it
-		/* ArrayList<BreakRegion> cghDataByChr[] = new
-         * ArrayList<BreakRegion>[GASVMain.NUM_CHROM]; for(int i = 0;
-         * i<GASVMain.NUM_CHROM; i++){ cghDataByChr[i] = null; }
-         */
-
 
-		//int k = 0;
-        //int numClones = 0;
+            pairLoop:
+            for( int i = 0; i < options.numChrom; i++ ) {
+                int chrx = i + 1;
+                List<BreakRegion> cghx = new ArrayList<>();
+                if( useBatch ) {
+                    cghReadInput.readCGHFilesByChr( chrx, cghx );
+                } else {
+                    cghReadInput.readSingleCGHFileByChr( chrx, cghx );
+                }
 
-		//int CLUSTER_NUMBER = 1;
-        for( int i = 0; i < GASVMain.NUM_CHROM; i++ ) {
-            chrx = i + 1;
-            List<BreakRegion> cghx = new ArrayList<BreakRegion>();
-            if( useBatch ) {
-                cghReadInput.readCGHFilesByChr( chrx, cghx );
-            } else {
-                cghReadInput.readSingleCGHFileByChr( chrx, cghx );
-            }
+                for( int j = i; j < options.numChrom; j++ ) {
+                    boolean skipClustering = false;
+                    int chry = j + 1;
 
-            for( int j = i; j < GASVMain.NUM_CHROM; j++ ) {
-                boolean skipClustering = false;
-				//ArrayList<BreakRegion> c = cs[i][j];
-                //int chrx = i+1; int chry = j+1;
-                chry = j + 1;
+                    Out.print1( "ClusterESP: processing chr " + chrx + ", chr" + chry );
 
-                Out.print1( "ClusterESP: processing chr " + chrx + ", chr" + chry );
+                    Out.print1( "ClusterESP: considering " + cghx.size() + " cgh regions for chr " + chrx );
 
-                Out.print1( "ClusterESP: considering " + cghx.size() + " cgh regions for chr " + chrx );
-
-				// if in paired CGH mode, will only have a single cghPairMap keyed by PairedCGH data,
-                // with either chrx crossed with x or x crossed with y (in the case of translocations).
-                // if in single CGH mode, will have a single cghxMap for non-translocation ESPs, or
-                // both cghxMap and cghyMap for translocation ESP's.
-                Map<BreakRegion, List<Cluster>> cghPairMap = null;
-                Map<BreakRegion, List<Cluster>> cghxMap = null;
-                Map<BreakRegion, List<Cluster>> cghyMap = null;
-
-                if( usePairedCGH ) {
-                    if( cghx.isEmpty() ) {
-                        Out.print1( "ClusterESP: no CGH data for chr" + chrx +
-                                 " so no pairs can be generated. Will skip clustering." );
-                        skipClustering = true;
-                    }
-                    cghPairMap = new HashMap<>(
-                            Constants.EXPECTED_NUM_CGH_PER_CHR );
-					//if same chr, only need to generate the paired data based on one chr's CGH data
-                    //if diffChr, will populate the map after reading in chry CGH data too
-                    if( chrx == chry ) {
-						// generate all pairings of CGH data and insert each pair as a key
-                        // in a map (with the value to be all associated clusters)
-                        genPairsAndPutInMap( cghx, cghx, cghPairMap );
-                    }
-                } else {
-                    //for non-paired, we know we have to at least make the chrxMap
-                    cghxMap = new HashMap<>(
-                            Constants.EXPECTED_NUM_CGH_PER_CHR );
-                    //convertArrayListToMap(cghDataByChr[i], cghxMap);
-                    convertArrayListToMap( cghx, cghxMap );
-                }
+					// if in paired CGH mode, will only have a single cghPairMap keyed by PairedCGH data,
+                    // with either chrx crossed with x or x crossed with y (in the case of translocations).
+                    // if in single CGH mode, will have a single cghxMap for non-translocation ESPs, or
+                    // both cghxMap and cghyMap for translocation ESP's.
+                    Map<BreakRegion, List<Cluster>> cghPairMap = null;
+                    Map<BreakRegion, List<Cluster>> cghxMap = null;
+                    Map<BreakRegion, List<Cluster>> cghyMap = null;
 
-                //for translocations will also have to read the CGH data for chry
-                if( chrx != chry ) {
-                    List<BreakRegion> cghy = new ArrayList<>();
-                    if( useBatch ) {
-                        cghReadInput.readCGHFilesByChr( chry, cghy );
-                    } else {
-                        cghReadInput.readSingleCGHFileByChr( chry, cghy );
-                    }
-                    Out.print1( "ClusterESP: considering " + cghy.size() + " cgh regions for chr " + chry );
-                    // for paired data, generate the map based on both x and y
                     if( usePairedCGH ) {
-                        if( cghy.isEmpty() ) {
-                            Out.print1( "ClusterESP: no CGH data for chr" + chry +
-                                     " so no pairs can be generated. " +
-                                     "Will skip clustering." );
+                        if( cghx.isEmpty() ) {
+                            Out.print1( "ClusterESP: no CGH data for chr" + chrx +
+                                     " so no pairs can be generated. Will skip clustering." );
                             skipClustering = true;
                         }
-                        genPairsAndPutInMap( cghx, cghy, cghPairMap );
+                        cghPairMap = new LinkedHashMap<>(
+                                Constants.EXPECTED_NUM_CGH_PER_CHR );
+						//if same chr, only need to generate the paired data based on one chr's CGH data
+                        //if diffChr, will populate the map after reading in chry CGH data too
+                        if( chrx == chry ) {
+							// generate all pairings of CGH data and insert each pair as a key
+                            // in a map (with the value to be all associated clusters)
+                            genPairsAndPutInMap( cghx, cghx, cghPairMap );
+                        }
                     } else {
-						//for non-paired data, make CGH y data into a separate map
-                        //if both cghx and cghy are empty, no need to do clustering
-                        if( (cghx.isEmpty()) && (cghy.isEmpty()) ) {
+                        //for non-paired, we know we have to at least make the chrxMap
+                        cghxMap = new LinkedHashMap<>(
+                                Constants.EXPECTED_NUM_CGH_PER_CHR );
+                        convertArrayListToMap( cghx, cghxMap );
+                    }
+
+                    //for translocations will also have to read the CGH data for chry
+                    if( chrx != chry ) {
+                        List<BreakRegion> cghy = new ArrayList<>();
+                        if( useBatch ) {
+                            cghReadInput.readCGHFilesByChr( chry, cghy );
+                        } else {
+                            cghReadInput.readSingleCGHFileByChr( chry, cghy );
+                        }
+                        Out.print1( "ClusterESP: considering " + cghy.size() + " cgh regions for chr " + chry );
+                        // for paired data, generate the map based on both x and y
+                        if( usePairedCGH ) {
+                            if( cghy.isEmpty() ) {
+                                Out.print1( "ClusterESP: no CGH data for chr" + chry +
+                                         " so no pairs can be generated. " +
+                                         "Will skip clustering." );
+                                skipClustering = true;
+                            }
+                            genPairsAndPutInMap( cghx, cghy, cghPairMap );
+                        } else {
+							//for non-paired data, make CGH y data into a separate map
+                            //if both cghx and cghy are empty, no need to do clustering
+                            if( (cghx.isEmpty()) && (cghy.isEmpty()) ) {
+                                Out.print1( "ClusterESP: no CGH data for chr" + chrx +
+                                         " or for chr" + chry +
+                                         " so will skip clustering." );
+                                skipClustering = true;
+                            }
+                            cghyMap = new LinkedHashMap<>( Constants.EXPECTED_NUM_CGH_PER_CHR );
+                            convertArrayListToMap( cghy, cghyMap );
+                        }
+                    } else if( !usePairedCGH ) {
+						//if in single CGH mode and it is NOT a translocation, can skip clustering
+                        //for chromsoome if no CGH data exists for this chromosome
+                        if( cghx.isEmpty() ) {
                             Out.print1( "ClusterESP: no CGH data for chr" + chrx +
-                                     " or for chr" + chry +
                                      " so will skip clustering." );
                             skipClustering = true;
                         }
-                        cghyMap = new HashMap<>( Constants.EXPECTED_NUM_CGH_PER_CHR );
-                        convertArrayListToMap( cghy, cghyMap );
                     }
-                } else if( !usePairedCGH ) {
-					//if in single CGH mode and it is NOT a translocation, can skip clustering
-                    //for chromsoome if no CGH data exists for this chromosome
-                    if( cghx.isEmpty() ) {
-                        Out.print1( "ClusterESP: no CGH data for chr" + chrx +
-                                 " so will skip clustering." );
-                        skipClustering = true;
-                    }
-                }
 
-                List<BreakRegion> c = null;
-                do {
-                    // will be either fast mode or window (saveMemory mode)
-                    if( useFast ) {
-                        c = breakRegions[i][j];
-                    } else {
-                        if( c == null ) {
-                            c = new ArrayList<BreakRegion>();
-                        }
-                        if( useBatch ) {
-                            fileDone = readInput.readWindowFromFiles( chrx,
-                                                                      chry, c );
+                    ClusterESPPartition samePartition = new ClusterESPPartition( chrx, chry, SAME, options );
+                    ClusterESPPartition diffPartition = new ClusterESPPartition( chrx, chry, DIFFERENT, options );
+                    List<BreakRegion> c = null;
+                    do {
+                        // will be either fast mode or window (saveMemory mode)
+                        if( useFast ) {
+                            c = breakRegions[i][j];
                         } else {
-                            fileDone = readInput.readWindowFromSingleFile( chrx,
-                                                                           chry, lmin, lmax, c );
+                            if( c == null ) {
+                                c = new ArrayList<>();
+                            }
+                            if( useBatch ) {
+                                fileDone = readInput.readWindowFromFiles( chrx,
+                                                                          chry, c );
+                            } else {
+                                fileDone = readInput.readWindowFromSingleFile( chrx,
+                                                                               chry, lmin, lmax, c );
+                            }
                         }
-                    }
 
-					//check each cluster in (i) to see if it is within Lmax of
-                    //the right-most cluster in i-1.  If so, check for actual overlap
-                    //with clusters in (i-1) and remove any (i-1) clusters that overlap it.
-                    //At the end of iteration i, output any remaining clusters from (i-1).
+                        if( c != null && !skipClustering ) {
 
-                    if( c != null && !skipClustering ) {
+                            if( c.size() > 100 ) {
+                                Out.print2( "ClusterESP: Loaded " + c.size() +
+                                         " Break Regions for chr" +
+                                         chrx + ", chr" + chry );
+                            }
 
+							//first go in forward direction, then through the reverse direction.
+                            // The partitions clear c.
+                            List<BreakRegion> diffClones = new ArrayList<>( c );
+                            clusterWindowWithCGH( samePartition, c, cghxMap, cghyMap, cghPairMap );
+                            clusterWindowWithCGH( diffPartition, diffClones, cghxMap, cghyMap, cghPairMap );
+                        }//End c!= Null
 
-                        if( c.size() > 100 ) {
-                            Out.print2( "ClusterESP: Loaded " + c.size() +
-                                     " Break Regions for chr" +
-                                     chrx + ", chr" + chry );
-                        }
+                    } while( saveMemory && !fileDone &&
+                             !readInput.getDiffChrPairReached() );
 
-						//first go in forward direction
-                        // pass false to indicate we don't want to find split reads
-                        clusterHelper( c, SAME, cghxMap, cghyMap, cghPairMap, false );
+                    if( skipClustering ) {
+                        continue;
+                    }
 
-                        //NOW GOING THROUGH THE REVERSE DIRECTION!
-                        clusterHelper( c, DIFFERENT, cghxMap, cghyMap, cghPairMap, false );
+					// Can now safely assume all clusters in the current window are valid,
+                    // so find overlaps between current window's ESP clusters and the CGH data.
+                    // (Usually there is a "delayed" save until the next window to
+                    // ensure that no clusters overlaps across the window boundary)
 
-                        c.clear();
-                    }//End c!= Null
-                    samePrevRightMostTrapEnd_ = sameRightMostTrapEnd_;
-                    diffPrevRightMostTrapEnd_ = diffRightMostTrapEnd_;
-                    sameRightMostTrapEnd_ = 0;
-                    diffRightMostTrapEnd_ = 0;
+					// In the --fast case, only one giant window, so this final
+                    // call will actually do all the work of finding CGH overlaps for ALL clusters.
+                    findCGHAndESPOverlaps( samePartition.finish(), cghxMap, cghyMap, cghPairMap );
+                    findCGHAndESPOverlaps( diffPartition.finish(), cghxMap, cghyMap, cghPairMap );
 
-                } while( saveMemory && !fileDone &&
-                         !readInput.getDiffChrPairReached() );
-
-                if( skipClustering ) {
-                    continue;
-                }
+					//DESIGN CHOICE:
+                    // Could have printed everything out at every window to save memory
+                    // But for performance, ease of coding, and assuming cgh data is small, decided to
+                    // print out at the end of every chromosome pairing instead.
 
-				// Can now safely assume all clusters in the current window are valid,
-                // so find overlaps between current window's ESP clusters and the CGH data.
-                // (Usually there is a "delayed" save until the next window to
-                // ensure that no clusters overlaps across the window boundary)
-
-				// In the --fast case, only one giant window, so this final
-                // call will actually do all the work of finding CGH overlaps for ALL clusters.
-                findCGHAndESPOverlaps( SAME, cghxMap, cghyMap, cghPairMap );
-                findCGHAndESPOverlaps( DIFFERENT, cghxMap, cghyMap, cghPairMap );
-
-				//DESIGN CHOICE:
-                // Could have printed everything out at every window to save memory
-                // But for performance, ease of coding, and assuming cgh data is small, decided to
-                // print out at the end of every chromosome pairing instead.
-
-				//do one last time (don't bother clearing the maps since they'll be garbage collected
-                // anyway)
-                if( usePairedCGH ) {
-                    printCGHClusterEntries( cghPairMap );
-                } else {
-                    printCGHClusterEntries( cghxMap );
-                    if( cghyMap != null ) {
-                        printCGHClusterEntries( cghyMap );
+					//do one last time (don't bother clearing the maps since they'll be garbage collected
+                    // anyway)
+                    if( usePairedCGH ) {
+                        printCGHClusterEntries( cghPairMap );
+                    } else {
+                        printCGHClusterEntries( cghxMap );
+                        if( cghyMap != null ) {
+                            printCGHClusterEntries( cghyMap );
+                        }
                     }
-                }
 
+                    // if no more ESP's, stop looking. In --fast mode all pairs are in memory already.
+                    if( fileDone && !useFast ) {
+                        break pairLoop;
+                    }
+                }//End j;
+            }//End i;
 
-                // if no more ESP's, stop looking
-                if( fileDone ) {
-                    i = GASVMain.NUM_CHROM;
-                    j = GASVMain.NUM_CHROM;
-                }
-
-                //reset prev window variables to initial values
-                sameClusterList = null;
-                diffClusterList = null;
-                //}
-            }//End j;
-        }//End i;
-
-        clusterWriter_.flush();
-        clusterWriter_.close();
+            clusterWriter_.flush();
+        } finally {
+            clusterWriter_.close();
+        }
 		//sort (and aggregate duplicates for) the file, only necessary in single CGH mode?
         // will also take care of deleting the temp file
-        sortAndPrintFinalFile( finalWriter );
+        sortAndPrintFinalFile( clusterFile, new BufferedWriter( new FileWriter( finalFile ) ) );
 
         if( !fileDone ) {
             Out.print( "Warning: Finished looping through all possible Chr combinations, but did not finish the file." +
@@ -1513,18 +1430,19 @@ public class ClusterESP {
         }
     }
 
+
 	//takes the data in the Constants.GASV_TMP_NAME file and handles
     // processing/sorting it into a final file
     // removes the temp file as a final step.
 
-    private static void sortAndPrintFinalFile( BufferedWriter finalWriter ) throws IOException {
+    private void sortAndPrintFinalFile( File tmpFile, BufferedWriter finalWriter ) throws IOException {
 
-        if( GASVMain.USE_HEADER ) {
+        if( options.useHeader ) {
             finalWriter.write( cghHeaderLine );
         }
 
         //open tmp file read-only
-        RandomAccessFile f = new RandomAccessFile( TMPFILENAME, "r" );
+        RandomAccessFile f = new RandomAccessFile( tmpFile, "r" );
 
 		//pos always represents the position at the start of the current line
         //long pos = 0;
@@ -1583,11 +1501,10 @@ public class ClusterESP {
         }
 
         f.close();
-        Out.print1( "sortAndPrintFinalFile() finishing up, deleting tmpfile: " + TMPFILENAME );
+        Out.print1( "sortAndPrintFinalFile() finishing up, deleting tmpfile: " + tmpFile );
 
         //delete temp file
-        File tmpFileToDelete = new File( TMPFILENAME );
-        if( !tmpFileToDelete.delete() ) {
+        if( !tmpFile.delete() ) {
             Out.print1( "Unable to delete tmp file for GASV!" );
         }
 
@@ -1608,179 +1525,29 @@ public class ClusterESP {
     }
 
 
-    /**
-     * Find all clusters as usual. Then for each cluster, output any candidate
-     * split reads (i.e. those reads of the cluster that contain the entire max
-     * intersection region
-     */
-    public static void clusterESPAndFindSplitReads( String espFilename )
-            throws IOException {
-        String fileNameMinusPath = espFilename;
-        int idxOfSlash = espFilename.lastIndexOf( "/" );
-        if( idxOfSlash != -1 ) {
-            fileNameMinusPath = espFilename.substring( idxOfSlash + 1 );
-        }
-
-		//will need to write CGH and clusters to a temp file, sort the
-        //temp file and then finally write the sorted contents out to the final file?
-        //String finalFileName = GASVMain.OUTPUT_DIR + fileNameMinusPath + ".cgh";
-        //File finalFile = new File(finalFileName);
-        //BufferedWriter finalWriter = new BufferedWriter(new FileWriter(finalFile));
-
-        String cluster = GASVMain.OUTPUT_DIR + fileNameMinusPath + ".clusters";
-
-        File clusterFile = new File( cluster );
-        if( clusterFile.exists() ) {
-            clusterFile.delete();
-        }
-        clusterWriter_ = new BufferedWriter( new FileWriter( clusterFile ) );
-
-        if( GASVMain.USE_HEADER ) {
-            String headerLine = ESP_HEAD_STD + "\tCandidate Split Reads:";
-            if( GASVMain.OUT_MODE == GASVMain.GASV_OUTPUT_MODE.STANDARD ) {
-                headerLine = ESP_HEAD_STD + "\tCandidate Split Reads:";
-            } else if( GASVMain.OUT_MODE == GASVMain.GASV_OUTPUT_MODE.READS ) {
-                headerLine = ESP_HEAD_READS + "\tCandidate Split Reads:";
-            } else if( GASVMain.OUT_MODE == GASVMain.GASV_OUTPUT_MODE.REGIONS ) {
-                headerLine = ESP_HEAD_REGIONS + "\tCandidate Split Reads:";
-            }
-            headerLine += "\n";
-            clusterWriter_.write( headerLine );
-        }
-
-        boolean useFast = GASVMain.USE_FAST;
-        boolean useBatch = GASVMain.USE_BATCH;
-
-        ReadInput readInput = new ReadInput( espFilename );
-
-        ArrayList<BreakRegion>[][] breakRegions = null;
-        int lmin = GASVMain.LMIN;
-        int lmax = GASVMain.LMAX;
-
-        boolean saveMemory = GASVMain.SAVE_MEMORY;
-        boolean fileDone = false;
-
-        //in fast mode, read PES from all chromosomes into memory at once
-        if( useFast ) {
-            breakRegions = new ArrayList[GASVMain.NUM_CHROM][GASVMain.NUM_CHROM];
-            if( useBatch ) {
-                readInput.readFiles( breakRegions );
-            } else {
-                readInput.readSingleFile( lmin, lmax, breakRegions );
-            }
-            fileDone = true;
-        }
-
-        for( int i = 0; i < GASVMain.NUM_CHROM; i++ ) {
-            chrx = i + 1;
-
-            for( int j = i; j < GASVMain.NUM_CHROM; j++ ) {
-				//ArrayList<BreakRegion> c = cs[i][j];
-                //int chrx = i+1; int chry = j+1;
-                chry = j + 1;
-
-                Out.print1( "ClusterESP: processing chr " + chrx + ", chr" + chry );
-
-                List<BreakRegion> c = null;
-                do {
-                    // will be either fast mode or window (saveMemory mode)
-                    if( useFast ) {
-                        c = breakRegions[i][j];
-                    } else {
-                        if( c == null ) {
-                            c = new ArrayList<>();
-                        }
-                        if( useBatch ) {
-                            fileDone = readInput.readWindowFromFiles( chrx,
-                                                                      chry, c );
-                        } else {
-                            fileDone = readInput.readWindowFromSingleFile( chrx,
-                                                                           chry, lmin, lmax, c );
-                        }
-                    }
-
-					//check each cluster in (i) to see if it is within Lmax of
-                    //the right-most cluster in i-1.  If so, check for actual overlap
-                    //with clusters in (i-1) and remove any (i-1) clusters that overlap it.
-                    //At the end of iteration i, output any remaining clusters from (i-1).
-
-                    if( c != null ) {
-                        if( !c.isEmpty() ) {
-                            Out.print2( "ClusterESP: Loaded " + c.size() +
-                                     " Break Regions for chr" +
-                                     chrx + ", chr" + chry );
-                        } else {
-                            Out.print2( "ClusterESP: Loaded 0" +
-                                     " Break Regions for chr" +
-                                     chrx + ", chr" + chry );
-                        }
-
-						//first go in forward direction. Pass true to indicate that
-                        // we are also computing candidate split reads
-                        clusterHelper( c, SAME, true );
-
-                        //NOW GOING THROUGH THE REVERSE DIRECTION!
-                        clusterHelper( c, DIFFERENT, true );
 
-                        c.clear();
-                    }//End c!= Null
-                    samePrevRightMostTrapEnd_ = sameRightMostTrapEnd_;
-                    diffPrevRightMostTrapEnd_ = diffRightMostTrapEnd_;
-                    sameRightMostTrapEnd_ = 0;
-                    diffRightMostTrapEnd_ = 0;
 
-                } while( saveMemory && !fileDone &&
-                         !readInput.getDiffChrPairReached() );
-
-				// reached the end of the input or the end of a chromosome,
-                // so can now safely output all clusters in the current window
-                // (usually there is a "delayed" write until the next window to
-                // ensure that no duplicates are found
-                // In the --fast case, only one giant window, so this final
-                // write will actually do all the work of writing everying.
-                writeClustersAndSplitReads( SAME );
-                writeClustersAndSplitReads( DIFFERENT );
-
-                // if no more ESP's, stop looking
-                if( fileDone ) {
-                    i = GASVMain.NUM_CHROM;
-                    j = GASVMain.NUM_CHROM;
-					//printAllCGHClusterEntries(maps);
-                    //clusterWriter_.flush();
-                    //clusterWriter_.close();
-                    //return;
-                }
-
-                //reset prev window variables to initial values
-                sameClusterList = null;
-                diffClusterList = null;
-                //}
-            }//End j;
-        }//End i;
-
-        clusterWriter_.flush();
-        clusterWriter_.close();
-		//sort (and aggregate duplicates for) the file
-        // will also take care of deleting the temp file
-        //sortAndPrintFinalFile(finalWriter);
-
-        if( !fileDone ) {
-            Out.print( "Warning: Finished looping through all possible Chr combinations, but did not finish the file." +
-                     " It's likely input files were not sorted correctly." );
-
-        }
+    /**
+     * The --noclusters mode will use this method as well, so make it package
+     * private rather than strictly private.
+     */
+    static void writeSingleCluster( String clusterName, Cluster curCluster, boolean isSplitReadOut,
+                                    GASVMain.GASV_OUTPUT_MODE outMode, BufferedWriter writer )
+            throws java.io.IOException {
+        writer.write( clusterName + "\t" );
+        writeClusterBody( curCluster, isSplitReadOut, outMode, writer );
     }
 
 
     /**
-     * The --noclusters mode will use this method as well, so make it package
-     * private rather than strictly private.
+     * Writes a single cluster without its name. Only depends on the cluster,
+     * so the clusters can be rendered in parallel.
      */
-    static void writeSingleCluster( String clusterName, Cluster curCluster, boolean isSplitReadOut, BufferedWriter writer )
+    private static void writeClusterBody( Cluster curCluster, boolean isSplitReadOut,
+                                          GASVMain.GASV_OUTPUT_MODE outMode, Writer writer )
             throws java.io.IOException {
         ArrayList<String> splitReads = null;
-        writer.write( clusterName + "\t" );
-        if( GASVMain.OUT_MODE == GASVMain.GASV_OUTPUT_MODE.REGIONS ) {
+        if( outMode == GASVMain.GASV_OUTPUT_MODE.REGIONS ) {
             writer.write( curCluster.getSize() + "\t" );
 
             boolean isCliqueWithNonZeroArea = false;
@@ -1789,7 +1556,7 @@ public class ClusterESP {
                 if( isSplitReadOut ) {
                     splitReads = curCluster.getSplitReads();
                 }
-                writer.write( df_.format( Math.sqrt( curCluster.getPoly().getArea() ) ) + "\t" );
+                writer.write( df_.get().format( Math.sqrt( curCluster.getPoly().getArea() ) ) + "\t" );
             } else {
                 writer.write( "-1\t" );
             }
@@ -1844,12 +1611,12 @@ public class ClusterESP {
             writer.write( curCluster.getSize() + "\t" );
 
             if( isCliqueWithNonZeroArea ) {
-                writer.write( df_.format( Math.sqrt( curCluster.getPoly().getArea() ) ) + "\t" );
+                writer.write( df_.get().format( Math.sqrt( curCluster.getPoly().getArea() ) ) + "\t" );
             } else {
                 writer.write( "-1\t" );
             }
             writer.write( printType( curCluster ) );
-            if( GASVMain.OUT_MODE == GASVMain.GASV_OUTPUT_MODE.READS ) {
+            if( outMode == GASVMain.GASV_OUTPUT_MODE.READS ) {
                 writer.write( "\t" + curCluster.clonesToStringNoSpaces() );
             }
 
@@ -0,0 +1,316 @@
+/**
+ * Copyright 2010 Benjamin Raphael, Suzanne Sindi, Hsin-Ta Wu, Anna Ritz, Luke
+ * Peng
+ * <p>
+ * This file is part of gasv.
+ * <p>
+ * gasv is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * <p>
+ * gasv is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * gasv. If not, see <http://www.gnu.org/licenses/>.
+ * <p>
+ */
+package gasv.main;
+
+import gasv.common.Out;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Class: ClusterESPPartition
+ * <p>
+ * Clusters the ESPs of one chromosome pair and one orientation ("same" or
+ * "different") window by window. The clusters of a window are kept until the
+ * next window has been clustered, because clusters overlapping the window
+ * boundary are merged into the next window. Partitions share no state, so
+ * different partitions can be clustered in parallel, while the windows of one
+ * partition have to be clustered one after another.
+ */
+class ClusterESPPartition {
+
+    private static final CloneComparator COMPARATOR = new CloneComparator();
+
+    private final int chrx;
+    private final int chry;
+    private final String direction;
+    private final GASVOptions options;
+
+    // values used for saving previous window state
+    private List<Cluster> prevClusterList = null;
+    private double prevRightMostTrapEnd = 0;
+    private double rightMostTrapEnd = 0;
+
+
+    /**
+     * Clusters the ESPs of one chromosome pair and one orientation.
+     * <p>
+     * @param chrx      left chromosome of the pair
+     * @param chry      right chromosome of the pair
+     * @param direction orientation of the clustered ESPs, as returned by
+     *                  Clone.getType()
+     * @param options   options of the GASV run
+     */
+    ClusterESPPartition( int chrx, int chry, String direction, GASVOptions options ) {
+        this.chrx = chrx;
+        this.chry = chry;
+        this.direction = direction;
+        this.options = options;
+    }
+
+
+    int getChrX() {
+        return chrx;
+    }
+
+
+    int getChrY() {
+        return chry;
+    }
+
+
+    String getDirection() {
+        return direction;
+    }
+
+
+    /**
+     * Clusters the ESPs of the next window. The clusters of the previous
+     * window, which overlap an ESP of this window, are dissolved and their
+     * ESPs are clustered again within this window.
+     * <p>
+     * @param c the ESPs of the next window. ESPs of other orientations are
+     *          ignored. The list is modified by this method.
+     * <p>
+     * @return The clusters of the previous window, which are final now and
+     *         can be written. Deleted clusters are <code>null</code>. Returns
+     *         <code>null</code> for the first window.
+     */
+    List<Cluster> clusterWindow( List<BreakRegion> c ) {
+
+		//if any of the current Clones in c overlap with previous clusters, remove those previous
+        //clusters (before they get written out), and add the associated clones instead to the
+        //current list, c.
+        checkForOverlapsWithPrevClusters( c );
+
+        List<Clone> cloneList = new ArrayList<>();
+        for( int k = 0; k < c.size(); k++ ) {
+            Clone c1 = (Clone) c.get( k );
+            if( c1.getType().equals( direction ) ) {
+				//keep track of the right most trapezoid boundary for this window
+                // If read start was negative (leftward oriented), then just change to positive
+                // But if read was positive the end of its trap would actually be the value + LMAX
+                // In case there are multiple lmax values specified for different files,
+                //	use the max lmax to be safe
+                double rightMostX = c1.getX();
+                if( rightMostX < 0 ) {
+                    rightMostX = -rightMostX;
+                } else {
+                    rightMostX += options.maxLmax;
+                }
+                if( rightMostX > rightMostTrapEnd ) {
+                    rightMostTrapEnd = rightMostX;
+                }
+
+				//need to make sure that any old clustering information (if carried over from a previous window)
+                // is cleared!!!
+                c1.setClusterID( -1 );
+                cloneList.add( c1 );
+            }
+        }
+        c.clear();
+
+        List<Cluster> curClusterList = cluster( cloneList );
+
+        // Go through clusters and determine whether each is a clique
+        for( int b = 0; b < curClusterList.size(); b++ ) {
+            Cluster curCluster = curClusterList.get( b );
+            //can ignore clusters larger than max cluster size
+            if( curCluster.getSize() <= options.maxClusterSize ) {
+                if( curCluster.getSize() <= options.maxCliqueSize ) {
+                    boolean isClique = ClusterESP.clique( curCluster, options.noReciprocalMode );
+					//this sets the boolean member variable and also initializes the cluster's
+                    //intersection polygon if it's a clique
+                    curCluster.setIsCliqueAndMakePoly( isClique );
+                } else {
+                    Out.print1( "Huge cluster of size " + curCluster.getSize() + " encountered, automatically assuming that it's NOT a clique!!" );
+                    curCluster.setIsCliqueAndMakePoly( false );
+                }
+            } else {
+                Out.print1( "Ignoring cluster exceeding max cluster size of " + options.maxClusterSize + " containing read: " + curCluster.getClones().get( 0 ) );
+                //delete clusters larger than the max cluster size
+                curClusterList.set( b, null );
+            }
+        }
+
+        // save the current clusters so that we can write them out after next window
+        List<Cluster> finishedClusters = prevClusterList;
+        prevClusterList = curClusterList;
+        prevRightMostTrapEnd = rightMostTrapEnd;
+        rightMostTrapEnd = 0;
+        return finishedClusters;
+    }
+
+
+    /**
+     * Finishes the partition after its last window.
+     * <p>
+     * @return The clusters of the last window, which can be written now.
+     *         Deleted clusters are <code>null</code>. Returns
+     *         <code>null</code>, if no window was clustered.
+     */
+    List<Cluster> finish() {
+        List<Cluster> finishedClusters = prevClusterList;
+        prevClusterList = null;
+        prevRightMostTrapEnd = 0;
+        rightMostTrapEnd = 0;
+        return finishedClusters;
+    }
+
+
+    /**
+     * Computes the connected components of the overlap graph of the given
+     * clones.
+     * <p>
+     * @param cloneList clones of this partition's orientation
+     * <p>
+     * @return The clusters of the clones
+     */
+    private List<Cluster> cluster( List<Clone> cloneList ) {
+		//this will be the list of clones completely unlabeled
+        //this will first be large, then shrink in size as more clones labeled
+        List<Clone> unlabeledClones = new ArrayList<>( cloneList );
+
+        //sort by bmin
+        Collections.sort( unlabeledClones, COMPARATOR );
+
+        //Explore Clusters;
+        List<Cluster> curClusterList = new ArrayList<>();
+        int label = -1;
+        while( unlabeledClones.size() > 0 ) {
+            Clone cloneN = unlabeledClones.remove( 0 );
+
+            label++;
+            cloneN.setClusterID( label );
+            Cluster tmpCluster = new Cluster( chrx, chry, options );
+            tmpCluster.addClone( cloneN );
+            curClusterList.add( tmpCluster );
+
+			//for every Clone, if it belongs to the current label cluster (at first, cluster
+            // will contain only the initial Clone) and it hasn't yet been visited...
+            List<Clone> tmpClusterClones = tmpCluster.getClones();
+            for( int m = 0; m < tmpClusterClones.size(); m++ ) {
+                Clone cloneM = tmpClusterClones.get( m );
+
+				//THIS IS THE "MEAT" OF THE CODE, WHERE THE GRAPH OF OVERLAPS IS COMPUTED
+                // ...then add all of its overlapping Clones to the current label
+                // cluster and mark it (but not the overlapping clones) as visited
+                // ...eventually those overlapping Clones will also be visited by
+                // this loop and the Overlaps of those Overlaps will also be added
+                // to the same cluster, if they are not already in it
+                for( int b = 0; b < unlabeledClones.size(); b++ ) {
+                    Clone cloneB = unlabeledClones.get( b );
+                    if( GASVMain.overlap( cloneM, cloneB, options.noReciprocalMode ) > 0 ) {
+                        cloneB.setClusterID( label );
+                        // no need to add to huge clusters that will be ignored
+                        if( tmpCluster.getSize() <= options.maxClusterSize ) {
+                            tmpCluster.addClone( cloneB );
+                        }
+                        //has been labeled, so remove from unlabeled
+                        unlabeledClones.remove( b );
+                        //need to decrement to look at same index next iteration
+                        --b;
+                    } else if( cloneB.getBmin() > cloneM.getBmax() ) {
+						//since unlabeledClones sorted by bmin, if current cloneB has
+                        //bmin beyond the bounds of cloneM, then none of the subsequent
+                        //cloneB's will be near cloneM either. Can stop looking for this
+                        //cloneM.
+                        if( options.noReciprocalMode ) {
+							//if non-reciprocal mode, can only take this shortcut
+                            // if they are the exact same orientations
+                            if( GASVMain.orientationsMatch( cloneB, cloneM ) ) {
+                                break;
+                            }
+
+                        } else {
+                            break;
+                        }
+                    }
+                }
+            }//End For
+
+        }//End Went through all clones;
+        return curClusterList;
+    }
+
+
+	//if any of the current Clones in c overlap with previous clusters, remove those previous
+    //clusters (before they get written out), and add the associated clones instead to the current list, c.
+    private void checkForOverlapsWithPrevClusters( List<BreakRegion> c ) {
+
+		//if the prev structures are null, we must've started a new chromosome pair, so no need to
+        //check for overlaps
+        if( prevClusterList == null ) {
+            return;
+        }
+        double bound = prevRightMostTrapEnd;
+
+        //use c_size rather than calling c.size() since will be adding to c within the loop
+        int c_size = c.size();
+        for( int k = 0; k < c_size; k++ ) {
+            Clone c1 = (Clone) c.get( k );
+            if( c1.getType().equals( direction ) ) {
+
+                //find the leftmost coordinate of current clone
+                double c1LeftMostX = c1.getX();
+                if( c1LeftMostX < 0 ) {
+                    c1LeftMostX = Math.abs( c1LeftMostX ) - options.maxLmax;
+                }
+
+                // only check those Clones where overlap is even possible
+                if( c1LeftMostX <= bound ) {
+					//for any overlap, remove the associated cluster from the
+                    //old data structure and add the cluster's Clones onto the end of c
+                    //Note that the Clones added to c won't be processed in this loop
+                    //since they'll be beyond c_size
+                    for( int i = 0; i < prevClusterList.size(); ++i ) {
+                        Cluster curCluster = prevClusterList.get( i );
+
+                        // only consider those clusters within overlap distance of c1
+                        if( curCluster != null &&
+                                 curCluster.getRightMostX() >= c1LeftMostX ) {
+                            List<Clone> curClones = curCluster.getClones();
+                            for( int j = 0; j < curClones.size(); ++j ) {
+                                Clone oldClone = curClones.get( j );
+                                if( oldClone != null && GASVMain.overlap( c1, oldClone, options.noReciprocalMode ) > 0 ) {
+                                    c.addAll( curClones );
+
+									//can't just remove otherwise indexes get
+                                    //screwed up, so delete by setting to null
+                                    prevClusterList.set( i, null );
+                                    //break out of this inner for loop
+                                    j = curClones.size();
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if( c.size() - c_size > 100 ) {
+            Out.print2( "ClusterESPPartition.checkForOverlapsWithPrevClusters() Added " + (c.size() - c_size) +
+                     " Break Regions from the previous window into the current window" );
+        }
+
+    }
+
+
+}
@@ -36,7 +36,8 @@ public class ConvertFileToPolygons {
     private static final String ESP_HEAD_REGIONS = "#Cluster_ID:\tNum PRS:\tLocalization:\tType:\tList of PRS:\t LeftChr:\tRightChr:\tBoundary Points:\n";
 
 
-    public static void convertFileToPolys( String inputFile, int lmin, int lmax, boolean useBatch, boolean useFast )
+    public static void convertFileToPolys( String inputFile, int lmin, int lmax, boolean useBatch, boolean useFast,
+                                           GASVOptions options )
             throws java.io.IOException, NullPointerException {
 
         String inFileNameMinusPath = inputFile;
@@ -45,33 +46,33 @@ public class ConvertFileToPolygons {
             inFileNameMinusPath = inputFile.substring( idxOfSlash + 1 );
         }
 
-        String fileName = GASVMain.OUTPUT_DIR + inFileNameMinusPath + ".noclusters";
+        String fileName = options.outputDir + inFileNameMinusPath + ".noclusters";
         File polyFile = new File( fileName );
         if( polyFile.exists() ) {
             polyFile.delete();
         }
         BufferedWriter polyWriter = new BufferedWriter( new FileWriter( polyFile ) );
 
-        if( GASVMain.USE_HEADER ) {
+        if( options.useHeader ) {
             String headerLine = ESP_HEAD_STD;
-            if( GASVMain.OUT_MODE == GASVMain.GASV_OUTPUT_MODE.REGIONS ) {
+            if( options.outMode == GASVMain.GASV_OUTPUT_MODE.REGIONS ) {
                 headerLine = ESP_HEAD_REGIONS;
-            } else if( GASVMain.OUT_MODE == GASVMain.GASV_OUTPUT_MODE.READS ) {
+            } else if( options.outMode == GASVMain.GASV_OUTPUT_MODE.READS ) {
                 headerLine = ESP_HEAD_READS;
-            } else if( GASVMain.OUT_MODE == GASVMain.GASV_OUTPUT_MODE.STANDARD ) {
+            } else if( options.outMode == GASVMain.GASV_OUTPUT_MODE.STANDARD ) {
                 headerLine = ESP_HEAD_STD;
             }
             polyWriter.write( headerLine );
         }
 
 
-        ReadInput readInput = new ReadInput( inputFile );
+        ReadInput readInput = new ReadInput( inputFile, options );
         List<BreakRegion>[][] breakRegions = null;
         boolean fileDone = false;
 
         //in fast mode, read PES from all chromosomes into memory at once
         if( useFast ) {
-            breakRegions = new ArrayList[GASVMain.NUM_CHROM][GASVMain.NUM_CHROM];
+            breakRegions = new ArrayList[options.numChrom][options.numChrom];
             if( useBatch ) {
                 readInput.readFiles( breakRegions );
             } else {
@@ -87,9 +88,9 @@ public class ConvertFileToPolygons {
         String cid = "c";
         String tab = "\t";
         String num_pes = "1\t";
-        boolean saveMemory = GASVMain.SAVE_MEMORY;
-        for( int i = 0; i < GASVMain.NUM_CHROM; i++ ) {
-            for( int j = i; j < GASVMain.NUM_CHROM; j++ ) {
+        boolean saveMemory = options.saveMemory;
+        for( int i = 0; i < options.numChrom; i++ ) {
+            for( int j = i; j < options.numChrom; j++ ) {
                 int chrx = i + 1;
                 int chry = j + 1;
                 Out.print1( "ConvertFileToPolygons: processing chr " + chrx + ", chr" + chry );
@@ -117,10 +118,10 @@ public class ConvertFileToPolygons {
                             Clone clone = (Clone) br;
                             ++count;
 
-                            Cluster curCluster = new Cluster( clone.getChrX(), clone.getChrY() );
+                            Cluster curCluster = new Cluster( clone.getChrX(), clone.getChrY(), options );
                             curCluster.addClone( clone );
                             curCluster.setIsCliqueAndMakePoly( true );
-                            ClusterESP.writeSingleCluster( cid + count, curCluster, false, polyWriter );
+                            ClusterESP.writeSingleCluster( cid + count, curCluster, false, options.outMode, polyWriter );
 
                         } else {
                             Out.print( "ConvertFileToPolygons: Error! Unrecognized " + "BreakRegion type: " + br );
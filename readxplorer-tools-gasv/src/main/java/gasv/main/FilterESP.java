@@ -41,33 +41,33 @@ public class FilterESP {
     private static final InputOutput IO = GASVCaller.IO;
 
 
-    public static void filterESP( String refFile, String targetFile ) throws IOException, CloneNotSupportedException, NullPointerException {
+    public static void filterESP( String refFile, String targetFile, GASVOptions options ) throws IOException, CloneNotSupportedException, NullPointerException {
 
         List<BreakRegion> cLocal = new ArrayList<>();
 
-        ReadInput Kidd = new ReadInput( refFile );
+        ReadInput Kidd = new ReadInput( refFile, options );
 
         IO.getOut().println( "Reference ESP File: " + refFile );
 
-        ReadInput WashU = new ReadInput( targetFile );
+        ReadInput WashU = new ReadInput( targetFile, options );
 
         List<BreakRegion>[][] breakRegionsK = null;
         List<BreakRegion>[][] breakRegionsW = null;
-        int lminKidd = GASVMain.LMIN;
-        int lmaxKidd = GASVMain.LMAX;
-        int lminWashU = GASVMain.LMIN2;
-        int lmaxWashU = GASVMain.LMAX2;
-
-        boolean useFast = GASVMain.USE_FAST;
-        boolean useBatch = GASVMain.USE_BATCH;
-        boolean saveMemory = GASVMain.SAVE_MEMORY;
+        int lminKidd = options.lmin;
+        int lmaxKidd = options.lmax;
+        int lminWashU = options.lmin2;
+        int lmaxWashU = options.lmax2;
+
+        boolean useFast = options.useFast;
+        boolean useBatch = options.useBatch;
+        boolean saveMemory = options.saveMemory;
         boolean washuDone = false;
         boolean kiddDone = false;
 
         //in fast mode, read PES from all chromosomes into memory at once
         if( useFast ) {
-            breakRegionsK = new ArrayList[GASVMain.NUM_CHROM][GASVMain.NUM_CHROM];
-            breakRegionsW = new ArrayList[GASVMain.NUM_CHROM][GASVMain.NUM_CHROM];
+            breakRegionsK = new ArrayList[options.numChrom][options.numChrom];
+            breakRegionsW = new ArrayList[options.numChrom][options.numChrom];
             if( useBatch ) {
                 Kidd.readFiles( breakRegionsK );
                 WashU.readFiles( breakRegionsW );
@@ -88,8 +88,8 @@ public class FilterESP {
         }
         //ArrayList<BreakRegion> [][] WashU_CS = WashU.readFiles();
 
-        String retained = GASVMain.OUTPUT_DIR + washUNameMinusPath + ".retained";
-        String removed = GASVMain.OUTPUT_DIR + washUNameMinusPath + ".removed";
+        String retained = options.outputDir + washUNameMinusPath + ".retained";
+        String removed = options.outputDir + washUNameMinusPath + ".removed";
 
         File retainedFile = new File( retained );
         File removedFile = new File( removed );
@@ -101,7 +101,7 @@ public class FilterESP {
         }
         BufferedWriter retainedWriter = new BufferedWriter( new FileWriter( retainedFile ) );
         BufferedWriter removedWriter = new BufferedWriter( new FileWriter( removedFile ) );
-        if( GASVMain.USE_HEADER ) {
+        if( options.useHeader ) {
             String headerLine = "# Name:\t    Left Chr:  Left Start:    Left End:  Left Orient: Right Chr:  Right Start:  Right End:  Right Orient:\n";
 
             retainedWriter.write( headerLine );
@@ -134,8 +134,8 @@ public class FilterESP {
 
         int k = 0;
 
-        for( int i = 0; i < GASVMain.NUM_CHROM; i++ ) {
-            for( int j = i; j < GASVMain.NUM_CHROM; j++ ) {
+        for( int i = 0; i < options.numChrom; i++ ) {
+            for( int j = i; j < options.numChrom; j++ ) {
                 int chrx = i + 1;
                 int chry = j + 1;
 				//ArrayList<BreakRegion> d = Kidd_CS[i][j];
@@ -248,7 +248,7 @@ public class FilterESP {
 
                         for( int n1 = 0; n1 < numClones; n1++ ) {
                             for( int n2 = 0; n2 < numKiddClones; n2++ ) {
-                                if( GASVMain.overlap( cloneList.get( n1 ), cloneListKidd.get( n2 ) ) > 0 ) {
+                                if( GASVMain.overlap( cloneList.get( n1 ), cloneListKidd.get( n2 ), options.noReciprocalMode ) > 0 ) {
                                     //cloneOverlaps.get(n1).add(n2);
                                     cloneOverlaps.get( n1 ).set( true );
                                 }
@@ -314,7 +314,7 @@ public class FilterESP {
 
                         for( int n1 = 0; n1 < numClones; n1++ ) {
                             for( int n2 = 0; n2 < numKiddClones; n2++ ) {
-                                if( GASVMain.overlap( cloneList.get( n1 ), cloneListKidd.get( n2 ) ) > 0 ) {
+                                if( GASVMain.overlap( cloneList.get( n1 ), cloneListKidd.get( n2 ), options.noReciprocalMode ) > 0 ) {
                                     //cloneOverlaps.get(n1).add(n2);
                                     cloneOverlaps.get( n1 ).set( true );
                                 }
@@ -372,7 +372,7 @@ public class FilterESP {
             Out.print( "WARNING: Finished looping through all possible Chr combinations, but didn't make it" +
                      " through all input files! The inputs files are either not sorted " +
                      "properly or have additional data with chromosome number > " +
-                     GASVMain.NUM_CHROM + "!" );
+                     options.numChrom + "!" );
         }
     }
 
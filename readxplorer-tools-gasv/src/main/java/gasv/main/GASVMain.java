@@ -25,6 +25,7 @@ import gasv.common.Constants;
 import gasv.common.Out;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 import org.openide.windows.InputOutput;
 
 
@@ -32,42 +33,11 @@ public class GASVMain {
 
     private static final InputOutput IO = GASVCaller.IO;
 
-    public static boolean USE_HEADER = true;
-    public static boolean USE_PAIRED_CGH = false;
-    public static String OUTPUT_DIR = "";
-    public static int LMIN = -1;
-    public static int LMAX = -1;
-    public static int LMIN2 = -1;
-    public static int LMAX2 = -1;
-
-	// If running in "window" mode, and filtering...
-    // Since there are two LMAX values, one for cancer and one for normal,
-    // 	need to pick one (the bigger one) on which to base WIN_SIZE
-    //	since filtering needs to move in lock-step with the same windows
-    public static int MAX_LMAX = -1;
-
-    public static boolean USE_BATCH = false;
-    public static boolean USE_FAST = false;
-    public static boolean SAVE_MEMORY = true;
-    public static boolean FIND_SPLIT_READS = false;
-    public static int MIN_CLUSTER_SIZE = Constants.DEFAULT_MIN_CLUSTER_SIZE; //-1;
-    public static int MAX_CLUSTER_SIZE = Integer.MAX_VALUE;
-    public static int MAX_CLIQUE_SIZE = Integer.MAX_VALUE;
-    public static int MAX_READS_PER_WIN = Integer.MAX_VALUE;
-    public static boolean USE_MAXIMAL = false;
-    public static int READ_LENGTH = -1;
-    public static boolean USE_ALL = false;
-    public static boolean NORECIPROCAL_MODE = false;
-
-    public static int NUM_CHROM = 24;
-
-
     public enum GASV_OUTPUT_MODE {
 
         STANDARD, READS, REGIONS
 
     }
-    public static GASV_OUTPUT_MODE OUT_MODE = GASV_OUTPUT_MODE.STANDARD;
 
     //public static int CHR = -1;
 
@@ -104,9 +74,9 @@ public class GASVMain {
     }
 
 
-    static int overlap( Clone Clone1, Clone Clone2 ) {
+    static int overlap( Clone Clone1, Clone Clone2, boolean noReciprocalMode ) {
         //Note: If in --noreciprocal mode, orientations much match in order for overlap to be true!
-        if( GASVMain.NORECIPROCAL_MODE ) {
+        if( noReciprocalMode ) {
             if( !GASVMain.orientationsMatch( Clone1, Clone2 ) ) {
                 return 0;
             }
@@ -245,6 +215,7 @@ public class GASVMain {
         IO.getOut().println( "--minClusterSize <val>   Predictions with less than <val> fragments are ignored (integer) (Default: 4)" );
         IO.getOut().println( "--fast                   Increases the memory usage by GASV, for faster computing, but risks OutOfMemory errors" );
         IO.getOut().println( "--numChrom       <val>   Specify the number of chromosomes in this genome (integer) (Default: 24)" );
+        IO.getOut().println( "--threads        <val>   Number of threads used for clustering the chromosome pairs (integer) (Default: number of processors)" );
         IO.getOut().println( "--batch          <file>  Batch clustering of multiple files of PRs. Input file(s) are lists of PR file(s)" );
 
         IO.getOut().println( "--nonreciprocal             Only PRs with the same orientations will be clustered together." );
@@ -343,7 +314,7 @@ public class GASVMain {
      * Special Handling of: 1) help option 2) assumption of default cluster
      * mode.
      */
-    private static int parseOptions( String[] args ) throws IllegalArgumentException {
+    private static int parseOptions( String[] args, GASVOptions options ) throws IllegalArgumentException {
         int count = 0;
 
         //skip the first since that is the <mode> option of either -f or -c
@@ -352,12 +323,12 @@ public class GASVMain {
 
             if( args[i].startsWith( "--" ) ) {
                 if( args[i].equals( "--nohead" ) ) {
-                    USE_HEADER = false;
+                    options.useHeader = false;
                     ++count;
                 } else if( args[i].equals( "--outputdir" ) ) {
                     //next token should be the output directory
-                    GASVMain.OUTPUT_DIR = args[i + 1];
-                    java.io.File dir = new File( GASVMain.OUTPUT_DIR );
+                    options.outputDir = args[i + 1];
+                    java.io.File dir = new File( options.outputDir );
                     if( !dir.exists() ) {
                         throw new IllegalArgumentException(
                                 "Output dir doesn't exist: " +
@@ -370,15 +341,15 @@ public class GASVMain {
                     }
 
                     //add trailing '/' if not already there
-                    if( !GASVMain.OUTPUT_DIR.endsWith( "/" ) ) {
-                        GASVMain.OUTPUT_DIR += "/";
+                    if( !options.outputDir.endsWith( "/" ) ) {
+                        options.outputDir += "/";
                     }
                     ++i;
                     count += 2;
                 } else if( args[i].equals( "--lmin" ) ) {
                     //next token should be the value of lmin
                     try {
-                        GASVMain.LMIN = Integer.parseInt( args[i + 1] );
+                        options.lmin = Integer.parseInt( args[i + 1] );
                     } catch( NumberFormatException ex ) {
 						//Out.print("Couldn't parse lmin value: " + args[i+1]
                         //		+ " so using default lmin=" + Constants.DEFAULT_LMIN);
@@ -389,7 +360,7 @@ public class GASVMain {
                 } else if( args[i].equals( "--lmax" ) ) {
                     //next token should be the value of lmax
                     try {
-                        GASVMain.LMAX = Integer.parseInt( args[i + 1] );
+                        options.lmax = Integer.parseInt( args[i + 1] );
                     } catch( NumberFormatException ex ) {
 						//Out.print("Couldn't parse lmax value: " + args[i+1]
                         //		+ " so using default lmax=" + Constants.DEFAULT_LMAX);
@@ -400,7 +371,7 @@ public class GASVMain {
                 } else if( args[i].equals( "--lmin2" ) ) {
                     //next token should be the value of lmin2
                     try {
-                        GASVMain.LMIN2 = Integer.parseInt( args[i + 1] );
+                        options.lmin2 = Integer.parseInt( args[i + 1] );
                     } catch( NumberFormatException ex ) {
 						//Out.print("Couldn't parse lmin2 value: " + args[i+1]
                         //		+ " so using default lmin2=" + Constants.DEFAULT_LMIN);
@@ -411,7 +382,7 @@ public class GASVMain {
                 } else if( args[i].equals( "--lmax2" ) ) {
                     //next token should be the value of lmax2
                     try {
-                        GASVMain.LMAX2 = Integer.parseInt( args[i + 1] );
+                        options.lmax2 = Integer.parseInt( args[i + 1] );
                     } catch( NumberFormatException ex ) {
 						//Out.print("Couldn't parse lmax2 value: " + args[i+1]
                         //		+ " so using default lmax2=" + Constants.DEFAULT_LMAX);
@@ -431,22 +402,22 @@ public class GASVMain {
                     ++count;
 
                 } else if( args[i].equals( "--batch" ) ) {
-                    GASVMain.USE_BATCH = true;
+                    options.useBatch = true;
                     ++count;
                 } else if( args[i].equals( "--fast" ) ) {
-                    GASVMain.USE_FAST = true;
-                    GASVMain.SAVE_MEMORY = false;
+                    options.useFast = true;
+                    options.saveMemory = false;
                     ++count;
                 } else if( args[i].equals( "--paired" ) ) {
-                    USE_PAIRED_CGH = true;
+                    options.usePairedCGH = true;
                     ++count;
                 } else if( args[i].equals( "--split" ) ) {
-                    FIND_SPLIT_READS = true;
+                    options.findSplitReads = true;
                     ++count;
                 } else if( args[i].equals( "--readlength" ) ) {
                     //next token should be the value of lmax2
                     try {
-                        GASVMain.READ_LENGTH = Integer.parseInt( args[i + 1] );
+                        options.readLength = Integer.parseInt( args[i + 1] );
                     } catch( NumberFormatException ex ) {
                         Out.print( "Couldn't parse --readlength value: " + args[i + 1] +
                                  " so ignoring this option." );
@@ -457,7 +428,7 @@ public class GASVMain {
                 } else if( args[i].equals( "--minClusterSize" ) ) {
                     //next token should be the value of min cluster size
                     try {
-                        GASVMain.MIN_CLUSTER_SIZE = Integer.parseInt( args[i + 1] );
+                        options.minClusterSize = Integer.parseInt( args[i + 1] );
                     } catch( NumberFormatException ex ) {
                         Out.print( "Couldn't parse --minClusterSize value: " + args[i + 1] +
                                  " so ignoring this option." );
@@ -468,7 +439,7 @@ public class GASVMain {
                 } else if( args[i].equals( "--maxClusterSize" ) ) {
                     //next token should be the value of max cluster size
                     try {
-                        GASVMain.MAX_CLUSTER_SIZE = Integer.parseInt( args[i + 1] );
+                        options.maxClusterSize = Integer.parseInt( args[i + 1] );
                     } catch( NumberFormatException ex ) {
                         Out.print( "Couldn't parse --maxClusterSize value: " + args[i + 1] +
                                  " so ignoring this option." );
@@ -480,7 +451,7 @@ public class GASVMain {
                 } else if( args[i].equals( "--maxCliqueSize" ) ) {
                     //next token should be the value of max cluster size
                     try {
-                        GASVMain.MAX_CLIQUE_SIZE = Integer.parseInt( args[i + 1] );
+                        options.maxCliqueSize = Integer.parseInt( args[i + 1] );
                     } catch( NumberFormatException ex ) {
                         Out.print( "Couldn't parse --maxCliqueSize value: " + args[i + 1] +
                                  " so ignoring this option." );
@@ -491,7 +462,7 @@ public class GASVMain {
                 } else if( args[i].equals( "--maxPairedEndsPerWin" ) ) {
                     //next token should be the value of max cluster size
                     try {
-                        GASVMain.MAX_READS_PER_WIN = Integer.parseInt( args[i + 1] );
+                        options.maxReadsPerWin = Integer.parseInt( args[i + 1] );
                     } catch( NumberFormatException ex ) {
                         Out.print( "Couldn't parse --maxPairedEndsPerWin value: " + args[i + 1] +
                                  " so ignoring this option." );
@@ -502,7 +473,7 @@ public class GASVMain {
                 } else if( args[i].equals( "--numChrom" ) ) {
                     //next token should be the number of chromosomes in use
                     try {
-                        NUM_CHROM = Integer.parseInt( args[i + 1] );
+                        options.numChrom = Integer.parseInt( args[i + 1] );
                     } catch( NumberFormatException ex ) {
                         Out.print( "Couldn't parse --numChrom value: " + args[i + 1] +
                                  " so ignoring this option." );
@@ -511,15 +482,31 @@ public class GASVMain {
                     ++i;
                     count += 2;
 
+                } else if( args[i].equals( "--threads" ) ) {
+                    //next token should be the number of clustering threads
+                    try {
+                        options.numThreads = Integer.parseInt( args[i + 1] );
+                    } catch( NumberFormatException ex ) {
+                        Out.print( "Couldn't parse --threads value: " + args[i + 1] +
+                                 " so ignoring this option." );
+                        throw new IllegalArgumentException( args[i + 1] );
+                    }
+                    if( options.numThreads < 1 ) {
+                        Out.print( "ERROR: --threads value must be at least 1." );
+                        throw new IllegalArgumentException( "--threads" );
+                    }
+                    ++i;
+                    count += 2;
+
                 } else if( args[i].equals( "--output" ) ) {
                     //next token should be the desired output mode
                     String mode = args[i + 1];
                     if( mode.equalsIgnoreCase( "standard" ) ) {
-                        OUT_MODE = GASV_OUTPUT_MODE.STANDARD;
+                        options.outMode = GASV_OUTPUT_MODE.STANDARD;
                     } else if( mode.equalsIgnoreCase( "reads" ) ) {
-                        OUT_MODE = GASV_OUTPUT_MODE.READS;
+                        options.outMode = GASV_OUTPUT_MODE.READS;
                     } else if( mode.equalsIgnoreCase( "regions" ) ) {
-                        OUT_MODE = GASV_OUTPUT_MODE.REGIONS;
+                        options.outMode = GASV_OUTPUT_MODE.REGIONS;
                     } else {
                         Out.print( "Couldn't parse --output value: " + mode );
                         throw new IllegalArgumentException( args[i + 1] );
@@ -529,11 +516,11 @@ public class GASVMain {
 
 
                 } else if( args[i].equals( "--maximal" ) ) {
-                    USE_MAXIMAL = true;
+                    options.useMaximal = true;
                     ++count;
 
                 } else if( args[i].equals( "--noreciprocal" ) || args[i].equals( "--nonreciprocal" ) ) {
-                    GASVMain.NORECIPROCAL_MODE = true;
+                    options.noReciprocalMode = true;
                     ++count;
 
                 } else {
@@ -546,28 +533,28 @@ public class GASVMain {
             }
         }
 
-        if( !GASVMain.USE_BATCH ) {
-            if( LMIN < 0 ) {
+        if( !options.useBatch ) {
+            if( options.lmin < 0 ) {
                 Out.print( "Warning: no --lmin specified so using " +
                          " default value of " + Constants.DEFAULT_LMIN );
-                LMIN = Constants.DEFAULT_LMIN;
+                options.lmin = Constants.DEFAULT_LMIN;
             }
-            if( LMAX < 0 ) {
+            if( options.lmax < 0 ) {
                 Out.print( "Warning: no --lmax specified so using" +
                          " default value of " + Constants.DEFAULT_LMAX );
-                LMAX = Constants.DEFAULT_LMAX;
+                options.lmax = Constants.DEFAULT_LMAX;
             }
 
             if( args.length > 0 && (args[0].equals( "--filter" ) || args[0].equals( "-f" )) ) {
-                if( LMIN2 < 0 ) {
+                if( options.lmin2 < 0 ) {
                     Out.print( "Warning: no --lmin2 specified in filter mode so using " +
                              " default value of " + Constants.DEFAULT_LMIN );
-                    LMIN2 = Constants.DEFAULT_LMIN;
+                    options.lmin2 = Constants.DEFAULT_LMIN;
                 }
-                if( LMAX2 < 0 ) {
+                if( options.lmax2 < 0 ) {
                     Out.print( "Warning: no --lmax2 specified in filter mode so using" +
                              " default value of " + Constants.DEFAULT_LMAX );
-                    LMAX2 = Constants.DEFAULT_LMAX;
+                    options.lmax2 = Constants.DEFAULT_LMAX;
                 }
             }
 
@@ -575,14 +562,14 @@ public class GASVMain {
             // Since there are two LMAX values, one for cancer and one for normal,
             // 	need to pick one (the bigger one) on which to base WIN_SIZE
             //	since filtering needs to move in lock-step with the same windows
-            if( LMAX > LMAX2 ) {
-                MAX_LMAX = LMAX;
+            if( options.lmax > options.lmax2 ) {
+                options.maxLmax = options.lmax;
             } else {
-                MAX_LMAX = LMAX2;
+                options.maxLmax = options.lmax2;
             }
         }
-        if( FIND_SPLIT_READS ) {
-            if( READ_LENGTH < 1 ) {
+        if( options.findSplitReads ) {
+            if( options.readLength < 1 ) {
                 Out.print( "ERROR: must specify a --readlength value if using --split option." );
                 throw new IllegalArgumentException( "--split" );
             }
@@ -591,8 +578,20 @@ public class GASVMain {
     }
 
 
+    /**
+     * Runs GASV with the given command line arguments. Each run parses its own
+     * GASVOptions, so concurrent runs in the same JVM do not interfere. The
+     * chromosome pairs of a run are clustered in parallel by --threads
+     * threads.
+     * <p>
+     * @param args command line arguments
+     * <p>
+     * @throws IOException
+     * @throws CloneNotSupportedException
+     * @throws NullPointerException
+     */
     public static void main( String[] args ) throws IOException, CloneNotSupportedException, NullPointerException {
-
+        GASVOptions options = new GASVOptions();
         GASV_MODE mode = null;
 
         /*
@@ -623,7 +622,7 @@ public class GASVMain {
         /*
          * Process arguments as normal.
          */
-        int numOpts = parseOptions( args );
+        int numOpts = parseOptions( args, options );
         int numArgsNoOpts = args.length - numOpts;
 
         //Error Checking: Too few or too many arguments.
@@ -642,17 +641,17 @@ public class GASVMain {
                 String[] newArgs = new String[2];
                 copyArgsExceptFirstX( numOpts + 1, args, newArgs );
 
-                if( GASVMain.USE_BATCH && GASVMain.SAVE_MEMORY ) {
+                if( options.useBatch && options.saveMemory ) {
                     // If in window mode AND batch mode, will be multiple LMAX's so find the max
                     int lmax1 = ReadInput.findMaxLmaxInBatchFile( newArgs[0] );
                     int lmax2 = ReadInput.findMaxLmaxInBatchFile( newArgs[1] );
                     if( lmax1 > lmax2 ) {
-                        GASVMain.MAX_LMAX = lmax1;
+                        options.maxLmax = lmax1;
                     } else {
-                        GASVMain.MAX_LMAX = lmax2;
+                        options.maxLmax = lmax2;
                     }
                 }
-                FilterESP.filterESP( newArgs[0], newArgs[1] );
+                FilterESP.filterESP( newArgs[0], newArgs[1], options );
             } else {
                 IO.getOut().println( "ERROR: Missing required arguments in --filter mode." );
                 printUsage();
@@ -663,14 +662,19 @@ public class GASVMain {
             if( numArgsNoOpts == 2 ) {
                 String[] newArgs = new String[1];
                 copyArgsExceptFirstX( numOpts + 1, args, newArgs );
-                if( GASVMain.USE_BATCH && GASVMain.SAVE_MEMORY ) {
+                if( options.useBatch && options.saveMemory ) {
                     // If in window mode AND batch mode, will be multiple LMAX's so find the max
-                    GASVMain.MAX_LMAX = ReadInput.findMaxLmaxInBatchFile( newArgs[0] );
+                    options.maxLmax = ReadInput.findMaxLmaxInBatchFile( newArgs[0] );
                 }
-                if( FIND_SPLIT_READS ) {
-                    ClusterESP.clusterESPAndFindSplitReads( newArgs[0] );
-                } else {
-                    ClusterESP.clusterESP( newArgs[0] );
+                ForkJoinPool pool = new ForkJoinPool( options.numThreads );
+                try {
+                    if( options.findSplitReads ) {
+                        new ClusterESP( options, pool ).clusterESPAndFindSplitReads( newArgs[0] );
+                    } else {
+                        new ClusterESP( options, pool ).clusterESP( newArgs[0] );
+                    }
+                } finally {
+                    pool.shutdownNow();
                 }
             } else {
                 IO.getOut().println( "ERROR: Too many arguments provided in --cluster mode." );
@@ -681,11 +685,11 @@ public class GASVMain {
             if( numArgsNoOpts == 3 ) {
                 String[] newArgs = new String[2];
                 copyArgsExceptFirstX( numOpts + 1, args, newArgs );
-                if( GASVMain.USE_BATCH && GASVMain.SAVE_MEMORY ) {
+                if( options.useBatch && options.saveMemory ) {
                     // If in window mode AND batch mode, will be multiple LMAX's so find the max
-                    GASVMain.MAX_LMAX = ReadInput.findMaxLmaxInBatchFile( newArgs[0] );
+                    options.maxLmax = ReadInput.findMaxLmaxInBatchFile( newArgs[0] );
                 }
-                ClusterESP.clusterESPAndCGH( newArgs[0], newArgs[1] );
+                new ClusterESP( options ).clusterESPAndCGH( newArgs[0], newArgs[1] );
             } else {
                 IO.getOut().println( "ERROR: Too many arguments provided in --cgh mode." );
                 printUsage();
@@ -696,10 +700,10 @@ public class GASVMain {
                 String[] newArgs = new String[1];
                 copyArgsExceptFirstX( numOpts + 1, args, newArgs );
 
-                if( GASVMain.USE_BATCH && GASVMain.SAVE_MEMORY ) {
-                    GASVMain.MAX_LMAX = ReadInput.findMaxLmaxInBatchFile( newArgs[0] );
+                if( options.useBatch && options.saveMemory ) {
+                    options.maxLmax = ReadInput.findMaxLmaxInBatchFile( newArgs[0] );
                 }
-                ConvertFileToPolygons.convertFileToPolys( newArgs[0], GASVMain.LMIN, GASVMain.LMAX, GASVMain.USE_BATCH, GASVMain.USE_FAST );
+                ConvertFileToPolygons.convertFileToPolys( newArgs[0], options.lmin, options.lmax, options.useBatch, options.useFast, options );
             } else {
                 IO.getOut().println( "ERROR: Too many arguments provided in --nocluster mode." );
                 printUsage();
@@ -0,0 +1,66 @@
+
+/**
+ * Copyright 2010 Benjamin Raphael, Suzanne Sindi, Hsin-Ta Wu, Anna Ritz, Luke
+ * Peng
+ * <p>
+ * This file is part of gasv.
+ * <p>
+ * gasv is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * <p>
+ * gasv is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * gasv. If not, see <http://www.gnu.org/licenses/>.
+ * <p>
+ */
+package gasv.main;
+
+import gasv.common.Constants;
+
+
+/**
+ * The options of a single GASV run. Each run of GASVMain parses its own
+ * options, which are handed to all classes of the run, so several runs can
+ * proceed in the same JVM at the same time.
+ */
+public class GASVOptions {
+
+    public boolean useHeader = true;
+    public boolean usePairedCGH = false;
+    public String outputDir = "";
+    public int lmin = -1;
+    public int lmax = -1;
+    public int lmin2 = -1;
+    public int lmax2 = -1;
+
+	// If running in "window" mode, and filtering...
+    // Since there are two LMAX values, one for cancer and one for normal,
+    // 	need to pick one (the bigger one) on which to base WIN_SIZE
+    //	since filtering needs to move in lock-step with the same windows
+    public int maxLmax = -1;
+
+    public boolean useBatch = false;
+    public boolean useFast = false;
+    public boolean saveMemory = true;
+    public boolean findSplitReads = false;
+    public int minClusterSize = Constants.DEFAULT_MIN_CLUSTER_SIZE; //-1;
+    public int maxClusterSize = Integer.MAX_VALUE;
+    public int maxCliqueSize = Integer.MAX_VALUE;
+    public int maxReadsPerWin = Integer.MAX_VALUE;
+    public boolean useMaximal = false;
+    public int readLength = -1;
+    public boolean useAll = false;
+    public boolean noReciprocalMode = false;
+
+    public int numChrom = 24;
+    public int numThreads = Runtime.getRuntime().availableProcessors();
+
+    public GASVMain.GASV_OUTPUT_MODE outMode = GASVMain.GASV_OUTPUT_MODE.STANDARD;
+
+
+}
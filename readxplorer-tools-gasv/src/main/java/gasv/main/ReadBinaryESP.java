@@ -0,0 +1,207 @@
+/**
+ * Copyright 2010 Benjamin Raphael, Suzanne Sindi, Hsin-Ta Wu, Anna Ritz, Luke
+ * Peng
+ * <p>
+ * This file is part of gasv.
+ * <p>
+ * gasv is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * <p>
+ * gasv is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * gasv. If not, see <http://www.gnu.org/licenses/>.
+ * <p>
+ */
+package gasv.main;
+
+import gasv.common.BinaryESP;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * ReadBinaryESP reads ESPs in the binary ESP format, either from a memory
+ * mapped file or from ESPs registered in memory by BAMToGASV. The ESPs are
+ * turned into trapezoids exactly like the ESPs of a text file read by ReadESP,
+ * but without splitting lines and parsing numbers.
+ */
+public class ReadBinaryESP extends ReadESP {
+
+    private final BinaryESP.Reader reader_;
+    private boolean started_ = false;
+    private boolean hasRecord_ = false;
+    private boolean closed_ = false;
+
+
+    public ReadBinaryESP( String file, int min, int max,
+                          List<BreakRegion> breakRegions, int windowSize, GASVOptions options ) throws IOException {
+        super( file, min, max, breakRegions, windowSize, options, false );
+        reader_ = BinaryESP.open( file );
+    }
+
+
+    /**
+     * In this version of readBreakRegions(), all clones are read into memory in
+     * one pass and stored in the provided 2D Array of ArrayList<breakRegions>
+     */
+    @Override
+    public void readBreakRegions( List<BreakRegion>[][] breakRegionsArray ) throws IOException {
+        readBreakRegions( -1, -1, breakRegionsArray );
+    }
+
+
+    /**
+     * Read in clones from the file into an ArrayList. Only read in those clones
+     * that match the specified targetLeftChr and targetRightChr
+     */
+    @Override
+    public void readBreakRegions( int targetLeftChr, int targetRightChr ) throws IOException {
+        readBreakRegions( targetLeftChr, targetRightChr, null );
+    }
+
+
+    /**
+     * Read in clones from the file's current position into an ArrayList. Only
+     * read in those clones that match the specified targetLeftChr and
+     * targetRightChr and are within the current window as specified by the
+     * endWindowPos. Upon encountering a clone that doesn't meet the criteria,
+     * method returns immediately.
+     * <p>
+     * Return true if end of file reached, otherwise returns false.
+     */
+    @Override
+    public boolean readNextBreakRegions( int targetLeftChr, int targetRightChr,
+                                         List<BreakRegion> br, int endWindowPos, boolean startNewChr ) throws IOException {
+
+        startWindow( endWindowPos, startNewChr );
+        if( closed_ ) {
+            return true;
+        }
+		// only need to do this the first time through. After that, the current
+        // ESP of the reader either matches this next chr pair or belongs to this new window
+        if( !started_ ) {
+            hasRecord_ = reader_.next();
+            started_ = true;
+        }
+        int numClonesInWin = 0;
+        //will break out of this loop when first ESP outside of the current window is encountered
+        while( hasRecord_ ) {
+
+            Clone c;
+            try {
+                c = this.parseCurrentClone( targetLeftChr, targetRightChr, true, true );
+            } catch( Exception ex ) {
+                //overlapping or concordant ESP, already counted, so just skip it
+                hasRecord_ = reader_.next();
+                continue;
+            }
+
+			// If c is null we either reached a read on different chromosomes or a read that is beyond
+            // the current window, but we haven't reached the end of the file yet, so return false
+            if( c == null ) {
+                return false;
+            }
+
+            if( numClonesInWin < options.maxReadsPerWin ) {
+                br.add( c );
+                ++numClonesInWin;
+            } else {
+                br.clear();
+            }
+
+            hasRecord_ = reader_.next();
+        }
+
+        close();
+        return true;
+    }
+
+
+    /**
+     * Read in clones from the file into an ArrayList. If breakRegionsArray is
+     * null, only read in those clones that match the specified targetLeftChr
+     * and targetRightChr. Else if breakRegionsArray is not null, ignore the
+     * chromosome numbers and just put all break regions into the provided 2D
+     * array.
+     */
+    private void readBreakRegions( int targetLeftChr, int targetRightChr,
+                                   List<BreakRegion>[][] breakRegionsArray ) throws IOException {
+
+        boolean matchChromosomes = breakRegionsArray == null;
+        while( !closed_ && reader_.next() ) {
+            Clone c;
+            try {
+                c = this.parseCurrentClone( targetLeftChr, targetRightChr, false, matchChromosomes );
+            } catch( Exception ex ) {
+                continue;
+            }
+
+            // If c is null we reached a read on different chromosomes, so skip it and keep going
+            if( c == null ) {
+                continue;
+            }
+
+            if( breakRegionsArray == null ) {
+                clones.add( c );
+            } else {
+                int x = c.getChrX() - 1;
+                int y = c.getChrY() - 1;
+                if( breakRegionsArray[x][y] == null ) {
+                    breakRegionsArray[x][y] = new ArrayList<>();
+                }
+                breakRegionsArray[x][y].add( c );
+            }
+        }
+        close();
+    }
+
+
+    /**
+     * Creates the clone of the current ESP of the reader. Returns null, if the
+     * ESP is on a different chromosome pair or lies outside of the current
+     * window.
+     */
+    private Clone parseCurrentClone( int targetLeftChr, int targetRightChr,
+                                     boolean useWindowSize, boolean matchChromosomes ) throws Exception {
+        int leftChr = reader_.getChr1();
+        int rightChr = reader_.getChr2();
+        if( matchChromosomes && !matchesTargetChromosomes( leftChr, rightChr, targetLeftChr, targetRightChr ) ) {
+            return null;
+        }
+
+        double x_start_real = reader_.getStart1();
+        double x_end_real = reader_.getEnd1();
+        double y_start_real = reader_.getStart2();
+        double y_end_real = reader_.getEnd2();
+        double xSign = reader_.getOrientation1() == '-' ? -1 : 1;
+        double ySign = reader_.getOrientation2() == '-' ? -1 : 1;
+
+        Clone c = createClone( reader_.getName(), leftChr, rightChr,
+                               xSign * Math.abs( x_start_real ), xSign * Math.abs( x_end_real ),
+                               ySign * Math.abs( y_start_real ), ySign * Math.abs( y_end_real ),
+                               x_start_real, x_end_real, y_start_real, y_end_real, reader_::toString );
+
+        if( isOutsideWindow( c, useWindowSize, reader_::toString ) ) {
+            return null;
+        }
+        return c;
+    }
+
+
+    private void close() throws IOException {
+        if( !closed_ ) {
+            closed_ = true;
+            hasRecord_ = false;
+            reader_.close();
+            printIgnoredESPs();
+        }
+    }
+
+
+}
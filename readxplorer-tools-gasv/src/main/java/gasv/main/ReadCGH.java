@@ -55,8 +55,8 @@ public class ReadCGH extends ReadFile {
     private RandomAccessFile cghFile_;
 
 
-    public ReadCGH( String file, List<BreakRegion> breakRegions ) throws IOException {
-        super( file, breakRegions );
+    public ReadCGH( String file, List<BreakRegion> breakRegions, GASVOptions options ) throws IOException {
+        super( file, breakRegions, options );
 
         //open in read-only mode
         cghFile_ = new RandomAccessFile( file, "r" );
@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import org.openide.windows.InputOutput;
 
 
@@ -59,12 +60,24 @@ public class ReadESP extends ReadFile {
 
 
     public ReadESP( String file, int min, int max,
-                    List<BreakRegion> breakRegions, int windowSize ) throws IOException {
-        super( file, breakRegions );
+                    List<BreakRegion> breakRegions, int windowSize, GASVOptions options ) throws IOException {
+        this( file, min, max, breakRegions, windowSize, options, true );
+    }
+
+
+    /**
+     * Constructor for subclasses, which read the ESPs from another source than
+     * a text file and thus don't want the text file to be opened.
+     */
+    protected ReadESP( String file, int min, int max, List<BreakRegion> breakRegions,
+                       int windowSize, GASVOptions options, boolean openTextFile ) throws IOException {
+        super( file, breakRegions, options );
         lmin_ = min;
         lmax_ = max;
-        f_ = new java.io.FileReader( file_ );
-        b_ = new java.io.BufferedReader( f_ );
+        if( openTextFile ) {
+            f_ = new java.io.FileReader( file_ );
+            b_ = new java.io.BufferedReader( f_ );
+        }
         curLeftChr_ = 0;
         curRightChr_ = 0;
         diffChrPairReached_ = false;
@@ -240,33 +253,72 @@ public class ReadESP extends ReadFile {
 
 		// if breakRegionsArray is null, meaning that only want matching chr #'s,
         // ignore unless the current line's chromosomes matches the target chromosomes
-        if( matchChromosomes ) {
-            boolean chrMatch = false;
-            if( leftChr <= rightChr ) {
-                if( (leftChr == targetLeftChr) && (rightChr == targetRightChr) ) {
-                    chrMatch = true;
-                }
-            } else {
-                if( (rightChr == targetLeftChr) && (leftChr == targetRightChr) ) {
-                    chrMatch = true;
-                }
-            }
-            if( !chrMatch ) {
-				//if in single chr mode, just want to skip any earlier chromosomes
-                //if ((GASVMain.CHR > 0) && ((leftChr < targetLeftChr) || (rightChr < targetRightChr))) {
-                //throw new Exception("In --chr (single chromosome) mode, so skipping an early chromosome");
-                //}
-                Out.print3( "ReadPR: leftChr" + leftChr + ",rightChr" + rightChr + " doesn't match target chr" + targetLeftChr + ",chr" + targetRightChr + " so returning null" );
-                diffChrPairReached_ = true;
-                //Out.print2("ReadESP: different chromosome encountered!");
-                return null;
-            }
+        if( matchChromosomes && !matchesTargetChromosomes( leftChr, rightChr, targetLeftChr, targetRightChr ) ) {
+            return null;
         }
 
         double x_start = makeSigned( line[2], line[4] );
         double x_end = makeSigned( line[3], line[4] );
         double y_start = makeSigned( line[6], line[8] );
         double y_end = makeSigned( line[7], line[8] );
+        double x_start_real = Double.parseDouble( line[2] );
+        double x_end_real = Double.parseDouble( line[3] );
+        double y_start_real = Double.parseDouble( line[6] );
+        double y_end_real = Double.parseDouble( line[7] );
+
+        Clone c = createClone( line[0], leftChr, rightChr, x_start, x_end, y_start, y_end,
+                               x_start_real, x_end_real, y_start_real, y_end_real, () -> nextLine );
+
+        if( isOutsideWindow( c, useWindowSize, () -> nextLine ) ) {
+            return null;
+        } else {
+            return c;
+        }
+
+
+    }
+
+
+    /**
+     * Returns true if the chromosomes of an ESP match the target chromosomes.
+     * Otherwise the flag for reaching a different chromosome pair is set.
+     */
+    protected boolean matchesTargetChromosomes( int leftChr, int rightChr, int targetLeftChr, int targetRightChr ) {
+        boolean chrMatch = false;
+        if( leftChr <= rightChr ) {
+            if( (leftChr == targetLeftChr) && (rightChr == targetRightChr) ) {
+                chrMatch = true;
+            }
+        } else {
+            if( (rightChr == targetLeftChr) && (leftChr == targetRightChr) ) {
+                chrMatch = true;
+            }
+        }
+        if( !chrMatch ) {
+			//if in single chr mode, just want to skip any earlier chromosomes
+            //if ((GASVMain.CHR > 0) && ((leftChr < targetLeftChr) || (rightChr < targetRightChr))) {
+            //throw new Exception("In --chr (single chromosome) mode, so skipping an early chromosome");
+            //}
+            Out.print3( "ReadPR: leftChr" + leftChr + ",rightChr" + rightChr + " doesn't match target chr" + targetLeftChr + ",chr" + targetRightChr + " so returning null" );
+            diffChrPairReached_ = true;
+            //Out.print2("ReadESP: different chromosome encountered!");
+        }
+        return chrMatch;
+    }
+
+
+    /**
+     * Creates the Clone of an ESP from its signed coordinates (negative for
+     * reads on the minus strand) and its unsigned coordinates. Throws an
+     * exception for ESPs with overlapping reads and for concordant ESPs, which
+     * are ignored by GASV.
+     * <p>
+     * @param source supplies the ESP as text for warnings
+     */
+    protected Clone createClone( String name, int leftChr, int rightChr,
+                                 double x_start, double x_end, double y_start, double y_end,
+                                 double x_start_real, double x_end_real, double y_start_real, double y_end_real,
+                                 Supplier<String> source ) throws Exception {
         double x = 0;
         double y = 0;
 
@@ -283,10 +335,6 @@ public class ReadESP extends ReadFile {
 
         //Begin Consistency Check: Check to make sure the two read alignments do NOT overlap.
         boolean overlap = false;
-        double x_start_real = Double.parseDouble( line[2] );
-        double x_end_real = Double.parseDouble( line[3] );
-        double y_start_real = Double.parseDouble( line[6] );
-        double y_end_real = Double.parseDouble( line[7] );
         if( leftChr == rightChr ) {
             if( (x_end_real < y_start_real) || (y_end_real < x_start_real) ) {
                 //The read alignments do NOT overlap, and we have a valid discordant fragment.
@@ -305,22 +353,19 @@ public class ReadESP extends ReadFile {
         if( leftChr != rightChr ) {
             if( leftChr < rightChr ) {
                 //Clone Command 1 of 4
-                c = new Clone( line[0], leftChr, rightChr, x, y, lmin_, lmax_, xLen, yLen, overlap );
+                c = new Clone( name, leftChr, rightChr, x, y, lmin_, lmax_, xLen, yLen, overlap );
             } else {
                 //Clone Command 2 of 4
-                c = new Clone( line[0], rightChr, leftChr, y, x, lmin_, lmax_, yLen, xLen, overlap );
-                int temp = leftChr;
-                leftChr = rightChr;
-                rightChr = temp;
+                c = new Clone( name, rightChr, leftChr, y, x, lmin_, lmax_, yLen, xLen, overlap );
             }
         } else {
             if( Math.abs( x ) < Math.abs( y ) ) {
                 //Clone Command 3 of 4
-                c = new Clone( line[0], leftChr, rightChr, x, y, lmin_, lmax_, xLen, yLen, overlap );
+                c = new Clone( name, leftChr, rightChr, x, y, lmin_, lmax_, xLen, yLen, overlap );
                 //System.err.println("line[0]\n" + "LEFT:\t" + "chr" + leftChr + "\tx: " + x + "\nRIGHT:\t " + "chr" + rightChr + "\ty:\t" + y + "\n" + c.toString());
             } else {
                 //Clone Command 4 of 4
-                c = new Clone( line[0], rightChr, leftChr, y, x, lmin_, lmax_, yLen, xLen, overlap );
+                c = new Clone( name, rightChr, leftChr, y, x, lmin_, lmax_, yLen, xLen, overlap );
                 //System.err.println("line[0]\n" + "LEFT:\t" + "chr" + rightChr + "\tx: " + y + "\nRIGHT:\t " + "chr" + leftChr + "\ty:\t" + x + "\n" + c.toString());
 
             }
@@ -331,11 +376,11 @@ public class ReadESP extends ReadFile {
             if( !overlapESPWarningRaised_ ) {
                 Out.print( "Warning: File: " + file_ + " contains a PR with overlapping reads " +
                          " GASV ignores such cases. The first such PR case encountered: " +
-                         nextLine );
+                         source.get() );
                 overlapESPWarningRaised_ = true;
             }
             numOverlapping_++;
-            throw new Exception( "Overlapping PR encountered: " + nextLine );
+            throw new Exception( "Overlapping PR encountered: " + source.get() );
         }
 
         if( isConcordant( c ) ) {
@@ -343,35 +388,61 @@ public class ReadESP extends ReadFile {
             if( !concordantESPWarningRaised_ ) {
                 Out.print( "Warning: File: " + file_ + " contains concordant PR data! " +
                          "Concordant data is ignored by GASV. The first concordant PR encountered: " +
-                         nextLine );
+                         source.get() );
                 concordantESPWarningRaised_ = true;
             }
             numConcordant_++;
-            throw new Exception( "Concordant PR encountered: " + nextLine );
+            throw new Exception( "Concordant PR encountered: " + source.get() );
         }
+        return c;
+    }
 
 
-
+    /**
+     * Returns true if useWindowSize is set and the clone lies to the right of
+     * the current window. Exits, if the clone lies to the left of the current
+     * window, because then the input is not sorted correctly.
+     * <p>
+     * @param source supplies the ESP as text for error messages
+     */
+    protected boolean isOutsideWindow( Clone c, boolean useWindowSize, Supplier<String> source ) {
         //make sure that the file is sorted correctly!
         if( useWindowSize && (Math.abs( c.getX() ) < (endWindowPos_ - windowSize_)) ) {
-            Out.print( "Encountered line " + nextLine + "\n with matching chromosomes but has coordinate " +
+            Out.print( "Encountered line " + source.get() + "\n with matching chromosomes but has coordinate " +
                      Math.abs( c.getX() ) + " that is smaller than " +
                      "the start of the current window, which would be " +
                      (endWindowPos_ - windowSize_) + ". Check file for correct sorting." );
             System.exit( -1 );
         }
 
+		//Out.print3("TMP!!! ReadESP: cur read pair outside current window, with read.x= " + Math.abs(c.getX())
+        //+ " and endWindowPos_=" + endWindowPos_);
+        return useWindowSize && (Math.abs( c.getX() ) > endWindowPos_);
+    }
 
 
-        if( useWindowSize && (Math.abs( c.getX() ) > endWindowPos_) ) {
-			//Out.print3("TMP!!! ReadESP: cur read pair outside current window, with read.x= " + Math.abs(c.getX())
-            //+ " and endWindowPos_=" + endWindowPos_);
-            return null;
-        } else {
-            return c;
+    /**
+     * Prepares reading the next window of ESPs.
+     */
+    protected void startWindow( int endWindowPos, boolean startNewChr ) {
+        //if starting on a new left, right chr pair, then need to clear the following flag
+        if( startNewChr ) {
+            diffChrPairReached_ = false;
         }
+        endWindowPos_ = endWindowPos;
+    }
 
 
+    /**
+     * Prints the number of ignored ESPs after the end of the file is reached.
+     */
+    protected void printIgnoredESPs() {
+        if( numConcordant_ > 0 ) {
+            Out.print( "Ignored " + numConcordant_ + " concordant PR's in file " + file_ );
+        }
+        if( numOverlapping_ > 0 ) {
+            Out.print( "Ignored " + numOverlapping_ + " overlapping-read PR's in file " + file_ );
+        }
     }
 
 
@@ -388,11 +459,7 @@ public class ReadESP extends ReadFile {
     public boolean readNextBreakRegions( int targetLeftChr, int targetRightChr,
                                          List<BreakRegion> br, int endWindowPos, boolean startNewChr ) throws IOException {
 
-        //if starting on a new left, right chr pair, then need to clear the following flag
-        if( startNewChr ) {
-            diffChrPairReached_ = false;
-        }
-        endWindowPos_ = endWindowPos;
+        startWindow( endWindowPos, startNewChr );
 		// only need to do this the first time through. After that, the previously read
         // nextLine_ will need to be parsed again to see if it matches this next chr pair or it will
         // need to be added to this new window
@@ -433,7 +500,7 @@ public class ReadESP extends ReadFile {
             }
 
 
-            if( numClonesInWin < GASVMain.MAX_READS_PER_WIN ) {
+            if( numClonesInWin < options.maxReadsPerWin ) {
                 // if no 2D array provided, put it in the ArrayList
                 br.add( c );
                 ++numClonesInWin;
@@ -447,12 +514,7 @@ public class ReadESP extends ReadFile {
         // if we reach the end of the file, close streams and return true
         b_.close();
         f_.close();
-        if( numConcordant_ > 0 ) {
-            Out.print( "Ignored " + numConcordant_ + " concordant PR's in file " + file_ );
-        }
-        if( numOverlapping_ > 0 ) {
-            Out.print( "Ignored " + numOverlapping_ + " overlapping-read PR's in file " + file_ );
-        }
+        printIgnoredESPs();
         return true;
 
     }
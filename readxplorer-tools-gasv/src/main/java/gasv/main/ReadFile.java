@@ -42,14 +42,16 @@ public abstract class ReadFile {
     //protected ArrayList<Cluster>[][] shapes;
     protected GenomicPos genomicPosComparator_;
     protected String file_;
+    protected final GASVOptions options;
 
 
-    public ReadFile( String file, List<BreakRegion> breakRegions ) throws IOException {
+    public ReadFile( String file, List<BreakRegion> breakRegions, GASVOptions options ) throws IOException {
 		//TODO: change name from clones to breakRegions_
         //breakRegions_ = breakRegions;
         clones = breakRegions;
         file_ = file;
-        numChrom = GASVMain.NUM_CHROM;
+        this.options = options;
+        numChrom = options.numChrom;
 		//clones = new ArrayList[numChrom][numChrom];
         //shapes = new ArrayList[numChrom][numChrom];
         genomicPosComparator_ = new GenomicPos();
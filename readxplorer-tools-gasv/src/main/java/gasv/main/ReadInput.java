@@ -20,6 +20,7 @@
  */
 package gasv.main;
 
+import gasv.common.BinaryESP;
 import gasv.common.Constants;
 import gasv.common.Out;
 import java.io.BufferedReader;
@@ -55,10 +56,12 @@ public class ReadInput {
     private long[] chrFilePosStart_ = null;
     //private int[] readCGHFileIdx_ = null;
     ArrayList<long[]> chrFilePosStartList_ = null;
+    private final GASVOptions options;
 
 
-    public ReadInput( String filename ) throws IOException {
+    public ReadInput( String filename, GASVOptions options ) throws IOException {
         filename_ = filename;
+        this.options = options;
         setFiles = false;
         CGHfiles = new ArrayList<String>();
         singleReadFile_ = null;
@@ -69,20 +72,20 @@ public class ReadInput {
         curRightChr_ = 0;
 
         //if overflow is likely, then just use LMAX as the window size
-        if( GASVMain.MAX_LMAX > (Integer.MAX_VALUE / Constants.WIN_SIZE_FACTOR) ) {
-            Out.print( "Warning: lmax value of " + GASVMain.MAX_LMAX + " is extremely large. " +
+        if( options.maxLmax > (Integer.MAX_VALUE / Constants.WIN_SIZE_FACTOR) ) {
+            Out.print( "Warning: lmax value of " + options.maxLmax + " is extremely large. " +
                      "Using this value as the window size to avoid overflow" );
-            windowSize_ = GASVMain.MAX_LMAX;
+            windowSize_ = options.maxLmax;
         } else {
-            windowSize_ = (int) (GASVMain.MAX_LMAX * Constants.WIN_SIZE_FACTOR);
+            windowSize_ = (int) (options.maxLmax * Constants.WIN_SIZE_FACTOR);
             Out.print1( "Using window size of " + windowSize_ );
         }
 
         chrFilePosStartList_ = new ArrayList<long[]>();
-        chrFilePosStart_ = new long[GASVMain.NUM_CHROM];
+        chrFilePosStart_ = new long[options.numChrom];
 		//readCGHFileIdx_ = new int[GASVMain.NUM_CHROM];
 
-        for( int i = 0; i < GASVMain.NUM_CHROM; ++i ) {
+        for( int i = 0; i < options.numChrom; ++i ) {
             chrFilePosStart_[i] = 0;
             //readCGHFileIdx_[i] =  -1;
         }
@@ -146,6 +149,9 @@ public class ReadInput {
 
     private ReadFile createReadFile( int lmin, int lmax,
                                      List<BreakRegion> breakRegions ) throws java.io.IOException {
+        if( BinaryESP.isBinary( filename_ ) ) {
+            return new ReadBinaryESP( filename_, lmin, lmax, breakRegions, windowSize_, options );
+        }
         f = new FileReader( filename_ );
         b = new BufferedReader( f );
 
@@ -176,10 +182,10 @@ public class ReadInput {
                 f.close();
                 return null;
             } else if( line.length == Constants.NUM_COLS_IN_ESP_FILE ) {
-                r = new ReadESP( filename_, lmin, lmax, breakRegions, windowSize_ );
+                r = new ReadESP( filename_, lmin, lmax, breakRegions, windowSize_, options );
             } else if( (line.length == Constants.NUM_COLS_IN_SING_CGH_FILE) ||
                      (line.length == Constants.NUM_COLS_IN_PAIR_CGH_FILE) ) {
-                r = new ReadCGH( filename_, breakRegions );
+                r = new ReadCGH( filename_, breakRegions, options );
             } /* else if(line[1].equals("PRED")) r =
              * new ReadPred(line[0], breakRegions); else
              * if(line[1].equals("SINGLEPRED")) r = new ReadSinglePred(line[0],
@@ -306,9 +312,12 @@ public class ReadInput {
             //Out.print2("ReadInput: in readFiles(): Reading " + line[1] + " file.");
             if( line[1].equals( "ESP" ) || line[1].equals( "PR" ) ) {
                 r = new ReadESP( line[0], Integer.parseInt( line[2] ), Integer.parseInt( line[3] ), breakRegions,
-                                 windowSize_ );
+                                 windowSize_, options );
+            } else if( line[1].equals( BinaryESP.BATCH_TYPE ) ) {
+                r = new ReadBinaryESP( line[0], Integer.parseInt( line[2] ), Integer.parseInt( line[3] ), breakRegions,
+                                       windowSize_, options );
             } else if( line[1].equals( "CGH" ) ) {
-                r = new ReadCGH( line[0], breakRegions );
+                r = new ReadCGH( line[0], breakRegions, options );
             } /* else if(line[1].equals("PRED")) r =
              * new ReadPred(line[0], breakRegions); else
              * if(line[1].equals("SINGLEPRED")) r = new ReadSinglePred(line[0],
@@ -561,7 +570,7 @@ public class ReadInput {
                 continue;
             }
             //Out.print2("ReadInput: in readFiles(): Reading " + line[1] + " file.");
-            if( line[1].equals( "ESP" ) || line[1].equals( "PR" ) ) {
+            if( line[1].equals( "ESP" ) || line[1].equals( "PR" ) || line[1].equals( BinaryESP.BATCH_TYPE ) ) {
                 curLmax = Integer.parseInt( line[3] );
             } /* else if(line[1].equals("PRED")) r =
              * new ReadPred(line[0], breakRegions); else
@@ -625,7 +634,7 @@ public class ReadInput {
 			//if we reached a new chr before end of file, we know then the
             //starting position for the next chromosome.
             if( ret[1] > -1 ) {
-                if( chrIdx + 1 >= GASVMain.NUM_CHROM ) {
+                if( chrIdx + 1 >= options.numChrom ) {
                     Out.print( "ERROR file is not in sorted order by " +
                              "chromosome!! Sort file first before running GASV!!" );
                 }
@@ -633,7 +642,7 @@ public class ReadInput {
             } //otherwise we reached the end of file
             else {
                 //set the rest of the file start positions to -1 to signal that file is done
-                for( int j = chrIdx + 1; j < GASVMain.NUM_CHROM; ++j ) {
+                for( int j = chrIdx + 1; j < options.numChrom; ++j ) {
                     chrFilePosStart_[j] = -1;
                 }
             }
@@ -666,7 +675,7 @@ public class ReadInput {
             }
             for( int i = 0; i < readFiles_.size(); ++i ) {
                 //java automatically initializes values to 0
-                long[] curChrFilePosStart = new long[GASVMain.NUM_CHROM];
+                long[] curChrFilePosStart = new long[options.numChrom];
                 chrFilePosStartList_.add( curChrFilePosStart );
             }
         }
@@ -704,7 +713,7 @@ public class ReadInput {
 				//if we reached a new chr before end of file, we know then the
                 //starting position for the next chromosome.
                 if( ret[1] > -1 ) {
-                    if( chrIdx + 1 >= GASVMain.NUM_CHROM ) {
+                    if( chrIdx + 1 >= options.numChrom ) {
                         Out.print( "ERROR file is not in sorted order by " +
                                  "chromosome!! Sort file first before running GASV!!" );
                     }
@@ -715,7 +724,7 @@ public class ReadInput {
                 } //otherwise we reached the end of file
                 else {
                     //set the rest of the file start positions to -1 to signal that file is done
-                    for( int j = chrIdx + 1; j < GASVMain.NUM_CHROM; ++j ) {
+                    for( int j = chrIdx + 1; j < options.numChrom; ++j ) {
                         curChrFilePosStart[j] = -1;
                     }
                 }
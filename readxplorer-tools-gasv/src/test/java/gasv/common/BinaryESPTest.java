@@ -0,0 +1,225 @@
+/**
+ * Copyright 2010 Benjamin Raphael, Suzanne Sindi, Hsin-Ta Wu, Anna Ritz, Luke
+ * Peng
+ * <p>
+ * This file is part of gasv.
+ * <p>
+ * gasv is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * <p>
+ * gasv is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * gasv. If not, see <http://www.gnu.org/licenses/>.
+ * <p>
+ */
+package gasv.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Test of writing and reading ESPs in the {@link BinaryESP} format.
+ */
+public class BinaryESPTest {
+
+    private static final int HEADER_SIZE = 8 + 5 * 4 + 8;
+    private static final int RECORD_SIZE = 6 * 4 + 1;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    /**
+     * Test of Writer and open, of class BinaryESP. Enough ESPs with long read
+     * names are written to flush the record and the name buffers several
+     * times. All ESPs, the library statistics and the read names in the block
+     * behind the records are read back unchanged.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        System.out.println( "roundTrip" );
+        ESPRecords records = randomRecords( new Random( 3 ), 10000 );
+        records.sort();
+        records.setLibraryStats( 120, 480, 300, 60 );
+        File file = folder.newFile( "esps.bin" );
+        BinaryESP.Writer.write( file, records );
+
+        long nameBytes = 0;
+        try( BinaryESP.Reader reader = records.reader() ) {
+            while( reader.next() ) {
+                nameBytes += 2 + reader.getName().getBytes( StandardCharsets.UTF_8 ).length;
+            }
+        }
+        assertTrue( nameBytes > 2 * (1 << 16) );
+        assertEquals( HEADER_SIZE + records.size() * (long) RECORD_SIZE + nameBytes, file.length() );
+        assertTrue( BinaryESP.isBinary( file.getPath() ) );
+
+        try( BinaryESP.Reader reader = BinaryESP.open( file.getPath() ) ) {
+            assertEquals( records.size(), reader.getRecordCount() );
+            assertEquals( 120, reader.getLmin() );
+            assertEquals( 480, reader.getLmax() );
+            assertEquals( 300, reader.getMean() );
+            assertEquals( 60, reader.getStd() );
+            assertEquals( toLines( records.reader() ), toLines( reader ) );
+        }
+    }
+
+
+    /**
+     * Test of merge, of class BinaryESP. ESPs spilled to several sorted binary
+     * files and a final in memory buffer are merged into the same binary and
+     * text output as sorting all ESPs at once. ESPs with equal sort keys keep
+     * their insertion order.
+     */
+    @Test
+    public void testMergeSpills() throws IOException {
+        System.out.println( "mergeSpills" );
+        Random random = new Random( 5 );
+        ESPRecords all = new ESPRecords( 16 );
+        List<BinaryESP.Reader> sources = new ArrayList<>();
+        ESPRecords spill = new ESPRecords( 16 );
+        for( int i = 0; i < 5000; ++i ) {
+            addRandomESP( random, i, false, spill, all );
+            if( spill.size() == 1100 ) {
+                spill.sort();
+                File spillFile = folder.newFile();
+                BinaryESP.Writer.write( spillFile, spill );
+                sources.add( BinaryESP.open( spillFile.getPath() ) );
+                spill = new ESPRecords( 16 );
+            }
+        }
+        assertEquals( 4, sources.size() );
+        spill.sort();
+        sources.add( spill.reader() );
+        all.sort();
+
+        File merged = folder.newFile( "merged.bin" );
+        try( BinaryESP.Writer writer = new BinaryESP.Writer( merged, all.size(), 1, 2, 3, 4 ) ) {
+            BinaryESP.merge( sources, writer );
+        }
+        List<String> expected = toLines( all.reader() );
+        try( BinaryESP.Reader reader = BinaryESP.open( merged.getPath() ) ) {
+            assertEquals( expected, toLines( reader ) );
+        }
+
+        File text = folder.newFile( "merged.txt" );
+        List<BinaryESP.Reader> textSources = new ArrayList<>();
+        textSources.add( BinaryESP.open( merged.getPath() ) );
+        try( BinaryESP.TextWriter writer = new BinaryESP.TextWriter( text ) ) {
+            BinaryESP.merge( textSources, writer );
+        }
+        assertEquals( expected, Files.readAllLines( text.toPath() ) );
+        assertFalse( BinaryESP.isBinary( text.getPath() ) );
+    }
+
+
+    /**
+     * Test of register and release, of class BinaryESP. Registered ESPs are
+     * opened without touching the file system until they are released.
+     */
+    @Test
+    public void testRegister() throws IOException {
+        System.out.println( "register" );
+        ESPRecords records = randomRecords( new Random( 7 ), 100 );
+        records.sort();
+        String name = new File( folder.getRoot(), "track.bam_DELETION.gasv.in" ).getPath();
+        BinaryESP.register( name, records );
+        try {
+            assertTrue( BinaryESP.isBinary( name ) );
+            try( BinaryESP.Reader reader = BinaryESP.open( name ) ) {
+                assertEquals( toLines( records.reader() ), toLines( reader ) );
+            }
+        } finally {
+            BinaryESP.release( folder.getRoot().getPath() );
+        }
+        assertFalse( BinaryESP.isBinary( name ) );
+    }
+
+
+    /**
+     * Test of Writer, of class BinaryESP. Writing more or less ESPs than
+     * announced fails.
+     */
+    @Test
+    public void testRecordCountMismatch() throws IOException {
+        System.out.println( "recordCountMismatch" );
+        ESPRecords records = randomRecords( new Random( 11 ), 3 );
+        try( BinaryESP.Writer writer = new BinaryESP.Writer( folder.newFile(), 2, 0, 0, 0, 0 );
+             BinaryESP.Reader reader = records.reader() ) {
+            while( reader.next() ) {
+                writer.write( reader );
+            }
+            fail( "Writing more ESPs than announced has to fail" );
+        } catch( IOException e ) {
+            //expected
+        }
+        try {
+            new BinaryESP.Writer( folder.newFile(), 2, 0, 0, 0, 0 ).close();
+            fail( "Writing less ESPs than announced has to fail" );
+        } catch( IOException e ) {
+            //expected
+        }
+    }
+
+
+    private static ESPRecords randomRecords( Random random, int count ) {
+        ESPRecords records = new ESPRecords( 16 );
+        for( int i = 0; i < count; ++i ) {
+            addRandomESP( random, i, true, records );
+        }
+        return records;
+    }
+
+
+    /**
+     * Adds an ESP with a read name of up to 60 characters to all given
+     * buffers. Positions are drawn from a small range, so many ESPs share
+     * their sort keys.
+     */
+    private static void addRandomESP( Random random, int number, boolean nonAscii, ESPRecords... targets ) {
+        StringBuilder name = new StringBuilder( "read" ).append( number );
+        int suffix = random.nextInt( 60 );
+        for( int i = 0; i < suffix; ++i ) {
+            name.append( nonAscii && i % 7 == 0 ? 'ä' : (char) ('a' + random.nextInt( 26 )) );
+        }
+        int chr1 = 1 + random.nextInt( 3 );
+        int chr2 = chr1 + random.nextInt( 2 );
+        int start1 = 1 + random.nextInt( 2000 );
+        int start2 = 1 + random.nextInt( 2000 );
+        char ori1 = random.nextBoolean() ? '+' : '-';
+        char ori2 = random.nextBoolean() ? '+' : '-';
+        for( ESPRecords records : targets ) {
+            records.add( name.toString(), chr1, start1, start1 + 35, ori1, chr2, start2, start2 + 35, ori2 );
+        }
+    }
+
+
+    private static List<String> toLines( BinaryESP.Reader reader ) throws IOException {
+        List<String> lines = new ArrayList<>();
+        while( reader.next() ) {
+            lines.add( reader.toString() );
+        }
+        return lines;
+    }
+
+
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2010 Benjamin Raphael, Suzanne Sindi, Hsin-Ta Wu, Anna Ritz, Luke
+ * Peng
+ * <p>
+ * This file is part of gasv.
+ * <p>
+ * gasv is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * <p>
+ * gasv is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * gasv. If not, see <http://www.gnu.org/licenses/>.
+ * <p>
+ */
+package gasv.main;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of clustering ESP files with {@link GASVMain}.
+ */
+public class GASVMainTest {
+
+    private static final int NUM_CHROM = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    /**
+     * Test of main method, of class GASVMain. The .clusters file does not
+     * depend on the number of clustering threads.
+     */
+    @Test
+    public void testThreadCountIndependence() throws Exception {
+        System.out.println( "threadCountIndependence" );
+        File espFile = writeEspFixture( folder.newFile( "fixture.gasv.in" ) );
+
+        byte[] sequential = cluster( espFile, "1", "--output", "reads" );
+        String clusters = new String( sequential, StandardCharsets.UTF_8 );
+        assertTrue( clusters.split( "\n" ).length > 20 );
+
+        assertArrayEquals( sequential, cluster( espFile, "4", "--output", "reads" ) );
+        assertArrayEquals( sequential, cluster( espFile, "16", "--output", "reads" ) );
+    }
+
+
+    /**
+     * Test of main method, of class GASVMain. Two runs with different options
+     * proceed at the same time without affecting each other.
+     */
+    @Test
+    public void testConcurrentRuns() throws Exception {
+        System.out.println( "concurrentRuns" );
+        File espFile = writeEspFixture( folder.newFile( "fixture.gasv.in" ) );
+        byte[] reads = cluster( espFile, "2", "--output", "reads" );
+        byte[] regions = cluster( espFile, "2", "--output", "regions", "--maximal", "--nonreciprocal" );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try {
+            for( int run = 0; run < 3; ++run ) {
+                Future<byte[]> readsRun = executor.submit( () -> cluster( espFile, "2", "--output", "reads" ) );
+                Future<byte[]> regionsRun = executor.submit( () -> cluster( espFile, "2", "--output", "regions",
+                                                                              "--maximal", "--nonreciprocal" ) );
+                assertArrayEquals( reads, readsRun.get() );
+                assertArrayEquals( regions, regionsRun.get() );
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Clusters the given ESP file in a new output directory and returns the
+     * content of the resulting .clusters file.
+     */
+    private byte[] cluster( File espFile, String threads, String... options ) throws IOException, CloneNotSupportedException {
+        File outputDir = folder.newFolder();
+        List<String> args = new ArrayList<>();
+        args.add( "--cluster" );
+        args.add( "--outputdir" );
+        args.add( outputDir.getPath() );
+        args.add( "--numChrom" );
+        args.add( String.valueOf( NUM_CHROM ) );
+        args.add( "--threads" );
+        args.add( threads );
+        Collections.addAll( args, options );
+        args.add( espFile.getPath() );
+        GASVMain.main( args.toArray( new String[0] ) );
+        return Files.readAllBytes( new File( outputDir, espFile.getName() + ".clusters" ).toPath() );
+    }
+
+
+    /**
+     * Writes a sorted ESP file with clustered and scattered discordant pairs
+     * on all chromosome pairs. Several clusters overlap the window boundaries
+     * and some pairs have the opposite orientation of their cluster.
+     */
+    private static File writeEspFixture( File espFile ) throws IOException {
+        Random random = new Random( 42 );
+        try( BufferedWriter writer = Files.newBufferedWriter( espFile.toPath(), StandardCharsets.UTF_8 ) ) {
+            int pairNo = 0;
+            for( int chr1 = 1; chr1 <= NUM_CHROM; ++chr1 ) {
+                for( int chr2 = chr1; chr2 <= NUM_CHROM; ++chr2 ) {
+                    List<long[]> pairs = new ArrayList<>();
+                    for( int event = 0; event < 40; ++event ) {
+                        long left = 1000 + event * 450L + random.nextInt( 200 );
+                        long right = chr1 == chr2 ? left + 5000 + random.nextInt( 3000 ) : 1000 + random.nextInt( 50000 );
+                        int size = 1 + random.nextInt( 8 );
+                        for( int i = 0; i < size; ++i ) {
+                            int orientation = random.nextInt( 10 ) == 0 ? 1 : 0;
+                            long leftStart = left + random.nextInt( 120 );
+                            // GASV expects the ESPs sorted by the end of left reads on the minus strand
+                            long sortPos = orientation == 0 ? leftStart : leftStart + 35;
+                            pairs.add( new long[]{ leftStart, right + random.nextInt( 120 ), orientation, sortPos } );
+                        }
+                    }
+                    pairs.sort( ( p1, p2 ) -> Long.compare( p1[3], p2[3] ) );
+                    for( long[] pair : pairs ) {
+                        String leftOri = pair[2] == 0 ? "+" : "-";
+                        String rightOri = pair[2] == 0 ? "-" : "+";
+                        writer.write( "pair" + pairNo++ + "\t" + chr1 + "\t" + pair[0] + "\t" + (pair[0] + 35) + "\t" + leftOri + "\t" +
+                                 chr2 + "\t" + pair[1] + "\t" + (pair[1] + 35) + "\t" + rightOri + "\n" );
+                    }
+                }
+            }
+        }
+        return espFile;
+    }
+
+
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright 2010 Benjamin Raphael, Suzanne Sindi, Hsin-Ta Wu, Anna Ritz, Luke
+ * Peng
+ * <p>
+ * This file is part of gasv.
+ * <p>
+ * gasv is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * <p>
+ * gasv is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * gasv. If not, see <http://www.gnu.org/licenses/>.
+ * <p>
+ */
+package gasv.main;
+
+import gasv.common.BinaryESP;
+import gasv.common.ESPRecords;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of {@link ReadBinaryESP}: ESPs handed to GASV as text file, as binary
+ * file or registered in memory result in the same clones and clusters.
+ */
+public class ReadBinaryESPTest {
+
+    private static final int NUM_CHROM = 3;
+    private static final int LMIN = 100;
+    private static final int LMAX = 400;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @After
+    public void tearDown() {
+        BinaryESP.release( folder.getRoot().getPath() );
+    }
+
+
+    /**
+     * Test of readBreakRegions method, of class ReadBinaryESP. Reading all
+     * ESPs at once (--fast mode) creates the same clones from all three
+     * sources.
+     */
+    @Test
+    public void testReadAllBreakRegions() throws IOException {
+        System.out.println( "readAllBreakRegions" );
+        String[] inputs = writeInputs();
+        List<String> expected = readAll( inputs[0] );
+        assertTrue( expected.size() > 500 );
+        assertEquals( expected, readAll( inputs[1] ) );
+        assertEquals( expected, readAll( inputs[2] ) );
+    }
+
+
+    /**
+     * Test of readNextBreakRegions method, of class ReadBinaryESP. Reading the
+     * ESPs window by window creates the same windows of clones from all three
+     * sources.
+     */
+    @Test
+    public void testReadWindows() throws IOException {
+        System.out.println( "readWindows" );
+        String[] inputs = writeInputs();
+        List<String> expected = readWindows( inputs[0] );
+        assertTrue( expected.size() > 500 );
+        assertEquals( expected, readWindows( inputs[1] ) );
+        assertEquals( expected, readWindows( inputs[2] ) );
+    }
+
+
+    /**
+     * Test of clustering ESPs with GASVMain. All three sources result in the
+     * same .clusters file.
+     */
+    @Test
+    public void testClusters() throws Exception {
+        System.out.println( "clusters" );
+        String[] inputs = writeInputs();
+        byte[] expected = cluster( inputs[0] );
+        assertTrue( expected.length > 1000 );
+        assertArrayEquals( expected, cluster( inputs[1] ) );
+        assertArrayEquals( expected, cluster( inputs[2] ) );
+    }
+
+
+    /**
+     * Writes the same sorted ESPs as text file and as binary file and
+     * registers them in memory.
+     * <p>
+     * @return The names of the text file, the binary file and the in memory
+     *         ESPs
+     */
+    private String[] writeInputs() throws IOException {
+        ESPRecords records = createESPs();
+        File text = folder.newFile( "esps.gasv.in" );
+        File binary = folder.newFile( "esps.gasv.in" + BinaryESP.EXTENSION );
+        try( BinaryESP.RecordSink writer = new BinaryESP.TextWriter( text );
+             BinaryESP.Reader reader = records.reader() ) {
+            while( reader.next() ) {
+                writer.write( reader );
+            }
+        }
+        BinaryESP.Writer.write( binary, records );
+        String memory = new File( folder.getRoot(), "memory.gasv.in" ).getPath();
+        BinaryESP.register( memory, records );
+        return new String[]{ text.getPath(), binary.getPath(), memory };
+    }
+
+
+    /**
+     * Creates sorted ESPs with clusters on all chromosome pairs, a few ESPs
+     * of the opposite orientation and concordant ESPs, which are ignored by
+     * GASV.
+     */
+    private static ESPRecords createESPs() {
+        Random random = new Random( 13 );
+        ESPRecords records = new ESPRecords();
+        int pairNo = 0;
+        for( int chr1 = 1; chr1 <= NUM_CHROM; ++chr1 ) {
+            for( int chr2 = chr1; chr2 <= NUM_CHROM; ++chr2 ) {
+                for( int event = 0; event < 40; ++event ) {
+                    int left = 1000 + event * 450 + random.nextInt( 200 );
+                    int right = chr1 == chr2 ? left + 5000 + random.nextInt( 3000 ) : 1000 + random.nextInt( 50000 );
+                    int size = 1 + random.nextInt( 8 );
+                    for( int i = 0; i < size; ++i ) {
+                        int start1 = left + random.nextInt( 120 );
+                        int start2 = right + random.nextInt( 120 );
+                        boolean flipped = random.nextInt( 10 ) == 0;
+                        records.add( "pair" + pairNo++, chr1, start1, start1 + 35, flipped ? '-' : '+',
+                                     chr2, start2, start2 + 35, flipped ? '+' : '-' );
+                    }
+                    if( chr1 == chr2 ) {
+                        int start1 = left + random.nextInt( 120 );
+                        records.add( "concordant" + pairNo++, chr1, start1, start1 + 35, '+',
+                                     chr2, start1 + 200, start1 + 235, '-' );
+                    }
+                }
+            }
+        }
+        records.sort();
+        return records;
+    }
+
+
+    private static GASVOptions createOptions() {
+        GASVOptions options = new GASVOptions();
+        options.numChrom = NUM_CHROM;
+        options.lmin = LMIN;
+        options.lmax = LMAX;
+        options.maxLmax = LMAX;
+        return options;
+    }
+
+
+    private static List<String> readAll( String input ) throws IOException {
+        @SuppressWarnings( "unchecked" )
+        List<BreakRegion>[][] breakRegions = new List[NUM_CHROM][NUM_CHROM];
+        new ReadInput( input, createOptions() ).readSingleFile( LMIN, LMAX, breakRegions );
+        List<String> clones = new ArrayList<>();
+        for( int i = 0; i < NUM_CHROM; ++i ) {
+            for( int j = 0; j < NUM_CHROM; ++j ) {
+                if( breakRegions[i][j] != null ) {
+                    clones.add( "chr" + (i + 1) + ", chr" + (j + 1) );
+                    for( BreakRegion breakRegion : breakRegions[i][j] ) {
+                        clones.add( describe( (Clone) breakRegion ) );
+                    }
+                }
+            }
+        }
+        return clones;
+    }
+
+
+    private static List<String> readWindows( String input ) throws IOException {
+        ReadInput readInput = new ReadInput( input, createOptions() );
+        List<String> clones = new ArrayList<>();
+        boolean fileDone = false;
+        for( int chrx = 1; chrx <= NUM_CHROM && !fileDone; ++chrx ) {
+            for( int chry = chrx; chry <= NUM_CHROM && !fileDone; ++chry ) {
+                do {
+                    List<BreakRegion> window = new ArrayList<>();
+                    fileDone = readInput.readWindowFromSingleFile( chrx, chry, LMIN, LMAX, window );
+                    clones.add( "window chr" + chrx + ", chr" + chry );
+                    for( BreakRegion breakRegion : window ) {
+                        clones.add( describe( (Clone) breakRegion ) );
+                    }
+                } while( !fileDone && !readInput.getDiffChrPairReached() );
+            }
+        }
+        assertTrue( fileDone );
+        return clones;
+    }
+
+
+    private static String describe( Clone clone ) {
+        return clone.toOutput() + "\t" + clone.getX() + "\t" + clone.getY() + "\t" + clone.getXLen() + "\t" +
+               clone.getYLen() + "\t" + clone.getLmin() + "\t" + clone.getLmax() + "\t" + clone.getType();
+    }
+
+
+    private byte[] cluster( String input ) throws IOException, CloneNotSupportedException {
+        File outputDir = folder.newFolder();
+        GASVMain.main( new String[]{ "--cluster", "--outputdir", outputDir.getPath(), "--numChrom", String.valueOf( NUM_CHROM ),
+                                     "--lmin", String.valueOf( LMIN ), "--lmax", String.valueOf( LMAX ),
+                                     "--output", "reads", input } );
+        return Files.readAllBytes( new File( outputDir, new File( input ).getName() + ".clusters" ).toPath() );
+    }
+
+
+}
@@ -28,10 +28,11 @@ import de.cebitec.readxplorer.parser.TrackJob;
 import de.cebitec.readxplorer.parser.common.ParsedClassification;
 import de.cebitec.readxplorer.parser.common.ParsedReadPairContainer;
 import de.cebitec.readxplorer.parser.common.ParsingException;
-import de.cebitec.readxplorer.parser.common.RefSeqFetcher;
 import de.cebitec.readxplorer.parser.mappings.CommonsMappingParser;
+import de.cebitec.readxplorer.parser.mappings.ReadClassificationPipeline;
 import de.cebitec.readxplorer.parser.mappings.ReadPairClassifierI;
 import de.cebitec.readxplorer.parser.mappings.SamSeqDictionary;
+import de.cebitec.readxplorer.parser.output.OffHeapSamSorter;
 import de.cebitec.readxplorer.parser.output.SamBamSorter;
 import de.cebitec.readxplorer.utils.Benchmark;
 import de.cebitec.readxplorer.utils.DiscreteCountingDistribution;
@@ -100,7 +101,6 @@ public class SamBamReadPairClassifier implements ReadPairClassifierI, Observer,
 
     StatsContainer statsContainer;
     private DiscreteCountingDistribution readPairSizeDistribution;
-    private RefSeqFetcher refSeqFetcher;
 
 
     /**
@@ -178,7 +178,6 @@ public class SamBamReadPairClassifier implements ReadPairClassifierI, Observer,
                           "Classifier_Info=The track import can still be completed!"} )
     public ParsedReadPairContainer classifyReadPairs() throws ParsingException, OutOfMemoryError {
 
-        this.refSeqFetcher = new RefSeqFetcher( trackJob.getRefGen().getFile(), this );
         boolean success = this.preprocessData( trackJob );
         if( !success ) {
             throw new ParsingException( "Sorting of the input file by read name was not successful. Please either switch your RX temp directory " +
@@ -209,85 +208,81 @@ public class SamBamReadPairClassifier implements ReadPairClassifierI, Observer,
                 header.setSequenceDictionary( ((SamSeqDictionary) refDictionary).getSamDictionary() );
             }
 
-            Pair<SAMFileWriter, File> writerAndFile = SamUtils.createSamBamWriter(
-                    trackJob.getFile(), header, false, SamUtils.EXTENDED_STRING );
+            Pair<SAMFileWriter, File> writerAndFile = OffHeapSamSorter.createSortingSamBamWriter(
+                    trackJob.getFile(), header, SamUtils.EXTENDED_STRING, this );
 
             this.samBamWriter = writerAndFile.getFirst();
 
             File outputFile = writerAndFile.getSecond();
 
             String lastReadName = ""; //read name without pair tag
-            Map<SAMRecord, Integer> diffMap1 = new HashMap<>( 1024 ); //mapping of record to number of differences
-            Map<SAMRecord, Integer> diffMap2 = new HashMap<>( 1024 ); //mapping of record to number of differences
-            class1 = new ParsedClassification( sortOrder ); //classification data for all reads with same read name
-            class2 = new ParsedClassification( sortOrder );
-            int readPairId = 1;
-
-            while( samItor.hasNext() ) {
-                lineNo++;
-                try {
-                    //separate all mappings of same pair by read pair tag and hand it over to classification then
-                    SAMRecord record = samItor.next();
-                    if( !record.getReadUnmappedFlag() && chromLengthMap.containsKey( record.getReferenceName() ) ) {
-                        ReadPairExtensions pairTag = CommonsMappingParser.getReadPairTag( record );
-                        CommonsMappingParser.checkOrRemovePairTag( record );
-                        String readName = record.getReadName();
-
-                        // classify read pair, because all mappings for this pair are currently stored in the lists
-                        if( !readName.equals( lastReadName ) && !lastReadName.isEmpty() ) { //meaning: next pair, because sorted by read name
-                            this.performClassification( diffMap1, diffMap2, readPairId );
-                            CommonsMappingParser.writeSamRecord( diffMap1, class1, samBamWriter );
-                            CommonsMappingParser.writeSamRecord( diffMap2, class2, samBamWriter );
-                            class1 = new ParsedClassification( sortOrder );
-                            class2 = new ParsedClassification( sortOrder );
-                            readPairId++;
+            //the read pair classification of each read name depends on the previous ones, so it is done in the writer thread
+            ReadClassificationPipeline.GroupHandler groupHandler = group -> {
+                class1 = group.getClass1();
+                class2 = group.getClass2();
+                this.performClassification( group.getDiffMap1(), group.getDiffMap2(), group.getGroupId() );
+                CommonsMappingParser.writeSamRecord( group.getDiffMap1(), class1, samBamWriter );
+                CommonsMappingParser.writeSamRecord( group.getDiffMap2(), class2, samBamWriter );
+            };
+
+            try( ReadClassificationPipeline pipeline = new ReadClassificationPipeline( trackJob.getRefGen().getFile(), this, sortOrder,
+                                                                                       ReadClassificationPipeline.getDefaultThreadCount(),
+                                                                                       groupHandler ) ) {
+                while( samItor.hasNext() ) {
+                    lineNo++;
+                    try {
+                        //separate all mappings of same pair by read pair tag and hand it over to classification then
+                        SAMRecord record = samItor.next();
+                        if( !record.getReadUnmappedFlag() && chromLengthMap.containsKey( record.getReferenceName() ) ) {
+                            ReadPairExtensions pairTag = CommonsMappingParser.getReadPairTag( record );
+                            CommonsMappingParser.checkOrRemovePairTag( record );
+                            String readName = record.getReadName();
+
+                            // classify read pair, because all mappings for this pair are currently stored in the group
+                            if( !readName.equals( lastReadName ) && !lastReadName.isEmpty() ) { //meaning: next pair, because sorted by read name
+                                pipeline.finishGroup();
+                            }
 
-                        }
+                            if( pairTag == ReadPairExtensions.A1 ) {
+                                record.setReadPairedFlag( true );
+                                record.setFirstOfPairFlag( true );
+                            } else if( pairTag == ReadPairExtensions.A2 ) {
+                                record.setReadPairedFlag( true );
+                                record.setSecondOfPairFlag( true );
+                            } //since only reads without pair tag can have the same read name as the current one without pair tag its okay to add them to 1's data
+
+                            if( !CommonsMappingParser.checkReadSam( this, record.getReadString(), outputFile.getName(), lineNo ) ) {
+                                noSkippedReads++;
+                                continue; //continue, and ignore read, if it contains inconsistent information
+                            }
+                            pipeline.addRecord( record, pairTag == ReadPairExtensions.A2 );
 
-                        boolean classified;
-                        if( pairTag == ReadPairExtensions.A1 ) {
-                            record.setReadPairedFlag( true );
-                            record.setFirstOfPairFlag( true );
-                            classified = CommonsMappingParser.classifyRead( record, this, chromLengthMap, outputFile.getName(), lineNo, refSeqFetcher, diffMap1, class1 );
-                        } else if( pairTag == ReadPairExtensions.A2 ) {
-                            record.setReadPairedFlag( true );
-                            record.setSecondOfPairFlag( true );
-                            classified = CommonsMappingParser.classifyRead( record, this, chromLengthMap, outputFile.getName(), lineNo, refSeqFetcher, diffMap2, class2 );
-                        } else { //since only reads without pair tag can have the same read name as the current one without pair tag its okay to add them to 1's data
-                            classified = CommonsMappingParser.classifyRead( record, this, chromLengthMap, outputFile.getName(), lineNo, refSeqFetcher, diffMap1, class1 );
+                            lastReadName = readName;
+                        } else { // else read is unmapped or belongs to another reference
+                            this.sendMsgIfAllowed( NbBundle.getMessage( SamBamReadPairClassifier.class,
+                                                                        "Parser.Parsing.CorruptData", lineNo, record.getReadName() ) );
                         }
+                    } catch( SAMFormatException e ) {
+                        if( !e.getMessage().contains( "MAPQ should be 0" ) ) {
+                            sendMsgIfAllowed( NbBundle.getMessage( SamBamReadPairClassifier.class,
+                                                                   "Parser.Parsing.CorruptData", lineNo, e.toString() ) );
+                        } //all reads with the "MAPQ should be 0" error are just ordinary unmapped reads and thus ignored
+                    }
 
-                        if( !classified ) {
-                            noSkippedReads++;
-                            continue; //continue, and ignore read, if it contains inconsistent information
+                    if( lineNo % 10000 == 0 ) {
+                        finish = System.currentTimeMillis();
+                        if( finish - lastTime > 60000 || lineNo % 500000 == 0 ) {
+                            notifyObservers( Benchmark.calculateDuration( startTime, finish, lineNo + " mappings processed in " ) );
+                            lastTime = finish;
                         }
-
-                        lastReadName = readName;
-                    } else { // else read is unmapped or belongs to another reference
-                        this.sendMsgIfAllowed( NbBundle.getMessage( SamBamReadPairClassifier.class,
-                                                                    "Parser.Parsing.CorruptData", lineNo, record.getReadName() ) );
                     }
-                } catch( SAMFormatException e ) {
-                    if( !e.getMessage().contains( "MAPQ should be 0" ) ) {
-                        sendMsgIfAllowed( NbBundle.getMessage( SamBamReadPairClassifier.class,
-                                                               "Parser.Parsing.CorruptData", lineNo, e.toString() ) );
-                    } //all reads with the "MAPQ should be 0" error are just ordinary unmapped reads and thus ignored
+                    System.err.flush();
                 }
 
-                if( lineNo % 10000 == 0 ) {
-                    finish = System.currentTimeMillis();
-                    if( finish - lastTime > 60000 || lineNo % 500000 == 0 ) {
-                        notifyObservers( Benchmark.calculateDuration( startTime, finish, lineNo + " mappings processed in " ) );
-                        lastTime = finish;
-                    }
+                if( !pipeline.isGroupEmpty() ) {
+                    pipeline.finishGroup();
                 }
-                System.err.flush();
-            }
-
-            if( !diffMap1.isEmpty() || !diffMap2.isEmpty() ) {
-                this.performClassification( diffMap1, diffMap2, readPairId );
-                CommonsMappingParser.writeSamRecord( diffMap1, class1, samBamWriter );
-                CommonsMappingParser.writeSamRecord( diffMap2, class2, samBamWriter );
+                pipeline.finish();
             }
 
             if( errorLimit.getSkippedCount() > 0 ) {
@@ -22,18 +22,16 @@ import de.cebitec.readxplorer.api.Classification;
 import de.cebitec.readxplorer.api.enums.SequenceComparison;
 import de.cebitec.readxplorer.api.objects.AnalysisI;
 import de.cebitec.readxplorer.databackend.IntervalRequest;
-import de.cebitec.readxplorer.databackend.SamBamFileReader;
 import de.cebitec.readxplorer.databackend.connector.TrackConnector;
 import de.cebitec.readxplorer.databackend.dataobjects.CoverageAndDiffResult;
 import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
-import de.cebitec.readxplorer.databackend.dataobjects.Difference;
-import de.cebitec.readxplorer.databackend.dataobjects.GapCount;
-import de.cebitec.readxplorer.databackend.dataobjects.ReferenceGap;
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
+import de.cebitec.readxplorer.databackend.dataobjects.Pileup;
 import de.cebitec.readxplorer.databackend.dataobjects.Snp;
 import de.cebitec.readxplorer.databackend.dataobjects.SnpI;
 import de.cebitec.readxplorer.utils.Observer;
-import de.cebitec.readxplorer.utils.SequenceUtils;
 import htsjdk.samtools.util.RuntimeIOException;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -50,14 +48,20 @@ public class AnalysisSNPs implements Observer, AnalysisI<List<SnpI>> {
 
     private static final Logger LOG = LoggerFactory.getLogger( AnalysisSNPs.class.getName() );
 
-    private static final int BASE_A = 0;
-    private static final int BASE_C = 1;
-    private static final int BASE_G = 2;
-    private static final int BASE_T = 3;
-    private static final int BASE_N = 4;
-    private static final int BASE_GAP = 5;
+    private static final int BASE_A = Pileup.BASE_A;
+    private static final int BASE_C = Pileup.BASE_C;
+    private static final int BASE_G = Pileup.BASE_G;
+    private static final int BASE_T = Pileup.BASE_T;
+    private static final int BASE_N = Pileup.BASE_N;
+    private static final int BASE_GAP = Pileup.BASE_GAP;
+    /**
+     * 6 = Number of supported bases: A,C,G,T,N,_.
+     */
+    private static final int NO_BASES = Pileup.NO_BASES;
 
-    private final TrackConnector trackConnector;
+    private final PersistentReference reference;
+    private final int trackId;
+    private final File trackFile;
     private final ParameterSetSNPs analysisParams;
     private final List<Classification> excludedClasses;
     private final List<SnpI> snps;
@@ -65,40 +69,30 @@ public class AnalysisSNPs implements Observer, AnalysisI<List<SnpI>> {
     private boolean hasMappingQualities = true;
 
 
-//    private int count = 0;
-    /**
-     * 6 = Number of supported bases: A,C,G,T,N,_.
-     */
-    private static final int NO_BASES = 6;
-    /**
-     * 3 = Three values are needed: the count, the base quality and the mapping
-     * quality.
-     */
-    private static final int NO_VALUES = 3;
-    /**
-     * 0 = index for the count of a diff in all mappings at that position.
-     */
-    private static final int COUNT_IDX = 0;
     /**
-     * 1 = index for the average base quality of a diff base in all mappings for
-     * that position.
-     */
-    private static final int BASE_QUAL_IDX = 1;
-    /**
-     * 2 = index for the average mapping quality of a diff base in all mappings
-     * for that position.
+     * Carries out the logic behind the SNP and DIP detection.
+     * <p>
+     * @param trackConnector the track connector for this analysis
+     * @param analysisParams the set of parameters for this analysis
      */
-    private static final int MAP_QUAL_IDX = 2;
+    public AnalysisSNPs( TrackConnector trackConnector, ParameterSetSNPs analysisParams ) {
+        this( trackConnector.getRefGenome(), trackConnector.getTrackID(), trackConnector.getTrackFile(), analysisParams );
+    }
 
 
     /**
-     * Carries out the logic behind the SNP and DIP detection.
+     * Carries out the logic behind the SNP and DIP detection for a track,
+     * which is not accessed through a track connector.
      * <p>
-     * @param trackConnector the track connector for this analysis
+     * @param reference      the reference of the track
+     * @param trackId        the id of the track
+     * @param trackFile      the mapping file of the track
      * @param analysisParams the set of parameters for this analysis
      */
-    public AnalysisSNPs( TrackConnector trackConnector, ParameterSetSNPs analysisParams ) {
-        this.trackConnector = trackConnector;
+    public AnalysisSNPs( PersistentReference reference, int trackId, File trackFile, ParameterSetSNPs analysisParams ) {
+        this.reference = reference;
+        this.trackId = trackId;
+        this.trackFile = trackFile;
         this.analysisParams = analysisParams;
         this.excludedClasses = analysisParams.getReadClassParams().getExcludedClasses();
         this.snps = new ArrayList<>();
@@ -153,90 +147,48 @@ public class AnalysisSNPs implements Observer, AnalysisI<List<SnpI>> {
 
 
     /**
-     * Creates the count arrays for the SNP/DIP positions and then checks each
-     * position, if it fulfills the given parameters. Only these positions are
-     * then stored in the SNP result.
+     * Checks each position of the pileup of the result, if it fulfills the
+     * given parameters. Only these positions are then stored in the SNP
+     * result. The pileup is recycled afterwards.
      * <p>
      * @param covAndDiffs the coverage and diff result to handle here
      */
     private void updateSnpResults( CoverageAndDiffResult covAndDiffs ) {
         CoverageManager coverage = covAndDiffs.getCovManager();
-        List<Difference> diffs = covAndDiffs.getDiffs();
-        List<ReferenceGap> gaps = covAndDiffs.getGaps();
-
-
-        //The first index is the relative position, the second the base index, the third contains count (0), average base (1) and mapping quality (2)
-        int[][][] baseArray = new int[coverage.getRightBound() - coverage.getLeftBound() + 1][NO_BASES][NO_VALUES]; //+1 because sequence starts at 1 not 0
-        GapCount[] gapCounts = new GapCount[coverage.getRightBound() - coverage.getLeftBound() + 1]; //right bound is excluded in CoverageManager
-
-        char base;
-        for( Difference diff : diffs ) {
-            if( diff.getPosition() >= coverage.getLeftBound() && diff.getPosition() < coverage.getRightBound() &&
-                (diff.getBaseQuality() > analysisParams.getMinBaseQuality() || diff.getBaseQuality() == -1) ) {
-                base = diff.isForwardStrand() ? diff.getBase() : SequenceUtils.getDnaComplement( diff.getBase() );
-                int baseIdx = getBaseInt( base );
-                int pos = diff.getPosition() - coverage.getLeftBound();
-                baseArray[pos][baseIdx][COUNT_IDX] += diff.getCount();
-                if( diff.getBaseQuality() > -1 ) { //can be -1 if unknown
-                    baseArray[pos][baseIdx][BASE_QUAL_IDX] += diff.getBaseQuality();
-                } else {
-                    hasBaseQualities = false;
-                }
-                if( diff.getMappingQuality() != SamBamFileReader.UNKNOWN_MAP_QUAL ||
-                    diff.getMappingQuality() != SamBamFileReader.UNKNOWN_CALCULATED_MAP_QUAL ) {
-                    baseArray[pos][baseIdx][MAP_QUAL_IDX] += diff.getMappingQuality();
-                } else {
-                    hasMappingQualities = false; //TODO: check before analysis for a track, if it supports base and mapping qualities - could lead to errors when stored in DB or takes a while
-                }
-            }
-        }
-
-        for( ReferenceGap gap : gaps ) {
-            if( gap.getPosition() >= coverage.getLeftBound() && gap.getPosition() < coverage.getRightBound() &&
-                (gap.getBaseQuality() == -1 || gap.getBaseQuality() > analysisParams.getMinBaseQuality()) ) {
-                int relativeGapPos = gap.getPosition() - coverage.getLeftBound();
-                if( gapCounts[relativeGapPos] == null ) {
-                    gapCounts[relativeGapPos] = new GapCount();
-                }
-                gapCounts[relativeGapPos].incCountFor( gap );
-                if( gap.getBaseQuality() <= -1 ) {
-                    hasBaseQualities = false;
-                }
-                if( gap.getMappingQuality() == SamBamFileReader.UNKNOWN_MAP_QUAL ||
-                    gap.getMappingQuality() == SamBamFileReader.UNKNOWN_CALCULATED_MAP_QUAL ) {
-                    hasMappingQualities = false;
-                }
-            }
+        Pileup pileup = covAndDiffs.getPileup();
+        if( pileup == null ) {
+            LOG.error( "SNP detection requires a pileup, but the result does not contain one." );
+            return;
         }
+        hasBaseQualities &= pileup.hasBaseQualities();
+        hasMappingQualities &= pileup.hasMappingQualities();
 
         IntervalRequest request = covAndDiffs.getRequest();
-        String refSubSeq = trackConnector.getRefGenome().getChromSequence( request.getChromId(), request.getFrom(), request.getTo() );
+        String refSubSeq = reference.getChromSequence( request.getChromId(), pileup.getFrom(), pileup.getTo() );
+        int[] baseCounts = new int[NO_BASES];
         try {
 
-            for( int i = 0; i < baseArray.length; ++i ) {
-                int absPos = i + coverage.getLeftBound();
-                int[][] baseCounts = baseArray[i];
+            for( int absPos = pileup.getFrom(); absPos <= pileup.getTo(); ++absPos ) {
 
                 // i=0..5 is ACGTN_GAP (DIFFS) ...
                 int diffCount = 0;
-                int largestBaseCount = 0;
                 int maxCount = 0;
                 int maxBaseIdx = 0;
                 for( int j = 0; j <= BASE_GAP; j++ ) {
-                    if( maxCount < baseCounts[j][COUNT_IDX] ) {
-                        maxCount = baseCounts[j][COUNT_IDX];
+                    baseCounts[j] = pileup.getCount( absPos, j );
+                    if( maxCount < baseCounts[j] ) {
+                        maxCount = baseCounts[j];
                         maxBaseIdx = j;
                     }
                     //because only contains diffs, no matches
-                    diffCount += baseCounts[j][COUNT_IDX];
-                    largestBaseCount = largestBaseCount < baseCounts[j][COUNT_IDX] ? baseCounts[j][COUNT_IDX] : largestBaseCount;
+                    diffCount += baseCounts[j];
                 }
 
                 if( maxCount > 0 && !analysisParams.isUseMainBase() && diffCount >= analysisParams.getMinMismatchingBases() ||
-                    analysisParams.isUseMainBase() && largestBaseCount >= analysisParams.getMinMismatchingBases() ) {
+                    analysisParams.isUseMainBase() && maxCount >= analysisParams.getMinMismatchingBases() ) {
 
-                    int averageBaseQual = baseCounts[maxBaseIdx][BASE_QUAL_IDX] / maxCount;
-                    int averageMappingQual = baseCounts[maxBaseIdx][MAP_QUAL_IDX] / maxCount;
+                    int averageBaseQual = pileup.getBaseQualSum( absPos, maxBaseIdx ) / maxCount;
+                    int averageMappingQual = pileup.getMapQualSum( absPos, maxBaseIdx ) / maxCount;
 
                     if( (!this.hasBaseQualities || averageBaseQual >= analysisParams.getMinAverageBaseQual()) &&
                         (!this.hasMappingQualities || averageMappingQual >= analysisParams.getMinAverageMappingQual()) ) {
@@ -249,33 +201,29 @@ public class AnalysisSNPs implements Observer, AnalysisI<List<SnpI>> {
                         double frequency = (diffCount * 100.0) / cov;
 
                         if( frequency >= analysisParams.getMinPercentage() ) {
-                            char refBase = refSubSeq.charAt( i );
-                            int refBaseIdx = getBaseInt( refBase );
+                            char refBase = refSubSeq.charAt( absPos - pileup.getFrom() );
+                            int refBaseIdx = Pileup.getBaseIndex( refBase );
                             //determine SNP type, can still be match, if match coverage is largest
-                            baseCounts[refBaseIdx][COUNT_IDX] = cov - diffCount;
-                            SequenceComparison snpType;
+                            baseCounts[refBaseIdx] = cov - diffCount;
                             if( maxBaseIdx == refBaseIdx ) {
                                 continue;//snpType = SequenceComparison.MATCH; base = refBase;
-                            } else {
-                                snpType = getType( maxBaseIdx );
-                                base = getBase( maxBaseIdx );
                             }
 
                             this.snps.add( new Snp(
                                     absPos,
-                                    trackConnector.getTrackID(),
-                                    covAndDiffs.getRequest().getChromId(),
-                                    base,
+                                    trackId,
+                                    request.getChromId(),
+                                    getBase( maxBaseIdx ),
                                     refBase,
-                                    baseCounts[BASE_A][COUNT_IDX],
-                                    baseCounts[BASE_C][COUNT_IDX],
-                                    baseCounts[BASE_G][COUNT_IDX],
-                                    baseCounts[BASE_T][COUNT_IDX],
-                                    baseCounts[BASE_N][COUNT_IDX],
-                                    baseCounts[BASE_GAP][COUNT_IDX],
+                                    baseCounts[BASE_A],
+                                    baseCounts[BASE_C],
+                                    baseCounts[BASE_G],
+                                    baseCounts[BASE_T],
+                                    baseCounts[BASE_N],
+                                    baseCounts[BASE_GAP],
                                     cov,
                                     frequency,
-                                    snpType,
+                                    getType( maxBaseIdx ),
                                     averageBaseQual,
                                     averageMappingQual ) );
                         }
@@ -283,74 +231,67 @@ public class AnalysisSNPs implements Observer, AnalysisI<List<SnpI>> {
                 }
             }
 
-            for( int i = 0; i < gapCounts.length; ++i ) {
-                if( gapCounts[i] != null ) {
-                    List<int[][]> gapOrderList = gapCounts[i].getGapOrderCount();
-                    int absPos = i + coverage.getLeftBound();
-
-                    for( int j = 0; j < gapOrderList.size(); ++j ) {
-                        int[][] gapCountArray = gapOrderList.get( j );
-
-                        // i=0..5 is ACGTN (DIFFS) ...
-                        int diffCount = 0;
-                        int largestBaseCount = 0;
-                        int maxCount = 0;
-                        int maxBaseIdx = 0;
-                        for( int k = 0; k < BASE_GAP; k++ ) { //here we only have bases including 'N'
-                            if( maxCount < gapCountArray[k][COUNT_IDX] ) {
-                                maxCount = gapCountArray[k][COUNT_IDX];
-                                maxBaseIdx = k;
-                            }
-                            //because only contains gaps counts, no matches
-                            diffCount += gapCountArray[k][COUNT_IDX];
-                            largestBaseCount = largestBaseCount < gapCountArray[k][COUNT_IDX] ? gapCountArray[k][COUNT_IDX] : largestBaseCount;
+            for( int ins : pileup.getSortedInsertions() ) {
+                int absPos = pileup.getInsertionPosition( ins );
+
+                // i=0..4 is ACGTN (DIFFS) ...
+                int diffCount = 0;
+                int maxCount = 0;
+                int maxBaseIdx = 0;
+                for( int k = 0; k < BASE_GAP; k++ ) { //here we only have bases including 'N'
+                    int count = pileup.getInsertionCount( ins, k );
+                    if( maxCount < count ) {
+                        maxCount = count;
+                        maxBaseIdx = k;
+                    }
+                    //because only contains gaps counts, no matches
+                    diffCount += count;
+                }
+
+                if( maxCount > 0 && !analysisParams.isUseMainBase() && diffCount >= analysisParams.getMinMismatchingBases() ||
+                    analysisParams.isUseMainBase() && maxCount >= analysisParams.getMinMismatchingBases() ) {
+
+                    int averageBaseQual = pileup.getInsertionBaseQualSum( ins, maxBaseIdx ) / maxCount;
+                    int averageMappingQual = pileup.getInsertionMapQualSum( ins, maxBaseIdx ) / maxCount;
+
+                    if( (!this.hasBaseQualities || averageBaseQual >= analysisParams.getMinAverageBaseQual()) &&
+                        (!this.hasMappingQualities || averageMappingQual >= analysisParams.getMinAverageMappingQual()) ) {
+
+                        int cov = coverage.getTotalCoverage( excludedClasses, absPos, true ) + coverage.getTotalCoverage( excludedClasses, absPos, false );
+                        if( cov == 0 ) {
+                            ++cov;
+                            LOG.error( "found uncovered position in gaps: " + absPos );
                         }
+                        double frequency = (diffCount * 100.0) / cov;
 
-                        if( !analysisParams.isUseMainBase() && diffCount >= analysisParams.getMinMismatchingBases() ||
-                            analysisParams.isUseMainBase() && largestBaseCount >= analysisParams.getMinMismatchingBases() ) {
-
-                            int averageBaseQual = gapCountArray[maxBaseIdx][BASE_QUAL_IDX] / maxCount;
-                            int averageMappingQual = gapCountArray[maxBaseIdx][MAP_QUAL_IDX] / maxCount;
-
-                            if( (!this.hasBaseQualities || averageBaseQual >= analysisParams.getMinAverageBaseQual()) &&
-                                (!this.hasMappingQualities || averageMappingQual >= analysisParams.getMinAverageMappingQual()) ) {
-
-                                int cov = coverage.getTotalCoverage( excludedClasses, absPos, true ) + coverage.getTotalCoverage( excludedClasses, absPos, false );
-                                if( cov == 0 ) {
-                                    ++cov;
-                                    LOG.error( "found uncovered position in gaps: " + absPos );
-                                }
-                                double frequency = (diffCount * 100.0) / cov;
-
-                                if( frequency >= analysisParams.getMinPercentage() ) {
-                                    base = getBase( maxBaseIdx );
-
-                                    this.snps.add( new Snp(
-                                            absPos,
-                                            trackConnector.getTrackID(),
-                                            covAndDiffs.getRequest().getChromId(),
-                                            base,
-                                            '-',
-                                            gapCountArray[BASE_A][COUNT_IDX],
-                                            gapCountArray[BASE_C][COUNT_IDX],
-                                            gapCountArray[BASE_G][COUNT_IDX],
-                                            gapCountArray[BASE_T][COUNT_IDX],
-                                            gapCountArray[BASE_N][COUNT_IDX],
-                                            0,
-                                            cov,
-                                            frequency,
-                                            SequenceComparison.INSERTION,
-                                            j,
-                                            averageBaseQual,
-                                            averageMappingQual ) );
-                                }
-                            }
+                        if( frequency >= analysisParams.getMinPercentage() ) {
+
+                            this.snps.add( new Snp(
+                                    absPos,
+                                    trackId,
+                                    request.getChromId(),
+                                    getBase( maxBaseIdx ),
+                                    '-',
+                                    pileup.getInsertionCount( ins, BASE_A ),
+                                    pileup.getInsertionCount( ins, BASE_C ),
+                                    pileup.getInsertionCount( ins, BASE_G ),
+                                    pileup.getInsertionCount( ins, BASE_T ),
+                                    pileup.getInsertionCount( ins, BASE_N ),
+                                    0,
+                                    cov,
+                                    frequency,
+                                    SequenceComparison.INSERTION,
+                                    pileup.getInsertionOrder( ins ),
+                                    averageBaseQual,
+                                    averageMappingQual ) );
                         }
                     }
                 }
             }
         } catch( RuntimeIOException e ) {
-            LOG.error( "Could not read data from track file: {0}", trackConnector.getTrackFile() );
+            LOG.error( "Could not read data from track file: {}", trackFile );
+        } finally {
+            pileup.release();
         }
     }
 
@@ -413,39 +354,4 @@ public class AnalysisSNPs implements Observer, AnalysisI<List<SnpI>> {
     }
 
 
-    /**
-     * @param base the base whose integer value is needed
-     * <p>
-     * @return the integer value for the given base type
-     */
-    private static int getBaseInt( char base ) {
-
-        int baseInt = 0;
-        switch( base ) {
-            case 'A':
-                baseInt = BASE_A;
-                break;
-            case 'C':
-                baseInt = BASE_C;
-                break;
-            case 'G':
-                baseInt = BASE_G;
-                break;
-            case 'T':
-                baseInt = BASE_T;
-                break;
-            case 'N':
-                baseInt = BASE_N;
-                break;
-            case '-':
-                baseInt = BASE_GAP;
-                break;
-            default:
-                LOG.error( "Analysis SNPs: Encountered unknown nucleotide character!" );
-        }
-
-        return baseInt;
-    }
-
-
 }
@@ -19,6 +19,7 @@ package de.cebitec.readxplorer.tools.snpdetection;
 
 
 import de.cebitec.readxplorer.api.enums.FeatureType;
+import de.cebitec.readxplorer.api.enums.IntervalRequestData;
 import de.cebitec.readxplorer.databackend.AnalysesHandler;
 import de.cebitec.readxplorer.databackend.ParametersReadClasses;
 import de.cebitec.readxplorer.databackend.SaveFileFetcherForGUI;
@@ -226,6 +227,8 @@ public final class OpenSnpDetectionAction implements ActionListener,
         snpAnalysisHandler.registerObserver( analysisSNPs );
         snpAnalysisHandler.setCoverageNeeded( true );
         snpAnalysisHandler.setDiffsAndGapsNeeded( true );
+        snpAnalysisHandler.setDesiredData( IntervalRequestData.Pileup );
+        snpAnalysisHandler.setMinBaseQuality( parametersSNPs.getMinBaseQuality() );
         trackToAnalysisMap.put( connector.getTrackID(), analysisSNPs );
         snpAnalysisHandler.startAnalysis();
     }
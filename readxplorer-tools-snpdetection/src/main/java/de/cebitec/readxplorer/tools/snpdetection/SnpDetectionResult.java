@@ -26,6 +26,8 @@ import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
 import de.cebitec.readxplorer.databackend.dataobjects.Snp;
 import de.cebitec.readxplorer.databackend.dataobjects.SnpI;
+import de.cebitec.readxplorer.exporter.tables.StreamingExportDataI;
+import de.cebitec.readxplorer.exporter.tables.TableRowCursor;
 import de.cebitec.readxplorer.utils.GeneralUtils;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -40,7 +42,7 @@ import java.util.Map;
  * <p>
  * @author Rolf Hilker <rhilker at cebitec.uni-bielefeld.de>
  */
-public class SnpDetectionResult extends ResultTrackAnalysis<ParameterSetSNPs> {
+public class SnpDetectionResult extends ResultTrackAnalysis<ParameterSetSNPs> implements StreamingExportDataI {
 
     private final List<SnpI> snpList;
 
@@ -91,126 +93,159 @@ public class SnpDetectionResult extends ResultTrackAnalysis<ParameterSetSNPs> {
     public List<List<List<Object>>> dataToExcelExportList() {
         List<List<List<Object>>> allData = new ArrayList<>();
         List<List<Object>> snpExportData = new ArrayList<>();
+        for( SnpI snpi : this.snpList ) {
+            snpExportData.add( createSnpRow( snpi ) );
+        }
+        allData.add( snpExportData );
+        allData.add( createStatisticsRows() );
+
+        return allData;
+    }
 
+
+    /**
+     * Creates the rows of the SNP table on demand, so the table is never held
+     * in memory completely during the export.
+     * <p>
+     * @param sheetIndex index of the sheet whose rows are needed
+     * <p>
+     * @return A cursor over the rows of the sheet
+     */
+    @Override
+    public TableRowCursor createRowCursor( int sheetIndex ) {
+        if( sheetIndex == 0 ) {
+            return TableRowCursor.of( snpList.size(), i -> createSnpRow( snpList.get( i ) ) );
+        }
+        return TableRowCursor.of( createStatisticsRows() );
+    }
+
+
+    /**
+     * @param snpi the snp to export
+     * <p>
+     * @return The row of the SNP table for the given snp
+     */
+    private List<Object> createSnpRow( SnpI snpi ) {
         String intergenic = "Intergenic";
 
-        for( SnpI snpi : this.snpList ) {
-            List<Object> snpExport = new ArrayList<>();
-            Snp snp = (Snp) snpi;
-
-            snpExport.add( snp.getPosition() );
-            snpExport.add( snp.getGapOrderIndex() );
-            snpExport.add( getTrackEntry( snp.getTrackId(), true ) );
-            snpExport.add( getChromosomeMap().get( snp.getChromId() ) );
-            snpExport.add( snp.getBase() );
-            snpExport.add( snp.getRefBase() );
-            snpExport.add( snp.getARate() );
-            snpExport.add( snp.getCRate() );
-            snpExport.add( snp.getGRate() );
-            snpExport.add( snp.getTRate() );
-            snpExport.add( snp.getNRate() );
-            snpExport.add( snp.getGapRate() );
-            snpExport.add( snp.getCoverage() );
-            snpExport.add( snp.getFrequency() );
-            snpExport.add( snp.getType().getType() );
-
-            String aminoAcidsRef = "";
-            String aminoAcidsSnp = "";
-            String codonsSNP = "";
-            String codonsRef = "";
-            String effect = "";
-            String geneId = "";
-            String locus = "";
-            String ecNo = "";
-            String product = "";
-            List<CodonSnp> codons;
-            //determine amino acid substitutions among snp substitutions
-            if( snp.getType() == SequenceComparison.SUBSTITUTION ) {
-
-                codons = snp.getCodons();
-
-                if( codons.isEmpty() ) {
-                    aminoAcidsRef = intergenic;
-                    aminoAcidsSnp = intergenic;
+        List<Object> snpExport = new ArrayList<>();
+        Snp snp = (Snp) snpi;
+
+        snpExport.add( snp.getPosition() );
+        snpExport.add( snp.getGapOrderIndex() );
+        snpExport.add( getTrackEntry( snp.getTrackId(), true ) );
+        snpExport.add( getChromosomeMap().get( snp.getChromId() ) );
+        snpExport.add( snp.getBase() );
+        snpExport.add( snp.getRefBase() );
+        snpExport.add( snp.getARate() );
+        snpExport.add( snp.getCRate() );
+        snpExport.add( snp.getGRate() );
+        snpExport.add( snp.getTRate() );
+        snpExport.add( snp.getNRate() );
+        snpExport.add( snp.getGapRate() );
+        snpExport.add( snp.getCoverage() );
+        snpExport.add( snp.getFrequency() );
+        snpExport.add( snp.getType().getType() );
+
+        String aminoAcidsRef = "";
+        String aminoAcidsSnp = "";
+        String codonsSNP = "";
+        String codonsRef = "";
+        String effect = "";
+        String geneId = "";
+        String locus = "";
+        String ecNo = "";
+        String product = "";
+        List<CodonSnp> codons;
+        //determine amino acid substitutions among snp substitutions
+        if( snp.getType() == SequenceComparison.SUBSTITUTION ) {
+
+            codons = snp.getCodons();
+
+            if( codons.isEmpty() ) {
+                aminoAcidsRef = intergenic;
+                aminoAcidsSnp = intergenic;
+            }
+
+            for( CodonSnp codon : codons ) {
+                char aminoRef = codon.getAminoRef();
+                char aminoSnp = codon.getAminoSnp();
+                codonsRef += codon.getTripletRef() + "\n";
+                codonsSNP += codon.getTripletSnp() + "\n";
+                if( aminoRef != '-' ) {
+                    aminoAcidsRef += aminoRef + " (" + AminoAcidProperties.getPropertyForAA( aminoRef ) + ")\n";
+                } else {
+                    aminoAcidsRef += aminoRef + "\n";
+                }
+                if( aminoSnp != '-' ) {
+                    aminoAcidsSnp += aminoSnp + " (" + AminoAcidProperties.getPropertyForAA( aminoSnp ) + ")\n";
+                } else {
+                    aminoAcidsSnp += aminoSnp + "\n";
+                }
+                effect += codon.getEffect().getType() + "\n";
+                geneId += codon.getFeature() + "\n";
+                locus += codon.getFeature().getLocus() + "\n";
+                ecNo += codon.getFeature().getEcNumber() + "\n";
+                product += codon.getFeature().getProduct() + "\n";
+            }
+
+        } else {
+            codons = snp.getCodons();
+            if( !codons.isEmpty() ) {
+                if( snp.getType().equals( SequenceComparison.INSERTION ) ) {
+                    effect = String.valueOf( SequenceComparison.INSERTION.getType() );
+
+                } else if( snp.getType().equals( SequenceComparison.DELETION ) ) {
+                    effect = String.valueOf( SequenceComparison.DELETION.getType() );
+
+                } else if( snp.getType().equals( SequenceComparison.MATCH ) ) {
+                    effect = String.valueOf( SequenceComparison.MATCH.getType() );
                 }
 
                 for( CodonSnp codon : codons ) {
-                    char aminoRef = codon.getAminoRef();
-                    char aminoSnp = codon.getAminoSnp();
-                    codonsRef += codon.getTripletRef() + "\n";
-                    codonsSNP += codon.getTripletSnp() + "\n";
-                    if( aminoRef != '-' ) {
-                        aminoAcidsRef += aminoRef + " (" + AminoAcidProperties.getPropertyForAA( aminoRef ) + ")\n";
-                    } else {
-                        aminoAcidsRef += aminoRef + "\n";
-                    }
-                    if( aminoSnp != '-' ) {
-                        aminoAcidsSnp += aminoSnp + " (" + AminoAcidProperties.getPropertyForAA( aminoSnp ) + ")\n";
-                    } else {
-                        aminoAcidsSnp += aminoSnp + "\n";
-                    }
-                    effect += codon.getEffect().getType() + "\n";
                     geneId += codon.getFeature() + "\n";
                     locus += codon.getFeature().getLocus() + "\n";
                     ecNo += codon.getFeature().getEcNumber() + "\n";
                     product += codon.getFeature().getProduct() + "\n";
                 }
+                codonsRef = "-";
+                codonsSNP = "-";
+                aminoAcidsRef = "-";
+                aminoAcidsSnp = "-";
 
             } else {
-                codons = snp.getCodons();
-                if( !codons.isEmpty() ) {
-                    if( snp.getType().equals( SequenceComparison.INSERTION ) ) {
-                        effect = String.valueOf( SequenceComparison.INSERTION.getType() );
-
-                    } else if( snp.getType().equals( SequenceComparison.DELETION ) ) {
-                        effect = String.valueOf( SequenceComparison.DELETION.getType() );
-
-                    } else if( snp.getType().equals( SequenceComparison.MATCH ) ) {
-                        effect = String.valueOf( SequenceComparison.MATCH.getType() );
-                    }
-
-                    for( CodonSnp codon : codons ) {
-                        geneId += codon.getFeature() + "\n";
-                        locus += codon.getFeature().getLocus() + "\n";
-                        ecNo += codon.getFeature().getEcNumber() + "\n";
-                        product += codon.getFeature().getProduct() + "\n";
-                    }
-                    codonsRef = "-";
-                    codonsSNP = "-";
-                    aminoAcidsRef = "-";
-                    aminoAcidsSnp = "-";
-
-                } else {
-                    codonsRef = "-";
-                    codonsSNP = "-";
-                    aminoAcidsRef = intergenic;
-                    aminoAcidsSnp = intergenic;
-                    effect = "";
-                    geneId = "";
-                    locus = "";
-                    ecNo = "";
-                    product = "";
-                }
+                codonsRef = "-";
+                codonsSNP = "-";
+                aminoAcidsRef = intergenic;
+                aminoAcidsSnp = intergenic;
+                effect = "";
+                geneId = "";
+                locus = "";
+                ecNo = "";
+                product = "";
             }
-
-            snpExport.add( aminoAcidsRef );
-            snpExport.add( aminoAcidsSnp );
-            snpExport.add( codonsRef );
-            snpExport.add( codonsSNP );
-            snpExport.add( effect );
-            snpExport.add( snp.getAverageBaseQual() );
-            snpExport.add( snp.getAverageMappingQual() );
-            snpExport.add( geneId );
-            snpExport.add( locus );
-            snpExport.add( ecNo );
-            snpExport.add( product );
-
-            snpExportData.add( snpExport );
         }
 
-        allData.add( snpExportData );
+        snpExport.add( aminoAcidsRef );
+        snpExport.add( aminoAcidsSnp );
+        snpExport.add( codonsRef );
+        snpExport.add( codonsSNP );
+        snpExport.add( effect );
+        snpExport.add( snp.getAverageBaseQual() );
+        snpExport.add( snp.getAverageMappingQual() );
+        snpExport.add( geneId );
+        snpExport.add( locus );
+        snpExport.add( ecNo );
+        snpExport.add( product );
+
+        return snpExport;
+    }
 
-        //create statistics sheet
+
+    /**
+     * @return The rows of the SNP statistics sheet
+     */
+    private List<List<Object>> createStatisticsRows() {
         ParameterSetSNPs params = (ParameterSetSNPs) getParameters();
 
         List<List<Object>> statisticsExportData = new ArrayList<>();
@@ -249,9 +284,7 @@ public class SnpDetectionResult extends ResultTrackAnalysis<ParameterSetSNPs> {
         statisticsExportData.add( createStatisticTableRow( SNPDetectionResultPanel.SNPS_INSERTIONS ) );
         statisticsExportData.add( createStatisticTableRow( SNPDetectionResultPanel.SNPS_DELETIONS ) );
 
-        allData.add( statisticsExportData );
-
-        return allData;
+        return statisticsExportData;
     }
 
 
@@ -23,8 +23,8 @@ import de.cebitec.readxplorer.api.objects.AnalysisI;
 import de.cebitec.readxplorer.databackend.connector.ProjectConnector;
 import de.cebitec.readxplorer.databackend.connector.ReferenceConnector;
 import de.cebitec.readxplorer.databackend.connector.TrackConnector;
-import de.cebitec.readxplorer.databackend.dataobjects.Mapping;
-import de.cebitec.readxplorer.databackend.dataobjects.MappingResult;
+import de.cebitec.readxplorer.databackend.dataobjects.MappingBatch;
+import de.cebitec.readxplorer.databackend.dataobjects.MappingBatchResult;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentFeature;
 import de.cebitec.readxplorer.transcriptionanalyses.datastructures.AssignedMapping;
@@ -64,6 +64,8 @@ public class AnalysisNormalization implements Observer, AnalysisI<List<Normalize
     private final TrackConnector trackConnector;
     private final List<NormalizedReadCount> normValues;
     private final List<PersistentFeature> genomeFeatures;
+    private final Map<Integer, List<PersistentFeature>> chromFeatureMap;
+    private final Map<Integer, FeatureMappingJoin> chromJoinMap;
     private final Map<Integer, NormalizedReadCount> featureReadCount;
     private double totalMappedReads = 0;
 
@@ -92,6 +94,8 @@ public class AnalysisNormalization implements Observer, AnalysisI<List<Normalize
         featureReadCount = new HashMap<>();
         normalizationSumMap = new HashMap<>();
         genomeFeatures = new ArrayList<>();
+        chromFeatureMap = new HashMap<>();
+        chromJoinMap = new HashMap<>();
         usedFeatureTypes = new HashSet<>( paramsNormalization.getSelFeatureTypes() );
 
         initDatastructures();
@@ -100,11 +104,8 @@ public class AnalysisNormalization implements Observer, AnalysisI<List<Normalize
 
     @Override
     public void update( Object data ) {
-        MappingResult mappingResult = new MappingResult( null, null );
-
-        if( data.getClass() == mappingResult.getClass() ) {
-            MappingResult mappings = (MappingResult) data;
-            updateReadCountForFeatures( mappings );
+        if( data instanceof MappingBatchResult ) {
+            updateReadCountForFeatures( (MappingBatchResult) data );
 
         } else if( data instanceof Byte && ((Byte) data) == 2 ) { //2 means mapping analysis is finished
             calculateFeatHierarchyData();
@@ -130,6 +131,9 @@ public class AnalysisNormalization implements Observer, AnalysisI<List<Normalize
             }
             genomeFeatures.addAll( chromFeatures );
             Collections.sort( genomeFeatures );
+            Collections.sort( chromFeatures );
+            chromFeatureMap.put( chrom.getId(), chromFeatures );
+            chromJoinMap.put( chrom.getId(), FeatureMappingJoin.forFeatures( chromFeatures, paramsNormalization, paramsNormalization.getReadClassParams() ) );
             noSelectedFeatures = genomeFeatures.size();
         }
     }
@@ -158,93 +162,52 @@ public class AnalysisNormalization implements Observer, AnalysisI<List<Normalize
 
     /**
      * Updates the read count for all features in the genomeFeatures list by all
-     * mappings in the mappings list.
+     * mappings in the mapping batch. Each feature receives its overlapping
+     * mappings from a sweep line join and every mapping is associated to the
+     * overlapping features according to the strategy in AssignedMapping. The
+     * {@link AssignedMapping} of a mapping is only created, when the mapping
+     * overlaps its first feature.
      * <p>
      * @param mappingResult the result containing all mappings to add to the
      *                      feature count
      */
-    public void updateReadCountForFeatures( MappingResult mappingResult ) {
-        List<Mapping> resultMappings = mappingResult.getMappings();
+    public void updateReadCountForFeatures( MappingBatchResult mappingResult ) {
         int currentChromId = mappingResult.getRequest().getChromId();
-        boolean isStrandBothOption = paramsNormalization.getReadClassParams().isStrandBothOption();
-        boolean isFeatureStrand = paramsNormalization.getReadClassParams().isStrandFeatureOption();
-        List<AssignedMapping> mappings = createAssignedMappings( resultMappings );
-        int lastMappingIdx = 0;
-
-        //every mapping is associated to overlapping feature via lastMappingIdx according to strategy in AssignedMapping
-        for( PersistentFeature feature : genomeFeatures ) {
-            if( feature.getChromId() == currentChromId ) {
-
-                int featStart = paramsNormalization.calcFeatureStartOffset( feature );
-                int featStop = paramsNormalization.calcFeatureStopOffset( feature );
-                boolean analysisStrand = isFeatureStrand ? feature.isFwdStrand() : !feature.isFwdStrand();
-                boolean fstFittingMapping = true;
-                int geneReadLengthSum = 0; //sum of all mappings of a single feature
-                int currentCount = 0; //count for one genomic feature
-
-                for( int j = lastMappingIdx; j < mappings.size(); ++j ) {
-//TODO: generally, when results arrive unordered, the first mapping pos can be used to determine feature position to start at
-                    AssignedMapping assignedMapping = mappings.get( j );
-                    Mapping mapping = assignedMapping.getMapping();
-
-                    //overlapping mappings identified within a feature
-                    if( mapping.getStop() >= featStart && mapping.getStart() <= featStop ) {
-
-                        if( fstFittingMapping ) {
-                            lastMappingIdx = j;
-                            fstFittingMapping = false;
-                        }
-                        if( isStrandBothOption || analysisStrand == mapping.isFwdStrand() ) {
-                            boolean countIt = assignedMapping.checkAssignment( featStart, featStop, feature, isStrandBothOption );
-                            if( countIt ) {
-                                assignedMapping.checkCountDecrease( featureReadCount );
-                                ++currentCount; //TODO: include multiple mapped read step: check included classes and add fractional count from all included mappings of a read
-                                geneReadLengthSum += mapping.getLength();
-                            }
-                        }
-
-                        //still mappings left, but need next feature
-                    } else if( mapping.getStart() > featStop ) {
-                        if( fstFittingMapping ) { //until now no mapping was found for current feature
-                            lastMappingIdx = j; //even if next feature starts at same start position no mapping will be found until mapping index j
-                        }
-                        break;
-//                    } else if ( mapping.getStart() < featStart ) {
-//                        //Comment for information purpose: do nothing in this case
-                    }
-                }
-
-                //store read count in feature
-                featureReadCount.get( feature.getId() ).setReadCount( featureReadCount.get( feature.getId() ).getReadCount() + currentCount );
-                featureReadCount.get( feature.getId() ).addReadLength( geneReadLengthSum );
-            }
+        final List<PersistentFeature> chromFeatures = chromFeatureMap.get( currentChromId );
+        final FeatureMappingJoin join = chromJoinMap.get( currentChromId );
+        if( join == null ) {
+            return;
         }
+        final boolean isStrandBothOption = paramsNormalization.getReadClassParams().isStrandBothOption();
+        final MappingBatch batch = mappingResult.getBatch();
+        final AssignedMapping[] mappings = new AssignedMapping[batch.size()];
+
+        join.join( batch, ( featureIdx, mappingIdx ) -> {
+            PersistentFeature feature = chromFeatures.get( featureIdx );
+            AssignedMapping assignedMapping = mappings[mappingIdx];
+            if( assignedMapping == null ) { //when other read count models are supported, they can be initialized here!
+                assignedMapping = new UnionFractionMapping( batch.getStart( mappingIdx ), batch.getStop( mappingIdx ) );
+                mappings[mappingIdx] = assignedMapping;
+            }
+            boolean countIt = assignedMapping.checkAssignment( join.getStart( featureIdx ), join.getStop( featureIdx ), feature, isStrandBothOption );
+            if( countIt ) {
+                assignedMapping.checkCountDecrease( featureReadCount );
+                //TODO: include multiple mapped read step: check included classes and add fractional count from all included mappings of a read
+                NormalizedReadCount readCount = featureReadCount.get( feature.getId() );
+                readCount.setReadCount( readCount.getReadCount() + 1 );
+                readCount.addReadLength( assignedMapping.getLength() );
+            }
+        } );
 
         for( AssignedMapping assignedMapping : mappings ) {
-            assignedMapping.fractionAssignmentCheck( featureReadCount );
+            if( assignedMapping != null ) {
+                assignedMapping.fractionAssignmentCheck( featureReadCount );
+            }
         }
-
-        lastMappingIdx = 0;
         //TODO: solution for more than one feature overlapping mapping request boundaries
     }
 
 
-    /**
-     * Create an {@link AssignedMapping} for each mapping.
-     * <p>
-     * @param mappings The list of mappings to process
-     * <p>
-     * @return The created list of {@link AssignedMapping}s
-     */
-    private List<AssignedMapping> createAssignedMappings( List<Mapping> mappings ) {
-        List<AssignedMapping> assignedMappings = new ArrayList<>();
-        for( Mapping mapping : mappings ) { //when other read count models are supported, they can be initialized here!
-            assignedMappings.add( new UnionFractionMapping( mapping ) );
-        }
-        return assignedMappings;
-    }
-
-
     /**
      * For features involved in a more complex hierarchy (not just 1 gene = 1CDS
      * as in prokaryotes), it calculates the read count, read length sum and
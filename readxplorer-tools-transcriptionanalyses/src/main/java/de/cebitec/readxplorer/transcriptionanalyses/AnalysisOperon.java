@@ -19,19 +19,17 @@ package de.cebitec.readxplorer.transcriptionanalyses;
 
 
 import de.cebitec.readxplorer.api.objects.AnalysisI;
-import de.cebitec.readxplorer.databackend.connector.DatabaseException;
 import de.cebitec.readxplorer.databackend.connector.ProjectConnector;
 import de.cebitec.readxplorer.databackend.connector.ReferenceConnector;
 import de.cebitec.readxplorer.databackend.connector.TrackConnector;
-import de.cebitec.readxplorer.databackend.dataobjects.Mapping;
-import de.cebitec.readxplorer.databackend.dataobjects.MappingResult;
+import de.cebitec.readxplorer.databackend.dataobjects.MappingBatch;
+import de.cebitec.readxplorer.databackend.dataobjects.MappingBatchResult;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentFeature;
 import de.cebitec.readxplorer.transcriptionanalyses.datastructures.Operon;
 import de.cebitec.readxplorer.transcriptionanalyses.datastructures.OperonAdjacency;
 import de.cebitec.readxplorer.utils.Observer;
 import de.cebitec.readxplorer.utils.StatsContainer;
-import de.cebitec.readxplorer.utils.errorhandling.ErrorHelper;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -58,10 +56,9 @@ public class AnalysisOperon implements Observer, AnalysisI<List<Operon>> {
     private final Map<Integer, OperonAdjacency> featureToPutativeOperonMap; //feature id of mappings to count for features
     private int averageReadLength = 0;
 //    private int averageReadPairLength = 0;
-    private int lastMappingIdx;
-    private int readsFeature1 = 0;
+    private final Map<Integer, List<OperonAdjacency>> chromOperonMap; //putative operons of each chromosome
+    private final Map<Integer, FeatureMappingJoin> chromJoinMap;
     private int spanningReads = 0;
-    private int readsFeature2 = 0;
     private int internalReads = 0;
     private final ParameterSetOperonDet operonDetParameters;
     private ReferenceConnector refConnector;
@@ -80,6 +77,8 @@ public class AnalysisOperon implements Observer, AnalysisI<List<Operon>> {
         this.operonDetParameters = operonDetParameters;
         this.operonList = new ArrayList<>();
         this.featureToPutativeOperonMap = new HashMap<>();
+        this.chromOperonMap = new HashMap<>();
+        this.chromJoinMap = new HashMap<>();
 
         this.initDatastructures();
     }
@@ -133,6 +132,7 @@ public class AnalysisOperon implements Observer, AnalysisI<List<Operon>> {
                     }
                 }
             }
+            this.createJoin( chrom.getId(), chromFeatures );
         }
     }
 
@@ -147,11 +147,8 @@ public class AnalysisOperon implements Observer, AnalysisI<List<Operon>> {
     @Override
     public void update( Object data ) {
         //the mappings are sorted by their start position!
-        MappingResult mappingResult = new MappingResult( null, null );
-        if( data.getClass() == mappingResult.getClass() ) {
-
-            MappingResult mappings = ((MappingResult) data);
-            this.sumReadCounts( mappings );
+        if( data instanceof MappingBatchResult ) {
+            this.sumReadCounts( (MappingBatchResult) data );
         }
         if( data instanceof Byte && ((Byte) data) == 2 ) {
             this.finish();
@@ -170,85 +167,69 @@ public class AnalysisOperon implements Observer, AnalysisI<List<Operon>> {
     }
 
 
+    /**
+     * Creates the sweep line join for the putative operons of a chromosome.
+     * Only mappings ending behind the stop of feature 1 and starting before
+     * the stop of feature 2 can be counted for an operon, so the join
+     * interval of each operon reaches from the stop of feature 1 to the stop
+     * of feature 2 on the strand of feature 1.
+     * <p>
+     * @param chromId       id of the chromosome
+     * @param chromFeatures the sorted features of the chromosome
+     */
+    private void createJoin( int chromId, List<PersistentFeature> chromFeatures ) {
+        List<OperonAdjacency> chromOperons = new ArrayList<>();
+        for( PersistentFeature feature : chromFeatures ) {
+            if( featureToPutativeOperonMap.containsKey( feature.getId() ) ) {
+                chromOperons.add( featureToPutativeOperonMap.get( feature.getId() ) );
+            }
+        }
+        int[] starts = new int[chromOperons.size()];
+        int[] stops = new int[chromOperons.size()];
+        boolean[] fwdStrands = new boolean[chromOperons.size()];
+        for( int i = 0; i < chromOperons.size(); ++i ) {
+            starts[i] = chromOperons.get( i ).getFeature1().getStop();
+            stops[i] = chromOperons.get( i ).getFeature2().getStop();
+            fwdStrands[i] = chromOperons.get( i ).getFeature1().isFwdStrand();
+        }
+        chromOperonMap.put( chromId, chromOperons );
+        chromJoinMap.put( chromId, new FeatureMappingJoin( starts, stops, fwdStrands, operonDetParameters.getReadClassParams() ) );
+    }
+
+
     /**
      * Sums up the read counts for the features the mappings are located in.
      * <p>
      * @param mappingResult the result containing the mappings to be
      *                      investigated
      */
-    public void sumReadCounts( MappingResult mappingResult ) {
-
-        try {
-
-            List<Mapping> mappings = mappingResult.getMappings();
-            PersistentChromosome chrom = refConnector.getChromosomeForGenome( mappingResult.getRequest().getChromId() );
-            int chromLength = chrom.getLength();
-            boolean isStrandBothOption = operonDetParameters.getReadClassParams().isStrandBothOption();
-            boolean isFeatureStrand = operonDetParameters.getReadClassParams().isStrandFeatureOption();
+    public void sumReadCounts( MappingBatchResult mappingResult ) {
 
-            List<PersistentFeature> chromFeatures = refConnector.getFeaturesForClosedInterval( 0, chromLength, chrom.getId() );
-            for( int i = 0; i < chromFeatures.size(); ++i ) {
-                PersistentFeature feature1 = chromFeatures.get( i );
-                int id1 = feature1.getId();
-
-                //we can already neglect all features not forming a putative operon
-                if( this.featureToPutativeOperonMap.containsKey( id1 ) ) {
-                    boolean fstFittingMapping = true;
-                    boolean analysisStrand = isFeatureStrand ? feature1.isFwdStrand() : !feature1.isFwdStrand();
-                    PersistentFeature feature2 = this.featureToPutativeOperonMap.get( id1 ).getFeature2();
-
-                    this.readsFeature1 = 0;
-                    this.readsFeature2 = 0;
-                    this.spanningReads = 0;
-                    this.internalReads = 0;
-
-                    int feature1Stop = feature1.getStop();
-                    int feature2Start = feature2.getStart();
-                    int feature2Stop = feature2.getStop();
-
-                    for( int j = this.lastMappingIdx; j < mappings.size(); ++j ) {
-                        Mapping mapping = mappings.get( j );
-
-                        if( mapping.getStart() > feature2Stop ) {
-                            if( fstFittingMapping ) { //until now no mapping was found for current feature
-                                lastMappingIdx = j; //even if next feature starts at same start position no mapping will be found until mapping index j
-                            }
-                            break; //since the mappings are sorted by start position
-                        } else if( !isStrandBothOption && (mapping.isFwdStrand() != analysisStrand || mapping.getStop() < feature1Stop) ) {
-                            continue;
-                        }
-
-                        //mappings identified between both features
-                        if( mapping.getStart() <= feature1Stop && mapping.getStop() > feature1Stop && mapping.getStop() < feature2Start ) {
-                            ++readsFeature1;
-                        } else if( mapping.getStart() > feature1Stop && mapping.getStart() < feature2Start && mapping.getStop() >= feature2Start ) {
-                            ++readsFeature2;
-                        } else if( mapping.getStart() <= feature1Stop && mapping.getStop() >= feature2Start ) {
-                            ++spanningReads;
-                        } else if( mapping.getStart() > feature1Stop && mapping.getStop() < feature2Start ) {
-                            ++internalReads;
-                        }
-
-                        if( fstFittingMapping && mapping.getStop() >= feature1.getStart() && mapping.getStart() <= feature2Stop ) {
-                            this.lastMappingIdx = j;
-                            fstFittingMapping = false;
-                        }
-                    }
-
-                    OperonAdjacency putativeOperon = featureToPutativeOperonMap.get( id1 );
-                    putativeOperon.setReadsFeature1( putativeOperon.getReadsFeature1() + readsFeature1 );
-                    putativeOperon.setReadsFeature2( putativeOperon.getReadsFeature2() + readsFeature2 );
-                    putativeOperon.setSpanningReads( putativeOperon.getSpanningReads() + spanningReads );
-                    putativeOperon.setInternalReads( putativeOperon.getInternalReads() + internalReads );
-                }
-            }
-        } catch( DatabaseException ex ) {
-            ErrorHelper.getHandler().handle( new DatabaseException( "The chromosome with id " +
-                                                                    mappingResult.getRequest().getChromId() +
-                                                                    " could not be read from the DB. The operon " +
-                                                                    "detection result will not contain its features.", ex ) );
+        final List<OperonAdjacency> chromOperons = chromOperonMap.get( mappingResult.getRequest().getChromId() );
+        FeatureMappingJoin join = chromJoinMap.get( mappingResult.getRequest().getChromId() );
+        if( join == null ) {
+            return;
         }
-        this.lastMappingIdx = 0;
+        final MappingBatch batch = mappingResult.getBatch();
+
+        join.join( batch, ( operonIdx, mappingIdx ) -> {
+            OperonAdjacency putativeOperon = chromOperons.get( operonIdx );
+            int mappingStart = batch.getStart( mappingIdx );
+            int mappingStop = batch.getStop( mappingIdx );
+            int feature1Stop = putativeOperon.getFeature1().getStop();
+            int feature2Start = putativeOperon.getFeature2().getStart();
+
+            //mappings identified between both features
+            if( mappingStart <= feature1Stop && mappingStop > feature1Stop && mappingStop < feature2Start ) {
+                putativeOperon.setReadsFeature1( putativeOperon.getReadsFeature1() + 1 );
+            } else if( mappingStart > feature1Stop && mappingStart < feature2Start && mappingStop >= feature2Start ) {
+                putativeOperon.setReadsFeature2( putativeOperon.getReadsFeature2() + 1 );
+            } else if( mappingStart <= feature1Stop && mappingStop >= feature2Start ) {
+                putativeOperon.setSpanningReads( putativeOperon.getSpanningReads() + 1 );
+            } else if( mappingStart > feature1Stop && mappingStop < feature2Start ) {
+                putativeOperon.setInternalReads( putativeOperon.getInternalReads() + 1 );
+            }
+        } );
     }
 
 
@@ -20,12 +20,13 @@ package de.cebitec.readxplorer.transcriptionanalyses;
 
 import de.cebitec.readxplorer.api.enums.Distribution;
 import de.cebitec.readxplorer.api.enums.FeatureType;
+import de.cebitec.readxplorer.api.enums.Strand;
 import de.cebitec.readxplorer.api.objects.AnalysisI;
+import de.cebitec.readxplorer.databackend.AnalysisCache;
 import de.cebitec.readxplorer.databackend.connector.DatabaseException;
 import de.cebitec.readxplorer.databackend.connector.ProjectConnector;
 import de.cebitec.readxplorer.databackend.connector.ReferenceConnector;
 import de.cebitec.readxplorer.databackend.connector.TrackConnector;
-import de.cebitec.readxplorer.databackend.dataobjects.Coverage;
 import de.cebitec.readxplorer.databackend.dataobjects.CoverageAndDiffResult;
 import de.cebitec.readxplorer.databackend.dataobjects.CoverageManager;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
@@ -41,11 +42,13 @@ import de.cebitec.readxplorer.utils.GeneralUtils;
 import de.cebitec.readxplorer.utils.Observer;
 import de.cebitec.readxplorer.utils.StatsContainer;
 import de.cebitec.readxplorer.utils.errorhandling.ErrorHelper;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,6 +78,8 @@ public class AnalysisTranscriptionStart implements Observer,
 
     private static final Logger LOG = LoggerFactory.getLogger( AnalysisTranscriptionStart.class.getName() );
 
+    private static final String CACHE_PREFIX = "tss.distribution.";
+
     private final TrackConnector trackConnector;
     private ReferenceConnector refConnector;
     private Map<Integer, PersistentChromosome> chromosomes;
@@ -86,17 +91,24 @@ public class AnalysisTranscriptionStart implements Observer,
     private DiscreteCountingDistribution readStartDistribution;
     private DiscreteCountingDistribution covIncPercentDistribution;
     private boolean calcCoverageDistributions;
+    private AnalysisCache analysisCache;
 
     //varibles for transcription start site detection
     protected CoverageManager currentCoverage;
+    private int currentLeftBound;
+    private int[] totalCovFwd;
+    private int[] totalCovRev;
+    private int[] totalStartsFwd;
+    private int[] totalStartsRev;
     private int totalCovLastFwdPos;
     private int totalCovLastRevPos;
     private int totalReadStartsLastRevPos;
-    private int lastFeatureIdxGenStartsFwd;
-    private int lastFeatureIdxGenStartsRev;
+    private ChromFeatures chromFeatures;
+    private final StrandScanner fwdScanner;
+    private final StrandScanner revScanner;
 
-    private final Map<Integer, Integer> exactReadStartDist = new HashMap<>(); //exact read start distribution
-    private final Map<Integer, Integer> exactCovIncPercDist = new HashMap<>(); //exact coverage increase percent distribution
+    private final ExactCountDistribution exactReadStartDist = new ExactCountDistribution(); //exact read start distribution
+    private final ExactCountDistribution exactCovIncPercDist = new ExactCountDistribution(); //exact coverage increase percent distribution
 
 
     /**
@@ -124,8 +136,8 @@ public class AnalysisTranscriptionStart implements Observer,
         this.totalCovLastFwdPos = 0;
         this.totalCovLastRevPos = 0;
         this.totalReadStartsLastRevPos = 0;
-        this.lastFeatureIdxGenStartsFwd = 0;
-        this.lastFeatureIdxGenStartsRev = 0;
+        this.fwdScanner = new StrandScanner( true );
+        this.revScanner = new StrandScanner( false );
 
         this.initDatastructures();
     }
@@ -144,8 +156,9 @@ public class AnalysisTranscriptionStart implements Observer,
         isBothFwdDirection = parametersTSS.getReadClassParams().isStrandBothFwdOption();
         isFeatureStrand = parametersTSS.getReadClassParams().isStrandFeatureOption();
 
-        this.readStartDistribution = trackConnector.getCountDistribution( getReadStartDistributionType() );
-        this.covIncPercentDistribution = trackConnector.getCountDistribution( getCovIncDistributionType() );
+        this.analysisCache = AnalysisCache.open( trackConnector, parametersTSS.getReadClassParams() );
+        this.readStartDistribution = this.loadDistribution( getReadStartDistributionType() );
+        this.covIncPercentDistribution = this.loadDistribution( getCovIncDistributionType() );
         this.calcCoverageDistributions = this.readStartDistribution.isEmpty() || this.covIncPercentDistribution.isEmpty();
 
         if( this.parametersTSS.isAutoTssParamEstimation() ) {
@@ -168,6 +181,29 @@ public class AnalysisTranscriptionStart implements Observer,
     }
 
 
+    /**
+     * Loads a distribution of the given type. A distribution calculated for the
+     * read class parameters of this analysis is taken from the analysis cache
+     * of the track. Otherwise the distribution stored in the DB is used.
+     * <p>
+     * @param type the type of the distribution to load
+     * <p>
+     * @return The distribution, which is empty, if it was not calculated yet.
+     */
+    private DiscreteCountingDistribution loadDistribution( Distribution type ) {
+        int[] cachedCounts = analysisCache != null ? analysisCache.getInts( CACHE_PREFIX + type ) : null;
+        if( cachedCounts == null ) {
+            return trackConnector.getCountDistribution( type );
+        }
+        DiscreteCountingDistribution distribution = new DiscreteCountingDistribution();
+        distribution.setType( type );
+        for( int i = 0; i < cachedCounts.length; ++i ) {
+            distribution.setCountForIndex( i, cachedCounts[i] );
+        }
+        return distribution;
+    }
+
+
     /**
      * Calculates the initial threshold for read starts. The largest value is
      * 10, but for small data sets the formula calculates the rounded up value
@@ -212,6 +248,8 @@ public class AnalysisTranscriptionStart implements Observer,
      * distributions and corrects the results for automatic mode.
      */
     public void finish() {
+        fwdScanner.addDistributions();
+        revScanner.addDistributions();
         try {
             storeDistributions();
             if( parametersTSS.isAutoTssParamEstimation() ) {
@@ -226,7 +264,10 @@ public class AnalysisTranscriptionStart implements Observer,
 
 
     /**
-     * Carries out the detection of predicted transcription start sites.
+     * Carries out the detection of predicted transcription start sites. The
+     * forward and the reverse strand are scanned in parallel. Afterwards, the
+     * detected starts of both strands are added to the result in the order of
+     * their positions.
      * <p>
      * @param result the coverage and diff result for predicting the
      *               transcription start sites.
@@ -237,156 +278,120 @@ public class AnalysisTranscriptionStart implements Observer,
         CoverageManager readStarts = result.getReadStarts();
         int chromId = result.getRequest().getChromId();
         int chromLength = chromosomes.get( chromId ).getLength();
-        List<PersistentFeature> chromFeatures = refConnector.getFeaturesForClosedInterval( 0, chromLength, chromId );
+        ChromFeatures features = this.getChromFeatures( chromId, chromLength );
         currentCoverage = coverage;
 
         int leftBound = currentCoverage.getLeftBound();
-        int fixedLeftBound = leftBound <= 0 ? 0 : leftBound - 1;
-        int rightBound = currentCoverage.getRightBound();
-
-        currentCoverage.setLeftBound( fixedLeftBound ); //add left coverage value from last request (or 0) to left
-        readStarts.setLeftBound( fixedLeftBound ); //of all coverage arrays.
-
-        Coverage totalCoverage = currentCoverage.getTotalCoverage( this.parametersTSS.getReadClassParams().getExcludedClasses() );
-        Coverage totalStarts = readStarts.getTotalCoverage( this.parametersTSS.getReadClassParams().getExcludedClasses() );
-
-        totalCoverage.setFwdCoverage( this.fixLeftCoverageBound( totalCoverage.getFwdCov(), totalCovLastFwdPos ) );
-        totalCoverage.setRevCoverage( this.fixLeftCoverageBound( totalCoverage.getRevCov(), totalCovLastRevPos ) );
-        totalStarts.setFwdCoverage( this.fixLeftCoverageBound( totalStarts.getFwdCov(), 0 ) ); //for read starts the left pos is not important
-        totalStarts.setRevCoverage( this.fixLeftCoverageBound( totalStarts.getRevCov(), totalReadStartsLastRevPos ) ); //on fwd strand
-
-        for( int i = fixedLeftBound; i < rightBound; i++ ) {
-            this.gatherDataAndDetect( chromId, chromLength, chromFeatures, totalCoverage, totalStarts, i );
+        int fixedLeftBound = leftBound <= 0 ? 0 : leftBound - 1; //the last position of the last request (or 0) is
+        int rightBound = currentCoverage.getRightBound();       //compared to the first position of this request
+
+        //the shared total coverage views are only read, the values of the last request are taken from the fields
+        int includedClassMask = CoverageManager.getIncludedClassMask( this.parametersTSS.getReadClassParams().getExcludedClasses() );
+        currentLeftBound = leftBound;
+        totalCovFwd = currentCoverage.getTotalCoverageView( includedClassMask, Strand.Forward );
+        totalCovRev = currentCoverage.getTotalCoverageView( includedClassMask, Strand.Reverse );
+        totalStartsFwd = readStarts.getTotalCoverageView( includedClassMask, Strand.Forward );
+        totalStartsRev = readStarts.getTotalCoverageView( includedClassMask, Strand.Reverse );
+
+        CompletableFuture<Void> revScan = CompletableFuture.runAsync(
+                () -> revScanner.scan( features, fixedLeftBound, rightBound ) );
+        fwdScanner.scan( features, fixedLeftBound, rightBound );
+        try {
+            revScan.join();
+        } catch( CompletionException ex ) {
+            if( ex.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
         }
+        this.addDetectedStarts();
 
-        totalCovLastFwdPos = totalCoverage.getFwdCov( rightBound );
-        totalCovLastRevPos = totalCoverage.getRevCov( rightBound );
-        totalReadStartsLastRevPos = totalStarts.getRevCov( rightBound );
+        totalCovLastFwdPos = this.getTotalCoverage( rightBound, true );
+        totalCovLastRevPos = this.getTotalCoverage( rightBound, false );
+        totalReadStartsLastRevPos = valueAt( totalStartsRev, rightBound - leftBound, totalReadStartsLastRevPos );
     }
 
 
     /**
-     * Gathers the necessary data from a given set of coverage arrays.
-     * Afterwards, the TSS detection is performed.
+     * Returns the total coverage of the current request at the given
+     * position. The position left of the request returns the coverage of the
+     * last position of the previous request.
+     * <p>
+     * @param refPos      reference position whose coverage is needed
+     * @param isFwdStrand <code>true</code>, if the coverage of the fwd strand
+     *                    is needed, <code>false</code> otherwise
      * <p>
-     * @param chromId       the chromosome to analyze
-     * @param chromLength   the length of this chromosome
-     * @param chromFeatures all features of the chromosome
-     * @param coverage      the fwd coverage array of the selected mapping class
-     * @param readStarts    the fwd read start array of the selected mapping
-     *                      class
-     * @param refPos        the currently investigated reference position
-     *                      coordinate
+     * @return The total coverage at the given position or 0, if the position
+     *         is not covered by the current request
      */
-    private void gatherDataAndDetect( int chromId, int chromLength, List<PersistentFeature> chromFeatures,
-                                      Coverage coverage, Coverage readStarts, int refPos ) {
-        int[] covArrayFwd = coverage.getFwdCov();
-        int[] covArrayRev = coverage.getRevCov();
-        int[] readStartArrayFwd = readStarts.getFwdCov();
-        int[] readStartArrayRev = readStarts.getRevCov();
-        int pos = coverage.getInternalPos( refPos );
-        int increaseFwd;
-        int increaseRev;
-        int readStartsFwd;
-        int readStartsRev;
-        int percentIncFwd;
-        int percentIncRev;
-
-        int fwdCov1 = covArrayFwd[pos];
-        int revCov1 = covArrayRev[pos];
-        int fwdCov2 = covArrayFwd[pos + 1];
-        int revCov2 = covArrayRev[pos + 1];
-        if( !isStrandBothOption ) { //calc values based on analysis strand selection (4 possibilities)
-            if( isFeatureStrand ) { //default increases for correctly stranded libraries
-                increaseFwd = fwdCov2 - fwdCov1;
-                increaseRev = revCov1 - revCov2;
-                percentIncFwd = GeneralUtils.calculatePercentageIncrease( fwdCov1, fwdCov2 );
-                percentIncRev = GeneralUtils.calculatePercentageIncrease( revCov2, revCov1 );
-                readStartsFwd = readStartArrayFwd[pos + 1];
-                readStartsRev = readStartArrayRev[pos];
-
-            } else { //extra increases for invertedly stranded libraries
-                increaseRev = fwdCov1 - fwdCov2;
-                increaseFwd = revCov2 - revCov1;
-                percentIncRev = GeneralUtils.calculatePercentageIncrease( fwdCov2, fwdCov1 );
-                percentIncFwd = GeneralUtils.calculatePercentageIncrease( revCov1, revCov2 );
-                readStartsFwd = readStartArrayRev[pos];
-                readStartsRev = readStartArrayFwd[pos + 1];
-            }
-        } else if( isBothFwdDirection ) { //TODO: Strand options disrupt distributions! calculate one for each strand option!
-            increaseFwd = fwdCov2 - fwdCov1 + revCov2 - revCov1;
-            increaseRev = 0;
-            percentIncFwd = GeneralUtils.calculatePercentageIncrease( fwdCov1 + revCov1, fwdCov2 + revCov2 );
-            percentIncRev = GeneralUtils.calculatePercentageIncrease( 0, 0 );
-            readStartsFwd = readStartArrayFwd[pos + 1] + readStartArrayRev[pos + 1];
-            readStartsRev = 0;
-
+    protected int getTotalCoverage( int refPos, boolean isFwdStrand ) {
+        int pos = refPos - currentLeftBound;
+        if( isFwdStrand ) {
+            return valueAt( totalCovFwd, pos, totalCovLastFwdPos );
         } else {
-            increaseFwd = 0;
-            increaseRev = revCov1 - revCov2 + fwdCov1 - fwdCov2;
-            percentIncFwd = GeneralUtils.calculatePercentageIncrease( 0, 0 );
-            percentIncRev = GeneralUtils.calculatePercentageIncrease( revCov2 + fwdCov2, revCov1 + fwdCov1 );
-            readStartsFwd = 0;
-            readStartsRev = readStartArrayFwd[pos] + readStartArrayRev[pos];
-        }
-
-        if( this.calcCoverageDistributions ) {
-            this.readStartDistribution.increaseDistribution( readStartsFwd );
-            this.readStartDistribution.increaseDistribution( readStartsRev );
-            this.covIncPercentDistribution.increaseDistribution( percentIncFwd );
-            this.covIncPercentDistribution.increaseDistribution( percentIncRev );
+            return valueAt( totalCovRev, pos, totalCovLastRevPos );
         }
-
-        this.detectStart( refPos, chromId, chromLength, chromFeatures, readStartsFwd, readStartsRev, increaseFwd, increaseRev, percentIncFwd, percentIncRev );
     }
 
 
     /**
-     * Method for analyzing the coverage of one pair of neighboring positions
-     * and detecting a transcription start site, if the parameters are
-     * satisfied.
+     * @param values    the values of the current request
+     * @param pos       the index of the needed value in the current request
+     * @param lastValue the value of the last position of the previous request
      * <p>
-     * @param pos                the position defining the pair to analyse: pos
-     *                           and (pos + 1) on the fwd strand the TSS pos is
-     *                           "pos+1" and on the reverse strand the TSS
-     *                           position is "pos"
-     * @param chromId            chromosome id
-     * @param chromLength        chromosome length
-     * @param chromFeatures      chromosome features
-     * @param readStartsFwd      readStartsFwd
-     * @param readStartsRev      readStartsRev
-     * @param increaseFwd        forward coverage increase
-     * @param increaseRev        reverse coverage increase
-     * @param percentIncreaseFwd forward coverage increase in percent
-     * @param percentIncreaseRev reverse coverage increase in percent
+     * @return The value at the given index, the last value of the previous
+     *         request for index -1 and 0 for all other indices outside of the
+     *         current request
      */
-    private void detectStart( int pos, int chromId, int chromLength, List<PersistentFeature> chromFeatures, int readStartsFwd,
-                              int readStartsRev, int increaseFwd, int increaseRev, int percentIncreaseFwd, int percentIncreaseRev ) {
+    private static int valueAt( int[] values, int pos, int lastValue ) {
+        if( pos >= 0 && pos < values.length ) {
+            return values[pos];
+        }
+        return pos == -1 ? lastValue : 0;
+    }
 
-        if( ((readStartsFwd <= parametersTSS.getMaxLowCovReadStarts() && readStartsFwd >= parametersTSS.getMinLowCovReadStarts()) ||
-             readStartsFwd > parametersTSS.getMaxLowCovReadStarts() && readStartsFwd >= parametersTSS.getMinNoReadStarts()) &&
-            percentIncreaseFwd > parametersTSS.getMinPercentIncrease() ) {
 
-            DetectedFeatures detFeatures = this.findNextFeatures( pos + 1, chromLength, chromFeatures, true );
-            addDetectStart( new TranscriptionStart( pos + 1, true, readStartsFwd,
-                                                    percentIncreaseFwd, increaseFwd, detFeatures, trackConnector.getTrackID(), chromId ) );
+    /**
+     * Returns the features of the given chromosome. They are only loaded for
+     * the first request of a chromosome, because all requests of a chromosome
+     * arrive consecutively. The feature cursors of both strands are reset for
+     * a new chromosome.
+     * <p>
+     * @param chromId     id of the chromosome
+     * @param chromLength length of the chromosome
+     * <p>
+     * @return The features of the chromosome.
+     */
+    private ChromFeatures getChromFeatures( int chromId, int chromLength ) {
+        if( chromFeatures == null || chromFeatures.chromId != chromId ) {
+            chromFeatures = new ChromFeatures( chromId, chromLength, refConnector.getFeaturesForClosedInterval( 0, chromLength, chromId ) );
+            fwdScanner.lastFeatureIdx = 0;
+            revScanner.lastFeatureIdx = 0;
         }
-        if( ((readStartsRev <= parametersTSS.getMaxLowCovReadStarts() && readStartsRev >= parametersTSS.getMinLowCovReadStarts()) ||
-             readStartsRev > parametersTSS.getMaxLowCovReadStarts() && readStartsRev >= parametersTSS.getMinNoReadStarts()) &&
-            percentIncreaseRev > parametersTSS.getMinPercentIncrease() ) {
+        return chromFeatures;
+    }
 
-            DetectedFeatures detFeatures = this.findNextFeatures( pos, chromLength, chromFeatures, false );
-            addDetectStart( new TranscriptionStart( pos, false, readStartsRev,
-                                                    percentIncreaseRev, increaseRev, detFeatures, trackConnector.getTrackID(), chromId ) );
-        }
 
-        if( this.parametersTSS.isAutoTssParamEstimation() ) {
-            //add values to exact counting data structures to refine threshold
-            increaseDistribution( exactReadStartDist, readStartsFwd, parametersTSS.getMinNoReadStarts() );
-            increaseDistribution( exactReadStartDist, readStartsRev, parametersTSS.getMinNoReadStarts() );
-            increaseDistribution( exactCovIncPercDist, percentIncreaseFwd, parametersTSS.getMinPercentIncrease() );
-            increaseDistribution( exactCovIncPercDist, percentIncreaseRev, parametersTSS.getMinPercentIncrease() );
+    /**
+     * Adds the starts detected by both strand scanners to the result list in
+     * the order of a combined scan: For each position pair the forward start
+     * at "pos + 1" comes before the reverse start at "pos".
+     */
+    private void addDetectedStarts() {
+        List<TranscriptionStart> fwdStarts = fwdScanner.detectedStarts;
+        List<TranscriptionStart> revStarts = revScanner.detectedStarts;
+        int fwdIdx = 0;
+        int revIdx = 0;
+        while( fwdIdx < fwdStarts.size() || revIdx < revStarts.size() ) {
+            if( revIdx >= revStarts.size() ||
+                (fwdIdx < fwdStarts.size() && fwdStarts.get( fwdIdx ).getPos() - 1 <= revStarts.get( revIdx ).getPos()) ) {
+                addDetectStart( fwdStarts.get( fwdIdx++ ) );
+            } else {
+                addDetectStart( revStarts.get( revIdx++ ) );
+            }
         }
+        fwdStarts.clear();
+        revStarts.clear();
     }
 
 
@@ -400,175 +405,6 @@ public class AnalysisTranscriptionStart implements Observer,
     }
 
 
-    /**
-     * Detects and returns the genomic features, which can be associated to the
-     * given transcription start site and strand. This can be eiter a feature
-     * starting at the predicted transcription start site, which would be a
-     * correct start, or it will contain the maximal two closest features found
-     * in a vicinity of 1000bp up- or downstream of the transcription start
-     * site. If more than one feature start at the detected TSS position, only
-     * the last fitting feature is returned as correct start.
-     * <p>
-     * @param tssPos      the predicted transcription start site position
-     * @param isFwdStrand the strand, on which the transcription start site is
-     *                    located
-     * <p>
-     * @return the genomic features, which can be associated to the given
-     *         transcription start site and strand.
-     */
-    private DetectedFeatures findNextFeatures( int tssPos, int chromLength, List<PersistentFeature> chromFeatures, boolean isFwdStrand ) {
-        final int maxFeatureDist = parametersTSS.getMaxFeatureDistance();
-        int minStartPos = tssPos - maxFeatureDist < 0 ? 0 : tssPos - maxFeatureDist;
-        int maxStartPos = tssPos + maxFeatureDist > chromLength ? chromLength : tssPos + maxFeatureDist;
-        DetectedFeatures detectedFeatures = new DetectedFeatures();
-        boolean fstFittingFeature = true;
-        if( isFwdStrand ) {
-            for( int i = this.lastFeatureIdxGenStartsFwd; i < chromFeatures.size(); i++ ) {
-                PersistentFeature feature = chromFeatures.get( i );
-                int start = feature.getStart();
-
-                /*
-                 * We use all features, because also mRNA or rRNA features can
-                 * contribute to TSS detection, as they also depict expressed
-                 * sequences from the reference
-                 */
-                if( start >= minStartPos && feature.isFwdStrand() && start <= maxStartPos ) {
-
-                    if( fstFittingFeature ) {
-                        this.lastFeatureIdxGenStartsFwd = i; //this is the first feature in the interval
-                        fstFittingFeature = false;
-                    }
-
-                    if( start < tssPos && feature.getStop() > tssPos ) {
-                        //store feature as next upstream feature, but search for closer
-                        //upstream feature & correctly annotated transcription start site
-
-                        /*
-                         * Also check, if gene and CDS feature are available and
-                         * covering each other. Handle this case by not storing
-                         * the current feature, if it is a CDS feature
-                         * completely covered by a gene feature. In all other
-                         * cases the feature can be stored, since we also use
-                         * CDS features for TSS detection, if no gene feature is
-                         * available.
-                         */
-                        PersistentFeature upstreamAnno = detectedFeatures.getUpstreamFeature();
-                        if( upstreamAnno != null &&
-                            feature.getType() == FeatureType.CDS &&
-                            upstreamAnno.getType() == FeatureType.GENE &&
-                            upstreamAnno.getStop() >= feature.getStop() ) {
-//                            LOG.info( null, "CDS covered by gene feature Fwd");
-                            continue;
-                        }
-
-                        detectedFeatures.setUpstreamFeature( feature );
-
-                    } else if( start == tssPos ) {
-                        //store correctly annotated transcription start site
-                        detectedFeatures.setCorrectStartFeature( feature );
-                        detectedFeatures.setUpstreamFeature( null );
-                        break;
-
-                    } else if( start > tssPos ) {
-                        /*
-                         * Store next downstream feature, transcription start is
-                         * earlier than annotated, except the current feature is
-                         * a CDS feature and no gene feature is present for that
-                         * gene, starting earlier.
-                         */
-                        if( feature.getType() == FeatureType.CDS && i + 1 < chromFeatures.size() &&
-                            feature.getStart() == chromFeatures.get( i + 1 ).getStart() &&
-                            chromFeatures.get( i + 1 ).getType() == FeatureType.GENE ) {
-                            detectedFeatures.setDownstreamFeature( chromFeatures.get( i + 1 ) );
-                            detectedFeatures.setIsLeaderless( isLeaderless( chromFeatures.get( i + 1 ), tssPos ) );
-//                            LOG.info( null, "Gene covers CDS with same annotated TSS Fwd");
-
-                        } else {
-                            detectedFeatures.setDownstreamFeature( feature );
-                            detectedFeatures.setIsLeaderless( isLeaderless( feature, tssPos ) );
-                        }
-
-                        break;
-                    }
-
-                } else if( start >= maxStartPos ) {
-                    if( fstFittingFeature ) {
-                        this.lastFeatureIdxGenStartsFwd = i; //this is the first feature in the interval
-                    }
-                    break;
-                }
-            }
-        } else { //means: strand == SequenceUtils.STRAND_REV
-
-            for( int i = this.lastFeatureIdxGenStartsRev; i < chromFeatures.size(); i++ ) {
-                PersistentFeature feature = chromFeatures.get( i );
-                int start = feature.getStop();
-
-                if( start >= minStartPos && feature.isFwdStrand() == isFwdStrand && start <= maxStartPos ) {
-
-                    if( fstFittingFeature ) {
-                        this.lastFeatureIdxGenStartsRev = i; //this is the first feature in the interval
-                        fstFittingFeature = false;
-                    }
-
-                    if( start < tssPos ) {
-                        //store feature as next bigger feature, but search for closer
-                        //bigger feature & correctly annotated transcription start site
-
-                        /*
-                         * Store next upstream feature. transcription start is
-                         * earlier than annotated, except the current feature is
-                         * a CDS feature and no gene feature is present for that
-                         * gene, starting earlier.
-                         */
-                        PersistentFeature upstreamAnno = detectedFeatures.getUpstreamFeature();
-                        if( upstreamAnno != null &&
-                            feature.getType() == FeatureType.CDS &&
-                            start == upstreamAnno.getStop() &&
-                            upstreamAnno.getType() == FeatureType.GENE ) {
-                            //TODO: this does not work if features start at the same position on rev and fwd strand!
-//                            LOG.info( null, "CDS covered by gene feature Rev");
-                            continue; // we want to keep the gene instead the CDS feature
-                        }
-
-                        detectedFeatures.setDownstreamFeature( feature );
-                        detectedFeatures.setIsLeaderless( isLeaderless( feature, tssPos ) );
-
-                    } else if( start == tssPos ) {
-                        //store correctly annotated transcription start site
-                        detectedFeatures.setCorrectStartFeature( feature );
-                        detectedFeatures.setDownstreamFeature( null );
-                        break;
-
-                    } else if( start > tssPos && feature.getStart() < tssPos ) {
-                        //store next upstream feature, translation start is further in gene
-
-                        if( feature.getType() == FeatureType.CDS && i + 1 < chromFeatures.size() &&
-                            chromFeatures.get( i + 1 ).getType() == FeatureType.GENE &&
-                            chromFeatures.get( i + 1 ).getStart() <= feature.getStart() ) {
-                            detectedFeatures.setUpstreamFeature( chromFeatures.get( i + 1 ) );
-//                            LOG.info( null, "Gene covers CDS with same annotated TSS Rev");
-                        } else {
-                            detectedFeatures.setUpstreamFeature( feature );
-                        }
-                        break;
-                    }
-
-                } else if( start >= tssPos ) {
-                    if( fstFittingFeature ) {
-                        this.lastFeatureIdxGenStartsRev = i; //TODO: features should be sorted by stop pos for rev strand
-                        fstFittingFeature = false;
-                    }
-                }
-                if( start >= maxStartPos && feature.getStart() > maxStartPos ) {
-                    break;
-                }
-            }
-        }
-        return detectedFeatures;
-    }
-
-
     /**
      * @param feature feature to check
      * @param tssPos  tss position to check
@@ -693,33 +529,10 @@ public class AnalysisTranscriptionStart implements Observer,
     }
 
 
-    /**
-     * Receives a Hashmap, checks if the current value is already present in the
-     * map and increases it by one. If it is not present yet, it is created with
-     * a value of 0.
-     * <p>
-     * @param map       the map whose data should be increased
-     * @param value     the value (key) which should be increased
-     * @param threshold the threshold the value has to exceed, to be added to
-     *                  the map
-     */
-    private void increaseDistribution( Map<Integer, Integer> map, int value, int threshold ) {
-        if( threshold > 1 ) {
-            threshold--; //this value is also needed for small data sets
-        }
-        if( value >= threshold ) {
-            if( !map.containsKey( value ) ) {
-                map.put( value, 0 );
-            }
-            map.put( value, map.get( value ) + 1 );
-        }
-    }
-
-
     /**
      * If a new distribution was calculated, this method stores it in the DB and
-     * corrects the result list with the new estimated parameters, if the
-     * tssAutomatic was chosen.
+     * in the analysis cache of the track, which keeps it for the read class
+     * parameters of this analysis.
      *
      * @throws DatabaseException An exception during data queries. It has
      *                           already been logged.
@@ -728,6 +541,15 @@ public class AnalysisTranscriptionStart implements Observer,
         if( this.calcCoverageDistributions && this.trackConnector.getAssociatedTrackNames().size() == 1 ) {
             ProjectConnector.getInstance().insertCountDistribution( readStartDistribution, this.trackConnector.getTrackID() );
             ProjectConnector.getInstance().insertCountDistribution( covIncPercentDistribution, this.trackConnector.getTrackID() );
+            if( analysisCache != null ) {
+                analysisCache.putInts( CACHE_PREFIX + getReadStartDistributionType(), readStartDistribution.getDiscreteCountingDistribution() );
+                analysisCache.putInts( CACHE_PREFIX + getCovIncDistributionType(), covIncPercentDistribution.getDiscreteCountingDistribution() );
+                try {
+                    analysisCache.store();
+                } catch( IOException ex ) {
+                    LOG.warn( "Could not store the TSS distributions in the analysis cache: {}", ex.getMessage() );
+                }
+            }
         }
     }
 
@@ -773,25 +595,24 @@ public class AnalysisTranscriptionStart implements Observer,
      * <p>
      * @return The exact read start or coverage increase cutoff threshold
      */
-    private int getNewThreshold( Map<Integer, Integer> distribution, int thresholdEnlarger ) {
+    private int getNewThreshold( ExactCountDistribution distribution, int thresholdEnlarger ) {
         int maxValue = (int) (PersistentReference.calcWholeGenomeLength( chromosomes ) * 0.0025 + thresholdEnlarger);
         maxValue /= chromosomes.values().size();
         int nbValues = 0;
-        List<Integer> keyList = new ArrayList<>( distribution.keySet() );
-        Collections.sort( keyList );
+        int[] values = distribution.getSortedValues();
 
-        for( int i = keyList.size() - 1; i > 0; --i ) {
+        for( int i = values.length - 1; i > 0; --i ) {
             if( nbValues < maxValue ) {
-                nbValues += distribution.get( keyList.get( i ) );
+                nbValues += distribution.getCount( values[i] );
             } else {
-                return keyList.get( i - 1 );
+                return values[i - 1];
             }
         }
 
-        if( keyList.isEmpty() ) {
+        if( values.length == 0 ) {
             return 4;
         } else {
-            return keyList.get( 0 );
+            return values[0];
         }
     }
 
@@ -812,24 +633,6 @@ public class AnalysisTranscriptionStart implements Observer,
     }
 
 
-    /**
-     * Adds the coverage of the "lastFwdPos" to the beginning of the given
-     * coverage array - resulting array length = oldLength + 1.
-     * <p>
-     * @param covArray the coverage array to which a new left bound shall be
-     *                 added
-     * @param lastCov  the last coverage value of the previous request or 0
-     * <p>
-     * @return the new coverage array including the added coverage value
-     */
-    private int[] fixLeftCoverageBound( int[] covArray, int lastCov ) {
-        int[] newCovArray = new int[covArray.length + 1];
-        newCovArray[0] = lastCov;
-        System.arraycopy( covArray, 0, newCovArray, 1, covArray.length );
-        return newCovArray;
-    }
-
-
     /**
      * @return The read start distribution type for the selected analysis strand
      *         option.
@@ -872,4 +675,373 @@ public class AnalysisTranscriptionStart implements Observer,
     }
 
 
+    /**
+     * The features of a chromosome together with primitive arrays of their
+     * start and stop positions and strands. The arrays are scanned when
+     * searching the features neighboring a TSS, without touching the feature
+     * objects of features on the other strand or outside of the search window.
+     */
+    private static final class ChromFeatures {
+
+        private final int chromId;
+        private final int chromLength;
+        private final List<PersistentFeature> features;
+        private final int[] starts;
+        private final int[] stops;
+        private final boolean[] fwdStrands;
+
+
+        ChromFeatures( int chromId, int chromLength, List<PersistentFeature> features ) {
+            this.chromId = chromId;
+            this.chromLength = chromLength;
+            this.features = features;
+            this.starts = new int[features.size()];
+            this.stops = new int[features.size()];
+            this.fwdStrands = new boolean[features.size()];
+            for( int i = 0; i < starts.length; ++i ) {
+                PersistentFeature feature = features.get( i );
+                starts[i] = feature.getStart();
+                stops[i] = feature.getStop();
+                fwdStrands[i] = feature.isFwdStrand();
+            }
+        }
+
+
+    }
+
+
+    /**
+     * Scans the coverage of one strand for transcription start sites. Each
+     * scanner has its own feature cursor, distributions and result list, so
+     * that both strands of a request can be scanned concurrently. The
+     * distributions are added to the distributions of the analysis, when it is
+     * finished.
+     */
+    private final class StrandScanner {
+
+        private final boolean isFwdStrand;
+        private final List<TranscriptionStart> detectedStarts = new ArrayList<>();
+        private final DiscreteCountingDistribution readStartDist = new DiscreteCountingDistribution();
+        private final DiscreteCountingDistribution covIncPercentDist = new DiscreteCountingDistribution();
+        private final ExactCountDistribution exactReadStarts = new ExactCountDistribution();
+        private final ExactCountDistribution exactCovIncPercent = new ExactCountDistribution();
+        private int lastFeatureIdx;
+
+
+        /**
+         * Scans the coverage of one strand for transcription start sites.
+         * <p>
+         * @param isFwdStrand true for the forward strand scanner, false for
+         *                    the reverse strand scanner
+         */
+        StrandScanner( boolean isFwdStrand ) {
+            this.isFwdStrand = isFwdStrand;
+        }
+
+
+        /**
+         * Gathers the read starts and coverage increases of this strand for
+         * all position pairs of the given interval and detects the TSSs among
+         * them. For each pair of neighboring positions "pos" and "pos + 1" the
+         * TSS position is "pos + 1" on the forward and "pos" on the reverse
+         * strand.
+         * <p>
+         * The first position of the interval is the last position of the
+         * previous request.
+         * <p>
+         * @param chromFeatures the features of the analyzed chromosome
+         * @param from          first reference position of the interval
+         * @param to            reference position after the interval
+         */
+        void scan( ChromFeatures chromFeatures, int from, int to ) {
+            int[] covFwd = totalCovFwd;
+            int[] covRev = totalCovRev;
+            int[] startsFwd = totalStartsFwd;
+            int[] startsRev = totalStartsRev;
+            int leftBound = currentLeftBound;
+            int lastCovFwd = totalCovLastFwdPos;
+            int lastCovRev = totalCovLastRevPos;
+            int lastStartsRev = totalReadStartsLastRevPos;
+
+            //select the arrays of this strand for the analysis strand option
+            boolean combineStrands = false;
+            boolean noValues = false;
+            boolean isIncreasing = isFwdStrand;
+            int[] covArray = null;
+            int[] startArray = null;
+            int lastCov = 0;
+            int lastStarts = 0;
+            int startOffset;
+            if( !isStrandBothOption ) {
+                boolean useFwdArrays = isFeatureStrand == isFwdStrand;
+                covArray = useFwdArrays ? covFwd : covRev;
+                startArray = useFwdArrays ? startsFwd : startsRev;
+                lastCov = useFwdArrays ? lastCovFwd : lastCovRev;
+                lastStarts = useFwdArrays ? 0 : lastStartsRev; //for fwd read starts the left pos is not important
+                startOffset = useFwdArrays ? 1 : 0;
+            } else {
+                combineStrands = true;
+                noValues = isBothFwdDirection != isFwdStrand; //all mappings are assigned to the other strand
+                startOffset = isFwdStrand ? 1 : 0;
+            }
+            int noPercentIncrease = GeneralUtils.calculatePercentageIncrease( 0, 0 );
+
+            int trackId = trackConnector.getTrackID();
+            boolean isAutoMode = parametersTSS.isAutoTssParamEstimation();
+            int minLowCovReadStarts = parametersTSS.getMinLowCovReadStarts();
+            int maxLowCovReadStarts = parametersTSS.getMaxLowCovReadStarts();
+            int minNoReadStarts = parametersTSS.getMinNoReadStarts();
+            int minPercentIncrease = parametersTSS.getMinPercentIncrease();
+            int exactReadStartThreshold = minNoReadStarts > 1 ? minNoReadStarts - 1 : minNoReadStarts; //also needed for small data sets
+            int exactPercentThreshold = minPercentIncrease > 1 ? minPercentIncrease - 1 : minPercentIncrease;
+
+            for( int refPos = from; refPos < to; ++refPos ) {
+                int pos = refPos - leftBound; //-1 for the last position of the previous request
+                int increase;
+                int percentIncrease;
+                int readStartCount;
+                if( noValues ) {
+                    increase = 0;
+                    percentIncrease = noPercentIncrease;
+                    readStartCount = 0;
+                } else {
+                    int cov1;
+                    int cov2;
+                    if( combineStrands ) {
+                        cov1 = valueAt( covFwd, pos, lastCovFwd ) + valueAt( covRev, pos, lastCovRev );
+                        cov2 = covFwd[pos + 1] + covRev[pos + 1];
+                        readStartCount = valueAt( startsFwd, pos + startOffset, 0 ) +
+                                         valueAt( startsRev, pos + startOffset, lastStartsRev );
+                    } else {
+                        cov1 = valueAt( covArray, pos, lastCov );
+                        cov2 = covArray[pos + 1];
+                        readStartCount = valueAt( startArray, pos + startOffset, lastStarts );
+                    }
+                    if( isIncreasing ) {
+                        increase = cov2 - cov1;
+                        percentIncrease = GeneralUtils.calculatePercentageIncrease( cov1, cov2 );
+                    } else {
+                        increase = cov1 - cov2;
+                        percentIncrease = GeneralUtils.calculatePercentageIncrease( cov2, cov1 );
+                    }
+                }
+
+                if( calcCoverageDistributions ) {
+                    readStartDist.increaseDistribution( readStartCount );
+                    covIncPercentDist.increaseDistribution( percentIncrease );
+                }
+
+                if( ((readStartCount <= maxLowCovReadStarts && readStartCount >= minLowCovReadStarts) ||
+                     readStartCount > maxLowCovReadStarts && readStartCount >= minNoReadStarts) &&
+                    percentIncrease > minPercentIncrease ) {
+
+                    int tssPos = isFwdStrand ? refPos + 1 : refPos;
+                    DetectedFeatures detFeatures = this.findNextFeatures( tssPos, chromFeatures.chromLength, chromFeatures );
+                    detectedStarts.add( new TranscriptionStart( tssPos, isFwdStrand, readStartCount, percentIncrease,
+                                                                increase, detFeatures, trackId, chromFeatures.chromId ) );
+                }
+
+                if( isAutoMode ) {
+                    //add values to exact counting data structures to refine threshold
+                    if( readStartCount >= exactReadStartThreshold ) {
+                        exactReadStarts.increase( readStartCount );
+                    }
+                    if( percentIncrease >= exactPercentThreshold ) {
+                        exactCovIncPercent.increase( percentIncrease );
+                    }
+                }
+            }
+        }
+
+
+        /**
+         * Adds the distributions gathered by this scanner to the distributions
+         * of the analysis.
+         */
+        void addDistributions() {
+            if( calcCoverageDistributions ) {
+                readStartDistribution.addDistribution( readStartDist );
+                covIncPercentDistribution.addDistribution( covIncPercentDist );
+            }
+            exactReadStartDist.addDistribution( exactReadStarts );
+            exactCovIncPercDist.addDistribution( exactCovIncPercent );
+        }
+
+
+        /**
+         * Detects and returns the genomic features, which can be associated to the
+         * given transcription start site and strand. This can be eiter a feature
+         * starting at the predicted transcription start site, which would be a
+         * correct start, or it will contain the maximal two closest features found
+         * in a vicinity of 1000bp up- or downstream of the transcription start
+         * site. If more than one feature start at the detected TSS position, only
+         * the last fitting feature is returned as correct start.
+         * <p>
+         * @param tssPos        the predicted transcription start site position
+         * @param chromLength   the length of the chromosome
+         * @param chromFeatures the features of the chromosome
+         * <p>
+         * @return the genomic features, which can be associated to the given
+         *         transcription start site and strand.
+         */
+        private DetectedFeatures findNextFeatures( int tssPos, int chromLength, ChromFeatures chromFeatures ) {
+            List<PersistentFeature> features = chromFeatures.features;
+            int[] starts = chromFeatures.starts;
+            int[] stops = chromFeatures.stops;
+            boolean[] fwdStrands = chromFeatures.fwdStrands;
+            final int maxFeatureDist = parametersTSS.getMaxFeatureDistance();
+            int minStartPos = tssPos - maxFeatureDist < 0 ? 0 : tssPos - maxFeatureDist;
+            int maxStartPos = tssPos + maxFeatureDist > chromLength ? chromLength : tssPos + maxFeatureDist;
+            DetectedFeatures detectedFeatures = new DetectedFeatures();
+            boolean fstFittingFeature = true;
+            if( isFwdStrand ) {
+                for( int i = this.lastFeatureIdx; i < starts.length; i++ ) {
+                    int start = starts[i];
+
+                    /*
+                     * We use all features, because also mRNA or rRNA features can
+                     * contribute to TSS detection, as they also depict expressed
+                     * sequences from the reference
+                     */
+                    if( start >= minStartPos && fwdStrands[i] && start <= maxStartPos ) {
+                        PersistentFeature feature = features.get( i );
+
+                        if( fstFittingFeature ) {
+                            this.lastFeatureIdx = i; //this is the first feature in the interval
+                            fstFittingFeature = false;
+                        }
+
+                        if( start < tssPos && feature.getStop() > tssPos ) {
+                            //store feature as next upstream feature, but search for closer
+                            //upstream feature & correctly annotated transcription start site
+
+                            /*
+                             * Also check, if gene and CDS feature are available and
+                             * covering each other. Handle this case by not storing
+                             * the current feature, if it is a CDS feature
+                             * completely covered by a gene feature. In all other
+                             * cases the feature can be stored, since we also use
+                             * CDS features for TSS detection, if no gene feature is
+                             * available.
+                             */
+                            PersistentFeature upstreamAnno = detectedFeatures.getUpstreamFeature();
+                            if( upstreamAnno != null &&
+                                feature.getType() == FeatureType.CDS &&
+                                upstreamAnno.getType() == FeatureType.GENE &&
+                                upstreamAnno.getStop() >= feature.getStop() ) {
+//                            LOG.info( null, "CDS covered by gene feature Fwd");
+                                continue;
+                            }
+
+                            detectedFeatures.setUpstreamFeature( feature );
+
+                        } else if( start == tssPos ) {
+                            //store correctly annotated transcription start site
+                            detectedFeatures.setCorrectStartFeature( feature );
+                            detectedFeatures.setUpstreamFeature( null );
+                            break;
+
+                        } else if( start > tssPos ) {
+                            /*
+                             * Store next downstream feature, transcription start is
+                             * earlier than annotated, except the current feature is
+                             * a CDS feature and no gene feature is present for that
+                             * gene, starting earlier.
+                             */
+                            if( feature.getType() == FeatureType.CDS && i + 1 < starts.length &&
+                                feature.getStart() == features.get( i + 1 ).getStart() &&
+                                features.get( i + 1 ).getType() == FeatureType.GENE ) {
+                                detectedFeatures.setDownstreamFeature( features.get( i + 1 ) );
+                                detectedFeatures.setIsLeaderless( isLeaderless( features.get( i + 1 ), tssPos ) );
+//                            LOG.info( null, "Gene covers CDS with same annotated TSS Fwd");
+
+                            } else {
+                                detectedFeatures.setDownstreamFeature( feature );
+                                detectedFeatures.setIsLeaderless( isLeaderless( feature, tssPos ) );
+                            }
+
+                            break;
+                        }
+
+                    } else if( start >= maxStartPos ) {
+                        if( fstFittingFeature ) {
+                            this.lastFeatureIdx = i; //this is the first feature in the interval
+                        }
+                        break;
+                    }
+                }
+            } else { //means: strand == SequenceUtils.STRAND_REV
+
+                for( int i = this.lastFeatureIdx; i < starts.length; i++ ) {
+                    int start = stops[i];
+
+                    if( start >= minStartPos && !fwdStrands[i] && start <= maxStartPos ) {
+                        PersistentFeature feature = features.get( i );
+
+                        if( fstFittingFeature ) {
+                            this.lastFeatureIdx = i; //this is the first feature in the interval
+                            fstFittingFeature = false;
+                        }
+
+                        if( start < tssPos ) {
+                            //store feature as next bigger feature, but search for closer
+                            //bigger feature & correctly annotated transcription start site
+
+                            /*
+                             * Store next upstream feature. transcription start is
+                             * earlier than annotated, except the current feature is
+                             * a CDS feature and no gene feature is present for that
+                             * gene, starting earlier.
+                             */
+                            PersistentFeature upstreamAnno = detectedFeatures.getUpstreamFeature();
+                            if( upstreamAnno != null &&
+                                feature.getType() == FeatureType.CDS &&
+                                start == upstreamAnno.getStop() &&
+                                upstreamAnno.getType() == FeatureType.GENE ) {
+                                //TODO: this does not work if features start at the same position on rev and fwd strand!
+//                            LOG.info( null, "CDS covered by gene feature Rev");
+                                continue; // we want to keep the gene instead the CDS feature
+                            }
+
+                            detectedFeatures.setDownstreamFeature( feature );
+                            detectedFeatures.setIsLeaderless( isLeaderless( feature, tssPos ) );
+
+                        } else if( start == tssPos ) {
+                            //store correctly annotated transcription start site
+                            detectedFeatures.setCorrectStartFeature( feature );
+                            detectedFeatures.setDownstreamFeature( null );
+                            break;
+
+                        } else if( start > tssPos && feature.getStart() < tssPos ) {
+                            //store next upstream feature, translation start is further in gene
+
+                            if( feature.getType() == FeatureType.CDS && i + 1 < starts.length &&
+                                features.get( i + 1 ).getType() == FeatureType.GENE &&
+                                features.get( i + 1 ).getStart() <= feature.getStart() ) {
+                                detectedFeatures.setUpstreamFeature( features.get( i + 1 ) );
+//                            LOG.info( null, "Gene covers CDS with same annotated TSS Rev");
+                            } else {
+                                detectedFeatures.setUpstreamFeature( feature );
+                            }
+                            break;
+                        }
+
+                    } else if( start >= tssPos ) {
+                        if( fstFittingFeature ) {
+                            this.lastFeatureIdx = i; //TODO: features should be sorted by stop pos for rev strand
+                            fstFittingFeature = false;
+                        }
+                    }
+                    if( start >= maxStartPos && starts[i] > maxStartPos ) {
+                        break;
+                    }
+                }
+            }
+            return detectedFeatures;
+        }
+
+
+    }
+
+
 }
@@ -18,7 +18,6 @@
 package de.cebitec.readxplorer.transcriptionanalyses;
 
 
-import de.cebitec.readxplorer.api.Classification;
 import de.cebitec.readxplorer.databackend.connector.TrackConnector;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.transcriptionanalyses.datastructures.DetectedFeatures;
@@ -26,7 +25,6 @@ import de.cebitec.readxplorer.transcriptionanalyses.datastructures.TransStartUna
 import de.cebitec.readxplorer.transcriptionanalyses.datastructures.TranscriptionStart;
 import de.cebitec.readxplorer.ui.datavisualisation.abstractviewer.StartCodonFilter;
 import de.cebitec.readxplorer.utils.sequence.Region;
-import java.util.List;
 
 
 /**
@@ -80,15 +78,14 @@ public class AnalysisUnannotatedTransStart extends AnalysisTranscriptionStart {
     protected void addDetectStart( TranscriptionStart tss ) {
         DetectedFeatures features = tss.getDetFeatures();
         int currentPos = tss.getPos();
-        List<Classification> excludedClasses = this.getParametersTSS().getReadClassParams().getExcludedClasses();
 
         //only if no feature is available, detect the length of the unannotated new transcript
         if( features.getCorrectStartFeature() == null &&
                  features.getDownstreamFeature() == null &&
                  features.getUpstreamFeature() == null ) {
 
-            int increment = tss.isFwdStrand() ? 1 : -1; //only this getTotalCoverage method returns the array with the fixed leftmost position!
-            while( currentCoverage.getTotalCoverage( excludedClasses ).getCoverage( currentPos, tss.isFwdStrand() ) >
+            int increment = tss.isFwdStrand() ? 1 : -1; //only this getTotalCoverage method includes the last position of the previous request!
+            while( this.getTotalCoverage( currentPos, tss.isFwdStrand() ) >
                      this.getParametersTSS().getMinTranscriptExtensionCov() ) {
                 currentPos += increment;
             }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.transcriptionanalyses;
+
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Counts how often each exact value occurs. Small non-negative values, which
+ * make up almost all read start counts and coverage increases of a track, are
+ * counted in a primitive array without creating any objects. Only negative and
+ * very large values are counted in a map.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+class ExactCountDistribution {
+
+    private static final int INITIAL_DENSE_SIZE = 1024;
+    private static final int MAX_DENSE_SIZE = 1 << 16;
+
+    private int[] denseCounts = new int[INITIAL_DENSE_SIZE];
+    private final Map<Integer, Integer> sparseCounts = new HashMap<>();
+
+
+    /**
+     * Increases the count of the given value by one.
+     * <p>
+     * @param value the value to count
+     */
+    void increase( int value ) {
+        add( value, 1 );
+    }
+
+
+    /**
+     * Adds all counts of another distribution to this distribution.
+     * <p>
+     * @param distribution the distribution whose counts shall be added
+     */
+    void addDistribution( ExactCountDistribution distribution ) {
+        for( int value = 0; value < distribution.denseCounts.length; ++value ) {
+            if( distribution.denseCounts[value] > 0 ) {
+                add( value, distribution.denseCounts[value] );
+            }
+        }
+        for( Map.Entry<Integer, Integer> entry : distribution.sparseCounts.entrySet() ) {
+            add( entry.getKey(), entry.getValue() );
+        }
+    }
+
+
+    /**
+     * @param value the value whose count is needed
+     * <p>
+     * @return The number of times the value was counted.
+     */
+    int getCount( int value ) {
+        if( value >= 0 && value < denseCounts.length ) {
+            return denseCounts[value];
+        }
+        Integer count = sparseCounts.get( value );
+        return count == null ? 0 : count;
+    }
+
+
+    /**
+     * @return All values counted at least once in ascending order.
+     */
+    int[] getSortedValues() {
+        int nbValues = sparseCounts.size();
+        for( int count : denseCounts ) {
+            if( count > 0 ) {
+                ++nbValues;
+            }
+        }
+        int[] values = new int[nbValues];
+        int index = 0;
+        for( int value = 0; value < denseCounts.length; ++value ) {
+            if( denseCounts[value] > 0 ) {
+                values[index++] = value;
+            }
+        }
+        for( int value : sparseCounts.keySet() ) {
+            values[index++] = value;
+        }
+        Arrays.sort( values );
+        return values;
+    }
+
+
+    private void add( int value, int count ) {
+        if( value >= 0 && value < MAX_DENSE_SIZE ) {
+            if( value >= denseCounts.length ) {
+                denseCounts = Arrays.copyOf( denseCounts, Math.min( MAX_DENSE_SIZE, Math.max( value + 1, denseCounts.length * 2 ) ) );
+            }
+            denseCounts[value] += count;
+        } else {
+            sparseCounts.merge( value, count, Integer::sum );
+        }
+    }
+
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.transcriptionanalyses;
+
+
+import de.cebitec.readxplorer.databackend.ParametersFeatureTypes;
+import de.cebitec.readxplorer.databackend.ParametersReadClasses;
+import de.cebitec.readxplorer.databackend.dataobjects.Mapping;
+import de.cebitec.readxplorer.databackend.dataobjects.MappingBatch;
+import de.cebitec.readxplorer.databackend.dataobjects.PersistentFeature;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Sweep line join between the count intervals of one chromosome and the
+ * mappings of a mapping result. The intervals are visited in the order in
+ * which they were given and each interval receives all mappings overlapping
+ * it in the order of their start positions. This order is required by the
+ * {@link de.cebitec.readxplorer.transcriptionanalyses.datastructures.AssignedMapping}s,
+ * which expect the features of a mapping to arrive sorted by position.
+ * <p>
+ * The maximum interval stop of all previous intervals and the minimum
+ * interval start of all following intervals restrict each mapping result to
+ * the intervals it can overlap. The maximum mapping stop of all previous
+ * mappings then yields the first mapping of each interval by binary search.
+ * Thus, a mapping result with m mappings only costs O((n' + m) log m + k) for
+ * the n' intervals in its region and k overlaps, instead of touching all
+ * intervals of the genome.
+ * <p>
+ * Mappings are only joined with an interval, if they are located on the
+ * strand required by the read class parameters: The strand of the interval,
+ * the opposite strand or both strands.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class FeatureMappingJoin {
+
+    private final int[] starts;
+    private final int[] stops;
+    private final boolean[] analysisStrands;
+    private final boolean isStrandBothOption;
+    private final int[] maxStopBefore;
+    private final int[] minStartAfter;
+
+
+    /**
+     * Sweep line join between count intervals and mappings.
+     * <p>
+     * @param starts          start positions of the intervals in visiting
+     *                        order
+     * @param stops           stop positions of the intervals in visiting order
+     * @param fwdStrands      strand of each interval, <code>true</code> for
+     *                        the forward strand
+     * @param readClassParams read class parameters containing the strand
+     *                        option to use
+     */
+    public FeatureMappingJoin( int[] starts, int[] stops, boolean[] fwdStrands, ParametersReadClasses readClassParams ) {
+        this.starts = starts;
+        this.stops = stops;
+        this.isStrandBothOption = readClassParams.isStrandBothOption();
+        boolean isFeatureStrand = readClassParams.isStrandFeatureOption();
+        this.analysisStrands = new boolean[fwdStrands.length];
+        for( int i = 0; i < fwdStrands.length; ++i ) {
+            analysisStrands[i] = isFeatureStrand ? fwdStrands[i] : !fwdStrands[i];
+        }
+
+        int size = starts.length;
+        this.maxStopBefore = new int[size];
+        this.minStartAfter = new int[size];
+        int maxStop = Integer.MIN_VALUE;
+        for( int i = 0; i < size; ++i ) {
+            maxStop = Math.max( maxStop, stops[i] );
+            maxStopBefore[i] = maxStop;
+        }
+        int minStart = Integer.MAX_VALUE;
+        for( int i = size - 1; i >= 0; --i ) {
+            minStart = Math.min( minStart, starts[i] );
+            minStartAfter[i] = minStart;
+        }
+    }
+
+
+    /**
+     * Creates a join for a list of features, whose intervals are extended by
+     * the feature start and stop offsets of the given parameters.
+     * <p>
+     * @param features        the sorted features of one chromosome
+     * @param offsetParams    parameters containing the feature offsets
+     * @param readClassParams read class parameters containing the strand
+     *                        option to use
+     * <p>
+     * @return The join for the features. Interval i belongs to feature i.
+     */
+    public static FeatureMappingJoin forFeatures( List<PersistentFeature> features, ParametersFeatureTypes offsetParams,
+                                                  ParametersReadClasses readClassParams ) {
+        int[] starts = new int[features.size()];
+        int[] stops = new int[features.size()];
+        boolean[] fwdStrands = new boolean[features.size()];
+        for( int i = 0; i < features.size(); ++i ) {
+            PersistentFeature feature = features.get( i );
+            starts[i] = offsetParams.calcFeatureStartOffset( feature );
+            stops[i] = offsetParams.calcFeatureStopOffset( feature );
+            fwdStrands[i] = feature.isFwdStrand();
+        }
+        return new FeatureMappingJoin( starts, stops, fwdStrands, readClassParams );
+    }
+
+
+    /**
+     * @param mappings the mappings to sort
+     * <p>
+     * @return The given list, if it is already sorted by start position, or a
+     *         copy sorted by start position. Results of combined tracks are
+     *         not sorted, single track results are.
+     */
+    public static List<Mapping> sortByStart( List<Mapping> mappings ) {
+        for( int i = 1; i < mappings.size(); ++i ) {
+            if( mappings.get( i ).getStart() < mappings.get( i - 1 ).getStart() ) {
+                List<Mapping> sortedMappings = new ArrayList<>( mappings );
+                sortedMappings.sort( Comparator.comparingInt( Mapping::getStart ) );
+                return sortedMappings;
+            }
+        }
+        return mappings;
+    }
+
+
+    /**
+     * Joins the intervals with the given mappings and hands each overlap to
+     * the handler: First all mappings of the first interval, then all
+     * mappings of the second interval and so on.
+     * <p>
+     * @param mappings the mappings sorted by start position, see
+     *                 {@link #sortByStart(List)}
+     * @param handler  the handler receiving all overlaps
+     */
+    public void join( List<Mapping> mappings, OverlapHandler handler ) {
+        int nbMappings = mappings.size();
+        if( nbMappings == 0 || starts.length == 0 ) {
+            return;
+        }
+        int[] mappingStarts = new int[nbMappings];
+        int[] mappingStops = new int[nbMappings];
+        boolean[] mappingStrands = new boolean[nbMappings];
+        for( int j = 0; j < nbMappings; ++j ) {
+            Mapping mapping = mappings.get( j );
+            mappingStarts[j] = mapping.getStart();
+            mappingStops[j] = mapping.getStop();
+            mappingStrands[j] = mapping.isFwdStrand();
+        }
+        this.join( nbMappings, mappingStarts, mappingStops, mappingStrands, handler );
+    }
+
+
+    /**
+     * Joins the intervals with the mappings of a columnar batch and hands
+     * each overlap to the handler: First all mappings of the first interval,
+     * then all mappings of the second interval and so on. The mapping index
+     * handed to the handler is the index of the mapping in the batch.
+     * <p>
+     * @param batch   the mappings sorted by start position
+     * @param handler the handler receiving all overlaps
+     */
+    public void join( MappingBatch batch, OverlapHandler handler ) {
+        int nbMappings = batch.size();
+        if( nbMappings == 0 || starts.length == 0 ) {
+            return;
+        }
+        int[] mappingStarts = new int[nbMappings];
+        int[] mappingStops = new int[nbMappings];
+        boolean[] mappingStrands = new boolean[nbMappings];
+        for( int j = 0; j < nbMappings; ++j ) {
+            mappingStarts[j] = batch.getStart( j );
+            mappingStops[j] = batch.getStop( j );
+            mappingStrands[j] = batch.isFwdStrand( j );
+        }
+        this.join( nbMappings, mappingStarts, mappingStops, mappingStrands, handler );
+    }
+
+
+    /**
+     * Joins the intervals with the given mapping columns.
+     * <p>
+     * @param nbMappings     number of mappings
+     * @param mappingStarts  start positions of the mappings in ascending
+     *                       order
+     * @param mappingStops   stop positions of the mappings
+     * @param mappingStrands strand of each mapping, <code>true</code> for the
+     *                       forward strand
+     * @param handler        the handler receiving all overlaps
+     */
+    private void join( int nbMappings, int[] mappingStarts, int[] mappingStops, boolean[] mappingStrands, OverlapHandler handler ) {
+        int[] mappingMaxStops = new int[nbMappings];
+        int maxStop = Integer.MIN_VALUE;
+        for( int j = 0; j < nbMappings; ++j ) {
+            maxStop = Math.max( maxStop, mappingStops[j] );
+            mappingMaxStops[j] = maxStop;
+        }
+        int regionStart = mappingStarts[0];
+        int regionStop = maxStop;
+
+        int firstInterval = lowerBound( maxStopBefore, starts.length, regionStart );
+        int lastInterval = lowerBound( minStartAfter, starts.length, regionStop + 1 ) - 1;
+        for( int i = firstInterval; i <= lastInterval; ++i ) {
+            int start = starts[i];
+            int stop = stops[i];
+            if( stop < regionStart || start > regionStop ) {
+                continue;
+            }
+            for( int j = lowerBound( mappingMaxStops, nbMappings, start ); j < nbMappings && mappingStarts[j] <= stop; ++j ) {
+                if( mappingStops[j] >= start && (isStrandBothOption || analysisStrands[i] == mappingStrands[j]) ) {
+                    handler.overlap( i, j );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @param interval index of an interval
+     * <p>
+     * @return The start position of the interval
+     */
+    public int getStart( int interval ) {
+        return starts[interval];
+    }
+
+
+    /**
+     * @param interval index of an interval
+     * <p>
+     * @return The stop position of the interval
+     */
+    public int getStop( int interval ) {
+        return stops[interval];
+    }
+
+
+    /**
+     * @return The number of intervals of this join
+     */
+    public int size() {
+        return starts.length;
+    }
+
+
+    /**
+     * @return The index of the first value &gt;= key in the non-decreasing
+     *         array or length, if all values are smaller
+     */
+    private static int lowerBound( int[] values, int length, int key ) {
+        int low = 0;
+        int high = length;
+        while( low < high ) {
+            int mid = (low + high) >>> 1;
+            if( values[mid] < key ) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Receives the overlaps of a join.
+     */
+    public interface OverlapHandler {
+
+        /**
+         * Handles an overlap between an interval and a mapping located on the
+         * strand required for the interval.
+         * <p>
+         * @param interval index of the interval
+         * @param mapping  index of the mapping in the joined mapping list or
+         *                 batch
+         */
+        void overlap( int interval, int mapping );
+
+    }
+
+
+}
@@ -22,6 +22,8 @@ import de.cebitec.readxplorer.databackend.ResultTrackAnalysis;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentFeature;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
+import de.cebitec.readxplorer.exporter.tables.StreamingExportDataI;
+import de.cebitec.readxplorer.exporter.tables.TableRowCursor;
 import de.cebitec.readxplorer.transcriptionanalyses.datastructures.NormalizedReadCount;
 import de.cebitec.readxplorer.utils.GeneralUtils;
 import de.cebitec.readxplorer.utils.UrlWithTitle;
@@ -39,7 +41,7 @@ import java.util.Map;
  * <p>
  * @author Rolf Hilker <rhilker at cebitec.uni-bielefeld.de>
  */
-public class NormalizationAnalysisResult extends ResultTrackAnalysis<ParameterSetNormalization> {
+public class NormalizationAnalysisResult extends ResultTrackAnalysis<ParameterSetNormalization> implements StreamingExportDataI {
 
     private final List<NormalizedReadCount> normalizationResults;
     private int noGenomeFeatures;
@@ -142,36 +144,71 @@ public class NormalizationAnalysisResult extends ResultTrackAnalysis<ParameterSe
     public List<List<List<Object>>> dataToExcelExportList() {
         List<List<List<Object>>> exportData = new ArrayList<>();
         List<List<Object>> normResultRows = new ArrayList<>();
-        PersistentFeature feat;
-        ParameterSetNormalization normalizationParameters = (ParameterSetNormalization) this.getParameters();
+        for( int i = 0; i < normalizationResults.size(); ++i ) {
+            normResultRows.add( createNormalizationRow( i ) );
+        }
+        exportData.add( normResultRows );
+        exportData.add( createStatisticsRows() );
+
+        return exportData;
+    }
+
 
-        for( NormalizedReadCount normValue : normalizationResults ) {
-            List<Object> normRow = new ArrayList<>();
-
-            feat = normValue.getFeature();
-            normRow.add( feat );
-            normRow.add( feat.getLocus() );
-            UrlWithTitle url = GeneralUtils.createEcUrl( feat.getEcNumber() );
-            normRow.add( url != null ? url : "" );
-            normRow.add( feat.getProduct() );
-            normRow.add( feat.getType() );
-            normRow.add( getTrackEntry( normValue.getTrackId(), true ) );
-            normRow.add( getChromosomeMap().get( feat.getChromId() ) );
-            normRow.add( feat.getStrandString() );
-            normRow.add( feat.getStartOnStrand() );
-            normRow.add( feat.getStopOnStrand() );
-            normRow.add( feat.getLength() );
-            normRow.add( normalizationParameters.isUseEffectiveLength() ? normValue.getFeatureLength() : "-" );
-            normRow.add( normValue.getTPM() );
-            normRow.add( normValue.getRPKM() );
-            normRow.add( normValue.getReadCount() );
-
-            normResultRows.add( normRow );
+    /**
+     * Creates the rows of the normalization table on demand, so the table is
+     * never held in memory completely during the export.
+     * <p>
+     * @param sheetIndex index of the sheet whose rows are needed
+     * <p>
+     * @return A cursor over the rows of the sheet
+     */
+    @Override
+    public TableRowCursor createRowCursor( int sheetIndex ) {
+        if( sheetIndex == 0 ) {
+            return TableRowCursor.of( normalizationResults.size(), this::createNormalizationRow );
         }
+        return TableRowCursor.of( createStatisticsRows() );
+    }
 
-        exportData.add( normResultRows );
 
-        //create statistics sheet
+    /**
+     * @param i index of the normalized read count in the result list
+     * <p>
+     * @return The row of the normalization table for the normalized read
+     *         count at the given index
+     */
+    private List<Object> createNormalizationRow( int i ) {
+        NormalizedReadCount normValue = normalizationResults.get( i );
+        ParameterSetNormalization normalizationParameters = (ParameterSetNormalization) this.getParameters();
+        List<Object> normRow = new ArrayList<>();
+
+        PersistentFeature feat = normValue.getFeature();
+        normRow.add( feat );
+        normRow.add( feat.getLocus() );
+        UrlWithTitle url = GeneralUtils.createEcUrl( feat.getEcNumber() );
+        normRow.add( url != null ? url : "" );
+        normRow.add( feat.getProduct() );
+        normRow.add( feat.getType() );
+        normRow.add( getTrackEntry( normValue.getTrackId(), true ) );
+        normRow.add( getChromosomeMap().get( feat.getChromId() ) );
+        normRow.add( feat.getStrandString() );
+        normRow.add( feat.getStartOnStrand() );
+        normRow.add( feat.getStopOnStrand() );
+        normRow.add( feat.getLength() );
+        normRow.add( normalizationParameters.isUseEffectiveLength() ? normValue.getFeatureLength() : "-" );
+        normRow.add( normValue.getTPM() );
+        normRow.add( normValue.getRPKM() );
+        normRow.add( normValue.getReadCount() );
+
+        return normRow;
+    }
+
+
+    /**
+     * @return The rows of the parameter and statistics sheet
+     */
+    private List<List<Object>> createStatisticsRows() {
+        ParameterSetNormalization normalizationParameters = (ParameterSetNormalization) this.getParameters();
         List<List<Object>> statisticsExportData = new ArrayList<>();
 
         statisticsExportData.add( ResultTrackAnalysis.createTableRow( "TPM, RPKM and raw read count calculation for tracks:",
@@ -200,9 +237,7 @@ public class NormalizationAnalysisResult extends ResultTrackAnalysis<ParameterSe
         statisticsExportData.add( ResultTrackAnalysis.createTableRow( ResultPanelNormalization.FEATURES_TOTAL,
                                                                       getStatsMap().get( ResultPanelNormalization.FEATURES_TOTAL ) ) );
 
-        exportData.add( statisticsExportData );
-
-        return exportData;
+        return statisticsExportData;
     }
 
 
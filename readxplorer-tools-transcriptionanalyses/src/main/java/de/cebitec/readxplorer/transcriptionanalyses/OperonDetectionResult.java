@@ -22,6 +22,8 @@ import de.cebitec.readxplorer.databackend.ResultTrackAnalysis;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentFeature;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
+import de.cebitec.readxplorer.exporter.tables.StreamingExportDataI;
+import de.cebitec.readxplorer.exporter.tables.TableRowCursor;
 import de.cebitec.readxplorer.transcriptionanalyses.datastructures.Operon;
 import de.cebitec.readxplorer.transcriptionanalyses.datastructures.OperonAdjacency;
 import de.cebitec.readxplorer.utils.GeneralUtils;
@@ -36,7 +38,7 @@ import java.util.Map;
  * <p>
  * @author Rolf Hilker <rhilker at cebitec.uni-bielefeld.de>
  */
-public class OperonDetectionResult extends ResultTrackAnalysis<ParameterSetOperonDet> {
+public class OperonDetectionResult extends ResultTrackAnalysis<ParameterSetOperonDet> implements StreamingExportDataI {
 
     private final List<Operon> detectedOperons;
 
@@ -115,67 +117,101 @@ public class OperonDetectionResult extends ResultTrackAnalysis<ParameterSetOpero
     public List<List<List<Object>>> dataToExcelExportList() {
         List<List<List<Object>>> exportData = new ArrayList<>();
         List<List<Object>> operonResults = new ArrayList<>();
+        for( int i = 0; i < detectedOperons.size(); ++i ) {
+            operonResults.add( createOperonRow( i ) );
+        }
+        exportData.add( operonResults );
+        exportData.add( createStatisticsRows() );
 
-        for( Operon operon : this.detectedOperons ) {
-            PersistentFeature feat1 = operon.getOperonAdjacencies().get( 0 ).getFeature1();
-            String annoName1 = "";
-            String annoName2 = "";
-            String strand = feat1.getStrandString() + "\n";
-            String startAnno1 = "";
-            String startAnno2 = "";
-            String readsAnno1 = "";
-            String readsAnno2 = "";
-            String internalReads = "";
-            String spanningReads = "";
-            String anno1Locus = "";
-            String anno1Product = "";
-            String anno1EcNumber = "";
-            String anno2Locus = "";
-            String anno2Product = "";
-            String anno2EcNumber = "";
-
-            for( OperonAdjacency opAdj : operon.getOperonAdjacencies() ) {
-                annoName1 += opAdj.getFeature1().toString() + "\n";
-                annoName2 += opAdj.getFeature2().toString() + "\n";
-                startAnno1 += opAdj.getFeature1().getStart() + "\n";
-                startAnno2 += opAdj.getFeature2().getStart() + "\n";
-                readsAnno1 += opAdj.getReadsFeature1() + "\n";
-                readsAnno2 += opAdj.getReadsFeature2() + "\n";
-                internalReads += opAdj.getInternalReads() + "\n";
-                spanningReads += opAdj.getSpanningReads() + "\n";
-                anno1Locus += opAdj.getFeature1().getLocus() + "\n";
-                anno1Product += opAdj.getFeature1().getProduct() + "\n";
-                anno1EcNumber += opAdj.getFeature1().getEcNumber() + "\n";
-                anno2Locus += opAdj.getFeature2().getLocus() + "\n";
-                anno2Product += opAdj.getFeature2().getProduct() + "\n";
-                anno2EcNumber += opAdj.getFeature2().getEcNumber() + "\n";
-
-            }
-            List<Object> operonsRow = new ArrayList<>();
-            operonsRow.add( annoName1 );
-            operonsRow.add( annoName2 );
-            operonsRow.add( this.getTrackEntry( operon.getTrackId(), true ) );
-            operonsRow.add( this.getChromosomeMap().get( feat1.getChromId() ) );
-            operonsRow.add( strand );
-            operonsRow.add( startAnno1 );
-            operonsRow.add( startAnno2 );
-            operonsRow.add( readsAnno1 );
-            operonsRow.add( readsAnno2 );
-            operonsRow.add( internalReads );
-            operonsRow.add( spanningReads );
-            operonsRow.add( anno1Locus );
-            operonsRow.add( anno1Product );
-            operonsRow.add( anno1EcNumber );
-            operonsRow.add( anno2Locus );
-            operonsRow.add( anno2Product );
-            operonsRow.add( anno2EcNumber );
-
-            operonResults.add( operonsRow );
+        return exportData;
+    }
+
+
+    /**
+     * Creates the rows of the operon table on demand, so the table is
+     * never held in memory completely during the export.
+     * <p>
+     * @param sheetIndex index of the sheet whose rows are needed
+     * <p>
+     * @return A cursor over the rows of the sheet
+     */
+    @Override
+    public TableRowCursor createRowCursor( int sheetIndex ) {
+        if( sheetIndex == 0 ) {
+            return TableRowCursor.of( detectedOperons.size(), this::createOperonRow );
         }
+        return TableRowCursor.of( createStatisticsRows() );
+    }
 
-        exportData.add( operonResults );
 
-        //create statistics sheet
+    /**
+     * @param i index of the operon in the result list
+     * <p>
+     * @return The row of the operon table for the operon at the given index
+     */
+    private List<Object> createOperonRow( int i ) {
+        Operon operon = detectedOperons.get( i );
+        PersistentFeature feat1 = operon.getOperonAdjacencies().get( 0 ).getFeature1();
+        String annoName1 = "";
+        String annoName2 = "";
+        String strand = feat1.getStrandString() + "\n";
+        String startAnno1 = "";
+        String startAnno2 = "";
+        String readsAnno1 = "";
+        String readsAnno2 = "";
+        String internalReads = "";
+        String spanningReads = "";
+        String anno1Locus = "";
+        String anno1Product = "";
+        String anno1EcNumber = "";
+        String anno2Locus = "";
+        String anno2Product = "";
+        String anno2EcNumber = "";
+
+        for( OperonAdjacency opAdj : operon.getOperonAdjacencies() ) {
+            annoName1 += opAdj.getFeature1().toString() + "\n";
+            annoName2 += opAdj.getFeature2().toString() + "\n";
+            startAnno1 += opAdj.getFeature1().getStart() + "\n";
+            startAnno2 += opAdj.getFeature2().getStart() + "\n";
+            readsAnno1 += opAdj.getReadsFeature1() + "\n";
+            readsAnno2 += opAdj.getReadsFeature2() + "\n";
+            internalReads += opAdj.getInternalReads() + "\n";
+            spanningReads += opAdj.getSpanningReads() + "\n";
+            anno1Locus += opAdj.getFeature1().getLocus() + "\n";
+            anno1Product += opAdj.getFeature1().getProduct() + "\n";
+            anno1EcNumber += opAdj.getFeature1().getEcNumber() + "\n";
+            anno2Locus += opAdj.getFeature2().getLocus() + "\n";
+            anno2Product += opAdj.getFeature2().getProduct() + "\n";
+            anno2EcNumber += opAdj.getFeature2().getEcNumber() + "\n";
+
+        }
+        List<Object> operonsRow = new ArrayList<>();
+        operonsRow.add( annoName1 );
+        operonsRow.add( annoName2 );
+        operonsRow.add( this.getTrackEntry( operon.getTrackId(), true ) );
+        operonsRow.add( this.getChromosomeMap().get( feat1.getChromId() ) );
+        operonsRow.add( strand );
+        operonsRow.add( startAnno1 );
+        operonsRow.add( startAnno2 );
+        operonsRow.add( readsAnno1 );
+        operonsRow.add( readsAnno2 );
+        operonsRow.add( internalReads );
+        operonsRow.add( spanningReads );
+        operonsRow.add( anno1Locus );
+        operonsRow.add( anno1Product );
+        operonsRow.add( anno1EcNumber );
+        operonsRow.add( anno2Locus );
+        operonsRow.add( anno2Product );
+        operonsRow.add( anno2EcNumber );
+
+        return operonsRow;
+    }
+
+
+    /**
+     * @return The rows of the parameter and statistics sheet
+     */
+    private List<List<Object>> createStatisticsRows() {
         ParameterSetOperonDet operonDetectionParameters = (ParameterSetOperonDet) this.getParameters();
         List<List<Object>> statisticsExportData = new ArrayList<>();
 
@@ -200,9 +236,7 @@ public class OperonDetectionResult extends ResultTrackAnalysis<ParameterSetOpero
         statisticsExportData.add( ResultTrackAnalysis.createTableRow( ResultPanelOperonDetection.OPERONS_WITH_INTERNAL_READS,
                                                                       this.getStatsMap().get( ResultPanelOperonDetection.OPERONS_WITH_INTERNAL_READS ) ) );
 
-        exportData.add( statisticsExportData );
-
-        return exportData;
+        return statisticsExportData;
     }
 
 
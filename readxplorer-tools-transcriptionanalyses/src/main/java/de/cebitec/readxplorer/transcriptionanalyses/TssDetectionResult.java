@@ -23,6 +23,8 @@ import de.cebitec.readxplorer.databackend.ResultTrackAnalysis;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentFeature;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentReference;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentTrack;
+import de.cebitec.readxplorer.exporter.tables.StreamingExportDataI;
+import de.cebitec.readxplorer.exporter.tables.TableRowCursor;
 import de.cebitec.readxplorer.transcriptionanalyses.datastructures.DetectedFeatures;
 import de.cebitec.readxplorer.transcriptionanalyses.datastructures.TransStartUnannotated;
 import de.cebitec.readxplorer.transcriptionanalyses.datastructures.TranscriptionStart;
@@ -42,7 +44,7 @@ import java.util.Map;
  * <p>
  * @author Rolf Hilker <rhilker at cebitec.uni-bielefeld.de>
  */
-public class TssDetectionResult extends ResultTrackAnalysis<ParameterSetTSS> {
+public class TssDetectionResult extends ResultTrackAnalysis<ParameterSetTSS> implements StreamingExportDataI {
 
     public static final String TSS_TOTAL = "Total number of detected TSSs";
     public static final String TSS_CORRECT = "Correct TSS";
@@ -262,66 +264,99 @@ public class TssDetectionResult extends ResultTrackAnalysis<ParameterSetTSS> {
     public List<List<List<Object>>> dataToExcelExportList() {
         List<List<List<Object>>> tSSExport = new ArrayList<>();
         List<List<Object>> tSSResults = new ArrayList<>();
-
         for( int i = 0; i < results.size(); ++i ) {
-            TranscriptionStart tss = results.get( i );
-            List<Object> tssRow = new ArrayList<>();
-
-            tssRow.add( tss.getPos() );
-            tssRow.add( this.getTrackEntry( tss.getTrackId(), true ) );
-            tssRow.add( this.getChromosomeMap().get( tss.getChromId() ) );
-            tssRow.add( tss.isFwdStrand() ? Strand.Forward.toString() : Strand.Reverse.toString() );
-            tssRow.add( tss.getReadStartsAtPos() );
-            tssRow.add( tss.getCoverageIncrease() );
-            tssRow.add( tss.getPercentIncrease() );
-
-            DetectedFeatures detFeatures = tss.getDetFeatures();
-            tssRow.add( detFeatures.isLeaderless() ? "yes" : "" );
-            tssRow.add( tss.isPrimaryTss() ? "primary" : "secondary" );
-            if( tss.isPrimaryTss() ) {
-                tssRow.add( "-" );
-            } else {
-                tssRow.add( tss.getPrimaryTss().getPos() );
-            }
-            this.addFeatureRows( detFeatures.getCorrectStartFeature(), tssRow, tss, false );
-            this.addFeatureRows( detFeatures.getUpstreamFeature(), tssRow, tss, true );
-            this.addFeatureRows( detFeatures.getDownstreamFeature(), tssRow, tss, true );
+            tSSResults.add( createTssRow( i ) );
+        }
+        tSSExport.add( tSSResults );
+        tSSExport.add( createStatisticsRows() );
 
-            if( tss instanceof TransStartUnannotated ) {
-                TransStartUnannotated tSSU = (TransStartUnannotated) tss;
-                tssRow.add( "yes" );
-                tssRow.add( tSSU.getDetectedStop() );
-                if( tSSU.hasStartCodon() ) {
-                    tssRow.add( tSSU.getStartCodon().getStartOnStrand() );
-                    tssRow.add( tSSU.getStartPosDifference() );
-                    if( tSSU.hasStopCodon() ) {
-                        tssRow.add( tSSU.getStopCodon().getStartOnStrand() );
-                        tssRow.add( tSSU.getStopCodon().getStopOnStrand() );
-                        tssRow.add( tSSU.getCodonCDSLength() );
-                    } else {
-                        TableUtils.addEmptyColumns( 3, tssRow );
-                    }
+        return tSSExport;
+    }
+
+
+    /**
+     * Creates the rows of the transcription start site table on demand, so
+     * the table is never held in memory completely during the export.
+     * <p>
+     * @param sheetIndex index of the sheet whose rows are needed
+     * <p>
+     * @return A cursor over the rows of the sheet
+     */
+    @Override
+    public TableRowCursor createRowCursor( int sheetIndex ) {
+        if( sheetIndex == 0 ) {
+            return TableRowCursor.of( results.size(), this::createTssRow );
+        }
+        return TableRowCursor.of( createStatisticsRows() );
+    }
+
+
+    /**
+     * @param i index of the transcription start site in the result list
+     * <p>
+     * @return The row of the transcription start site table for the
+     *         transcription start site at the given index
+     */
+    private List<Object> createTssRow( int i ) {
+        TranscriptionStart tss = results.get( i );
+        List<Object> tssRow = new ArrayList<>();
+
+        tssRow.add( tss.getPos() );
+        tssRow.add( this.getTrackEntry( tss.getTrackId(), true ) );
+        tssRow.add( this.getChromosomeMap().get( tss.getChromId() ) );
+        tssRow.add( tss.isFwdStrand() ? Strand.Forward.toString() : Strand.Reverse.toString() );
+        tssRow.add( tss.getReadStartsAtPos() );
+        tssRow.add( tss.getCoverageIncrease() );
+        tssRow.add( tss.getPercentIncrease() );
+
+        DetectedFeatures detFeatures = tss.getDetFeatures();
+        tssRow.add( detFeatures.isLeaderless() ? "yes" : "" );
+        tssRow.add( tss.isPrimaryTss() ? "primary" : "secondary" );
+        if( tss.isPrimaryTss() ) {
+            tssRow.add( "-" );
+        } else {
+            tssRow.add( tss.getPrimaryTss().getPos() );
+        }
+        this.addFeatureRows( detFeatures.getCorrectStartFeature(), tssRow, tss, false );
+        this.addFeatureRows( detFeatures.getUpstreamFeature(), tssRow, tss, true );
+        this.addFeatureRows( detFeatures.getDownstreamFeature(), tssRow, tss, true );
+
+        if( tss instanceof TransStartUnannotated ) {
+            TransStartUnannotated tSSU = (TransStartUnannotated) tss;
+            tssRow.add( "yes" );
+            tssRow.add( tSSU.getDetectedStop() );
+            if( tSSU.hasStartCodon() ) {
+                tssRow.add( tSSU.getStartCodon().getStartOnStrand() );
+                tssRow.add( tSSU.getStartPosDifference() );
+                if( tSSU.hasStopCodon() ) {
+                    tssRow.add( tSSU.getStopCodon().getStartOnStrand() );
+                    tssRow.add( tSSU.getStopCodon().getStopOnStrand() );
+                    tssRow.add( tSSU.getCodonCDSLength() );
                 } else {
-                    TableUtils.addEmptyColumns( 5, tssRow );
+                    TableUtils.addEmptyColumns( 3, tssRow );
                 }
             } else {
-                TableUtils.addEmptyColumns( 7, tssRow );
-            }
-
-            if( tssParameters.isAssociateTss() ) {
-                tssRow.add( GeneralUtils.implode( ",", tss.getAssociatedTssList().toArray() ) );
+                TableUtils.addEmptyColumns( 5, tssRow );
             }
+        } else {
+            TableUtils.addEmptyColumns( 7, tssRow );
+        }
 
-            tssRow.add( promotorRegions.get( i ) );
-            tssRow.add( downstreamRegions.get( i ) );
-
-            tSSResults.add( tssRow );
+        if( tssParameters.isAssociateTss() ) {
+            tssRow.add( GeneralUtils.implode( ",", tss.getAssociatedTssList().toArray() ) );
         }
 
-        tSSExport.add( tSSResults );
+        tssRow.add( promotorRegions.get( i ) );
+        tssRow.add( downstreamRegions.get( i ) );
+
+        return tssRow;
+    }
 
 
-        //create statistics sheet
+    /**
+     * @return The rows of the parameters and statistics sheet
+     */
+    private List<List<Object>> createStatisticsRows() {
         List<List<Object>> statisticsExportData = new ArrayList<>();
 
         statisticsExportData.add( ResultTrackAnalysis.createTableRow(
@@ -392,9 +427,7 @@ public class TssDetectionResult extends ResultTrackAnalysis<ParameterSetTSS> {
         statisticsExportData.add( ResultTrackAnalysis.createTableRow( TSS_DOWNSTREAM100, statsMap.get( TSS_DOWNSTREAM100 ), percentMap.get( TSS_DOWNSTREAM100 ) ) );
         statisticsExportData.add( ResultTrackAnalysis.createTableRow( TSS_DOWNSTREAM250, statsMap.get( TSS_DOWNSTREAM250 ), percentMap.get( TSS_DOWNSTREAM250 ) ) );
 
-        tSSExport.add( statisticsExportData );
-
-        return tSSExport;
+        return statisticsExportData;
     }
 
 
@@ -39,7 +39,8 @@ import java.util.Set;
  */
 public abstract class AssignedMapping implements MappingAssignment {
 
-    private final Mapping mapping;
+    private final int start;
+    private final int stop;
     Set<PersistentFeature> assignedFeatures;
     List<PersistentFeature> revRemoveList;
     Map<FeatureType, Set<PersistentFeature>> fractionMap;
@@ -55,7 +56,23 @@ public abstract class AssignedMapping implements MappingAssignment {
      * @param mapping The mapping for which features shall be assigned
      */
     public AssignedMapping( Mapping mapping ) {
-        this.mapping = mapping;
+        this( mapping.getStart(), mapping.getStop() );
+    }
+
+
+    /**
+     * An assigned mapping for the mapping with the given start and stop
+     * position. Features have to be added in sorted order from the first to
+     * the last position of a reference sequence.
+     * <p>
+     * @param start The start of the mapping for which features shall be
+     *              assigned
+     * @param stop  The stop of the mapping for which features shall be
+     *              assigned
+     */
+    public AssignedMapping( int start, int stop ) {
+        this.start = start;
+        this.stop = stop;
         assignedFeatures = new HashSet<>();
     }
 
@@ -84,10 +101,26 @@ public abstract class AssignedMapping implements MappingAssignment {
 
 
     /**
-     * @return The mapping which is assigned to features here.
+     * @return The start of the mapping which is assigned to features here.
+     */
+    public int getStart() {
+        return start;
+    }
+
+
+    /**
+     * @return The stop of the mapping which is assigned to features here.
+     */
+    public int getStop() {
+        return stop;
+    }
+
+
+    /**
+     * @return The length of the mapping which is assigned to features here.
      */
-    public Mapping getMapping() {
-        return mapping;
+    public int getLength() {
+        return stop - start + 1;
     }
 
 
@@ -135,7 +168,7 @@ public abstract class AssignedMapping implements MappingAssignment {
             for( PersistentFeature removeFeat : getRevRemoveList() ) {
                 NormalizedReadCount decreaseCount = featureReadCount.get( removeFeat.getId() );
                 decreaseCount.setReadCount( decreaseCount.getReadCount() - 1 );
-                decreaseCount.setReadLengthSum( decreaseCount.getReadLengthSum() - mapping.getLength() );
+                decreaseCount.setReadLengthSum( decreaseCount.getReadLengthSum() - getLength() );
             }
             notifyRemovedFeatures();
         }
@@ -75,6 +75,18 @@ public class UnionFractionMapping extends AssignedMapping {
     }
 
 
+    /**
+     * An assigned mapping implementation based on a union and fraction model
+     * for the mapping with the given start and stop position.
+     * <p>
+     * @param start The start of the mapping to which features are assigned
+     * @param stop  The stop of the mapping to which features are assigned
+     */
+    public UnionFractionMapping( int start, int stop ) {
+        super( start, stop );
+    }
+
+
     /**
      * Checks if the mapping should be counted for the given feature. Mainly
      * important when a mapping overlaps multiple genomic features of the same
@@ -112,13 +124,13 @@ public class UnionFractionMapping extends AssignedMapping {
 
                     if( !isStrandBothOption ) {
                         if( feature.isFwdStrand() ) {
-                            if( getMapping().getStart() < featStart && featStart != assignedFeature.getStart() ) {
+                            if( getStart() < featStart && featStart != assignedFeature.getStart() ) {
                                 countIt = false;
                             } else {
                                 addToFractionMap( feature, assignedFeature );
                             }
                         } else if( !feature.isFwdStrand() ) {  //since they arrive in sorted order!
-                            if( getMapping().getStop() > assignedFeature.getStop() && feature.getStop() != assignedFeature.getStop() ) {
+                            if( getStop() > assignedFeature.getStop() && feature.getStop() != assignedFeature.getStop() ) {
                                 //means delete read count of other feature!
                                 removeList.add( assignedFeature );
                                 //the remove list can be retrieved via getter -> then analysis decreases rc
@@ -142,9 +154,9 @@ public class UnionFractionMapping extends AssignedMapping {
                     //Mapping:  ______(-------)________
                     //CDS1 rev: ___[--------]_____
                     //CDS2 rev: _________[---------]_____   
-                    if( feature.isFwdStrand() && getMapping().getStart() < featStart && featStart != assignedFeature.getStart() ) {
+                    if( feature.isFwdStrand() && getStart() < featStart && featStart != assignedFeature.getStart() ) {
                         countIt = false;
-                    } else if( !feature.isFwdStrand() && getMapping().getStop() > assignedFeature.getStop() && feature.getStop() != assignedFeature.getStop() ) {
+                    } else if( !feature.isFwdStrand() && getStop() > assignedFeature.getStop() && feature.getStop() != assignedFeature.getStop() ) {
                         //means delete read count of other feature!
                         removeList.add( assignedFeature );
                         replaceInFractionMap( assignedFeature, feature );
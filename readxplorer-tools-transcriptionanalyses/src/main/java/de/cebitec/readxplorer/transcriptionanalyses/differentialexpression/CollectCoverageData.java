@@ -21,9 +21,9 @@ package de.cebitec.readxplorer.transcriptionanalyses.differentialexpression;
 import de.cebitec.readxplorer.api.enums.FeatureType;
 import de.cebitec.readxplorer.databackend.ParametersFeatureTypes;
 import de.cebitec.readxplorer.databackend.ParametersReadClasses;
-import de.cebitec.readxplorer.databackend.dataobjects.Mapping;
-import de.cebitec.readxplorer.databackend.dataobjects.MappingResult;
+import de.cebitec.readxplorer.databackend.dataobjects.MappingBatchResult;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentFeature;
+import de.cebitec.readxplorer.transcriptionanalyses.FeatureMappingJoin;
 import de.cebitec.readxplorer.utils.Observer;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -65,6 +65,15 @@ public class CollectCoverageData implements Observer {
      */
     private final int stopOffset;
     private final ParametersReadClasses readClassParams;
+    /**
+     * The sorted features of each chromosome.
+     */
+    private final Map<Integer, List<PersistentFeature>> chromFeatureMap = new HashMap<>();
+    /**
+     * The sweep line join between the features and the mappings of each
+     * chromosome.
+     */
+    private final Map<Integer, FeatureMappingJoin> chromJoinMap = new HashMap<>();
 
 
     /**
@@ -81,64 +90,42 @@ public class CollectCoverageData implements Observer {
         this.stopOffset = stopOffset;
         this.readClassParams = readClassParams;
         Collections.sort( genomeFeatures );
+
+        //If no matching mapping is found, we still need to know that by
+        //writing down a count of zero for this feature.
+        for( PersistentFeature feature : genomeFeatures ) {
+            countData.put( feature, 0 );
+            chromFeatureMap.computeIfAbsent( feature.getChromId(), chromId -> new ArrayList<>() ).add( feature );
+        }
+        ParametersFeatureTypes featTypeParams = new ParametersFeatureTypes( EnumSet.allOf( FeatureType.class ), startOffset, stopOffset );
+        for( Map.Entry<Integer, List<PersistentFeature>> chromFeatures : chromFeatureMap.entrySet() ) {
+            chromJoinMap.put( chromFeatures.getKey(), FeatureMappingJoin.forFeatures( chromFeatures.getValue(), featTypeParams, readClassParams ) );
+        }
     }
 
 
     /**
      * Updates the read count for the features with the given mappings.
      * <p>
-     * @param mappings the mappings
+     * @param result the result containing the mapping batch
      */
-    private void updateReadCountForFeatures( MappingResult result ) {
-        List<Mapping> mappings = new ArrayList<>( result.getMappings() );
-        Collections.sort( mappings );
-        int lastMappingIdx = 0;
-        boolean isStrandBothOption = readClassParams.isStrandBothOption();
-        boolean isFeatureStrand = readClassParams.isStrandFeatureOption();
-
-        for( PersistentFeature feature : genomeFeatures ) {
-
-            if( feature.getChromId() == result.getRequest().getChromId() ) {
-
-                ParametersFeatureTypes featTypeParams = new ParametersFeatureTypes( EnumSet.allOf( FeatureType.class ), startOffset, stopOffset );
-                int featStart = featTypeParams.calcFeatureStartOffset( feature );
-                int featStop = featTypeParams.calcFeatureStopOffset( feature );
-                boolean analysisStrand = isFeatureStrand ? feature.isFwdStrand() : !feature.isFwdStrand(); //only use this if Strand.Both is not selected
-                boolean fstFittingMapping = true;
-                //If no matching mapping is found, we still need to know that by
-                //writing down a count of zero for this feature.
-                if( !countData.containsKey( feature ) ) {
-                    countData.put( feature, 0 );
-                }
-                for( int j = lastMappingIdx; j < mappings.size(); j++ ) {
-                    Mapping mapping = mappings.get( j );
-                    //If the orientation of the read does not matter this one is always true.
-                    //mappings identified within a feature
-                    if( mapping.getStop() >= featStart && mapping.getStart() <= featStop ) {
-
-                        if( fstFittingMapping ) {
-                            lastMappingIdx = j;
-                            fstFittingMapping = false;
-                        }
-                        if( isStrandBothOption || analysisStrand == mapping.isFwdStrand() ) {
-                            countData.put( feature, countData.get( feature ) + 1 );
-                        }
-
-                        //still mappings left, but need next feature
-                    } else if( mapping.getStart() > featStop ) {
-                        break;
-                    }
-                }
-            }
+    private void updateReadCountForFeatures( MappingBatchResult result ) {
+        final List<PersistentFeature> chromFeatures = chromFeatureMap.get( result.getRequest().getChromId() );
+        FeatureMappingJoin join = chromJoinMap.get( result.getRequest().getChromId() );
+        if( join == null ) {
+            return;
         }
+        join.join( result.getBatch(), ( featureIdx, mappingIdx ) -> {
+            PersistentFeature feature = chromFeatures.get( featureIdx );
+            countData.put( feature, countData.get( feature ) + 1 );
+        } );
     }
 
 
     @Override
     public void update( Object args ) {
-        if( args instanceof MappingResult ) {
-            MappingResult result = (MappingResult) args;
-            updateReadCountForFeatures( result );
+        if( args instanceof MappingBatchResult ) {
+            updateReadCountForFeatures( (MappingBatchResult) args );
         }
     }
 
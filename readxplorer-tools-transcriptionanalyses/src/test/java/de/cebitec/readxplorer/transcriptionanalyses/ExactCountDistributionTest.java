@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.transcriptionanalyses;
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Test of the {@link ExactCountDistribution}.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class ExactCountDistributionTest {
+
+
+    /**
+     * Test of increase and addDistribution methods, of class
+     * ExactCountDistribution. Small, negative and very large values are
+     * counted and sorted together.
+     */
+    @Test
+    public void testAddDistribution() {
+        System.out.println( "addDistribution" );
+        ExactCountDistribution fwdDistribution = new ExactCountDistribution();
+        ExactCountDistribution revDistribution = new ExactCountDistribution();
+        int[] fwdValues = { 3, 0, 3, 5000, -100, 1 << 20 };
+        int[] revValues = { 3, -100, 70000, 0 };
+        for( int value : fwdValues ) {
+            fwdDistribution.increase( value );
+        }
+        for( int value : revValues ) {
+            revDistribution.increase( value );
+        }
+
+        fwdDistribution.addDistribution( revDistribution );
+        assertArrayEquals( new int[]{ -100, 0, 3, 5000, 70000, 1 << 20 }, fwdDistribution.getSortedValues() );
+        assertEquals( 2, fwdDistribution.getCount( -100 ) );
+        assertEquals( 2, fwdDistribution.getCount( 0 ) );
+        assertEquals( 3, fwdDistribution.getCount( 3 ) );
+        assertEquals( 1, fwdDistribution.getCount( 5000 ) );
+        assertEquals( 1, fwdDistribution.getCount( 70000 ) );
+        assertEquals( 0, fwdDistribution.getCount( 4 ) );
+        assertEquals( 0, fwdDistribution.getCount( 100000 ) );
+    }
+
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.transcriptionanalyses;
+
+
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.api.enums.Strand;
+import de.cebitec.readxplorer.databackend.ParametersReadClasses;
+import de.cebitec.readxplorer.databackend.dataobjects.Mapping;
+import de.cebitec.readxplorer.databackend.dataobjects.MappingBatch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+
+/**
+ * Test of the {@link FeatureMappingJoin}. All joins are compared to a nested
+ * loop over random intervals and mappings.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class FeatureMappingJoinTest {
+
+    /**
+     * Test of join method, of class FeatureMappingJoin. Mapping lists and
+     * mapping batches sorted by start have to yield the same overlaps.
+     */
+    @Test
+    public void testJoin() {
+        System.out.println( "join" );
+        Random random = new Random( 42 );
+        int nbIntervals = 500;
+        int[] starts = new int[nbIntervals];
+        int[] stops = new int[nbIntervals];
+        boolean[] fwdStrands = new boolean[nbIntervals];
+        for( int i = 0; i < nbIntervals; ++i ) {
+            starts[i] = 1 + random.nextInt( 100000 );
+            stops[i] = starts[i] + (random.nextInt( 10 ) == 0 ? random.nextInt( 10000 ) : random.nextInt( 1500 ));
+            fwdStrands[i] = random.nextBoolean();
+        }
+
+        for( Strand strand : new Strand[]{ Strand.Feature, Strand.Opposite, Strand.Both } ) {
+            ParametersReadClasses readClassParams = new ParametersReadClasses( new ArrayList<>(), (byte) 0, strand );
+            FeatureMappingJoin join = new FeatureMappingJoin( starts, stops, fwdStrands, readClassParams );
+            for( int chunk = 0; chunk < 20; ++chunk ) {
+                int chunkStart = random.nextInt( 100000 );
+                List<Mapping> mappings = new ArrayList<>();
+                for( int j = 0; j < 300; ++j ) {
+                    int start = chunkStart + random.nextInt( 5000 );
+                    mappings.add( new Mapping( start, start + random.nextInt( 300 ), random.nextBoolean() ) );
+                }
+                List<Mapping> sortedMappings = FeatureMappingJoin.sortByStart( mappings );
+                assertSame( sortedMappings, FeatureMappingJoin.sortByStart( sortedMappings ) );
+
+                List<Long> expOverlaps = new ArrayList<>();
+                for( int i = 0; i < nbIntervals; ++i ) {
+                    boolean analysisStrand = strand == Strand.Feature ? fwdStrands[i] : !fwdStrands[i];
+                    for( int j = 0; j < sortedMappings.size(); ++j ) {
+                        Mapping mapping = sortedMappings.get( j );
+                        if( mapping.getStop() >= starts[i] && mapping.getStart() <= stops[i] &&
+                            (strand == Strand.Both || mapping.isFwdStrand() == analysisStrand) ) {
+                            expOverlaps.add( ((long) i << 32) | j );
+                        }
+                    }
+                }
+                List<Long> overlaps = new ArrayList<>();
+                join.join( sortedMappings, ( interval, mapping ) -> overlaps.add( ((long) interval << 32) | mapping ) );
+                assertEquals( expOverlaps, overlaps );
+
+                MappingBatch batch = new MappingBatch( 16 );
+                for( Mapping mapping : mappings ) {
+                    batch.add( mapping.getStart(), mapping.getStop(), mapping.isFwdStrand(), MappingClass.PERFECT_MATCH, 1 );
+                }
+                batch.sortByStart();
+                List<Long> batchOverlaps = new ArrayList<>();
+                join.join( batch, ( interval, mapping ) -> batchOverlaps.add( ((long) interval << 32) | mapping ) );
+                assertEquals( expOverlaps, batchOverlaps );
+            }
+        }
+    }
+
+
+}
@@ -372,7 +372,7 @@ public class ImportSetupCard extends JPanel {
         TrackJob trackJob = new TrackJob( trackID, mappingFile,
                                           importPanel.useMultipleImport() && mappingFile != null ? mappingFile.getName() : importPanel.getTrackName(),
                                           refJob,
-                                          importPanel.getCurrentParser(),
+                                          importPanel.getCurrentParser().newInstance(),
                                           importPanel.isAlreadyImported(),
                                           new Timestamp( System.currentTimeMillis() ) );
         trackID++;
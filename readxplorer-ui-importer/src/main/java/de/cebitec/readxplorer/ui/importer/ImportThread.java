@@ -23,6 +23,7 @@ import de.cebitec.readxplorer.databackend.connector.DatabaseException;
 import de.cebitec.readxplorer.databackend.connector.ProjectConnector;
 import de.cebitec.readxplorer.databackend.connector.ReferenceConnector;
 import de.cebitec.readxplorer.databackend.dataobjects.PersistentChromosome;
+import de.cebitec.readxplorer.parser.ImportJobScheduler;
 import de.cebitec.readxplorer.parser.ReadPairJobContainer;
 import de.cebitec.readxplorer.parser.ReferenceJob;
 import de.cebitec.readxplorer.parser.TrackJob;
@@ -30,6 +31,7 @@ import de.cebitec.readxplorer.parser.common.ParsedReference;
 import de.cebitec.readxplorer.parser.common.ParsedTrack;
 import de.cebitec.readxplorer.parser.common.ParsingException;
 import de.cebitec.readxplorer.parser.mappings.MappingParserI;
+import de.cebitec.readxplorer.parser.mappings.SamBamParser;
 import de.cebitec.readxplorer.parser.mappings.SamBamStatsParser;
 import de.cebitec.readxplorer.parser.mappings.SamSeqDictionary;
 import de.cebitec.readxplorer.parser.output.SamBamCombiner;
@@ -53,6 +55,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import javax.swing.SwingWorker;
 import org.netbeans.api.progress.ProgressHandle;
 import org.openide.util.NbBundle;
@@ -77,8 +80,7 @@ public class ImportThread extends SwingWorker<Object, Object> implements Observe
     private final List<ReadPairJobContainer> readPairJobs;
     private final ProgressHandle ph;
     private int workunits;
-    private boolean noErrors = true;
-    private Map<String, Integer> chromLengthMap;
+    private volatile boolean noErrors = true;
 
 
     /**
@@ -188,21 +190,24 @@ public class ImportThread extends SwingWorker<Object, Object> implements Observe
 
 
     /**
-     * Reads all chromosome sequences of the reference genome and puts them into
-     * the chromSeqMap map and their length in the chromLengthMap map.
+     * Reads the lengths of all chromosomes of the reference genome from the
+     * database.
      * <p>
-     * @param trackJob The track job for which the chromosome sequences and
-     *                 lengths are needed.
+     * @param trackJob The track job for which the chromosome lengths are
+     *                 needed.
+     * <p>
+     * @return The map of chromosome names to chromosome lengths
      *
      * @throws DatabaseException An exception during data queries
      */
-    private void setChromLengthMap( TrackJob trackJob ) throws DatabaseException {
-        chromLengthMap = new HashMap<>();
+    private Map<String, Integer> createChromLengthMap( TrackJob trackJob ) throws DatabaseException {
+        Map<String, Integer> chromLengthMap = new HashMap<>();
         int id = trackJob.getRefGen().getID();
         Map<Integer, PersistentChromosome> chromIdMap = ProjectConnector.getInstance().getRefGenomeConnector( id ).getRefGenome().getChromosomes();
         for( PersistentChromosome chrom : chromIdMap.values() ) {
             chromLengthMap.put( chrom.getName(), chrom.getLength() );
         }
+        return chromLengthMap;
     }
 
 
@@ -307,7 +312,9 @@ public class ImportThread extends SwingWorker<Object, Object> implements Observe
 
 
     /**
-     * Processes track jobs (parsing and storing) of the current import.
+     * Processes track jobs (parsing and storing) of the current import. The
+     * track jobs are parsed concurrently, while the parsed tracks are stored
+     * one after another by this thread.
      */
     private void processTrackJobs() {
         if( !tracksJobs.isEmpty() ) {
@@ -326,15 +333,40 @@ public class ImportThread extends SwingWorker<Object, Object> implements Observe
 
             correctRefIds( corretionList ); //After check they can be corrected
 
+            ImportJobScheduler<ParsedTrack> scheduler = new ImportJobScheduler<>( ImportJobScheduler.getDefaultThreadCount() );
             for( TrackJob trackJob : tracksJobs ) {
 
                 if( trackJob.isCanBeImported() ) {
-                    parseBamTrack( trackJob );
-                    ph.progress( ++workunits );
+                    try {
+                        //the parsing threads must not access the db, so the chromosome lengths are read here
+                        Map<String, Integer> chromLengthMap = this.createChromLengthMap( trackJob );
+                        scheduler.addJob( trackJob, () -> this.parseBamTrack( trackJob, chromLengthMap ) );
+                    } catch( DatabaseException ex ) {
+                        printAndLogError( "Error during parsing of bam track: " + ex.getMessage() );
+                        LOG.error( ex.getMessage(), ex );
+                        this.noErrors = false;
+                    }
                 } else {
                     printAndLog( trackJob.getName() + " cannot be imported, because the wizard to correctly associate the sequence ids has not been finished correctly." );
                 }
             }
+
+            try {
+                scheduler.importTracks( (trackJob, track) -> {
+                    if( track != null ) {
+                        this.storeBamTrack( track );
+                    }
+                    this.stepProgress();
+                } );
+            } catch( InterruptedException ex ) {
+                Thread.currentThread().interrupt();
+                printAndLogError( "Import of the tracks was interrupted!" );
+                this.noErrors = false;
+            } catch( ExecutionException ex ) {
+                printAndLogError( "Error during parsing of bam track: " + ex.getCause().getMessage() );
+                LOG.error( ex.getMessage(), ex );
+                this.noErrors = false;
+            }
         }
     }
 
@@ -402,7 +434,7 @@ public class ImportThread extends SwingWorker<Object, Object> implements Observe
             if( trackJob1.isCanBeImported() && trackJob2 == null || 
                 trackJob2 != null && trackJob2.isCanBeImported() ) {
                 try {
-                    this.setChromLengthMap( trackJob1 );
+                    Map<String, Integer> chromLengthMap = this.createChromLengthMap( trackJob1 );
                     File inputFile1 = trackJob1.getFile();
                     inputFile1.setReadOnly(); //prevents changes or deletion of original file!
                     StatsContainer statsContainer = new StatsContainer();
@@ -517,12 +549,16 @@ public class ImportThread extends SwingWorker<Object, Object> implements Observe
 
 
     /**
-     * Parses a bam track and calls the method for storing the track relevant
-     * data in the db.
+     * Parses a bam track and creates its statistics. Called concurrently for
+     * different track jobs, so it must not access the db.
+     * <p>
+     * @param trackJob       the trackjob to import as bam track
+     * @param chromLengthMap the map of chromosome names to chromosome lengths
      * <p>
-     * @param trackJob the trackjob to import as bam track
+     * @return The parsed track ready for storing it in the db or
+     *         <code>null</code>, if the parsing failed
      */
-    private void parseBamTrack( TrackJob trackJob ) {
+    private ParsedTrack parseBamTrack( TrackJob trackJob, Map<String, Integer> chromLengthMap ) {
 
         /*
          * Algorithm: if (PersistentTrack not yet imported) { convert to
@@ -531,8 +567,8 @@ public class ImportThread extends SwingWorker<Object, Object> implements Observe
          * sorted by coordinate & classification in file)
          */
 
+        ParsedTrack track = null;
         try {
-            setChromLengthMap( trackJob );
             boolean success;
             StatsContainer statsContainer = new StatsContainer();
             statsContainer.prepareForTrack();
@@ -549,34 +585,56 @@ public class ImportThread extends SwingWorker<Object, Object> implements Observe
                 //generate classification data in file sorted by read sequence
                 mappingParser.registerObserver( this );
                 mappingParser.setStatsContainer( statsContainer );
-                mappingParser.parseInput( trackJob, chromLengthMap );
+                if( mappingParser instanceof SamBamParser && SamBamParser.isFusedImportEnabled() ) {
+                    //classification, extended bam file, index and statistics in a single pass
+                    SamBamStatsParser statsParser = new SamBamStatsParser();
+                    statsParser.setStatsContainer( statsContainer );
+                    statsParser.registerObserver( this );
+                    track = ((SamBamParser) mappingParser).parseInputAndCreateStats( trackJob, chromLengthMap, statsParser );
+                    statsParser.removeObserver( this );
+                } else {
+                    mappingParser.parseInput( trackJob, chromLengthMap );
+                }
                 mappingParser.removeObserver( this );
-                noErrors = noErrors ? success : noErrors;
-                if( success ) {
+                if( !success ) {
+                    noErrors = false;
+                } else {
                     GeneralUtils.deleteOldWorkFile( lastWorkFile );
                 } //only when we reach this line without exceptions and conversion was successful
-                ph.progress( ++workunits );
+                this.stepProgress();
                 inputFile.setWritable( true );
                 mappingParser.removeObserver( this );
             }
 
-            //file needs to be sorted by coordinate for efficient calculation
-            SamBamStatsParser statsParser = new SamBamStatsParser();
-            statsParser.setStatsContainer( statsContainer );
-            statsParser.registerObserver( this );
-            ParsedTrack track = statsParser.createTrackStats( trackJob, chromLengthMap );
-            statsParser.removeObserver( this );
-
-            this.storeBamTrack( track );
+            if( track == null ) {
+                //file needs to be sorted by coordinate for efficient calculation
+                SamBamStatsParser statsParser = new SamBamStatsParser();
+                statsParser.setStatsContainer( statsContainer );
+                statsParser.registerObserver( this );
+                track = statsParser.createTrackStats( trackJob, chromLengthMap );
+                statsParser.removeObserver( this );
+            }
 
         } catch( OutOfMemoryError ex ) {
             printAndLogError( "Out of memory error during parsing of bam track: " + ex.getMessage() );
             this.noErrors = false;
-        } catch( DatabaseException | ParsingException | IOException ex ) {
+            track = null;
+        } catch( ParsingException | IOException ex ) {
             printAndLogError( "Error during parsing of bam track: " + ex.getMessage() );
             LOG.error( ex.getMessage(), ex );
             this.noErrors = false;
+            track = null;
         }
+        return track;
+    }
+
+
+    /**
+     * Advances the progress handle by one work unit. Called by all parsing
+     * threads.
+     */
+    private synchronized void stepProgress() {
+        ph.progress( ++workunits );
     }
 
 
@@ -32,6 +32,7 @@ import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.AdjustmentEvent;
@@ -145,6 +146,7 @@ public abstract class AbstractViewer extends JPanel implements
     private boolean centerScrollBar = false;
     private BufferedImage loadingIndicator;
     private boolean newDataRequestNeeded = false;
+    private TileRenderer tileRenderer;
 
     protected final List<Classification> excludedClassifications;
 
@@ -252,6 +254,9 @@ public abstract class AbstractViewer extends JPanel implements
      */
     public void close() {
         boundsManager.removeBoundListener( this );
+        if( tileRenderer != null ) {
+            tileRenderer.close();
+        }
     }
 
 
@@ -512,13 +517,7 @@ public abstract class AbstractViewer extends JPanel implements
                     }
                 }
                 if( SwingUtilities.isRightMouseButton( e ) ) {
-                    JPopupMenu popUp = new JPopupMenu();
-                    MenuItemFactory menuItemFactory = new MenuItemFactory();
-
-                    //add copy mouse position option
-                    popUp.add( menuItemFactory.getCopyPositionItem( currentLogMousePos ) );
-                    //add center current position option
-                    popUp.add( menuItemFactory.getJumpToPosItem( boundsManager, getCurrentMousePos() ) );
+                    JPopupMenu popUp = createPopupMenu( e );
                     popUp.show( e.getComponent(), e.getX(), e.getY() );
                 }
             }
@@ -550,6 +549,26 @@ public abstract class AbstractViewer extends JPanel implements
     }
 
 
+    /**
+     * Creates the popup menu shown for a right click into the viewer.
+     * Subclasses can offer options for the object under the mouse.
+     * <p>
+     * @param e the mouse event of the right click
+     * <p>
+     * @return The popup menu to show
+     */
+    protected JPopupMenu createPopupMenu( MouseEvent e ) {
+        JPopupMenu popUp = new JPopupMenu();
+        MenuItemFactory menuItemFactory = new MenuItemFactory();
+
+        //add copy mouse position option
+        popUp.add( menuItemFactory.getCopyPositionItem( currentLogMousePos ) );
+        //add center current position option
+        popUp.add( menuItemFactory.getJumpToPosItem( boundsManager, getCurrentMousePos() ) );
+        return popUp;
+    }
+
+
     /**
      * Sets the current mouse position as the navigator bar center position, if
      * panning is allowed and panning is currently active.
@@ -935,6 +954,80 @@ public abstract class AbstractViewer extends JPanel implements
     }
 
 
+    /**
+     * Enables the tile based painting of this viewer. Afterwards,
+     * {@link #paintTiles(Graphics2D)} paints the content of the viewer from
+     * cached tiles, which are rendered by the given painter in the background.
+     * <p>
+     * @param tilePainter painter of the content of a single tile
+     */
+    protected void setTilePainter( TilePainter tilePainter ) {
+        if( tileRenderer != null ) {
+            tileRenderer.close();
+        }
+        tileRenderer = new TileRenderer( tilePainter, this::repaint );
+    }
+
+
+    /**
+     * Paints the content of the current bounds from the cached tiles and
+     * requests the missing tiles from the tile renderer. Nothing is painted,
+     * if no tile painter was set.
+     * <p>
+     * @param g the graphics to paint on
+     * <p>
+     * @return The number of visible tiles, which are not rendered yet
+     */
+    protected int paintTiles( Graphics2D g ) {
+        if( tileRenderer == null || !pAInfoIsAvailable ) {
+            return 0;
+        }
+        Graphics2D tileGraphics = (Graphics2D) g.create( paintingAreaInfo.getPhyLeft(), 0, paintingAreaInfo.getPhyWidth(), getHeight() );
+        try {
+            tileGraphics.translate( -paintingAreaInfo.getPhyLeft(), 0 );
+            return tileRenderer.paintTiles( tileGraphics, bounds.getLogLeft(), bounds.getLogRight(), correlationFactor,
+                                            (int) Math.round( transformToPhysicalCoord( bounds.getLogLeft() ) ), getHeight() );
+        } finally {
+            tileGraphics.dispose();
+        }
+    }
+
+
+    /**
+     * Discards all rendered tiles of this viewer. Has to be called whenever
+     * the painted data or the painting settings change.
+     */
+    protected void invalidateTiles() {
+        if( tileRenderer != null ) {
+            tileRenderer.invalidate();
+        }
+    }
+
+
+    /**
+     * @param logPos a reference position
+     * <p>
+     * @return The first reference position of the tile containing the given
+     *         position at the current zoom level. Data requests extending to
+     *         the tile bounds allow to render complete tiles.
+     */
+    protected int getTileStart( int logPos ) {
+        int span = TileRenderer.getTileSpan( correlationFactor );
+        return Math.floorDiv( logPos - 1, span ) * span + 1;
+    }
+
+
+    /**
+     * @param logPos a reference position
+     * <p>
+     * @return The last reference position of the tile containing the given
+     *         position at the current zoom level.
+     */
+    protected int getTileEnd( int logPos ) {
+        return getTileStart( logPos ) + TileRenderer.getTileSpan( correlationFactor ) - 1;
+    }
+
+
     /**
      * This method defines a hook, that is called every time when the logical
      * positions change. Content of this method is executed after updating the
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.ui.datavisualisation.abstractviewer;
+
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+
+/**
+ * Least recently used cache for rendered tiles, which is bounded by the
+ * memory occupied by the tile images. When a new tile exceeds the memory
+ * bound, the least recently used tiles are evicted. All methods are thread
+ * safe.
+ * <p>
+ * @param <K> type of the tile keys
+ * <p>
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class TileCache<K> {
+
+    private final long maxBytes;
+    private final LinkedHashMap<K, BufferedImage> tiles;
+    private long usedBytes;
+
+
+    /**
+     * Least recently used cache for rendered tiles, which is bounded by the
+     * memory occupied by the tile images.
+     * <p>
+     * @param maxBytes maximum memory of all cached tiles in bytes
+     */
+    public TileCache( long maxBytes ) {
+        this.maxBytes = maxBytes;
+        this.tiles = new LinkedHashMap<>( 64, 0.75f, true );
+    }
+
+
+    /**
+     * @param key key of the tile
+     * <p>
+     * @return The cached tile or <code>null</code>, if the tile is not cached.
+     *         The tile becomes the most recently used one.
+     */
+    public synchronized BufferedImage get( K key ) {
+        return tiles.get( key );
+    }
+
+
+    /**
+     * Adds a tile to the cache and evicts the least recently used tiles until
+     * the memory bound is met again. A tile larger than the memory bound is
+     * not cached at all.
+     * <p>
+     * @param key  key of the tile
+     * @param tile the rendered tile
+     */
+    public synchronized void put( K key, BufferedImage tile ) {
+        long tileBytes = getImageBytes( tile );
+        if( tileBytes > maxBytes ) {
+            return;
+        }
+        BufferedImage oldTile = tiles.put( key, tile );
+        if( oldTile != null ) {
+            usedBytes -= getImageBytes( oldTile );
+        }
+        usedBytes += tileBytes;
+
+        Iterator<Map.Entry<K, BufferedImage>> tileIt = tiles.entrySet().iterator();
+        while( usedBytes > maxBytes && tileIt.hasNext() ) {
+            Map.Entry<K, BufferedImage> eldest = tileIt.next();
+            if( eldest.getKey().equals( key ) ) {
+                continue;
+            }
+            usedBytes -= getImageBytes( eldest.getValue() );
+            tileIt.remove();
+        }
+    }
+
+
+    /**
+     * Removes all tiles whose key matches the given filter.
+     * <p>
+     * @param filter filter for the keys of the tiles to remove
+     */
+    public synchronized void removeAll( Predicate<K> filter ) {
+        Iterator<Map.Entry<K, BufferedImage>> tileIt = tiles.entrySet().iterator();
+        while( tileIt.hasNext() ) {
+            Map.Entry<K, BufferedImage> entry = tileIt.next();
+            if( filter.test( entry.getKey() ) ) {
+                usedBytes -= getImageBytes( entry.getValue() );
+                tileIt.remove();
+            }
+        }
+    }
+
+
+    /**
+     * @return The number of cached tiles.
+     */
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+
+    /**
+     * @return The memory occupied by all cached tiles in bytes.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+
+    /**
+     * @param tile a tile image
+     * <p>
+     * @return The memory occupied by the tile in bytes, assuming 4 bytes per
+     *         pixel.
+     */
+    private static long getImageBytes( BufferedImage tile ) {
+        return 4L * tile.getWidth() * tile.getHeight();
+    }
+
+
+}
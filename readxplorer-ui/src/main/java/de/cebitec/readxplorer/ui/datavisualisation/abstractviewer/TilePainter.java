@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.ui.datavisualisation.abstractviewer;
+
+
+import java.awt.Graphics2D;
+
+
+/**
+ * Paints the content of a viewer for a genomic interval into a tile. It is
+ * called by the background thread of a {@link TileRenderer}, so it must not
+ * change the state of the viewer or any Swing component.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+@FunctionalInterface
+public interface TilePainter {
+
+    /**
+     * Paints the content of a genomic interval into a tile. The pixel column
+     * x of the tile shows the reference positions from
+     * <code>logLeft + x / correlationFactor</code> on. The y coordinates are
+     * the same as in the viewer.
+     * <p>
+     * @param g                 graphics of the tile
+     * @param logLeft           first reference position of the tile
+     * @param logRight          last reference position of the tile
+     * @param tileWidth         width of the tile in pixels
+     * @param correlationFactor pixels per reference position
+     * <p>
+     * @return <code>true</code>, if the tile was painted, <code>false</code>,
+     *         if the data of the interval is not available yet. Then the tile
+     *         is not cached.
+     */
+    boolean paintTile( Graphics2D g, int logLeft, int logRight, int tileWidth, double correlationFactor );
+
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.ui.datavisualisation.abstractviewer;
+
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.swing.SwingUtilities;
+import org.openide.util.NbPreferences;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Renders the content of a viewer in tiles of fixed width, which are cached
+ * for each zoom level. A tile covers a fixed interval of the reference, so
+ * panning only needs to render the tiles which become visible, while all
+ * other tiles are copied from the cache. Missing tiles are rendered by a
+ * background thread, which also renders the tiles ahead of the scroll
+ * direction. When a tile is ready, the tile listener is notified on the event
+ * dispatch thread, e.g. to repaint the viewer.
+ * <p>
+ * All renderers share one tile cache, whose size is bounded by the memory of
+ * the tile images. Only Java2D images are used, so the renderer also works in
+ * headless mode.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class TileRenderer {
+
+    private static final Logger LOG = LoggerFactory.getLogger( TileRenderer.class.getName() );
+
+    /**
+     * Preference key for the memory of all cached tiles in MB.
+     */
+    public static final String PROP_TILE_CACHE_SIZE = "TileRenderer.CacheSizeMB";
+    /**
+     * Width of a tile in pixels. The number of reference positions of a tile
+     * is chosen to fit this width at the current zoom level.
+     */
+    public static final int TILE_WIDTH = 256;
+
+    private static final int DEFAULT_CACHE_SIZE = 64;
+    private static final int PREFETCH_TILES = 2;
+
+    private static final TileCache<TileKey> TILE_CACHE = new TileCache<>( getCacheSize() * 1024L * 1024L );
+    private static final ExecutorService RENDER_EXECUTOR = Executors.newSingleThreadExecutor( runnable -> {
+        Thread thread = new Thread( runnable, "TileRenderer" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    private final TilePainter painter;
+    private final Runnable tileListener;
+    private final Set<TileKey> pendingTiles;
+    private volatile int generation;
+    private volatile long viewZoom;
+    private volatile int viewFirstTile;
+    private volatile int viewLastTile;
+    private int tileHeight;
+    private int lastLogLeft;
+    private int scrollDirection;
+
+
+    /**
+     * Renders the content of a viewer in tiles of fixed width, which are
+     * cached for each zoom level.
+     * <p>
+     * @param painter      painter of the content of a single tile
+     * @param tileListener notified on the event dispatch thread, whenever a
+     *                     new tile is ready
+     */
+    public TileRenderer( TilePainter painter, Runnable tileListener ) {
+        this.painter = painter;
+        this.tileListener = tileListener;
+        this.pendingTiles = ConcurrentHashMap.newKeySet();
+    }
+
+
+    /**
+     * @return The memory of all cached tiles in MB stored in the preferences.
+     */
+    public static int getCacheSize() {
+        return NbPreferences.forModule( Object.class ).getInt( PROP_TILE_CACHE_SIZE, DEFAULT_CACHE_SIZE );
+    }
+
+
+    /**
+     * @param correlationFactor pixels per reference position
+     * <p>
+     * @return The number of reference positions covered by a tile at the
+     *         given zoom level, at least 1.
+     */
+    public static int getTileSpan( double correlationFactor ) {
+        if( correlationFactor <= 0 ) {
+            return 1;
+        }
+        return (int) Math.max( 1, Math.min( Integer.MAX_VALUE / 2, Math.round( TILE_WIDTH / correlationFactor ) ) );
+    }
+
+
+    /**
+     * Paints all cached tiles of the given reference interval and requests the
+     * missing ones from the background thread. Additionally, the tiles ahead
+     * of the scroll direction are rendered in advance.
+     * <p>
+     * @param g                 graphics to paint on
+     * @param logLeft           first visible reference position
+     * @param logRight          last visible reference position
+     * @param correlationFactor pixels per reference position
+     * @param phyLeft           pixel at which the first visible reference
+     *                          position starts
+     * @param height            height of the tiles, changing the height
+     *                          invalidates all tiles
+     * <p>
+     * @return The number of visible tiles, which are not rendered yet.
+     */
+    public int paintTiles( Graphics2D g, int logLeft, int logRight, double correlationFactor, int phyLeft, int height ) {
+        if( height != tileHeight ) {
+            this.invalidate();
+            tileHeight = height;
+        }
+        if( height <= 0 || correlationFactor <= 0 || logRight < logLeft ) {
+            return 0;
+        }
+
+        long zoom = Double.doubleToLongBits( correlationFactor );
+        if( zoom != viewZoom ) {
+            scrollDirection = 0;
+        } else if( logLeft != lastLogLeft ) {
+            scrollDirection = Integer.signum( logLeft - lastLogLeft );
+        }
+        lastLogLeft = logLeft;
+
+        int span = getTileSpan( correlationFactor );
+        int firstTile = Math.floorDiv( logLeft - 1, span );
+        int lastTile = Math.floorDiv( logRight - 1, span );
+        viewZoom = zoom;
+        viewFirstTile = firstTile;
+        viewLastTile = lastTile;
+
+        int missingTiles = 0;
+        for( int tileIndex = firstTile; tileIndex <= lastTile; ++tileIndex ) {
+            TileKey key = new TileKey( this, generation, zoom, height, tileIndex );
+            BufferedImage tile = TILE_CACHE.get( key );
+            if( tile != null ) {
+                int tileStart = tileIndex * span + 1;
+                int x = phyLeft + (int) Math.round( (tileStart - logLeft) * correlationFactor );
+                g.drawImage( tile, x, 0, null );
+            } else {
+                this.requestTile( key );
+                ++missingTiles;
+            }
+        }
+
+        int prefetchBefore = scrollDirection > 0 ? 0 : scrollDirection < 0 ? PREFETCH_TILES : 1;
+        int prefetchAfter = scrollDirection < 0 ? 0 : scrollDirection > 0 ? PREFETCH_TILES : 1;
+        for( int i = 1; i <= Math.max( prefetchBefore, prefetchAfter ); ++i ) {
+            if( i <= prefetchAfter ) {
+                this.requestTile( new TileKey( this, generation, zoom, height, lastTile + i ) );
+            }
+            if( i <= prefetchBefore ) {
+                this.requestTile( new TileKey( this, generation, zoom, height, firstTile - i ) );
+            }
+        }
+        return missingTiles;
+    }
+
+
+    /**
+     * Discards all tiles of this renderer, e.g. because the data or the
+     * painting settings of the viewer have changed. Tiles, which are currently
+     * rendered, are discarded as soon as they are ready.
+     */
+    public void invalidate() {
+        ++generation;
+        pendingTiles.clear();
+        TILE_CACHE.removeAll( key -> key.renderer == this );
+    }
+
+
+    /**
+     * Releases all tiles of this renderer. The renderer can still be used
+     * afterwards.
+     */
+    public void close() {
+        this.invalidate();
+    }
+
+
+    /**
+     * Requests a tile from the background thread, if it is neither cached nor
+     * already requested.
+     * <p>
+     * @param key key of the requested tile
+     */
+    private void requestTile( TileKey key ) {
+        if( TILE_CACHE.get( key ) == null && pendingTiles.add( key ) ) {
+            RENDER_EXECUTOR.execute( () -> this.renderTile( key ) );
+        }
+    }
+
+
+    /**
+     * Renders a tile and adds it to the tile cache. Tiles, which are outdated
+     * or too far away from the visible interval when their turn comes, are
+     * skipped.
+     * <p>
+     * @param key key of the tile to render
+     */
+    private void renderTile( TileKey key ) {
+        try {
+            if( key.generation != generation || key.zoom != viewZoom
+                || key.tileIndex < viewFirstTile - PREFETCH_TILES || key.tileIndex > viewLastTile + PREFETCH_TILES ) {
+                return;
+            }
+
+            double correlationFactor = Double.longBitsToDouble( key.zoom );
+            int span = getTileSpan( correlationFactor );
+            int tileStart = key.tileIndex * span + 1;
+            int width = (int) Math.ceil( span * correlationFactor );
+            BufferedImage tile = new BufferedImage( width, key.height, BufferedImage.TYPE_INT_ARGB );
+            Graphics2D g = tile.createGraphics();
+            boolean painted;
+            try {
+                painted = painter.paintTile( g, tileStart, tileStart + span - 1, width, correlationFactor );
+            } finally {
+                g.dispose();
+            }
+
+            if( painted && key.generation == generation ) {
+                TILE_CACHE.put( key, tile );
+                SwingUtilities.invokeLater( tileListener );
+            }
+        } catch( RuntimeException e ) {
+            LOG.error( "Rendering of a tile failed: " + e.getMessage(), e );
+        } finally {
+            pendingTiles.remove( key );
+        }
+    }
+
+
+    /**
+     * Key of a tile: The renderer it belongs to, the generation of the
+     * renderer, the zoom level, the tile height and the index of the tile at
+     * this zoom level.
+     */
+    private static final class TileKey {
+
+        private final TileRenderer renderer;
+        private final int generation;
+        private final long zoom;
+        private final int height;
+        private final int tileIndex;
+
+
+        TileKey( TileRenderer renderer, int generation, long zoom, int height, int tileIndex ) {
+            this.renderer = renderer;
+            this.generation = generation;
+            this.zoom = zoom;
+            this.height = height;
+            this.tileIndex = tileIndex;
+        }
+
+
+        @Override
+        public boolean equals( Object obj ) {
+            if( !(obj instanceof TileKey) ) {
+                return false;
+            }
+            TileKey other = (TileKey) obj;
+            return renderer == other.renderer && generation == other.generation && zoom == other.zoom
+                   && height == other.height && tileIndex == other.tileIndex;
+        }
+
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode( renderer );
+            hash = 31 * hash + generation;
+            hash = 31 * hash + Long.hashCode( zoom );
+            hash = 31 * hash + height;
+            return 31 * hash + tileIndex;
+        }
+
+
+    }
+
+
+}
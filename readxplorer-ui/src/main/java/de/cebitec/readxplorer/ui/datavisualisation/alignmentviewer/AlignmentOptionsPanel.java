@@ -69,7 +69,10 @@ public class AlignmentOptionsPanel extends JPanel {
                           "AlignmentOptionsPanel.Centering=Enable centering sequence bar",
                           "AlignmentOptionsPanel.Qualities=Show base qualities",
                           "AlignmentOptionsPanel_QualityToolTip=Good quality bases = bright hue, bad quality bases = dark hue",
-                          "AlignmentOptionsPanel_BlockHeight=Adjust height of alignments:" } )
+                          "AlignmentOptionsPanel_BlockHeight=Adjust height of alignments:",
+                          "AlignmentOptionsPanel_MaxRows=Maximal alignment rows per strand (x100):",
+                          "AlignmentOptionsPanel_Downsample=Downsample alignments exceeding the rows",
+                          "AlignmentOptionsPanel_DownsampleToolTip=Selected = a subset of all alignments is shown, deselected = the alignments of the surplus rows are hidden" } )
     private void initOtherComponents() {
         //create header
         add( LegendAndOptionsProvider.createHeader( Bundle.AlignmentOptionsPanel_General() ) );
@@ -78,6 +81,8 @@ public class AlignmentOptionsPanel extends JPanel {
         createCenterSeqBarBox();
         createShowBaseQualitiesBox();
         createAdjustAlignmentHeightSpinner();
+        createMaxRowsSlider();
+        createDownsampleBox();
 
         updateUI();
     }
@@ -162,4 +167,60 @@ public class AlignmentOptionsPanel extends JPanel {
     }
 
 
+
+    /**
+     * Creates a JSlider for adjusting the maximal number of alignment rows
+     * per strand in steps of 100 rows.
+     */
+    private void createMaxRowsSlider() {
+        JPanel generalPanel = LegendAndOptionsProvider.createStandardPanel();
+        JLabel label = LegendAndOptionsProvider.createLabel( Bundle.AlignmentOptionsPanel_MaxRows(), Font.PLAIN );
+        int maxRows = PREF.getInt( Properties.MAX_ALIGNMENT_ROWS_OPTION, AlignmentViewer.DEFAULT_MAX_ROWS );
+        JSlider rowSlider = LegendAndOptionsProvider.createStandardSlider( 1, 10, Math.max( 1, Math.min( 10, maxRows / 100 ) ) );
+        generalPanel.add( label, BorderLayout.WEST );
+        generalPanel.add( rowSlider, BorderLayout.EAST );
+
+        rowSlider.addChangeListener( new ChangeListener() {
+
+            @Override
+            public void stateChanged( ChangeEvent e ) {
+                JSlider rowSlider = (JSlider) e.getSource();
+                if( !rowSlider.getValueIsAdjusting() ) {
+                    PREF.putInt( Properties.MAX_ALIGNMENT_ROWS_OPTION, rowSlider.getValue() * 100 );
+                }
+            }
+
+
+        } );
+
+        add( generalPanel );
+    }
+
+
+    /**
+     * Creates a check box for downsampling the alignments exceeding the
+     * maximal number of rows instead of hiding them.
+     */
+    private void createDownsampleBox() {
+        JPanel generalPanel = LegendAndOptionsProvider.createStandardPanel();
+        final JCheckBox downsampleBox = LegendAndOptionsProvider.createStandardCheckBox( Bundle.AlignmentOptionsPanel_Downsample() );
+        downsampleBox.setSelected( PREF.getBoolean( Properties.DOWNSAMPLE_ALIGNMENTS_OPTION, AlignmentViewer.DEFAULT_DOWNSAMPLE ) );
+        downsampleBox.setToolTipText( Bundle.AlignmentOptionsPanel_DownsampleToolTip() );
+        generalPanel.add( downsampleBox, BorderLayout.WEST );
+
+        downsampleBox.addActionListener( new ActionListener() {
+
+            @Override
+            public void actionPerformed( ActionEvent e ) {
+                JCheckBox box = (JCheckBox) e.getSource();
+                PREF.putBoolean( Properties.DOWNSAMPLE_ALIGNMENTS_OPTION, box.isSelected() );
+            }
+
+
+        } );
+
+        add( generalPanel );
+    }
+
+
 }
@@ -18,6 +18,7 @@
 package de.cebitec.readxplorer.ui.datavisualisation.alignmentviewer;
 
 
+import de.cebitec.readxplorer.api.Classification;
 import de.cebitec.readxplorer.api.constants.Colors;
 import de.cebitec.readxplorer.databackend.IntervalRequest;
 import de.cebitec.readxplorer.databackend.ThreadListener;
@@ -30,21 +31,34 @@ import de.cebitec.readxplorer.ui.datavisualisation.abstractviewer.AbstractViewer
 import de.cebitec.readxplorer.ui.datavisualisation.abstractviewer.PaintingAreaInfo;
 import de.cebitec.readxplorer.ui.datavisualisation.abstractviewer.PhysicalBaseBounds;
 import de.cebitec.readxplorer.ui.datavisualisation.basepanel.BasePanel;
+import de.cebitec.readxplorer.utils.ColorUtils;
 import de.cebitec.readxplorer.utils.Properties;
+import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseEvent;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.prefs.PreferenceChangeEvent;
 import java.util.prefs.PreferenceChangeListener;
+import javax.swing.JPopupMenu;
+import org.openide.util.NbBundle;
 
 
 /**
- * Viewer to show alignments of reads to the reference.
+ * Viewer to show alignments of reads to the reference. The alignments are no
+ * Swing components, instead the viewer paints the visible part of the visible
+ * rows itself and determines the alignment under the mouse for tool tips and
+ * popup menus. The number of rows per strand is limited, surplus alignments
+ * are downsampled or hidden.
  * <p>
  * @author ddoppmeier, rhilker
  */
@@ -54,14 +68,23 @@ public class AlignmentViewer extends AbstractViewer implements ThreadListener {
 
     /** The default height of an alignment block. */
     public static final int DEFAULT_BLOCK_HEIGHT = 8;
+    /** The default maximal number of alignment rows per strand. */
+    public static final int DEFAULT_MAX_ROWS = 300;
+    /** The default downsampling option for alignments exceeding the rows. */
+    public static final boolean DEFAULT_DOWNSAMPLE = true;
+
+    private static final Font BRICK_FONT = new Font( Font.MONOSPACED, Font.BOLD, 11 );
 
     private final TrackConnector trackConnector;
-    private LayoutI layout;
+    private Layout layout;
+    private final List<BlockI[]> fwdRows;
+    private final List<BlockI[]> revRows;
+    private final Map<BlockI, BlockData> blockDataMap;
+    private Map<Classification, Color> classToColorMap;
     private int blockHeight;
     private int layerHeight;
-    private int fwdMappingsInInterval;
-    private int revMappingsInInterval;
-    private int maxCoverageInInterval;
+    private int maxRows;
+    private boolean downsample;
     private int oldLogLeft;
     private int oldLogRight;
     private boolean showBaseQualities;
@@ -79,6 +102,9 @@ public class AlignmentViewer extends AbstractViewer implements ThreadListener {
     public AlignmentViewer( BoundsInfoManager boundsInfoManager, BasePanel basePanel, PersistentReference refGenome, TrackConnector trackConnector ) {
         super( boundsInfoManager, basePanel, refGenome );
         this.trackConnector = trackConnector;
+        this.fwdRows = new ArrayList<>();
+        this.revRows = new ArrayList<>();
+        this.blockDataMap = new HashMap<>();
         this.setInDrawingMode( true );
         this.showSequenceBar( true, true );
         mappingResult = new MappingResult( new ArrayList<>(), null );
@@ -124,6 +150,25 @@ public class AlignmentViewer extends AbstractViewer implements ThreadListener {
             }
 
 
+        } );
+
+        maxRows = pref.getInt( Properties.MAX_ALIGNMENT_ROWS_OPTION, DEFAULT_MAX_ROWS );
+        downsample = pref.getBoolean( Properties.DOWNSAMPLE_ALIGNMENTS_OPTION, DEFAULT_DOWNSAMPLE );
+        pref.addPreferenceChangeListener( new PreferenceChangeListener() {
+
+            @Override
+            public void preferenceChange( PreferenceChangeEvent evt ) {
+                if( evt.getKey().equals( Properties.MAX_ALIGNMENT_ROWS_OPTION ) ) {
+                    maxRows = pref.getInt( Properties.MAX_ALIGNMENT_ROWS_OPTION, DEFAULT_MAX_ROWS );
+                } else if( evt.getKey().equals( Properties.DOWNSAMPLE_ALIGNMENTS_OPTION ) ) {
+                    downsample = pref.getBoolean( Properties.DOWNSAMPLE_ALIGNMENTS_OPTION, DEFAULT_DOWNSAMPLE );
+                } else {
+                    return;
+                }
+                showData();
+            }
+
+
         } );
     }
 
@@ -142,6 +187,31 @@ public class AlignmentViewer extends AbstractViewer implements ThreadListener {
      */
     @Override
     public void changeToolTipText( int logPos ) {
+        //a non null text registers the viewer at the tool tip manager, the text is created by getToolTipText
+        this.setToolTipText( "" );
+    }
+
+
+    /**
+     * @return The tool tip of the alignment under the mouse or
+     *         <code>null</code>, if there is no alignment.
+     */
+    @Override
+    public String getToolTipText( MouseEvent event ) {
+        BlockData blockData = this.getBlockAt( event.getPoint() );
+        return blockData != null ? blockData.createToolTipText() : null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Offers the options of the alignment under the mouse, if there is one.
+     */
+    @Override
+    protected JPopupMenu createPopupMenu( MouseEvent e ) {
+        BlockData blockData = this.getBlockAt( e.getPoint() );
+        return blockData != null ? blockData.createPopupMenu() : super.createPopupMenu( e );
     }
 
 
@@ -156,6 +226,7 @@ public class AlignmentViewer extends AbstractViewer implements ThreadListener {
         } else {
             setInDrawingMode( false );
         }
+        blockDataMap.clear();
         setupComponents();
     }
 
@@ -213,10 +284,14 @@ public class AlignmentViewer extends AbstractViewer implements ThreadListener {
      */
     private void showData() {
 
-        this.findMinAndMaxCount( mappingResult.getMappings() ); //for currently shown mappingResult
+        this.layout = new Layout( mappingResult.getRequest().getFrom(), mappingResult.getRequest().getTo(),
+                                  mappingResult.getMappings(), getExcludedClassifications(), maxRows, downsample );
+        this.classToColorMap = ColorUtils.updateMappingClassColors();
+        this.blockDataMap.clear();
+        this.createRows( fwdRows, layout.getForwardIterator() );
+        this.createRows( revRows, layout.getReverseIterator() );
         this.setViewerHeight();
         this.adjustPaintingAreaInfoPrefSize();
-        this.layout = new Layout( mappingResult.getRequest().getFrom(), mappingResult.getRequest().getTo(), mappingResult.getMappings(), getExcludedClassifications() );
 
         this.removeAll();
 
@@ -234,7 +309,6 @@ public class AlignmentViewer extends AbstractViewer implements ThreadListener {
         }
 
         getSequenceBar().setGenomeGapManager( layout.getGenomeGapManager() );
-        this.addAllBlocks( layout );
         setCursor( new Cursor( Cursor.DEFAULT_CURSOR ) );
 
         this.repaint();
@@ -242,126 +316,222 @@ public class AlignmentViewer extends AbstractViewer implements ThreadListener {
 
 
     /**
-     * Determines the (min and) max count of mappingResult on a given set of
-     * mappingResult. Minimum count is currently disabled as it was not needed.
+     * Stores the blocks of each layer of the layout as a row. The blocks of a
+     * row do not overlap and are sorted by position, so the visible blocks
+     * and the block at a position are found by binary search.
      * <p>
-     * @param mappingResult
+     * @param rows    the list of rows to fill
+     * @param layerIt the layer iterator of one strand of the layout
      */
-    private void findMinAndMaxCount( Collection<Mapping> mappings ) {
-//        this.minCountInInterval = Integer.MAX_VALUE; //uncomment all these lines to get min count
-        this.fwdMappingsInInterval = 0;
-
-        for( Mapping m : mappings ) {
-//            if(coverage < minCountInInterval) {
-//                minCountInInterval = coverage;
-//            }
-            if( m.getStart() <= getBoundsInfo().getLogRight() + 2 && m.getStop() >= getBoundsInfo().getLogLeft() - 2 ) {
-                if( m.isFwdStrand() ) {
-                    fwdMappingsInInterval++;
-                } else {
-                    revMappingsInInterval++;
-                }
+    private void createRows( List<BlockI[]> rows, Iterator<LayerI> layerIt ) {
+        rows.clear();
+        while( layerIt.hasNext() ) {
+            List<BlockI> row = new ArrayList<>();
+            for( Iterator<BlockI> blockIt = layerIt.next().getBlockIterator(); blockIt.hasNext(); ) {
+                row.add( blockIt.next() );
             }
+            rows.add( row.toArray( new BlockI[row.size()] ) );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void paintComponent( Graphics graphics ) {
+        super.paintComponent( graphics );
+        Graphics2D g = (Graphics2D) graphics;
+
+        if( isInDrawingMode() ) {
+            g.setColor(Colors.TRACKPANEL_MIDDLE_LINE );
+            drawBaseLines( g );
+            paintBlocks( g );
         }
     }
 
 
     /**
-     * Determines maximum coverage in the currently displayed interval.
+     * Paints all blocks in the visible rows, which overlap the currently
+     * shown interval and the clip of the graphics object. If alignments are
+     * hidden by the row limit, their number is shown above the alignments.
      * <p>
-     * @param coverage coverage hashmap of positions for current interval
+     * @param g The graphics object to paint on
      */
-    private void findMaxCoverage( Map<Integer, Integer> coverage ) {
-        this.maxCoverageInInterval = 0;
+    @NbBundle.Messages( { "# {0} - number of reads",
+                          "AlignmentViewer.HiddenReads={0} reads hidden (row limit reached)",
+                          "# {0} - number of reads",
+                          "AlignmentViewer.SampledReads={0} reads hidden by downsampling (row limit reached)" } )
+    private void paintBlocks( Graphics2D g ) {
+        if( layout == null ) {
+            return;
+        }
+        Rectangle clip = g.getClipBounds();
+        if( clip == null ) {
+            clip = new Rectangle( 0, 0, getWidth(), getHeight() );
+        }
+
+        Font oldFont = g.getFont();
+        g.setFont( BRICK_FONT );
+        this.paintRows( g, fwdRows, true, clip );
+        this.paintRows( g, revRows, false, clip );
+        g.setFont( oldFont );
+
+        if( layout.getNumHiddenBlocks() > 0 ) {
+            PaintingAreaInfo info = getPaintingAreaInfo();
+            String hiddenText = layout.isDownsampled()
+                                ? Bundle.AlignmentViewer_SampledReads( layout.getNumHiddenBlocks() )
+                                : Bundle.AlignmentViewer_HiddenReads( layout.getNumHiddenBlocks() );
+            g.setColor( Colors.TRACKPANEL_MIDDLE_LINE );
+            g.drawString( hiddenText, info.getPhyLeft(), info.getForwardHigh() + g.getFontMetrics().getAscent() );
+        }
+    }
 
-        int coverageAtPos;
-        for( Integer position : coverage.keySet() ) {
 
-            coverageAtPos = coverage.get( position );
-            if( coverageAtPos > this.maxCoverageInInterval ) {
-                this.maxCoverageInInterval = coverageAtPos;
+    /**
+     * Paints the blocks of all rows of one strand intersecting the clip.
+     * <p>
+     * @param g     The graphics object to paint on
+     * @param rows  The rows of one strand
+     * @param isFwd <code>true</code> for the forward strand rows, which are
+     *              painted upwards, <code>false</code> for the reverse
+     *              strand rows, which are painted downwards
+     * @param clip  The area to paint
+     */
+    private void paintRows( Graphics2D g, List<BlockI[]> rows, boolean isFwd, Rectangle clip ) {
+        int logLeft = getBoundsInfo().getLogLeft();
+        int logRight = getBoundsInfo().getLogRight();
+        int firstRow = Math.max( 0, getRowAt( isFwd ? clip.y + clip.height : clip.y, isFwd ) - 1 );
+        int lastRow = Math.min( rows.size() - 1, getRowAt( isFwd ? clip.y : clip.y + clip.height, isFwd ) + 1 );
+
+        for( int row = firstRow; row <= lastRow; ++row ) {
+            int yPosition = getRowY( row, isFwd );
+            if( yPosition + blockHeight < clip.y || yPosition > clip.y + clip.height ) {
+                continue;
+            }
+            BlockI[] blocks = rows.get( row );
+            for( int i = findFirstBlockEndingAfter( blocks, logLeft ); i < blocks.length && blocks[i].getStart() <= logRight; ++i ) {
+                this.getBlockData( blocks[i] ).paint( g, yPosition );
             }
         }
     }
 
 
     /**
-     * After creating a layout this method creates all visual components which
-     * represent the layout. Thus, it creates all block components. Each block
-     * component depicts one mapping.
+     * @param row   index of a row, 0 is the row next to the sequence bar
+     * @param isFwd <code>true</code> for a forward strand row,
+     *              <code>false</code> for a reverse strand row
      * <p>
-     * @param layout the layout containing all information about the
-     *               mappingResult to paint
+     * @return The upper boundary of the blocks in the row.
      */
-    private void addAllBlocks( LayoutI layout ) {
+    private int getRowY( int row, boolean isFwd ) {
+        PaintingAreaInfo info = getPaintingAreaInfo();
+        int yPosition = isFwd ? info.getForwardLow() - (row + 1) * layerHeight
+                              : info.getReverseLow() + (row + 1) * layerHeight;
+        return yPosition - blockHeight / 2;
+    }
 
-        // forward strand
-        int countingStep = 1;
-        Iterator<LayerI> it = layout.getForwardIterator();
-        this.addBlocks( it, countingStep );
 
-        // reverse strand
-        countingStep = -1;
-        Iterator<LayerI> itRev = layout.getReverseIterator();
-        this.addBlocks( itRev, countingStep );
+    /**
+     * @param yPosition a vertical position in the viewer
+     * @param isFwd     <code>true</code> for the forward strand rows,
+     *                  <code>false</code> for the reverse strand rows
+     * <p>
+     * @return The index of the row of the strand, which is next to the
+     *         position. Might be negative or exceed the number of rows.
+     */
+    private int getRowAt( int yPosition, boolean isFwd ) {
+        PaintingAreaInfo info = getPaintingAreaInfo();
+        int distance = isFwd ? info.getForwardLow() - yPosition : yPosition - info.getReverseLow();
+        return Math.floorDiv( distance, layerHeight ) - 1;
     }
 
 
     /**
-     * After creating a layout this method creates all visual components which
-     * represent the part of the layout stored in the given layer iterator.
-     * Thus, it creates all block components for each iterator entry. Each block
-     * component depicts one mapping.
+     * @param blocks non overlapping blocks sorted by position
+     * @param logPos a reference position
      * <p>
-     * @param layerIt      the layer iterator containing all information about
-     *                     the mappings to paint on the current layer
-     * @param countingStep define how to count each step (e.g. +1 or -1)
+     * @return The index of the first block, which ends at or after the given
+     *         position, or the number of blocks, if there is no such block.
      */
-    private void addBlocks( Iterator<LayerI> layerIt, final int countingStep ) {
-        int layerCounter = countingStep;
-        while( layerIt.hasNext() ) {
-            LayerI b = layerIt.next();
-            for( Iterator<BlockI> blockIt = b.getBlockIterator(); blockIt.hasNext(); ) {
-                BlockI block = blockIt.next();
-                createJBlock( block, layerCounter );
+    private static int findFirstBlockEndingAfter( BlockI[] blocks, int logPos ) {
+        int low = 0;
+        int high = blocks.length;
+        while( low < high ) {
+            int middle = (low + high) >>> 1;
+            if( blocks[middle].getStop() < logPos ) {
+                low = middle + 1;
+            } else {
+                high = middle;
             }
-
-            layerCounter += countingStep;
         }
+        return low;
     }
 
 
     /**
-     * {@inheritDoc}
+     * Determines the block painted at the given point of the viewer.
+     * <p>
+     * @param point a point in the viewer
+     * <p>
+     * @return The block data of the block at the point or <code>null</code>,
+     *         if there is no block at the point.
      */
-    @Override
-    protected void paintComponent( Graphics graphics ) {
-        super.paintComponent( graphics );
-        Graphics2D g = (Graphics2D) graphics;
+    private BlockData getBlockAt( Point point ) {
+        if( layout == null || !isInDrawingMode() ) {
+            return null;
+        }
+        int logPos = this.transformToLogicalCoord( point.x );
+        BlockI block = this.getBlockAt( fwdRows, true, point.y, logPos );
+        if( block == null ) {
+            block = this.getBlockAt( revRows, false, point.y, logPos );
+        }
+        return block != null ? this.getBlockData( block ) : null;
+    }
 
-        if( isInDrawingMode() ) {
-            g.setColor(Colors.TRACKPANEL_MIDDLE_LINE );
-            drawBaseLines( g );
+
+    /**
+     * @param rows      the rows of one strand
+     * @param isFwd     <code>true</code> for the forward strand rows,
+     *                  <code>false</code> for the reverse strand rows
+     * @param yPosition vertical position in the viewer
+     * @param logPos    reference position
+     * <p>
+     * @return The block of the strand painted at the given position or
+     *         <code>null</code>, if there is no such block.
+     */
+    private BlockI getBlockAt( List<BlockI[]> rows, boolean isFwd, int yPosition, int logPos ) {
+        int row = getRowAt( yPosition, isFwd );
+        for( int candidate = row - 1; candidate <= row + 1; ++candidate ) {
+            if( candidate < 0 || candidate >= rows.size() ) {
+                continue;
+            }
+            int rowY = getRowY( candidate, isFwd );
+            if( yPosition >= rowY && yPosition < rowY + blockHeight ) {
+                BlockI[] blocks = rows.get( candidate );
+                int index = findFirstBlockEndingAfter( blocks, logPos );
+                if( index < blocks.length && blocks[index].getStart() <= logPos ) {
+                    return blocks[index];
+                }
+            }
         }
+        return null;
     }
 
 
     /**
-     * Creates a new block component vertically in the current layer and
-     * horizontally covering it's aligned genome positions.
+     * @param block a block of the layout
      * <p>
-     * @param block        the block to create a jblock (block component) for
-     * @param layerCounter determines in which layer the block should be painted
+     * @return The block data for painting the block in the current bounds of
+     *         the viewer. It is created once per layout and bounds.
      */
-    private void createJBlock( BlockI block, int layerCounter ) {
-        BlockComponent jb = new BlockComponent( block, this, layout.getGenomeGapManager(), blockHeight, showBaseQualities );
-
-        // negative layer counter means reverse strand
-        int lower = (layerCounter < 0 ? getPaintingAreaInfo().getReverseLow() : getPaintingAreaInfo().getForwardLow());
-        int yPosition = lower - layerCounter * layerHeight;
-        yPosition -= jb.getHeight() / 2;
-        jb.setBounds( jb.getPhyStart(), yPosition, jb.getPhyWidth(), jb.getHeight() );
-        this.add( jb );
+    private BlockData getBlockData( BlockI block ) {
+        BlockData blockData = blockDataMap.get( block );
+        if( blockData == null ) {
+            blockData = new BlockData( block, this, layout.getGenomeGapManager(), blockHeight, showBaseQualities, classToColorMap );
+            blockDataMap.put( block, blockData );
+        }
+        return blockData;
     }
 
 
@@ -425,18 +595,13 @@ public class AlignmentViewer extends AbstractViewer implements ThreadListener {
 
 
     /**
-     * Adapts the height of the alignment viewer according to the content
-     * currently displayed.
+     * Adapts the height of the alignment viewer according to the number of
+     * rows of the larger strand currently displayed.
      */
     private void setViewerHeight() {
 
-        int biggestCoverage = this.maxCoverageInInterval / 2;
-        int biggerStrandCoverage = fwdMappingsInInterval > revMappingsInInterval ? fwdMappingsInInterval : revMappingsInInterval;
-        if( biggerStrandCoverage > biggestCoverage ) {
-            biggestCoverage = biggerStrandCoverage * 2; //to cover both halves
-        }
-        biggestCoverage = biggestCoverage <= 0 ? 1 : biggestCoverage;
-        int newHeight = (int) (this.layerHeight * biggestCoverage * 1.5); //1.5 = factor for possible empty spacings between alignments
+        int biggerStrandRows = Math.max( 1, Math.max( fwdRows.size(), revRows.size() ) );
+        int newHeight = this.layerHeight * (biggerStrandRows + 1) * 2; //to cover both halves
         final int spacer = 120;
         this.setPreferredSize( new Dimension( this.getWidth(), newHeight + spacer ) );
         this.revalidate();
@@ -37,39 +37,32 @@ import de.cebitec.readxplorer.utils.SamAlignmentBlock;
 import de.cebitec.readxplorer.utils.SequenceUtils;
 import de.cebitec.readxplorer.utils.sequence.GenomicRange;
 import java.awt.Color;
-import java.awt.Font;
-import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import javax.swing.JComponent;
 import javax.swing.JPopupMenu;
 import org.openide.util.Lookup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static de.cebitec.readxplorer.ui.datavisualisation.abstractviewer.AbstractViewer.PROP_MOUSEPOSITION_CHANGED;
-
 
 /**
- * A <code>BlockComponent</code> represents a read alignment as a colored
- * rectangle and has knowledge of all important information of the alignment.
+ * A <code>BlockData</code> represents a read alignment as a colored rectangle
+ * and has knowledge of all important information of the alignment. It is no
+ * Swing component: The alignment viewer paints all visible blocks on its own
+ * surface and uses the blocks for hit-testing. The rectangles of the bases
+ * are only calculated, when the block is painted for the first time.
  * <p>
  * @author ddoppmeier, rhilker
  */
-public class BlockComponent extends JComponent {
+public class BlockData {
 
-    private static final Logger LOG = LoggerFactory.getLogger( BlockComponent.class.getName() );
+    private static final Logger LOG = LoggerFactory.getLogger( BlockData.class.getName() );
 
 
-    private static final long serialVersionUID = 1324672345;
     private final BlockI block;
     private final int length;
     private final int height;
@@ -79,16 +72,17 @@ public class BlockComponent extends JComponent {
     private final int absLogBlockStop;
     private final int phyLeft;
     private int phyRight;
-    private final String toolTipInfoPart;
+    private String toolTipInfoPart;
     private final List<Rectangle> rectList;
     private final List<BrickData> brickDataList;
     private Color blockColor;
     private final boolean showBaseQualities;
     private final Map<Classification, Color> classToColorMap;
+    private boolean subComponentsCalculated;
 
 
     /**
-     * A <code>BlockComponent</code> represents a read alignment as a colored
+     * A <code>BlockData</code> represents a read alignment as a colored
      * rectangle and has knowledge of all important information of the
      * alignment.
      * <p>
@@ -101,13 +95,12 @@ public class BlockComponent extends JComponent {
      * @param showBaseQualities <code>true</code> if each base of the alignment
      *                          is shaded by base quality, <code>false</code>
      *                          otherwise
+     * @param classToColorMap   The colors of the mapping classes
      */
-    public BlockComponent( BlockI block, final AbstractViewer parentViewer, GenomeGapManager gapManager,
-                           int height,
-                           boolean showBaseQualities ) {
+    public BlockData( BlockI block, AbstractViewer parentViewer, GenomeGapManager gapManager,
+                      int height, boolean showBaseQualities, Map<Classification, Color> classToColorMap ) {
 
-        super();
-        this.classToColorMap = ColorUtils.updateMappingClassColors();
+        this.classToColorMap = classToColorMap;
         this.rectList = new ArrayList<>();
         this.brickDataList = new ArrayList<>();
         this.blockColor = Colors.COMMON_MATCH;
@@ -128,100 +121,50 @@ public class BlockComponent extends JComponent {
         int offset = (int) (numOfGaps * bounds.getPhysWidth());
         phyRight += offset;
         this.length = phyRight - phyLeft;
-
-        this.calcSubComponents();
-        toolTipInfoPart = this.initToolTipTextInfoPart();
-
-        this.addListeners();
     }
 
 
     /**
-     * Adds all necessary listeners to the component.
+     * Creates the popup menu for this mapping block.
+     * <p>
+     * @return The popup menu with the copy, jump and RNA folding options
      */
-    private void addListeners() {
-        this.parentViewer.addPropertyChangeListener( new PropertyChangeListener() {
-
-            @Override
-            public void propertyChange( PropertyChangeEvent evt ) {
-                if( evt.getPropertyName().equals( PROP_MOUSEPOSITION_CHANGED ) ) {
-                    setToolTipText( createToolTipText() );
-                }
-            }
-
-
-        } );
-
-        this.addMouseListener( new MouseListener() {
-
-            @Override
-            public void mouseClicked( MouseEvent e ) {
-                if( e.getButton() == MouseEvent.BUTTON3 ) {
-                    JPopupMenu popUp = new JPopupMenu();
-                    MenuItemFactory menuItemFactory = new MenuItemFactory();
-
-                    final String mappingSequence = getSequence();
-                    //add copy option
-                    popUp.add( menuItemFactory.getCopyItem( mappingSequence ) );
-                    //add copy translated sequence option
-                    popUp.add( menuItemFactory.getCopyTranslatedItem( mappingSequence ) );
-                    //add copy position option
-                    popUp.add( menuItemFactory.getCopyPositionItem( parentViewer.getCurrentMousePos() ) );
-                    //add center current position option
-                    popUp.add( menuItemFactory.getJumpToPosItem( parentViewer.getBoundsInformationManager(), parentViewer.getCurrentMousePos() ) );
-                    //add calculate secondary structure option
-                    final RNAFolderI rnaFolderControl = Lookup.getDefault().lookup( RNAFolderI.class );
-                    if( rnaFolderControl != null ) {
-                        popUp.add( menuItemFactory.getRNAFoldItem( rnaFolderControl, mappingSequence, this.getHeader() ) );
-                    }
-
-                    popUp.show( e.getComponent(), e.getX(), e.getY() );
-                }
-            }
-
-
-            /**
-             * Creates the header for the highlighted sequence.
-             * <p>
-             * @return the header for the sequence
-             */
-            private String getHeader() {
-                Mapping mapping = (Mapping) BlockComponent.this.block.getObjectWithId();
-                final String strand = mapping.isFwdStrand() ? ">>" : "<<";
-                Map<Integer, String> trackNames = ProjectConnector.getInstance().getOpenedTrackNames();
-                String name = "Reference seq from ";
-                if( trackNames.containsKey( mapping.getTrackId() ) ) {
-                    name += trackNames.get( mapping.getTrackId() );
-                }
-                return name + " " + strand + " from " + absLogBlockStart + "-" + absLogBlockStop;
-            }
-
-
-            @Override
-            public void mousePressed( MouseEvent e ) {
-                //not in use
-            }
-
-
-            @Override
-            public void mouseReleased( MouseEvent e ) {
-                //not in use
-            }
-
-
-            @Override
-            public void mouseEntered( MouseEvent e ) {
-                parentViewer.forwardChildrensMousePosition( e.getX(), BlockComponent.this );
-            }
-
-
-            @Override
-            public void mouseExited( MouseEvent e ) {
-                //not in use
-            }
+    public JPopupMenu createPopupMenu() {
+        JPopupMenu popUp = new JPopupMenu();
+        MenuItemFactory menuItemFactory = new MenuItemFactory();
+
+        final String mappingSequence = getSequence();
+        //add copy option
+        popUp.add( menuItemFactory.getCopyItem( mappingSequence ) );
+        //add copy translated sequence option
+        popUp.add( menuItemFactory.getCopyTranslatedItem( mappingSequence ) );
+        //add copy position option
+        popUp.add( menuItemFactory.getCopyPositionItem( parentViewer.getCurrentMousePos() ) );
+        //add center current position option
+        popUp.add( menuItemFactory.getJumpToPosItem( parentViewer.getBoundsInformationManager(), parentViewer.getCurrentMousePos() ) );
+        //add calculate secondary structure option
+        final RNAFolderI rnaFolderControl = Lookup.getDefault().lookup( RNAFolderI.class );
+        if( rnaFolderControl != null ) {
+            popUp.add( menuItemFactory.getRNAFoldItem( rnaFolderControl, mappingSequence, this.getHeader() ) );
+        }
+        return popUp;
+    }
 
 
-        } );
+    /**
+     * Creates the header for the highlighted sequence.
+     * <p>
+     * @return the header for the sequence
+     */
+    private String getHeader() {
+        Mapping mapping = (Mapping) block.getObjectWithId();
+        final String strand = mapping.isFwdStrand() ? ">>" : "<<";
+        Map<Integer, String> trackNames = ProjectConnector.getInstance().getOpenedTrackNames();
+        String name = "Reference seq from ";
+        if( trackNames.containsKey( mapping.getTrackId() ) ) {
+            name += trackNames.get( mapping.getTrackId() );
+        }
+        return name + " " + strand + " from " + absLogBlockStart + "-" + absLogBlockStop;
     }
 
 
@@ -240,7 +183,10 @@ public class BlockComponent extends JComponent {
     /**
      * @return Creates the tool tip text for this mapping block.
      */
-    private String createToolTipText() {
+    public String createToolTipText() {
+        if( toolTipInfoPart == null ) {
+            toolTipInfoPart = this.initToolTipTextInfoPart();
+        }
         StringBuilder sb = new StringBuilder( 150 );
 
         sb.append( "<html><table>" );
@@ -386,11 +332,20 @@ public class BlockComponent extends JComponent {
     }
 
 
-    @Override
-    protected void paintComponent( Graphics graphics ) {
-        super.paintComponent( graphics );
-        Graphics2D graphics2D = (Graphics2D) graphics;
-        graphics2D.setFont( new Font( Font.MONOSPACED, Font.BOLD, 11 ) );
+    /**
+     * Paints this block. The graphics object is translated to the upper left
+     * corner of the block and translated back afterwards.
+     * <p>
+     * @param graphics2D The graphics object to paint on, its font is used for
+     *                   the labels of the bricks
+     * @param yPosition  The upper boundary of the block in the viewer
+     */
+    public void paint( Graphics2D graphics2D, int yPosition ) {
+        if( !subComponentsCalculated ) {
+            this.calcSubComponents();
+            subComponentsCalculated = true;
+        }
+        graphics2D.translate( phyLeft, yPosition );
 
         // paint this block's background
         graphics2D.setColor( Colors.BLOCK_BACKGROUND );
@@ -407,12 +362,13 @@ public class BlockComponent extends JComponent {
             graphics2D.setColor( brick.getBrickColor() );
             graphics2D.fill( brick.getRectangle() );
             if( parentViewer.isInMaxZoomLevel() && height >= AlignmentViewer.DEFAULT_BLOCK_HEIGHT ) {
-                int labelWidth = graphics.getFontMetrics().stringWidth( brick.toString() );
+                int labelWidth = graphics2D.getFontMetrics().stringWidth( brick.toString() );
                 int labelX = brick.getLabelCenter() - labelWidth / 2;
                 graphics2D.setColor( Colors.BRICK_LABEL );
                 graphics2D.drawString( brick.toString(), labelX, height );
             }
         }
+        graphics2D.translate( -phyLeft, -yPosition );
     }
 
 
@@ -585,12 +541,19 @@ public class BlockComponent extends JComponent {
 
 
     /**
-     * {@inheritDoc}
+     * @return the height (pixel) of the block.
      */
-    @Override
     public int getHeight() {
         return height;
     }
 
 
+    /**
+     * @return the block represented by this block data.
+     */
+    public BlockI getBlock() {
+        return block;
+    }
+
+
 }
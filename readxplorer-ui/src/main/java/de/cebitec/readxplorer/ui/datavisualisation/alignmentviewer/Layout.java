@@ -23,8 +23,11 @@ import de.cebitec.readxplorer.databackend.dataobjects.Mapping;
 import de.cebitec.readxplorer.ui.datavisualisation.GenomeGapManager;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 
 /**
@@ -32,22 +35,39 @@ import java.util.List;
  * overlapping layers. It also know which data is on the exclusion list and
  * should not be displayed.
  * <p>
+ * The blocks of each strand are packed into the layers by a single sweep over
+ * the blocks sorted by start position. A priority queue holds the end
+ * positions of all occupied layers, so each block is placed in the lowest
+ * free layer in O(log n). The number of layers equals the maximal depth of
+ * the alignment. If it exceeds the maximal number of layers, the blocks are
+ * either downsampled or the surplus layers are hidden.
+ * <p>
  * @author ddoppmeier, rhilker
  */
 public class Layout implements LayoutI {
 
+    /**
+     * Maximal number of downsampling rounds before surplus layers are hidden.
+     */
+    private static final int MAX_SAMPLING_ROUNDS = 4;
+
     private final int absStart;
     private int absStop;
     private GenomeGapManager gapManager;
     private final List<LayerI> forwardLayers;
     private final List<LayerI> reverseLayers;
-    private final BlockContainer forwardBlockContainer;
-    private final BlockContainer reverseBlockContainer;
+    private final List<BlockI> forwardBlocks;
+    private final List<BlockI> reverseBlocks;
     private final List<Classification> exclusionList;
+    private final int maxLayers;
+    private final boolean downsample;
+    private int numHiddenBlocks;
+    private boolean downsampled;
 
 
     /**
-     * Creates a new layout for read mappings.
+     * Creates a new layout for read mappings without a limit on the number of
+     * layers.
      * <p>
      * @param absStart      start of the interval
      * @param absStop       end of the interval
@@ -55,18 +75,39 @@ public class Layout implements LayoutI {
      * @param exclusionList list of excluded feature types
      */
     public Layout( int absStart, int absStop, Collection<Mapping> mappings, List<Classification> exclusionList ) {
+        this( absStart, absStop, mappings, exclusionList, Integer.MAX_VALUE, false );
+    }
+
+
+    /**
+     * Creates a new layout for read mappings.
+     * <p>
+     * @param absStart      start of the interval
+     * @param absStop       end of the interval
+     * @param mappings      all read mappings to add to the layout
+     * @param exclusionList list of excluded feature types
+     * @param maxLayers     maximal number of layers per strand
+     * @param downsample    <code>true</code>, if the blocks of a strand shall
+     *                      be downsampled when they need more than
+     *                      <code>maxLayers</code> layers, <code>false</code>,
+     *                      if the surplus layers shall only be hidden
+     */
+    public Layout( int absStart, int absStop, Collection<Mapping> mappings, List<Classification> exclusionList,
+                   int maxLayers, boolean downsample ) {
         this.absStart = absStart;
         this.absStop = absStop;
         this.forwardLayers = new ArrayList<>();
         this.reverseLayers = new ArrayList<>();
-        this.forwardBlockContainer = new BlockContainer( true );
-        this.reverseBlockContainer = new BlockContainer( false );
+        this.forwardBlocks = new ArrayList<>();
+        this.reverseBlocks = new ArrayList<>();
         this.exclusionList = exclusionList;
+        this.maxLayers = Math.max( 1, maxLayers );
+        this.downsample = downsample;
 
         this.storeGaps( mappings );
         this.createBlocks( mappings );
-        this.layoutBlocks( forwardLayers, forwardBlockContainer );
-        this.layoutBlocks( reverseLayers, reverseBlockContainer );
+        this.layoutBlocks( forwardLayers, forwardBlocks, true );
+        this.layoutBlocks( reverseLayers, reverseBlocks, false );
     }
 
 
@@ -142,9 +183,9 @@ public class Layout implements LayoutI {
 
                 BlockI block = new Block( start, stop, mapping, gapManager );
                 if( mapping.isFwdStrand() ) {
-                    forwardBlockContainer.addBlock( block );
+                    forwardBlocks.add( block );
                 } else {
-                    reverseBlockContainer.addBlock( block );
+                    reverseBlocks.add( block );
                 }
             }
 
@@ -153,47 +194,117 @@ public class Layout implements LayoutI {
 
 
     /**
-     * Fills each single layer until all blocks were added from the block
-     * container to the layer list
+     * Packs the blocks of one strand into non overlapping layers. If more than
+     * the maximal number of layers are needed, the blocks are downsampled or
+     * the surplus layers are dropped.
      * <p>
-     * @param layers list of layers to add the blocks to
-     * @param blocks block container to add to layers
+     * @param layers  list of layers to add the blocks to
+     * @param blocks  blocks of one strand
+     * @param sortFwd <code>true</code> = the layers are filled from the
+     *                smallest to the largest genomic position,
+     *                <code>false</code> = they are filled from the largest to
+     *                the smallest genomic position
      */
-    private void layoutBlocks( List<LayerI> layers, BlockContainer blocks ) {
-        LayerI l;
-        while( !blocks.isEmpty() ) {
-            l = new Layer( absStart, absStop, gapManager );
-            this.fillLayer( l, blocks );
+    private void layoutBlocks( List<LayerI> layers, List<BlockI> blocks, boolean sortFwd ) {
+        List<List<BlockI>> packedLayers = packBlocks( blocks, sortFwd );
+
+        if( downsample ) {
+            double keptFraction = 1;
+            for( int round = 0; round < MAX_SAMPLING_ROUNDS && packedLayers.size() > maxLayers; ++round ) {
+                keptFraction *= 0.95 * maxLayers / packedLayers.size();
+                List<BlockI> sampledBlocks = new ArrayList<>();
+                for( BlockI block : blocks ) {
+                    if( isSampled( block, keptFraction ) ) {
+                        sampledBlocks.add( block );
+                    }
+                }
+                numHiddenBlocks += blocks.size() - sampledBlocks.size();
+                blocks = sampledBlocks;
+                packedLayers = packBlocks( blocks, sortFwd );
+                downsampled = true;
+            }
+        }
+
+        for( int i = 0; i < packedLayers.size(); ++i ) {
+            List<BlockI> layerBlocks = packedLayers.get( i );
+            if( i >= maxLayers ) {
+                numHiddenBlocks += layerBlocks.size();
+                continue;
+            }
+            if( !sortFwd ) {
+                Collections.reverse( layerBlocks );
+            }
+            LayerI l = new Layer( absStart, absStop, gapManager );
+            for( BlockI block : layerBlocks ) {
+                l.addBlock( block );
+            }
             layers.add( l );
         }
     }
 
 
     /**
-     * Fills a single layer with as many blocks as possible, while obeying to
-     * the rule, that the blocks in one layer are not allowed to overlap.
+     * Packs the given blocks into the minimal number of non overlapping
+     * layers. The blocks are processed in the order of their start position
+     * on the strand and each block is placed in the lowest layer, which ends
+     * before the block starts. A priority queue of the layer ends determines
+     * the layers becoming free, a second one the lowest free layer. Thus, the
+     * packing runs in O(n log n).
+     * <p>
+     * @param blocks  blocks of one strand
+     * @param sortFwd <code>true</code> = pack from the smallest to the largest
+     *                genomic position, <code>false</code> = pack from the
+     *                largest to the smallest genomic position
      * <p>
-     * @param l      single layer to fill with blocks
-     * @param blocks block container
+     * @return The blocks of each layer in packing order, the lowest layer
+     *         first.
      */
-    private void fillLayer( LayerI l, BlockContainer blocks ) {
-        int startPos;
-        if( blocks.isSortFwd() ) {
-            startPos = 0;
-        } else {
-            startPos = absStop + 2;
-        }
-        BlockI block = blocks.getNextByPositionAndRemove( startPos );
-        while( block != null ) {
-            l.addBlock( block );
-            int pos;
-            if( blocks.isSortFwd() ) {
-                pos = block.getStop() + 1;
-            } else {
-                pos = block.getStart() - 1;
+    static List<List<BlockI>> packBlocks( Collection<BlockI> blocks, boolean sortFwd ) {
+        List<BlockI> sortedBlocks = new ArrayList<>( blocks );
+        Comparator<BlockI> blockComparator = new BlockComparator( sortFwd );
+        sortedBlocks.sort( blockComparator );
+
+        List<List<BlockI>> layers = new ArrayList<>();
+        List<Integer> layerEnds = new ArrayList<>();
+        PriorityQueue<Integer> occupiedLayers = new PriorityQueue<>(
+                (layer1, layer2) -> Integer.compare( layerEnds.get( layer1 ), layerEnds.get( layer2 ) ) );
+        PriorityQueue<Integer> freeLayers = new PriorityQueue<>();
+
+        for( BlockI block : sortedBlocks ) {
+            int blockStart = BlockComparator.getStartOnStrand( block, sortFwd );
+            while( !occupiedLayers.isEmpty()
+                   && layerEnds.get( occupiedLayers.peek() ) < blockStart ) {
+                freeLayers.add( occupiedLayers.poll() );
+            }
+
+            Integer layer = freeLayers.poll();
+            if( layer == null ) {
+                layer = layers.size();
+                layers.add( new ArrayList<>() );
+                layerEnds.add( blockStart );
             }
-            block = blocks.getNextByPositionAndRemove( pos );
+            layers.get( layer ).add( block );
+            layerEnds.set( layer, BlockComparator.getStopOnStrand( block, sortFwd ) );
+            occupiedLayers.add( layer );
         }
+        return layers;
+    }
+
+
+    /**
+     * Decides deterministically by the id of the block's mapping, if the
+     * block is kept by downsampling. Thus, the same mappings are shown again
+     * after scrolling.
+     * <p>
+     * @param block        block to check
+     * @param keptFraction fraction of all blocks to keep
+     * <p>
+     * @return <code>true</code>, if the block is kept
+     */
+    private static boolean isSampled( BlockI block, double keptFraction ) {
+        long hash = block.getObjectWithId().getId() * 0x9E3779B97F4A7C15L;
+        double value = (hash >>> 11) * 0x1.0p-53;
+        return value < keptFraction;
     }
 
 
@@ -215,4 +326,93 @@ public class Layout implements LayoutI {
     }
 
 
+    /**
+     * @return The number of forward strand layers.
+     */
+    public int getNumForwardLayers() {
+        return forwardLayers.size();
+    }
+
+
+    /**
+     * @return The number of reverse strand layers.
+     */
+    public int getNumReverseLayers() {
+        return reverseLayers.size();
+    }
+
+
+    /**
+     * @return The number of blocks, which are not part of any layer, because
+     *         they were removed by downsampling or their layer exceeds the
+     *         maximal number of layers.
+     */
+    public int getNumHiddenBlocks() {
+        return numHiddenBlocks;
+    }
+
+
+    /**
+     * @return <code>true</code>, if the blocks of at least one strand were
+     *         downsampled, <code>false</code> otherwise
+     */
+    public boolean isDownsampled() {
+        return downsampled;
+    }
+
+
+    /**
+     * Orders blocks by their start position on the packing direction, then by
+     * their stop position and finally by the id of their mapping.
+     */
+    private static class BlockComparator implements Comparator<BlockI> {
+
+        private final boolean sortFwd;
+
+
+        BlockComparator( boolean sortFwd ) {
+            this.sortFwd = sortFwd;
+        }
+
+
+        /**
+         * @param block   a block
+         * @param sortFwd packing direction
+         * <p>
+         * @return The start of the block in packing direction. The reverse
+         *         direction uses negated positions.
+         */
+        static int getStartOnStrand( BlockI block, boolean sortFwd ) {
+            return sortFwd ? block.getStart() : -block.getStop();
+        }
+
+
+        /**
+         * @param block   a block
+         * @param sortFwd packing direction
+         * <p>
+         * @return The stop of the block in packing direction. The reverse
+         *         direction uses negated positions.
+         */
+        static int getStopOnStrand( BlockI block, boolean sortFwd ) {
+            return sortFwd ? block.getStop() : -block.getStart();
+        }
+
+
+        @Override
+        public int compare( BlockI o1, BlockI o2 ) {
+            int result = Integer.compare( getStartOnStrand( o1, sortFwd ), getStartOnStrand( o2, sortFwd ) );
+            if( result == 0 ) {
+                result = Integer.compare( getStopOnStrand( o1, sortFwd ), getStopOnStrand( o2, sortFwd ) );
+            }
+            if( result == 0 ) {
+                result = Long.compare( o1.getObjectWithId().getId(), o2.getObjectWithId().getId() );
+            }
+            return result;
+        }
+
+
+    }
+
+
 }
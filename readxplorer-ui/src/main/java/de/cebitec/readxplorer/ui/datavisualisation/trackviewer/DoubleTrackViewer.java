@@ -104,15 +104,19 @@ public class DoubleTrackViewer extends TrackViewer {
 
 
     /**
-     * Create a GeneralPath that represents the coverage of a certain type.
+     * Create a GeneralPath that represents the coverage of a certain type in a
+     * tile.
      * <p>
-     * @param isFwdStrand if true, coverage is drawn from bottom to top, if
-     *                    false otherwise
+     * @param isFwdStrand       if true, coverage is drawn from bottom to top,
+     *                          if false otherwise
+     * @param logLeft           first reference position of the tile
+     * @param tileWidth         width of the tile in pixels
+     * @param correlationFactor pixels per reference position
      * <p>
      * @return GeneralPath representing the coverage of a certain type
      */
     @Override
-    protected Map<Classification, GeneralPath> getCoveragePath( boolean isFwdStrand ) {
+    protected Map<Classification, GeneralPath> getCoveragePath( boolean isFwdStrand, int logLeft, int tileWidth, double correlationFactor ) {
         Map<Classification, GeneralPath> classToPathMap = new HashMap<>();
         for( Classification classType : this.visibleClasses ) {
             classToPathMap.put( classType, new GeneralPath() );
@@ -126,28 +130,15 @@ public class DoubleTrackViewer extends TrackViewer {
 
             GeneralPath covPath = classToPathMap.get( classType );
             // paint every physical position
-            covPath.moveTo( info.getPhyLeft(), yLow );
-            for( int pixel = info.getPhyLeft(); pixel < info.getPhyRight(); pixel++ ) {
+            covPath.moveTo( 0, yLow );
+            for( int pixel = 0; pixel < tileWidth; pixel++ ) {
 
-                int left = this.transformToLogicalCoord( pixel );
-                int right = this.transformToLogicalCoord( pixel + 1 ) - 1;
+                int left = logLeft + (int) (pixel / correlationFactor);
+                int right = logLeft + (int) ((pixel + 1) / correlationFactor) - 1;
 
                 // physical coordinate pixel and pixel+1 may cover the same base, depending on zoomlevel,
                 // if not compute max of range of values represented at position pixel
-                double covPixel;
-                if( right > left ) {
-
-                    double max = 0;
-                    for( int i = left; i <= right; i++ ) {
-                        if( this.getCoverageValue( isFwdStrand, classType, i ) > max ) {
-                            max = this.getCoverageValue( isFwdStrand, classType, i );
-                        }
-                    }
-                    covPixel = max;
-
-                } else {
-                    covPixel = this.getCoverageValue( isFwdStrand, classType, left );
-                }
+                double covPixel = this.getMaxCoverageValue( isFwdStrand, classType, left, Math.max( left, right ) );
 
                 covPixel = this.getCoverageYValue( covPixel );
                 if( !this.getPaintingAreaInfo().fitsIntoAvailableSpace( covPixel, isFwdStrand ) ) {
@@ -157,7 +148,7 @@ public class DoubleTrackViewer extends TrackViewer {
                 covPath.lineTo( pixel, yLow + covPixel * orientation );
             }
 
-            covPath.lineTo( info.getPhyRight(), yLow );
+            covPath.lineTo( tileWidth, yLow );
             covPath.closePath();
         }
 
@@ -165,6 +156,22 @@ public class DoubleTrackViewer extends TrackViewer {
     }
 
 
+    /**
+     * {@inheritDoc }
+     * <p>
+     * The comparison coverage is computed from two coverage managers, so the
+     * maximum is determined by checking each position.
+     */
+    @Override
+    protected double getMaxCoverageValue( boolean isFwdStrand, Classification classType, int left, int right ) {
+        double max = 0;
+        for( int i = left; i <= right; i++ ) {
+            max = Math.max( max, this.getCoverageValue( isFwdStrand, classType, i ) );
+        }
+        return max;
+    }
+
+
     /**
      * Calculates the (normalized) coverage value for the given strand, coverage
      * type and position.
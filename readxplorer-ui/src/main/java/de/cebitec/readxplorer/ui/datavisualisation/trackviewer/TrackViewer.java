@@ -35,7 +35,6 @@ import de.cebitec.readxplorer.ui.datavisualisation.abstractviewer.PaintingAreaIn
 import de.cebitec.readxplorer.ui.datavisualisation.basepanel.BasePanel;
 import de.cebitec.readxplorer.utils.ColorUtils;
 import de.cebitec.readxplorer.utils.Observer;
-import de.cebitec.readxplorer.utils.Pair;
 import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Graphics;
@@ -74,7 +73,8 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
     private final List<Integer> trackIDs;
     private List<CoverageManager> covManagers;
     private CoverageManager covManager;
-    private boolean covLoaded;
+    private volatile boolean covLoaded;
+    private int covResolution = 1;
     private final boolean twoTracks;
     private final int id1;
     private final int id2;
@@ -93,7 +93,6 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
     //mapping class list determining the order of the paths
     private List<Classification> classList;
     private Map<Classification, Color> classToColorMap;
-    private final Map<Classification, Pair<GeneralPath, GeneralPath>> classToPathsMap;
     //   public static final String PROP_TRACK_CLICKED = "track clicked";
     //  public static final String PROP_TRACK_ENTERED = "track entered";
     private final boolean combineTracks;
@@ -125,9 +124,9 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
         scaleFactor = 1;
         covLoaded = false;
         classToColorMap = new HashMap<>();
-        classToPathsMap = new HashMap<>();
 
         this.setupClassesAndColors();
+        this.setTilePainter( this::paintCoverageTile );
 
         pref.addPreferenceChangeListener( new PreferenceChangeListener() {
 
@@ -146,14 +145,10 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
 
     /**
      * Sets up the mapping classes and associates them to their respective
-     * colors and paths painted by this viewer.
+     * colors painted by this viewer.
      */
     private void setupClassesAndColors() {
         this.classList = this.createVisibleClasses();
-        for( Classification mappingClass : classList ) { //init paths map with empty paths
-            classToPathsMap.put( mappingClass, new Pair<>( new GeneralPath(), new GeneralPath() ) );
-        }
-
         this.setColors( this.createColors( pref ) );
     }
 
@@ -207,6 +202,7 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
      */
     protected final void setColors( Map<Classification, Color> classToColorMap ) {
         this.classToColorMap = classToColorMap;
+        this.invalidateTiles();
     }
 
 
@@ -223,11 +219,9 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
         hints.put( RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON );
         g.setRenderingHints( hints );
 
-        if( this.covLoaded || this.colorChanges ) {
-
-            this.paintCoverage( g );
-
-        } else {
+        //cached tiles are also painted while new coverage is loaded
+        int missingTiles = this.paintTiles( g );
+        if( missingTiles > 0 || !(this.covLoaded || this.colorChanges) ) {
             Color fillcolor = Colors.TITLE_BACKGROUND;
             g.setColor( fillcolor );
             BufferedImage loadingIndicator = this.getLoadingIndicator();
@@ -248,26 +242,46 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
 
 
     /**
-     * Paints the coverage paths into the given Graphics2D object in the reverse
-     * order stored in the classList
+     * Paints the coverage paths of a tile into the given Graphics2D object in
+     * the reverse order stored in the classList. Called by the background
+     * thread of the tile renderer.
+     * <p>
+     * @param g                 the graphics object of the tile to paint on
+     * @param logLeft           first reference position of the tile
+     * @param logRight          last reference position of the tile
+     * @param tileWidth         width of the tile in pixels
+     * @param correlationFactor pixels per reference position
      * <p>
-     * @param g the graphics object to paint on
+     * @return <code>true</code>, if the tile was painted, <code>false</code>,
+     *         if the coverage of the tile is not loaded
      */
-    private void paintCoverage( Graphics2D g ) {
+    private boolean paintCoverageTile( Graphics2D g, int logLeft, int logRight, int tileWidth, double correlationFactor ) {
+        CoverageManager tileCovManager = this.covManager;
+        if( !this.covLoaded || this.getCoverageManagers() == null || this.getCoverageManagers().isEmpty()
+            || !tileCovManager.coversBounds( logLeft, logRight ) ) {
+            return false;
+        }
+
+        g.setRenderingHint( RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON );
+        List<Classification> tileClassList = this.classList;
+        Map<Classification, Color> tileColorMap = this.classToColorMap;
+        Map<Classification, GeneralPath> fwdPaths = this.getCoveragePath( true, logLeft, tileWidth, correlationFactor );
+        Map<Classification, GeneralPath> revPaths = this.getCoveragePath( false, logLeft, tileWidth, correlationFactor );
+
         // fill and draw all coverage paths
-        for( int i = classList.size(); --i >= 0; ) {
-            Classification classType = classList.get( i );
-            if( classList.contains( classType ) && classToPathsMap.containsKey( classType ) ) {
-                Pair<GeneralPath, GeneralPath> pathPair = classToPathsMap.get( classType );
-                Color color = classToColorMap.get( classType );
-
-                g.setColor( color );
-                g.fill( pathPair.getFirst() );
-                g.draw( pathPair.getFirst() );
-                g.fill( pathPair.getSecond() );
-                g.draw( pathPair.getSecond() );
+        for( int i = tileClassList.size(); --i >= 0; ) {
+            Classification classType = tileClassList.get( i );
+            if( fwdPaths.containsKey( classType ) && revPaths.containsKey( classType ) ) {
+                g.setColor( tileColorMap.get( classType ) );
+                g.fill( fwdPaths.get( classType ) );
+                g.draw( fwdPaths.get( classType ) );
+                g.fill( revPaths.get( classType ) );
+                g.draw( revPaths.get( classType ) );
             }
         }
+
+        //the coverage may have been replaced by a coverage not containing the tile
+        return tileCovManager == this.covManager || this.covManager.coversBounds( logLeft, logRight );
     }
 
 
@@ -303,10 +317,15 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
 
 
     /**
-     * Load coverage information for the current bounds.
+     * Load coverage information for the current bounds. The loaded interval
+     * is extended to the bounds of the visible tiles. If the request is
+     * needed due to changed settings, the rendered tiles are discarded.
      */
     private void requestCoverage() {
         covLoaded = false;
+        if( this.isNewDataRequestNeeded() ) {
+            this.invalidateTiles();
+        }
         this.setNewDataRequestNeeded( false );
         setCursor( new Cursor( Cursor.WAIT_CURSOR ) );
         int totalFrom = getBoundsInfo().getLogLeft();
@@ -315,12 +334,29 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
             totalFrom -= MININTERVALLENGTH;
             totalTo += MININTERVALLENGTH;
         }
-        trackCon.addCoverageRequest( new IntervalRequest(
+        totalFrom = Math.min( totalFrom, this.getTileStart( getBoundsInfo().getLogLeft() ) );
+        totalTo = Math.max( totalTo, this.getTileEnd( getBoundsInfo().getLogRight() ) );
+        IntervalRequest request = new IntervalRequest(
                 getBoundsInfo().getLogLeft(),
                 getBoundsInfo().getLogRight(),
                 totalFrom,
                 totalTo,
-                this.getReference().getActiveChromId(), this, false, this.getReadClassParams() ) );
+                this.getReference().getActiveChromId(), this, false, this.getReadClassParams() );
+        request.setResolution( this.getCoverageResolution() );
+        trackCon.addCoverageRequest( request );
+    }
+
+
+    /**
+     * @return The number of bases displayed per pixel in the current bounds,
+     *         at least 1. The coverage only needs to be as exact as this
+     *         resolution, because the maximum coverage of all bases of a pixel
+     *         is painted.
+     */
+    private int getCoverageResolution() {
+        int phyWidth = getPaintingAreaInfo().getPhyWidth();
+        int logWidth = getBoundsInfo().getLogRight() - getBoundsInfo().getLogLeft() + 1;
+        return phyWidth > 0 ? Math.max( 1, logWidth / phyWidth ) : 1;
     }
 
 
@@ -333,8 +369,9 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
             CoverageAndDiffResult covResult = (CoverageAndDiffResult) coverageData;
             this.covManagers = covResult.getCovManagers();
             this.covManager = covResult.getCovManager();
+            this.covResolution = covResult.getRequest() != null ? covResult.getRequest().getResolution() : 1;
 
-            this.createCoveragePaths();
+            this.updateHighestCoverage();
 
             this.computeAutomaticScaling();
             this.computeScaleStep();
@@ -366,11 +403,12 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
     @Override
     public void boundsChangedHook() {
         if( this.covManager == null || this.isNewDataRequestNeeded() ||
-            !this.covManager.coversBounds( getBoundsInfo().getLogLeft(), getBoundsInfo().getLogRight() ) ) {
+            !this.covManager.coversBounds( getBoundsInfo().getLogLeft(), getBoundsInfo().getLogRight() ) ||
+            this.covResolution > this.getCoverageResolution() ) {
             this.requestCoverage();
         } else {
-            // coverage already loaded
-            this.createCoveragePaths();
+            // coverage already loaded, the tiles are painted from it
+            this.updateHighestCoverage();
 
             this.computeAutomaticScaling();
             this.covLoaded = true;
@@ -389,15 +427,17 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
 
 
     /**
-     * Creates the coverage paths, which are later painted in the viewer.
+     * Updates the highest coverage of the current bounds, which is needed for
+     * the automatic scaling.
      */
-    protected void createCoveragePaths() {
+    protected void updateHighestCoverage() {
         this.covManager.setHighestCoverage( 0 );
         if( this.getCoverageManagers() != null && !this.getCoverageManagers().isEmpty() ) {
-            Map<Classification, GeneralPath> fwdPaths = this.getCoveragePath( true );
-            Map<Classification, GeneralPath> revPaths = this.getCoveragePath( false );
+            int logLeft = getBoundsInfo().getLogLeft();
+            int logRight = getBoundsInfo().getLogRight();
             for( Classification classType : classList ) {
-                classToPathsMap.put( classType, new Pair<>( fwdPaths.get( classType ), revPaths.get( classType ) ) );
+                this.getMaxCoverageValue( true, classType, logLeft, logRight );
+                this.getMaxCoverageValue( false, classType, logLeft, logRight );
             }
         }
     }
@@ -405,15 +445,18 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
 
     /**
      * Create a Map of GeneralPaths to their classification that represents the
-     * coverage of a certain class.
+     * coverage of a certain class in a tile.
      * <p>
-     * @param isFwdStrand if true, coverage is drawn from bottom to top, if
-     *                    false otherwise
+     * @param isFwdStrand       if true, coverage is drawn from bottom to top,
+     *                          if false otherwise
+     * @param logLeft           first reference position of the tile
+     * @param tileWidth         width of the tile in pixels
+     * @param correlationFactor pixels per reference position
      * <p>
      * @return Map of GeneralPaths to their classification representing the
-     *         coverage of their certain class
+     *         coverage of their certain class in tile coordinates
      */
-    protected Map<Classification, GeneralPath> getCoveragePath( boolean isFwdStrand ) {
+    protected Map<Classification, GeneralPath> getCoveragePath( boolean isFwdStrand, int logLeft, int tileWidth, double correlationFactor ) {
 
         Map<Classification, GeneralPath> classToPathMap = new HashMap<>();
         for( Classification classType : classList ) {
@@ -423,31 +466,17 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
         PaintingAreaInfo info = getPaintingAreaInfo();
         int orientation = (isFwdStrand ? -1 : 1); //opposite of strand
         int yLow = (isFwdStrand ? info.getForwardLow() : info.getReverseLow());
-        for( int pixelX = info.getPhyLeft(); pixelX < info.getPhyRight(); pixelX++ ) {
+        for( int pixelX = 0; pixelX < tileWidth; pixelX++ ) {
 
-            int left = this.transformToLogicalCoord( pixelX ); //this only once per class
-            int right = this.transformToLogicalCoord( pixelX + 1 ) - 1;
+            int left = logLeft + (int) (pixelX / correlationFactor); //this only once per class
+            int right = logLeft + (int) ((pixelX + 1) / correlationFactor) - 1;
             double totalCovPixel = -1;
             for( Classification classType : classList ) {
 
                 if( this.getPaintingAreaInfo().fitsIntoAvailableSpace( totalCovPixel + 1, isFwdStrand ) ) {
                     // physical coordinate pixel and pixel+1 may cover the same base, depending on zoomlevel,
                     // if not compute max of range of values represented at position pixel
-                    double yValue;
-                    if( right > left ) {
-
-                        double max = 0;
-                        for( int i = left; i <= right; i++ ) {
-                            double covValue = this.getCoverageValue( isFwdStrand, classType, i );
-                            if( covValue > max ) {
-                                max = covValue;
-                            }
-                        }
-                        yValue = max;
-
-                    } else {
-                        yValue = this.getCoverageValue( isFwdStrand, classType, left );
-                    }
+                    double yValue = this.getMaxCoverageValue( isFwdStrand, classType, left, Math.max( left, right ) );
 
                     if( yValue > 0 ) {
                         GeneralPath covPath = classToPathMap.get( classType );
@@ -473,6 +502,52 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
     }
 
 
+    /**
+     * Returns the maximum coverage value for the given strand, coverage type
+     * and reference interval. The maximum is obtained from the max tables of
+     * the coverage manager in constant time, independent of the zoom level.
+     * <p>
+     * @param isFwdStrand if true, coverage is drawn from bottom to top, if
+     *                    false otherwise
+     * @param classType   the mapping classification type of the coverage path
+     *                    handled here
+     * @param left        the first reference position of the interval
+     * @param right       the last reference position of the interval
+     * <p>
+     * @return the maximum coverage value for the given strand, coverage type
+     *         and interval.
+     */
+    protected double getMaxCoverageValue( boolean isFwdStrand, Classification classType, int left, int right ) {
+        boolean combineStrands = allReadsOnFWstrand || allReadsOnRVstrand;
+        if( combineStrands && isFwdStrand != allReadsOnFWstrand ) {
+            return 0;
+        }
+        if( combineStrands && this.normSetting != null && this.normSetting.getHasNormFac( id1 ) && this.normSetting.getIsLogNorm( id1 ) ) {
+            //the sum of logarithms of both strands has no precomputed maximum
+            double max = 0;
+            for( int i = left; i <= right; i++ ) {
+                max = Math.max( max, this.getCoverageValue( isFwdStrand, classType, i ) );
+            }
+            return max;
+        }
+
+        double value = 0;
+        try {
+            value = combineStrands ? covManager.getMaxCombinedCoverage( classType, left, right )
+                    : covManager.getMaxCoverage( classType, left, right, isFwdStrand );
+        } catch( IllegalArgumentException e ) {
+            LOG.error( "found unknown mapping classification type!" );
+        }
+        value = getNormalizedValue( id1, value );
+
+        if( value > this.covManager.getHighestCoverage() ) {
+            this.covManager.setHighestCoverage( (int) Math.ceil( value ) );
+        }
+
+        return value;
+    }
+
+
     /**
      * Returns the coverage value for the given strand, coverage type and
      * position.
@@ -663,7 +738,7 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
 
     /**
      * Method to be called when the vertical zoom level of this track viewer was
-     * changed, thus the coverage paths have to be recalculated acodeording to
+     * changed, thus the coverage tiles have to be repainted acodeording to
      * the new zoom level. A scaleFactor of 1 means a 1:1 translation of
      * coverage to pixels. A value smaller than 1 is adjusted to 1.
      * <p>
@@ -672,9 +747,7 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
     public void verticalZoomLevelUpdated( int value ) {
         this.scaleFactor = value < 1 ? 1 : Math.pow( value, 2 );
 
-        if( this.covManager != null ) {
-            this.createCoveragePaths();
-        }
+        this.invalidateTiles();
 
         this.computeScaleStep();
         this.repaint();
@@ -756,7 +829,7 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
             //set the inverse of the value set in verticalZoomLevelUpdated
             this.verticalSlider.setValue( (int) (Math.ceil( Math.sqrt( this.scaleFactor ) )) );
             if( oldScaleFactor != this.scaleFactor ) {
-                this.createCoveragePaths();
+                this.invalidateTiles();
                 this.repaint();
             }
         }
@@ -841,6 +914,7 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
         this.hasNormalizationFactor = this.normSetting.getIdToValue().keySet().size() == 2
                                       ? (normSetting.getHasNormFac( id1 ) || normSetting.getHasNormFac( id2 ))
                                       : normSetting.getHasNormFac( id1 );
+        this.invalidateTiles();
         this.boundsChangedHook();
         this.repaint();
     }
@@ -851,6 +925,7 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
      */
     public void colorChanges() {
         this.colorChanges = true;
+        this.invalidateTiles();
         this.repaint();
     }
 
@@ -934,6 +1009,7 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
      */
     public void setAllReadsOnFWstrand( boolean allReadsOnFWstrand ) {
         this.allReadsOnFWstrand = allReadsOnFWstrand;
+        this.invalidateTiles();
         this.boundsChangedHook();
         this.repaint();
     }
@@ -947,6 +1023,7 @@ public class TrackViewer extends AbstractViewer implements ThreadListener, Obser
      */
     public void setAllReadsOnRVstrand( boolean allReadsOnRVstrand ) {
         this.allReadsOnRVstrand = allReadsOnRVstrand;
+        this.invalidateTiles();
         this.boundsChangedHook();
         this.repaint();
     }
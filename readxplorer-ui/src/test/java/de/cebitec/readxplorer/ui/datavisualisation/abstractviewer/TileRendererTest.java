@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.ui.datavisualisation.abstractviewer;
+
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the {@link TileRenderer} and the {@link TileCache}. Runs in
+ * headless mode.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class TileRendererTest {
+
+    private static final int HEIGHT = 50;
+    private static final double CORRELATION_FACTOR = 0.5; //512 positions per tile
+
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty( "java.awt.headless", "true" );
+    }
+
+
+    /**
+     * Test of put method, of class TileCache. The least recently used tiles
+     * have to be evicted, when the memory bound is exceeded.
+     */
+    @Test
+    public void testCacheEviction() {
+        System.out.println( "cacheEviction" );
+        TileCache<Integer> cache = new TileCache<>( 3 * 4 * 100 * 10 );
+        for( int i = 0; i < 3; ++i ) {
+            cache.put( i, new BufferedImage( 100, 10, BufferedImage.TYPE_INT_ARGB ) );
+        }
+        assertEquals( 3, cache.size() );
+        assertNotNull( cache.get( 0 ) ); //0 becomes the most recently used tile
+
+        cache.put( 3, new BufferedImage( 100, 10, BufferedImage.TYPE_INT_ARGB ) );
+        assertEquals( 3, cache.size() );
+        assertNull( cache.get( 1 ) );
+        assertNotNull( cache.get( 0 ) );
+        assertEquals( 3 * 4 * 100 * 10, cache.getUsedBytes() );
+
+        cache.put( 4, new BufferedImage( 1000, 10, BufferedImage.TYPE_INT_ARGB ) ); //too large
+        assertNull( cache.get( 4 ) );
+        cache.removeAll( key -> key >= 2 );
+        assertEquals( 1, cache.size() );
+        assertEquals( 4 * 100 * 10, cache.getUsedBytes() );
+    }
+
+
+    /**
+     * Test of paintTiles method, of class TileRenderer. Missing tiles have to
+     * be rendered in the background, then they are painted from the cache.
+     * Panning to the right has to prefetch the tiles on the right.
+     */
+    @Test
+    public void testPaintTiles() throws InterruptedException {
+        System.out.println( "paintTiles" );
+        List<Integer> paintedStarts = new CopyOnWriteArrayList<>();
+        Semaphore readyTiles = new Semaphore( 0 );
+        TileRenderer renderer = new TileRenderer( (Graphics2D g, int logLeft, int logRight, int tileWidth, double correlationFactor) -> {
+            paintedStarts.add( logLeft );
+            g.setColor( Color.RED );
+            g.fillRect( 0, 0, tileWidth, HEIGHT );
+            return logLeft > 0;
+        }, readyTiles::release );
+
+        BufferedImage view = new BufferedImage( 600, HEIGHT, BufferedImage.TYPE_INT_ARGB );
+        Graphics2D g = view.createGraphics();
+        assertEquals( 3, renderer.paintTiles( g, 1, 1200, CORRELATION_FACTOR, 0, HEIGHT ) );
+        assertTrue( readyTiles.tryAcquire( 4, 10, TimeUnit.SECONDS ) ); //3 visible tiles and 1 prefetched on the right
+        assertEquals( 0, renderer.paintTiles( g, 1, 1200, CORRELATION_FACTOR, 0, HEIGHT ) );
+        assertEquals( Color.RED.getRGB(), view.getRGB( 599, 10 ) );
+
+        //pan to the right: the two tiles ahead have to be prefetched
+        paintedStarts.clear();
+        assertEquals( 0, renderer.paintTiles( g, 401, 1600, CORRELATION_FACTOR, 0, HEIGHT ) );
+        assertTrue( readyTiles.tryAcquire( 1, 10, TimeUnit.SECONDS ) );
+        renderer.close();
+        g.dispose();
+        assertTrue( paintedStarts.contains( 2049 ) );
+        assertTrue( !paintedStarts.contains( 1 ) );
+    }
+
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2014 Institute for Bioinformatics and Systems Biology, University Giessen, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.cebitec.readxplorer.ui.datavisualisation.alignmentviewer;
+
+
+import de.cebitec.readxplorer.api.enums.MappingClass;
+import de.cebitec.readxplorer.databackend.dataobjects.Mapping;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Test of the interval packing and the row limit of the {@link Layout}.
+ *
+ * @author Rolf Hilker <rolf.hilker at mikrobio.med.uni-giessen.de>
+ */
+public class LayoutTest {
+
+    private static final int INTERVAL_START = 1;
+    private static final int INTERVAL_STOP = 5000;
+
+
+    /**
+     * Test of the layers of class Layout. The blocks of each layer must not
+     * overlap, all blocks must be contained and the number of layers must be
+     * the maximal depth of each strand.
+     */
+    @Test
+    public void testLayoutBlocks() {
+        System.out.println( "layoutBlocks" );
+        Random random = new Random( 42 );
+        List<Mapping> mappings = new ArrayList<>();
+        int[][] depth = new int[2][INTERVAL_STOP + 1];
+        for( int id = 0; id < 3000; ++id ) {
+            int start = INTERVAL_START + random.nextInt( INTERVAL_STOP - 200 );
+            int stop = start + random.nextInt( 150 );
+            boolean isFwd = random.nextBoolean();
+            mappings.add( createMapping( id, start, stop, isFwd ) );
+            for( int pos = start; pos <= stop; ++pos ) {
+                ++depth[isFwd ? 0 : 1][pos];
+            }
+        }
+
+        Layout layout = new Layout( INTERVAL_START, INTERVAL_STOP, mappings, Collections.emptyList() );
+        int fwdBlocks = checkLayers( layout.getForwardIterator(), true );
+        int revBlocks = checkLayers( layout.getReverseIterator(), false );
+        assertEquals( mappings.size(), fwdBlocks + revBlocks );
+        assertEquals( getMax( depth[0] ), layout.getNumForwardLayers() );
+        assertEquals( getMax( depth[1] ), layout.getNumReverseLayers() );
+        assertEquals( 0, layout.getNumHiddenBlocks() );
+        assertFalse( layout.isDownsampled() );
+    }
+
+
+    /**
+     * Test of the row limit of class Layout. Without downsampling, the
+     * surplus layers are hidden, with downsampling a subset of the blocks fits
+     * into the maximal number of layers.
+     */
+    @Test
+    public void testRowLimit() {
+        System.out.println( "rowLimit" );
+        List<Mapping> mappings = new ArrayList<>();
+        for( int id = 0; id < 1000; ++id ) {
+            mappings.add( createMapping( id, 100 + id % 50, 200 + id % 50, true ) );
+        }
+
+        Layout hiddenLayout = new Layout( INTERVAL_START, INTERVAL_STOP, mappings, Collections.emptyList(), 100, false );
+        assertEquals( 100, hiddenLayout.getNumForwardLayers() );
+        assertEquals( 900, hiddenLayout.getNumHiddenBlocks() );
+        assertEquals( 100, checkLayers( hiddenLayout.getForwardIterator(), true ) );
+        assertFalse( hiddenLayout.isDownsampled() );
+
+        Layout sampledLayout = new Layout( INTERVAL_START, INTERVAL_STOP, mappings, Collections.emptyList(), 100, true );
+        assertTrue( sampledLayout.isDownsampled() );
+        assertTrue( sampledLayout.getNumForwardLayers() <= 100 );
+        int shownBlocks = checkLayers( sampledLayout.getForwardIterator(), true );
+        assertEquals( 1000, shownBlocks + sampledLayout.getNumHiddenBlocks() );
+        assertTrue( shownBlocks > 50 );
+    }
+
+
+    /**
+     * Checks, that the blocks of each layer are sorted and do not overlap.
+     * <p>
+     * @param layerIt iterator over the layers of one strand
+     * @param isFwd   strand of the layers
+     * <p>
+     * @return The number of blocks in all layers
+     */
+    private static int checkLayers( Iterator<LayerI> layerIt, boolean isFwd ) {
+        int numBlocks = 0;
+        while( layerIt.hasNext() ) {
+            int lastStop = Integer.MIN_VALUE;
+            for( Iterator<BlockI> blockIt = layerIt.next().getBlockIterator(); blockIt.hasNext(); ) {
+                BlockI block = blockIt.next();
+                assertEquals( isFwd, block.isFwdStrand() );
+                assertTrue( block.getStart() > lastStop );
+                lastStop = block.getStop();
+                ++numBlocks;
+            }
+        }
+        return numBlocks;
+    }
+
+
+    private static int getMax( int[] values ) {
+        int max = 0;
+        for( int value : values ) {
+            max = Math.max( max, value );
+        }
+        return max;
+    }
+
+
+    private static Mapping createMapping( int id, int start, int stop, boolean isFwd ) {
+        return new Mapping( id, start, stop, 1, isFwd, 0, id, MappingClass.COMMON_MATCH, 60, new byte[0], 1 );
+    }
+
+
+}
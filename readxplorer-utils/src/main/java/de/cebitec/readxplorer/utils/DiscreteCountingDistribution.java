@@ -147,12 +147,20 @@ public class DiscreteCountingDistribution {
      * @param valueToAdd The value to add to the distribution
      */
     public void increaseDistribution( int valueToAdd ) {
-        for( int i = 1; i < NO_DISTRIBUTION_BINS; ++i ) {
-            if( valueToAdd < lowerBinBorders[i] ) {
-                ++discreteCountingDistribution[i - 1];
-                break;
+        //binary search for the first bin with a lower border larger than the value
+        int low = 1;
+        int high = NO_DISTRIBUTION_BINS;
+        while( low < high ) {
+            int middle = (low + high) >>> 1;
+            if( valueToAdd < lowerBinBorders[middle] ) {
+                high = middle;
+            } else {
+                low = middle + 1;
             }
         }
+        if( low < NO_DISTRIBUTION_BINS ) {
+            ++discreteCountingDistribution[low - 1];
+        }
         if( valueToAdd > lowerBinBorders[lowerBinBorders.length - 1] ) { //add values to last bin
             ++discreteCountingDistribution[lowerBinBorders.length - 1];
         }
@@ -167,6 +175,29 @@ public class DiscreteCountingDistribution {
     }
 
 
+    /**
+     * Adds all values of another distribution to this distribution. Both
+     * distributions have to use the same bins. This allows to fill several
+     * distributions concurrently and to combine them afterwards.
+     * <p>
+     * @param distribution the distribution whose values shall be added
+     */
+    public void addDistribution( DiscreteCountingDistribution distribution ) {
+        int[] otherCounts = distribution.getDiscreteCountingDistribution();
+        for( int i = 0; i < NO_DISTRIBUTION_BINS; ++i ) {
+            discreteCountingDistribution[i] += otherCounts[i];
+        }
+        if( distribution.minValue < minValue ) {
+            minValue = distribution.minValue;
+        }
+        if( distribution.maxValue > maxValue ) {
+            maxValue = distribution.maxValue;
+        }
+        this.totalCount += distribution.totalCount;
+        this.sumValue += distribution.sumValue;
+    }
+
+
     /**
      * Sets the total counts for a given index.
      * <p>
@@ -65,5 +65,16 @@ public final class Properties {
      */
     public static final String BLOCK_HEIGHT_OPTION = "BLOCK_HEIGHT_OPTION";
 
+    /**
+     * Option for the maximal number of alignment rows per strand.
+     */
+    public static final String MAX_ALIGNMENT_ROWS_OPTION = "MAX_ALIGNMENT_ROWS_OPTION";
+
+    /**
+     * Option for downsampling the alignments exceeding the maximal number of
+     * rows instead of hiding them.
+     */
+    public static final String DOWNSAMPLE_ALIGNMENTS_OPTION = "DOWNSAMPLE_ALIGNMENTS_OPTION";
+
 
 }
@@ -29,6 +29,8 @@ import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import org.openide.util.NbPreferences;
@@ -78,6 +80,9 @@ public class SamUtils implements Observable {
     public static final String EXTENDED_STRING = "_extended";
     public static final String COMBINED_STRING = "_combined";
 
+    private static final ThreadLocal<Integer> RECORDS_IN_RAM_SHARE = ThreadLocal.withInitial( () -> 1 );
+    private static final ThreadLocal<File> TMP_IMPORT_DIR = new ThreadLocal<>();
+
     private final List<Observer> observers;
 
 
@@ -153,7 +158,7 @@ public class SamUtils implements Observable {
     public static Pair<SAMFileWriter, File> createSamBamWriter( File oldFile, SAMFileHeader header, boolean presorted, String newEnding ) {
 
         SAMFileWriterFactory factory = new SAMFileWriterFactory();
-        factory.setTempDirectory( new File( NbPreferences.forModule( Object.class ).get( Paths.TMP_IMPORT_DIR, System.getProperty( "java.io.tmpdir" ) ) ) );
+        factory.setTempDirectory( SamUtils.getTempImportDirectory() );
         factory.setMaxRecordsInRam( SamUtils.determineMaxRecordsInRam( oldFile ) );
         //To improve the performance a little bit, write in parallel.
         factory.setUseAsyncIo( true );
@@ -162,6 +167,61 @@ public class SamUtils implements Observable {
     }
 
 
+    /**
+     * Creates a bam file writer for records sorted by coordinate, which
+     * creates the bam index while writing. This saves reading the whole bam
+     * file again in {@link #createBamIndex(File, Observer)}. The output file of
+     * the new writer is the old file name + the new ending and the bam file
+     * extension. After closing the writer,
+     * {@link #moveWrittenBamIndex(File, Observer)} has to be called to move
+     * the index to the location expected by ReadXplorer.
+     * <p>
+     * @param oldFile   the old file
+     * @param header    the header of the new file, the records must be added
+     *                  in coordinate order
+     * @param newEnding the ending is added to the end of the file name of the
+     *                  old file (this is not the file extension)
+     * <p>
+     * @return a pair consisting of: the bam file writer ready for writing as
+     *         the first element and the new file as the second element
+     */
+    public static Pair<SAMFileWriter, File> createIndexingBamWriter( File oldFile, SAMFileHeader header, String newEnding ) {
+
+        SAMFileWriterFactory factory = new SAMFileWriterFactory();
+        factory.setCreateIndex( true );
+        //To improve the performance a little bit, write in parallel.
+        factory.setUseAsyncIo( true );
+        File outputFile = SamUtils.getFileWithBamExtension( oldFile, newEnding );
+        header.setSortOrder( SAMFileHeader.SortOrder.coordinate );
+        return new Pair<>( factory.makeBAMWriter( header, true, outputFile ), outputFile );
+    }
+
+
+    /**
+     * Moves the index of a bam file written by a writer created with
+     * {@link #createIndexingBamWriter(File, SAMFileHeader, String)} from
+     * "file.bai" to "file.bam.bai", where ReadXplorer expects it.
+     * <p>
+     * @param bamFile  The bam file, whose index shall be moved
+     * @param observer The observer to notify about errors
+     * <p>
+     * @return <code>true</code> if the index was moved, <code>false</code>
+     *         otherwise.
+     */
+    public static boolean moveWrittenBamIndex( File bamFile, Observer observer ) {
+        String bamPath = bamFile.getAbsolutePath();
+        File writtenIndex = new File( bamPath.substring( 0, bamPath.lastIndexOf( '.' ) ) + Paths.BAM_INDEX_EXT );
+        try {
+            Files.move( writtenIndex.toPath(), new File( bamPath + Paths.BAM_INDEX_EXT ).toPath(), StandardCopyOption.REPLACE_EXISTING );
+            return true;
+        } catch( IOException e ) {
+            observer.update( "The bam index could not be moved: " + e.getMessage() );
+            LOG.error( e.getMessage(), e );
+            return false;
+        }
+    }
+
+
     /**
      * Creates a bam file writer.
      * <p>
@@ -176,7 +236,7 @@ public class SamUtils implements Observable {
     public static SAMFileWriter createBamWriter( File file, SAMFileHeader header, boolean presorted ) {
 
         SAMFileWriterFactory factory = new SAMFileWriterFactory();
-        factory.setTempDirectory( new File( NbPreferences.forModule( Object.class ).get( Paths.TMP_IMPORT_DIR, System.getProperty( "java.io.tmpdir" ) ) ) );
+        factory.setTempDirectory( SamUtils.getTempImportDirectory() );
         factory.setMaxRecordsInRam( SamUtils.determineMaxRecordsInRam( file ) );
         //To improve the performance a little bit, write in parallel.
         factory.setUseAsyncIo( true );
@@ -184,12 +244,90 @@ public class SamUtils implements Observable {
     }
 
 
+    /**
+     * @return The directory for temporary files of imports, as selected by
+     *         the import budget of the current thread or as configured in the
+     *         ReadXplorer options
+     */
+    public static File getTempImportDirectory() {
+        File tmpDir = TMP_IMPORT_DIR.get();
+        if( tmpDir == null ) {
+            tmpDir = new File( NbPreferences.forModule( Object.class ).get( Paths.TMP_IMPORT_DIR, System.getProperty( "java.io.tmpdir" ) ) );
+        }
+        return tmpDir;
+    }
+
+
+    /**
+     * Collects the directories, which can hold the temporary files of the
+     * import of the given file: The directory configured in the ReadXplorer
+     * options, the temporary directory of the system and the directory of the
+     * file itself, which has to hold the imported file anyway.
+     * <p>
+     * @param file SAM/BAM file to import
+     * <p>
+     * @return The existing and writable candidate directories in the order of
+     *         preference.
+     */
+    public static List<File> getTempImportDirectoryCandidates( File file ) {
+        List<File> candidates = new ArrayList<>( 3 );
+        File[] dirs = { new File( NbPreferences.forModule( Object.class ).get( Paths.TMP_IMPORT_DIR, System.getProperty( "java.io.tmpdir" ) ) ),
+                        new File( System.getProperty( "java.io.tmpdir" ) ),
+                        file.getAbsoluteFile().getParentFile() };
+        for( File dir : dirs ) {
+            if( dir != null && dir.isDirectory() && dir.canWrite() && !candidates.contains( dir ) ) {
+                candidates.add( dir );
+            }
+        }
+        return candidates;
+    }
+
+
+    /**
+     * Sets the import budget of the current thread. Imports running in this
+     * thread then only keep their share of the records estimated by
+     * {@link #determineMaxRecordsInRam(File)} in memory and write their
+     * temporary files to the given directory. This allows to run several
+     * imports concurrently.
+     * <p>
+     * @param parallelImports number of imports sharing the memory
+     * @param tmpDir          directory for the temporary files of the
+     *                        import, <code>null</code> to use the configured
+     *                        directory
+     */
+    public static void setImportBudget( int parallelImports, File tmpDir ) {
+        RECORDS_IN_RAM_SHARE.set( Math.max( 1, parallelImports ) );
+        TMP_IMPORT_DIR.set( tmpDir );
+    }
+
+
+    /**
+     * @return The number of imports sharing the memory according to the import
+     *         budget of the current thread, 1 if no budget was set
+     */
+    public static int getParallelImports() {
+        return RECORDS_IN_RAM_SHARE.get();
+    }
+
+
+    /**
+     * Removes the import budget of the current thread, so that imports use all
+     * memory and the configured temporary directory again.
+     */
+    public static void clearImportBudget() {
+        RECORDS_IN_RAM_SHARE.remove();
+        TMP_IMPORT_DIR.remove();
+    }
+
+
     /**
      * Determines the maximum number of records allowed in the RAM by estimating
      * it from the first 75000 mappings in the file. The default value of
      * 500.000 is only working for short reads. When SMRT reads are importet
      * this causes the application to run out of memory and hence the value
      * needs to be adapted dynamically, depending on the average read length.
+     * If an import budget was set for the current thread, only its share of
+     * the records is returned.
      * <p>
      * @param file SAM/BAM file for which the maximum number of records in ram
      *             has to be estimated
@@ -197,7 +335,7 @@ public class SamUtils implements Observable {
      * @return The maximum number of records allowed in the RAM for the given
      *         file.
      */
-    private static int determineMaxRecordsInRam( File file ) {
+    public static int determineMaxRecordsInRam( File file ) {
         int maxRecordsInRam;
         SamReadLengthEstimator readLengthEstimator = new SamReadLengthEstimator();
         int meanReadLength = readLengthEstimator.estimateReadLength( file, 75000 );
@@ -215,7 +353,7 @@ public class SamUtils implements Observable {
             maxRecordsInRam = 10000;
         }
 
-        return maxRecordsInRam;
+        return maxRecordsInRam / RECORDS_IN_RAM_SHARE.get();
     }
 
 